@@ -0,0 +1,134 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.index.cache;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.SparseFixedBitSet;
+import org.elasticsearch.lucene.util.RoaringBitSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the bitsets that the {@code BitsetFilterCache} may hold for the parent filter of nested documents when joining nested
+ * documents to their parents, which is what nested queries and aggregations do.
+ */
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(BitsetFilterBenchmark.NUM_LOOKUPS)
+@State(Scope.Benchmark)
+public class BitsetFilterBenchmark {
+
+    static final int NUM_LOOKUPS = 100_000;
+    private static final int MAX_DOC = 1 << 22;
+
+    @Param({ "fixed", "sparse", "roaring" })
+    private String bitset;
+
+    /**
+     * The average number of nested documents of a parent document.
+     */
+    @Param({ "2", "20", "200" })
+    private int nestedPerParent;
+
+    private BitSet parents;
+    private int[] childDocs;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        FixedBitSet fixed = new FixedBitSet(MAX_DOC);
+        for (int doc = random.nextInt(nestedPerParent * 2 + 1); doc < MAX_DOC; doc += 1 + random.nextInt(nestedPerParent * 2 + 1)) {
+            fixed.set(doc);
+        }
+        switch (bitset) {
+            case "fixed":
+                parents = fixed;
+                break;
+            case "sparse":
+                parents = new SparseFixedBitSet(MAX_DOC);
+                for (int doc = fixed.nextSetBit(0); doc != DocIdSetIterator.NO_MORE_DOCS; doc = fixed.nextSetBit(doc + 1)) {
+                    parents.set(doc);
+                    if (doc == MAX_DOC - 1) {
+                        break;
+                    }
+                }
+                break;
+            case "roaring":
+                parents = RoaringBitSet.of(new BitSetIterator(fixed, fixed.cardinality()), MAX_DOC);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown bitset [" + bitset + "]");
+        }
+        childDocs = new int[NUM_LOOKUPS];
+        for (int i = 0; i < NUM_LOOKUPS; i++) {
+            childDocs[i] = random.nextInt(MAX_DOC);
+        }
+        // joins are made in increasing doc id order
+        Arrays.sort(childDocs);
+    }
+
+    /**
+     * Finds the parent of nested documents, like {@code ToParentBlockJoinQuery} does.
+     */
+    @Benchmark
+    public long nextSetBit() {
+        long sum = 0;
+        for (int doc : childDocs) {
+            int parent = parents.nextSetBit(doc);
+            if (parent != DocIdSetIterator.NO_MORE_DOCS) {
+                sum += parent;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the first nested document of parent documents, like the nested aggregation does.
+     */
+    @Benchmark
+    public long prevSetBit() {
+        long sum = 0;
+        for (int doc : childDocs) {
+            sum += parents.prevSetBit(doc);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long get() {
+        long sum = 0;
+        for (int doc : childDocs) {
+            if (parents.get(doc)) {
+                sum++;
+            }
+        }
+        return sum;
+    }
+}
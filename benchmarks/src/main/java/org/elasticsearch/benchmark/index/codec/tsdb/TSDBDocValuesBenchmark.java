@@ -0,0 +1,169 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.index.codec.tsdb;
+
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.lucene90.Lucene90Codec;
+import org.apache.lucene.codecs.lucene90.Lucene90DocValuesFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.index.codec.tsdb.ES80TSDBDocValuesFormat;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the size and the decoding speed of the doc values of time series metrics written with the default
+ * Lucene format and with the {@link ES80TSDBDocValuesFormat}. The documents are laid out like in a time series
+ * index: grouped by time series, then ordered by timestamp. The size of the doc values is reported next to the
+ * decoding time by the {@code bytes} and {@code bitsPerValue} counters.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(TSDBDocValuesBenchmark.NUM_DOCS)
+@State(Scope.Benchmark)
+public class TSDBDocValuesBenchmark {
+
+    static final int NUM_DOCS = 1 << 20;
+    private static final int NUM_SERIES = 100;
+    private static final String FIELD = "metric";
+
+    @Param({ "lucene90", "tsdb" })
+    private String format;
+
+    @Param({ "timestamp", "counter", "gauge" })
+    private String metric;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private long docValuesBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        DocValuesFormat docValuesFormat = format.equals("tsdb") ? new ES80TSDBDocValuesFormat() : new Lucene90DocValuesFormat();
+        IndexWriterConfig config = new IndexWriterConfig().setCodec(new Lucene90Codec() {
+            @Override
+            public DocValuesFormat getDocValuesFormatForField(String field) {
+                return docValuesFormat;
+            }
+        });
+        // keep the doc values files out of compound files to measure their size
+        config.setUseCompoundFile(false);
+        config.getMergePolicy().setNoCFSRatio(0);
+        directory = new ByteBuffersDirectory();
+        Random random = new Random(42);
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            int samplesPerSeries = NUM_DOCS / NUM_SERIES;
+            for (int series = 0; series < NUM_SERIES; series++) {
+                long timestamp = 1_600_000_000_000L;
+                long counter = random.nextInt(1_000_000);
+                double gauge = random.nextDouble() * 100;
+                for (int sample = 0; sample < samplesPerSeries; sample++) {
+                    // scraped every ten seconds, give or take a few milliseconds
+                    timestamp += 10_000 + random.nextInt(5) - 2;
+                    counter += random.nextInt(1000);
+                    if (random.nextInt(10_000) == 0) {
+                        counter = 0;
+                    }
+                    gauge = Math.max(0, gauge + (random.nextInt(11) - 5) * 0.5);
+                    long value;
+                    switch (metric) {
+                        case "timestamp":
+                            value = timestamp;
+                            break;
+                        case "counter":
+                            value = counter;
+                            break;
+                        case "gauge":
+                            value = NumericUtils.doubleToSortableLong(gauge);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown metric [" + metric + "]");
+                    }
+                    Document doc = new Document();
+                    doc.add(new SortedNumericDocValuesField(FIELD, value));
+                    writer.addDocument(doc);
+                }
+            }
+            writer.forceMerge(1);
+        }
+
+        docValuesBytes = 0;
+        for (String file : directory.listAll()) {
+            if (file.endsWith(".dvd") || file.endsWith(".dvm")) {
+                docValuesBytes += directory.fileLength(file);
+            }
+        }
+        reader = DirectoryReader.open(directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    /**
+     * The size of the doc values, which doesn't change between iterations.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class DocValuesSize {
+        public long bytes;
+        public double bitsPerValue;
+
+        @Setup(Level.Iteration)
+        public void setup(TSDBDocValuesBenchmark benchmark) {
+            bytes = benchmark.docValuesBytes;
+            bitsPerValue = benchmark.docValuesBytes * 8.0 / NUM_DOCS;
+        }
+    }
+
+    @Benchmark
+    public long decode(DocValuesSize size) throws IOException {
+        long sum = 0;
+        for (LeafReaderContext context : reader.leaves()) {
+            SortedNumericDocValues values = context.reader().getSortedNumericDocValues(FIELD);
+            for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                for (int i = 0; i < values.docValueCount(); i++) {
+                    sum += values.nextValue();
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.index.fielddata;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.packed.PackedInts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the global ordinals of a keyword field after a refresh that added one small segment to a shard, which merges the
+ * terms of all segments again.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class GlobalOrdinalsBuildBenchmark {
+
+    /**
+     * The number of unique terms of the field in the shard.
+     */
+    @Param({ "100000", "1000000" })
+    private int numTerms;
+
+    /**
+     * The number of segments that were there before the refresh.
+     */
+    @Param({ "10", "30" })
+    private int numSegments;
+
+    /**
+     * The number of documents of the segment that the refresh added.
+     */
+    @Param({ "1000" })
+    private int newSegmentDocs;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private SortedSetDocValues[] values;
+    private SortedSetDocValues[] newValues;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            // the segments of the shard overlap, about every term is in two of them
+            for (int segment = 0; segment < numSegments; segment++) {
+                addDocs(writer, random, 2 * numTerms / numSegments);
+            }
+            addDocs(writer, random, newSegmentDocs);
+            reader = DirectoryReader.open(writer);
+        }
+        values = values(reader);
+        // segments are only added, the new one comes last
+        newValues = new SortedSetDocValues[] { values[numSegments] };
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    private void addDocs(IndexWriter writer, Random random, int numDocs) throws IOException {
+        for (int i = 0; i < numDocs; i++) {
+            Document doc = new Document();
+            String term = String.format(Locale.ROOT, "%016x", random.nextInt(numTerms) * 0x9E3779B97F4A7C15L);
+            doc.add(new SortedSetDocValuesField("field", new BytesRef(term)));
+            writer.addDocument(doc);
+        }
+        writer.flush();
+    }
+
+    private static SortedSetDocValues[] values(IndexReader reader) throws IOException {
+        SortedSetDocValues[] values = new SortedSetDocValues[reader.leaves().size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = DocValues.getSortedSet(reader.leaves().get(i).reader(), "field");
+        }
+        return values;
+    }
+
+    /**
+     * Merges the terms of all segments, which is how global ordinals are built after the refresh.
+     */
+    @Benchmark
+    public OrdinalMap build() throws IOException {
+        return OrdinalMap.build(null, values, PackedInts.DEFAULT);
+    }
+
+    /**
+     * Merges the terms of the new segment only. This is all that building global ordinals from the previous ones, or in parallel across
+     * segments, could take off the single threaded merge of {@link #build()}: {@link OrdinalMap} can only be built by one merge of the
+     * terms of all segments.
+     */
+    @Benchmark
+    public OrdinalMap newSegmentMerge() throws IOException {
+        return OrdinalMap.build(null, newValues, PackedInts.DEFAULT);
+    }
+}
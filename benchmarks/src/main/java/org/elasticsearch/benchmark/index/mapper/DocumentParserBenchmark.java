@@ -0,0 +1,283 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.index.mapper;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterModule;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AnalyzerScope;
+import org.elasticsearch.index.analysis.IndexAnalyzers;
+import org.elasticsearch.index.analysis.NamedAnalyzer;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.similarity.SimilarityService;
+import org.elasticsearch.indices.IndicesModule;
+import org.elasticsearch.script.ScriptCompiler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentFactory;
+import org.elasticsearch.xcontent.XContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses ECS-like log documents against a fixed mapping, with and without the parse plan that resolves the mapped fields of documents
+ * without looking up their full paths.
+ */
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(DocumentParserBenchmark.NUM_DOCS)
+@State(Scope.Benchmark)
+public class DocumentParserBenchmark {
+
+    static final int NUM_DOCS = 1000;
+
+    private static final String[] LEVELS = { "debug", "info", "warn", "error" };
+    private static final String[] METHODS = { "GET", "POST", "PUT", "DELETE" };
+    private static final String[] REGIONS = { "us-east-1", "us-west-2", "eu-west-1", "ap-southeast-1" };
+    private static final String[] PATHS = { "/", "/login", "/api/v1/orders", "/api/v1/products/42", "/static/app.js" };
+
+    @Param({ "true", "false" })
+    private boolean parsePlan;
+
+    /**
+     * Whether the fields of the documents are sent as objects, e.g. {@code "host": {"name": ...}}, or with dots in their names, e.g.
+     * {@code "host.name": ...}.
+     */
+    @Param({ "objects", "dots" })
+    private String shape;
+
+    private DocumentMapper documentMapper;
+    private SourceToParse[] sources;
+
+    @Setup
+    public void setup() throws IOException {
+        documentMapper = createMapperService(parsePlan).documentMapper();
+        Random random = new Random(42);
+        sources = new SourceToParse[NUM_DOCS];
+        for (int i = 0; i < NUM_DOCS; i++) {
+            BytesReference source = BytesReference.bytes(document(random, shape.equals("dots")));
+            sources[i] = new SourceToParse("index", Integer.toString(i), source, XContentType.JSON);
+        }
+        // fail early rather than measuring the parsing of documents that introduce dynamic mappings
+        ParsedDocument doc = documentMapper.parse(sources[0]);
+        if (doc.dynamicMappingsUpdate() != null) {
+            throw new IllegalStateException("documents must not introduce dynamic mappings: " + doc.dynamicMappingsUpdate());
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (SourceToParse source : sources) {
+            bh.consume(documentMapper.parse(source));
+        }
+    }
+
+    private static MapperService createMapperService(boolean parsePlan) throws IOException {
+        Settings settings = Settings.builder()
+            .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
+            .put(IndexMetadata.SETTING_NUMBER_OF_SHARDS, 1)
+            .put(IndexMetadata.SETTING_NUMBER_OF_REPLICAS, 0)
+            .put(MapperService.INDEX_MAPPING_PARSE_PLAN_ENABLED_SETTING.getKey(), parsePlan)
+            .build();
+        IndexSettings indexSettings = new IndexSettings(IndexMetadata.builder("index").settings(settings).build(), Settings.EMPTY);
+        IndexAnalyzers indexAnalyzers = new IndexAnalyzers(
+            Map.of("default", new NamedAnalyzer("default", AnalyzerScope.INDEX, new StandardAnalyzer())),
+            Map.of(),
+            Map.of()
+        );
+        MapperService mapperService = new MapperService(
+            indexSettings,
+            indexAnalyzers,
+            new NamedXContentRegistry(ClusterModule.getNamedXWriteables()),
+            new SimilarityService(indexSettings, null, Map.of()),
+            new IndicesModule(List.of()).getMapperRegistry(),
+            () -> { throw new UnsupportedOperationException(); },
+            () -> true,
+            ScriptCompiler.NONE
+        );
+        mapperService.merge(
+            MapperService.SINGLE_MAPPING_NAME,
+            new CompressedXContent(Strings.toString(mapping())),
+            MapperService.MergeReason.MAPPING_UPDATE
+        );
+        return mapperService;
+    }
+
+    private static XContentBuilder mapping() throws IOException {
+        XContentBuilder b = XContentFactory.jsonBuilder().startObject().startObject(MapperService.SINGLE_MAPPING_NAME);
+        b.field("dynamic", "strict");
+        b.startObject("properties");
+        {
+            field(b, "@timestamp", "date");
+            field(b, "message", "text");
+            field(b, "tags", "keyword");
+            b.startObject("log").startObject("properties");
+            field(b, "level", "keyword");
+            field(b, "logger", "keyword");
+            b.endObject().endObject();
+            b.startObject("host").startObject("properties");
+            field(b, "name", "keyword");
+            field(b, "ip", "ip");
+            b.startObject("os").startObject("properties");
+            field(b, "family", "keyword");
+            field(b, "name", "keyword");
+            field(b, "version", "keyword");
+            b.endObject().endObject();
+            b.endObject().endObject();
+            b.startObject("agent").startObject("properties");
+            field(b, "id", "keyword");
+            field(b, "name", "keyword");
+            field(b, "type", "keyword");
+            field(b, "version", "keyword");
+            b.endObject().endObject();
+            b.startObject("event").startObject("properties");
+            field(b, "dataset", "keyword");
+            field(b, "module", "keyword");
+            field(b, "category", "keyword");
+            field(b, "duration", "long");
+            b.endObject().endObject();
+            b.startObject("http").startObject("properties");
+            b.startObject("request").startObject("properties");
+            field(b, "method", "keyword");
+            b.endObject().endObject();
+            b.startObject("response").startObject("properties");
+            field(b, "status_code", "long");
+            field(b, "bytes", "long");
+            b.endObject().endObject();
+            b.endObject().endObject();
+            b.startObject("url").startObject("properties");
+            field(b, "path", "keyword");
+            b.endObject().endObject();
+            b.startObject("user_agent").startObject("properties");
+            field(b, "original", "keyword");
+            b.endObject().endObject();
+            b.startObject("source").startObject("properties");
+            field(b, "ip", "ip");
+            field(b, "port", "long");
+            b.endObject().endObject();
+            b.startObject("cloud").startObject("properties");
+            field(b, "provider", "keyword");
+            field(b, "region", "keyword");
+            field(b, "availability_zone", "keyword");
+            b.endObject().endObject();
+            b.startObject("service").startObject("properties");
+            field(b, "name", "keyword");
+            b.endObject().endObject();
+        }
+        b.endObject();
+        return b.endObject().endObject();
+    }
+
+    private static void field(XContentBuilder b, String name, String type) throws IOException {
+        b.startObject(name).field("type", type).endObject();
+    }
+
+    private static XContentBuilder document(Random random, boolean dots) throws IOException {
+        Document d = new Document(XContentFactory.jsonBuilder().startObject(), dots);
+        d.b.field("@timestamp", 1_600_000_000_000L + random.nextInt(86_400_000));
+        d.b.field("message", "request handled in " + random.nextInt(1000) + "ms for " + PATHS[random.nextInt(PATHS.length)]);
+        d.b.array("tags", "production", "web");
+        d.start("log").field("level", LEVELS[random.nextInt(LEVELS.length)]).field("logger", "org.example.web.RequestHandler").end();
+        d.start("host").field("name", "web-" + random.nextInt(50)).field("ip", "10.0." + random.nextInt(256) + "." + random.nextInt(256));
+        d.start("os").field("family", "debian").field("name", "Debian GNU/Linux").field("version", "11").end().end();
+        d.start("agent")
+            .field("id", "agent-" + random.nextInt(50))
+            .field("name", "filebeat")
+            .field("type", "filebeat")
+            .field("version", "8.0.0")
+            .end();
+        d.start("event")
+            .field("dataset", "nginx.access")
+            .field("module", "nginx")
+            .field("category", "web")
+            .field("duration", random.nextInt(1_000_000_000))
+            .end();
+        d.start("http");
+        d.start("request").field("method", METHODS[random.nextInt(METHODS.length)]).end();
+        d.start("response").field("status_code", 200 + random.nextInt(4) * 100).field("bytes", random.nextInt(100_000)).end();
+        d.end();
+        d.start("url").field("path", PATHS[random.nextInt(PATHS.length)]).end();
+        d.start("user_agent").field("original", "Mozilla/5.0 (X11; Linux x86_64; rv:91.0) Gecko/20100101 Firefox/91.0").end();
+        d.start("source").field("ip", "192.168." + random.nextInt(256) + "." + random.nextInt(256)).field("port", random.nextInt(65536));
+        d.end();
+        d.start("cloud")
+            .field("provider", "aws")
+            .field("region", REGIONS[random.nextInt(REGIONS.length)])
+            .field("availability_zone", REGIONS[random.nextInt(REGIONS.length)] + "a")
+            .end();
+        d.start("service").field("name", "storefront").end();
+        return d.b.endObject();
+    }
+
+    /**
+     * Writes objects either as objects or by prefixing the names of their fields with their paths.
+     */
+    private static final class Document {
+        private final XContentBuilder b;
+        private final boolean dots;
+        private String prefix = "";
+
+        Document(XContentBuilder b, boolean dots) {
+            this.b = b;
+            this.dots = dots;
+        }
+
+        Document start(String name) throws IOException {
+            if (dots) {
+                prefix = prefix + name + ".";
+            } else {
+                b.startObject(name);
+            }
+            return this;
+        }
+
+        Document field(String name, Object value) throws IOException {
+            b.field(prefix + name, value);
+            return this;
+        }
+
+        Document end() throws IOException {
+            if (dots) {
+                prefix = prefix.substring(0, prefix.lastIndexOf('.', prefix.length() - 2) + 1);
+            } else {
+                b.endObject();
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.indices.cache;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndicesQueryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the node query cache when concurrent searches of several shards look up and insert cache entries, to compare a single LRU
+ * cache with a cache split into stripes.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") // invoked by benchmarking framework
+public class QueryCacheBenchmark {
+
+    private static final QueryCachingPolicy ALWAYS_CACHE = new QueryCachingPolicy() {
+        @Override
+        public void onUse(Query query) {}
+
+        @Override
+        public boolean shouldCache(Query query) {
+            return true;
+        }
+    };
+
+    /**
+     * The number of LRU caches the query cache is split into.
+     */
+    @Param({ "1", "4", "8" })
+    private int stripes;
+
+    /**
+     * The number of shards that are searched.
+     */
+    @Param({ "16" })
+    private int numShards;
+
+    /**
+     * The number of distinct queries, more than the cache holds so that searches also insert and evict entries.
+     */
+    @Param({ "2000" })
+    private int numQueries;
+
+    private IndicesQueryCache cache;
+    private Directory[] directories;
+    private DirectoryReader[] readers;
+    private IndexSearcher[] searchers;
+    private Query[] queries;
+
+    @Setup
+    public void setup() throws IOException {
+        Settings settings = Settings.builder()
+            .put(IndicesQueryCache.INDICES_CACHE_QUERY_COUNT_SETTING.getKey(), 1000)
+            .put(IndicesQueryCache.INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING.getKey(), true)
+            .put(IndicesQueryCache.INDICES_QUERIES_CACHE_STRIPES_SETTING.getKey(), stripes)
+            .build();
+        cache = new IndicesQueryCache(settings);
+        directories = new Directory[numShards];
+        readers = new DirectoryReader[numShards];
+        searchers = new IndexSearcher[numShards];
+        for (int shard = 0; shard < numShards; shard++) {
+            directories[shard] = new ByteBuffersDirectory();
+            try (IndexWriter writer = new IndexWriter(directories[shard], new IndexWriterConfig())) {
+                for (int i = 0; i < 1000; i++) {
+                    Document doc = new Document();
+                    doc.add(new StringField("field", Integer.toString(i % numQueries), Field.Store.NO));
+                    writer.addDocument(doc);
+                }
+                readers[shard] = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("index", "_na_", shard));
+            }
+            searchers[shard] = new IndexSearcher(readers[shard]);
+            searchers[shard].setQueryCache(cache);
+            searchers[shard].setQueryCachingPolicy(ALWAYS_CACHE);
+        }
+        queries = new Query[numQueries];
+        for (int i = 0; i < numQueries; i++) {
+            queries[i] = new TermQuery(new Term("field", Integer.toString(i)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (int shard = 0; shard < numShards; shard++) {
+            readers[shard].close();
+            directories[shard].close();
+            cache.onClose(new ShardId("index", "_na_", shard));
+        }
+        cache.close();
+    }
+
+    private int search() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // most searches use a few popular queries, which is what the cache is for
+        int query = random.nextInt(10) < 9 ? random.nextInt(100) : random.nextInt(numQueries);
+        return searchers[random.nextInt(numShards)].count(queries[query]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int search_01() throws IOException {
+        return search();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int search_04() throws IOException {
+        return search();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int search_16() throws IOException {
+        return search();
+    }
+}
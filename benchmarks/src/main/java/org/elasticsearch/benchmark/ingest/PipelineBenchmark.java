@@ -0,0 +1,149 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.ingest;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.ingest.Pipeline;
+import org.elasticsearch.ingest.Processor;
+import org.elasticsearch.plugins.IngestPlugin;
+import org.elasticsearch.plugins.PluginsService;
+import org.elasticsearch.plugins.ScriptPlugin;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.xcontent.XContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a typical 30 processor pipeline made of the simple processors from
+ * {@code ingest-common} (set, rename, remove, convert, lowercase and friends)
+ * over a small nested document. Each invocation also copies the source, the
+ * same way a fresh document comes out of parsing an index request.
+ */
+@Fork(2)
+@Warmup(iterations = 10)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    private static final String PIPELINE = "{\"processors\": ["
+        + "{\"set\": {\"field\": \"event.kind\", \"value\": \"event\"}},"
+        + "{\"set\": {\"field\": \"event.category\", \"value\": \"web\"}},"
+        + "{\"set\": {\"field\": \"event.module\", \"value\": \"nginx\"}},"
+        + "{\"set\": {\"field\": \"observer.vendor\", \"value\": \"acme\"}},"
+        + "{\"set\": {\"field\": \"ecs.version\", \"value\": \"1.12.0\"}},"
+        + "{\"set\": {\"field\": \"host.hostname\", \"copy_from\": \"host.name\"}},"
+        + "{\"lowercase\": {\"field\": \"host.name\"}},"
+        + "{\"uppercase\": {\"field\": \"http.request.method\"}},"
+        + "{\"convert\": {\"field\": \"http.response.status_code\", \"type\": \"long\"}},"
+        + "{\"convert\": {\"field\": \"http.request.bytes\", \"type\": \"long\"}},"
+        + "{\"convert\": {\"field\": \"http.response.bytes\", \"type\": \"long\"}},"
+        + "{\"convert\": {\"field\": \"source.port\", \"type\": \"integer\"}},"
+        + "{\"convert\": {\"field\": \"event.duration\", \"type\": \"long\"}},"
+        + "{\"convert\": {\"field\": \"source.ip\", \"type\": \"ip\"}},"
+        + "{\"rename\": {\"field\": \"url.original\", \"target_field\": \"url.path\"}},"
+        + "{\"rename\": {\"field\": \"user_agent.original\", \"target_field\": \"user_agent.raw\"}},"
+        + "{\"rename\": {\"field\": \"temp.a\", \"target_field\": \"labels.a\"}},"
+        + "{\"rename\": {\"field\": \"missing.field\", \"target_field\": \"labels.b\", \"ignore_missing\": true}},"
+        + "{\"remove\": {\"field\": \"temp\"}},"
+        + "{\"remove\": {\"field\": \"missing.field\", \"ignore_missing\": true}},"
+        + "{\"trim\": {\"field\": \"message\"}},"
+        + "{\"lowercase\": {\"field\": \"user_agent.raw\"}},"
+        + "{\"uppercase\": {\"field\": \"host.hostname\"}},"
+        + "{\"convert\": {\"field\": \"missing.number\", \"type\": \"long\", \"ignore_missing\": true}},"
+        + "{\"lowercase\": {\"field\": \"missing.string\", \"ignore_missing\": true}},"
+        + "{\"set\": {\"field\": \"labels.env\", \"value\": \"prod\"}},"
+        + "{\"set\": {\"field\": \"labels.team\", \"value\": \"web\"}},"
+        + "{\"append\": {\"field\": \"tags\", \"value\": \"ingested\"}},"
+        + "{\"remove\": {\"field\": \"labels.a\"}},"
+        + "{\"set\": {\"field\": \"event.outcome\", \"value\": \"success\"}}"
+        + "]}";
+
+    private static final String SOURCE = "{"
+        + "\"message\": \"  GET /index.html HTTP/1.1 200 2048  \","
+        + "\"host\": {\"name\": \"WEB-01\"},"
+        + "\"http\": {"
+        + "\"request\": {\"method\": \"get\", \"bytes\": \"512\"},"
+        + "\"response\": {\"status_code\": \"200\", \"bytes\": \"2048\"}"
+        + "},"
+        + "\"url\": {\"original\": \"/index.html\"},"
+        + "\"user_agent\": {\"original\": \"Mozilla/5.0 (X11; Linux x86_64)\"},"
+        + "\"source\": {\"ip\": \"10.1.2.3\", \"port\": \"54321\"},"
+        + "\"event\": {\"duration\": \"1500\"},"
+        + "\"temp\": {\"a\": \"value\"},"
+        + "\"tags\": [\"nginx\", \"access\"]"
+        + "}";
+
+    private Pipeline pipeline;
+    private Map<String, Object> source;
+
+    @Setup
+    public void setup() throws Exception {
+        Settings settings = Settings.builder().put(Environment.PATH_HOME_SETTING.getKey(), System.getProperty("java.io.tmpdir")).build();
+        PluginsService pluginsService = new PluginsService(settings, null, null, Path.of(System.getProperty("plugins.dir")), List.of());
+        ScriptModule scriptModule = new ScriptModule(settings, pluginsService.filterPlugins(ScriptPlugin.class));
+        ScriptService scriptService = new ScriptService(settings, scriptModule.engines, scriptModule.contexts);
+        Processor.Parameters parameters = new Processor.Parameters(
+            new Environment(settings, null),
+            scriptService,
+            null,
+            null,
+            System::nanoTime,
+            (delay, command) -> { throw new UnsupportedOperationException(); },
+            null,
+            null,
+            Runnable::run
+        );
+        Map<String, Processor.Factory> processorFactories = new HashMap<>();
+        for (IngestPlugin plugin : pluginsService.filterPlugins(IngestPlugin.class)) {
+            processorFactories.putAll(plugin.getProcessors(parameters));
+        }
+        Map<String, Object> config = XContentHelper.convertToMap(new BytesArray(PIPELINE), false, XContentType.JSON).v2();
+        pipeline = Pipeline.create("benchmark", config, processorFactories, scriptService);
+        if (pipeline.getProcessors().size() != 30) {
+            throw new IllegalStateException("expected 30 processors but got " + pipeline.getProcessors().size());
+        }
+        source = XContentHelper.convertToMap(new BytesArray(SOURCE), false, XContentType.JSON).v2();
+        if (execute() == null) {
+            throw new IllegalStateException("the document was dropped");
+        }
+    }
+
+    @Benchmark
+    public IngestDocument execute() {
+        IngestDocument document = new IngestDocument("index", "id", null, null, null, IngestDocument.deepCopyMap(source));
+        IngestDocument[] result = new IngestDocument[1];
+        pipeline.execute(document, (processed, e) -> {
+            if (e != null) {
+                throw new IllegalStateException(e);
+            }
+            result[0] = processed;
+        });
+        return result[0];
+    }
+}
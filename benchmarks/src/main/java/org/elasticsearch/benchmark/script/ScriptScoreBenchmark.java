@@ -60,7 +60,8 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * A race between Lucene Expressions, Painless, and a hand optimized script
- * implementing a {@link ScriptScoreQuery}.
+ * implementing a {@link ScriptScoreQuery}. The {@code _per_doc} variants of
+ * the Painless scripts don't score blocks of documents at once.
  */
 @Fork(2)
 @Warmup(iterations = 10)
@@ -89,9 +90,23 @@ public class ScriptScoreBenchmark {
         (mft, lookup) -> mft.fielddataBuilder("test", lookup).build(fieldDataCache, breakerService)
     );
 
-    @Param({ "expression", "metal", "painless_cast", "painless_def" })
+    @Param(
+        {
+            "expression",
+            "metal",
+            "painless_cast",
+            "painless_def",
+            "painless_def_per_doc",
+            "painless_math",
+            "painless_math_per_doc" }
+    )
     private String script;
 
+    /**
+     * A script with a few operations per document that still scores documents with their value of {@code n}.
+     */
+    private static final String MATH_SCRIPT = "long n = doc['n'].value; Math.sqrt(n * n) * 2 - n";
+
     @Param({ "16" })
     private double indexingBufferMb;
 
@@ -120,6 +135,17 @@ public class ScriptScoreBenchmark {
             case "painless_def":
                 factory = scriptModule.engines.get("painless").compile("test", "doc['n'].value", ScoreScript.CONTEXT, Map.of());
                 break;
+            case "painless_def_per_doc":
+                factory = perDoc(
+                    scriptModule.engines.get("painless").compile("test", "doc['n'].value", ScoreScript.CONTEXT, Map.of())
+                );
+                break;
+            case "painless_math":
+                factory = scriptModule.engines.get("painless").compile("test", MATH_SCRIPT, ScoreScript.CONTEXT, Map.of());
+                break;
+            case "painless_math_per_doc":
+                factory = perDoc(scriptModule.engines.get("painless").compile("test", MATH_SCRIPT, ScoreScript.CONTEXT, Map.of()));
+                break;
             default:
                 throw new IllegalArgumentException("Don't know how to implement script [" + script + "]");
         }
@@ -196,4 +222,24 @@ public class ScriptScoreBenchmark {
             };
         };
     }
+
+    /**
+     * Hides the {@link ScoreScript.LeafFactory#newBatchInstance} of the given factory so that documents are scored one at a time.
+     */
+    private static ScoreScript.Factory perDoc(ScoreScript.Factory factory) {
+        return (params, lookup) -> {
+            ScoreScript.LeafFactory leafFactory = factory.newFactory(params, lookup);
+            return new ScoreScript.LeafFactory() {
+                @Override
+                public boolean needs_score() {
+                    return leafFactory.needs_score();
+                }
+
+                @Override
+                public ScoreScript newInstance(DocReader reader) throws IOException {
+                    return leafFactory.newInstance(reader);
+                }
+            };
+        };
+    }
 }
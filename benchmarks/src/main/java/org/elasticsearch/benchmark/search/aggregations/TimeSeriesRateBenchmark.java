@@ -0,0 +1,510 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.SortedSetSortField;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.core.Releasable;
+import org.elasticsearch.core.Releasables;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.NameOrDefinition;
+import org.elasticsearch.index.analysis.NamedAnalyzer;
+import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.mapper.NumberFieldMapper.NumberType;
+import org.elasticsearch.index.mapper.ObjectMapper;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.support.NestedScope;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.plugins.PluginsService;
+import org.elasticsearch.plugins.ScriptPlugin;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptContext;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.SearchModule;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.metrics.InternalScriptedMetric;
+import org.elasticsearch.search.aggregations.metrics.ScriptedMetricAggregationBuilder;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator.PipelineTree;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSourceRegistry;
+import org.elasticsearch.search.internal.SubSearchContext;
+import org.elasticsearch.search.lookup.SearchLookup;
+import org.elasticsearch.search.sort.BucketedSort;
+import org.elasticsearch.search.sort.BucketedSort.ExtraData;
+import org.elasticsearch.search.sort.SortAndFormats;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.xpack.aggregatemetric.AggregateMetricMapperPlugin;
+import org.elasticsearch.xpack.aggregatemetric.mapper.AggregateDoubleMetricFieldMapper.AggregateDoubleMetricFieldType;
+import org.elasticsearch.xpack.aggregatemetric.mapper.AggregateDoubleMetricFieldMapper.Metric;
+import org.elasticsearch.xpack.analytics.AnalyticsPlugin;
+import org.elasticsearch.xpack.analytics.timeseries.InternalTimeSeries;
+import org.elasticsearch.xpack.analytics.timeseries.TimeSeriesAggregationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.elasticsearch.xpack.aggregatemetric.mapper.AggregateDoubleMetricFieldMapper.subfieldName;
+
+/**
+ * Compares two ways of computing the per series rate of a counter pre-aggregated in an {@code aggregate_metric_double}
+ * field, in an index sorted by series and timestamp:
+ * <ul>
+ *     <li>{@code timeSeries} runs the {@code time_series} aggregation, which walks the series one after the other and
+ *     only keeps the state of the bucket of the current series, detecting counter resets as it goes.</li>
+ *     <li>{@code scriptedMetric} runs a painless {@code scripted_metric} aggregation, which has to collect every sample
+ *     of every series in a map in the map phase, then sort each series by timestamp and compute the rates in the
+ *     reduce phase.</li>
+ * </ul>
+ * Scripts only see the default metric of the field, so the metric picked by {@code mode} is the default metric as well.
+ * Painless is loaded from the plugins directory like in {@code ScriptScoreBenchmark}.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(TimeSeriesRateBenchmark.NUM_DOCS)
+@State(Scope.Benchmark)
+public class TimeSeriesRateBenchmark {
+
+    static final int NUM_DOCS = 1 << 20;
+    private static final long START = 1_600_000_000_000L;
+    private static final long INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final String DIMENSION = "host";
+    private static final String TIMESTAMP = "@timestamp";
+    private static final String FIELD = "requests";
+
+    private static final String INIT_SCRIPT = "state.series = new HashMap()";
+    private static final String MAP_SCRIPT = "String host = doc['host'].value;"
+        + "List samples = state.series.get(host);"
+        + "if (samples == null) { samples = new ArrayList(); state.series.put(host, samples); }"
+        + "samples.add([doc['@timestamp'].value.toInstant().toEpochMilli(), doc['requests'].value])";
+    private static final String COMBINE_SCRIPT = "return state.series";
+    private static final String REDUCE_SCRIPT = "Map series = new HashMap();"
+        + "for (s in states) {"
+        + "  for (entry in s.entrySet()) {"
+        + "    List samples = series.get(entry.getKey());"
+        + "    if (samples == null) { samples = new ArrayList(); series.put(entry.getKey(), samples); }"
+        + "    samples.addAll(entry.getValue());"
+        + "  }"
+        + "}"
+        + "Map rates = new HashMap();"
+        + "for (entry in series.entrySet()) {"
+        + "  List samples = entry.getValue();"
+        + "  samples.sort((a, b) -> Long.compare(a[0], b[0]));"
+        + "  Map buckets = new TreeMap();"
+        + "  def last = null;"
+        + "  for (sample in samples) {"
+        + "    long bucket = sample[0] / params.interval * params.interval;"
+        + "    double increase = last == null ? 0 : (sample[1] >= last ? sample[1] - last : sample[1]);"
+        + "    def rate = buckets.get(bucket);"
+        + "    buckets.put(bucket, (rate == null ? 0 : rate) + increase / params.unit);"
+        + "    last = sample[1];"
+        + "  }"
+        + "  rates.put(entry.getKey(), buckets);"
+        + "}"
+        + "return rates";
+
+    private final PluginsService pluginsService = new PluginsService(
+        Settings.EMPTY,
+        null,
+        null,
+        Path.of(System.getProperty("plugins.dir")),
+        List.of()
+    );
+    private final ScriptModule scriptModule = new ScriptModule(Settings.EMPTY, pluginsService.filterPlugins(ScriptPlugin.class));
+    private final ScriptService scriptService = new ScriptService(Settings.EMPTY, scriptModule.engines, scriptModule.contexts);
+    private final SearchModule searchModule = new SearchModule(
+        Settings.EMPTY,
+        List.of(new AnalyticsPlugin(), new AggregateMetricMapperPlugin())
+    );
+    private final CircuitBreakerService breakerService = new NoneCircuitBreakerService();
+    private final BigArrays bigArrays = new BigArrays(new PageCacheRecycler(Settings.EMPTY), breakerService, "request");
+
+    @Param({ "10", "1000" })
+    private int series;
+
+    @Param({ "sum", "value_count" })
+    private String mode;
+
+    private Map<String, MappedFieldType> fieldTypes;
+    private Directory directory;
+    private DirectoryReader reader;
+
+    @Setup
+    public void setup() throws IOException {
+        AggregateDoubleMetricFieldType requests = new AggregateDoubleMetricFieldType(FIELD);
+        requests.addMetricField(Metric.sum, new NumberFieldMapper.NumberFieldType(subfieldName(FIELD, Metric.sum), NumberType.DOUBLE));
+        requests.addMetricField(
+            Metric.value_count,
+            new NumberFieldMapper.NumberFieldType(subfieldName(FIELD, Metric.value_count), NumberType.INTEGER)
+        );
+        requests.setDefaultMetric(Metric.valueOf(mode));
+        fieldTypes = Map.of(
+            DIMENSION,
+            new KeywordFieldMapper.KeywordFieldType(DIMENSION),
+            TIMESTAMP,
+            new DateFieldMapper.DateFieldType(TIMESTAMP),
+            FIELD,
+            requests
+        );
+
+        IndexWriterConfig config = new IndexWriterConfig().setIndexSort(
+            new Sort(new SortedSetSortField(DIMENSION, false), new SortedNumericSortField(TIMESTAMP, SortField.Type.LONG))
+        );
+        directory = new ByteBuffersDirectory();
+        Random random = new Random(42);
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            int samplesPerSeries = NUM_DOCS / series;
+            for (int s = 0; s < series; s++) {
+                BytesRef host = new BytesRef(String.format(Locale.ROOT, "host-%05d", s));
+                long timestamp = START;
+                double sum = 0;
+                long valueCount = 0;
+                for (int sample = 0; sample < samplesPerSeries; sample++) {
+                    // pre-aggregated every ten seconds
+                    timestamp += 10_000;
+                    sum += random.nextInt(1000) / 10.0;
+                    valueCount += 1 + random.nextInt(10);
+                    if (random.nextInt(10_000) == 0) {
+                        sum = 0;
+                        valueCount = 0;
+                    }
+                    Document doc = new Document();
+                    doc.add(new SortedSetDocValuesField(DIMENSION, host));
+                    doc.add(new SortedNumericDocValuesField(TIMESTAMP, timestamp));
+                    doc.add(new SortedNumericDocValuesField(subfieldName(FIELD, Metric.sum), NumericUtils.doubleToSortableLong(sum)));
+                    doc.add(new SortedNumericDocValuesField(subfieldName(FIELD, Metric.value_count), valueCount));
+                    writer.addDocument(doc);
+                }
+            }
+            writer.forceMerge(1);
+        }
+        reader = DirectoryReader.open(directory);
+
+        double timeSeries = total(timeSeries());
+        double scriptedMetric = total(scriptedMetric());
+        if (Math.abs(timeSeries - scriptedMetric) > 1e-6 * Math.abs(timeSeries)) {
+            throw new IllegalStateException("time_series [" + timeSeries + "] and scripted_metric [" + scriptedMetric + "] rates differ");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public InternalTimeSeries timeSeries() throws IOException {
+        return (InternalTimeSeries) aggregate(
+            new TimeSeriesAggregationBuilder("rate").field(FIELD)
+                .fixedInterval(new DateHistogramInterval(INTERVAL + "ms"))
+                .rateUnit(Rounding.DateTimeUnit.SECOND_OF_MINUTE)
+                .rateMode(mode)
+        );
+    }
+
+    @Benchmark
+    public InternalScriptedMetric scriptedMetric() throws IOException {
+        return (InternalScriptedMetric) aggregate(
+            new ScriptedMetricAggregationBuilder("rate").initScript(painless(INIT_SCRIPT))
+                .mapScript(painless(MAP_SCRIPT))
+                .combineScript(painless(COMBINE_SCRIPT))
+                .reduceScript(painless(REDUCE_SCRIPT))
+                .params(Map.of("interval", INTERVAL, "unit", (double) TimeUnit.MILLISECONDS.toSeconds(INTERVAL)))
+        );
+    }
+
+    /**
+     * Runs an aggregation over the whole index like a search on a single shard does, including the final reduction.
+     */
+    private InternalAggregation aggregate(AggregationBuilder builder) throws IOException {
+        try (BenchmarkAggregationContext context = new BenchmarkAggregationContext()) {
+            Aggregator aggregator = new AggregatorFactories.Builder().addAggregator(builder)
+                .build(context, null)
+                .createTopLevelAggregators()[0];
+            aggregator.preCollection();
+            context.searcher().search(context.query(), aggregator);
+            aggregator.postCollection();
+            InternalAggregation result = aggregator.buildTopLevel();
+            return result.reduce(
+                List.of(result),
+                ReduceContext.forFinalReduction(bigArrays, scriptService, b -> {}, PipelineTree.EMPTY, () -> false)
+            );
+        }
+    }
+
+    private static Script painless(String source) {
+        return new Script(ScriptType.INLINE, "painless", source, Map.of());
+    }
+
+    private static double total(InternalTimeSeries timeSeries) {
+        double total = 0;
+        for (InternalTimeSeries.Series s : timeSeries.getSeries()) {
+            for (int i = 0; i < s.getPoints().size(); i++) {
+                total += timeSeries.value(s, i);
+            }
+        }
+        return total;
+    }
+
+    private static double total(InternalScriptedMetric scriptedMetric) {
+        double total = 0;
+        for (Object buckets : ((Map<?, ?>) scriptedMetric.aggregation()).values()) {
+            for (Object rate : ((Map<?, ?>) buckets).values()) {
+                total += ((Number) rate).doubleValue();
+            }
+        }
+        return total;
+    }
+
+    private class BenchmarkAggregationContext extends AggregationContext {
+        private final Query query = new MatchAllDocsQuery();
+        private final IndexSearcher searcher = new IndexSearcher(reader);
+        private final List<Releasable> releaseMe = new ArrayList<>();
+        private final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        private final MultiBucketConsumer multiBucketConsumer = new MultiBucketConsumer(Integer.MAX_VALUE, breaker);
+        private final SearchLookup lookup = new SearchLookup(this::getFieldType, (ft, lookup) -> buildFieldData(ft));
+
+        @Override
+        public Query query() {
+            return query;
+        }
+
+        @Override
+        public Aggregator profileIfEnabled(Aggregator agg) throws IOException {
+            return agg;
+        }
+
+        @Override
+        public boolean profiling() {
+            return false;
+        }
+
+        @Override
+        public long nowInMillis() {
+            return 0;
+        }
+
+        @Override
+        public Analyzer getNamedAnalyzer(String analyzer) {
+            return null;
+        }
+
+        @Override
+        public Analyzer buildCustomAnalyzer(
+            IndexSettings indexSettings,
+            boolean normalizer,
+            NameOrDefinition tokenizer,
+            List<NameOrDefinition> charFilters,
+            List<NameOrDefinition> tokenFilters
+        ) {
+            return null;
+        }
+
+        @Override
+        protected IndexFieldData<?> buildFieldData(MappedFieldType ft) {
+            return ft.fielddataBuilder("test", this::lookup).build(new IndexFieldDataCache.None(), breakerService);
+        }
+
+        @Override
+        public MappedFieldType getFieldType(String path) {
+            return fieldTypes.get(path);
+        }
+
+        @Override
+        public Set<String> getMatchingFieldNames(String pattern) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isFieldMapped(String field) {
+            return fieldTypes.containsKey(field);
+        }
+
+        @Override
+        public <FactoryType> FactoryType compile(Script script, ScriptContext<FactoryType> context) {
+            return scriptService.compile(script, context);
+        }
+
+        @Override
+        public SearchLookup lookup() {
+            return lookup;
+        }
+
+        @Override
+        public ValuesSourceRegistry getValuesSourceRegistry() {
+            return searchModule.getValuesSourceRegistry();
+        }
+
+        @Override
+        public BigArrays bigArrays() {
+            return bigArrays;
+        }
+
+        @Override
+        public IndexSearcher searcher() {
+            return searcher;
+        }
+
+        @Override
+        public Query buildQuery(QueryBuilder builder) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Query filterQuery(Query query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IndexSettings getIndexSettings() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<SortAndFormats> buildSort(List<SortBuilder<?>> sortBuilders) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ObjectMapper getObjectMapper(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NestedScope nestedScope() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SubSearchContext subSearchContext() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addReleasable(Aggregator aggregator) {
+            releaseMe.add(aggregator);
+        }
+
+        @Override
+        public MultiBucketConsumer multiBucketConsumer() {
+            return multiBucketConsumer;
+        }
+
+        @Override
+        public BitsetFilterCache bitsetFilterCache() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BucketedSort buildBucketedSort(SortBuilder<?> sort, int size, ExtraData values) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int shardRandomSeed() {
+            return 0;
+        }
+
+        @Override
+        public long getRelativeTimeInMillis() {
+            return 0;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public CircuitBreaker breaker() {
+            return breaker;
+        }
+
+        @Override
+        public Analyzer getIndexAnalyzer(Function<String, NamedAnalyzer> unindexedFieldAnalyzer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isCacheable() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean enableRewriteToFilterByFilter() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            Releasables.close(releaseMe);
+        }
+    }
+}
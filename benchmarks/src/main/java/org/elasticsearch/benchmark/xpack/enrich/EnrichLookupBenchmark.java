@@ -0,0 +1,133 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.xpack.enrich;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.index.mapper.SourceFieldMapper;
+import org.elasticsearch.search.lookup.SourceLookup;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.json.JsonXContent;
+import org.elasticsearch.xpack.core.enrich.EnrichPolicy;
+import org.elasticsearch.xpack.enrich.EnrichLookupTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking up an enrich document in an {@link EnrichLookupTable} with what the search path does on the
+ * enrich shard for the same lookup: a constant score term query on the match field followed by loading and parsing
+ * the source of the hits. The search path additionally pays for the transport and the search request overhead,
+ * which isn't measured here.
+ */
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class EnrichLookupBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int numDocs;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private EnrichLookupTable table;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = new ByteBuffersDirectory();
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.MATCH_TYPE, "email", "keyword");
+        keys = new String[numDocs];
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int i = 0; i < numDocs; i++) {
+                keys[i] = "user" + i + "@example.com";
+                XContentBuilder source = JsonXContent.contentBuilder()
+                    .startObject()
+                    .field("email", keys[i])
+                    .field("first_name", "first" + i)
+                    .field("last_name", "last" + i)
+                    .field("department", "department" + (i % 50))
+                    .endObject();
+                BytesReference bytes = BytesReference.bytes(source);
+                Document document = new Document();
+                document.add(new StringField("email", keys[i], Field.Store.NO));
+                document.add(new StoredField(SourceFieldMapper.NAME, bytes.toBytesRef()));
+                writer.addDocument(document);
+                builder.add(bytes);
+            }
+            writer.forceMerge(1);
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        table = builder.build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    private String nextKey() {
+        next = (next + 7919) % keys.length;
+        return keys[next];
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> search() throws IOException {
+        TopDocs topDocs = searcher.search(new ConstantScoreQuery(new TermQuery(new Term("email", nextKey()))), 1);
+        List<Map<String, Object>> sources = new ArrayList<>(topDocs.scoreDocs.length);
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            BytesRef source = searcher.doc(scoreDoc.doc).getBinaryValue(SourceFieldMapper.NAME);
+            sources.add(SourceLookup.sourceAsMap(new BytesArray(source)));
+        }
+        return sources;
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> lookupTable() {
+        return table.lookup(nextKey(), 1);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.ingest.geoip;
+
+import com.maxmind.db.NoCache;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.AddressNotFoundException;
+import com.maxmind.geoip2.model.CityResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking up city data with the MaxMind client, which decodes the whole record into a {@link CityResponse},
+ * with reading only the values the geoip processor needs straight from the database, with and without the
+ * {@link GeoIpCache} in front of it.
+ *
+ * The looked up addresses follow a zipf distribution over a pool of random public addresses, since the addresses in
+ * logs usually have a few very frequent clients and a long tail of rare ones.
+ */
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class GeoIpLookupBenchmark {
+
+    private static final String DATABASE = "GeoLite2-City.mmdb";
+    private static final int NUM_LOOKUPS = 1 << 16;
+
+    @Param({ "1000", "100000" })
+    public int distinctAddresses;
+
+    @Param({ "0.0", "1.0" })
+    public double skew;
+
+    @Param({ "1000" })
+    public int cacheSize;
+
+    private DatabaseReader client;
+    private MaxMindDbReader reader;
+    private GeoIpCache cache;
+    private InetAddress[] lookups;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] database;
+        try (InputStream in = GeoIpLookupBenchmark.class.getResourceAsStream("/" + DATABASE)) {
+            database = in.readAllBytes();
+        }
+        client = new DatabaseReader.Builder(new ByteArrayInputStream(database)).withCache(NoCache.getInstance()).build();
+        // a direct buffer behaves like the memory mapped database of a node
+        ByteBuffer buffer = ByteBuffer.allocateDirect(database.length).put(database).flip();
+        reader = new MaxMindDbReader(buffer, DATABASE);
+        cache = new GeoIpCache(cacheSize);
+
+        Random random = new Random(42);
+        InetAddress[] addresses = new InetAddress[distinctAddresses];
+        for (int i = 0; i < distinctAddresses; i++) {
+            addresses[i] = randomPublicAddress(random);
+        }
+        // inverse cdf sampling of the zipf distribution of the address ranks
+        double[] cdf = new double[distinctAddresses];
+        double sum = 0;
+        for (int i = 0; i < distinctAddresses; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        lookups = new InetAddress[NUM_LOOKUPS];
+        for (int i = 0; i < NUM_LOOKUPS; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            lookups[i] = addresses[Math.min(rank < 0 ? -rank - 1 : rank, distinctAddresses - 1)];
+        }
+    }
+
+    private static InetAddress randomPublicAddress(Random random) throws IOException {
+        while (true) {
+            byte[] address = new byte[4];
+            random.nextBytes(address);
+            int first = address[0] & 0xFF;
+            // skip private, loopback and multicast ranges, which the database doesn't hold
+            if (first == 0 || first == 10 || first == 127 || first == 172 || first == 192 || first >= 224) {
+                continue;
+            }
+            return InetAddress.getByAddress(address);
+        }
+    }
+
+    private InetAddress next(Cursor cursor) {
+        cursor.next = (cursor.next + 1) & (NUM_LOOKUPS - 1);
+        return lookups[cursor.next];
+    }
+
+    @Benchmark
+    public CityResponse maxMindClient(Cursor cursor) throws Exception {
+        try {
+            return client.city(next(cursor));
+        } catch (AddressNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public GeoIpData reader(Cursor cursor) {
+        return GeoIpData.read(reader, next(cursor));
+    }
+
+    @Benchmark
+    public GeoIpData cachedReader(Cursor cursor) {
+        return cache.putIfAbsent(next(cursor), DATABASE, ip -> GeoIpData.read(reader, ip));
+    }
+}
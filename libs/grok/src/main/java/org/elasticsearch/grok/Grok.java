@@ -65,6 +65,8 @@ public final class Grok {
     private final Regex compiledExpression;
     private final MatcherWatchdog matcherWatchdog;
     private final List<GrokCaptureConfig> captureConfig;
+    private final GrokPrefilter prefilter;
+    private final Grok[] alternatives;
 
     public Grok(Map<String, String> patternBank, String grokPattern, Consumer<String> logCallBack) {
         this(patternBank, grokPattern, true, MatcherWatchdog.noop(), logCallBack);
@@ -78,24 +80,97 @@ public final class Grok {
         this(patternBank, grokPattern, namedCaptures, MatcherWatchdog.noop(), logCallBack);
     }
 
+    /**
+     * Builds a grok that matches any of the provided patterns, the way a single pattern made of their alternation would.
+     * <p>
+     * Each pattern is also compiled on its own, so that {@link #captures} only has to run the patterns that contain
+     * the literals they require, see {@link GrokPrefilter}. With many alternatives this avoids trying every one of
+     * them at every position of texts that only some of them can match.
+     */
+    public Grok(Map<String, String> patternBank, List<String> alternatives, MatcherWatchdog matcherWatchdog,
+                Consumer<String> logCallBack) {
+        this(patternBank, alternation(alternatives), alternatives, true, matcherWatchdog, logCallBack);
+    }
+
     private Grok(Map<String, String> patternBank, String grokPattern, boolean namedCaptures, MatcherWatchdog matcherWatchdog,
                  Consumer<String> logCallBack) {
+        this(patternBank, grokPattern, null, namedCaptures, matcherWatchdog, logCallBack);
+    }
+
+    private Grok(Map<String, String> patternBank, String grokPattern, List<String> alternatives, boolean namedCaptures,
+                 MatcherWatchdog matcherWatchdog, Consumer<String> logCallBack) {
         this.patternBank = patternBank;
         this.namedCaptures = namedCaptures;
         this.matcherWatchdog = matcherWatchdog;
 
         forbidCircularReferences();
 
-        String expression = toRegex(grokPattern);
+        this.compiledExpression = compile(toRegex(grokPattern), logCallBack);
+        this.captureConfig = captureConfig(compiledExpression);
+
+        if (alternatives == null) {
+            this.prefilter = null;
+            this.alternatives = null;
+        } else {
+            List<String> expressions = new ArrayList<>(alternatives.size());
+            for (String alternative : alternatives) {
+                expressions.add(toRegex(alternative));
+            }
+            this.prefilter = GrokPrefilter.build(expressions);
+            if (prefilter != null && alternatives.size() > 1) {
+                this.alternatives = new Grok[alternatives.size()];
+                for (int i = 0; i < alternatives.size(); i++) {
+                    this.alternatives[i] = new Grok(patternBank, namedCaptures, matcherWatchdog,
+                        compile(expressions.get(i), message -> {}));
+                }
+            } else {
+                this.alternatives = null;
+            }
+        }
+    }
+
+    /**
+     * A single alternative of a grok built from many patterns, which doesn't need to check the pattern bank again.
+     */
+    private Grok(Map<String, String> patternBank, boolean namedCaptures, MatcherWatchdog matcherWatchdog, Regex compiledExpression) {
+        this.patternBank = patternBank;
+        this.namedCaptures = namedCaptures;
+        this.matcherWatchdog = matcherWatchdog;
+        this.compiledExpression = compiledExpression;
+        this.captureConfig = captureConfig(compiledExpression);
+        this.prefilter = null;
+        this.alternatives = null;
+    }
+
+    private static String alternation(List<String> alternatives) {
+        if (alternatives.isEmpty()) {
+            throw new IllegalArgumentException("at least one pattern is required");
+        }
+        if (alternatives.size() == 1) {
+            return alternatives.get(0);
+        }
+        StringBuilder alternation = new StringBuilder();
+        for (String alternative : alternatives) {
+            if (alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(alternative).append(')');
+        }
+        return alternation.toString();
+    }
+
+    private static Regex compile(String expression, Consumer<String> logCallBack) {
         byte[] expressionBytes = expression.getBytes(StandardCharsets.UTF_8);
-        this.compiledExpression = new Regex(expressionBytes, 0, expressionBytes.length, Option.DEFAULT, UTF8Encoding.INSTANCE,
+        return new Regex(expressionBytes, 0, expressionBytes.length, Option.DEFAULT, UTF8Encoding.INSTANCE,
             message -> logCallBack.accept(message));
+    }
 
+    private static List<GrokCaptureConfig> captureConfig(Regex compiledExpression) {
         List<GrokCaptureConfig> grokCaptureConfigs = new ArrayList<>();
         for (Iterator<NameEntry> entry = compiledExpression.namedBackrefIterator(); entry.hasNext();) {
             grokCaptureConfigs.add(new GrokCaptureConfig(entry.next()));
         }
-        this.captureConfig = List.copyOf(grokCaptureConfigs);
+        return List.copyOf(grokCaptureConfigs);
     }
 
     /**
@@ -236,7 +311,11 @@ public final class Grok {
      * @return true if grok expression matches text or there is a timeout, false otherwise.
      */
     public boolean match(String text) {
-        Matcher matcher = compiledExpression.matcher(text.getBytes(StandardCharsets.UTF_8));
+        byte[] utf8Bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (prefilter != null && GrokPrefilter.isEmpty(prefilter.candidates(utf8Bytes, 0, utf8Bytes.length))) {
+            return false;
+        }
+        Matcher matcher = compiledExpression.matcher(utf8Bytes);
         int result;
         try {
             matcherWatchdog.register(matcher);
@@ -255,6 +334,15 @@ public final class Grok {
      */
     public Map<String, Object> captures(String text) {
         byte[] utf8Bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (prefilter != null) {
+            long[] candidates = prefilter.candidates(utf8Bytes, 0, utf8Bytes.length);
+            if (GrokPrefilter.isEmpty(candidates)) {
+                return null;
+            }
+            if (alternatives != null && prefilter.isFull(candidates) == false) {
+                return capturesOfCandidates(utf8Bytes, candidates);
+            }
+        }
         GrokCaptureExtracter.MapExtracter extracter = new GrokCaptureExtracter.MapExtracter(captureConfig);
         if (match(utf8Bytes, 0, utf8Bytes.length, extracter)) {
             return extracter.result();
@@ -272,7 +360,47 @@ public final class Grok {
      * @throws RuntimeException if there was a timeout
      */
     public boolean match(byte[] utf8Bytes, int offset, int length, GrokCaptureExtracter extracter) {
+        if (prefilter != null && GrokPrefilter.isEmpty(prefilter.candidates(utf8Bytes, offset, length))) {
+            return false;
+        }
         Matcher matcher = compiledExpression.matcher(utf8Bytes, offset, offset + length);
+        if (search(matcher, offset, length) == Matcher.FAILED) {
+            return false;
+        }
+        extracter.extract(utf8Bytes, offset, matcher.getEagerRegion());
+        return true;
+    }
+
+    /**
+     * Runs the alternatives that passed the prefilter one by one and extracts the captures of the match that the
+     * alternation would have found: the one that starts first and, among those, the one of the first alternative.
+     */
+    private Map<String, Object> capturesOfCandidates(byte[] utf8Bytes, long[] candidates) {
+        Grok best = null;
+        Matcher bestMatcher = null;
+        int bestStart = Integer.MAX_VALUE;
+        for (int i = 0; i < alternatives.length && bestStart > 0; i++) {
+            if ((candidates[i >> 6] & (1L << i)) == 0) {
+                continue;
+            }
+            Grok alternative = alternatives[i];
+            Matcher matcher = alternative.compiledExpression.matcher(utf8Bytes, 0, utf8Bytes.length);
+            int start = alternative.search(matcher, 0, utf8Bytes.length);
+            if (start != Matcher.FAILED && start < bestStart) {
+                best = alternative;
+                bestMatcher = matcher;
+                bestStart = start;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        GrokCaptureExtracter.MapExtracter extracter = new GrokCaptureExtracter.MapExtracter(best.captureConfig);
+        extracter.extract(utf8Bytes, 0, bestMatcher.getEagerRegion());
+        return extracter.result();
+    }
+
+    private int search(Matcher matcher, int offset, int length) {
         int result;
         try {
             matcherWatchdog.register(matcher);
@@ -284,11 +412,7 @@ public final class Grok {
             throw new RuntimeException("grok pattern matching was interrupted after [" +
                 matcherWatchdog.maxExecutionTimeInMillis() + "] ms");
         }
-        if (result == Matcher.FAILED) {
-            return false;
-        }
-        extracter.extract(utf8Bytes, offset, matcher.getEagerRegion());
-        return true;
+        return result;
     }
 
     /**
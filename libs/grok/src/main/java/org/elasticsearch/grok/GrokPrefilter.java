@@ -0,0 +1,513 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.grok;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Selects which of a list of alternative regular expressions could possibly match a text before running any of them.
+ * <p>
+ * For every expression we extract a literal that any match must contain and build an Aho-Corasick automaton over
+ * these literals, so a single pass over the bytes of the text tells which literals, and therefore which expressions,
+ * are candidates. Expressions without such a literal are always candidates.
+ */
+final class GrokPrefilter {
+
+    /**
+     * Upper bound on the number of automaton states, each of which takes a 1kb row of transitions.
+     */
+    private static final int MAX_STATES = 4096;
+
+    private final int numExpressions;
+    private final int[] transitions;
+    private final long[][] outputs;
+    private final long[] alwaysCandidates;
+
+    private GrokPrefilter(int numExpressions, int[] transitions, long[][] outputs, long[] alwaysCandidates) {
+        this.numExpressions = numExpressions;
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.alwaysCandidates = alwaysCandidates;
+    }
+
+    /**
+     * Builds a prefilter for the provided expressions or returns {@code null} if it would not be able to rule out
+     * any of them, or if some of them use constructs that depend on their position in the alternation.
+     */
+    static GrokPrefilter build(List<String> expressions) {
+        int words = (expressions.size() + 63) / 64;
+        long[] alwaysCandidates = new long[words];
+        List<byte[]> literals = new ArrayList<>(expressions.size());
+        boolean anyLiteral = false;
+        for (int i = 0; i < expressions.size(); i++) {
+            String expression = expressions.get(i);
+            if (hasBackReference(expression)) {
+                return null;
+            }
+            String literal = requiredLiteral(expression);
+            if (literal == null) {
+                alwaysCandidates[i >> 6] |= 1L << i;
+                literals.add(null);
+            } else {
+                literals.add(literal.getBytes(StandardCharsets.UTF_8));
+                anyLiteral = true;
+            }
+        }
+        if (anyLiteral == false) {
+            return null;
+        }
+
+        // build the trie
+        List<int[]> gotos = new ArrayList<>();
+        List<long[]> outputs = new ArrayList<>();
+        gotos.add(newRow());
+        outputs.add(null);
+        for (int i = 0; i < literals.size(); i++) {
+            byte[] literal = literals.get(i);
+            if (literal == null) {
+                continue;
+            }
+            int state = 0;
+            for (byte b : literal) {
+                int next = gotos.get(state)[b & 0xFF];
+                if (next == -1) {
+                    if (gotos.size() == MAX_STATES) {
+                        return null;
+                    }
+                    next = gotos.size();
+                    gotos.add(newRow());
+                    outputs.add(null);
+                    gotos.get(state)[b & 0xFF] = next;
+                }
+                state = next;
+            }
+            long[] output = outputs.get(state);
+            if (output == null) {
+                output = new long[words];
+                outputs.set(state, output);
+            }
+            output[i >> 6] |= 1L << i;
+        }
+
+        // turn it into an automaton that never backtracks by following failure links breadth first
+        int numStates = gotos.size();
+        int[] transitions = new int[numStates << 8];
+        int[] fail = new int[numStates];
+        Deque<Integer> queue = new ArrayDeque<>();
+        int[] root = gotos.get(0);
+        for (int c = 0; c < 256; c++) {
+            if (root[c] == -1) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = root[c];
+                fail[root[c]] = 0;
+                queue.add(root[c]);
+            }
+        }
+        while (queue.isEmpty() == false) {
+            int state = queue.poll();
+            long[] inherited = outputs.get(fail[state]);
+            if (inherited != null) {
+                long[] output = outputs.get(state);
+                if (output == null) {
+                    outputs.set(state, inherited);
+                } else {
+                    output = output.clone();
+                    for (int w = 0; w < words; w++) {
+                        output[w] |= inherited[w];
+                    }
+                    outputs.set(state, output);
+                }
+            }
+            int[] row = gotos.get(state);
+            for (int c = 0; c < 256; c++) {
+                int next = row[c];
+                if (next == -1) {
+                    transitions[(state << 8) | c] = transitions[(fail[state] << 8) | c];
+                } else {
+                    transitions[(state << 8) | c] = next;
+                    fail[next] = transitions[(fail[state] << 8) | c];
+                    queue.add(next);
+                }
+            }
+        }
+        return new GrokPrefilter(expressions.size(), transitions, outputs.toArray(new long[0][]), alwaysCandidates);
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[256];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /**
+     * Returns a bit set of the expressions that may match the text, one bit per expression.
+     */
+    long[] candidates(byte[] utf8Bytes, int offset, int length) {
+        long[] candidates = alwaysCandidates.clone();
+        int[] transitions = this.transitions;
+        long[][] outputs = this.outputs;
+        int state = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            state = transitions[(state << 8) | (utf8Bytes[i] & 0xFF)];
+            long[] output = outputs[state];
+            if (output != null) {
+                for (int w = 0; w < candidates.length; w++) {
+                    candidates[w] |= output[w];
+                }
+            }
+        }
+        return candidates;
+    }
+
+    static boolean isEmpty(long[] candidates) {
+        for (long word : candidates) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isFull(long[] candidates) {
+        for (int w = 0; w < candidates.length; w++) {
+            int bits = Math.min(64, numExpressions - (w << 6));
+            long full = bits == 64 ? -1L : (1L << bits) - 1;
+            if (candidates[w] != full) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Numbered and named back references refer to groups by their position in the whole expression, so the
+     * alternatives that use them can't be matched on their own.
+     */
+    static boolean hasBackReference(String expression) {
+        for (int i = 0; i < expression.length() - 1; i++) {
+            if (expression.charAt(i) == '\\') {
+                char next = expression.charAt(i + 1);
+                if (next == 'k' || next == 'g' || (next >= '1' && next <= '9')) {
+                    return true;
+                }
+                i++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the longest literal that every match of the expression must contain or returns {@code null}
+     * if there is no such literal or the expression uses syntax that we don't analyze.
+     */
+    static String requiredLiteral(String expression) {
+        LiteralExtractor extractor = new LiteralExtractor(expression);
+        List<String> literals;
+        try {
+            literals = extractor.alternation();
+            if (extractor.pos != expression.length()) {
+                return null;
+            }
+        } catch (UnsupportedSyntaxException e) {
+            return null;
+        }
+        String longest = null;
+        int longestLength = 0;
+        for (String literal : literals) {
+            int length = literal.getBytes(StandardCharsets.UTF_8).length;
+            if (length > longestLength) {
+                longest = literal;
+                longestLength = length;
+            }
+        }
+        return longest;
+    }
+
+    private static class UnsupportedSyntaxException extends RuntimeException {
+        UnsupportedSyntaxException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A small recursive descent parser over the subset of the Oniguruma ruby syntax that grok expressions use.
+     * It only has to get right where atoms start and end and which of them are plain characters, everything
+     * else just breaks the current literal.
+     */
+    private static class LiteralExtractor {
+        private final String expression;
+        private int pos;
+
+        LiteralExtractor(String expression) {
+            this.expression = expression;
+        }
+
+        /**
+         * Parses up to the closing parenthesis of the current group and returns the literals all of its matches contain.
+         */
+        List<String> alternation() {
+            List<String> literals = new ArrayList<>();
+            StringBuilder run = new StringBuilder();
+            boolean alternation = false;
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos);
+                if (c == ')') {
+                    break;
+                }
+                if (c == '|') {
+                    alternation = true;
+                    flush(run, literals);
+                    pos++;
+                    continue;
+                }
+                // literal is set for single characters, group for groups whose content is required
+                String literal = null;
+                List<String> group = null;
+                switch (c) {
+                    case '(':
+                        group = group();
+                        break;
+                    case '[':
+                        skipCharacterClass();
+                        break;
+                    case '\\':
+                        literal = escape();
+                        break;
+                    case '.':
+                    case '^':
+                    case '$':
+                        pos++;
+                        break;
+                    case '*':
+                    case '+':
+                    case '?':
+                    case '{':
+                        throw new UnsupportedSyntaxException();
+                    default:
+                        int codePoint = expression.codePointAt(pos);
+                        literal = new String(Character.toChars(codePoint));
+                        pos += Character.charCount(codePoint);
+                }
+                int min = quantifier();
+                if (literal != null) {
+                    if (min != 0) {
+                        run.append(literal);
+                    }
+                    if (min != -1) {
+                        flush(run, literals);
+                    }
+                } else {
+                    flush(run, literals);
+                    if (group != null && min != 0) {
+                        literals.addAll(group);
+                    }
+                }
+            }
+            flush(run, literals);
+            return alternation ? List.of() : literals;
+        }
+
+        private static void flush(StringBuilder run, List<String> literals) {
+            if (run.length() > 0) {
+                literals.add(run.toString());
+                run.setLength(0);
+            }
+        }
+
+        /**
+         * Parses any quantifiers following an atom and returns the minimum number of repetitions they allow
+         * or {@code -1} if there were no quantifiers.
+         */
+        private int quantifier() {
+            int min = -1;
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos);
+                int atLeast;
+                if (c == '?' || c == '*') {
+                    atLeast = 0;
+                    pos++;
+                } else if (c == '+') {
+                    atLeast = 1;
+                    pos++;
+                } else if (c == '{') {
+                    atLeast = interval();
+                } else {
+                    break;
+                }
+                min = min == -1 ? atLeast : Math.min(min, atLeast);
+                if (pos < expression.length() && (expression.charAt(pos) == '?' || expression.charAt(pos) == '+')) {
+                    // lazy and possessive modifiers don't change what must match
+                    pos++;
+                }
+            }
+            return min;
+        }
+
+        private int interval() {
+            int close = expression.indexOf('}', pos);
+            if (close == -1) {
+                throw new UnsupportedSyntaxException();
+            }
+            String interval = expression.substring(pos + 1, close);
+            int comma = interval.indexOf(',');
+            String min = comma == -1 ? interval : interval.substring(0, comma);
+            String max = comma == -1 ? "" : interval.substring(comma + 1);
+            if (isDigits(min) == false && (comma == -1 || min.isEmpty() == false)) {
+                throw new UnsupportedSyntaxException();
+            }
+            if (max.isEmpty() == false && isDigits(max) == false) {
+                throw new UnsupportedSyntaxException();
+            }
+            pos = close + 1;
+            return min.isEmpty() || Integer.parseInt(min) == 0 ? 0 : 1;
+        }
+
+        private static boolean isDigits(String s) {
+            if (s.isEmpty() || s.length() > 6) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Parses a group and returns the literals it requires or {@code null} for lookarounds.
+         */
+        private List<String> group() {
+            pos++;
+            boolean lookaround = false;
+            if (expression.startsWith("?", pos)) {
+                char kind = pos + 1 < expression.length() ? expression.charAt(pos + 1) : 0;
+                if (kind == ':' || kind == '>') {
+                    pos += 2;
+                } else if (kind == '=' || kind == '!') {
+                    lookaround = true;
+                    pos += 2;
+                } else if (kind == '<') {
+                    char next = pos + 2 < expression.length() ? expression.charAt(pos + 2) : 0;
+                    if (next == '=' || next == '!') {
+                        lookaround = true;
+                        pos += 3;
+                    } else {
+                        int close = expression.indexOf('>', pos + 2);
+                        if (close == -1) {
+                            throw new UnsupportedSyntaxException();
+                        }
+                        pos = close + 1;
+                    }
+                } else {
+                    // options, comments and other constructs change how the rest must be read
+                    throw new UnsupportedSyntaxException();
+                }
+            }
+            List<String> literals = alternation();
+            if (pos >= expression.length() || expression.charAt(pos) != ')') {
+                throw new UnsupportedSyntaxException();
+            }
+            pos++;
+            return lookaround ? null : literals;
+        }
+
+        private void skipCharacterClass() {
+            pos++;
+            if (expression.startsWith("^", pos)) {
+                pos++;
+            }
+            if (expression.startsWith("]", pos)) {
+                pos++;
+            }
+            int depth = 1;
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '[') {
+                    depth++;
+                } else if (c == ']' && --depth == 0) {
+                    return;
+                }
+            }
+            throw new UnsupportedSyntaxException();
+        }
+
+        /**
+         * Parses an escape sequence and returns the character it stands for or {@code null} if it isn't a plain character.
+         */
+        private String escape() {
+            if (pos + 1 >= expression.length()) {
+                throw new UnsupportedSyntaxException();
+            }
+            char c = expression.charAt(pos + 1);
+            pos += 2;
+            switch (c) {
+                case 'n':
+                    return "\n";
+                case 't':
+                    return "\t";
+                case 'r':
+                    return "\r";
+                case 'p':
+                case 'P':
+                case 'x':
+                    if (expression.startsWith("{", pos)) {
+                        int close = expression.indexOf('}', pos);
+                        if (close == -1) {
+                            throw new UnsupportedSyntaxException();
+                        }
+                        pos = close + 1;
+                    } else if (c == 'x') {
+                        skipHexDigits(2);
+                    } else {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    return null;
+                case 'u':
+                    skipHexDigits(4);
+                    return null;
+                case 'c':
+                    pos++;
+                    return null;
+                case '0':
+                case 'C':
+                case 'M':
+                case 'k':
+                case 'g':
+                    throw new UnsupportedSyntaxException();
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        // character types, anchors and the like
+                        return null;
+                    }
+                    if (Character.isHighSurrogate(c)) {
+                        pos--;
+                        int codePoint = expression.codePointAt(pos);
+                        pos += Character.charCount(codePoint);
+                        return new String(Character.toChars(codePoint));
+                    }
+                    return String.valueOf(c);
+            }
+        }
+
+        private void skipHexDigits(int max) {
+            for (int i = 0; i < max && pos < expression.length() && Character.digit(expression.charAt(pos), 16) != -1; i++) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.grok;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class GrokPrefilterTests extends ESTestCase {
+
+    public void testRequiredLiteral() {
+        assertThat(GrokPrefilter.requiredLiteral("foo"), equalTo("foo"));
+        assertThat(GrokPrefilter.requiredLiteral("ab\\d+longer"), equalTo("longer"));
+        assertThat(GrokPrefilter.requiredLiteral("^(?<ts>\\w+) sshd\\[\\d+\\]: "), equalTo(" sshd["));
+        assertThat(GrokPrefilter.requiredLiteral("(?:SRC=)(?<src>[0-9.]+)"), equalTo("SRC="));
+        assertThat(GrokPrefilter.requiredLiteral("abcd?"), equalTo("abc"));
+        assertThat(GrokPrefilter.requiredLiteral("abcd+"), equalTo("abcd"));
+        assertThat(GrokPrefilter.requiredLiteral("abc{0,3}x"), equalTo("ab"));
+        assertThat(GrokPrefilter.requiredLiteral("abc{2}x"), equalTo("abc"));
+        assertThat(GrokPrefilter.requiredLiteral("(?:optional)?ab"), equalTo("ab"));
+        assertThat(GrokPrefilter.requiredLiteral("(?:required)+ab"), equalTo("required"));
+        assertThat(GrokPrefilter.requiredLiteral("[a-z]+[\\]x]pos[[:alpha:]]+"), equalTo("pos"));
+        assertThat(GrokPrefilter.requiredLiteral("\\p{Alpha}tail\\x{41}"), equalTo("tail"));
+        assertThat(GrokPrefilter.requiredLiteral("é€😀x?"), equalTo("é€😀"));
+        assertThat(GrokPrefilter.requiredLiteral("(?=lookahead)x"), equalTo("x"));
+        assertThat(GrokPrefilter.requiredLiteral("a\\.b\\tc"), equalTo("a.b\tc"));
+        // alternations require none of their branches
+        assertThat(GrokPrefilter.requiredLiteral("foo|bar"), nullValue());
+        assertThat(GrokPrefilter.requiredLiteral("(?:foo|bar)x"), equalTo("x"));
+        assertThat(GrokPrefilter.requiredLiteral("\\d+"), nullValue());
+        // we don't try to understand options or malformed expressions
+        assertThat(GrokPrefilter.requiredLiteral("(?i)foo"), nullValue());
+        assertThat(GrokPrefilter.requiredLiteral("(?x) f o o"), nullValue());
+        assertThat(GrokPrefilter.requiredLiteral("foo)"), nullValue());
+        assertThat(GrokPrefilter.requiredLiteral("(foo"), nullValue());
+        assertThat(GrokPrefilter.requiredLiteral("foo{"), nullValue());
+        assertThat(GrokPrefilter.requiredLiteral("foo\\"), nullValue());
+    }
+
+    public void testBackReferencesDisablePrefilter() {
+        assertThat(GrokPrefilter.build(List.of("foo", "(?<x>a)\\k<x>")), nullValue());
+        assertThat(GrokPrefilter.build(List.of("foo", "(a)\\1")), nullValue());
+        assertThat(GrokPrefilter.build(List.of("\\d+", "\\w+")), nullValue());
+    }
+
+    public void testCandidates() {
+        GrokPrefilter prefilter = GrokPrefilter.build(List.of("she", "he", "\\d+", "hers", "(?:his)x"));
+        assertThat(candidates(prefilter, "ushers"), equalTo(List.of(0, 1, 2, 3)));
+        assertThat(candidates(prefilter, "this"), equalTo(List.of(2, 4)));
+        assertThat(candidates(prefilter, "hex"), equalTo(List.of(1, 2)));
+        assertThat(candidates(prefilter, "hisx"), equalTo(List.of(2, 4)));
+        assertThat(candidates(prefilter, ""), equalTo(List.of(2)));
+    }
+
+    public void testRandomCandidates() {
+        int numLiterals = between(1, 150);
+        List<String> literals = new ArrayList<>();
+        for (int i = 0; i < numLiterals; i++) {
+            literals.add(randomAlphaOfLengthBetween(1, 4).toLowerCase(Locale.ROOT));
+        }
+        GrokPrefilter prefilter = GrokPrefilter.build(literals);
+        for (int iter = 0; iter < 100; iter++) {
+            String text = randomAlphaOfLengthBetween(0, 50).toLowerCase(Locale.ROOT);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < numLiterals; i++) {
+                if (text.contains(literals.get(i))) {
+                    expected.add(i);
+                }
+            }
+            assertThat(text, candidates(prefilter, text), equalTo(expected));
+            long[] candidates = prefilter.candidates(text.getBytes(StandardCharsets.UTF_8), 0, text.length());
+            assertThat(GrokPrefilter.isEmpty(candidates), equalTo(expected.isEmpty()));
+            assertThat(prefilter.isFull(candidates), equalTo(expected.size() == numLiterals));
+        }
+    }
+
+    private static List<Integer> candidates(GrokPrefilter prefilter, String text) {
+        byte[] utf8Bytes = ("__" + text).getBytes(StandardCharsets.UTF_8);
+        long[] candidates = prefilter.candidates(utf8Bytes, 2, utf8Bytes.length - 2);
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < candidates.length * 64; i++) {
+            if ((candidates[i >> 6] & (1L << i)) != 0) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+}
@@ -903,6 +903,47 @@ public class GrokTests extends ESTestCase {
         assertThat(message.get(), containsString("regular expression has redundant nested repeat operator"));
     }
 
+    public void testAlternatives() {
+        testAlternatives(false);
+        testAlternatives(true);
+    }
+
+    private void testAlternatives(boolean ecsCompatibility) {
+        Map<String, String> bank = Grok.getBuiltinPatterns(ecsCompatibility);
+        List<String> patterns = new ArrayList<>(List.of(
+            "^%{SYSLOGTIMESTAMP:timestamp} %{WORD:host} sshd\\[%{POSINT:pid}\\]: Accepted password for %{USERNAME:user}",
+            "DROP IN=%{WORD:in} OUT=%{WORD:out}? SRC=%{IP:src} DST=%{IP:dst}",
+            "ACCEPT IN=%{WORD:in} SRC=%{IP:src}",
+            "(?<action>deny|allow) from %{IP:src}",
+            "SRC=%{IP:src}",
+            "%{NUMBER:bytes:int} bytes"
+        ));
+        List<String> lines = List.of(
+            "Nov  5 10:01:02 gateway sshd[42]: Accepted password for admin from 10.0.0.1",
+            "kernel: DROP IN=eth0 OUT= SRC=10.1.2.3 DST=10.3.2.1 LEN=40",
+            "kernel: ACCEPT IN=eth1 SRC=10.1.2.3 DST=10.3.2.1",
+            "sent 1024 bytes after SRC=192.168.0.1",
+            "deny from 10.9.9.9",
+            "SRC=not-an-ip deny from somewhere",
+            "nothing to see here",
+            ""
+        );
+        for (int iter = 0; iter < 10; iter++) {
+            Collections.shuffle(patterns, random());
+            List<String> alternatives = randomSubsetOf(between(1, patterns.size()), patterns);
+            Grok alternation = new Grok(bank, alternatives, MatcherWatchdog.noop(), logger::warn);
+            StringBuilder combined = new StringBuilder();
+            for (String alternative : alternatives) {
+                combined.append(combined.length() == 0 ? "" : "|").append("(?:").append(alternative).append(")");
+            }
+            Grok grok = new Grok(bank, combined.toString(), logger::warn);
+            for (String line : lines) {
+                assertThat(alternatives + " " + line, alternation.captures(line), equalTo(grok.captures(line)));
+                assertThat(alternatives + " " + line, alternation.match(line), equalTo(grok.match(line)));
+            }
+        }
+    }
+
     private void assertGrokedField(String fieldName) {
         String line = "foo";
         // test both with and without ECS compatibility
@@ -17,6 +17,7 @@ import org.elasticsearch.ingest.ConfigurationUtils;
 import org.elasticsearch.ingest.IngestDocument;
 import org.elasticsearch.ingest.Processor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,7 +43,7 @@ public final class GrokProcessor extends AbstractProcessor {
         super(tag, description);
         this.matchField = matchField;
         this.matchPatterns = matchPatterns;
-        this.grok = new Grok(patternBank, combinePatterns(matchPatterns, traceMatch), matcherWatchdog, logger::debug);
+        this.grok = new Grok(patternBank, alternatives(matchPatterns, traceMatch), matcherWatchdog, logger::debug);
         this.traceMatch = traceMatch;
         this.ignoreMissing = ignoreMissing;
         // Joni warnings are only emitted on an attempt to match, and the warning emitted for every call to match which is too verbose
@@ -102,6 +103,21 @@ public final class GrokProcessor extends AbstractProcessor {
         return matchPatterns;
     }
 
+    /**
+     * The patterns to match, each wrapped in a group that records its index if {@code traceMatch} is set. Matching any
+     * of them is the same as matching {@link #combinePatterns}.
+     */
+    static List<String> alternatives(List<String> patterns, boolean traceMatch) {
+        if (traceMatch == false || patterns.size() == 1) {
+            return patterns;
+        }
+        List<String> alternatives = new ArrayList<>(patterns.size());
+        for (int i = 0; i < patterns.size(); i++) {
+            alternatives.add("(?<" + PATTERN_MATCH_KEY + "." + i + ">" + patterns.get(i) + ")");
+        }
+        return alternatives;
+    }
+
     static String combinePatterns(List<String> patterns, boolean traceMatch) {
         String combinedPattern;
         if (patterns.size() > 1) {
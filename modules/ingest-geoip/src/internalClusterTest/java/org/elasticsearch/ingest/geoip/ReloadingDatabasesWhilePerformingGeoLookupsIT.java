@@ -179,10 +179,10 @@ public class ReloadingDatabasesWhilePerformingGeoLookupsIT extends ESTestCase {
     private static void lazyLoadReaders(DatabaseRegistry databaseRegistry) throws IOException {
         if (databaseRegistry.get("GeoLite2-City.mmdb") != null) {
             databaseRegistry.get("GeoLite2-City.mmdb").getDatabaseType();
-            databaseRegistry.get("GeoLite2-City.mmdb").getCity(InetAddresses.forString("2.125.160.216"));
+            databaseRegistry.get("GeoLite2-City.mmdb").getGeoData(InetAddresses.forString("2.125.160.216"));
         }
         databaseRegistry.get("GeoLite2-City-Test.mmdb").getDatabaseType();
-        databaseRegistry.get("GeoLite2-City-Test.mmdb").getCity(InetAddresses.forString("2.125.160.216"));
+        databaseRegistry.get("GeoLite2-City-Test.mmdb").getGeoData(InetAddresses.forString("2.125.160.216"));
     }
 
 }
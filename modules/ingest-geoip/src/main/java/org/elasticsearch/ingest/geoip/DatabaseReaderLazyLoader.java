@@ -8,27 +8,17 @@
 
 package org.elasticsearch.ingest.geoip;
 
-import com.maxmind.db.NoCache;
-import com.maxmind.db.Reader;
-import com.maxmind.geoip2.DatabaseReader;
-import com.maxmind.geoip2.exception.AddressNotFoundException;
-import com.maxmind.geoip2.model.AbstractResponse;
-import com.maxmind.geoip2.model.AsnResponse;
-import com.maxmind.geoip2.model.CityResponse;
-import com.maxmind.geoip2.model.CountryResponse;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.util.SetOnce;
 import org.elasticsearch.SpecialPermission;
 import org.elasticsearch.core.Booleans;
-import org.elasticsearch.common.CheckedBiFunction;
 import org.elasticsearch.common.CheckedSupplier;
-import org.elasticsearch.core.SuppressForbidden;
-import org.elasticsearch.core.internal.io.IOUtils;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -52,8 +42,10 @@ class DatabaseReaderLazyLoader implements Closeable {
     private final String md5;
     private final GeoIpCache cache;
     private final Path databasePath;
-    private final CheckedSupplier<DatabaseReader, IOException> loader;
-    final SetOnce<DatabaseReader> databaseReader;
+    // the cache key of this database, kept around to not have to convert the path on every lookup
+    private final String cacheKey;
+    private final CheckedSupplier<MaxMindDbReader, IOException> loader;
+    final SetOnce<MaxMindDbReader> databaseReader;
 
     // cache the database type so that we do not re-read it on every pipeline execution
     final SetOnce<String> databaseType;
@@ -65,9 +57,10 @@ class DatabaseReaderLazyLoader implements Closeable {
         this(cache, databasePath, md5, createDatabaseLoader(databasePath));
     }
 
-    DatabaseReaderLazyLoader(GeoIpCache cache, Path databasePath, String md5, CheckedSupplier<DatabaseReader, IOException> loader) {
+    DatabaseReaderLazyLoader(GeoIpCache cache, Path databasePath, String md5, CheckedSupplier<MaxMindDbReader, IOException> loader) {
         this.cache = cache;
         this.databasePath = Objects.requireNonNull(databasePath);
+        this.cacheKey = databasePath.toString();
         this.md5 = md5;
         this.loader = Objects.requireNonNull(loader);
         this.databaseReader = new SetOnce<>();
@@ -152,16 +145,19 @@ class DatabaseReaderLazyLoader implements Closeable {
         return Files.newInputStream(databasePath);
     }
 
-    CityResponse getCity(InetAddress ipAddress) {
-        return getResponse(ipAddress, DatabaseReader::city);
-    }
-
-    CountryResponse getCountry(InetAddress ipAddress) {
-        return getResponse(ipAddress, DatabaseReader::country);
-    }
-
-    AsnResponse getAsn(InetAddress ipAddress) {
-        return getResponse(ipAddress, DatabaseReader::asn);
+    /**
+     * Returns the values of the record of the given address, or {@link GeoIpData#NOT_FOUND} if the database doesn't have one.
+     */
+    GeoIpData getGeoData(InetAddress ipAddress) {
+        SpecialPermission.check();
+        return AccessController.doPrivileged((PrivilegedAction<GeoIpData>) () ->
+            cache.putIfAbsent(ipAddress, cacheKey, ip -> {
+                try {
+                    return GeoIpData.read(get(), ip);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
     }
 
     boolean preLookup() {
@@ -178,22 +174,7 @@ class DatabaseReaderLazyLoader implements Closeable {
         return currentUsages.get();
     }
 
-    private <T extends AbstractResponse> T getResponse(InetAddress ipAddress,
-                                                       CheckedBiFunction<DatabaseReader, InetAddress, T, Exception> responseProvider) {
-        SpecialPermission.check();
-        return AccessController.doPrivileged((PrivilegedAction<T>) () ->
-            cache.putIfAbsent(ipAddress, databasePath.toString(), ip -> {
-                try {
-                    return responseProvider.apply(get(), ipAddress);
-                } catch (AddressNotFoundException e) {
-                    throw new GeoIpProcessor.AddressNotFoundRuntimeException(e);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }));
-    }
-
-    DatabaseReader get() throws IOException {
+    MaxMindDbReader get() throws IOException {
         if (databaseReader.get() == null) {
             synchronized (databaseReader) {
                 if (databaseReader.get() == null) {
@@ -222,7 +203,7 @@ class DatabaseReaderLazyLoader implements Closeable {
     }
 
     private void doClose() throws IOException {
-        IOUtils.close(databaseReader.get());
+        // the database is unmapped once the reader is garbage collected
         int numEntriesEvicted = cache.purgeCacheEntriesForDatabase(databasePath);
         LOGGER.info("evicted [{}] entries from cache after reloading database [{}]", numEntriesEvicted, databasePath);
         if (deleteDatabaseFileOnClose) {
@@ -231,21 +212,8 @@ class DatabaseReaderLazyLoader implements Closeable {
         }
     }
 
-    private static CheckedSupplier<DatabaseReader, IOException> createDatabaseLoader(Path databasePath) {
-        return () -> {
-            DatabaseReader.Builder builder = createDatabaseBuilder(databasePath).withCache(NoCache.getInstance());
-            if (LOAD_DATABASE_ON_HEAP) {
-                builder.fileMode(Reader.FileMode.MEMORY);
-            } else {
-                builder.fileMode(Reader.FileMode.MEMORY_MAPPED);
-            }
-            return builder.build();
-        };
-    }
-
-    @SuppressForbidden(reason = "Maxmind API requires java.io.File")
-    private static DatabaseReader.Builder createDatabaseBuilder(Path databasePath) {
-        return new DatabaseReader.Builder(databasePath.toFile());
+    private static CheckedSupplier<MaxMindDbReader, IOException> createDatabaseLoader(Path databasePath) {
+        return () -> MaxMindDbReader.open(databasePath, LOAD_DATABASE_ON_HEAP);
     }
 
 }
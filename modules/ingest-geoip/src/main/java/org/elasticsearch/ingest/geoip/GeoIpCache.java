@@ -7,61 +7,97 @@
  */
 package org.elasticsearch.ingest.geoip;
 
-import com.maxmind.db.NodeCache;
-import com.maxmind.geoip2.model.AbstractResponse;
-import org.elasticsearch.common.cache.Cache;
-import org.elasticsearch.common.cache.CacheBuilder;
-
 import java.net.InetAddress;
 import java.nio.file.Path;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
 
 /**
  * The in-memory cache for the geoip data. There should only be 1 instance of this class..
- * This cache differs from the maxmind's {@link NodeCache} such that this cache stores the deserialized Json objects to avoid the
- * cost of deserialization for each lookup (cached or not). This comes at slight expense of higher memory usage, but significant
- * reduction of CPU usage.
+ * This cache stores the values that were read from the database for an ip address, so that repeated lookups of the same
+ * address don't need to walk the database again.
+ *
+ * The cache is set associative: every key maps to a small set of slots, and a new entry replaces the oldest entry of its
+ * set once the set is full. Reads are lock-free and don't allocate, since ingest threads hit the cache for every document
+ * that goes through a geoip processor, and a least-recently-used cache would need to take a lock on every hit.
  */
 final class GeoIpCache {
-    private final Cache<CacheKey, AbstractResponse> cache;
+    private static final int WAYS = 4;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int ways;
+    private final int sets;
+    // only used to order the entries of a set by age, so lost updates don't matter
+    private long clock;
 
     //package private for testing
     GeoIpCache(long maxSize) {
         if (maxSize < 0) {
             throw new IllegalArgumentException("geoip max cache size must be 0 or greater");
         }
-        this.cache = CacheBuilder.<CacheKey, AbstractResponse>builder().setMaximumWeight(maxSize).build();
+        int capacity = (int) Math.min(maxSize, Integer.MAX_VALUE - 8);
+        this.ways = Math.min(WAYS, capacity);
+        this.sets = ways == 0 ? 0 : capacity / ways;
+        this.entries = new AtomicReferenceArray<>(sets * ways);
     }
 
     @SuppressWarnings("unchecked")
-    <T extends AbstractResponse> T putIfAbsent(InetAddress ip,
-                                               String databasePath,
-                                               Function<InetAddress, AbstractResponse> retrieveFunction) {
-
-        //can't use cache.computeIfAbsent due to the elevated permissions for the jackson (run via the cache loader)
-        CacheKey cacheKey = new CacheKey(ip, databasePath);
+    <T> T putIfAbsent(InetAddress ip, String databasePath, Function<InetAddress, T> retrieveFunction) {
+        if (sets == 0) {
+            return retrieveFunction.apply(ip);
+        }
+        byte[] address = ip.getAddress();
+        long high = high(address);
+        long low = low(address);
+        int first = firstSlot(high, low, databasePath);
         //intentionally non-locking for simplicity...it's OK if we re-put the same key/value in the cache during a race condition.
-        AbstractResponse response = cache.get(cacheKey);
-        if (response == null) {
-            response = retrieveFunction.apply(ip);
-            cache.put(cacheKey, response);
+        Entry entry = find(first, high, low, databasePath);
+        if (entry != null) {
+            return (T) entry.value;
+        }
+        T value = retrieveFunction.apply(ip);
+        int victim = first;
+        for (int slot = first; slot < first + ways; slot++) {
+            Entry existing = entries.get(slot);
+            if (existing == null) {
+                victim = slot;
+                break;
+            }
+            Entry oldest = entries.get(victim);
+            if (oldest != null && existing.stamp < oldest.stamp) {
+                victim = slot;
+            }
         }
-        return (T) response;
+        entries.set(victim, new Entry(high, low, databasePath, value, clock++));
+        return value;
     }
 
     //only useful for testing
-    AbstractResponse get(InetAddress ip, String databasePath) {
-        CacheKey cacheKey = new CacheKey(ip, databasePath);
-        return cache.get(cacheKey);
+    Object get(InetAddress ip, String databasePath) {
+        if (sets == 0) {
+            return null;
+        }
+        byte[] address = ip.getAddress();
+        Entry entry = find(firstSlot(high(address), low(address), databasePath), high(address), low(address), databasePath);
+        return entry == null ? null : entry.value;
+    }
+
+    private Entry find(int first, long high, long low, String databasePath) {
+        for (int slot = first; slot < first + ways; slot++) {
+            Entry entry = entries.get(slot);
+            if (entry != null && entry.matches(high, low, databasePath)) {
+                return entry;
+            }
+        }
+        return null;
     }
 
     public int purgeCacheEntriesForDatabase(Path databaseFile) {
         String databasePath = databaseFile.toString();
         int counter = 0;
-        for (CacheKey key : cache.keys()) {
-            if (key.databasePath.equals(databasePath)) {
-                cache.invalidate(key);
+        for (int slot = 0; slot < entries.length(); slot++) {
+            Entry entry = entries.get(slot);
+            if (entry != null && entry.databasePath.equals(databasePath) && entries.compareAndSet(slot, entry, null)) {
                 counter++;
             }
         }
@@ -69,38 +105,64 @@ final class GeoIpCache {
     }
 
     public int count() {
-        return cache.count();
+        int count = 0;
+        for (int slot = 0; slot < entries.length(); slot++) {
+            if (entries.get(slot) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int firstSlot(long high, long low, String databasePath) {
+        long hash = (high * 31 + low) * 0x9E3779B97F4A7C15L + databasePath.hashCode();
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 32;
+        return (int) ((hash & Long.MAX_VALUE) % sets) * ways;
+    }
+
+    private static long high(byte[] address) {
+        return address.length == 16 ? bytesToLong(address, 0) : 0L;
+    }
+
+    private static long low(byte[] address) {
+        // ipv4 addresses are mapped into ipv6 as ::ffff:a.b.c.d
+        return address.length == 16 ? bytesToLong(address, 8) : 0xFFFF00000000L | (bytesToLong(address, 0) >>> 32);
+    }
+
+    private static long bytesToLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < Math.min(bytes.length, offset + 8); i++) {
+            value |= (bytes[i] & 0xFFL) << (8 * (7 - (i - offset)));
+        }
+        return value;
     }
 
     /**
-     * The key to use for the cache. Since this cache can span multiple geoip processors that all use different databases, the database
-     * path is needed to be included in the cache key. For example, if we only used the IP address as the key the City and ASN the same
-     * IP may be in both with different values and we need to cache both.
+     * An entry of the cache. Since this cache can span multiple geoip processors that all use different databases, the
+     * database path is needed to be included in the key. For example, if we only used the IP address as the key the City
+     * and ASN the same IP may be in both with different values and we need to cache both. Addresses are kept as 128 bit
+     * ipv6 addresses.
      */
-    private static class CacheKey {
+    private static final class Entry {
 
-        private final InetAddress ip;
+        private final long high;
+        private final long low;
         private final String databasePath;
+        private final Object value;
+        private final long stamp;
 
-        private CacheKey(InetAddress ip, String databasePath) {
-            this.ip = ip;
+        private Entry(long high, long low, String databasePath, Object value, long stamp) {
+            this.high = high;
+            this.low = low;
             this.databasePath = databasePath;
+            this.value = value;
+            this.stamp = stamp;
         }
 
-        //generated
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            CacheKey cacheKey = (CacheKey) o;
-            return Objects.equals(ip, cacheKey.ip) &&
-                Objects.equals(databasePath, cacheKey.databasePath);
-        }
-
-        //generated
-        @Override
-        public int hashCode() {
-            return Objects.hash(ip, databasePath);
+        private boolean matches(long high, long low, String databasePath) {
+            return this.high == high && this.low == low && (this.databasePath == databasePath || this.databasePath.equals(databasePath));
         }
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.ingest.geoip;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.elasticsearch.ingest.geoip.MaxMindDbReader.key;
+
+/**
+ * The values of a geoip database record that the geoip processor can add to documents. This is what the
+ * {@link GeoIpCache} holds per ip address and database, instead of the full responses of the MaxMind client.
+ */
+final class GeoIpData {
+
+    /**
+     * Marks addresses for which the database has no record.
+     */
+    static final GeoIpData NOT_FOUND = new GeoIpData();
+
+    private static final byte[] COUNTRY = key("country");
+    private static final byte[] CONTINENT = key("continent");
+    private static final byte[] SUBDIVISIONS = key("subdivisions");
+    private static final byte[] CITY = key("city");
+    private static final byte[] LOCATION = key("location");
+    private static final byte[] ISO_CODE = key("iso_code");
+    private static final byte[] NAMES = key("names");
+    // the processor always returns english names
+    private static final byte[] EN = key("en");
+    private static final byte[] TIME_ZONE = key("time_zone");
+    private static final byte[] LATITUDE = key("latitude");
+    private static final byte[] LONGITUDE = key("longitude");
+    private static final byte[] AUTONOMOUS_SYSTEM_NUMBER = key("autonomous_system_number");
+    private static final byte[] AUTONOMOUS_SYSTEM_ORGANIZATION = key("autonomous_system_organization");
+
+    private String countryIsoCode;
+    private String countryName;
+    private String continentName;
+    private String subdivisionIsoCode;
+    private String subdivisionName;
+    private String cityName;
+    private String timezone;
+    private Double latitude;
+    private Double longitude;
+    private Integer asn;
+    private String organizationName;
+    private String network;
+
+    private GeoIpData() {}
+
+    /**
+     * Reads the values of the record of the given address from the database.
+     */
+    static GeoIpData read(MaxMindDbReader reader, InetAddress ipAddress) {
+        byte[] address = ipAddress.getAddress();
+        long result = reader.lookup(address);
+        if (result < 0) {
+            return NOT_FOUND;
+        }
+        int record = (int) (result >>> 8);
+        int prefixLength = (int) (result & 0xFF);
+        String databaseType = reader.getDatabaseType();
+        GeoIpData data = new GeoIpData();
+        if (databaseType.endsWith(GeoIpProcessor.ASN_DB_SUFFIX)) {
+            Long asn = reader.readLong(reader.path(record, AUTONOMOUS_SYSTEM_NUMBER));
+            data.asn = asn == null ? null : asn.intValue();
+            data.organizationName = reader.readString(reader.path(record, AUTONOMOUS_SYSTEM_ORGANIZATION));
+            data.network = network(address, prefixLength);
+            return data;
+        }
+        int country = reader.path(record, COUNTRY);
+        data.countryIsoCode = reader.readString(reader.path(country, ISO_CODE));
+        data.countryName = reader.readString(reader.path(country, NAMES, EN));
+        data.continentName = reader.readString(reader.path(record, CONTINENT, NAMES, EN));
+        if (databaseType.endsWith(GeoIpProcessor.CITY_DB_SUFFIX)) {
+            int subdivision = reader.lastArrayElement(reader.path(record, SUBDIVISIONS));
+            data.subdivisionIsoCode = reader.readString(reader.path(subdivision, ISO_CODE));
+            data.subdivisionName = reader.readString(reader.path(subdivision, NAMES, EN));
+            data.cityName = reader.readString(reader.path(record, CITY, NAMES, EN));
+            int location = reader.path(record, LOCATION);
+            data.timezone = reader.readString(reader.path(location, TIME_ZONE));
+            data.latitude = reader.readDouble(reader.path(location, LATITUDE));
+            data.longitude = reader.readDouble(reader.path(location, LONGITUDE));
+        }
+        return data;
+    }
+
+    /**
+     * Formats the network that holds the address the same way the MaxMind client does.
+     */
+    private static String network(byte[] address, int prefixLength) {
+        byte[] network = new byte[address.length];
+        for (int i = 0, remaining = prefixLength; i < address.length && remaining > 0; i++, remaining -= 8) {
+            network[i] = remaining >= 8 ? address[i] : (byte) (address[i] & (0xFF << (8 - remaining)));
+        }
+        try {
+            return InetAddress.getByAddress(network).getHostAddress() + "/" + prefixLength;
+        } catch (UnknownHostException e) {
+            throw new AssertionError("address of illegal length", e);
+        }
+    }
+
+    String getCountryIsoCode() {
+        return countryIsoCode;
+    }
+
+    String getCountryName() {
+        return countryName;
+    }
+
+    String getContinentName() {
+        return continentName;
+    }
+
+    String getSubdivisionIsoCode() {
+        return subdivisionIsoCode;
+    }
+
+    String getSubdivisionName() {
+        return subdivisionName;
+    }
+
+    String getCityName() {
+        return cityName;
+    }
+
+    String getTimezone() {
+        return timezone;
+    }
+
+    Double getLatitude() {
+        return latitude;
+    }
+
+    Double getLongitude() {
+        return longitude;
+    }
+
+    Integer getAsn() {
+        return asn;
+    }
+
+    String getOrganizationName() {
+        return organizationName;
+    }
+
+    String getNetwork() {
+        return network;
+    }
+}
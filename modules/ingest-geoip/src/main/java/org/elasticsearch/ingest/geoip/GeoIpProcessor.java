@@ -8,16 +8,6 @@
 
 package org.elasticsearch.ingest.geoip;
 
-import com.maxmind.db.Network;
-import com.maxmind.geoip2.model.AsnResponse;
-import com.maxmind.geoip2.model.CityResponse;
-import com.maxmind.geoip2.model.CountryResponse;
-import com.maxmind.geoip2.record.City;
-import com.maxmind.geoip2.record.Continent;
-import com.maxmind.geoip2.record.Country;
-import com.maxmind.geoip2.record.Location;
-import com.maxmind.geoip2.record.Subdivision;
-
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.ResourceNotFoundException;
 import org.elasticsearch.cluster.ClusterState;
@@ -59,9 +49,9 @@ public final class GeoIpProcessor extends AbstractProcessor {
         " because Elasticsearch no longer includes the default Maxmind geoip databases. This setting will be removed in Elasticsearch 9.0";
 
     public static final String TYPE = "geoip";
-    private static final String CITY_DB_SUFFIX = "-City";
-    private static final String COUNTRY_DB_SUFFIX = "-Country";
-    private static final String ASN_DB_SUFFIX = "-ASN";
+    static final String CITY_DB_SUFFIX = "-City";
+    static final String COUNTRY_DB_SUFFIX = "-Country";
+    static final String ASN_DB_SUFFIX = "-ASN";
 
     private final String field;
     private final Supplier<Boolean> isValid;
@@ -167,25 +157,17 @@ public final class GeoIpProcessor extends AbstractProcessor {
         try {
             final String databaseType = lazyLoader.getDatabaseType();
             final InetAddress ipAddress = InetAddresses.forString(ip);
+            final GeoIpData data = lazyLoader.getGeoData(ipAddress);
+            if (data == GeoIpData.NOT_FOUND) {
+                return Collections.emptyMap();
+            }
             Map<String, Object> geoData;
             if (databaseType.endsWith(CITY_DB_SUFFIX)) {
-                try {
-                    geoData = retrieveCityGeoData(lazyLoader, ipAddress);
-                } catch (AddressNotFoundRuntimeException e) {
-                    geoData = Collections.emptyMap();
-                }
+                geoData = retrieveCityGeoData(data, ipAddress);
             } else if (databaseType.endsWith(COUNTRY_DB_SUFFIX)) {
-                try {
-                    geoData = retrieveCountryGeoData(lazyLoader, ipAddress);
-                } catch (AddressNotFoundRuntimeException e) {
-                    geoData = Collections.emptyMap();
-                }
+                geoData = retrieveCountryGeoData(data, ipAddress);
             } else if (databaseType.endsWith(ASN_DB_SUFFIX)) {
-                try {
-                    geoData = retrieveAsnGeoData(lazyLoader, ipAddress);
-                } catch (AddressNotFoundRuntimeException e) {
-                    geoData = Collections.emptyMap();
-                }
+                geoData = retrieveAsnGeoData(data, ipAddress);
             } else {
                 throw new ElasticsearchParseException("Unsupported database type [" + lazyLoader.getDatabaseType()
                     + "]", new IllegalStateException());
@@ -217,14 +199,7 @@ public final class GeoIpProcessor extends AbstractProcessor {
         return properties;
     }
 
-    private Map<String, Object> retrieveCityGeoData(DatabaseReaderLazyLoader lazyLoader, InetAddress ipAddress) {
-        CityResponse response = lazyLoader.getCity(ipAddress);
-        Country country = response.getCountry();
-        City city = response.getCity();
-        Location location = response.getLocation();
-        Continent continent = response.getContinent();
-        Subdivision subdivision = response.getMostSpecificSubdivision();
-
+    private Map<String, Object> retrieveCityGeoData(GeoIpData data, InetAddress ipAddress) {
         Map<String, Object> geoData = new HashMap<>();
         for (Property property : this.properties) {
             switch (property) {
@@ -232,19 +207,19 @@ public final class GeoIpProcessor extends AbstractProcessor {
                     geoData.put("ip", NetworkAddress.format(ipAddress));
                     break;
                 case COUNTRY_ISO_CODE:
-                    String countryIsoCode = country.getIsoCode();
+                    String countryIsoCode = data.getCountryIsoCode();
                     if (countryIsoCode != null) {
                         geoData.put("country_iso_code", countryIsoCode);
                     }
                     break;
                 case COUNTRY_NAME:
-                    String countryName = country.getName();
+                    String countryName = data.getCountryName();
                     if (countryName != null) {
                         geoData.put("country_name", countryName);
                     }
                     break;
                 case CONTINENT_NAME:
-                    String continentName = continent.getName();
+                    String continentName = data.getContinentName();
                     if (continentName != null) {
                         geoData.put("continent_name", continentName);
                     }
@@ -252,34 +227,34 @@ public final class GeoIpProcessor extends AbstractProcessor {
                 case REGION_ISO_CODE:
                     // ISO 3166-2 code for country subdivisions.
                     // See iso.org/iso-3166-country-codes.html
-                    String countryIso = country.getIsoCode();
-                    String subdivisionIso = subdivision.getIsoCode();
+                    String countryIso = data.getCountryIsoCode();
+                    String subdivisionIso = data.getSubdivisionIsoCode();
                     if (countryIso != null && subdivisionIso != null) {
                         String regionIsoCode = countryIso + "-" + subdivisionIso;
                         geoData.put("region_iso_code", regionIsoCode);
                     }
                     break;
                 case REGION_NAME:
-                    String subdivisionName = subdivision.getName();
+                    String subdivisionName = data.getSubdivisionName();
                     if (subdivisionName != null) {
                         geoData.put("region_name", subdivisionName);
                     }
                     break;
                 case CITY_NAME:
-                    String cityName = city.getName();
+                    String cityName = data.getCityName();
                     if (cityName != null) {
                         geoData.put("city_name", cityName);
                     }
                     break;
                 case TIMEZONE:
-                    String locationTimeZone = location.getTimeZone();
+                    String locationTimeZone = data.getTimezone();
                     if (locationTimeZone != null) {
                         geoData.put("timezone", locationTimeZone);
                     }
                     break;
                 case LOCATION:
-                    Double latitude = location.getLatitude();
-                    Double longitude = location.getLongitude();
+                    Double latitude = data.getLatitude();
+                    Double longitude = data.getLongitude();
                     if (latitude != null && longitude != null) {
                         Map<String, Object> locationObject = new HashMap<>();
                         locationObject.put("lat", latitude);
@@ -292,11 +267,7 @@ public final class GeoIpProcessor extends AbstractProcessor {
         return geoData;
     }
 
-    private Map<String, Object> retrieveCountryGeoData(DatabaseReaderLazyLoader lazyLoader, InetAddress ipAddress) {
-        CountryResponse response = lazyLoader.getCountry(ipAddress);
-        Country country = response.getCountry();
-        Continent continent = response.getContinent();
-
+    private Map<String, Object> retrieveCountryGeoData(GeoIpData data, InetAddress ipAddress) {
         Map<String, Object> geoData = new HashMap<>();
         for (Property property : this.properties) {
             switch (property) {
@@ -304,19 +275,19 @@ public final class GeoIpProcessor extends AbstractProcessor {
                     geoData.put("ip", NetworkAddress.format(ipAddress));
                     break;
                 case COUNTRY_ISO_CODE:
-                    String countryIsoCode = country.getIsoCode();
+                    String countryIsoCode = data.getCountryIsoCode();
                     if (countryIsoCode != null) {
                         geoData.put("country_iso_code", countryIsoCode);
                     }
                     break;
                 case COUNTRY_NAME:
-                    String countryName = country.getName();
+                    String countryName = data.getCountryName();
                     if (countryName != null) {
                         geoData.put("country_name", countryName);
                     }
                     break;
                 case CONTINENT_NAME:
-                    String continentName = continent.getName();
+                    String continentName = data.getContinentName();
                     if (continentName != null) {
                         geoData.put("continent_name", continentName);
                     }
@@ -326,11 +297,10 @@ public final class GeoIpProcessor extends AbstractProcessor {
         return geoData;
     }
 
-    private Map<String, Object> retrieveAsnGeoData(DatabaseReaderLazyLoader lazyLoader, InetAddress ipAddress) {
-        AsnResponse response = lazyLoader.getAsn(ipAddress);
-        Integer asn = response.getAutonomousSystemNumber();
-        String organization_name = response.getAutonomousSystemOrganization();
-        Network network = response.getNetwork();
+    private Map<String, Object> retrieveAsnGeoData(GeoIpData data, InetAddress ipAddress) {
+        Integer asn = data.getAsn();
+        String organization_name = data.getOrganizationName();
+        String network = data.getNetwork();
 
         Map<String, Object> geoData = new HashMap<>();
         for (Property property : this.properties) {
@@ -350,7 +320,7 @@ public final class GeoIpProcessor extends AbstractProcessor {
                     break;
                 case NETWORK:
                     if (network != null) {
-                        geoData.put("network", network.toString());
+                        geoData.put("network", network);
                     }
                     break;
             }
@@ -481,17 +451,6 @@ public final class GeoIpProcessor extends AbstractProcessor {
         }
     }
 
-    // Geoip2's AddressNotFoundException is checked and due to the fact that we need run their code
-    // inside a PrivilegedAction code block, we are forced to catch any checked exception and rethrow
-    // it with an unchecked exception.
-    //package private for testing
-    static final class AddressNotFoundRuntimeException extends RuntimeException {
-
-        AddressNotFoundRuntimeException(Throwable cause) {
-            super(cause);
-        }
-    }
-
     enum Property {
 
         IP,
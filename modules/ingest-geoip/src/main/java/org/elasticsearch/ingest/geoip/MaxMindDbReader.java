@@ -0,0 +1,442 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.ingest.geoip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A reader for the MaxMind DB file format that decodes values in place, straight from a (usually memory mapped) buffer.
+ *
+ * Unlike the MaxMind client, which decodes the whole record of an address into an object graph, this reader only
+ * navigates to the values that are asked for, so a lookup only allocates the values it returns. All reads use absolute
+ * positions, so a single instance can be shared by all threads without any locking.
+ *
+ * See https://maxmind.github.io/MaxMind-DB/ for the specification of the format.
+ */
+final class MaxMindDbReader {
+
+    private static final byte[] METADATA_START_MARKER = {
+        (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, 'M', 'a', 'x', 'M', 'i', 'n', 'd', '.', 'c', 'o', 'm' };
+    private static final int METADATA_MAX_SIZE = 128 * 1024;
+    private static final int DATA_SECTION_SEPARATOR_SIZE = 16;
+
+    // the data types of the format
+    private static final int POINTER = 1;
+    private static final int UTF8_STRING = 2;
+    private static final int DOUBLE = 3;
+    private static final int UINT16 = 5;
+    private static final int UINT32 = 6;
+    private static final int MAP = 7;
+    private static final int INT32 = 8;
+    private static final int UINT64 = 9;
+    private static final int ARRAY = 11;
+    private static final int BOOLEAN = 14;
+    private static final int FLOAT = 15;
+
+    private static final byte[] NODE_COUNT = key("node_count");
+    private static final byte[] RECORD_SIZE = key("record_size");
+    private static final byte[] IP_VERSION = key("ip_version");
+    private static final byte[] DATABASE_TYPE = key("database_type");
+
+    private final ByteBuffer buffer;
+    private final String databaseType;
+    private final int ipVersion;
+    private final int nodeCount;
+    private final int recordSize;
+    private final int nodeByteSize;
+    private final int searchTreeSize;
+    private final int dataSectionStart;
+    private final int ipv4Start;
+
+    /**
+     * Opens the database at the given path, either by memory mapping it or by reading it onto the heap.
+     */
+    static MaxMindDbReader open(Path path, boolean onHeap) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("database [" + path + "] is too large");
+            }
+            ByteBuffer buffer;
+            if (onHeap) {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("unexpected end of file while reading [" + path + "]");
+                    }
+                }
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return new MaxMindDbReader(buffer, path.toString());
+        }
+    }
+
+    MaxMindDbReader(ByteBuffer buffer, String description) throws IOException {
+        this.buffer = buffer;
+        int metadataStart = findMetadataStart(buffer);
+        if (metadataStart < 0) {
+            throw new IOException("could not find the metadata of MaxMind database [" + description + "]");
+        }
+        try {
+            this.databaseType = readString(metadataStart, mapValue(metadataStart, metadataStart, DATABASE_TYPE));
+            this.ipVersion = readMetadataInt(metadataStart, IP_VERSION);
+            this.nodeCount = readMetadataInt(metadataStart, NODE_COUNT);
+            this.recordSize = readMetadataInt(metadataStart, RECORD_SIZE);
+        } catch (RuntimeException e) {
+            throw new IOException("invalid metadata in MaxMind database [" + description + "]", e);
+        }
+        if (databaseType == null) {
+            throw new IOException("missing database type in MaxMind database [" + description + "]");
+        }
+        if (recordSize != 24 && recordSize != 28 && recordSize != 32) {
+            throw new IOException("unsupported record size [" + recordSize + "] in MaxMind database [" + description + "]");
+        }
+        if (ipVersion != 4 && ipVersion != 6) {
+            throw new IOException("unsupported ip version [" + ipVersion + "] in MaxMind database [" + description + "]");
+        }
+        this.nodeByteSize = recordSize / 4;
+        if ((long) nodeCount * nodeByteSize + DATA_SECTION_SEPARATOR_SIZE > metadataStart) {
+            throw new IOException("invalid node count [" + nodeCount + "] in MaxMind database [" + description + "]");
+        }
+        this.searchTreeSize = nodeCount * nodeByteSize;
+        this.dataSectionStart = searchTreeSize + DATA_SECTION_SEPARATOR_SIZE;
+        int node = 0;
+        if (ipVersion == 6) {
+            // ipv4 addresses are looked up under ::/96 of ipv6 databases
+            for (int i = 0; i < 96 && node < nodeCount; i++) {
+                node = readNode(node, 0);
+            }
+        }
+        this.ipv4Start = node;
+    }
+
+    String getDatabaseType() {
+        return databaseType;
+    }
+
+    /**
+     * Looks up the record of an address.
+     *
+     * @param address the raw bytes of an ipv4 or ipv6 address
+     * @return the position of the record in the data section shifted left by 8 bits, ORed with the prefix length of the
+     *         network that holds the address, or {@code -1} if the database has no record for the address
+     */
+    long lookup(byte[] address) {
+        int bitLength = address.length * 8;
+        if (bitLength == 128 && ipVersion == 4) {
+            throw new IllegalArgumentException("cannot look up an ipv6 address in the ipv4-only database [" + databaseType + "]");
+        }
+        int record = bitLength == 32 ? ipv4Start : 0;
+        int prefixLength = 0;
+        for (; prefixLength < bitLength && record < nodeCount; prefixLength++) {
+            int bit = 1 & ((address[prefixLength >> 3] & 0xFF) >> (7 - (prefixLength & 7)));
+            record = readNode(record, bit);
+        }
+        if (record == nodeCount) {
+            return -1;
+        } else if (record < nodeCount) {
+            throw new IllegalStateException("invalid search tree in the MaxMind database [" + databaseType + "]");
+        }
+        long position = (long) record - nodeCount + searchTreeSize;
+        return position << 8 | prefixLength;
+    }
+
+    private int readNode(int node, int bit) {
+        int offset = node * nodeByteSize;
+        switch (recordSize) {
+            case 24:
+                return readUnsigned(offset + bit * 3, 3);
+            case 28:
+                int middle = buffer.get(offset + 3) & 0xFF;
+                if (bit == 0) {
+                    return (middle & 0xF0) << 20 | readUnsigned(offset, 3);
+                } else {
+                    return (middle & 0x0F) << 24 | readUnsigned(offset + 4, 3);
+                }
+            default:
+                return readUnsigned(offset + bit * 4, 4);
+        }
+    }
+
+    /**
+     * Returns the position of the value under the given path of map keys, starting at the value at the given position,
+     * or {@code -1} if there is no such value.
+     */
+    int path(int position, byte[]... keys) {
+        for (byte[] key : keys) {
+            if (position < 0) {
+                return -1;
+            }
+            position = mapValue(dataSectionStart, position, key);
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of the last element of the array at the given position, or {@code -1} if it is missing or empty.
+     */
+    int lastArrayElement(int position) {
+        if (position < 0) {
+            return -1;
+        }
+        position = resolve(dataSectionStart, position);
+        long control = control(position);
+        if (type(control) != ARRAY || size(control) == 0) {
+            return -1;
+        }
+        int element = payload(control);
+        for (int i = 1; i < size(control); i++) {
+            element = skip(element);
+        }
+        return element;
+    }
+
+    /**
+     * Reads the string at the given position, or returns {@code null} if it is missing or not a string.
+     */
+    String readString(int position) {
+        return readString(dataSectionStart, position);
+    }
+
+    /**
+     * Reads the floating point number at the given position, or returns {@code null} if it is missing or not a number.
+     */
+    Double readDouble(int position) {
+        if (position < 0) {
+            return null;
+        }
+        position = resolve(dataSectionStart, position);
+        long control = control(position);
+        switch (type(control)) {
+            case DOUBLE:
+                return buffer.getDouble(payload(control));
+            case FLOAT:
+                return (double) buffer.getFloat(payload(control));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads the integer at the given position, or returns {@code null} if it is missing or not an integer.
+     */
+    Long readLong(int position) {
+        if (position < 0) {
+            return null;
+        }
+        return readLong(dataSectionStart, position);
+    }
+
+    private String readString(int base, int position) {
+        if (position < 0) {
+            return null;
+        }
+        position = resolve(base, position);
+        long control = control(position);
+        if (type(control) != UTF8_STRING) {
+            return null;
+        }
+        int size = size(control);
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = buffer.get(payload(control) + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Long readLong(int base, int position) {
+        position = resolve(base, position);
+        long control = control(position);
+        int size = size(control);
+        switch (type(control)) {
+            case INT32:
+                long value = readUnsignedLong(payload(control), size);
+                // int32 values are stored with as few bytes as possible, but are signed once all four bytes are used
+                return size == 4 ? (long) (int) value : value;
+            case UINT16:
+            case UINT32:
+            case UINT64:
+                if (size > 8 || (size == 8 && (buffer.get(payload(control)) & 0x80) != 0)) {
+                    return null;
+                }
+                return readUnsignedLong(payload(control), size);
+            default:
+                return null;
+        }
+    }
+
+    private int readMetadataInt(int metadataStart, byte[] key) {
+        int position = mapValue(metadataStart, metadataStart, key);
+        Long value = position < 0 ? null : readLong(metadataStart, position);
+        if (value == null || value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid value for [" + new String(key, StandardCharsets.UTF_8) + "]");
+        }
+        return value.intValue();
+    }
+
+    private int mapValue(int base, int position, byte[] key) {
+        position = resolve(base, position);
+        long control = control(position);
+        if (type(control) != MAP) {
+            return -1;
+        }
+        int entry = payload(control);
+        for (int i = 0; i < size(control); i++) {
+            int value = skip(entry);
+            if (keyEquals(base, entry, key)) {
+                return value;
+            }
+            entry = skip(value);
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int base, int position, byte[] key) {
+        position = resolve(base, position);
+        long control = control(position);
+        if (type(control) != UTF8_STRING || size(control) != key.length) {
+            return false;
+        }
+        int payload = payload(control);
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(payload + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Follows the pointer at the given position, if there is one. Pointers never point to other pointers.
+     */
+    private int resolve(int base, int position) {
+        int ctrl = buffer.get(position) & 0xFF;
+        if (ctrl >>> 5 != POINTER) {
+            return position;
+        }
+        int size = (ctrl >>> 3) & 0x3;
+        int value = ctrl & 0x7;
+        switch (size) {
+            case 0:
+                return base + (value << 8 | readUnsigned(position + 1, 1));
+            case 1:
+                return base + (value << 16 | readUnsigned(position + 1, 2)) + 2048;
+            case 2:
+                return base + (value << 24 | readUnsigned(position + 1, 3)) + 526336;
+            default:
+                return base + readUnsigned(position + 1, 4);
+        }
+    }
+
+    /**
+     * Returns the position right after the value at the given position, without following pointers.
+     */
+    private int skip(int position) {
+        int ctrl = buffer.get(position) & 0xFF;
+        if (ctrl >>> 5 == POINTER) {
+            return position + 2 + ((ctrl >>> 3) & 0x3);
+        }
+        long control = control(position);
+        int next = payload(control);
+        switch (type(control)) {
+            case MAP:
+                for (int i = 0; i < size(control); i++) {
+                    next = skip(skip(next));
+                }
+                return next;
+            case ARRAY:
+                for (int i = 0; i < size(control); i++) {
+                    next = skip(next);
+                }
+                return next;
+            case BOOLEAN:
+                // the value is the size
+                return next;
+            default:
+                return next + size(control);
+        }
+    }
+
+    /**
+     * Decodes the control byte(s) of the (non pointer) value at the given position. The type, size and the position of
+     * the payload are packed into a long to keep lookups allocation free.
+     */
+    private long control(int position) {
+        int ctrl = buffer.get(position++) & 0xFF;
+        int type = ctrl >>> 5;
+        if (type == 0) {
+            type = 7 + (buffer.get(position++) & 0xFF);
+        }
+        int size = ctrl & 0x1F;
+        if (size == 29) {
+            size = 29 + readUnsigned(position, 1);
+            position += 1;
+        } else if (size == 30) {
+            size = 285 + readUnsigned(position, 2);
+            position += 2;
+        } else if (size == 31) {
+            size = 65821 + readUnsigned(position, 3);
+            position += 3;
+        }
+        return (long) position << 32 | (long) size << 8 | type;
+    }
+
+    private static int type(long control) {
+        return (int) (control & 0xFF);
+    }
+
+    private static int size(long control) {
+        return (int) ((control >>> 8) & 0xFFFFFF);
+    }
+
+    private static int payload(long control) {
+        return (int) (control >>> 32);
+    }
+
+    private int readUnsigned(int position, int size) {
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            value = value << 8 | (buffer.get(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private long readUnsignedLong(int position, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = value << 8 | (buffer.get(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static int findMetadataStart(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int from = Math.max(0, limit - METADATA_MAX_SIZE);
+        outer:
+        for (int i = limit - METADATA_START_MARKER.length; i >= from; i--) {
+            for (int j = 0; j < METADATA_START_MARKER.length; j++) {
+                if (buffer.get(i + j) != METADATA_START_MARKER[j]) {
+                    continue outer;
+                }
+            }
+            return i + METADATA_START_MARKER.length;
+        }
+        return -1;
+    }
+
+    static byte[] key(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
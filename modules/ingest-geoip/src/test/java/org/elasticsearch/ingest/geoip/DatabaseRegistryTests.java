@@ -8,7 +8,6 @@
 
 package org.elasticsearch.ingest.geoip;
 
-import com.maxmind.db.InvalidDatabaseException;
 import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.util.LuceneTestCase;
 import org.elasticsearch.Version;
@@ -183,7 +182,7 @@ public class DatabaseRegistryTests extends ESTestCase {
         // First time GeoIP2-City.mmdb is downloaded, so a pipeline reload can happen:
         verify(ingestService, times(numPipelinesToBeReloaded)).reloadPipeline(anyString());
         //30 days check passed but we mocked mmdb data so parsing will fail
-        expectThrows(InvalidDatabaseException.class, database::get);
+        expectThrows(IOException.class, database::get);
     }
 
     public void testCheckDatabases_dontCheckDatabaseOnNonIngestNode() throws Exception {
@@ -12,6 +12,10 @@ import com.maxmind.geoip2.model.AbstractResponse;
 import org.elasticsearch.common.network.InetAddresses;
 import org.elasticsearch.test.ESTestCase;
 
+import java.net.InetAddress;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.mockito.Mockito.mock;
 
 public class GeoIpCacheTests extends ESTestCase {
@@ -59,4 +63,43 @@ public class GeoIpCacheTests extends ESTestCase {
         IllegalArgumentException ex = expectThrows(IllegalArgumentException.class, () ->  new GeoIpCache(-1));
         assertEquals("geoip max cache size must be 0 or greater", ex.getMessage());
     }
+
+    public void testSizeIsBounded() throws Exception {
+        int maxSize = randomIntBetween(1, 64);
+        GeoIpCache cache = new GeoIpCache(maxSize);
+        int numAddresses = randomIntBetween(maxSize, maxSize * 8);
+        for (int i = 0; i < numAddresses; i++) {
+            InetAddress address = InetAddress.getByAddress(new byte[] { 10, (byte) (i >>> 16), (byte) (i >>> 8), (byte) i });
+            Object value = new Object();
+            assertSame(value, cache.putIfAbsent(address, "path/to/db", ip -> value));
+            // the last added value is never the one that is evicted
+            assertSame(value, cache.get(address, "path/to/db"));
+            assertThat(cache.count(), lessThanOrEqualTo(maxSize));
+        }
+    }
+
+    public void testZeroSizeDisablesCaching() {
+        GeoIpCache cache = new GeoIpCache(0);
+        AbstractResponse response = mock(AbstractResponse.class);
+        assertSame(response, cache.putIfAbsent(InetAddresses.forString("127.0.0.1"), "path/to/db", ip -> response));
+        assertNull(cache.get(InetAddresses.forString("127.0.0.1"), "path/to/db"));
+        assertEquals(0, cache.count());
+    }
+
+    public void testPurgeCacheEntriesForDatabase() {
+        GeoIpCache cache = new GeoIpCache(100);
+        AbstractResponse response1 = mock(AbstractResponse.class);
+        AbstractResponse response2 = mock(AbstractResponse.class);
+
+        cache.putIfAbsent(InetAddresses.forString("127.0.0.1"), "path/to/db1", ip -> response1);
+        cache.putIfAbsent(InetAddresses.forString("::1"), "path/to/db1", ip -> response1);
+        cache.putIfAbsent(InetAddresses.forString("127.0.0.1"), "path/to/db2", ip -> response2);
+        assertEquals(3, cache.count());
+
+        assertEquals(2, cache.purgeCacheEntriesForDatabase(Path.of("path/to/db1")));
+        assertEquals(1, cache.count());
+        assertNull(cache.get(InetAddresses.forString("127.0.0.1"), "path/to/db1"));
+        assertNull(cache.get(InetAddresses.forString("::1"), "path/to/db1"));
+        assertSame(response2, cache.get(InetAddresses.forString("127.0.0.1"), "path/to/db2"));
+    }
 }
@@ -8,7 +8,6 @@
 
 package org.elasticsearch.ingest.geoip;
 
-import com.maxmind.geoip2.DatabaseReader;
 
 import org.elasticsearch.common.CheckedSupplier;
 import org.elasticsearch.core.PathUtils;
@@ -18,6 +17,7 @@ import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -318,8 +318,11 @@ public class GeoIpProcessorTests extends ESTestCase {
 
     private CheckedSupplier<DatabaseReaderLazyLoader, IOException> loader(final String path) {
         final Supplier<InputStream> databaseInputStreamSupplier = () -> GeoIpProcessor.class.getResourceAsStream(path);
-        final CheckedSupplier<DatabaseReader, IOException> loader =
-            () -> new DatabaseReader.Builder(databaseInputStreamSupplier.get()).build();
+        final CheckedSupplier<MaxMindDbReader, IOException> loader = () -> {
+            try (InputStream in = databaseInputStreamSupplier.get()) {
+                return new MaxMindDbReader(ByteBuffer.wrap(in.readAllBytes()), path);
+            }
+        };
         final GeoIpCache cache = new GeoIpCache(1000);
         DatabaseReaderLazyLoader lazyLoader = new DatabaseReaderLazyLoader(cache, PathUtils.get(path), null, loader) {
 
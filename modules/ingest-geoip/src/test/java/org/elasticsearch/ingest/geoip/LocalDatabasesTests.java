@@ -8,7 +8,6 @@
 
 package org.elasticsearch.ingest.geoip;
 
-import com.maxmind.geoip2.model.CityResponse;
 import org.elasticsearch.common.network.InetAddresses;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.core.TimeValue;
@@ -121,8 +120,8 @@ public class LocalDatabasesTests extends ESTestCase {
 
             DatabaseReaderLazyLoader loader = localDatabases.getDatabase("GeoLite2-City.mmdb");
             assertThat(loader.getDatabaseType(), equalTo("GeoLite2-City"));
-            CityResponse cityResponse = loader.getCity(InetAddresses.forString("89.160.20.128"));
-            assertThat(cityResponse.getCity().getName(), equalTo("Tumba"));
+            GeoIpData geoData = loader.getGeoData(InetAddresses.forString("89.160.20.128"));
+            assertThat(geoData.getCityName(), equalTo("Tumba"));
             assertThat(cache.count(), equalTo(1));
         }
 
@@ -134,8 +133,8 @@ public class LocalDatabasesTests extends ESTestCase {
 
             DatabaseReaderLazyLoader loader = localDatabases.getDatabase("GeoLite2-City.mmdb");
             assertThat(loader.getDatabaseType(), equalTo("GeoLite2-City"));
-            CityResponse cityResponse = loader.getCity(InetAddresses.forString("89.160.20.128"));
-            assertThat(cityResponse.getCity().getName(), equalTo("Linköping"));
+            GeoIpData geoData = loader.getGeoData(InetAddresses.forString("89.160.20.128"));
+            assertThat(geoData.getCityName(), equalTo("Linköping"));
             assertThat(cache.count(), equalTo(1));
         });
 
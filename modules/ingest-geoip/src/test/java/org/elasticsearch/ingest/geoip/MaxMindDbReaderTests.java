@@ -0,0 +1,220 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.ingest.geoip;
+
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.AddressNotFoundException;
+import com.maxmind.geoip2.model.AsnResponse;
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.CountryResponse;
+
+import org.apache.lucene.util.Constants;
+import org.elasticsearch.common.network.InetAddresses;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class MaxMindDbReaderTests extends ESTestCase {
+
+    public void testCity() throws Exception {
+        MaxMindDbReader reader = open("GeoLite2-City-Test.mmdb");
+        assertThat(reader.getDatabaseType(), equalTo("GeoLite2-City"));
+
+        GeoIpData data = GeoIpData.read(reader, InetAddresses.forString("89.160.20.128"));
+        assertThat(data.getCountryIsoCode(), equalTo("SE"));
+        assertThat(data.getCountryName(), equalTo("Sweden"));
+        assertThat(data.getContinentName(), equalTo("Europe"));
+        assertThat(data.getSubdivisionIsoCode(), equalTo("E"));
+        assertThat(data.getSubdivisionName(), equalTo("Östergötland County"));
+        assertThat(data.getCityName(), equalTo("Linköping"));
+        assertThat(data.getTimezone(), equalTo("Europe/Stockholm"));
+        assertThat(data.getLatitude(), equalTo(58.4167));
+        assertThat(data.getLongitude(), equalTo(15.6167));
+        assertThat(data.getAsn(), nullValue());
+        assertThat(data.getNetwork(), nullValue());
+
+        data = GeoIpData.read(reader, InetAddresses.forString("2.125.160.216"));
+        assertThat(data.getCountryIsoCode(), equalTo("GB"));
+        // the most specific subdivision is the last one
+        assertThat(data.getSubdivisionIsoCode(), equalTo("WBK"));
+        assertThat(data.getSubdivisionName(), equalTo("West Berkshire"));
+        assertThat(data.getCityName(), equalTo("Boxford"));
+        assertThat(data.getLatitude(), equalTo(51.75));
+        assertThat(data.getLongitude(), equalTo(-1.25));
+    }
+
+    public void testCityIpv6() throws Exception {
+        MaxMindDbReader reader = open(randomFrom("GeoLite2-City-Test.mmdb", "GeoIP2-City-Test.mmdb"));
+        GeoIpData data = GeoIpData.read(reader, InetAddresses.forString("2001:218::1"));
+        assertThat(data.getCountryIsoCode(), equalTo("JP"));
+        assertThat(data.getCountryName(), equalTo("Japan"));
+        assertThat(data.getContinentName(), equalTo("Asia"));
+        assertThat(data.getTimezone(), equalTo("Asia/Tokyo"));
+        assertThat(data.getLatitude(), equalTo(35.68536));
+        assertThat(data.getLongitude(), equalTo(139.75309));
+        assertThat(data.getSubdivisionIsoCode(), nullValue());
+        assertThat(data.getCityName(), nullValue());
+    }
+
+    public void testAddressNotFound() throws Exception {
+        MaxMindDbReader reader = open(randomFrom("GeoLite2-City-Test.mmdb", "GeoIP2-City-Test.mmdb"));
+        String address = randomFrom("127.0.0.1", "8.8.8.8", "::1");
+        assertThat(reader.lookup(InetAddresses.forString(address).getAddress()), equalTo(-1L));
+        assertThat(GeoIpData.read(reader, InetAddresses.forString(address)), sameInstance(GeoIpData.NOT_FOUND));
+    }
+
+    public void testPrefixLength() throws Exception {
+        MaxMindDbReader reader = open("GeoIP2-City-Test.mmdb");
+        long result = reader.lookup(InetAddresses.forString("216.160.83.56").getAddress());
+        int prefixLength = (int) (result & 0xFF);
+        // the prefix of ipv4 addresses is relative to the ipv4 address, also in databases that hold ipv6 networks
+        assertTrue("prefix length " + prefixLength, prefixLength > 0 && prefixLength <= 32);
+        if (prefixLength < 32) {
+            // all addresses of the network resolve to the same record
+            byte[] other = InetAddresses.forString("216.160.83.56").getAddress();
+            other[3] ^= 1;
+            assertThat(reader.lookup(other), equalTo(result));
+        }
+    }
+
+    public void testOnHeapAndMappedAreEquivalent() throws Exception {
+        assumeFalse("mapped files can't be deleted on windows", Constants.WINDOWS);
+        Path database = copy("GeoIP2-City-Test.mmdb");
+        MaxMindDbReader mapped = MaxMindDbReader.open(database, false);
+        MaxMindDbReader onHeap = MaxMindDbReader.open(database, true);
+        for (String address : new String[] { "89.160.20.128", "216.160.83.56", "2001:218::1", "127.0.0.1" }) {
+            byte[] bytes = InetAddresses.forString(address).getAddress();
+            assertThat(address, onHeap.lookup(bytes), equalTo(mapped.lookup(bytes)));
+        }
+    }
+
+    public void testSameDataAsMaxMindClient() throws Exception {
+        for (String name : new String[] {
+            "GeoLite2-City-Test.mmdb",
+            "GeoIP2-City-Test.mmdb",
+            "GeoLite2-City.mmdb",
+            "GeoLite2-Country.mmdb",
+            "GeoLite2-ASN.mmdb" }) {
+            MaxMindDbReader reader = open(name);
+            int found = 0;
+            try (DatabaseReader client = new DatabaseReader.Builder(copy(name).toFile()).build()) {
+                int iterations = scaledRandomIntBetween(500, 5000);
+                for (int i = 0; i < iterations; i++) {
+                    InetAddress address = randomAddress();
+                    if (assertSameData(name, reader, client, address)) {
+                        found++;
+                    }
+                }
+            }
+            assertThat(name, found, greaterThan(0));
+        }
+    }
+
+    /**
+     * Checks that the reader finds the same record as the MaxMind client and returns whether the address was found.
+     */
+    private static boolean assertSameData(String name, MaxMindDbReader reader, DatabaseReader client, InetAddress address)
+        throws Exception {
+        String description = name + " " + address.getHostAddress();
+        GeoIpData data = GeoIpData.read(reader, address);
+        long result = reader.lookup(address.getAddress());
+        int prefixLength = (int) (result & 0xFF);
+        try {
+            if (reader.getDatabaseType().endsWith(GeoIpProcessor.ASN_DB_SUFFIX)) {
+                AsnResponse response = client.asn(address);
+                assertThat(description, data.getAsn(), equalTo(response.getAutonomousSystemNumber()));
+                assertThat(description, data.getOrganizationName(), equalTo(response.getAutonomousSystemOrganization()));
+                assertThat(description, data.getNetwork(), equalTo(response.getNetwork().toString()));
+                assertThat(description, prefixLength, equalTo(response.getNetwork().getPrefixLength()));
+            } else if (reader.getDatabaseType().endsWith(GeoIpProcessor.CITY_DB_SUFFIX)) {
+                CityResponse response = client.city(address);
+                assertThat(description, data.getCountryIsoCode(), equalTo(response.getCountry().getIsoCode()));
+                assertThat(description, data.getCountryName(), equalTo(response.getCountry().getName()));
+                assertThat(description, data.getContinentName(), equalTo(response.getContinent().getName()));
+                assertThat(description, data.getSubdivisionIsoCode(), equalTo(response.getMostSpecificSubdivision().getIsoCode()));
+                assertThat(description, data.getSubdivisionName(), equalTo(response.getMostSpecificSubdivision().getName()));
+                assertThat(description, data.getCityName(), equalTo(response.getCity().getName()));
+                assertThat(description, data.getTimezone(), equalTo(response.getLocation().getTimeZone()));
+                assertThat(description, data.getLatitude(), equalTo(response.getLocation().getLatitude()));
+                assertThat(description, data.getLongitude(), equalTo(response.getLocation().getLongitude()));
+                assertThat(description, prefixLength, equalTo(response.getTraits().getNetwork().getPrefixLength()));
+            } else {
+                CountryResponse response = client.country(address);
+                assertThat(description, data.getCountryIsoCode(), equalTo(response.getCountry().getIsoCode()));
+                assertThat(description, data.getCountryName(), equalTo(response.getCountry().getName()));
+                assertThat(description, data.getContinentName(), equalTo(response.getContinent().getName()));
+                assertThat(description, prefixLength, equalTo(response.getTraits().getNetwork().getPrefixLength()));
+            }
+            return true;
+        } catch (AddressNotFoundException e) {
+            assertThat(description, result, equalTo(-1L));
+            assertThat(description, data, sameInstance(GeoIpData.NOT_FOUND));
+            return false;
+        }
+    }
+
+    /**
+     * Picks a random ipv4 or ipv6 address, or an address of one of the networks of the test databases so that the small ones
+     * get hits too.
+     */
+    private static InetAddress randomAddress() throws IOException {
+        final byte[] address;
+        switch (randomInt(2)) {
+            case 0:
+                address = randomByteArrayOfLength(4);
+                break;
+            case 1:
+                address = randomByteArrayOfLength(16);
+                break;
+            default:
+                address = InetAddresses.forString(
+                    randomFrom("89.160.20.128", "2.125.160.216", "216.160.83.56", "81.2.69.142", "2001:218::1", "2a02:cf40::")
+                ).getAddress();
+                // anywhere in the surrounding /16 (ipv4) or /112 (ipv6), in and out of the network
+                address[address.length - 1] = randomByte();
+                address[address.length - 2] = randomByte();
+                break;
+        }
+        return InetAddress.getByAddress(address);
+    }
+
+    public void testInvalidDatabase() {
+        byte[] bytes = randomByteArrayOfLength(randomIntBetween(0, 1024));
+        IOException e = expectThrows(IOException.class, () -> new MaxMindDbReader(ByteBuffer.wrap(bytes), "invalid.mmdb"));
+        assertThat(e.getMessage(), containsString("invalid.mmdb"));
+    }
+
+    private MaxMindDbReader open(String name) throws IOException {
+        if (randomBoolean()) {
+            return MaxMindDbReader.open(copy(name), Constants.WINDOWS || randomBoolean());
+        }
+        try (InputStream in = MaxMindDbReaderTests.class.getResourceAsStream("/" + name)) {
+            return new MaxMindDbReader(ByteBuffer.wrap(in.readAllBytes()), name);
+        }
+    }
+
+    private Path copy(String name) throws IOException {
+        Path database = createTempDir().resolve(name);
+        try (InputStream in = MaxMindDbReaderTests.class.getResourceAsStream("/" + name)) {
+            Files.copy(in, database);
+        }
+        return database;
+    }
+}
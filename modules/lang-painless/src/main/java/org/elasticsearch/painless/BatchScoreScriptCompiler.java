@@ -0,0 +1,1392 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.painless;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.fielddata.LeafNumericFieldData;
+import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.index.mapper.DoubleScriptFieldType;
+import org.elasticsearch.index.mapper.LongScriptFieldType;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.painless.ir.BinaryImplNode;
+import org.elasticsearch.painless.ir.BinaryMathNode;
+import org.elasticsearch.painless.ir.CastNode;
+import org.elasticsearch.painless.ir.ClassNode;
+import org.elasticsearch.painless.ir.ConstantNode;
+import org.elasticsearch.painless.ir.DeclarationBlockNode;
+import org.elasticsearch.painless.ir.DeclarationNode;
+import org.elasticsearch.painless.ir.ExpressionNode;
+import org.elasticsearch.painless.ir.FlipDefIndexNode;
+import org.elasticsearch.painless.ir.FunctionNode;
+import org.elasticsearch.painless.ir.IRNode;
+import org.elasticsearch.painless.ir.InvokeCallDefNode;
+import org.elasticsearch.painless.ir.InvokeCallMemberNode;
+import org.elasticsearch.painless.ir.InvokeCallNode;
+import org.elasticsearch.painless.ir.LoadBraceDefNode;
+import org.elasticsearch.painless.ir.LoadDotDefNode;
+import org.elasticsearch.painless.ir.LoadDotNode;
+import org.elasticsearch.painless.ir.LoadMapShortcutNode;
+import org.elasticsearch.painless.ir.LoadVariableNode;
+import org.elasticsearch.painless.ir.ReturnNode;
+import org.elasticsearch.painless.ir.StatementNode;
+import org.elasticsearch.painless.ir.StaticNode;
+import org.elasticsearch.painless.ir.TryNode;
+import org.elasticsearch.painless.ir.UnaryMathNode;
+import org.elasticsearch.painless.lookup.PainlessCast;
+import org.elasticsearch.painless.lookup.PainlessField;
+import org.elasticsearch.painless.lookup.PainlessMethod;
+import org.elasticsearch.painless.lookup.def;
+import org.elasticsearch.painless.spi.annotation.NonDeterministicAnnotation;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDBinaryType;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDCast;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDConstant;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDExpressionType;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDField;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDFlags;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDFunction;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDMethod;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDName;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDOperation;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDUnaryType;
+import org.elasticsearch.painless.symbol.IRDecorations.IRDValue;
+import org.elasticsearch.script.DocReader;
+import org.elasticsearch.script.LeafReaderContextSupplier;
+import org.elasticsearch.script.ScoreScript;
+import org.elasticsearch.search.lookup.SearchLookup;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiles straight-line numeric score scripts, such as {@code Math.log(2 + doc['likes'].value) * _score}, into trees of operations
+ * that score blocks of documents at once over primitive arrays, see {@link ScoreScript.BatchScoreScript}.
+ * <p>
+ * The operations are derived from the IR tree of the script once the semantic analysis has typed it and inserted its casts, so they
+ * follow the same typing rules as the class compiled from the script. Only the scripts that are made of local variable declarations
+ * followed by an arithmetic expression over numeric doc values, numeric parameters, {@code _score}, constants and {@link Math} methods
+ * are supported. The types of {@code def} values, like those of doc values and parameters, are only known once the parameters of the
+ * script and the mapping are, so operations over them are typed with the promotion rules of {@link AnalyzerCaster} when a
+ * {@link Plan} is bound. Other scripts, and supported scripts that use fields that are not numeric or parameters that are not numbers,
+ * are only executed one document at a time by the class compiled from the script. A block is also scored one document at a time
+ * whenever a document misses a value of a field or an integer division by zero happens, so that errors are the same.
+ */
+public final class BatchScoreScriptCompiler {
+
+    private BatchScoreScriptCompiler() {}
+
+    /**
+     * The getters of {@link ScoreScript} that the variables of score scripts are declared with, by name of variable.
+     */
+    private static final Map<String, String> SCRIPT_VARIABLES = Map.of("doc", "getDoc", "params", "getParams", "_score", "get_score");
+
+    /**
+     * Returns the plan of the given score script, or {@code null} if it can't score blocks of documents.
+     *
+     * @param classNode the IR tree of the script, after constant folding
+     */
+    static Plan compile(ClassNode classNode) {
+        for (FunctionNode function : classNode.getFunctionsNodes()) {
+            if ("execute".equals(function.getDecorationValue(IRDName.class))) {
+                return new Analysis().plan(function.getBlockNode().getStatementsNodes());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a factory that also creates {@link ScoreScript.BatchScoreScript}s with the given plan.
+     *
+     * @param factory the factory of the class compiled from the script
+     */
+    static ScoreScript.Factory newFactory(ScoreScript.Factory factory, Plan plan) {
+        return new Factory(factory, plan);
+    }
+
+    /**
+     * The expressions that a score script is compiled to, which are carried with the class compiled from the script and stored along
+     * with it in the {@link CompiledScriptCache}.
+     */
+    public static final class Plan {
+        private final List<Expression> locals;
+        private final Expression score;
+
+        private Plan(List<Expression> locals, Expression score) {
+            this.locals = locals;
+            this.score = score;
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeInt(locals.size());
+            for (Expression local : locals) {
+                local.writeTo(out);
+            }
+            score.writeTo(out);
+        }
+
+        static Plan readFrom(DataInput in) throws IOException {
+            int numLocals = in.readInt();
+            List<Expression> locals = new ArrayList<>(numLocals);
+            for (int i = 0; i < numLocals; i++) {
+                locals.add(Expression.readFrom(in, i));
+            }
+            return new Plan(locals, Expression.readFrom(in, numLocals));
+        }
+    }
+
+    /**
+     * Derives the expressions of a plan from the statements of the execute method.
+     */
+    private static final class Analysis {
+        private final Set<String> scriptVariables = new HashSet<>();
+        private final Map<String, Integer> locals = new HashMap<>();
+        private final List<Expression> localExpressions = new ArrayList<>();
+
+        Plan plan(List<StatementNode> statements) {
+            if (statements.size() == 1 && statements.get(0) instanceof TryNode) {
+                // the sandbox exceptions that every script is wrapped with
+                statements = ((TryNode) statements.get(0)).getBlockNode().getStatementsNodes();
+            }
+            if (statements.isEmpty() || statements.get(statements.size() - 1) instanceof ReturnNode == false) {
+                return null;
+            }
+            for (StatementNode statement : statements.subList(0, statements.size() - 1)) {
+                if (statement instanceof DeclarationNode) {
+                    if (declare((DeclarationNode) statement) == false) {
+                        return null;
+                    }
+                } else if (statement instanceof DeclarationBlockNode) {
+                    for (DeclarationNode declaration : ((DeclarationBlockNode) statement).getDeclarationsNodes()) {
+                        if (declare(declaration) == false) {
+                            return null;
+                        }
+                    }
+                } else {
+                    return null;
+                }
+            }
+            Expression score = expression(((ReturnNode) statements.get(statements.size() - 1)).getExpressionNode());
+            return score == null ? null : new Plan(List.copyOf(localExpressions), score);
+        }
+
+        private boolean declare(DeclarationNode declaration) {
+            String name = declaration.getDecorationValue(IRDName.class);
+            ExpressionNode value = declaration.getExpressionNode();
+            if (value instanceof InvokeCallMemberNode
+                && ((InvokeCallMemberNode) value).getArgumentNodes().isEmpty()
+                && value.getDecorationValue(IRDFunction.class).getFunctionName().equals(SCRIPT_VARIABLES.get(name))) {
+                scriptVariables.add(name);
+                return true;
+            }
+            Expression expression = value == null ? null : expression(value);
+            if (expression == null) {
+                return false;
+            }
+            locals.put(name, localExpressions.size());
+            localExpressions.add(expression);
+            return true;
+        }
+
+        private Expression expression(ExpressionNode node) {
+            Class<?> type = node.getDecorationValue(IRDExpressionType.class);
+            if (node instanceof ConstantNode) {
+                return constant(node.getDecorationValue(IRDConstant.class), type);
+            } else if (node instanceof LoadVariableNode) {
+                String name = node.getDecorationValue(IRDName.class);
+                if ("_score".equals(name) && scriptVariables.contains(name)) {
+                    return new ScoreExpression();
+                }
+                Integer local = locals.get(name);
+                return local == null ? null : new LocalExpression(local);
+            } else if (node instanceof BinaryMathNode) {
+                BinaryMathNode binary = (BinaryMathNode) node;
+                Operation operation = binary.getDecorationValue(IRDOperation.class);
+                if (operation != Operation.ADD
+                    && operation != Operation.SUB
+                    && operation != Operation.MUL
+                    && operation != Operation.DIV
+                    && operation != Operation.REM) {
+                    return null;
+                }
+                Class<?> binaryType = binary.getDecorationValue(IRDBinaryType.class);
+                Expression left = expression(binary.getLeftNode());
+                Expression right = expression(binary.getRightNode());
+                if (left == null || right == null || (binaryType != def.class && Type.of(binaryType) == null)) {
+                    return null;
+                }
+                return typed(new ArithmeticExpression(operation, Type.of(binaryType), left, right), type, isExplicit(binary));
+            } else if (node instanceof UnaryMathNode) {
+                UnaryMathNode unary = (UnaryMathNode) node;
+                Operation operation = unary.getDecorationValue(IRDOperation.class);
+                Class<?> unaryType = unary.getDecorationValue(IRDUnaryType.class);
+                Expression child = expression(unary.getChildNode());
+                if ((operation != Operation.ADD && operation != Operation.SUB)
+                    || child == null
+                    || (unaryType != def.class && Type.of(unaryType) == null)) {
+                    return null;
+                }
+                Expression negate = operation == Operation.ADD ? child : new NegateExpression(Type.of(unaryType), child);
+                return typed(negate, type, isExplicit(unary));
+            } else if (node instanceof CastNode) {
+                return cast(node.getDecorationValue(IRDCast.class), expression(((CastNode) node).getChildNode()));
+            } else if (node instanceof BinaryImplNode) {
+                List<ExpressionNode> chain = new ArrayList<>();
+                flatten(node, chain);
+                return typed(chain(chain), type, false);
+            }
+            return null;
+        }
+
+        private static Expression constant(Object value, Class<?> type) {
+            if (type == int.class || type == long.class) {
+                return new ConstantExpression(Type.of(type), ((Number) value).longValue(), 0);
+            } else if (type == double.class) {
+                return new ConstantExpression(Type.DOUBLE, 0, ((Number) value).doubleValue());
+            }
+            return null;
+        }
+
+        /**
+         * Returns an expression with the cast of the given {@link CastNode}, which only supports the conversions between {@code int},
+         * {@code long} and {@code double} and from and to {@code def}.
+         */
+        private static Expression cast(PainlessCast cast, Expression child) {
+            if (child == null || cast.unboxOriginalType != null || cast.unboxTargetType != null || cast.boxTargetType != null) {
+                return null;
+            } else if (cast.boxOriginalType != null) {
+                // boxing keeps the type of the value
+                return cast.targetType == def.class && Type.of(cast.boxOriginalType) != null ? child : null;
+            }
+            Type target = Type.of(cast.targetType);
+            if (cast.originalType == def.class) {
+                if (cast.targetType == def.class) {
+                    return child;
+                }
+                // the compiler only checks the casts of def values at runtime, where implicit casts must be widening
+                return target == null ? null : new CastExpression(target, cast.explicitCast == false, child);
+            } else if (Type.of(cast.originalType) == null) {
+                return null;
+            } else if (cast.targetType == def.class) {
+                // boxing keeps the type of the value
+                return child;
+            }
+            return target == null ? null : new CastExpression(target, false, child);
+        }
+
+        /**
+         * Returns the given expression, converted to the given type of its node if the operation is on {@code def} values and the
+         * compiler asked for a primitive result, in which case the conversion happens at runtime and must be widening unless the
+         * compiler folded an explicit cast into the operation.
+         */
+        private static Expression typed(Expression expression, Class<?> type, boolean explicit) {
+            if (expression == null) {
+                return null;
+            } else if (type == def.class) {
+                return expression;
+            }
+            Type target = Type.of(type);
+            return target == null ? null : new CastExpression(target, explicit == false, expression);
+        }
+
+        /**
+         * Returns whether the given operation on {@code def} values casts its result explicitly, see {@link DefBootstrap}.
+         */
+        private static boolean isExplicit(ExpressionNode node) {
+            return (node.getDecorationValueOrDefault(IRDFlags.class, 0) & DefBootstrap.OPERATOR_EXPLICIT_CAST) != 0;
+        }
+
+        private static void flatten(ExpressionNode node, List<ExpressionNode> chain) {
+            if (node instanceof BinaryImplNode) {
+                flatten(((BinaryImplNode) node).getLeftNode(), chain);
+                flatten(((BinaryImplNode) node).getRightNode(), chain);
+            } else {
+                chain.add(node);
+            }
+        }
+
+        /**
+         * Returns the expression of a chain of accesses, like {@code doc['field'].value}, {@code params.name} or {@code Math.log(x)}.
+         */
+        private Expression chain(List<ExpressionNode> chain) {
+            ExpressionNode prefix = chain.get(0);
+            if (prefix instanceof StaticNode && prefix.getDecorationValue(IRDExpressionType.class) == Math.class && chain.size() == 2) {
+                ExpressionNode member = chain.get(1);
+                if (member instanceof LoadDotNode) {
+                    return staticField(member.getDecorationValue(IRDField.class));
+                } else if (member instanceof InvokeCallNode) {
+                    return call((InvokeCallNode) member);
+                }
+                return null;
+            } else if (isScriptVariable(prefix, "params")) {
+                if (chain.size() == 3 && isMapGet(chain.get(2))) {
+                    return param(string(chain.get(1)));
+                } else if (chain.size() == 2 && chain.get(1) instanceof InvokeCallNode) {
+                    InvokeCallNode call = (InvokeCallNode) chain.get(1);
+                    if (isMapGet(call.getMethod()) && call.getArgumentNodes().size() == 1) {
+                        return param(string(call.getArgumentNodes().get(0)));
+                    }
+                }
+                return null;
+            } else if (isScriptVariable(prefix, "doc") && chain.size() >= 4 && isMapGet(chain.get(2))) {
+                String field = string(chain.get(1));
+                List<ExpressionNode> access = chain.subList(3, chain.size());
+                ExpressionNode first = access.get(0);
+                if (access.size() == 1 && first instanceof LoadDotDefNode) {
+                    return "value".equals(first.getDecorationValue(IRDValue.class)) ? field(field) : null;
+                } else if (access.size() == 1 && first instanceof InvokeCallDefNode) {
+                    InvokeCallDefNode call = (InvokeCallDefNode) first;
+                    String method = call.getDecorationValue(IRDName.class);
+                    List<ExpressionNode> arguments = call.getArgumentNodes();
+                    if (("getValue".equals(method) && arguments.isEmpty())
+                        || ("get".equals(method) && arguments.size() == 1 && isZero(arguments.get(0)))) {
+                        return field(field);
+                    }
+                } else if (access.size() == 2 && first instanceof FlipDefIndexNode && access.get(1) instanceof LoadBraceDefNode) {
+                    return isZero(((FlipDefIndexNode) first).getChildNode()) ? field(field) : null;
+                }
+            }
+            return null;
+        }
+
+        private boolean isScriptVariable(ExpressionNode node, String name) {
+            return node instanceof LoadVariableNode
+                && name.equals(node.getDecorationValue(IRDName.class))
+                && scriptVariables.contains(name);
+        }
+
+        private static boolean isMapGet(IRNode node) {
+            return node instanceof LoadMapShortcutNode && isMapGet(node.getDecorationValue(IRDMethod.class));
+        }
+
+        private static boolean isMapGet(PainlessMethod method) {
+            return method.javaMethod.getDeclaringClass() == Map.class && "get".equals(method.javaMethod.getName());
+        }
+
+        private static String string(ExpressionNode node) {
+            if (node instanceof CastNode && node.getDecorationValue(IRDCast.class).originalType == String.class) {
+                node = ((CastNode) node).getChildNode();
+            }
+            if (node instanceof ConstantNode && node.getDecorationValue(IRDConstant.class) instanceof String) {
+                return (String) node.getDecorationValue(IRDConstant.class);
+            }
+            return null;
+        }
+
+        private static boolean isZero(ExpressionNode node) {
+            return node instanceof ConstantNode && Integer.valueOf(0).equals(node.getDecorationValue(IRDConstant.class));
+        }
+
+        private static Expression staticField(PainlessField field) {
+            int modifiers = field.javaField.getModifiers();
+            if (Modifier.isStatic(modifiers) == false
+                || Modifier.isFinal(modifiers) == false
+                || field.javaField.getType() != double.class) {
+                return null;
+            }
+            try {
+                return new ConstantExpression(Type.DOUBLE, 0, field.javaField.getDouble(null));
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+
+        private Expression call(InvokeCallNode node) {
+            PainlessMethod method = node.getMethod();
+            if (method.annotations.containsKey(NonDeterministicAnnotation.class)
+                || CallExpression.supports(method.javaMethod) == false
+                || node.getArgumentNodes().size() != method.javaMethod.getParameterCount()) {
+                return null;
+            }
+            List<Expression> arguments = new ArrayList<>();
+            for (ExpressionNode argument : node.getArgumentNodes()) {
+                Expression expression = expression(argument);
+                if (expression == null) {
+                    return null;
+                }
+                arguments.add(expression);
+            }
+            return new CallExpression(method.javaMethod, arguments);
+        }
+
+        private static Expression field(String name) {
+            return name == null ? null : new FieldExpression(name);
+        }
+
+        private static Expression param(String name) {
+            // these names are resolved by the params of score scripts rather than by the parameters of the request
+            if (name == null || "_source".equals(name) || "doc".equals(name) || "_doc".equals(name)) {
+                return null;
+            }
+            return new ParamExpression(name);
+        }
+    }
+
+    private static Op convert(Op op, Type type) {
+        if (op.type == type) {
+            return op;
+        }
+        return new Convert(type, op);
+    }
+
+    /**
+     * The types of the values of operations, from the narrowest to the widest. Integer values are stored as longs.
+     */
+    private enum Type {
+        INT(int.class),
+        LONG(long.class),
+        DOUBLE(double.class);
+
+        private final Class<?> clazz;
+
+        Type(Class<?> clazz) {
+            this.clazz = clazz;
+        }
+
+        /**
+         * Returns the type of the values of the given class, or {@code null} if operations don't support it.
+         */
+        static Type of(Class<?> clazz) {
+            for (Type type : values()) {
+                if (type.clazz == clazz) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        static Type readFrom(DataInput in) throws IOException {
+            int ordinal = in.readByte();
+            if (ordinal < -1 || ordinal >= values().length) {
+                throw new IOException("unknown type [" + ordinal + "]");
+            }
+            return ordinal == -1 ? null : values()[ordinal];
+        }
+
+        static void writeTo(Type type, DataOutput out) throws IOException {
+            out.writeByte(type == null ? -1 : type.ordinal());
+        }
+    }
+
+    /**
+     * An expression of a script, which is bound to an operation once the parameters of the script and the mapping are known.
+     */
+    private abstract static class Expression {
+        static final byte CONSTANT = 0;
+        static final byte SCORE = 1;
+        static final byte LOCAL = 2;
+        static final byte FIELD = 3;
+        static final byte PARAM = 4;
+        static final byte CAST = 5;
+        static final byte ARITHMETIC = 6;
+        static final byte NEGATE = 7;
+        static final byte CALL = 8;
+
+        /**
+         * Returns the operation that evaluates the expression, or {@code null} if it can't be evaluated over blocks.
+         */
+        abstract Op bind(Binding binding);
+
+        abstract void writeTo(DataOutput out) throws IOException;
+
+        /**
+         * Reads an expression of a plan.
+         *
+         * @param numLocals the number of locals that the expression can refer to
+         */
+        static Expression readFrom(DataInput in, int numLocals) throws IOException {
+            byte kind = in.readByte();
+            switch (kind) {
+                case CONSTANT:
+                    return new ConstantExpression(Type.readFrom(in), in.readLong(), in.readDouble());
+                case SCORE:
+                    return new ScoreExpression();
+                case LOCAL:
+                    int local = in.readInt();
+                    if (local < 0 || local >= numLocals) {
+                        throw new IOException("unknown local [" + local + "]");
+                    }
+                    return new LocalExpression(local);
+                case FIELD:
+                    return new FieldExpression(in.readUTF());
+                case PARAM:
+                    return new ParamExpression(in.readUTF());
+                case CAST:
+                    return new CastExpression(Type.readFrom(in), in.readBoolean(), readFrom(in, numLocals));
+                case ARITHMETIC:
+                    Operation operation = Operation.valueOf(in.readUTF());
+                    return new ArithmeticExpression(operation, Type.readFrom(in), readFrom(in, numLocals), readFrom(in, numLocals));
+                case NEGATE:
+                    return new NegateExpression(Type.readFrom(in), readFrom(in, numLocals));
+                case CALL:
+                    String name = in.readUTF();
+                    int numArguments = in.readInt();
+                    Class<?>[] parameterTypes = new Class<?>[numArguments];
+                    List<Expression> arguments = new ArrayList<>(numArguments);
+                    for (int i = 0; i < numArguments; i++) {
+                        parameterTypes[i] = Type.readFrom(in).clazz;
+                        arguments.add(readFrom(in, numLocals));
+                    }
+                    Method method;
+                    try {
+                        method = Math.class.getMethod(name, parameterTypes);
+                    } catch (NoSuchMethodException e) {
+                        throw new IOException("unknown method [" + name + "]", e);
+                    }
+                    if (CallExpression.supports(method) == false) {
+                        throw new IOException("unsupported method [" + method + "]");
+                    }
+                    return new CallExpression(method, arguments);
+                default:
+                    throw new IOException("unknown expression [" + kind + "]");
+            }
+        }
+    }
+
+    private static final class ConstantExpression extends Expression {
+        private final Type type;
+        private final long longValue;
+        private final double doubleValue;
+
+        ConstantExpression(Type type, long longValue, double doubleValue) {
+            this.type = type;
+            this.longValue = longValue;
+            this.doubleValue = doubleValue;
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            return type == null ? null : Op.constant(type, longValue, doubleValue);
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(CONSTANT);
+            Type.writeTo(type, out);
+            out.writeLong(longValue);
+            out.writeDouble(doubleValue);
+        }
+    }
+
+    private static final class ScoreExpression extends Expression {
+        @Override
+        Op bind(Binding binding) {
+            return new Score();
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(SCORE);
+        }
+    }
+
+    /**
+     * Reads a local variable, which is bound once per binding so that it is only evaluated once per block.
+     */
+    private static final class LocalExpression extends Expression {
+        private final int local;
+
+        LocalExpression(int local) {
+            this.local = local;
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            return binding.locals.get(local);
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(LOCAL);
+            out.writeInt(local);
+        }
+    }
+
+    private static final class FieldExpression extends Expression {
+        private final String name;
+
+        FieldExpression(String name) {
+            this.name = name;
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            return binding.fields.computeIfAbsent(name, n -> Field.bind(n, binding.lookup));
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(FIELD);
+            out.writeUTF(name);
+        }
+    }
+
+    private static final class ParamExpression extends Expression {
+        private final String name;
+
+        ParamExpression(String name) {
+            this.name = name;
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            Object value = binding.params.get(name);
+            if (value instanceof Integer) {
+                return Op.constant(Type.INT, (Integer) value, 0);
+            } else if (value instanceof Long) {
+                return Op.constant(Type.LONG, (Long) value, 0);
+            } else if (value instanceof Double) {
+                return Op.constant(Type.DOUBLE, 0, (Double) value);
+            }
+            // the compiled class takes care of other types, and of the errors that they lead to
+            return null;
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(PARAM);
+            out.writeUTF(name);
+        }
+    }
+
+    private static final class CastExpression extends Expression {
+        private final Type type;
+        private final boolean widening;
+        private final Expression child;
+
+        /**
+         * @param widening whether the cast is an implicit cast of a {@code def} value, which fails unless it widens the value
+         */
+        CastExpression(Type type, boolean widening, Expression child) {
+            this.type = type;
+            this.widening = widening;
+            this.child = child;
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            Op op = child.bind(binding);
+            if (op == null || type == null) {
+                return null;
+            } else if (widening && AnalyzerCaster.promoteNumeric(op.type.clazz, type.clazz, true) != type.clazz) {
+                // the compiled class fails with a ClassCastException
+                return null;
+            }
+            return convert(op, type);
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(CAST);
+            Type.writeTo(type, out);
+            out.writeBoolean(widening);
+            child.writeTo(out);
+        }
+    }
+
+    private static final class ArithmeticExpression extends Expression {
+        private final Operation operation;
+        private final Type type;
+        private final Expression left;
+        private final Expression right;
+
+        /**
+         * @param type the type of the operation, or {@code null} if it is an operation on {@code def} values
+         */
+        ArithmeticExpression(Operation operation, Type type, Expression left, Expression right) {
+            this.operation = operation;
+            this.type = type;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            Op l = left.bind(binding);
+            Op r = right.bind(binding);
+            if (l == null || r == null) {
+                return null;
+            }
+            Type promoted = type != null ? type : Type.of(AnalyzerCaster.promoteNumeric(l.type.clazz, r.type.clazz, true));
+            return promoted == null ? null : new Arithmetic(promoted, operation, convert(l, promoted), convert(r, promoted));
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(ARITHMETIC);
+            out.writeUTF(operation.name());
+            Type.writeTo(type, out);
+            left.writeTo(out);
+            right.writeTo(out);
+        }
+    }
+
+    private static final class NegateExpression extends Expression {
+        private final Type type;
+        private final Expression child;
+
+        /**
+         * @param type the type of the operation, or {@code null} if it is an operation on a {@code def} value
+         */
+        NegateExpression(Type type, Expression child) {
+            this.type = type;
+            this.child = child;
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            Op op = child.bind(binding);
+            if (op == null) {
+                return null;
+            }
+            Type promoted = type != null ? type : Type.of(AnalyzerCaster.promoteNumeric(op.type.clazz, true));
+            return promoted == null ? null : new Negate(convert(op, promoted));
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(NEGATE);
+            Type.writeTo(type, out);
+            child.writeTo(out);
+        }
+    }
+
+    /**
+     * Calls a static method of {@link Math} that takes one or two {@code double}s and returns a {@code double} or a {@code long}.
+     */
+    private static final class CallExpression extends Expression {
+        private final Method method;
+        private final List<Expression> arguments;
+        private final Object function;
+
+        CallExpression(Method method, List<Expression> arguments) {
+            this.method = method;
+            this.arguments = arguments;
+            this.function = function(method);
+        }
+
+        static boolean supports(Method method) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return method.getDeclaringClass() == Math.class
+                && Modifier.isStatic(method.getModifiers())
+                && (parameterTypes.length == 1 || (parameterTypes.length == 2 && method.getReturnType() == double.class))
+                && Arrays.stream(parameterTypes).allMatch(parameterType -> parameterType == double.class)
+                && (method.getReturnType() == double.class || method.getReturnType() == long.class);
+        }
+
+        /**
+         * Returns the method as a {@link DoubleUnaryOperator}, a {@link DoubleBinaryOperator} or a {@link DoubleToLongFunction}.
+         */
+        private static Object function(Method method) {
+            Class<?> functionalInterface;
+            String name;
+            if (method.getReturnType() == long.class) {
+                functionalInterface = DoubleToLongFunction.class;
+                name = "applyAsLong";
+            } else {
+                functionalInterface = method.getParameterCount() == 1 ? DoubleUnaryOperator.class : DoubleBinaryOperator.class;
+                name = "applyAsDouble";
+            }
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle handle = lookup.unreflect(method);
+                return LambdaMetafactory.metafactory(
+                    lookup,
+                    name,
+                    MethodType.methodType(functionalInterface),
+                    handle.type(),
+                    handle,
+                    handle.type()
+                ).getTarget().invoke();
+            } catch (Throwable t) {
+                throw new IllegalStateException("failed to bind [" + method + "]", t);
+            }
+        }
+
+        @Override
+        Op bind(Binding binding) {
+            List<Op> ops = new ArrayList<>();
+            for (Expression argument : arguments) {
+                Op op = argument.bind(binding);
+                if (op == null) {
+                    return null;
+                }
+                ops.add(convert(op, Type.DOUBLE));
+            }
+            if (function instanceof DoubleToLongFunction) {
+                return new DoubleToLong((DoubleToLongFunction) function, ops.get(0));
+            } else if (function instanceof DoubleUnaryOperator) {
+                return new UnaryFunction((DoubleUnaryOperator) function, ops.get(0));
+            }
+            return new BinaryFunction((DoubleBinaryOperator) function, ops.get(0), ops.get(1));
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(CALL);
+            out.writeUTF(method.getName());
+            out.writeInt(arguments.size());
+            for (Expression argument : arguments) {
+                Type.writeTo(Type.DOUBLE, out);
+                argument.writeTo(out);
+            }
+        }
+    }
+
+    private static final class Binding {
+        private final Map<String, Object> params;
+        private final SearchLookup lookup;
+        private final Map<String, Op> fields = new HashMap<>();
+        private final List<Op> locals = new ArrayList<>();
+
+        Binding(Map<String, Object> params, SearchLookup lookup) {
+            this.params = params;
+            this.lookup = lookup;
+        }
+    }
+
+    /**
+     * The state of the evaluation of a block of documents.
+     */
+    private static final class Block {
+        private final LeafReaderContext context;
+        private final Map<Op, Vector> vectors = new IdentityHashMap<>();
+        private int[] docs;
+        private float[] subQueryScores;
+        private int count;
+        private int generation;
+        private boolean failed;
+
+        Block(LeafReaderContext context) {
+            this.context = context;
+        }
+
+        Vector vector(Op op) throws IOException {
+            Vector vector = vectors.get(op);
+            if (vector == null) {
+                vector = op.vector(this);
+                vectors.put(op, vector);
+            }
+            return vector;
+        }
+    }
+
+    /**
+     * An operation over the values of a block of documents.
+     */
+    private abstract static class Op {
+        final Type type;
+
+        Op(Type type) {
+            this.type = type;
+        }
+
+        /**
+         * Creates the vector that evaluates this operation over the blocks of a segment.
+         */
+        abstract Vector vector(Block block) throws IOException;
+
+        static Op constant(Type type, long longValue, double doubleValue) {
+            return new Op(type) {
+                @Override
+                Vector vector(Block block) {
+                    return new Vector(type) {
+                        private int filled;
+
+                        @Override
+                        void compute(Block block) {
+                            // constants only need to be written once per segment, unless blocks get larger
+                            if (filled < block.count) {
+                                if (type == Type.DOUBLE) {
+                                    Arrays.fill(doubles, filled, block.count, doubleValue);
+                                } else {
+                                    Arrays.fill(longs, filled, block.count, longValue);
+                                }
+                                filled = block.count;
+                            }
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * The values of an operation for the documents of the current block, which are either stored as longs or as doubles depending on the
+     * type of the operation.
+     */
+    private abstract static class Vector {
+        private final Type type;
+        long[] longs = new long[0];
+        double[] doubles = new double[0];
+        private int generation = -1;
+
+        Vector(Type type) {
+            this.type = type;
+        }
+
+        /**
+         * Computes the values of the current block unless they have already been computed, as vectors can be shared by several
+         * operations when the script uses locals.
+         */
+        final void evaluate(Block block) throws IOException {
+            if (generation == block.generation) {
+                return;
+            }
+            generation = block.generation;
+            if (type == Type.DOUBLE) {
+                if (doubles.length < block.count) {
+                    doubles = Arrays.copyOf(doubles, block.count);
+                }
+            } else if (longs.length < block.count) {
+                longs = Arrays.copyOf(longs, block.count);
+            }
+            compute(block);
+        }
+
+        abstract void compute(Block block) throws IOException;
+    }
+
+    private static final class Score extends Op {
+        Score() {
+            super(Type.DOUBLE);
+        }
+
+        @Override
+        Vector vector(Block block) {
+            return new Vector(Type.DOUBLE) {
+                @Override
+                void compute(Block block) {
+                    for (int i = 0; i < block.count; i++) {
+                        doubles[i] = block.subQueryScores[i];
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class Field extends Op {
+        private final IndexNumericFieldData fieldData;
+
+        private Field(Type type, IndexNumericFieldData fieldData) {
+            super(type);
+            this.fieldData = fieldData;
+        }
+
+        static Field bind(String name, SearchLookup lookup) {
+            MappedFieldType fieldType = lookup.fieldType(name);
+            if (fieldType instanceof NumberFieldMapper.NumberFieldType) {
+                if (fieldType.hasDocValues() == false) {
+                    return null;
+                }
+            } else if (fieldType instanceof LongScriptFieldType == false && fieldType instanceof DoubleScriptFieldType == false) {
+                return null;
+            }
+            IndexFieldData<?> fieldData;
+            try {
+                fieldData = lookup.getForField(fieldType);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (fieldData instanceof IndexNumericFieldData == false) {
+                return null;
+            }
+            IndexNumericFieldData numericFieldData = (IndexNumericFieldData) fieldData;
+            switch (numericFieldData.getNumericType()) {
+                case BYTE:
+                case SHORT:
+                case INT:
+                case LONG:
+                    // the values of doc['field'] are longs for all integer types
+                    return new Field(Type.LONG, numericFieldData);
+                case HALF_FLOAT:
+                case FLOAT:
+                case DOUBLE:
+                    return new Field(Type.DOUBLE, numericFieldData);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        Vector vector(Block block) {
+            LeafNumericFieldData leaf = fieldData.load(block.context);
+            if (type == Type.DOUBLE) {
+                SortedNumericDoubleValues values = leaf.getDoubleValues();
+                return new Vector(type) {
+                    @Override
+                    void compute(Block block) throws IOException {
+                        for (int i = 0; i < block.count; i++) {
+                            if (values.advanceExact(block.docs[i]) == false) {
+                                block.failed = true;
+                                return;
+                            }
+                            doubles[i] = values.nextValue();
+                        }
+                    }
+                };
+            }
+            SortedNumericDocValues values = leaf.getLongValues();
+            return new Vector(type) {
+                @Override
+                void compute(Block block) throws IOException {
+                    for (int i = 0; i < block.count; i++) {
+                        if (values.advanceExact(block.docs[i]) == false) {
+                            block.failed = true;
+                            return;
+                        }
+                        longs[i] = values.nextValue();
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class Convert extends Op {
+        private final Op op;
+
+        Convert(Type type, Op op) {
+            super(type);
+            this.op = op;
+        }
+
+        @Override
+        Vector vector(Block block) throws IOException {
+            Vector in = block.vector(op);
+            return new Vector(type) {
+                @Override
+                void compute(Block block) throws IOException {
+                    in.evaluate(block);
+                    if (type == Type.DOUBLE) {
+                        for (int i = 0; i < block.count; i++) {
+                            doubles[i] = in.longs[i];
+                        }
+                    } else if (op.type == Type.DOUBLE) {
+                        for (int i = 0; i < block.count; i++) {
+                            longs[i] = type == Type.INT ? (int) in.doubles[i] : (long) in.doubles[i];
+                        }
+                    } else {
+                        for (int i = 0; i < block.count; i++) {
+                            longs[i] = type == Type.INT ? (int) in.longs[i] : in.longs[i];
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class Arithmetic extends Op {
+        private final Operation operation;
+        private final Op left;
+        private final Op right;
+
+        Arithmetic(Type type, Operation operation, Op left, Op right) {
+            super(type);
+            this.operation = operation;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Vector vector(Block block) throws IOException {
+            Vector l = block.vector(left);
+            Vector r = block.vector(right);
+            if (type == Type.DOUBLE) {
+                return new Vector(type) {
+                    @Override
+                    void compute(Block block) throws IOException {
+                        l.evaluate(block);
+                        r.evaluate(block);
+                        double[] a = l.doubles;
+                        double[] b = r.doubles;
+                        double[] out = doubles;
+                        int count = block.count;
+                        switch (operation) {
+                            case ADD:
+                                for (int i = 0; i < count; i++) {
+                                    out[i] = a[i] + b[i];
+                                }
+                                break;
+                            case SUB:
+                                for (int i = 0; i < count; i++) {
+                                    out[i] = a[i] - b[i];
+                                }
+                                break;
+                            case MUL:
+                                for (int i = 0; i < count; i++) {
+                                    out[i] = a[i] * b[i];
+                                }
+                                break;
+                            case DIV:
+                                for (int i = 0; i < count; i++) {
+                                    out[i] = a[i] / b[i];
+                                }
+                                break;
+                            default:
+                                for (int i = 0; i < count; i++) {
+                                    out[i] = a[i] % b[i];
+                                }
+                                break;
+                        }
+                    }
+                };
+            }
+            return new Vector(type) {
+                @Override
+                void compute(Block block) throws IOException {
+                    l.evaluate(block);
+                    r.evaluate(block);
+                    long[] a = l.longs;
+                    long[] b = r.longs;
+                    long[] out = longs;
+                    int count = block.count;
+                    // division by zero throws an ArithmeticException that makes the block get scored one document at a time
+                    switch (operation) {
+                        case ADD:
+                            for (int i = 0; i < count; i++) {
+                                out[i] = a[i] + b[i];
+                            }
+                            break;
+                        case SUB:
+                            for (int i = 0; i < count; i++) {
+                                out[i] = a[i] - b[i];
+                            }
+                            break;
+                        case MUL:
+                            for (int i = 0; i < count; i++) {
+                                out[i] = a[i] * b[i];
+                            }
+                            break;
+                        case DIV:
+                            for (int i = 0; i < count; i++) {
+                                out[i] = a[i] / b[i];
+                            }
+                            break;
+                        default:
+                            for (int i = 0; i < count; i++) {
+                                out[i] = a[i] % b[i];
+                            }
+                            break;
+                    }
+                    if (type == Type.INT) {
+                        // int arithmetic overflows like Java's
+                        for (int i = 0; i < count; i++) {
+                            out[i] = (int) out[i];
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class Negate extends Op {
+        private final Op op;
+
+        Negate(Op op) {
+            super(op.type);
+            this.op = op;
+        }
+
+        @Override
+        Vector vector(Block block) throws IOException {
+            Vector in = block.vector(op);
+            return new Vector(type) {
+                @Override
+                void compute(Block block) throws IOException {
+                    in.evaluate(block);
+                    for (int i = 0; i < block.count; i++) {
+                        if (type == Type.DOUBLE) {
+                            doubles[i] = -in.doubles[i];
+                        } else {
+                            longs[i] = type == Type.INT ? -(int) in.longs[i] : -in.longs[i];
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class UnaryFunction extends Op {
+        private final DoubleUnaryOperator function;
+        private final Op op;
+
+        UnaryFunction(DoubleUnaryOperator function, Op op) {
+            super(Type.DOUBLE);
+            this.function = function;
+            this.op = op;
+        }
+
+        @Override
+        Vector vector(Block block) throws IOException {
+            Vector in = block.vector(op);
+            return new Vector(type) {
+                @Override
+                void compute(Block block) throws IOException {
+                    in.evaluate(block);
+                    for (int i = 0; i < block.count; i++) {
+                        doubles[i] = function.applyAsDouble(in.doubles[i]);
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class BinaryFunction extends Op {
+        private final DoubleBinaryOperator function;
+        private final Op left;
+        private final Op right;
+
+        BinaryFunction(DoubleBinaryOperator function, Op left, Op right) {
+            super(Type.DOUBLE);
+            this.function = function;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Vector vector(Block block) throws IOException {
+            Vector l = block.vector(left);
+            Vector r = block.vector(right);
+            return new Vector(type) {
+                @Override
+                void compute(Block block) throws IOException {
+                    l.evaluate(block);
+                    r.evaluate(block);
+                    for (int i = 0; i < block.count; i++) {
+                        doubles[i] = function.applyAsDouble(l.doubles[i], r.doubles[i]);
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class DoubleToLong extends Op {
+        private final DoubleToLongFunction function;
+        private final Op op;
+
+        DoubleToLong(DoubleToLongFunction function, Op op) {
+            super(Type.LONG);
+            this.function = function;
+            this.op = op;
+        }
+
+        @Override
+        Vector vector(Block block) throws IOException {
+            Vector in = block.vector(op);
+            return new Vector(type) {
+                @Override
+                void compute(Block block) throws IOException {
+                    in.evaluate(block);
+                    for (int i = 0; i < block.count; i++) {
+                        longs[i] = function.applyAsLong(in.doubles[i]);
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class Factory implements ScoreScript.Factory {
+        private final ScoreScript.Factory factory;
+        private final Plan plan;
+
+        Factory(ScoreScript.Factory factory, Plan plan) {
+            this.factory = factory;
+            this.plan = plan;
+        }
+
+        @Override
+        public boolean isResultDeterministic() {
+            return factory.isResultDeterministic();
+        }
+
+        @Override
+        public ScoreScript.LeafFactory newFactory(Map<String, Object> params, SearchLookup lookup) {
+            ScoreScript.LeafFactory leafFactory = factory.newFactory(params, lookup);
+            Binding binding = new Binding(params, lookup);
+            for (Expression local : plan.locals) {
+                Op op = local.bind(binding);
+                if (op == null) {
+                    return leafFactory;
+                }
+                binding.locals.add(op);
+            }
+            Op op = plan.score.bind(binding);
+            if (op == null) {
+                return leafFactory;
+            }
+            // locals are evaluated even if the score doesn't use them, as they fail on the same documents as in the compiled class
+            List<Op> locals = List.copyOf(binding.locals);
+            Op score = convert(op, Type.DOUBLE);
+            return new ScoreScript.LeafFactory() {
+                @Override
+                public boolean needs_score() {
+                    return leafFactory.needs_score();
+                }
+
+                @Override
+                public ScoreScript newInstance(DocReader reader) throws IOException {
+                    return leafFactory.newInstance(reader);
+                }
+
+                @Override
+                public ScoreScript.BatchScoreScript newBatchInstance(DocReader reader) throws IOException {
+                    if (reader instanceof LeafReaderContextSupplier == false) {
+                        return null;
+                    }
+                    Block block = new Block(((LeafReaderContextSupplier) reader).getLeafReaderContext());
+                    List<Vector> localVectors = new ArrayList<>();
+                    for (Op local : locals) {
+                        localVectors.add(block.vector(local));
+                    }
+                    Vector vector = block.vector(score);
+                    return (docs, subQueryScores, count, scores) -> {
+                        block.docs = docs;
+                        block.subQueryScores = subQueryScores;
+                        block.count = count;
+                        block.generation++;
+                        block.failed = false;
+                        try {
+                            for (Vector localVector : localVectors) {
+                                localVector.evaluate(block);
+                            }
+                            vector.evaluate(block);
+                        } catch (ArithmeticException e) {
+                            return false;
+                        }
+                        if (block.failed) {
+                            return false;
+                        }
+                        System.arraycopy(vector.doubles, 0, scores, 0, count);
+                        return true;
+                    };
+                }
+            };
+        }
+    }
+}
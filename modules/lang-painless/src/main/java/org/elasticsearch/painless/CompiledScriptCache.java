@@ -0,0 +1,456 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.painless;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.Build;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.common.settings.SecureSetting;
+import org.elasticsearch.common.settings.SecureString;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.core.CharArrays;
+import org.elasticsearch.core.PathUtils;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.painless.lookup.PainlessClass;
+import org.elasticsearch.painless.lookup.PainlessConstructor;
+import org.elasticsearch.painless.lookup.PainlessField;
+import org.elasticsearch.painless.lookup.PainlessLookup;
+import org.elasticsearch.painless.lookup.PainlessLookupUtility;
+import org.elasticsearch.painless.lookup.PainlessMethod;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.AccessController;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A cache of the byte code of compiled scripts on disk, which survives restarts so that nodes don't compile all their scripts again, and
+ * don't get their compilation rate limit exhausted, after they restart.
+ * <p>
+ * Entries are keyed by the version of Elasticsearch, the class that scripts implement, the whitelist of their context, the compiler
+ * settings, and the name and source of the scripts, but not their parameters since they don't affect compilation. Each file holds the
+ * full key, so that a hash collision can't load the wrong script. Files are written atomically, and the least recently used ones are
+ * deleted when there are more than {@link #MAX_ENTRIES} of them.
+ * <p>
+ * Loading a file means running its byte code, so the cache can't trust the data path it lives in: anyone who can write there could
+ * otherwise plant arbitrary classes. Each file is authenticated with an HMAC-SHA256 of its content, keyed by the secure setting
+ * {@link #KEY}. The key comes from the keystore, which lives outside of the data path, so a file is only loaded if it was written by a
+ * node that holds the key. Files that fail authentication are deleted rather than loaded, as are corrupted files. The cache is
+ * disabled by default, and can't be enabled without a key.
+ * <p>
+ * Only scripts whose static state can be rebuilt without compiling them again get cached, which leaves scripts with regex literals or
+ * instance bindings out.
+ */
+final class CompiledScriptCache {
+
+    private static final Logger logger = LogManager.getLogger(CompiledScriptCache.class);
+
+    public static final Setting<Boolean> ENABLED = Setting.boolSetting(
+        "script.painless.compiled_cache.enabled",
+        false,
+        Property.NodeScope
+    );
+
+    /**
+     * The secret that authenticates the files of the cache. It must be random and is best unique to the node, since any holder of the key
+     * can write files that the node will load.
+     */
+    public static final Setting<SecureString> KEY = SecureSetting.secureString("script.painless.compiled_cache.key", null);
+
+    public static final Setting<Integer> MAX_ENTRIES = Setting.intSetting(
+        "script.painless.compiled_cache.max_entries",
+        1000,
+        1,
+        Property.NodeScope
+    );
+
+    private static final int MAGIC = 0x50414943; // "PAIC"
+    private static final int FORMAT_VERSION = 3;
+    private static final String SUFFIX = ".class";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final int MIN_KEY_LENGTH = 16;
+
+    private final Path directory;
+    private final int maxEntries;
+    private final SecretKeySpec key;
+
+    CompiledScriptCache(Path directory, int maxEntries, byte[] key) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.key = new SecretKeySpec(key, MAC_ALGORITHM);
+    }
+
+    /**
+     * Creates the cache configured by the given node settings, which lives in the first data path of the node, or returns {@code null} if
+     * it is disabled.
+     */
+    static CompiledScriptCache create(Settings settings) {
+        if (ENABLED.get(settings) == false) {
+            return null;
+        }
+        List<String> dataPaths = Environment.PATH_DATA_SETTING.get(settings);
+        if (dataPaths.isEmpty()) {
+            throw new IllegalArgumentException("[" + ENABLED.getKey() + "] requires [" + Environment.PATH_DATA_SETTING.getKey() + "]");
+        }
+        if (KEY.exists(settings) == false) {
+            throw new IllegalArgumentException("[" + ENABLED.getKey() + "] requires the secure setting [" + KEY.getKey() + "]");
+        }
+        byte[] key;
+        try (SecureString secret = KEY.get(settings)) {
+            if (secret.length() < MIN_KEY_LENGTH) {
+                throw new IllegalArgumentException(
+                    "the secure setting [" + KEY.getKey() + "] must be at least [" + MIN_KEY_LENGTH + "] characters long"
+                );
+            }
+            key = CharArrays.toUtf8Bytes(secret.getChars());
+        }
+        Path directory = PathUtils.get(dataPaths.get(0)).resolve("painless").resolve("scripts");
+        return new CompiledScriptCache(directory, MAX_ENTRIES.get(settings), key);
+    }
+
+    /**
+     * Returns a description of the given whitelist, that changes whenever what scripts compile against changes.
+     */
+    static String fingerprint(PainlessLookup lookup) {
+        Set<String> entries = new TreeSet<>();
+        for (Class<?> clazz : lookup.getClasses()) {
+            String name = PainlessLookupUtility.typeToCanonicalTypeName(clazz) + "#";
+            PainlessClass painlessClass = lookup.lookupPainlessClass(clazz);
+            for (Map.Entry<String, PainlessConstructor> constructor : painlessClass.constructors.entrySet()) {
+                entries.add(name + constructor.getKey() + constructor.getValue().methodType);
+            }
+            for (Map.Entry<String, PainlessMethod> method : painlessClass.staticMethods.entrySet()) {
+                entries.add(name + "static " + method.getKey() + method.getValue().methodType);
+            }
+            for (Map.Entry<String, PainlessMethod> method : painlessClass.methods.entrySet()) {
+                entries.add(name + method.getKey() + method.getValue().methodType);
+            }
+            for (Map.Entry<String, PainlessField> field : painlessClass.staticFields.entrySet()) {
+                entries.add(name + "static " + field.getKey() + field.getValue().typeParameter.getName());
+            }
+            for (Map.Entry<String, PainlessField> field : painlessClass.fields.entrySet()) {
+                entries.add(name + field.getKey() + field.getValue().typeParameter.getName());
+            }
+            entries.add(name);
+        }
+        for (String key : lookup.getImportedPainlessMethodsKeys()) {
+            entries.add("imported " + key);
+        }
+        for (String key : lookup.getPainlessClassBindingsKeys()) {
+            entries.add("class binding " + key);
+        }
+        for (String key : lookup.getPainlessInstanceBindingsKeys()) {
+            entries.add("instance binding " + key);
+        }
+        MessageDigest digest = MessageDigests.sha256();
+        for (String entry : entries) {
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return MessageDigests.toHexString(digest.digest());
+    }
+
+    /**
+     * A compiled script, with what's needed to rebuild its static state.
+     */
+    static final class Entry {
+        final byte[] bytes;
+        final Set<String> usedVariables;
+        final boolean deterministic;
+        final long[] statements;
+        final List<Function> functions;
+        final BatchScoreScriptCompiler.Plan batchScoreScriptPlan;
+
+        Entry(
+            byte[] bytes,
+            Set<String> usedVariables,
+            boolean deterministic,
+            long[] statements,
+            List<Function> functions,
+            BatchScoreScriptCompiler.Plan batchScoreScriptPlan
+        ) {
+            this.bytes = bytes;
+            this.usedVariables = usedVariables;
+            this.deterministic = deterministic;
+            this.statements = statements;
+            this.functions = functions;
+            this.batchScoreScriptPlan = batchScoreScriptPlan;
+        }
+    }
+
+    /**
+     * A function of the function table of a compiled script, with its types as canonical type names.
+     */
+    static final class Function {
+        final String name;
+        final boolean mangled;
+        final String returnType;
+        final List<String> typeParameters;
+        final boolean internal;
+        final boolean isStatic;
+
+        Function(String name, boolean mangled, String returnType, List<String> typeParameters, boolean internal, boolean isStatic) {
+            this.name = name;
+            this.mangled = mangled;
+            this.returnType = returnType;
+            this.typeParameters = typeParameters;
+            this.internal = internal;
+            this.isStatic = isStatic;
+        }
+    }
+
+    /**
+     * Returns the compiled script with the given key, or {@code null} if it isn't cached or its file is corrupted or wasn't written with
+     * the key of this cache, in which case the file is deleted.
+     */
+    Entry get(String key) {
+        Path file = directory.resolve(fileName(key));
+        return AccessController.doPrivileged((PrivilegedAction<Entry>) () -> {
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(file);
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                logger.warn(new ParameterizedMessage("failed to read compiled script [{}]", file), e);
+                return null;
+            }
+            try {
+                Entry entry = read(key, bytes);
+                // keeps track of which entries are used, see #evict
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                return entry;
+            } catch (IOException | RuntimeException e) {
+                logger.warn(new ParameterizedMessage("deleting corrupted or unauthenticated compiled script [{}]", file), e);
+                delete(file);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stores the compiled script with the given key. Failures are logged but otherwise ignored as scripts can always be compiled again.
+     */
+    void put(String key, Entry entry) {
+        AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            Path tmp = null;
+            try {
+                Files.createDirectories(directory);
+                tmp = Files.createTempFile(directory, "tmp-", ".tmp");
+                Files.write(tmp, write(key, entry));
+                Files.move(tmp, directory.resolve(fileName(key)), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                tmp = null;
+                evict();
+            } catch (IOException e) {
+                logger.warn(new ParameterizedMessage("failed to write compiled script to [{}]", directory), e);
+            } finally {
+                if (tmp != null) {
+                    delete(tmp);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Deletes the least recently used files until there are at most {@link #maxEntries} of them.
+     */
+    private void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        if (files.size() <= maxEntries) {
+            return;
+        }
+        List<Map.Entry<Path, FileTime>> byLastModified = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                byLastModified.add(Map.entry(file, Files.getLastModifiedTime(file)));
+            } catch (NoSuchFileException e) {
+                // deleted concurrently
+            }
+        }
+        byLastModified.sort(Map.Entry.comparingByValue(Comparator.naturalOrder()));
+        for (int i = 0; i < byLastModified.size() - maxEntries; i++) {
+            delete(byLastModified.get(i).getKey());
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn(new ParameterizedMessage("failed to delete [{}]", file), e);
+        }
+    }
+
+    private static String fileName(String key) {
+        return MessageDigests.toHexString(MessageDigests.sha256().digest(fullKey(key).getBytes(StandardCharsets.UTF_8))) + SUFFIX;
+    }
+
+    /**
+     * The version of Elasticsearch is part of the key as the byte code that Painless generates may change with any build.
+     */
+    private static String fullKey(String key) {
+        return Version.CURRENT + "/" + Build.CURRENT.hash() + "\n" + key;
+    }
+
+    private Mac mac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("failed to initialize [" + MAC_ALGORITHM + "]", e);
+        }
+    }
+
+    byte[] write(String key, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeBytes(out, fullKey(key).getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, entry.bytes);
+        out.writeInt(entry.usedVariables.size());
+        for (String usedVariable : entry.usedVariables) {
+            out.writeUTF(usedVariable);
+        }
+        out.writeBoolean(entry.deterministic);
+        out.writeInt(entry.statements.length);
+        for (long statements : entry.statements) {
+            out.writeLong(statements);
+        }
+        out.writeInt(entry.functions.size());
+        for (Function function : entry.functions) {
+            out.writeUTF(function.name);
+            out.writeBoolean(function.mangled);
+            out.writeUTF(function.returnType);
+            out.writeInt(function.typeParameters.size());
+            for (String typeParameter : function.typeParameters) {
+                out.writeUTF(typeParameter);
+            }
+            out.writeBoolean(function.internal);
+            out.writeBoolean(function.isStatic);
+        }
+        out.writeBoolean(entry.batchScoreScriptPlan != null);
+        if (entry.batchScoreScriptPlan != null) {
+            entry.batchScoreScriptPlan.writeTo(out);
+        }
+        out.flush();
+        out.write(mac().doFinal(bytes.toByteArray()));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    Entry read(String key, byte[] bytes) throws IOException {
+        if (bytes.length < MAC_LENGTH) {
+            throw new IOException("truncated file");
+        }
+        Mac mac = mac();
+        mac.update(bytes, 0, bytes.length - MAC_LENGTH);
+        // nothing is parsed before the file is authenticated
+        if (MessageDigest.isEqual(mac.doFinal(), Arrays.copyOfRange(bytes, bytes.length - MAC_LENGTH, bytes.length)) == false) {
+            throw new IOException("authentication failed");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - MAC_LENGTH));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a compiled script");
+        }
+        int formatVersion = in.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("unsupported format version [" + formatVersion + "]");
+        }
+        if (fullKey(key).equals(new String(readBytes(in), StandardCharsets.UTF_8)) == false) {
+            throw new IOException("key mismatch");
+        }
+        byte[] classBytes = readBytes(in);
+        int numUsedVariables = in.readInt();
+        Set<String> usedVariables = new HashSet<>();
+        for (int i = 0; i < numUsedVariables; i++) {
+            usedVariables.add(in.readUTF());
+        }
+        boolean deterministic = in.readBoolean();
+        long[] statements = new long[in.readInt()];
+        for (int i = 0; i < statements.length; i++) {
+            statements[i] = in.readLong();
+        }
+        int numFunctions = in.readInt();
+        List<Function> functions = new ArrayList<>(numFunctions);
+        for (int i = 0; i < numFunctions; i++) {
+            String name = in.readUTF();
+            boolean mangled = in.readBoolean();
+            String returnType = in.readUTF();
+            int numTypeParameters = in.readInt();
+            List<String> typeParameters = new ArrayList<>(numTypeParameters);
+            for (int j = 0; j < numTypeParameters; j++) {
+                typeParameters.add(in.readUTF());
+            }
+            boolean internal = in.readBoolean();
+            boolean isStatic = in.readBoolean();
+            functions.add(new Function(name, mangled, returnType, typeParameters, internal, isStatic));
+        }
+        BatchScoreScriptCompiler.Plan batchScoreScriptPlan = in.readBoolean() ? BatchScoreScriptCompiler.Plan.readFrom(in) : null;
+        if (in.available() != 0) {
+            throw new IOException("trailing bytes");
+        }
+        return new Entry(
+            classBytes,
+            Collections.unmodifiableSet(usedVariables),
+            deterministic,
+            statements,
+            functions,
+            batchScoreScriptPlan
+        );
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
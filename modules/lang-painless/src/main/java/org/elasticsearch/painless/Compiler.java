@@ -12,6 +12,7 @@ import org.elasticsearch.bootstrap.BootstrapInfo;
 import org.elasticsearch.painless.antlr.Walker;
 import org.elasticsearch.painless.ir.ClassNode;
 import org.elasticsearch.painless.lookup.PainlessLookup;
+import org.elasticsearch.painless.lookup.PainlessLookupUtility;
 import org.elasticsearch.painless.node.SClass;
 import org.elasticsearch.painless.phase.DefaultConstantFoldingOptimizationPhase;
 import org.elasticsearch.painless.phase.DefaultIRTreeToASMBytesPhase;
@@ -24,8 +25,10 @@ import org.elasticsearch.painless.phase.PainlessUserTreeToIRTreePhase;
 import org.elasticsearch.painless.phase.UserTreeVisitor;
 import org.elasticsearch.painless.spi.Whitelist;
 import org.elasticsearch.painless.symbol.Decorations.IRNodeDecoration;
+import org.elasticsearch.painless.symbol.FunctionTable;
 import org.elasticsearch.painless.symbol.ScriptScope;
 import org.elasticsearch.painless.symbol.WriteScope;
+import org.elasticsearch.script.ScoreScript;
 import org.objectweb.asm.util.Printer;
 
 import java.lang.reflect.Method;
@@ -34,9 +37,14 @@ import java.net.URL;
 import java.security.CodeSource;
 import java.security.SecureClassLoader;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.elasticsearch.painless.WriterConstants.CLASS_NAME;
@@ -142,6 +150,18 @@ final class Compiler {
         return new Loader(parent);
     }
 
+    /**
+     * The static constants of compiled scripts that {@link #load} knows how to rebuild.
+     */
+    private static final Set<String> REBUILT_STATIC_CONSTANTS = Set.of(
+        "$NAME",
+        "$SOURCE",
+        "$DEFINITION",
+        "$FUNCTIONS",
+        "$COMPILERSETTINGS",
+        "$STATEMENTS"
+    );
+
     /**
      * The class/interface the script will implement.
      */
@@ -157,6 +177,16 @@ final class Compiler {
      */
     private final Map<String, Class<?>> additionalClasses;
 
+    /**
+     * The cache of compiled scripts on disk, or {@code null} if compiled scripts are only kept in memory.
+     */
+    private final CompiledScriptCache compiledScriptCache;
+
+    /**
+     * Describes the whitelist in the keys of {@link #compiledScriptCache}, computed on first use.
+     */
+    private volatile String lookupFingerprint;
+
     /**
      * Standard constructor.
      * @param scriptClass The class/interface the script will implement.
@@ -165,6 +195,21 @@ final class Compiler {
      * @param painlessLookup The whitelist the script will use.
      */
     Compiler(Class<?> scriptClass, Class<?> factoryClass, Class<?> statefulFactoryClass, PainlessLookup painlessLookup) {
+        this(scriptClass, factoryClass, statefulFactoryClass, painlessLookup, null);
+    }
+
+    /**
+     * Constructor for compilers that also store compiled scripts on disk.
+     * @param compiledScriptCache The cache of compiled scripts on disk, or {@code null} to only keep compiled scripts in memory.
+     */
+    Compiler(
+        Class<?> scriptClass,
+        Class<?> factoryClass,
+        Class<?> statefulFactoryClass,
+        PainlessLookup painlessLookup,
+        CompiledScriptCache compiledScriptCache
+    ) {
+        this.compiledScriptCache = compiledScriptCache;
         this.scriptClass = scriptClass;
         this.painlessLookup = painlessLookup;
         Map<String, Class<?>> additionalClasses = new HashMap<>();
@@ -217,24 +262,145 @@ final class Compiler {
         ClassNode classNode = (ClassNode)scriptScope.getDecoration(root, IRNodeDecoration.class).getIRNode();
         new DefaultStringConcatenationOptimizationPhase().visitClass(classNode, null);
         new DefaultConstantFoldingOptimizationPhase().visitClass(classNode, null);
+        if (scriptClass == ScoreScript.class) {
+            // straight-line numeric score scripts can also score blocks of documents at once
+            scriptScope.setBatchScoreScriptPlan(BatchScoreScriptCompiler.compile(classNode));
+        }
         new DefaultStaticConstantExtractionPhase().visitClass(classNode, scriptScope);
         new DefaultIRTreeToASMBytesPhase().visitScript(classNode);
         byte[] bytes = classNode.getBytes();
 
+        define(loader, name, bytes, scriptScope);
+        if (compiledScriptCache != null) {
+            CompiledScriptCache.Entry entry = toCacheEntry(bytes, scriptScope);
+            if (entry != null) {
+                compiledScriptCache.put(cacheKey(scriptName, source, settings), entry);
+            }
+        }
+        return scriptScope;
+    }
+
+    /**
+     * Loads a script that was compiled before from the cache of compiled scripts on disk.
+     * @param loader The ClassLoader used to define the script.
+     * @param name The name of the script.
+     * @param source The source code for the script.
+     * @param settings The CompilerSettings the script would be compiled with.
+     * @return The ScriptScope of the script, or {@code null} if it must be compiled.
+     */
+    ScriptScope load(Loader loader, String name, String source, CompilerSettings settings) {
+        if (compiledScriptCache == null) {
+            return null;
+        }
+        String scriptName = Location.computeSourceName(name);
+        CompiledScriptCache.Entry entry = compiledScriptCache.get(cacheKey(scriptName, source, settings));
+        if (entry == null) {
+            return null;
+        }
+        ScriptClassInfo scriptClassInfo = new ScriptClassInfo(painlessLookup, scriptClass);
+        ScriptScope scriptScope = new ScriptScope(painlessLookup, settings, scriptClassInfo, scriptName, source, 0);
+        for (CompiledScriptCache.Function function : entry.functions) {
+            Class<?> returnType = painlessLookup.canonicalTypeNameToType(function.returnType);
+            List<Class<?>> typeParameters = new ArrayList<>();
+            for (String typeParameter : function.typeParameters) {
+                typeParameters.add(painlessLookup.canonicalTypeNameToType(typeParameter));
+            }
+            if (returnType == null || typeParameters.contains(null)) {
+                return null;
+            }
+            if (function.mangled) {
+                scriptScope.getFunctionTable()
+                    .addMangledFunction(function.name, returnType, typeParameters, function.internal, function.isStatic);
+            } else {
+                scriptScope.getFunctionTable().addFunction(function.name, returnType, typeParameters, function.internal, function.isStatic);
+            }
+        }
+        scriptScope.setUsedVariables(entry.usedVariables);
+        scriptScope.markNonDeterministic(entry.deterministic == false);
+        scriptScope.addStaticConstant("$STATEMENTS", BitSet.valueOf(entry.statements));
+        scriptScope.setBatchScoreScriptPlan(entry.batchScoreScriptPlan);
+        define(loader, name, entry.bytes, scriptScope);
+        return scriptScope;
+    }
+
+    private static void define(Loader loader, String name, byte[] bytes, ScriptScope scriptScope) {
         try {
             Class<? extends PainlessScript> clazz = loader.defineScript(CLASS_NAME, bytes);
 
             for (Map.Entry<String, Object> staticConstant : scriptScope.getStaticConstants().entrySet()) {
                 clazz.getField(staticConstant.getKey()).set(null, staticConstant.getValue());
             }
-
-            return scriptScope;
         } catch (Exception exception) {
             // Catch everything to let the user know this is something caused internally.
             throw new IllegalStateException("An internal error occurred attempting to define the script [" + name + "].", exception);
         }
     }
 
+    private String cacheKey(String scriptName, String source, CompilerSettings settings) {
+        String fingerprint = lookupFingerprint;
+        if (fingerprint == null) {
+            lookupFingerprint = fingerprint = CompiledScriptCache.fingerprint(painlessLookup);
+        }
+        return scriptClass.getName()
+            + "\n" + fingerprint
+            + "\n" + settings.getMaxLoopCounter()
+            + "," + settings.isPicky()
+            + "," + settings.getInitialCallSiteDepth()
+            + "," + settings.areRegexesEnabled()
+            + "," + settings.getRegexLimitFactor()
+            + "," + new TreeMap<>(settings.asMap())
+            + "\n" + scriptName
+            + "\n" + source;
+    }
+
+    /**
+     * Returns what's needed to load the given compiled script without compiling it again, or {@code null} if its static state can't be
+     * rebuilt, like the {@link java.util.regex.Pattern}s of regex literals.
+     */
+    private CompiledScriptCache.Entry toCacheEntry(byte[] bytes, ScriptScope scriptScope) {
+        if (REBUILT_STATIC_CONSTANTS.containsAll(scriptScope.getStaticConstants().keySet()) == false) {
+            return null;
+        }
+        List<CompiledScriptCache.Function> functions = new ArrayList<>();
+        for (FunctionTable.LocalFunction function : scriptScope.getFunctionTable().getFunctions()) {
+            String returnType = canonicalTypeName(function.getReturnType());
+            List<String> typeParameters = new ArrayList<>();
+            for (Class<?> typeParameter : function.getTypeParameters()) {
+                typeParameters.add(canonicalTypeName(typeParameter));
+            }
+            if (returnType == null || typeParameters.contains(null)) {
+                return null;
+            }
+            functions.add(
+                new CompiledScriptCache.Function(
+                    function.getFunctionName(),
+                    function.isMangled(),
+                    returnType,
+                    typeParameters,
+                    function.isInternal(),
+                    function.isStatic()
+                )
+            );
+        }
+        BitSet statements = (BitSet) scriptScope.getStaticConstants().get("$STATEMENTS");
+        return new CompiledScriptCache.Entry(
+            bytes,
+            scriptScope.getUsedVariables(),
+            scriptScope.isDeterministic(),
+            statements.toLongArray(),
+            functions,
+            scriptScope.getBatchScoreScriptPlan()
+        );
+    }
+
+    /**
+     * Returns the canonical name of the given type if it resolves back to the same type, or {@code null} otherwise.
+     */
+    private String canonicalTypeName(Class<?> type) {
+        String canonicalTypeName = PainlessLookupUtility.typeToCanonicalTypeName(type);
+        return painlessLookup.canonicalTypeNameToType(canonicalTypeName) == type ? canonicalTypeName : null;
+    }
+
     /**
      * Runs the two-pass compiler to generate a Painless script.  (Used by the debugger.)
      * @param source The source code for the script.
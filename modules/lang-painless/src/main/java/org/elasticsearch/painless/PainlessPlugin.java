@@ -144,7 +144,13 @@ public final class PainlessPlugin extends Plugin implements ScriptPlugin, Extens
 
     @Override
     public List<Setting<?>> getSettings() {
-        return Arrays.asList(CompilerSettings.REGEX_ENABLED, CompilerSettings.REGEX_LIMIT_FACTOR);
+        return Arrays.asList(
+            CompilerSettings.REGEX_ENABLED,
+            CompilerSettings.REGEX_LIMIT_FACTOR,
+            CompiledScriptCache.ENABLED,
+            CompiledScriptCache.KEY,
+            CompiledScriptCache.MAX_ENTRIES
+        );
     }
 
     @Override
@@ -15,6 +15,7 @@ import org.elasticsearch.painless.lookup.PainlessLookup;
 import org.elasticsearch.painless.lookup.PainlessLookupBuilder;
 import org.elasticsearch.painless.spi.Whitelist;
 import org.elasticsearch.painless.symbol.ScriptScope;
+import org.elasticsearch.script.ScoreScript;
 import org.elasticsearch.script.ScriptContext;
 import org.elasticsearch.script.ScriptEngine;
 import org.elasticsearch.script.ScriptException;
@@ -85,12 +86,13 @@ public final class PainlessScriptEngine implements ScriptEngine {
 
         Map<ScriptContext<?>, Compiler> contextsToCompilers = new HashMap<>();
         Map<ScriptContext<?>, PainlessLookup> contextsToLookups = new HashMap<>();
+        CompiledScriptCache compiledScriptCache = CompiledScriptCache.create(settings);
 
         for (Map.Entry<ScriptContext<?>, List<Whitelist>> entry : contexts.entrySet()) {
             ScriptContext<?> context = entry.getKey();
             PainlessLookup lookup = PainlessLookupBuilder.buildFromWhitelists(entry.getValue());
             contextsToCompilers.put(context,
-                    new Compiler(context.instanceClazz, context.factoryClazz, context.statefulFactoryClazz, lookup));
+                    new Compiler(context.instanceClazz, context.factoryClazz, context.statefulFactoryClazz, lookup, compiledScriptCache));
             contextsToLookups.put(context, lookup);
         }
 
@@ -133,11 +135,51 @@ public final class PainlessScriptEngine implements ScriptEngine {
 
         ScriptScope scriptScope = compile(contextsToCompilers.get(context), loader, scriptName, scriptSource, params);
 
+        return newFactory(loader, context, scriptScope);
+    }
+
+    @Override
+    public <T> T load(String scriptName, String scriptSource, ScriptContext<T> context, Map<String, String> params) {
+        Compiler compiler = contextsToCompilers.get(context);
+
+        // Check we ourselves are not being called by unprivileged code.
+        SpecialPermission.check();
+
+        final Loader loader = AccessController.doPrivileged(new PrivilegedAction<Loader>() {
+            @Override
+            public Loader run() {
+                return compiler.createLoader(getClass().getClassLoader());
+            }
+        });
+
+        final CompilerSettings compilerSettings;
+        try {
+            compilerSettings = buildCompilerSettings(params);
+        } catch (IllegalArgumentException e) {
+            // let compile report invalid parameters
+            return null;
+        }
+        ScriptScope scriptScope = compiler.load(loader, scriptName == null ? scriptSource : scriptName, scriptSource, compilerSettings);
+        if (scriptScope == null) {
+            return null;
+        }
+        return newFactory(loader, context, scriptScope);
+    }
+
+    private <T> T newFactory(Loader loader, ScriptContext<T> context, ScriptScope scriptScope) {
+        T factory;
         if (context.statefulFactoryClazz != null) {
-            return generateFactory(loader, context, generateStatefulFactory(loader, context, scriptScope), scriptScope);
+            factory = generateFactory(loader, context, generateStatefulFactory(loader, context, scriptScope), scriptScope);
         } else {
-            return generateFactory(loader, context, WriterConstants.CLASS_TYPE, scriptScope);
+            factory = generateFactory(loader, context, WriterConstants.CLASS_TYPE, scriptScope);
+        }
+
+        if (context == ScoreScript.CONTEXT && scriptScope.getBatchScoreScriptPlan() != null) {
+            factory = context.factoryClazz.cast(
+                BatchScoreScriptCompiler.newFactory((ScoreScript.Factory) factory, scriptScope.getBatchScoreScriptPlan())
+            );
         }
+        return factory;
     }
 
     @Override
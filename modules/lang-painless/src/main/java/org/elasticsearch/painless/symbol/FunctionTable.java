@@ -12,6 +12,7 @@ import org.elasticsearch.painless.lookup.PainlessLookupUtility;
 import org.objectweb.asm.commons.Method;
 
 import java.lang.invoke.MethodType;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -62,10 +63,18 @@ public class FunctionTable {
                     MethodType.methodType(javaReturnType, javaTypeParameters).toMethodDescriptorString());
         }
 
+        public String getFunctionName() {
+            return functionName;
+        }
+
         public String getMangledName() {
             return mangledName;
         }
 
+        public boolean isMangled() {
+            return mangledName.equals(functionName) == false;
+        }
+
         public Class<?> getReturnType() {
             return returnType;
         }
@@ -129,4 +138,8 @@ public class FunctionTable {
     public LocalFunction getFunction(String functionKey) {
         return localFunctions.get(functionKey);
     }
+
+    public Collection<LocalFunction> getFunctions() {
+        return Collections.unmodifiableCollection(localFunctions.values());
+    }
 }
@@ -8,6 +8,7 @@
 
 package org.elasticsearch.painless.symbol;
 
+import org.elasticsearch.painless.BatchScoreScriptCompiler;
 import org.elasticsearch.painless.CompilerSettings;
 import org.elasticsearch.painless.ScriptClassInfo;
 import org.elasticsearch.painless.lookup.PainlessLookup;
@@ -36,6 +37,7 @@ public class ScriptScope extends Decorator {
     protected boolean deterministic = true;
     protected Set<String> usedVariables = Collections.emptySet();
     protected Map<String, Object> staticConstants = new HashMap<>();
+    protected BatchScoreScriptCompiler.Plan batchScoreScriptPlan = null;
 
     public ScriptScope(PainlessLookup painlessLookup, CompilerSettings compilerSettings,
                       ScriptClassInfo scriptClassInfo, String scriptName, String scriptSource, int nodeCount) {
@@ -110,6 +112,17 @@ public class ScriptScope extends Decorator {
         return Collections.unmodifiableMap(staticConstants);
     }
 
+    public void setBatchScoreScriptPlan(BatchScoreScriptCompiler.Plan batchScoreScriptPlan) {
+        this.batchScoreScriptPlan = batchScoreScriptPlan;
+    }
+
+    /**
+     * Returns how the score script scores blocks of documents at once, or {@code null} if it only scores one document at a time.
+     */
+    public BatchScoreScriptCompiler.Plan getBatchScoreScriptPlan() {
+        return batchScoreScriptPlan;
+    }
+
     public <T extends Decoration> T putDecoration(ANode node, T decoration) {
         return put(node.getIdentifier(), decoration);
     }
@@ -0,0 +1,193 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.painless;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Scorable;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.common.settings.MockSecureSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.query.SearchExecutionContext;
+import org.elasticsearch.painless.spi.Whitelist;
+import org.elasticsearch.script.DocValuesDocReader;
+import org.elasticsearch.script.ScoreScript;
+import org.elasticsearch.script.ScriptContext;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
+
+public class BatchScoreScriptTests extends ESSingleNodeTestCase {
+
+    private static final Map<String, Object> PARAMS = Map.of("factor", 3, "offset", 2.5d, "big", 10_000_000_000L, "name", "foo");
+
+    private PainlessScriptEngine engine;
+    private IndexService index;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        Map<ScriptContext<?>, List<Whitelist>> contexts = Map.of(ScoreScript.CONTEXT, PainlessPlugin.BASE_WHITELISTS);
+        engine = new PainlessScriptEngine(Settings.EMPTY, contexts);
+        index = createIndex("test", Settings.EMPTY, "_doc", "l", "type=long", "i", "type=integer", "d", "type=double", "k", "type=keyword");
+        int numDocs = randomIntBetween(1, 300);
+        for (int i = 0; i < numDocs; i++) {
+            client().prepareIndex("test")
+                .setSource(
+                    "{\"l\":" + randomLongBetween(-1000, 1000)
+                        + ",\"i\":" + randomIntBetween(-100, 100)
+                        + ",\"d\":" + randomDoubleBetween(-100, 100, true)
+                        + ",\"k\":\"" + randomAlphaOfLength(3) + "\"}",
+                    XContentType.JSON
+                )
+                .get();
+        }
+        client().admin().indices().prepareRefresh("test").get();
+    }
+
+    public void testSameScores() throws IOException {
+        assertSameScores("doc['l'].value * 2 + _score");
+        assertSameScores("Math.log(1000 + doc['l'].value) * _score");
+        assertSameScores("doc.d.value / (doc['i'].getValue() + 0.5)");
+        assertSameScores("doc['i'].value / 7 + doc['i'].value % 7");
+        assertSameScores("doc['i'][0] * params.factor - params['offset']");
+        assertSameScores("(int) doc['d'].value / params.get('factor')");
+        assertSameScores("(long) (doc['d'].value * 1000) / 3L");
+        assertSameScores("params.big * doc['i'].value + params.factor * 1000000000");
+        assertSameScores("Math.max(doc['l'].value, doc['d'].value) + Math.pow(_score, 2) - Math.round(doc['d'].value)");
+        assertSameScores("-doc['i'].value + Math.PI * Math.E");
+        assertSameScores("double x = doc['l'].value + 1; def y = x * x; long z = doc['i'].value; return Math.sqrt(y) + z / 2;");
+        assertSameScores("int a = 2147483647; a * doc['i'].value");
+        assertSameScores("(int) -doc['d'].value + (long) (params.offset * doc['l'].value) + Math.round(params.offset)");
+        assertSameScores("int a = 7; def b = doc.i.value; long c = a * b; c + b / (a + 0.5) + +doc['l'][0]");
+    }
+
+    public void testLoadedScripts() throws IOException {
+        MockSecureSettings secureSettings = new MockSecureSettings();
+        secureSettings.setString(CompiledScriptCache.KEY.getKey(), randomAlphaOfLength(32));
+        Settings settings = Settings.builder()
+            .put(Environment.PATH_DATA_SETTING.getKey(), createTempDir().toString())
+            .put(CompiledScriptCache.ENABLED.getKey(), true)
+            .setSecureSettings(secureSettings)
+            .build();
+        Map<ScriptContext<?>, List<Whitelist>> contexts = Map.of(ScoreScript.CONTEXT, PainlessPlugin.BASE_WHITELISTS);
+        String script = "double x = doc['l'].value + params.factor; Math.log(Math.abs(x) + 1) * _score - doc['i'].value % 3";
+        new PainlessScriptEngine(settings, contexts).compile(null, script, ScoreScript.CONTEXT, emptyMap());
+        ScoreScript.Factory factory = new PainlessScriptEngine(settings, contexts).load(null, script, ScoreScript.CONTEXT, emptyMap());
+        assertNotNull(factory);
+        assertSameScores(script, factory);
+    }
+
+    public void testUnsupportedScripts() throws IOException {
+        assertNoBatch("doc['k'].value.length()");
+        assertNoBatch("doc['missing'].value");
+        assertNoBatch("params.name.length()");
+        assertNoBatch("params.unknown");
+        assertNoBatch("double x = 0; for (int i = 0; i < 3; i++) { x += doc['l'].value } return x;");
+        assertNoBatch("doc['l'].value > 0 ? 1 : 2");
+        assertNoBatch("doc['l'].size() == 0 ? 0 : doc['l'].value");
+        assertNoBatch("Math.random()");
+    }
+
+    public void testMissingValuesAndDivisionByZero() throws IOException {
+        client().prepareIndex("test")
+            .setSource("{\"d\":1.0}", XContentType.JSON)
+            .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+            .get();
+        client().prepareIndex("test")
+            .setSource("{\"l\":1,\"i\":0}", XContentType.JSON)
+            .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+            .get();
+        SearchExecutionContext context = index.newSearchExecutionContext(0, 0, null, () -> 0, null, emptyMap());
+        for (String script : List.of("doc['l'].value + 1", "doc['l'].value / doc['i'].value")) {
+            ScoreScript.LeafFactory factory = engine.compile(null, script, ScoreScript.CONTEXT, emptyMap())
+                .newFactory(PARAMS, context.lookup());
+            boolean failed = false;
+            try (Engine.Searcher searcher = index.getShard(0).acquireSearcher("test")) {
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    ScoreScript.BatchScoreScript batch = factory.newBatchInstance(new DocValuesDocReader(context.lookup(), leaf));
+                    assertNotNull(batch);
+                    int[] docs = new int[leaf.reader().maxDoc()];
+                    for (int doc = 0; doc < docs.length; doc++) {
+                        docs[doc] = doc;
+                    }
+                    failed |= batch.execute(docs, new float[docs.length], docs.length, new double[docs.length]) == false;
+                }
+            }
+            assertTrue(script, failed);
+        }
+    }
+
+    private void assertSameScores(String script) throws IOException {
+        assertSameScores(script, engine.compile(null, script, ScoreScript.CONTEXT, emptyMap()));
+    }
+
+    private void assertSameScores(String script, ScoreScript.Factory factory) throws IOException {
+        SearchExecutionContext context = index.newSearchExecutionContext(0, 0, null, () -> 0, null, emptyMap());
+        ScoreScript.LeafFactory leafFactory = factory.newFactory(PARAMS, context.lookup());
+        try (Engine.Searcher searcher = index.getShard(0).acquireSearcher("test")) {
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                ScoreScript.BatchScoreScript batch = leafFactory.newBatchInstance(new DocValuesDocReader(context.lookup(), leaf));
+                assertNotNull(script, batch);
+                ScoreScript perDoc = leafFactory.newInstance(new DocValuesDocReader(context.lookup(), leaf));
+                Score scorer = new Score();
+                perDoc.setScorer(scorer);
+                int doc = 0;
+                while (doc < leaf.reader().maxDoc()) {
+                    int count = Math.min(randomIntBetween(1, 100), leaf.reader().maxDoc() - doc);
+                    int[] docs = new int[count];
+                    float[] subQueryScores = new float[count];
+                    for (int i = 0; i < count; i++) {
+                        docs[i] = doc++;
+                        subQueryScores[i] = randomFloat() * 10;
+                    }
+                    double[] scores = new double[count];
+                    assertTrue(script, batch.execute(docs, subQueryScores, count, scores));
+                    for (int i = 0; i < count; i++) {
+                        perDoc.setDocument(docs[i]);
+                        scorer.score = subQueryScores[i];
+                        assertEquals(script, perDoc.execute(null), scores[i], 0d);
+                    }
+                }
+            }
+        }
+    }
+
+    private void assertNoBatch(String script) throws IOException {
+        SearchExecutionContext context = index.newSearchExecutionContext(0, 0, null, () -> 0, null, emptyMap());
+        ScoreScript.LeafFactory leafFactory = engine.compile(null, script, ScoreScript.CONTEXT, emptyMap())
+            .newFactory(PARAMS, context.lookup());
+        try (Engine.Searcher searcher = index.getShard(0).acquireSearcher("test")) {
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                assertNull(script, leafFactory.newBatchInstance(new DocValuesDocReader(context.lookup(), leaf)));
+            }
+        }
+    }
+
+    private static class Score extends Scorable {
+        private float score;
+
+        @Override
+        public float score() {
+            return score;
+        }
+
+        @Override
+        public int docID() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
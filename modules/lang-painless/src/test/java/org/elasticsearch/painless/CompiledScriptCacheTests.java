@@ -0,0 +1,154 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.painless;
+
+import org.elasticsearch.common.settings.MockSecureSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.painless.action.PainlessExecuteAction.PainlessTestScript;
+import org.elasticsearch.script.ScriptException;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class CompiledScriptCacheTests extends ScriptTestCase {
+
+    private static final Map<String, Object> PARAMS = Map.of("a", 5, "s", "foo");
+
+    private Path dataPath;
+    private int maxEntries = 1000;
+    private String key = randomAlphaOfLength(32);
+
+    @Override
+    protected Settings scriptEngineSettings() {
+        if (dataPath == null) {
+            dataPath = createTempDir();
+        }
+        MockSecureSettings secureSettings = new MockSecureSettings();
+        secureSettings.setString(CompiledScriptCache.KEY.getKey(), key);
+        return Settings.builder()
+            .put(Environment.PATH_DATA_SETTING.getKey(), dataPath.toString())
+            .put(CompiledScriptCache.ENABLED.getKey(), true)
+            .put(CompiledScriptCache.MAX_ENTRIES.getKey(), maxEntries)
+            .setSecureSettings(secureSettings)
+            .build();
+    }
+
+    public void testLoadCompiledScripts() {
+        List<String> scripts = List.of(
+            "int x = params.a; return x * 2 + 1;",
+            "def f(int a) { a * 3 } return f(params.a);",
+            "List l = [1, 2, 3]; return l.stream().mapToInt(x -> x * params.a).sum();",
+            "def x = params.s; return x.toUpperCase() + x.length();",
+            "long total = 0; for (int i = 0; i < params.a; i++) { total += i } return total;"
+        );
+        for (String script : scripts) {
+            Object expected = scriptEngine.compile(null, script, PainlessTestScript.CONTEXT, Map.of()).newInstance(PARAMS).execute();
+            PainlessScriptEngine restarted = new PainlessScriptEngine(scriptEngineSettings(), scriptContexts());
+            PainlessTestScript.Factory factory = restarted.load(null, script, PainlessTestScript.CONTEXT, Map.of());
+            assertNotNull(script, factory);
+            assertEquals(script, expected, factory.newInstance(PARAMS).execute());
+        }
+    }
+
+    public void testErrorsOfLoadedScripts() {
+        String script = "int[] x = new int[1];\nreturn x[params.a];";
+        ScriptException expected = expectThrows(
+            ScriptException.class,
+            () -> scriptEngine.compile(null, script, PainlessTestScript.CONTEXT, Map.of()).newInstance(PARAMS).execute()
+        );
+        PainlessScriptEngine restarted = new PainlessScriptEngine(scriptEngineSettings(), scriptContexts());
+        PainlessTestScript.Factory factory = restarted.load(null, script, PainlessTestScript.CONTEXT, Map.of());
+        assertNotNull(factory);
+        ScriptException actual = expectThrows(ScriptException.class, () -> factory.newInstance(PARAMS).execute());
+        assertEquals(expected.getScriptStack(), actual.getScriptStack());
+        assertEquals(expected.getPos().start, actual.getPos().start);
+        assertEquals(expected.getPos().end, actual.getPos().end);
+    }
+
+    public void testMisses() {
+        String script = "return params.a + 1;";
+        assertNull(scriptEngine.load(null, script, PainlessTestScript.CONTEXT, Map.of()));
+        scriptEngine.compile(null, script, PainlessTestScript.CONTEXT, Map.of());
+        assertNotNull(scriptEngine.load(null, script, PainlessTestScript.CONTEXT, Map.of()));
+        // compiler settings are part of the key
+        assertNull(scriptEngine.load(null, script, PainlessTestScript.CONTEXT, Map.of(CompilerSettings.MAX_LOOP_COUNTER, "10")));
+        assertNull(scriptEngine.load("name", script, PainlessTestScript.CONTEXT, Map.of()));
+        assertNull(scriptEngine.load(null, "return params.a + 2;", PainlessTestScript.CONTEXT, Map.of()));
+    }
+
+    public void testScriptsWithStaticStateAreNotCached() {
+        String script = "return /fo+/.matcher(params.s).matches();";
+        assertEquals(true, scriptEngine.compile(null, script, PainlessTestScript.CONTEXT, Map.of()).newInstance(PARAMS).execute());
+        assertNull(scriptEngine.load(null, script, PainlessTestScript.CONTEXT, Map.of()));
+    }
+
+    public void testCorruptedFilesAreDeleted() throws IOException {
+        String script = "return params.a * 7;";
+        scriptEngine.compile(null, script, PainlessTestScript.CONTEXT, Map.of());
+        List<Path> files = files();
+        assertThat(files, hasSize(1));
+        byte[] bytes = Files.readAllBytes(files.get(0));
+        int position = randomIntBetween(0, bytes.length - 1);
+        bytes[position] = (byte) (bytes[position] ^ (1 << randomIntBetween(0, 7)));
+        Files.write(files.get(0), bytes);
+        assertNull(scriptEngine.load(null, script, PainlessTestScript.CONTEXT, Map.of()));
+        assertThat(files(), hasSize(0));
+    }
+
+    public void testFilesWrittenWithAnotherKeyAreDeleted() throws IOException {
+        String script = "return params.a * 11;";
+        scriptEngine.compile(null, script, PainlessTestScript.CONTEXT, Map.of());
+        assertThat(files(), hasSize(1));
+        // whoever can write to the data path but doesn't hold the key can't get a node to load their classes
+        key = randomValueOtherThan(key, () -> randomAlphaOfLength(32));
+        PainlessScriptEngine restarted = new PainlessScriptEngine(scriptEngineSettings(), scriptContexts());
+        assertNull(restarted.load(null, script, PainlessTestScript.CONTEXT, Map.of()));
+        assertThat(files(), hasSize(0));
+    }
+
+    public void testKeyIsRequired() {
+        Settings settings = Settings.builder()
+            .put(Environment.PATH_DATA_SETTING.getKey(), createTempDir().toString())
+            .put(CompiledScriptCache.ENABLED.getKey(), true)
+            .build();
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> CompiledScriptCache.create(settings));
+        assertThat(e.getMessage(), containsString(CompiledScriptCache.KEY.getKey()));
+
+        key = randomAlphaOfLength(between(1, 15));
+        e = expectThrows(IllegalArgumentException.class, () -> CompiledScriptCache.create(scriptEngineSettings()));
+        assertThat(e.getMessage(), containsString("must be at least [16] characters long"));
+    }
+
+    public void testEviction() throws IOException {
+        maxEntries = 2;
+        scriptEngine = new PainlessScriptEngine(scriptEngineSettings(), scriptContexts());
+        for (int i = 0; i < 5; i++) {
+            scriptEngine.compile(null, "return params.a + " + i + ";", PainlessTestScript.CONTEXT, Map.of());
+        }
+        assertThat(files().size(), equalTo(2));
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dataPath.resolve("painless").resolve("scripts"), "*.class")) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+}
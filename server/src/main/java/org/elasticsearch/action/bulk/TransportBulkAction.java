@@ -51,6 +51,7 @@ import org.elasticsearch.core.Releasable;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.IndexingPressure;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.seqno.SequenceNumbers;
@@ -431,6 +432,7 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
             // Group the requests by ShardId -> Operations mapping
             Map<ShardId, List<BulkItemRequest>> requestsByShard = new HashMap<>();
             Map<Index, IndexRouting> indexRoutings = new HashMap<>();
+            Map<Index, Boolean> preParseSources = new HashMap<>();
             for (int i = 0; i < bulkRequest.requests.size(); i++) {
                 DocWriteRequest<?> docWriteRequest = bulkRequest.requests.get(i);
                 //the request can only be null because we set it to null in the previous step, so it gets ignored
@@ -468,6 +470,12 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
                             Version indexCreated = indexMetadata.getCreationVersion();
                             indexRequest.resolveRouting(metadata);
                             indexRequest.process(indexCreated, mappingMd, concreteIndex.getName());
+                            if (preParseSources.computeIfAbsent(
+                                concreteIndex,
+                                idx -> IndexSettings.INDEX_PRE_PARSE_SOURCE_SETTING.get(indexMetadata.getSettings())
+                            )) {
+                                indexRequest.parseSource();
+                            }
                             break;
                         case UPDATE:
                             TransportUpdateAction.resolveAndValidateRouting(metadata, concreteIndex.getName(),
@@ -29,9 +29,12 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.xcontent.XContentParser;
 import org.elasticsearch.xcontent.XContentType;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.mapper.MapperService;
@@ -83,6 +86,9 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
 
     private BytesReference source;
 
+    @Nullable // unless the source was parsed on the coordinating node
+    private BytesReference parsedSource;
+
     private OpType opType = OpType.INDEX;
 
     private long version = Versions.MATCH_ANY;
@@ -151,6 +157,9 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
         if (in.getVersion().onOrAfter(Version.V_7_13_0)) {
             dynamicTemplates = in.readMap(StreamInput::readString, StreamInput::readString);
         }
+        if (in.getVersion().onOrAfter(Version.V_8_0_0)) {
+            parsedSource = in.readOptionalBytesReference();
+        }
     }
 
     public IndexRequest() {
@@ -340,6 +349,70 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
         return XContentHelper.convertToMap(source, false, contentType).v2();
     }
 
+    /**
+     * The source of the document in {@link XContentType#SMILE} format if it was parsed on the coordinating node with
+     * {@link #parseSource()}, so that the shard copies can parse the document without tokenizing its JSON source again. It is only sent
+     * to nodes that can read it, the others parse the source.
+     */
+    @Nullable
+    public BytesReference parsedSource() {
+        return parsedSource;
+    }
+
+    /**
+     * Parses the JSON source of the document once and keeps its tokens in {@link XContentType#SMILE} format, which is cheaper to parse,
+     * for the shard copies to parse the document from. The source is left as the only representation of the document if it is not
+     * JSON, if it is malformed so that the shard copies report the failure as usual, or if it contains numbers whose textual
+     * representation would be lost, since some fields index numbers as they are written.
+     *
+     * @return whether the source was parsed
+     */
+    public boolean parseSource() {
+        if (contentType != XContentType.JSON || parsedSource != null) {
+            return parsedSource != null;
+        }
+        try (
+            XContentParser parser = XContentHelper.createParser(
+                NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION,
+                source,
+                XContentType.JSON
+            );
+            XContentBuilder builder = XContentFactory.smileBuilder()
+        ) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                return false;
+            }
+            int depth = 0;
+            do {
+                final XContentParser.Token token = parser.currentToken();
+                if (token == XContentParser.Token.VALUE_NUMBER) {
+                    final Number number = parser.numberValue();
+                    if (parser.text().equals(number.toString()) == false) {
+                        return false;
+                    }
+                    builder.value(number);
+                } else {
+                    if (token == XContentParser.Token.START_OBJECT || token == XContentParser.Token.START_ARRAY) {
+                        depth++;
+                    } else if (token == XContentParser.Token.END_OBJECT || token == XContentParser.Token.END_ARRAY) {
+                        depth--;
+                    }
+                    builder.generator().copyCurrentEvent(parser);
+                }
+            } while (depth > 0 && parser.nextToken() != null);
+            if (depth > 0 || parser.nextToken() != null) {
+                return false;
+            }
+            builder.flush();
+            parsedSource = BytesReference.bytes(builder);
+            return true;
+        } catch (Exception e) {
+            // leave it to the shard copies to report the failure
+            return false;
+        }
+    }
+
     /**
      * Index the Map in {@link Requests#INDEX_CONTENT_TYPE} format
      *
@@ -428,6 +501,7 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
     public IndexRequest source(BytesReference source, XContentType xContentType) {
         this.source = Objects.requireNonNull(source);
         this.contentType = Objects.requireNonNull(xContentType);
+        this.parsedSource = null;
         return this;
     }
 
@@ -667,6 +741,9 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
                 throw new IllegalArgumentException("[dynamic_templates] parameter requires all nodes on " + Version.V_7_13_0 + " or later");
             }
         }
+        if (out.getVersion().onOrAfter(Version.V_8_0_0)) {
+            out.writeOptionalBytesReference(parsedSource);
+        }
     }
 
     @Override
@@ -712,7 +789,8 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
 
     @Override
     public long ramBytesUsed() {
-        return SHALLOW_SIZE + RamUsageEstimator.sizeOf(id) + (source == null ? 0 : source.length());
+        return SHALLOW_SIZE + RamUsageEstimator.sizeOf(id) + (source == null ? 0 : source.length())
+            + (parsedSource == null ? 0 : parsedSource.length());
     }
 
     @Override
@@ -27,6 +27,7 @@ import org.apache.lucene.util.Bits;
 import org.elasticsearch.Version;
 import org.elasticsearch.script.DocValuesDocReader;
 import org.elasticsearch.script.ScoreScript;
+import org.elasticsearch.script.ScoreScript.BatchScoreScript;
 import org.elasticsearch.script.ScoreScript.ExplanationHolder;
 import org.elasticsearch.script.Script;
 import org.elasticsearch.search.lookup.SearchLookup;
@@ -85,6 +86,16 @@ public class ScriptScoreQuery extends Query {
                     if (subQueryBulkScorer == null) {
                         return null;
                     }
+                    final BatchScoreScript batchScoreScript = scriptBuilder.newBatchInstance(new DocValuesDocReader(lookup, context));
+                    if (batchScoreScript != null) {
+                        return new BatchScriptScoreBulkScorer(
+                            subQueryBulkScorer,
+                            subQueryScoreMode,
+                            batchScoreScript,
+                            makeScoreScript(context),
+                            boost
+                        );
+                    }
                     return new ScriptScoreBulkScorer(subQueryBulkScorer, subQueryScoreMode, makeScoreScript(context), boost);
                 } else {
                     return super.bulkScorer(context);
@@ -306,4 +317,120 @@ public class ScriptScoreQuery extends Query {
 
     }
 
+    /**
+     * Like {@link ScriptScoreBulkScorer}, but buffers the documents that the sub-query collects in order to score them in blocks
+     * with a {@link BatchScoreScript} before passing them on to the collector.
+     */
+    private static class BatchScriptScoreBulkScorer extends BulkScorer {
+        private static final int BATCH_SIZE = 64;
+
+        private final BulkScorer subQueryBulkScorer;
+        private final ScoreMode subQueryScoreMode;
+        private final BatchScoreScript batchScoreScript;
+        private final ScoreScript scoreScript;
+        private final float boost;
+        private final int[] docs = new int[BATCH_SIZE];
+        private final float[] subQueryScores = new float[BATCH_SIZE];
+        private final double[] scores = new double[BATCH_SIZE];
+
+        BatchScriptScoreBulkScorer(
+            BulkScorer subQueryBulkScorer,
+            ScoreMode subQueryScoreMode,
+            BatchScoreScript batchScoreScript,
+            ScoreScript scoreScript,
+            float boost
+        ) {
+            this.subQueryBulkScorer = subQueryBulkScorer;
+            this.subQueryScoreMode = subQueryScoreMode;
+            this.batchScoreScript = batchScoreScript;
+            this.scoreScript = scoreScript;
+            this.boost = boost;
+        }
+
+        @Override
+        public int score(LeafCollector collector, Bits acceptDocs, int min, int max) throws IOException {
+            final BatchCollector batchCollector = new BatchCollector(collector);
+            final int next = subQueryBulkScorer.score(batchCollector, acceptDocs, min, max);
+            batchCollector.flush();
+            return next;
+        }
+
+        @Override
+        public long cost() {
+            return subQueryBulkScorer.cost();
+        }
+
+        private class BatchCollector extends FilterLeafCollector {
+            private final BufferedScorable scorable = new BufferedScorable();
+            private Scorable subQueryScorer;
+            private int count;
+
+            BatchCollector(LeafCollector in) {
+                super(in);
+            }
+
+            @Override
+            public void setScorer(Scorable scorer) throws IOException {
+                this.subQueryScorer = scorer;
+                in.setScorer(scorable);
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                docs[count] = doc;
+                subQueryScores[count] = subQueryScoreMode == ScoreMode.COMPLETE ? subQueryScorer.score() : 0f;
+                if (++count == BATCH_SIZE) {
+                    flush();
+                }
+            }
+
+            void flush() throws IOException {
+                if (count == 0) {
+                    return;
+                }
+                final int numDocs = count;
+                // reset first, the collector may throw to terminate collection
+                count = 0;
+                if (batchScoreScript.execute(docs, subQueryScores, numDocs, scores) == false) {
+                    // score one document at a time to report the error of the first document that the script fails on
+                    for (int i = 0; i < numDocs; i++) {
+                        scorable.doc = docs[i];
+                        scorable.score = subQueryScores[i];
+                        scoreScript.setScorer(scorable);
+                        scoreScript.setDocument(docs[i]);
+                        scores[i] = scoreScript.execute(null);
+                    }
+                }
+                for (int i = 0; i < numDocs; i++) {
+                    final float score = (float) scores[i];
+                    if (score < 0f || Float.isNaN(score)) {
+                        throw new IllegalArgumentException("script_score script returned an invalid score [" + score + "] " +
+                            "for doc [" + docs[i] + "]. Must be a non-negative score!");
+                    }
+                    scorable.doc = docs[i];
+                    scorable.score = score * boost;
+                    in.collect(docs[i]);
+                }
+            }
+        }
+
+        /**
+         * A {@link Scorable} over the score of the buffered document that is being collected.
+         */
+        private static class BufferedScorable extends Scorable {
+            private int doc = -1;
+            private float score;
+
+            @Override
+            public float score() {
+                return score;
+            }
+
+            @Override
+            public int docID() {
+                return doc;
+            }
+        }
+    }
+
 }
@@ -42,6 +42,7 @@ import org.elasticsearch.index.mapper.NestedObjectMapper;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.ShardUtils;
+import org.elasticsearch.lucene.util.RoaringBitSet;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.Closeable;
@@ -65,8 +66,11 @@ public final class BitsetFilterCache extends AbstractIndexComponent
 
     public static final Setting<Boolean> INDEX_LOAD_RANDOM_ACCESS_FILTERS_EAGERLY_SETTING =
         Setting.boolSetting("index.load_fixed_bitset_filters_eagerly", true, Property.IndexScope);
+    public static final Setting<Boolean> INDEX_COMPRESS_BITSET_FILTERS_SETTING =
+        Setting.boolSetting("index.compress_bitset_filters", false, Property.IndexScope);
 
     private final boolean loadRandomAccessFiltersEagerly;
+    private final boolean compressBitsetFilters;
     private final Cache<IndexReader.CacheKey, Cache<Query, Value>> loadedFilters;
     private final Listener listener;
 
@@ -76,11 +80,22 @@ public final class BitsetFilterCache extends AbstractIndexComponent
             throw new IllegalArgumentException("listener must not be null");
         }
         this.loadRandomAccessFiltersEagerly = this.indexSettings.getValue(INDEX_LOAD_RANDOM_ACCESS_FILTERS_EAGERLY_SETTING);
+        this.compressBitsetFilters = this.indexSettings.getValue(INDEX_COMPRESS_BITSET_FILTERS_SETTING);
         this.loadedFilters = CacheBuilder.<IndexReader.CacheKey, Cache<Query, Value>>builder().removalListener(this).build();
         this.listener = listener;
     }
 
     public static BitSet bitsetFromQuery(Query query, LeafReaderContext context) throws IOException {
+        return bitsetFromQuery(query, context, false);
+    }
+
+    /**
+     * Materializes the documents that match the given query in the given segment.
+     *
+     * @param compress whether to build a {@link RoaringBitSet}, which is smaller than the {@link BitSet} that Lucene picks for very
+     *                 sparse or very dense filters, or for filters whose documents are spread evenly across the segment
+     */
+    static BitSet bitsetFromQuery(Query query, LeafReaderContext context, boolean compress) throws IOException {
         final IndexReaderContext topLevelContext = ReaderUtil.getTopLevelContext(context);
         final IndexSearcher searcher = new IndexSearcher(topLevelContext);
         searcher.setQueryCache(null);
@@ -88,6 +103,8 @@ public final class BitsetFilterCache extends AbstractIndexComponent
         Scorer s = weight.scorer(context);
         if (s == null) {
             return null;
+        } else if (compress) {
+            return RoaringBitSet.of(s.iterator(), context.reader().maxDoc());
         } else {
             return BitSet.of(s.iterator(), context.reader().maxDoc());
         }
@@ -139,7 +156,7 @@ public final class BitsetFilterCache extends AbstractIndexComponent
         });
 
         return filterToFbs.computeIfAbsent(query, key -> {
-            final BitSet bitSet = bitsetFromQuery(query, context);
+            final BitSet bitSet = bitsetFromQuery(query, context, compressBitsetFilters);
             Value value = new Value(bitSet, shardId);
             listener.onCache(shardId, value.bitset);
             return value;
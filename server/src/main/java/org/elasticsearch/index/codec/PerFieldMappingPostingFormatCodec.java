@@ -14,7 +14,12 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.lucene90.Lucene90Codec;
 import org.apache.lucene.codecs.lucene90.Lucene90DocValuesFormat;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.IndexMode;
+import org.elasticsearch.index.codec.tsdb.ES80TSDBDocValuesFormat;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
 
 /**
  * {@link PerFieldMappingPostingFormatCodec This postings format} is the default
@@ -23,11 +28,13 @@ import org.elasticsearch.index.mapper.MapperService;
  * allows users to change the low level postings format for individual fields
  * per index in real time via the mapping API. If no specific postings format is
  * configured for a specific field the default postings format is used.
+ * The numeric and date fields of time series indices use the {@link ES80TSDBDocValuesFormat}.
  */
 public class PerFieldMappingPostingFormatCodec extends Lucene90Codec {
     private final MapperService mapperService;
 
     private final DocValuesFormat docValuesFormat = new Lucene90DocValuesFormat();
+    private final DocValuesFormat tsdbDocValuesFormat = new ES80TSDBDocValuesFormat();
 
     static {
         assert Codec.forName(Lucene.LATEST_CODEC).getClass().isAssignableFrom(PerFieldMappingPostingFormatCodec.class) :
@@ -50,6 +57,12 @@ public class PerFieldMappingPostingFormatCodec extends Lucene90Codec {
 
     @Override
     public DocValuesFormat getDocValuesFormatForField(String field) {
+        if (mapperService.getIndexSettings().getMode() == IndexMode.TIME_SERIES) {
+            MappedFieldType fieldType = mapperService.mappingLookup().getFieldType(field);
+            if (fieldType instanceof NumberFieldMapper.NumberFieldType || fieldType instanceof DateFieldMapper.DateFieldType) {
+                return tsdbDocValuesFormat;
+            }
+        }
         return docValuesFormat;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.codec.tsdb;
+
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.BitUtil;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes blocks of up to {@link #BLOCK_SIZE} longs with whichever of its modes takes the least space.
+ * Doubles are expected as {@link org.apache.lucene.util.NumericUtils#doubleToSortableLong sortable longs}, which keep
+ * the sign, exponent and high bits of the mantissa of the double in the high bits of the long.
+ */
+final class DocValuesEncoder {
+
+    static final int BLOCK_SIZE = 128;
+
+    /**
+     * All the values of the block are the same.
+     */
+    static final byte CONSTANT = 0;
+    /**
+     * The offsets of the values from the minimum value of the block.
+     */
+    static final byte OFFSET = 1;
+    /**
+     * The first value, the first delta and the zig-zag encoded delta-of-deltas of the following values.
+     */
+    static final byte DELTA_OF_DELTA = 2;
+    /**
+     * The first value followed by the xor of each value with the previous one, without their common trailing zeros.
+     */
+    static final byte XOR = 3;
+
+    private final long[] scratch = new long[BLOCK_SIZE];
+    private final long[] packed = new long[BLOCK_SIZE];
+
+    void encode(long[] values, int count, DataOutput out) throws IOException {
+        assert count > 0 && count <= BLOCK_SIZE : count;
+        long min = values[0];
+        long max = values[0];
+        long deltaOfDeltaBits = 0;
+        long xorBits = 0;
+        for (int i = 1; i < count; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+            xorBits |= values[i] ^ values[i - 1];
+            if (i >= 2) {
+                deltaOfDeltaBits |= BitUtil.zigZagEncode((values[i] - values[i - 1]) - (values[i - 1] - values[i - 2]));
+            }
+        }
+
+        if (min == max) {
+            out.writeByte(CONSTANT);
+            out.writeZLong(min);
+            return;
+        }
+
+        int offsetBitsPerValue = bitsRequired(max - min);
+        int deltaOfDeltaBitsPerValue = bitsRequired(deltaOfDeltaBits);
+        int trailingZeros = Long.numberOfTrailingZeros(xorBits);
+        int xorBitsPerValue = bitsRequired(xorBits >>> trailingZeros);
+
+        // the delta-of-deltas need an additional value in the header
+        long offsetCost = (long) count * offsetBitsPerValue;
+        long deltaOfDeltaCost = (long) (count - 2) * deltaOfDeltaBitsPerValue + Long.SIZE;
+        long xorCost = (long) (count - 1) * xorBitsPerValue;
+
+        if (offsetCost <= deltaOfDeltaCost && offsetCost <= xorCost) {
+            out.writeByte(OFFSET);
+            out.writeZLong(min);
+            out.writeByte((byte) offsetBitsPerValue);
+            for (int i = 0; i < count; i++) {
+                scratch[i] = values[i] - min;
+            }
+            writePacked(scratch, 0, count, offsetBitsPerValue, out);
+        } else if (deltaOfDeltaCost <= xorCost) {
+            out.writeByte(DELTA_OF_DELTA);
+            out.writeZLong(values[0]);
+            out.writeZLong(values[1] - values[0]);
+            out.writeByte((byte) deltaOfDeltaBitsPerValue);
+            for (int i = 2; i < count; i++) {
+                scratch[i] = BitUtil.zigZagEncode((values[i] - values[i - 1]) - (values[i - 1] - values[i - 2]));
+            }
+            writePacked(scratch, 2, count - 2, deltaOfDeltaBitsPerValue, out);
+        } else {
+            out.writeByte(XOR);
+            out.writeZLong(values[0]);
+            out.writeByte((byte) trailingZeros);
+            out.writeByte((byte) xorBitsPerValue);
+            for (int i = 1; i < count; i++) {
+                scratch[i] = (values[i] ^ values[i - 1]) >>> trailingZeros;
+            }
+            writePacked(scratch, 1, count - 1, xorBitsPerValue, out);
+        }
+    }
+
+    void decode(DataInput in, long[] values, int count) throws IOException {
+        assert count > 0 && count <= BLOCK_SIZE : count;
+        byte mode = in.readByte();
+        switch (mode) {
+            case CONSTANT:
+                Arrays.fill(values, 0, count, in.readZLong());
+                break;
+            case OFFSET: {
+                long min = in.readZLong();
+                readPacked(in, values, 0, count, in.readByte());
+                for (int i = 0; i < count; i++) {
+                    values[i] += min;
+                }
+                break;
+            }
+            case DELTA_OF_DELTA: {
+                values[0] = in.readZLong();
+                long delta = in.readZLong();
+                values[1] = values[0] + delta;
+                readPacked(in, values, 2, count - 2, in.readByte());
+                for (int i = 2; i < count; i++) {
+                    delta += BitUtil.zigZagDecode(values[i]);
+                    values[i] = values[i - 1] + delta;
+                }
+                break;
+            }
+            case XOR: {
+                values[0] = in.readZLong();
+                int trailingZeros = in.readByte();
+                readPacked(in, values, 1, count - 1, in.readByte());
+                for (int i = 1; i < count; i++) {
+                    values[i] = values[i - 1] ^ (values[i] << trailingZeros);
+                }
+                break;
+            }
+            default:
+                throw new CorruptIndexException("unknown block encoding [" + mode + "]", in);
+        }
+    }
+
+    private static int bitsRequired(long bits) {
+        return Long.SIZE - Long.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Writes the low {@code bitsPerValue} bits of the values in as few longs as possible.
+     */
+    private static void writePacked(long[] values, int from, int count, int bitsPerValue, DataOutput out) throws IOException {
+        if (bitsPerValue == 0) {
+            return;
+        }
+        long buffer = 0;
+        int bufferedBits = 0;
+        for (int i = from; i < from + count; i++) {
+            long value = values[i];
+            int remainingBits = Long.SIZE - bufferedBits;
+            buffer |= value << bufferedBits;
+            if (bitsPerValue < remainingBits) {
+                bufferedBits += bitsPerValue;
+            } else {
+                out.writeLong(buffer);
+                buffer = bitsPerValue == remainingBits ? 0 : value >>> remainingBits;
+                bufferedBits = bitsPerValue - remainingBits;
+            }
+        }
+        if (bufferedBits > 0) {
+            out.writeLong(buffer);
+        }
+    }
+
+    private void readPacked(DataInput in, long[] values, int from, int count, int bitsPerValue) throws IOException {
+        if (bitsPerValue == 0) {
+            Arrays.fill(values, from, from + count, 0L);
+            return;
+        }
+        int numLongs = (count * bitsPerValue + Long.SIZE - 1) / Long.SIZE;
+        in.readLongs(packed, 0, numLongs);
+        long mask = bitsPerValue == Long.SIZE ? -1L : (1L << bitsPerValue) - 1;
+        int bit = 0;
+        for (int i = from; i < from + count; i++, bit += bitsPerValue) {
+            int index = bit >>> 6;
+            int shift = bit & 63;
+            long value = packed[index] >>> shift;
+            if (shift + bitsPerValue > Long.SIZE) {
+                value |= packed[index + 1] << (Long.SIZE - shift);
+            }
+            values[i] = value & mask;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.codec.tsdb;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.EmptyDocValuesProducer;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.packed.DirectMonotonicWriter;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.IOException;
+
+final class ES80TSDBDocValuesConsumer extends DocValuesConsumer {
+
+    private IndexOutput data;
+    private IndexOutput meta;
+    private final int maxDoc;
+
+    ES80TSDBDocValuesConsumer(SegmentWriteState state, String dataCodec, String dataExtension, String metaCodec, String metaExtension)
+        throws IOException {
+        boolean success = false;
+        try {
+            String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, dataExtension);
+            data = state.directory.createOutput(dataName, state.context);
+            CodecUtil.writeIndexHeader(
+                data,
+                dataCodec,
+                ES80TSDBDocValuesFormat.VERSION_CURRENT,
+                state.segmentInfo.getId(),
+                state.segmentSuffix
+            );
+            String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, metaExtension);
+            meta = state.directory.createOutput(metaName, state.context);
+            CodecUtil.writeIndexHeader(
+                meta,
+                metaCodec,
+                ES80TSDBDocValuesFormat.VERSION_CURRENT,
+                state.segmentInfo.getId(),
+                state.segmentSuffix
+            );
+            maxDoc = state.segmentInfo.maxDoc();
+            success = true;
+        } finally {
+            if (success == false) {
+                IOUtils.closeWhileHandlingException(this);
+            }
+        }
+    }
+
+    @Override
+    public void addNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+        meta.writeInt(field.number);
+        meta.writeByte(ES80TSDBDocValuesFormat.NUMERIC);
+        writeField(field, new EmptyDocValuesProducer() {
+            @Override
+            public SortedNumericDocValues getSortedNumeric(FieldInfo fieldInfo) throws IOException {
+                return DocValues.singleton(valuesProducer.getNumeric(fieldInfo));
+            }
+        });
+    }
+
+    @Override
+    public void addSortedNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+        meta.writeInt(field.number);
+        meta.writeByte(ES80TSDBDocValuesFormat.SORTED_NUMERIC);
+        writeField(field, valuesProducer);
+    }
+
+    private void writeField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+        int numDocsWithField = 0;
+        long numValues = 0;
+        FixedBitSet docsWithField = new FixedBitSet(maxDoc);
+        SortedNumericDocValues values = valuesProducer.getSortedNumeric(field);
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+            docsWithField.set(doc);
+            numDocsWithField++;
+            numValues += values.docValueCount();
+        }
+
+        if (numDocsWithField == 0) {
+            meta.writeLong(-2);
+            meta.writeLong(0L);
+        } else if (numDocsWithField == maxDoc) {
+            meta.writeLong(-1);
+            meta.writeLong(0L);
+        } else {
+            long offset = data.getFilePointer();
+            for (long word : docsWithField.getBits()) {
+                data.writeLong(word);
+            }
+            meta.writeLong(offset);
+            meta.writeLong(data.getFilePointer() - offset);
+        }
+        meta.writeInt(numDocsWithField);
+        meta.writeLong(numValues);
+        if (numDocsWithField == 0) {
+            return;
+        }
+
+        // the values are encoded in blocks of consecutive values in doc id order
+        DocValuesEncoder encoder = new DocValuesEncoder();
+        PackedLongValues.Builder blockOffsets = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        long[] buffer = new long[DocValuesEncoder.BLOCK_SIZE];
+        int bufferSize = 0;
+        long valuesOffset = data.getFilePointer();
+        values = valuesProducer.getSortedNumeric(field);
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+            for (int i = 0, count = values.docValueCount(); i < count; i++) {
+                buffer[bufferSize++] = values.nextValue();
+                if (bufferSize == DocValuesEncoder.BLOCK_SIZE) {
+                    blockOffsets.add(data.getFilePointer() - valuesOffset);
+                    encoder.encode(buffer, bufferSize, data);
+                    bufferSize = 0;
+                }
+            }
+        }
+        if (bufferSize > 0) {
+            blockOffsets.add(data.getFilePointer() - valuesOffset);
+            encoder.encode(buffer, bufferSize, data);
+        }
+        meta.writeLong(valuesOffset);
+        meta.writeLong(data.getFilePointer() - valuesOffset);
+
+        writeMonotonic(blockOffsets.build());
+
+        if (numValues > numDocsWithField) {
+            PackedLongValues.Builder addresses = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+            long address = 0;
+            addresses.add(address);
+            values = valuesProducer.getSortedNumeric(field);
+            for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                address += values.docValueCount();
+                addresses.add(address);
+            }
+            writeMonotonic(addresses.build());
+        }
+    }
+
+    private void writeMonotonic(PackedLongValues values) throws IOException {
+        long start = data.getFilePointer();
+        meta.writeLong(start);
+        DirectMonotonicWriter writer = DirectMonotonicWriter.getInstance(
+            meta,
+            data,
+            values.size(),
+            ES80TSDBDocValuesFormat.DIRECT_MONOTONIC_BLOCK_SHIFT
+        );
+        PackedLongValues.Iterator iterator = values.iterator();
+        while (iterator.hasNext()) {
+            writer.add(iterator.next());
+        }
+        writer.finish();
+        meta.writeLong(data.getFilePointer() - start);
+    }
+
+    @Override
+    public void addBinaryField(FieldInfo field, DocValuesProducer valuesProducer) {
+        throw unsupported(field, "binary");
+    }
+
+    @Override
+    public void addSortedField(FieldInfo field, DocValuesProducer valuesProducer) {
+        throw unsupported(field, "sorted");
+    }
+
+    @Override
+    public void addSortedSetField(FieldInfo field, DocValuesProducer valuesProducer) {
+        throw unsupported(field, "sorted set");
+    }
+
+    private static UnsupportedOperationException unsupported(FieldInfo field, String type) {
+        return new UnsupportedOperationException(
+            "field [" + field.name + "] has " + type + " doc values which aren't supported by [" + ES80TSDBDocValuesFormat.NAME + "]"
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        boolean success = false;
+        try {
+            if (meta != null) {
+                // write EOF marker
+                meta.writeInt(-1);
+                CodecUtil.writeFooter(meta);
+            }
+            if (data != null) {
+                CodecUtil.writeFooter(data);
+            }
+            success = true;
+        } finally {
+            if (success) {
+                IOUtils.close(data, meta);
+            } else {
+                IOUtils.closeWhileHandlingException(data, meta);
+            }
+            meta = data = null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.codec.tsdb;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+
+import java.io.IOException;
+
+/**
+ * {@link DocValuesFormat} for the numeric fields of time series indices. Values are written in blocks of
+ * {@link DocValuesEncoder#BLOCK_SIZE} values in document order, each of them encoded with whichever of the
+ * following takes the least space:
+ * <ul>
+ *   <li>a single value if all the values of the block are the same,</li>
+ *   <li>the offsets of the values from the minimum value of the block,</li>
+ *   <li>the delta-of-deltas of the values, which are close to zero for timestamps and counters sampled at a
+ *   regular interval,</li>
+ *   <li>the xor of consecutive values, which has many leading and trailing zeros for slowly changing doubles.</li>
+ * </ul>
+ * Only numeric and sorted numeric doc values are supported.
+ */
+public final class ES80TSDBDocValuesFormat extends DocValuesFormat {
+
+    public static final String NAME = "ES80TSDB";
+
+    static final String DATA_CODEC = "ES80TSDBDocValuesData";
+    static final String DATA_EXTENSION = "dvd";
+    static final String META_CODEC = "ES80TSDBDocValuesMetadata";
+    static final String META_EXTENSION = "dvm";
+    static final int VERSION_START = 0;
+    static final int VERSION_CURRENT = VERSION_START;
+
+    static final byte NUMERIC = 0;
+    static final byte SORTED_NUMERIC = 1;
+
+    static final int DIRECT_MONOTONIC_BLOCK_SHIFT = 16;
+
+    public ES80TSDBDocValuesFormat() {
+        super(NAME);
+    }
+
+    @Override
+    public DocValuesConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+        return new ES80TSDBDocValuesConsumer(state, DATA_CODEC, DATA_EXTENSION, META_CODEC, META_EXTENSION);
+    }
+
+    @Override
+    public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+        return new ES80TSDBDocValuesProducer(state, DATA_CODEC, DATA_EXTENSION, META_CODEC, META_EXTENSION);
+    }
+}
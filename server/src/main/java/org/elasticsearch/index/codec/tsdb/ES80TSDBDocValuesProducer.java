@@ -0,0 +1,439 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.codec.tsdb;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.DirectMonotonicReader;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+final class ES80TSDBDocValuesProducer extends DocValuesProducer {
+
+    private final Map<String, NumericEntry> entries = new HashMap<>();
+    private final IndexInput data;
+    private final int maxDoc;
+
+    ES80TSDBDocValuesProducer(SegmentReadState state, String dataCodec, String dataExtension, String metaCodec, String metaExtension)
+        throws IOException {
+        String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, metaExtension);
+        this.maxDoc = state.segmentInfo.maxDoc();
+
+        int version = -1;
+        try (ChecksumIndexInput in = state.directory.openChecksumInput(metaName, state.context)) {
+            Throwable priorE = null;
+            try {
+                version = CodecUtil.checkIndexHeader(
+                    in,
+                    metaCodec,
+                    ES80TSDBDocValuesFormat.VERSION_START,
+                    ES80TSDBDocValuesFormat.VERSION_CURRENT,
+                    state.segmentInfo.getId(),
+                    state.segmentSuffix
+                );
+                readFields(in, state.fieldInfos);
+            } catch (Throwable exception) {
+                priorE = exception;
+            } finally {
+                CodecUtil.checkFooter(in, priorE);
+            }
+        }
+
+        String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, dataExtension);
+        this.data = state.directory.openInput(dataName, state.context);
+        boolean success = false;
+        try {
+            int version2 = CodecUtil.checkIndexHeader(
+                data,
+                dataCodec,
+                ES80TSDBDocValuesFormat.VERSION_START,
+                ES80TSDBDocValuesFormat.VERSION_CURRENT,
+                state.segmentInfo.getId(),
+                state.segmentSuffix
+            );
+            if (version != version2) {
+                throw new CorruptIndexException("Format versions mismatch: meta=" + version + ", data=" + version2, data);
+            }
+            // NOTE: data file is too costly to verify checksum against all the bytes on open,
+            // but for now we at least verify proper structure of the checksum footer: which looks
+            // for FOOTER_MAGIC + algorithmID. This is cheap and can detect some forms of corruption
+            // such as file truncation.
+            CodecUtil.retrieveChecksum(data);
+            success = true;
+        } finally {
+            if (success == false) {
+                IOUtils.closeWhileHandlingException(this.data);
+            }
+        }
+    }
+
+    private void readFields(ChecksumIndexInput meta, FieldInfos infos) throws IOException {
+        for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
+            FieldInfo info = infos.fieldInfo(fieldNumber);
+            if (info == null) {
+                throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+            }
+            byte type = meta.readByte();
+            if (type != ES80TSDBDocValuesFormat.NUMERIC && type != ES80TSDBDocValuesFormat.SORTED_NUMERIC) {
+                throw new CorruptIndexException("invalid type: " + type, meta);
+            }
+            entries.put(info.name, readEntry(meta));
+        }
+    }
+
+    private static NumericEntry readEntry(IndexInput meta) throws IOException {
+        NumericEntry entry = new NumericEntry();
+        entry.docsWithFieldOffset = meta.readLong();
+        entry.docsWithFieldLength = meta.readLong();
+        entry.numDocsWithField = meta.readInt();
+        entry.numValues = meta.readLong();
+        if (entry.numDocsWithField == 0) {
+            return entry;
+        }
+        entry.valuesOffset = meta.readLong();
+        entry.valuesLength = meta.readLong();
+        long numBlocks = (entry.numValues + DocValuesEncoder.BLOCK_SIZE - 1) / DocValuesEncoder.BLOCK_SIZE;
+        entry.blockOffsets = readMonotonic(meta, numBlocks);
+        if (entry.numValues > entry.numDocsWithField) {
+            entry.addresses = readMonotonic(meta, entry.numDocsWithField + 1L);
+        }
+        return entry;
+    }
+
+    private static MonotonicEntry readMonotonic(IndexInput meta, long numValues) throws IOException {
+        MonotonicEntry entry = new MonotonicEntry();
+        entry.offset = meta.readLong();
+        entry.meta = DirectMonotonicReader.loadMeta(meta, numValues, ES80TSDBDocValuesFormat.DIRECT_MONOTONIC_BLOCK_SHIFT);
+        entry.length = meta.readLong();
+        return entry;
+    }
+
+    @Override
+    public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+        NumericEntry entry = entries.get(field.name);
+        if (entry.numDocsWithField == 0) {
+            return DocValues.emptyNumeric();
+        }
+        DocsWithField docs = docsWithField(entry);
+        BlockValues values = new BlockValues(entry);
+        return new NumericDocValues() {
+            @Override
+            public long longValue() throws IOException {
+                return values.get(docs.index());
+            }
+
+            @Override
+            public boolean advanceExact(int target) throws IOException {
+                return docs.advanceExact(target);
+            }
+
+            @Override
+            public int docID() {
+                return docs.docID();
+            }
+
+            @Override
+            public int nextDoc() throws IOException {
+                return docs.advance(docs.docID() + 1);
+            }
+
+            @Override
+            public int advance(int target) throws IOException {
+                return docs.advance(target);
+            }
+
+            @Override
+            public long cost() {
+                return entry.numDocsWithField;
+            }
+        };
+    }
+
+    @Override
+    public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+        NumericEntry entry = entries.get(field.name);
+        if (entry.numValues == entry.numDocsWithField) {
+            return DocValues.singleton(getNumeric(field));
+        }
+        DocsWithField docs = docsWithField(entry);
+        BlockValues values = new BlockValues(entry);
+        LongValues addresses = DirectMonotonicReader.getInstance(
+            entry.addresses.meta,
+            data.randomAccessSlice(entry.addresses.offset, entry.addresses.length)
+        );
+        return new SortedNumericDocValues() {
+            private long start;
+            private long end;
+            private int count;
+
+            @Override
+            public long nextValue() throws IOException {
+                return values.get(start++);
+            }
+
+            @Override
+            public int docValueCount() {
+                return count;
+            }
+
+            @Override
+            public boolean advanceExact(int target) throws IOException {
+                if (docs.advanceExact(target)) {
+                    readAddresses();
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public int docID() {
+                return docs.docID();
+            }
+
+            @Override
+            public int nextDoc() throws IOException {
+                return advance(docs.docID() + 1);
+            }
+
+            @Override
+            public int advance(int target) throws IOException {
+                int doc = docs.advance(target);
+                if (doc != NO_MORE_DOCS) {
+                    readAddresses();
+                }
+                return doc;
+            }
+
+            private void readAddresses() {
+                long index = docs.index();
+                start = addresses.get(index);
+                end = addresses.get(index + 1);
+                count = (int) (end - start);
+            }
+
+            @Override
+            public long cost() {
+                return entry.numDocsWithField;
+            }
+        };
+    }
+
+    private DocsWithField docsWithField(NumericEntry entry) throws IOException {
+        if (entry.docsWithFieldOffset == -1) {
+            return new DenseDocsWithField(maxDoc);
+        }
+        assert entry.docsWithFieldOffset >= 0;
+        return new SparseDocsWithField(data.randomAccessSlice(entry.docsWithFieldOffset, entry.docsWithFieldLength), maxDoc);
+    }
+
+    @Override
+    public BinaryDocValues getBinary(FieldInfo field) {
+        throw unsupported(field, "binary");
+    }
+
+    @Override
+    public SortedDocValues getSorted(FieldInfo field) {
+        throw unsupported(field, "sorted");
+    }
+
+    @Override
+    public SortedSetDocValues getSortedSet(FieldInfo field) {
+        throw unsupported(field, "sorted set");
+    }
+
+    private static UnsupportedOperationException unsupported(FieldInfo field, String type) {
+        return new UnsupportedOperationException(
+            "field [" + field.name + "] has " + type + " doc values which aren't supported by [" + ES80TSDBDocValuesFormat.NAME + "]"
+        );
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+        CodecUtil.checksumEntireFile(data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+
+    private static class NumericEntry {
+        long docsWithFieldOffset;
+        long docsWithFieldLength;
+        int numDocsWithField;
+        long numValues;
+        long valuesOffset;
+        long valuesLength;
+        MonotonicEntry blockOffsets;
+        MonotonicEntry addresses;
+    }
+
+    private static class MonotonicEntry {
+        long offset;
+        long length;
+        DirectMonotonicReader.Meta meta;
+    }
+
+    /**
+     * The values of a field, decoded one block at a time. Values are mostly read in order, so the last decoded
+     * block is kept around.
+     */
+    private class BlockValues {
+        private final NumericEntry entry;
+        private final IndexInput input;
+        private final LongValues blockOffsets;
+        private final DocValuesEncoder encoder = new DocValuesEncoder();
+        private final long[] block = new long[DocValuesEncoder.BLOCK_SIZE];
+        private long currentBlock = -1;
+
+        BlockValues(NumericEntry entry) throws IOException {
+            this.entry = entry;
+            this.input = data.slice("values", entry.valuesOffset, entry.valuesLength);
+            this.blockOffsets = DirectMonotonicReader.getInstance(
+                entry.blockOffsets.meta,
+                data.randomAccessSlice(entry.blockOffsets.offset, entry.blockOffsets.length)
+            );
+        }
+
+        long get(long index) throws IOException {
+            long blockIndex = index / DocValuesEncoder.BLOCK_SIZE;
+            if (blockIndex != currentBlock) {
+                long blockStart = blockIndex * DocValuesEncoder.BLOCK_SIZE;
+                int count = (int) Math.min(DocValuesEncoder.BLOCK_SIZE, entry.numValues - blockStart);
+                input.seek(blockOffsets.get(blockIndex));
+                encoder.decode(input, block, count);
+                currentBlock = blockIndex;
+            }
+            return block[(int) (index % DocValuesEncoder.BLOCK_SIZE)];
+        }
+    }
+
+    /**
+     * Iterates over the documents that have a value and tracks the index of their first value.
+     */
+    private abstract static class DocsWithField {
+        protected final int maxDoc;
+        protected int doc = -1;
+
+        DocsWithField(int maxDoc) {
+            this.maxDoc = maxDoc;
+        }
+
+        final int docID() {
+            return doc;
+        }
+
+        /**
+         * The number of documents with a value before the current one.
+         */
+        abstract long index();
+
+        abstract int advance(int target) throws IOException;
+
+        abstract boolean advanceExact(int target) throws IOException;
+    }
+
+    private static class DenseDocsWithField extends DocsWithField {
+
+        DenseDocsWithField(int maxDoc) {
+            super(maxDoc);
+        }
+
+        @Override
+        long index() {
+            return doc;
+        }
+
+        @Override
+        int advance(int target) {
+            doc = target >= maxDoc ? DocIdSetIterator.NO_MORE_DOCS : target;
+            return doc;
+        }
+
+        @Override
+        boolean advanceExact(int target) {
+            doc = target;
+            return true;
+        }
+    }
+
+    /**
+     * Reads the bit set of the documents with a value one word at a time, counting the documents of the words it skips.
+     */
+    private static class SparseDocsWithField extends DocsWithField {
+        private final RandomAccessInput bits;
+        private final int numWords;
+        private int wordIndex = -1;
+        private long word;
+        private long wordRank;
+
+        SparseDocsWithField(RandomAccessInput bits, int maxDoc) {
+            super(maxDoc);
+            this.bits = bits;
+            this.numWords = FixedBitSet.bits2words(maxDoc);
+        }
+
+        private void moveToWord(int targetWordIndex) throws IOException {
+            while (wordIndex < targetWordIndex) {
+                wordRank += Long.bitCount(word);
+                wordIndex++;
+                word = bits.readLong((long) wordIndex * Long.BYTES);
+            }
+        }
+
+        @Override
+        long index() {
+            return wordRank + Long.bitCount(word & ((1L << doc) - 1));
+        }
+
+        @Override
+        int advance(int target) throws IOException {
+            if (target >= maxDoc) {
+                return doc = DocIdSetIterator.NO_MORE_DOCS;
+            }
+            moveToWord(target >> 6);
+            long remaining = word & (-1L << target);
+            while (remaining == 0) {
+                if (wordIndex + 1 >= numWords) {
+                    return doc = DocIdSetIterator.NO_MORE_DOCS;
+                }
+                moveToWord(wordIndex + 1);
+                remaining = word;
+            }
+            return doc = (wordIndex << 6) + Long.numberOfTrailingZeros(remaining);
+        }
+
+        @Override
+        boolean advanceExact(int target) throws IOException {
+            moveToWord(target >> 6);
+            doc = target;
+            return (word & (1L << target)) != 0;
+        }
+    }
+}
@@ -11,6 +11,8 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.util.Accountable;
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsBuilder;
 import org.elasticsearch.index.shard.ShardId;
 
 /**
@@ -23,6 +25,15 @@ public interface IndexFieldDataCache {
     <FD extends LeafFieldData, IFD extends IndexFieldData.Global<FD>> IFD load(DirectoryReader indexReader, IFD indexFieldData)
         throws Exception;
 
+    /**
+     * Returns the state of the global ordinals that were last built for the shard of the given reader, which the global ordinals of
+     * the given reader can reuse if it has the same segments, or {@code null} if there is none.
+     */
+    @Nullable
+    default GlobalOrdinalsBuilder.ReusableState lastGlobalOrdinals(DirectoryReader indexReader) {
+        return null;
+    }
+
     /**
      * Clears all the field data stored cached in on this index.
      */
@@ -11,11 +11,13 @@ package org.elasticsearch.index.fielddata.ordinals;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.packed.PackedInts;
 import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.LeafOrdinalsFieldData;
@@ -24,6 +26,7 @@ import org.elasticsearch.index.fielddata.plain.AbstractLeafOrdinalsFieldData;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
@@ -37,9 +40,15 @@ public enum GlobalOrdinalsBuilder {
 
     /**
      * Build global ordinals for the provided {@link IndexReader}.
+     *
+     * @param previous the state of the global ordinals that were last built for an older reader of the same shard, if any. If the
+     *                 older reader has the same segments as the provided reader, which is the case when only deletes happened in
+     *                 between, its ordinal map is reused. Otherwise the terms of all segments are merged again, even if segments were
+     *                 only added: an {@link OrdinalMap} can only be built by such a merge, so deriving it from the previous one would
+     *                 cost as much as building it from scratch.
      */
     public static IndexOrdinalsFieldData build(final IndexReader indexReader, IndexOrdinalsFieldData indexFieldData,
-            CircuitBreakerService breakerService, Logger logger,
+            @Nullable ReusableState previous, CircuitBreakerService breakerService, Logger logger,
             Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) throws IOException {
         assert indexReader.leaves().size() > 1;
         long startTimeNS = System.nanoTime();
@@ -50,23 +59,50 @@ public enum GlobalOrdinalsBuilder {
             atomicFD[i] = indexFieldData.load(indexReader.leaves().get(i));
             subs[i] = atomicFD[i].getOrdinalsValues();
         }
-        final OrdinalMap ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+        final IndexReader.CacheKey[] segmentKeys = segmentKeys(indexReader);
+        final boolean reused = previous != null && segmentKeys != null && previous.hasSameSegments(segmentKeys);
+        final OrdinalMap ordinalMap;
+        if (reused) {
+            // only deletes happened since the previous global ordinals were built, the terms of the segments are the same
+            ordinalMap = previous.ordinalMap;
+        } else {
+            ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+        }
         final long memorySizeInBytes = ordinalMap.ramBytesUsed();
         breakerService.getBreaker(CircuitBreaker.FIELDDATA).addWithoutBreaking(memorySizeInBytes);
 
+        final long buildTimeInNanos = System.nanoTime() - startTimeNS;
         if (logger.isDebugEnabled()) {
             logger.debug(
-                    "global-ordinals [{}][{}] took [{}]",
+                    "global-ordinals [{}][{}] took [{}]{}",
                     indexFieldData.getFieldName(),
                     ordinalMap.getValueCount(),
-                    new TimeValue(System.nanoTime() - startTimeNS, TimeUnit.NANOSECONDS)
+                    new TimeValue(buildTimeInNanos, TimeUnit.NANOSECONDS),
+                    reused ? " by reusing the previous ordinal map" : ""
             );
         }
         return new GlobalOrdinalsIndexFieldData(indexFieldData.getFieldName(), indexFieldData.getValuesSourceType(),
-                atomicFD, ordinalMap, memorySizeInBytes, scriptFunction
+                atomicFD, ordinalMap, memorySizeInBytes, scriptFunction,
+                segmentKeys == null ? null : new ReusableState(ordinalMap, segmentKeys), buildTimeInNanos, reused
         );
     }
 
+    /**
+     * @return the core cache keys of the segments of the given reader, or {@code null} if some segments have none
+     */
+    @Nullable
+    private static IndexReader.CacheKey[] segmentKeys(IndexReader indexReader) {
+        final IndexReader.CacheKey[] segmentKeys = new IndexReader.CacheKey[indexReader.leaves().size()];
+        for (LeafReaderContext context : indexReader.leaves()) {
+            final IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+            if (cacheHelper == null) {
+                return null;
+            }
+            segmentKeys[context.ord] = cacheHelper.getKey();
+        }
+        return segmentKeys;
+    }
+
     public static IndexOrdinalsFieldData buildEmpty(IndexReader indexReader, IndexOrdinalsFieldData indexFieldData) throws IOException {
         assert indexReader.leaves().size() > 1;
 
@@ -97,8 +133,48 @@ public enum GlobalOrdinalsBuilder {
         }
         final OrdinalMap ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
         return new GlobalOrdinalsIndexFieldData(indexFieldData.getFieldName(), indexFieldData.getValuesSourceType(),
-                atomicFD, ordinalMap, 0, AbstractLeafOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION
+                atomicFD, ordinalMap, 0, AbstractLeafOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION, null, 0L, false
         );
     }
 
+    /**
+     * The ordinal map of global ordinals along with the segments it was built for, which the global ordinals of a newer reader with
+     * the same segments reuse. It only references the core cache keys of the segments so that it can outlive the reader it was built
+     * for.
+     */
+    public static final class ReusableState implements Accountable {
+        private final OrdinalMap ordinalMap;
+        private final IndexReader.CacheKey[] segmentKeys;
+
+        ReusableState(OrdinalMap ordinalMap, IndexReader.CacheKey[] segmentKeys) {
+            this.ordinalMap = ordinalMap;
+            this.segmentKeys = segmentKeys;
+        }
+
+        /**
+         * Whether the segment with the given core cache key is one of the segments of this state.
+         */
+        public boolean hasSegment(IndexReader.CacheKey key) {
+            for (IndexReader.CacheKey segmentKey : segmentKeys) {
+                if (segmentKey == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            // the same as the global ordinals that were built with it, which only account for the ordinal map
+            return ordinalMap.ramBytesUsed();
+        }
+
+        /**
+         * Whether the given segments are the segments of this state, in the same order.
+         */
+        boolean hasSameSegments(IndexReader.CacheKey[] keys) {
+            // cache keys are only equal to themselves
+            return Arrays.equals(segmentKeys, keys);
+        }
+    }
 }
@@ -51,19 +51,29 @@ public final class GlobalOrdinalsIndexFieldData implements IndexOrdinalsFieldDat
     private final OrdinalMap ordinalMap;
     private final LeafOrdinalsFieldData[] segmentAfd;
     private final Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction;
+    @Nullable
+    private final GlobalOrdinalsBuilder.ReusableState reusableState;
+    private final long buildTimeInNanos;
+    private final boolean reused;
 
     protected GlobalOrdinalsIndexFieldData(String fieldName,
                                            ValuesSourceType valuesSourceType,
                                            LeafOrdinalsFieldData[] segmentAfd,
                                            OrdinalMap ordinalMap,
                                            long memorySizeInBytes,
-                                           Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) {
+                                           Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction,
+                                           @Nullable GlobalOrdinalsBuilder.ReusableState reusableState,
+                                           long buildTimeInNanos,
+                                           boolean reused) {
         this.fieldName = fieldName;
         this.valuesSourceType = valuesSourceType;
         this.memorySizeInBytes = memorySizeInBytes;
         this.ordinalMap = ordinalMap;
         this.segmentAfd = segmentAfd;
         this.scriptFunction = scriptFunction;
+        this.reusableState = reusableState;
+        this.buildTimeInNanos = buildTimeInNanos;
+        this.reused = reused;
     }
 
     public IndexOrdinalsFieldData newConsumer(DirectoryReader source) {
@@ -132,6 +142,29 @@ public final class GlobalOrdinalsIndexFieldData implements IndexOrdinalsFieldDat
         return true;
     }
 
+    /**
+     * The state that the global ordinals of newer readers of the same shard can reuse, or {@code null} if
+     * the segments of the reader could not be identified.
+     */
+    @Nullable
+    public GlobalOrdinalsBuilder.ReusableState getReusableState() {
+        return reusableState;
+    }
+
+    /**
+     * The time it took to build these global ordinals, in nanoseconds.
+     */
+    public long getBuildTimeInNanos() {
+        return buildTimeInNanos;
+    }
+
+    /**
+     * Whether these global ordinals reuse the ordinal map of an older reader that had the same segments.
+     */
+    public boolean isReused() {
+        return reused;
+    }
+
     /**
      * A non-thread safe {@link IndexOrdinalsFieldData} for global ordinals that creates the {@link TermsEnum} of each
      * segment once and use them to provide a single lookup per segment.
@@ -15,6 +15,7 @@ import org.apache.lucene.search.Query;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.Explicit;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.time.DateFormatter;
 import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
 import org.elasticsearch.xcontent.NamedXContentRegistry;
@@ -72,9 +73,11 @@ public final class DocumentParser {
      */
     public ParsedDocument parseDocument(SourceToParse source, MappingLookup mappingLookup) throws MapperParsingException {
         final InternalDocumentParserContext context;
-        final XContentType xContentType = source.getXContentType();
+        // the source may have been parsed on the coordinating node, in which case its tokens are cheaper to parse
+        final XContentType xContentType = source.parsedSource() == null ? source.getXContentType() : XContentType.SMILE;
+        final BytesReference bytes = source.parsedSource() == null ? source.source() : source.parsedSource();
         try (XContentParser parser = XContentHelper.createParser(xContentRegistry,
-            LoggingDeprecationHandler.INSTANCE, source.source(), xContentType)) {
+            LoggingDeprecationHandler.INSTANCE, bytes, xContentType)) {
             context = new InternalDocumentParserContext(
                 mappingLookup,
                 indexSettings,
@@ -84,7 +87,8 @@ public final class DocumentParser {
                 parser);
             validateStart(parser);
             MetadataFieldMapper[] metadataFieldsMappers = mappingLookup.getMapping().getSortedMetadataMappers();
-            internalParseDocument(mappingLookup.getMapping().getRoot(), metadataFieldsMappers, context, parser);
+            MappingParsePlan.Node rootNode = indexSettings.isMappingParsePlanEnabled() ? mappingLookup.parsePlan().root() : null;
+            internalParseDocument(mappingLookup.getMapping().getRoot(), rootNode, metadataFieldsMappers, context, parser);
             validateEnd(parser);
         } catch (Exception e) {
             throw wrapInMapperParsingException(source, e);
@@ -121,7 +125,8 @@ public final class DocumentParser {
         return false;
     }
 
-    private static void internalParseDocument(RootObjectMapper root, MetadataFieldMapper[] metadataFieldsMappers,
+    private static void internalParseDocument(RootObjectMapper root, MappingParsePlan.Node rootNode,
+                                              MetadataFieldMapper[] metadataFieldsMappers,
                                               DocumentParserContext context, XContentParser parser) throws IOException {
 
         final boolean emptyDoc = isEmptyDoc(root, parser);
@@ -134,7 +139,7 @@ public final class DocumentParser {
             // entire type is disabled
             parser.skipChildren();
         } else if (emptyDoc == false) {
-            parseObjectOrNested(context, root);
+            parseObjectOrNested(context, root, rootNode);
         }
 
         executeIndexTimeScripts(context);
@@ -418,6 +423,15 @@ public final class DocumentParser {
     }
 
     static void parseObjectOrNested(DocumentParserContext context, ObjectMapper mapper) throws IOException {
+        parseObjectOrNested(context, mapper, null);
+    }
+
+    /**
+     * Parses an object, resolving its fields with the given node of the {@link MappingParsePlan} if it is not {@code null}.
+     */
+    private static void parseObjectOrNested(DocumentParserContext context, ObjectMapper mapper,
+                                            MappingParsePlan.Node node) throws IOException {
+        assert node == null || node.mapper() == mapper;
         if (mapper.isEnabled() == false) {
             context.parser().skipChildren();
             return;
@@ -448,25 +462,29 @@ public final class DocumentParser {
             token = parser.nextToken();
         }
 
-        innerParseObject(context, mapper, parser, currentFieldName, token);
+        innerParseObject(context, mapper, node, parser, currentFieldName, token);
         // restore the enable path flag
         if (mapper.isNested()) {
             nested(context, (NestedObjectMapper) mapper);
         }
     }
 
-    private static void innerParseObject(DocumentParserContext context, ObjectMapper mapper, XContentParser parser,
-                                         String currentFieldName, XContentParser.Token token) throws IOException {
+    private static void innerParseObject(DocumentParserContext context, ObjectMapper mapper, MappingParsePlan.Node node,
+                                         XContentParser parser, String currentFieldName, XContentParser.Token token) throws IOException {
         assert token == XContentParser.Token.FIELD_NAME || token == XContentParser.Token.END_OBJECT;
         String[] paths = null;
+        MappingParsePlan.Node fieldNode = null;
         while (token != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.FIELD_NAME) {
                 currentFieldName = parser.currentName();
                 paths = splitAndValidatePath(currentFieldName);
-                if (containsDisabledObjectMapper(mapper, paths)) {
+                fieldNode = node == null ? null : node.resolve(paths);
+                if (fieldNode == null && containsDisabledObjectMapper(mapper, paths)) {
                     parser.nextToken();
                     parser.skipChildren();
                 }
+            } else if (fieldNode != null && token != null) {
+                parsePlannedField(context, mapper, fieldNode, currentFieldName, token);
             } else if (token == XContentParser.Token.START_OBJECT) {
                 parseObject(context, mapper, currentFieldName, paths);
             } else if (token == XContentParser.Token.START_ARRAY) {
@@ -483,6 +501,36 @@ public final class DocumentParser {
         }
     }
 
+    /**
+     * Parses a field whose mapper was resolved with the {@link MappingParsePlan}. This is equivalent to the generic code path when the
+     * mapper of the field is found, minus building the full path of the field and looking it up.
+     */
+    private static void parsePlannedField(DocumentParserContext context, ObjectMapper parentMapper, MappingParsePlan.Node node,
+                                          String fieldName, XContentParser.Token token) throws IOException {
+        final Mapper mapper = node.mapper();
+        if (token == XContentParser.Token.START_OBJECT) {
+            context.path().add(fieldName);
+            if (mapper instanceof ObjectMapper) {
+                parseObjectOrNested(context, (ObjectMapper) mapper, node);
+            } else {
+                parseObjectOrField(context, mapper);
+            }
+            context.path().remove();
+        } else if (token == XContentParser.Token.START_ARRAY && parsesArrayValue(mapper) == false) {
+            final XContentParser parser = context.parser();
+            while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                if (token == null) {
+                    throw new MapperParsingException("object mapping for [" + parentMapper.name() + "] with array for [" + fieldName
+                        + "] tried to parse as array, but got EOF, is there a mismatch in types for the same field?");
+                }
+                parsePlannedField(context, parentMapper, node, fieldName, token);
+            }
+        } else {
+            // values, nulls and arrays of fields that parse arrays themselves
+            parseObjectOrField(context, mapper);
+        }
+    }
+
     private static void nested(DocumentParserContext context, NestedObjectMapper nested) {
         LuceneDocument nestedDoc = context.doc();
         LuceneDocument parentDoc = nestedDoc.getParent();
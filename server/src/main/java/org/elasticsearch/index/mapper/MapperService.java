@@ -91,6 +91,9 @@ public class MapperService extends AbstractIndexComponent implements Closeable {
         Setting.longSetting("index.mapping.field_name_length.limit", Long.MAX_VALUE, 1L, Property.Dynamic, Property.IndexScope);
     public static final Setting<Long> INDEX_MAPPING_DIMENSION_FIELDS_LIMIT_SETTING =
         Setting.longSetting("index.mapping.dimension_fields.limit", 16, 0, Property.Dynamic, Property.IndexScope);
+    // whether documents are parsed by resolving their fields with a plan of the mapping that is built once per mapping update
+    public static final Setting<Boolean> INDEX_MAPPING_PARSE_PLAN_ENABLED_SETTING =
+        Setting.boolSetting("index.mapping.parse_plan.enabled", true, Property.Dynamic, Property.IndexScope);
 
 
     private final IndexAnalyzers indexAnalyzers;
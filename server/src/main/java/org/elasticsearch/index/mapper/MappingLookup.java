@@ -56,6 +56,7 @@ public final class MappingLookup {
     private final Mapping mapping;
     private final Set<String> shadowedFields;
     private final Set<String> completionFields = new HashSet<>();
+    private volatile MappingParsePlan parsePlan; // built lazily since many lookups are never used to parse documents
 
     /**
      * Creates a new {@link MappingLookup} instance by parsing the provided mapping and extracting its field definitions.
@@ -198,6 +199,19 @@ public final class MappingLookup {
         return indexTimeScriptMappers;
     }
 
+    /**
+     * Returns the plan used to resolve the mappers of the fields of the documents to parse, built on first use.
+     */
+    MappingParsePlan parsePlan() {
+        MappingParsePlan parsePlan = this.parsePlan;
+        if (parsePlan == null) {
+            // building the plan concurrently more than once is harmless, the plans are equivalent
+            parsePlan = MappingParsePlan.build(mapping);
+            this.parsePlan = parsePlan;
+        }
+        return parsePlan;
+    }
+
     public NamedAnalyzer indexAnalyzer(String field, Function<String, NamedAnalyzer> unmappedFieldAnalyzer) {
         if (this.indexAnalyzersMap.containsKey(field)) {
             return this.indexAnalyzersMap.get(field);
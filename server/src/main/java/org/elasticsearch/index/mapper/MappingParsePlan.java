@@ -0,0 +1,111 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.mapper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie of the mappers of a {@link Mapping}, keyed by the field names as they appear in documents, that {@link DocumentParser} uses to
+ * resolve the mapper of a field without building its full path and looking it up for every field of every document.
+ * <p>
+ * A plan is built once per {@link MappingLookup}, and therefore rebuilt whenever the mapping is updated. It only resolves fields that
+ * are mapped: fields that are not found in the plan, or whose resolution depends on more than the mapping, are resolved by the generic
+ * code path of {@link DocumentParser}, which takes care of dynamic mappings.
+ */
+final class MappingParsePlan {
+
+    private final Node root;
+
+    private MappingParsePlan(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds the plan of the given mapping.
+     */
+    static MappingParsePlan build(Mapping mapping) {
+        final Node root = build(mapping.getRoot(), mapping);
+        for (MetadataFieldMapper metadataMapper : mapping.getSortedMetadataMappers()) {
+            // metadata fields take precedence over any other mapper, they are resolved from the root as they never contain dots
+            if (metadataMapper != null && metadataMapper.name().indexOf('.') < 0) {
+                root.children.put(metadataMapper.name(), new Node(metadataMapper, Collections.emptyMap()));
+            }
+        }
+        return new MappingParsePlan(root);
+    }
+
+    private static Node build(ObjectMapper objectMapper, Mapping mapping) {
+        final Map<String, Node> children = new HashMap<>();
+        for (Mapper mapper : objectMapper) {
+            final Mapper metadataMapper = mapping.getMetadataMapperByName(mapper.name());
+            final Node child;
+            if (metadataMapper != null) {
+                child = new Node(metadataMapper, Collections.emptyMap());
+            } else if (mapper instanceof ObjectMapper) {
+                child = build((ObjectMapper) mapper, mapping);
+            } else {
+                child = new Node(mapper, Collections.emptyMap());
+            }
+            children.put(mapper.simpleName(), child);
+        }
+        return new Node(objectMapper, children);
+    }
+
+    /**
+     * @return the node of the root object mapper
+     */
+    Node root() {
+        return root;
+    }
+
+    /**
+     * A mapper of the mapping along with the nodes of its sub-fields, if it is an object mapper.
+     */
+    static final class Node {
+
+        private final Mapper mapper;
+        private final Map<String, Node> children;
+
+        private Node(Mapper mapper, Map<String, Node> children) {
+            this.mapper = mapper;
+            this.children = children;
+        }
+
+        Mapper mapper() {
+            return mapper;
+        }
+
+        /**
+         * Resolves the node of a field of this object.
+         *
+         * @param paths the parts of the field name as it appears in documents, as split on dots
+         * @return the node of the field, or {@code null} if the field must be resolved by the generic code path
+         */
+        Node resolve(String[] paths) {
+            if (paths.length == 1) {
+                return children.get(paths[0]);
+            }
+            // intermediate objects that are nested or disabled are handled by the generic code path
+            Node node = this;
+            for (int i = 0; i < paths.length - 1; i++) {
+                node = node.children.get(paths[i]);
+                if (node == null || node.mapper instanceof ObjectMapper == false) {
+                    return null;
+                }
+                final ObjectMapper objectMapper = (ObjectMapper) node.mapper;
+                if (objectMapper.isNested() || objectMapper.isEnabled() == false) {
+                    return null;
+                }
+            }
+            return node.children.get(paths[paths.length - 1]);
+        }
+    }
+}
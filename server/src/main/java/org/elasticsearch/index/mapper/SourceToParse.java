@@ -30,8 +30,14 @@ public class SourceToParse {
 
     private final Map<String, String> dynamicTemplates;
 
+    private final @Nullable BytesReference parsedSource;
+
+    /**
+     * @param parsedSource the tokens of the source in {@link XContentType#SMILE} format to parse the document from, if the source was
+     *                     already parsed on the coordinating node
+     */
     public SourceToParse(String index, String id, BytesReference source, XContentType xContentType, @Nullable String routing,
-                         Map<String, String> dynamicTemplates) {
+                         Map<String, String> dynamicTemplates, @Nullable BytesReference parsedSource) {
         this.index = Objects.requireNonNull(index);
         this.id = Objects.requireNonNull(id);
         // we always convert back to byte array, since we store it and Field only supports bytes..
@@ -40,6 +46,12 @@ public class SourceToParse {
         this.xContentType = Objects.requireNonNull(xContentType);
         this.routing = routing;
         this.dynamicTemplates = Objects.requireNonNull(dynamicTemplates);
+        this.parsedSource = parsedSource;
+    }
+
+    public SourceToParse(String index, String id, BytesReference source, XContentType xContentType, @Nullable String routing,
+                         Map<String, String> dynamicTemplates) {
+        this(index, id, source, xContentType, routing, dynamicTemplates, null);
     }
 
     public SourceToParse(String index, String id, BytesReference source, XContentType xContentType) {
@@ -73,6 +85,14 @@ public class SourceToParse {
         return this.xContentType;
     }
 
+    /**
+     * Returns the tokens of the source in {@link XContentType#SMILE} format if the source was already parsed on the coordinating node,
+     * in which case the document is parsed from them rather than from {@link #source()}.
+     */
+    public @Nullable BytesReference parsedSource() {
+        return this.parsedSource;
+    }
+
     public enum Origin {
         PRIMARY,
         REPLICA
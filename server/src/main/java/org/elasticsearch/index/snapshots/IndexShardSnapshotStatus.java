@@ -178,6 +178,13 @@ public class IndexShardSnapshotStatus {
         processedSize += size;
     }
 
+    /**
+     * Removes bytes that turned out to be in the repository already from the incremental size
+     */
+    public synchronized void addSkippedBytes(long size) {
+        incrementalSize -= size;
+    }
+
     /**
      * Returns a copy of the current {@link IndexShardSnapshotStatus}. This method is
      * intended to be used when a coherent state of {@link IndexShardSnapshotStatus} is needed.
@@ -10,19 +10,23 @@ package org.elasticsearch.index.snapshots.blobstore;
 
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.XContentParserUtils;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.index.store.StoreFileMetadata;
 import org.elasticsearch.xcontent.ParseField;
 import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.ToXContentObject;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentParser;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.IntStream;
@@ -40,11 +44,15 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
     public static class FileInfo implements Writeable {
         public static final String SERIALIZE_WRITER_UUID = "serialize_writer_uuid";
 
+        public static final Version CHUNKED_FILES_VERSION = Version.V_8_0_0;
+
         private final String name;
         private final ByteSizeValue partSize;
         private final long partBytes;
         private final int numberOfParts;
         private final StoreFileMetadata metadata;
+        @Nullable
+        private final List<Chunk> chunks;
 
         /**
          * Constructs a new instance of file info
@@ -54,9 +62,40 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
          * @param partSize     size of the single chunk
          */
         public FileInfo(String name, StoreFileMetadata metadata, ByteSizeValue partSize) {
+            this(name, metadata, partSize, null);
+        }
+
+        /**
+         * Constructs a new instance of file info for a file that is stored as a sequence of content-addressed chunks, each of which
+         * may be shared with other files of the same shard.
+         *
+         * @param name     file name as stored in the blob store
+         * @param metadata the files meta data
+         * @param chunks   the chunks that make up the file, in order
+         */
+        public static FileInfo chunked(String name, StoreFileMetadata metadata, List<Chunk> chunks) {
+            return new FileInfo(name, metadata, null, Objects.requireNonNull(chunks));
+        }
+
+        private FileInfo(String name, StoreFileMetadata metadata, @Nullable ByteSizeValue partSize, @Nullable List<Chunk> chunks) {
             this.name = Objects.requireNonNull(name);
             this.metadata = metadata;
 
+            if (chunks != null) {
+                if (chunks.isEmpty()) {
+                    throw new IllegalArgumentException("file [" + metadata + "] must consist of at least one chunk");
+                }
+                this.chunks = List.copyOf(chunks);
+                this.numberOfParts = chunks.size();
+                this.partSize = null;
+                this.partBytes = Long.MAX_VALUE;
+                if (chunks.stream().mapToLong(Chunk::length).sum() != metadata.length()) {
+                    throw new IllegalArgumentException("chunks " + chunks + " do not add up to the length of file [" + metadata + "]");
+                }
+                return;
+            }
+            this.chunks = null;
+
             long partBytes = Long.MAX_VALUE;
             if (partSize != null && partSize.getBytes() > 0) {
                 partBytes = partSize.getBytes();
@@ -78,7 +117,12 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
         }
 
         public FileInfo(StreamInput in) throws IOException {
-            this(in.readString(), new StoreFileMetadata(in), in.readOptionalWriteable(ByteSizeValue::new));
+            this(
+                in.readString(),
+                new StoreFileMetadata(in),
+                in.readOptionalWriteable(ByteSizeValue::new),
+                in.getVersion().onOrAfter(CHUNKED_FILES_VERSION) && in.readBoolean() ? in.readList(Chunk::new) : null
+            );
         }
 
         @Override
@@ -86,6 +130,18 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
             out.writeString(name);
             metadata.writeTo(out);
             out.writeOptionalWriteable(partSize);
+            if (out.getVersion().onOrAfter(CHUNKED_FILES_VERSION)) {
+                if (chunks == null) {
+                    out.writeBoolean(false);
+                } else {
+                    out.writeBoolean(true);
+                    out.writeList(chunks);
+                }
+            } else if (chunks != null) {
+                throw new IllegalStateException(
+                    "cannot send chunked file [" + this + "] to a node with version [" + out.getVersion() + "]"
+                );
+            }
         }
 
         /**
@@ -104,6 +160,9 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
          * @return part name
          */
         public String partName(int part) {
+            if (chunks != null) {
+                return chunks.get(part).name();
+            }
             if (numberOfParts > 1) {
                 return name + ".part" + part;
             } else {
@@ -158,6 +217,9 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
          */
         public long partBytes(int part) {
             assert 0 <= part && part < numberOfParts : part + " vs " + numberOfParts;
+            if (chunks != null) {
+                return chunks.get(part).length();
+            }
             if (numberOfParts == 1) {
                 return length();
             }
@@ -171,6 +233,16 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
             return lastPartBytes;
         }
 
+        /**
+         * Returns the content-addressed chunks that make up this file, or {@code null} if the file is stored in fixed size parts.
+         *
+         * @return list of chunks or {@code null}
+         */
+        @Nullable
+        public List<Chunk> chunks() {
+            return chunks;
+        }
+
         /**
          * Returns number of parts
          *
@@ -222,6 +294,9 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
             if (name.equals(fileInfo.name) == false) {
                 return false;
             }
+            if (Objects.equals(chunks, fileInfo.chunks) == false) {
+                return false;
+            }
             if (partSize != null) {
                 if (partSize.equals(fileInfo.partSize) == false) {
                     return false;
@@ -242,6 +317,7 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
         static final String WRITTEN_BY = "written_by";
         static final String META_HASH = "meta_hash";
         static final String WRITER_UUID = "writer_uuid";
+        static final String CHUNKS = "chunks";
 
         /**
          * Serializes file info into JSON
@@ -258,6 +334,13 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
             if (file.partSize != null) {
                 builder.field(PART_SIZE, file.partSize.getBytes());
             }
+            if (file.chunks != null) {
+                builder.startArray(CHUNKS);
+                for (Chunk chunk : file.chunks) {
+                    chunk.toXContent(builder, params);
+                }
+                builder.endArray();
+            }
 
             if (file.metadata.writtenBy() != null) {
                 builder.field(WRITTEN_BY, file.metadata.writtenBy());
@@ -295,6 +378,7 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
             String writtenBy = null;
             BytesRef metaHash = new BytesRef();
             BytesRef writerUuid = UNAVAILABLE_WRITER_UUID;
+            List<Chunk> chunks = null;
             XContentParserUtils.ensureExpectedToken(token, XContentParser.Token.START_OBJECT, parser);
             while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
                 if (token == XContentParser.Token.FIELD_NAME) {
@@ -323,6 +407,11 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
                         } else {
                             XContentParserUtils.throwUnknownField(currentFieldName, parser.getTokenLocation());
                         }
+                    } else if (token == XContentParser.Token.START_ARRAY && CHUNKS.equals(currentFieldName)) {
+                        chunks = new ArrayList<>();
+                        while (parser.nextToken() != XContentParser.Token.END_ARRAY) {
+                            chunks.add(Chunk.fromXContent(parser));
+                        }
                     } else {
                         XContentParserUtils.throwUnknownToken(token, parser.getTokenLocation());
                     }
@@ -343,7 +432,14 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
             } else if (checksum == null) {
                 throw new ElasticsearchParseException("missing checksum for name [" + name + "]");
             }
-            return new FileInfo(name, new StoreFileMetadata(physicalName, length, checksum, writtenBy, metaHash, writerUuid), partSize);
+            final StoreFileMetadata metadata = new StoreFileMetadata(physicalName, length, checksum, writtenBy, metaHash, writerUuid);
+            if (chunks != null) {
+                if (partSize != null) {
+                    throw new ElasticsearchParseException("file [" + name + "] must not specify both chunks and a part size");
+                }
+                return chunked(name, metadata, chunks);
+            }
+            return new FileInfo(name, metadata, partSize);
         }
 
         @Override
@@ -356,10 +452,108 @@ public class BlobStoreIndexShardSnapshot implements ToXContentFragment {
                 + partSize
                 + ", partBytes: "
                 + partBytes
+                + (chunks == null ? "" : ", chunks: " + chunks)
                 + ", metadata: "
                 + metadata
                 + "]";
         }
+
+        /**
+         * Reference to a content-addressed blob holding a contiguous range of a file's bytes. The same chunk may be referenced by
+         * multiple files of a shard and is only deleted once no snapshot of the shard references it any more.
+         */
+        public static final class Chunk implements Writeable, ToXContentObject {
+
+            static final String NAME = "name";
+            static final String LENGTH = "length";
+
+            private final String name;
+            private final long length;
+
+            public Chunk(String name, long length) {
+                if (length <= 0) {
+                    throw new IllegalArgumentException("chunk [" + name + "] must not be empty");
+                }
+                this.name = Objects.requireNonNull(name);
+                this.length = length;
+            }
+
+            public Chunk(StreamInput in) throws IOException {
+                this(in.readString(), in.readVLong());
+            }
+
+            @Override
+            public void writeTo(StreamOutput out) throws IOException {
+                out.writeString(name);
+                out.writeVLong(length);
+            }
+
+            /**
+             * Returns the name of the blob holding this chunk
+             */
+            public String name() {
+                return name;
+            }
+
+            /**
+             * Returns the length of this chunk in bytes
+             */
+            public long length() {
+                return length;
+            }
+
+            @Override
+            public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+                return builder.startObject().field(NAME, name).field(LENGTH, length).endObject();
+            }
+
+            static Chunk fromXContent(XContentParser parser) throws IOException {
+                XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.currentToken(), parser);
+                String name = null;
+                long length = -1;
+                XContentParser.Token token;
+                while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                    XContentParserUtils.ensureExpectedToken(XContentParser.Token.FIELD_NAME, token, parser);
+                    final String currentFieldName = parser.currentName();
+                    token = parser.nextToken();
+                    if (NAME.equals(currentFieldName) && token.isValue()) {
+                        name = parser.text();
+                    } else if (LENGTH.equals(currentFieldName) && token.isValue()) {
+                        length = parser.longValue();
+                    } else {
+                        XContentParserUtils.throwUnknownField(currentFieldName, parser.getTokenLocation());
+                    }
+                }
+                if (name == null || Strings.validFileName(name) == false) {
+                    throw new ElasticsearchParseException("missing or invalid chunk name [" + name + "]");
+                } else if (length <= 0) {
+                    throw new ElasticsearchParseException("missing or invalid length for chunk [" + name + "]");
+                }
+                return new Chunk(name, length);
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) {
+                    return true;
+                }
+                if (o == null || getClass() != o.getClass()) {
+                    return false;
+                }
+                final Chunk that = (Chunk) o;
+                return length == that.length && name.equals(that.name);
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, length);
+            }
+
+            @Override
+            public String toString() {
+                return "[" + name + ": " + length + "]";
+            }
+        }
     }
 
     /**
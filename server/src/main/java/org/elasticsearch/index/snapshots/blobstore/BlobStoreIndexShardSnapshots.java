@@ -18,11 +18,14 @@ import org.elasticsearch.xcontent.XContentParser;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static java.util.Collections.unmodifiableMap;
 
@@ -39,6 +42,7 @@ public class BlobStoreIndexShardSnapshots implements Iterable<SnapshotFiles>, To
     private final List<SnapshotFiles> shardSnapshots;
     private final Map<String, FileInfo> files;
     private final Map<String, List<FileInfo>> physicalFiles;
+    private final Set<String> chunks;
 
     public BlobStoreIndexShardSnapshots(List<SnapshotFiles> shardSnapshots) {
         this.shardSnapshots = List.copyOf(shardSnapshots);
@@ -66,6 +70,7 @@ public class BlobStoreIndexShardSnapshots implements Iterable<SnapshotFiles>, To
         }
         this.physicalFiles = unmodifiableMap(mapBuilder);
         this.files = unmodifiableMap(newFiles);
+        this.chunks = chunkNames(newFiles.values());
     }
 
     private BlobStoreIndexShardSnapshots(Map<String, FileInfo> files, List<SnapshotFiles> shardSnapshots) {
@@ -82,6 +87,22 @@ public class BlobStoreIndexShardSnapshots implements Iterable<SnapshotFiles>, To
             mapBuilder.put(entry.getKey(), List.copyOf(entry.getValue()));
         }
         this.physicalFiles = unmodifiableMap(mapBuilder);
+        this.chunks = chunkNames(files.values());
+    }
+
+    private static Set<String> chunkNames(Collection<FileInfo> files) {
+        Set<String> chunks = null;
+        for (FileInfo fileInfo : files) {
+            if (fileInfo.chunks() != null) {
+                if (chunks == null) {
+                    chunks = new HashSet<>();
+                }
+                for (FileInfo.Chunk chunk : fileInfo.chunks()) {
+                    chunks.add(chunk.name());
+                }
+            }
+        }
+        return chunks == null ? Collections.emptySet() : Collections.unmodifiableSet(chunks);
     }
 
     /**
@@ -135,6 +156,16 @@ public class BlobStoreIndexShardSnapshots implements Iterable<SnapshotFiles>, To
         return files.get(name);
     }
 
+    /**
+     * Checks whether the given blob is a content-addressed chunk referenced by any of the files in any of the snapshots
+     *
+     * @param blobName blob name
+     * @return true if the blob holds a chunk that is still referenced
+     */
+    public boolean hasChunk(String blobName) {
+        return chunks.contains(blobName);
+    }
+
     @Override
     public Iterator<SnapshotFiles> iterator() {
         return shardSnapshots.iterator();
@@ -10,7 +10,9 @@ package org.elasticsearch.indices;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.LRUQueryCache;
@@ -25,17 +27,18 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.index.cache.query.QueryCacheStats;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardUtils;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Predicate;
 
 public class IndicesQueryCache implements QueryCache, Closeable {
@@ -51,28 +54,69 @@ public class IndicesQueryCache implements QueryCache, Closeable {
     // enables caching on all segments instead of only the larger ones, for testing only
     public static final Setting<Boolean> INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING =
             Setting.boolSetting("indices.queries.cache.all_segments", false, Property.NodeScope);
-
-    private final LRUQueryCache cache;
+    // the number of independent LRU caches that the cache is split into, the shards of the node are spread across them. Nodes with up
+    // to 7 processors keep a single LRU cache, larger nodes get a stripe per 4 processors, up to 8.
+    public static final Setting<Integer> INDICES_QUERIES_CACHE_STRIPES_SETTING =
+            new Setting<>("indices.queries.cache.stripes",
+                (s) -> Integer.toString(Math.max(1, Math.min(8, EsExecutors.allocatedProcessors(s) / 4))),
+                (s) -> Setting.parseInt(s, 1, 64, "indices.queries.cache.stripes"), Property.NodeScope);
+    // caching a clause is skipped if it is more than this factor costlier than the clause that leads the iteration
+    public static final Setting<Float> INDICES_QUERIES_CACHE_SKIP_FACTOR_SETTING =
+            Setting.floatSetting("indices.queries.cache.skip_factor", 10f, 1f, Property.NodeScope);
+
+    private final ElasticsearchLRUQueryCache[] stripes;
     private final ShardCoreKeyMap shardKeyMap = new ShardCoreKeyMap();
     private final Map<ShardId, Stats> shardStats = new ConcurrentHashMap<>();
-    private volatile long sharedRamBytesUsed;
 
     // This is a hack for the fact that the close listener for the
     // ShardCoreKeyMap will be called before onDocIdSetEviction
     // See onDocIdSetEviction for more info
-    private final Map<Object, StatsAndCount> stats2 = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<Object, StatsAndCount> stats2 = new ConcurrentHashMap<>();
 
     public IndicesQueryCache(Settings settings) {
         final ByteSizeValue size = INDICES_CACHE_QUERY_SIZE_SETTING.get(settings);
         final int count = INDICES_CACHE_QUERY_COUNT_SETTING.get(settings);
-        logger.debug("using [node] query cache with size [{}] max filter count [{}]",
-                size, count);
+        final int numStripes = INDICES_QUERIES_CACHE_STRIPES_SETTING.get(settings);
+        logger.debug("using [node] query cache with size [{}] max filter count [{}] stripes [{}]",
+                size, count, numStripes);
+        final Predicate<LeafReaderContext> leavesToCache;
+        final float skipFactor;
         if (INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING.get(settings)) {
-            cache = new ElasticsearchLRUQueryCache(count, size.getBytes(), context -> true, 1f);
+            leavesToCache = context -> true;
+            skipFactor = 1f;
         } else {
-            cache = new ElasticsearchLRUQueryCache(count, size.getBytes());
+            leavesToCache = IndicesQueryCache::isLargeSegment;
+            skipFactor = INDICES_QUERIES_CACHE_SKIP_FACTOR_SETTING.get(settings);
+        }
+        // each stripe gets an equal share of the cache, so that a shard can only evict entries of the shards of the same stripe
+        stripes = new ElasticsearchLRUQueryCache[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new ElasticsearchLRUQueryCache(
+                i,
+                Math.max(1, count / numStripes),
+                size.getBytes() / numStripes,
+                leavesToCache,
+                skipFactor
+            );
         }
-        sharedRamBytesUsed = 0;
+    }
+
+    /**
+     * The segments that are cached by default: segments that have at least 10000 documents and 3% of the documents of the shard, like
+     * Lucene's default for {@link LRUQueryCache}.
+     */
+    private static boolean isLargeSegment(LeafReaderContext context) {
+        final int maxDoc = context.reader().maxDoc();
+        if (maxDoc < 10_000) {
+            return false;
+        }
+        final IndexReaderContext topLevelContext = ReaderUtil.getTopLevelContext(context);
+        return (float) maxDoc / topLevelContext.reader().maxDoc() >= 0.03f;
+    }
+
+    /** Get the index of the stripe that caches the entries of the given shard. */
+    int stripe(ShardId shardId) {
+        return stripes.length == 1 ? 0 : Math.floorMod(shardId.hashCode(), stripes.length);
     }
 
     /** Get usage statistics for the given shard. */
@@ -100,6 +144,10 @@ public class IndicesQueryCache implements QueryCache, Closeable {
             final double weight = totalSize == 0
                 ? 1d / stats.size()
                 : ((double) shardStats.getCacheSize()) / totalSize;
+            long sharedRamBytesUsed = 0;
+            for (ElasticsearchLRUQueryCache stripe : stripes) {
+                sharedRamBytesUsed += stripe.sharedRamBytesUsed;
+            }
             final long additionalRamBytesUsed = Math.round(weight * sharedRamBytesUsed);
             assert additionalRamBytesUsed >= 0L : additionalRamBytesUsed;
             shardStats.add(new QueryCacheStats(additionalRamBytesUsed, 0, 0, 0, 0));
@@ -112,43 +160,56 @@ public class IndicesQueryCache implements QueryCache, Closeable {
         while (weight instanceof CachingWeightWrapper) {
             weight = ((CachingWeightWrapper) weight).in;
         }
-        final Weight in = cache.doCache(weight, policy);
         // We wrap the weight to track the readers it sees and map them with
-        // the shards they belong to
-        return new CachingWeightWrapper(in);
+        // the shards they belong to, which also tells the stripe to cache them in
+        return new CachingWeightWrapper(weight, policy);
     }
 
     private class CachingWeightWrapper extends Weight {
 
         private final Weight in;
+        private final QueryCachingPolicy policy;
+        // the caching weights of the stripes, created when the weight first sees a segment of a shard of the stripe
+        private final AtomicReferenceArray<Weight> cachingWeights;
 
-        protected CachingWeightWrapper(Weight in) {
+        protected CachingWeightWrapper(Weight in, QueryCachingPolicy policy) {
             super(in.getQuery());
             this.in = in;
+            this.policy = policy;
+            this.cachingWeights = new AtomicReferenceArray<>(stripes.length);
+        }
+
+        private Weight cachingWeight(LeafReaderContext context) {
+            shardKeyMap.add(context.reader());
+            final int stripe = stripes.length == 1 ? 0 : stripe(ShardUtils.extractShardId(context.reader()));
+            Weight weight = cachingWeights.get(stripe);
+            if (weight == null) {
+                weight = stripes[stripe].doCache(in, policy);
+                if (cachingWeights.compareAndSet(stripe, null, weight) == false) {
+                    weight = cachingWeights.get(stripe);
+                }
+            }
+            return weight;
         }
 
         @Override
         public Explanation explain(LeafReaderContext context, int doc) throws IOException {
-            shardKeyMap.add(context.reader());
-            return in.explain(context, doc);
+            return cachingWeight(context).explain(context, doc);
         }
 
         @Override
         public Scorer scorer(LeafReaderContext context) throws IOException {
-            shardKeyMap.add(context.reader());
-            return in.scorer(context);
+            return cachingWeight(context).scorer(context);
         }
 
         @Override
         public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
-            shardKeyMap.add(context.reader());
-            return in.scorerSupplier(context);
+            return cachingWeight(context).scorerSupplier(context);
         }
 
         @Override
         public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
-            shardKeyMap.add(context.reader());
-            return in.bulkScorer(context);
+            return cachingWeight(context).bulkScorer(context);
         }
 
         @Override
@@ -161,15 +222,20 @@ public class IndicesQueryCache implements QueryCache, Closeable {
     public void clearIndex(String index) {
         final Set<Object> coreCacheKeys = shardKeyMap.getCoreKeysForIndex(index);
         for (Object coreKey : coreCacheKeys) {
-            cache.clearCoreCacheKey(coreKey);
+            final ShardId shardId = shardKeyMap.getShardId(coreKey);
+            if (shardId != null) {
+                stripes[stripe(shardId)].clearCoreCacheKey(coreKey);
+            }
         }
 
         // This cache stores two things: filters, and doc id sets. Calling
         // clear only removes the doc id sets, but if we reach the situation
         // that the cache does not contain any DocIdSet anymore, then it
         // probably means that the user wanted to remove everything.
-        if (cache.getCacheSize() == 0) {
-            cache.clear();
+        for (LRUQueryCache stripe : stripes) {
+            if (stripe.getCacheSize() == 0) {
+                stripe.clear();
+            }
         }
     }
 
@@ -182,7 +248,9 @@ public class IndicesQueryCache implements QueryCache, Closeable {
         // This cache stores two things: filters, and doc id sets. At this time
         // we only know that there are no more doc id sets, but we still track
         // recently used queries, which we want to reclaim.
-        cache.clear();
+        for (LRUQueryCache stripe : stripes) {
+            stripe.clear();
+        }
     }
 
     private static class Stats implements Cloneable {
@@ -236,14 +304,24 @@ public class IndicesQueryCache implements QueryCache, Closeable {
         shardStats.remove(shardId);
     }
 
+    /**
+     * A stripe of the cache. The entries of a shard are only ever cached in the same stripe, so the stats of a shard are only updated
+     * under the lock of its stripe and stripes never need to coordinate with each other.
+     */
     private class ElasticsearchLRUQueryCache extends LRUQueryCache {
 
-        ElasticsearchLRUQueryCache(int maxSize, long maxRamBytesUsed, Predicate<LeafReaderContext> leavesToCache, float skipFactor) {
-            super(maxSize, maxRamBytesUsed, leavesToCache, skipFactor);
-        }
+        private final int stripe;
+        private volatile long sharedRamBytesUsed;
 
-        ElasticsearchLRUQueryCache(int maxSize, long maxRamBytesUsed) {
-            super(maxSize, maxRamBytesUsed);
+        ElasticsearchLRUQueryCache(
+            int stripe,
+            int maxSize,
+            long maxRamBytesUsed,
+            Predicate<LeafReaderContext> leavesToCache,
+            float skipFactor
+        ) {
+            super(maxSize, maxRamBytesUsed, leavesToCache, skipFactor);
+            this.stripe = stripe;
         }
 
         private Stats getStats(Object coreKey) {
@@ -256,25 +334,23 @@ public class IndicesQueryCache implements QueryCache, Closeable {
 
         private Stats getOrCreateStats(Object coreKey) {
             final ShardId shardId = shardKeyMap.getShardId(coreKey);
-            Stats stats = shardStats.get(shardId);
-            if (stats == null) {
-                stats = new Stats(shardId);
-                shardStats.put(shardId, stats);
-            }
-            return stats;
+            return shardStats.computeIfAbsent(shardId, Stats::new);
         }
 
         // It's ok to not protect these callbacks by a lock since it is
-        // done in LRUQueryCache
+        // done in LRUQueryCache, and other stripes only touch the stats
+        // of other shards
         @Override
         protected void onClear() {
             super.onClear();
             for (Stats stats : shardStats.values()) {
-                // don't throw away hit/miss
-                stats.cacheSize = 0;
-                stats.ramBytesUsed = 0;
+                if (stripe(stats.shardId) == stripe) {
+                    // don't throw away hit/miss
+                    stats.cacheSize = 0;
+                    stats.ramBytesUsed = 0;
+                }
             }
-            stats2.clear();
+            stats2.values().removeIf(statsAndCount -> stripe(statsAndCount.stats.shardId) == stripe);
             sharedRamBytesUsed = 0;
         }
 
@@ -26,16 +26,22 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.fielddata.LeafFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsBuilder;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.ShardUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.function.ToLongBiFunction;
 
 public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCache.Key, Accountable>, Releasable{
@@ -77,12 +83,17 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
         assert key != null && key.listeners != null;
         IndexFieldCache indexCache = key.indexCache;
         final Accountable value = notification.getValue();
+        final boolean evicted = notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED;
+        long sizeInBytes = value.ramBytesUsed();
+        if (key.shardId != null && value instanceof GlobalOrdinalsIndexFieldData) {
+            final GlobalOrdinalsBuilder.ReusableState state = ((GlobalOrdinalsIndexFieldData) value).getReusableState();
+            if (state != null) {
+                sizeInBytes -= indexCache.onGlobalOrdinalsRemoval(key.shardId, state, evicted);
+            }
+        }
         for (IndexFieldDataCache.Listener listener : key.listeners) {
             try {
-                listener.onRemoval(
-                    key.shardId, indexCache.fieldName,
-                    notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED, value.ramBytesUsed()
-                );
+                listener.onRemoval(key.shardId, indexCache.fieldName, evicted, sizeInBytes);
             } catch (Exception e) {
                 // load anyway since listeners should not throw exceptions
                 logger.error("Failed to call listener on field data cache unloading", e);
@@ -107,6 +118,13 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
         final String fieldName;
         private final Cache<Key, Accountable> cache;
         private final Listener[] listeners;
+        /**
+         * The state of the global ordinals that were last built for each shard. It is kept after the reader it was built for is closed,
+         * as global ordinals are typically built for a new reader after the previous reader is closed, and it then remains accounted
+         * for as fielddata. It is dropped when newer global ordinals of the shard replace it, when one of its segments is closed, which
+         * happens when the segment is merged away or the shard is closed, or when its global ordinals are evicted from the cache.
+         */
+        private final Map<ShardId, RetainedState> lastGlobalOrdinals = ConcurrentCollections.newConcurrentMap();
 
         IndexFieldCache(Logger logger,final Cache<Key, Accountable> cache, Index index, String fieldName, Listener... listeners) {
             this.logger = logger;
@@ -157,6 +175,16 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
                 ElasticsearchDirectoryReader.addReaderCloseListener(indexReader, IndexFieldCache.this);
                 Collections.addAll(k.listeners, this.listeners);
                 final Accountable ifd = (Accountable) indexFieldData.loadGlobalDirect(indexReader);
+                if (shardId != null && ifd instanceof GlobalOrdinalsIndexFieldData) {
+                    final GlobalOrdinalsBuilder.ReusableState state = ((GlobalOrdinalsIndexFieldData) ifd).getReusableState();
+                    if (state != null) {
+                        for (LeafReaderContext context : indexReader.leaves()) {
+                            // the state is only useful as long as all its segments are open
+                            context.reader().getCoreCacheHelper().addClosedListener(IndexFieldCache.this);
+                        }
+                        retain(shardId, state);
+                    }
+                }
                 for (Listener listener : k.listeners) {
                     try {
                         listener.onCache(shardId, fieldName, ifd);
@@ -170,14 +198,74 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
             return (IFD) accountable;
         }
 
+        @Override
+        public GlobalOrdinalsBuilder.ReusableState lastGlobalOrdinals(DirectoryReader indexReader) {
+            final ShardId shardId = ShardUtils.extractShardId(indexReader);
+            final RetainedState retained = shardId == null ? null : lastGlobalOrdinals.get(shardId);
+            return retained == null ? null : retained.state;
+        }
+
+        private synchronized void retain(ShardId shardId, GlobalOrdinalsBuilder.ReusableState state) {
+            final RetainedState previous = lastGlobalOrdinals.put(shardId, new RetainedState(state));
+            if (previous != null) {
+                release(shardId, previous);
+            }
+        }
+
+        /**
+         * Called when global ordinals are removed from the cache.
+         *
+         * @return the number of bytes of the removed global ordinals that remain accounted for, because their state is retained
+         */
+        synchronized long onGlobalOrdinalsRemoval(ShardId shardId, GlobalOrdinalsBuilder.ReusableState state, boolean evicted) {
+            final RetainedState retained = lastGlobalOrdinals.get(shardId);
+            if (retained == null || retained.state != state) {
+                return 0;
+            }
+            if (evicted) {
+                lastGlobalOrdinals.remove(shardId);
+                return 0;
+            }
+            retained.outlivesGlobalOrdinals = true;
+            return state.ramBytesUsed();
+        }
+
+        private synchronized void releaseRetainedStates(Predicate<GlobalOrdinalsBuilder.ReusableState> predicate) {
+            final Iterator<Map.Entry<ShardId, RetainedState>> iterator = lastGlobalOrdinals.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<ShardId, RetainedState> entry = iterator.next();
+                if (predicate.test(entry.getValue().state)) {
+                    iterator.remove();
+                    release(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private void release(ShardId shardId, RetainedState retained) {
+            if (retained.outlivesGlobalOrdinals == false) {
+                // still accounted for by its global ordinals in the cache
+                return;
+            }
+            for (Listener listener : listeners) {
+                try {
+                    listener.onRemoval(shardId, fieldName, false, retained.state.ramBytesUsed());
+                } catch (Exception e) {
+                    // release anyway since listeners should not throw exceptions
+                    logger.error("Failed to call listener on global ordinals state unloading", e);
+                }
+            }
+        }
+
         @Override
         public void onClose(CacheKey key) {
             cache.invalidate(new Key(this, key, null));
             // don't call cache.cleanUp here as it would have bad performance implications
+            releaseRetainedStates(state -> state.hasSegment(key));
         }
 
         @Override
         public void clear() {
+            releaseRetainedStates(state -> true);
             for (Key key : cache.keys()) {
                 if (key.indexCache.index.equals(index)) {
                     cache.invalidate(key);
@@ -189,6 +277,9 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
 
         @Override
         public void clear(String fieldName) {
+            if (this.fieldName.equals(fieldName)) {
+                releaseRetainedStates(state -> true);
+            }
             for (Key key : cache.keys()) {
                 if (key.indexCache.index.equals(index)) {
                     if (key.indexCache.fieldName.equals(fieldName)) {
@@ -203,6 +294,19 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
         }
     }
 
+    /**
+     * The state of the global ordinals that were last built for a shard, and whether it is accounted for on its own because the global
+     * ordinals it was built with are no longer cached.
+     */
+    private static final class RetainedState {
+        final GlobalOrdinalsBuilder.ReusableState state;
+        boolean outlivesGlobalOrdinals;
+
+        RetainedState(GlobalOrdinalsBuilder.ReusableState state) {
+            this.state = state;
+        }
+    }
+
     public static class Key {
         public final IndexFieldCache indexCache;
         public final IndexReader.CacheKey readerKey;
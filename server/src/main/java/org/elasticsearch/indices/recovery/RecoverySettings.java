@@ -26,6 +26,7 @@ import org.elasticsearch.monitor.os.OsProbe;
 import org.elasticsearch.node.NodeRoleSettings;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class RecoverySettings {
@@ -148,6 +149,34 @@ public class RecoverySettings {
             Property.NodeScope
         );
 
+    /**
+     * The maximum number of ranges of snapshotted files that may be read concurrently on this node, in addition to the sequential read
+     * of each file being restored, so that large files are restored with several concurrent reads from the repository. Each concurrent
+     * read buffers up to {@link #INDICES_RECOVERY_SNAPSHOT_RANGE_READ_SIZE} bytes on heap. Setting this to {@code 0} restores every file
+     * with a single sequential read.
+     */
+    public static final Setting<Integer> INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS =
+        Setting.intSetting("indices.recovery.max_concurrent_snapshot_range_reads",
+            4,
+            0,
+            64,
+            Property.Dynamic,
+            Property.NodeScope
+        );
+
+    /**
+     * The size of the ranges in which snapshotted files are read concurrently, see
+     * {@link #INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS}. Files no larger than this are always read sequentially.
+     */
+    public static final Setting<ByteSizeValue> INDICES_RECOVERY_SNAPSHOT_RANGE_READ_SIZE =
+        Setting.byteSizeSetting("indices.recovery.snapshot_range_read_size",
+            new ByteSizeValue(8, ByteSizeUnit.MB),
+            new ByteSizeValue(1, ByteSizeUnit.KB),
+            new ByteSizeValue(128, ByteSizeUnit.MB),
+            Property.Dynamic,
+            Property.NodeScope
+        );
+
     public static final ByteSizeValue DEFAULT_CHUNK_SIZE = new ByteSizeValue(512, ByteSizeUnit.KB);
 
     private volatile ByteSizeValue maxBytesPerSec;
@@ -162,6 +191,9 @@ public class RecoverySettings {
     private volatile TimeValue internalActionLongTimeout;
     private volatile boolean useSnapshotsDuringRecovery;
     private volatile int maxConcurrentSnapshotFileDownloads;
+    private volatile int maxConcurrentSnapshotRangeReads;
+    private volatile ByteSizeValue snapshotRangeReadSize;
+    private final AtomicInteger ongoingSnapshotRangeReads = new AtomicInteger();
 
     private volatile ByteSizeValue chunkSize = DEFAULT_CHUNK_SIZE;
 
@@ -186,6 +218,8 @@ public class RecoverySettings {
         }
         this.useSnapshotsDuringRecovery = INDICES_RECOVERY_USE_SNAPSHOTS_SETTING.get(settings);
         this.maxConcurrentSnapshotFileDownloads = INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_FILE_DOWNLOADS.get(settings);
+        this.maxConcurrentSnapshotRangeReads = INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS.get(settings);
+        this.snapshotRangeReadSize = INDICES_RECOVERY_SNAPSHOT_RANGE_READ_SIZE.get(settings);
 
         logger.debug("using max_bytes_per_sec[{}]", maxBytesPerSec);
 
@@ -202,6 +236,9 @@ public class RecoverySettings {
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_USE_SNAPSHOTS_SETTING, this::setUseSnapshotsDuringRecovery);
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_FILE_DOWNLOADS,
             this::setMaxConcurrentSnapshotFileDownloads);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS,
+            this::setMaxConcurrentSnapshotRangeReads);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_SNAPSHOT_RANGE_READ_SIZE, this::setSnapshotRangeReadSize);
     }
 
     public RateLimiter rateLimiter() {
@@ -303,4 +340,48 @@ public class RecoverySettings {
     public void setMaxConcurrentSnapshotFileDownloads(int maxConcurrentSnapshotFileDownloads) {
         this.maxConcurrentSnapshotFileDownloads = maxConcurrentSnapshotFileDownloads;
     }
+
+    public int getMaxConcurrentSnapshotRangeReads() {
+        return maxConcurrentSnapshotRangeReads;
+    }
+
+    private void setMaxConcurrentSnapshotRangeReads(int maxConcurrentSnapshotRangeReads) {
+        this.maxConcurrentSnapshotRangeReads = maxConcurrentSnapshotRangeReads;
+    }
+
+    public ByteSizeValue getSnapshotRangeReadSize() {
+        return snapshotRangeReadSize;
+    }
+
+    private void setSnapshotRangeReadSize(ByteSizeValue snapshotRangeReadSize) {
+        this.snapshotRangeReadSize = snapshotRangeReadSize;
+    }
+
+    /**
+     * Tries to reserve one of the node-wide {@link #INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS} slots for a concurrent read of a
+     * range of a snapshotted file. A successful reservation must be released with {@link #releaseSnapshotRangeRead()}.
+     *
+     * @return true if a slot was reserved
+     */
+    public boolean tryAcquireSnapshotRangeRead() {
+        while (true) {
+            final int ongoing = ongoingSnapshotRangeReads.get();
+            if (ongoing >= maxConcurrentSnapshotRangeReads) {
+                return false;
+            }
+            if (ongoingSnapshotRangeReads.compareAndSet(ongoing, ongoing + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void releaseSnapshotRangeRead() {
+        final int ongoing = ongoingSnapshotRangeReads.decrementAndGet();
+        assert ongoing >= 0 : "released more snapshot range reads than were acquired";
+    }
+
+    // visible for testing
+    int getOngoingSnapshotRangeReads() {
+        return ongoingSnapshotRangeReads.get();
+    }
 }
@@ -0,0 +1,26 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.ingest;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A processor that wants to see many documents at once, typically because it looks something up for every document and
+ * can do a single lookup for all of them instead. The documents of a bulk request that go through the same pipeline are
+ * gathered in front of such a processor and handed to it as one batch.
+ */
+public interface BatchProcessor extends Processor {
+
+    /**
+     * Introspect and potentially modify a batch of incoming documents. The handler of each document is at the same
+     * position in {@code handlers} as the document itself and must be invoked exactly once.
+     */
+    void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers);
+}
@@ -11,12 +11,16 @@ package org.elasticsearch.ingest;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.core.Tuple;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
@@ -24,7 +28,7 @@ import java.util.stream.Collectors;
  * A Processor that executes a list of other "processors". It executes a separate list of
  * "onFailureProcessors" when any of the processors throw an {@link Exception}.
  */
-public class CompoundProcessor implements Processor {
+public class CompoundProcessor implements BatchProcessor {
     public static final String ON_FAILURE_MESSAGE_FIELD = "on_failure_message";
     public static final String ON_FAILURE_PROCESSOR_TYPE_FIELD = "on_failure_processor_type";
     public static final String ON_FAILURE_PROCESSOR_TAG_FIELD = "on_failure_processor_tag";
@@ -34,6 +38,8 @@ public class CompoundProcessor implements Processor {
     private final List<Processor> processors;
     private final List<Processor> onFailureProcessors;
     private final List<Tuple<Processor, IngestMetric>> processorsWithMetrics;
+    private final boolean[] synchronous;
+    private final boolean[] batched;
     private final LongSupplier relativeTimeProvider;
 
     CompoundProcessor(LongSupplier relativeTimeProvider, Processor... processor) {
@@ -56,6 +62,48 @@ public class CompoundProcessor implements Processor {
         this.relativeTimeProvider = relativeTimeProvider;
         this.processorsWithMetrics = new ArrayList<>(processors.size());
         processors.forEach(p -> processorsWithMetrics.add(new Tuple<>(p, new IngestMetric())));
+        this.synchronous = new boolean[processors.size()];
+        this.batched = new boolean[processors.size()];
+        for (int i = 0; i < processors.size(); i++) {
+            synchronous[i] = isSynchronous(processors.get(i));
+            batched[i] = isBatched(processors.get(i));
+        }
+    }
+
+    /**
+     * Processors that don't override {@link Processor#execute(IngestDocument, BiConsumer)} always complete on the calling
+     * thread, so runs of them can be executed in a loop instead of nesting a callback per processor.
+     */
+    static boolean isSynchronous(Processor processor) {
+        try {
+            Method execute = processor.getClass().getMethod("execute", IngestDocument.class, BiConsumer.class);
+            return execute.getDeclaringClass() == Processor.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@link BatchProcessor}s want to see all documents of a batch at once, and so do conditional and compound processors
+     * that wrap one.
+     */
+    static boolean isBatched(Processor processor) {
+        if (processor instanceof ConditionalProcessor) {
+            return isBatched(((ConditionalProcessor) processor).getInnerProcessor());
+        }
+        if (processor instanceof CompoundProcessor) {
+            return ((CompoundProcessor) processor).hasBatchedProcessors();
+        }
+        return processor instanceof BatchProcessor;
+    }
+
+    boolean hasBatchedProcessors() {
+        for (boolean b : batched) {
+            if (b) {
+                return true;
+            }
+        }
+        return false;
     }
 
     List<Tuple<Processor, IngestMetric>> getProcessorsWithMetrics() {
@@ -114,12 +162,27 @@ public class CompoundProcessor implements Processor {
 
     @Override
     public void execute(IngestDocument ingestDocument, BiConsumer<IngestDocument, Exception> handler) {
-        innerExecute(0, ingestDocument, handler);
+        innerExecute(0, processorsWithMetrics.size(), ingestDocument, handler, result -> handler.accept(result, null));
     }
 
-    void innerExecute(int currentProcessor, IngestDocument ingestDocument, BiConsumer<IngestDocument, Exception> handler) {
-        if (currentProcessor == processorsWithMetrics.size()) {
-            handler.accept(ingestDocument, null);
+    @Override
+    public void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers) {
+        innerExecuteBatch(0, ingestDocuments, handlers);
+    }
+
+    /**
+     * Executes the processors from {@code currentProcessor} up to {@code end} (exclusive) on a single document. A document
+     * that made it past all of them is handed to {@code next}, failed and dropped documents as well as documents that went
+     * through the on_failure processors are handed to {@code handler}.
+     */
+    void innerExecute(int currentProcessor, int end, IngestDocument ingestDocument, BiConsumer<IngestDocument, Exception> handler,
+                      Consumer<IngestDocument> next) {
+        if (currentProcessor == end) {
+            next.accept(ingestDocument);
+            return;
+        }
+        if (synchronous[currentProcessor]) {
+            executeSynchronously(currentProcessor, end, ingestDocument, handler, next);
             return;
         }
 
@@ -135,7 +198,7 @@ public class CompoundProcessor implements Processor {
             if (e != null) {
                 metric.ingestFailed();
                 if (ignoreFailure) {
-                    innerExecute(currentProcessor + 1, ingestDocument, handler);
+                    innerExecute(currentProcessor + 1, end, ingestDocument, handler, next);
                 } else {
                     IngestProcessorException compoundProcessorException =
                         newCompoundProcessorException(e, processor, ingestDocument);
@@ -147,7 +210,7 @@ public class CompoundProcessor implements Processor {
                 }
             } else {
                 if (result != null) {
-                    innerExecute(currentProcessor + 1, result, handler);
+                    innerExecute(currentProcessor + 1, end, result, handler, next);
                 } else {
                     handler.accept(null, null);
                 }
@@ -155,6 +218,164 @@ public class CompoundProcessor implements Processor {
         });
     }
 
+    /**
+     * Runs processors in a loop for as long as they are synchronous and hands over to {@link #innerExecute} for the rest.
+     */
+    private void executeSynchronously(int currentProcessor, int end, IngestDocument ingestDocument,
+                                      BiConsumer<IngestDocument, Exception> handler, Consumer<IngestDocument> next) {
+        while (currentProcessor < end && synchronous[currentProcessor]) {
+            Tuple<Processor, IngestMetric> processorWithMetric = processorsWithMetrics.get(currentProcessor);
+            final Processor processor = processorWithMetric.v1();
+            final IngestMetric metric = processorWithMetric.v2();
+            final long startTimeInNanos = relativeTimeProvider.getAsLong();
+            metric.preIngest();
+            IngestDocument result;
+            try {
+                result = processor.execute(ingestDocument);
+            } catch (Exception e) {
+                metric.postIngest(relativeTimeProvider.getAsLong() - startTimeInNanos);
+                metric.ingestFailed();
+                if (ignoreFailure) {
+                    currentProcessor++;
+                    continue;
+                }
+                IngestProcessorException compoundProcessorException = newCompoundProcessorException(e, processor, ingestDocument);
+                if (onFailureProcessors.isEmpty()) {
+                    handler.accept(null, compoundProcessorException);
+                } else {
+                    executeOnFailureAsync(0, ingestDocument, compoundProcessorException, handler);
+                }
+                return;
+            }
+            metric.postIngest(relativeTimeProvider.getAsLong() - startTimeInNanos);
+            if (result == null) {
+                handler.accept(null, null);
+                return;
+            }
+            ingestDocument = result;
+            currentProcessor++;
+        }
+        innerExecute(currentProcessor, end, ingestDocument, handler, next);
+    }
+
+    /**
+     * Executes the processors from {@code currentProcessor} on a batch of documents. The documents go through processors
+     * that don't batch one by one and are gathered again in front of every processor that does, so that it gets to see
+     * all documents that made it that far at once.
+     */
+    private void innerExecuteBatch(int currentProcessor, List<IngestDocument> ingestDocuments,
+                                   List<BiConsumer<IngestDocument, Exception>> handlers) {
+        int end = currentProcessor;
+        while (end < batched.length && batched[end] == false) {
+            end++;
+        }
+        if (end == batched.length) {
+            for (int i = 0; i < ingestDocuments.size(); i++) {
+                BiConsumer<IngestDocument, Exception> handler = handlers.get(i);
+                innerExecute(currentProcessor, end, ingestDocuments.get(i), handler, result -> handler.accept(result, null));
+            }
+        } else if (end == currentProcessor) {
+            executeBatchedProcessor(currentProcessor, ingestDocuments, handlers);
+        } else {
+            BatchStep step = new BatchStep(end, handlers, this::executeBatchedProcessor);
+            for (int i = 0; i < ingestDocuments.size(); i++) {
+                final int slot = i;
+                BiConsumer<IngestDocument, Exception> handler = handlers.get(i);
+                innerExecute(currentProcessor, end, ingestDocuments.get(i), (result, e) -> {
+                    handler.accept(result, e);
+                    step.done();
+                }, result -> step.proceed(slot, result));
+            }
+        }
+    }
+
+    private void executeBatchedProcessor(int currentProcessor, List<IngestDocument> ingestDocuments,
+                                         List<BiConsumer<IngestDocument, Exception>> handlers) {
+        Tuple<Processor, IngestMetric> processorWithMetric = processorsWithMetrics.get(currentProcessor);
+        final Processor processor = processorWithMetric.v1();
+        final IngestMetric metric = processorWithMetric.v2();
+        BatchStep step = new BatchStep(currentProcessor + 1, handlers, this::innerExecuteBatch);
+        List<BiConsumer<IngestDocument, Exception>> processorHandlers = new ArrayList<>(ingestDocuments.size());
+        final long startTimeInNanos = relativeTimeProvider.getAsLong();
+        for (int i = 0; i < ingestDocuments.size(); i++) {
+            final int slot = i;
+            final IngestDocument ingestDocument = ingestDocuments.get(i);
+            final BiConsumer<IngestDocument, Exception> handler = handlers.get(i);
+            metric.preIngest();
+            processorHandlers.add((result, e) -> {
+                metric.postIngest(relativeTimeProvider.getAsLong() - startTimeInNanos);
+                if (e != null) {
+                    metric.ingestFailed();
+                    if (ignoreFailure) {
+                        step.proceed(slot, ingestDocument);
+                        return;
+                    }
+                    IngestProcessorException compoundProcessorException = newCompoundProcessorException(e, processor, ingestDocument);
+                    if (onFailureProcessors.isEmpty()) {
+                        handler.accept(null, compoundProcessorException);
+                    } else {
+                        executeOnFailureAsync(0, ingestDocument, compoundProcessorException, handler);
+                    }
+                } else if (result == null) {
+                    handler.accept(null, null);
+                } else {
+                    step.proceed(slot, result);
+                    return;
+                }
+                step.done();
+            });
+        }
+        ((BatchProcessor) processor).executeBatch(ingestDocuments, processorHandlers);
+    }
+
+    /**
+     * Keeps track of the documents of a batch that should go on to the next processor and continues with them once
+     * every document of the batch is accounted for.
+     */
+    private static final class BatchStep {
+        private final int nextProcessor;
+        private final List<BiConsumer<IngestDocument, Exception>> handlers;
+        private final AtomicReferenceArray<IngestDocument> results;
+        private final AtomicInteger pending;
+        private final BatchExecution continuation;
+
+        BatchStep(int nextProcessor, List<BiConsumer<IngestDocument, Exception>> handlers, BatchExecution continuation) {
+            this.nextProcessor = nextProcessor;
+            this.handlers = handlers;
+            this.results = new AtomicReferenceArray<>(handlers.size());
+            this.pending = new AtomicInteger(handlers.size());
+            this.continuation = continuation;
+        }
+
+        void proceed(int slot, IngestDocument ingestDocument) {
+            results.set(slot, ingestDocument);
+            done();
+        }
+
+        void done() {
+            if (pending.decrementAndGet() > 0) {
+                return;
+            }
+            List<IngestDocument> ingestDocuments = new ArrayList<>(handlers.size());
+            List<BiConsumer<IngestDocument, Exception>> nextHandlers = new ArrayList<>(handlers.size());
+            for (int i = 0; i < handlers.size(); i++) {
+                IngestDocument ingestDocument = results.get(i);
+                if (ingestDocument != null) {
+                    ingestDocuments.add(ingestDocument);
+                    nextHandlers.add(handlers.get(i));
+                }
+            }
+            if (ingestDocuments.isEmpty() == false) {
+                continuation.execute(nextProcessor, ingestDocuments, nextHandlers);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchExecution {
+        void execute(int currentProcessor, List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers);
+    }
+
     void executeOnFailureAsync(int currentOnFailureProcessor, IngestDocument ingestDocument, ElasticsearchException exception,
                                BiConsumer<IngestDocument, Exception> handler) {
         if (currentOnFailureProcessor == 0) {
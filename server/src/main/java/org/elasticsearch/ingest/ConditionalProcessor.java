@@ -33,7 +33,7 @@ import java.util.stream.Collectors;
 
 import static org.elasticsearch.ingest.ConfigurationUtils.newConfigurationException;
 
-public class ConditionalProcessor extends AbstractProcessor implements WrappingProcessor {
+public class ConditionalProcessor extends AbstractProcessor implements WrappingProcessor, BatchProcessor {
 
     private static final DeprecationLogger deprecationLogger = DeprecationLogger.getLogger(DynamicMap.class);
     private static final Map<String, Function<Object, Object>> FUNCTIONS = Map.of(
@@ -106,6 +106,54 @@ public class ConditionalProcessor extends AbstractProcessor implements WrappingP
         }
     }
 
+    @Override
+    public void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers) {
+        List<IngestDocument> matchingDocuments = new ArrayList<>(ingestDocuments.size());
+        List<BiConsumer<IngestDocument, Exception>> matchingHandlers = new ArrayList<>(ingestDocuments.size());
+        for (int i = 0; i < ingestDocuments.size(); i++) {
+            IngestDocument ingestDocument = ingestDocuments.get(i);
+            final boolean matches;
+            try {
+                matches = evaluate(ingestDocument);
+            } catch (Exception e) {
+                handlers.get(i).accept(null, e);
+                continue;
+            }
+            if (matches) {
+                matchingDocuments.add(ingestDocument);
+                matchingHandlers.add(handlers.get(i));
+            } else {
+                handlers.get(i).accept(ingestDocument, null);
+            }
+        }
+        if (matchingDocuments.isEmpty()) {
+            return;
+        }
+
+        final long startTimeInNanos = relativeTimeProvider.getAsLong();
+        List<BiConsumer<IngestDocument, Exception>> processorHandlers = new ArrayList<>(matchingHandlers.size());
+        for (BiConsumer<IngestDocument, Exception> handler : matchingHandlers) {
+            metric.preIngest();
+            processorHandlers.add((result, e) -> {
+                long ingestTimeInNanos = relativeTimeProvider.getAsLong() - startTimeInNanos;
+                metric.postIngest(ingestTimeInNanos);
+                if (e != null) {
+                    metric.ingestFailed();
+                    handler.accept(null, e);
+                } else {
+                    handler.accept(result, null);
+                }
+            });
+        }
+        if (processor instanceof BatchProcessor) {
+            ((BatchProcessor) processor).executeBatch(matchingDocuments, processorHandlers);
+        } else {
+            for (int i = 0; i < matchingDocuments.size(); i++) {
+                processor.execute(matchingDocuments.get(i), processorHandlers.get(i));
+            }
+        }
+    }
+
     @Override
     public IngestDocument execute(IngestDocument ingestDocument) throws Exception {
         throw new UnsupportedOperationException("this method should not get executed");
@@ -10,6 +10,7 @@ package org.elasticsearch.ingest;
 
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.util.LazyMap;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.IndexFieldMapper;
@@ -44,6 +45,7 @@ public final class IngestDocument {
     public static final String PIPELINE_CYCLE_ERROR_MESSAGE = "Cycle detected for pipeline: ";
     private static final String INGEST_KEY_PREFIX = INGEST_KEY + ".";
     private static final String SOURCE_PREFIX = SourceFieldMapper.NAME + ".";
+    private static final Object NOT_FOUND = new Object();
 
     static final String TIMESTAMP = "timestamp";
 
@@ -98,12 +100,7 @@ public final class IngestDocument {
      * or if the field that is found at the provided path is not of the expected type.
      */
     public <T> T getFieldValue(String path, Class<T> clazz) {
-        FieldPath fieldPath = new FieldPath(path);
-        Object context = fieldPath.initialContext;
-        for (String pathElement : fieldPath.pathElements) {
-            context = resolve(pathElement, path, context);
-        }
-        return cast(path, context, clazz);
+        return getFieldValue(path, clazz, false);
     }
 
     /**
@@ -117,15 +114,20 @@ public final class IngestDocument {
      * or if the field that is found at the provided path is not of the expected type.
      */
     public <T> T getFieldValue(String path, Class<T> clazz, boolean ignoreMissing) {
-        try {
-            return getFieldValue(path, clazz);
-        } catch (IllegalArgumentException e) {
-            if (ignoreMissing && hasField(path) != true) {
+        FieldPath fieldPath = FieldPath.of(path);
+        Object context = fieldPath.initialContext(this);
+        for (String pathElement : fieldPath.pathElements) {
+            ResolveResult result = resolve(pathElement, path, context);
+            if (result.wasSuccessful) {
+                context = result.resolvedObject;
+            } else if (ignoreMissing && hasField(path) == false) {
+                // resolving without throwing keeps processors with ignore_missing cheap on documents without the field
                 return null;
             } else {
-                throw e;
+                throw new IllegalArgumentException(result.errorMessage, result.cause);
             }
         }
+        return cast(path, context, clazz);
     }
 
     /**
@@ -205,8 +207,8 @@ public final class IngestDocument {
      * @throws IllegalArgumentException if the path is null, empty or invalid.
      */
     public boolean hasField(String path, boolean failOutOfRange) {
-        FieldPath fieldPath = new FieldPath(path);
-        Object context = fieldPath.initialContext;
+        FieldPath fieldPath = FieldPath.of(path);
+        Object context = fieldPath.initialContext(this);
         for (int i = 0; i < fieldPath.pathElements.length - 1; i++) {
             String pathElement = fieldPath.pathElements[i];
             if (context == null) {
@@ -282,10 +284,14 @@ public final class IngestDocument {
      * @throws IllegalArgumentException if the path is null, empty, invalid or if the field doesn't exist.
      */
     public void removeField(String path) {
-        FieldPath fieldPath = new FieldPath(path);
-        Object context = fieldPath.initialContext;
+        FieldPath fieldPath = FieldPath.of(path);
+        Object context = fieldPath.initialContext(this);
         for (int i = 0; i < fieldPath.pathElements.length - 1; i++) {
-            context = resolve(fieldPath.pathElements[i], path, context);
+            ResolveResult result = resolve(fieldPath.pathElements[i], path, context);
+            if (result.wasSuccessful == false) {
+                throw new IllegalArgumentException(result.errorMessage, result.cause);
+            }
+            context = result.resolvedObject;
         }
 
         String leafKey = fieldPath.pathElements[fieldPath.pathElements.length - 1];
@@ -323,17 +329,18 @@ public final class IngestDocument {
                 "] as part of path [" + path + "]");
     }
 
-    private static Object resolve(String pathElement, String fullPath, Object context) {
+    private static ResolveResult resolve(String pathElement, String fullPath, Object context) {
         if (context == null) {
-            throw new IllegalArgumentException("cannot resolve [" + pathElement + "] from null as part of path [" + fullPath + "]");
+            return ResolveResult.error("cannot resolve [" + pathElement + "] from null as part of path [" + fullPath + "]");
         }
         if (context instanceof Map) {
             @SuppressWarnings("unchecked")
             Map<String, Object> map = (Map<String, Object>) context;
-            if (map.containsKey(pathElement)) {
-                return map.get(pathElement);
+            Object object = map.getOrDefault(pathElement, NOT_FOUND); // getOrDefault is faster than containsKey + get
+            if (object == NOT_FOUND) {
+                return ResolveResult.error("field [" + pathElement + "] not present as part of path [" + fullPath + "]");
             }
-            throw new IllegalArgumentException("field [" + pathElement + "] not present as part of path [" + fullPath + "]");
+            return ResolveResult.success(object);
         }
         if (context instanceof List) {
             @SuppressWarnings("unchecked")
@@ -342,16 +349,16 @@ public final class IngestDocument {
             try {
                 index = Integer.parseInt(pathElement);
             } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("[" + pathElement + "] is not an integer, cannot be used as an index as part of path ["
+                return ResolveResult.error("[" + pathElement + "] is not an integer, cannot be used as an index as part of path ["
                         + fullPath + "]", e);
             }
             if (index < 0 || index >= list.size()) {
-                throw new IllegalArgumentException("[" + index + "] is out of bounds for array with length [" + list.size() +
+                return ResolveResult.error("[" + index + "] is out of bounds for array with length [" + list.size() +
                         "] as part of path [" + fullPath + "]");
             }
-            return list.get(index);
+            return ResolveResult.success(list.get(index));
         }
-        throw new IllegalArgumentException("cannot resolve [" + pathElement + "] from object of type [" + context.getClass().getName() +
+        return ResolveResult.error("cannot resolve [" + pathElement + "] from object of type [" + context.getClass().getName() +
                 "] as part of path [" + fullPath + "]");
     }
 
@@ -509,8 +516,8 @@ public final class IngestDocument {
     }
 
     private void setFieldValue(String path, Object value, boolean append, boolean allowDuplicates) {
-        FieldPath fieldPath = new FieldPath(path);
-        Object context = fieldPath.initialContext;
+        FieldPath fieldPath = FieldPath.of(path);
+        Object context = fieldPath.initialContext(this);
         for (int i = 0; i < fieldPath.pathElements.length - 1; i++) {
             String pathElement = fieldPath.pathElements[i];
             if (context == null) {
@@ -772,21 +779,51 @@ public final class IngestDocument {
      */
     public void executePipeline(Pipeline pipeline, BiConsumer<IngestDocument, Exception> handler) {
         if (executedPipelines.add(pipeline.getId())) {
-            Object previousPipeline = ingestMetadata.put("pipeline", pipeline.getId());
-            pipeline.execute(this, (result, e) -> {
-                executedPipelines.remove(pipeline.getId());
-                if (previousPipeline != null) {
-                    ingestMetadata.put("pipeline", previousPipeline);
-                } else {
-                    ingestMetadata.remove("pipeline");
-                }
-                handler.accept(result, e);
-            });
+            pipeline.execute(this, enterPipeline(pipeline, handler));
         } else {
             handler.accept(null, new IllegalStateException(PIPELINE_CYCLE_ERROR_MESSAGE + pipeline.getId()));
         }
     }
 
+    /**
+     * Executes the given pipeline on a batch of documents at once, see {@link Pipeline#executeBatch(List, List)}. The handler
+     * of each document is at the same position in {@code handlers} as the document itself.
+     */
+    public static void executePipeline(Pipeline pipeline, List<IngestDocument> ingestDocuments,
+                                       List<BiConsumer<IngestDocument, Exception>> handlers) {
+        List<IngestDocument> documents = new ArrayList<>(ingestDocuments.size());
+        List<BiConsumer<IngestDocument, Exception>> pipelineHandlers = new ArrayList<>(ingestDocuments.size());
+        for (int i = 0; i < ingestDocuments.size(); i++) {
+            IngestDocument ingestDocument = ingestDocuments.get(i);
+            if (ingestDocument.executedPipelines.add(pipeline.getId())) {
+                documents.add(ingestDocument);
+                pipelineHandlers.add(ingestDocument.enterPipeline(pipeline, handlers.get(i)));
+            } else {
+                handlers.get(i).accept(null, new IllegalStateException(PIPELINE_CYCLE_ERROR_MESSAGE + pipeline.getId()));
+            }
+        }
+        if (documents.isEmpty() == false) {
+            pipeline.executeBatch(documents, pipelineHandlers);
+        }
+    }
+
+    /**
+     * Records the pipeline as the current one in the ingest metadata and returns a handler that restores the
+     * previous one before passing on to the given handler.
+     */
+    private BiConsumer<IngestDocument, Exception> enterPipeline(Pipeline pipeline, BiConsumer<IngestDocument, Exception> handler) {
+        Object previousPipeline = ingestMetadata.put("pipeline", pipeline.getId());
+        return (result, e) -> {
+            executedPipelines.remove(pipeline.getId());
+            if (previousPipeline != null) {
+                ingestMetadata.put("pipeline", previousPipeline);
+            } else {
+                ingestMetadata.remove("pipeline");
+            }
+            handler.accept(result, e);
+        };
+    }
+
     /**
      * @return a pipeline stack; all pipelines that are in execution by this document in reverse order
      */
@@ -843,21 +880,40 @@ public final class IngestDocument {
         }
     }
 
-    private class FieldPath {
+    private static final class FieldPath {
+
+        /**
+         * Pipelines use the same paths for every document, so we keep parsed paths around instead of splitting them over and over.
+         * Templated paths can produce any number of different paths, so the cache is bounded and simply emptied when it is full.
+         */
+        private static final int MAX_SIZE = 512;
+        private static final Map<String, FieldPath> CACHE = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
         private final String[] pathElements;
-        private final Object initialContext;
+        private final boolean useIngestContext;
 
-        private FieldPath(String path) {
+        static FieldPath of(String path) {
             if (Strings.isEmpty(path)) {
                 throw new IllegalArgumentException("path cannot be null nor empty");
             }
+            FieldPath fieldPath = CACHE.get(path);
+            if (fieldPath == null) {
+                fieldPath = new FieldPath(path);
+                if (CACHE.size() >= MAX_SIZE) {
+                    CACHE.clear();
+                }
+                CACHE.put(path, fieldPath);
+            }
+            return fieldPath;
+        }
+
+        private FieldPath(String path) {
             String newPath;
             if (path.startsWith(INGEST_KEY_PREFIX)) {
-                initialContext = ingestMetadata;
+                useIngestContext = true;
                 newPath = path.substring(INGEST_KEY_PREFIX.length(), path.length());
             } else {
-                initialContext = sourceAndMetadata;
+                useIngestContext = false;
                 if (path.startsWith(SOURCE_PREFIX)) {
                     newPath = path.substring(SOURCE_PREFIX.length(), path.length());
                 } else {
@@ -870,5 +926,34 @@ public final class IngestDocument {
             }
         }
 
+        Object initialContext(IngestDocument document) {
+            return useIngestContext ? document.ingestMetadata : document.sourceAndMetadata;
+        }
+    }
+
+    private static final class ResolveResult {
+        private final boolean wasSuccessful;
+        private final Object resolvedObject;
+        private final String errorMessage;
+        private final Exception cause;
+
+        static ResolveResult success(Object resolvedObject) {
+            return new ResolveResult(true, resolvedObject, null, null);
+        }
+
+        static ResolveResult error(String errorMessage) {
+            return error(errorMessage, null);
+        }
+
+        static ResolveResult error(String errorMessage, Exception cause) {
+            return new ResolveResult(false, null, errorMessage, cause);
+        }
+
+        private ResolveResult(boolean wasSuccessful, Object resolvedObject, String errorMessage, Exception cause) {
+            this.wasSuccessful = wasSuccessful;
+            this.resolvedObject = resolvedObject;
+            this.errorMessage = errorMessage;
+            this.cause = cause;
+        }
     }
 }
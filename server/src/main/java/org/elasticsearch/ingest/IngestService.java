@@ -61,6 +61,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -69,6 +70,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
@@ -546,6 +548,7 @@ public class IngestService implements ClusterStateApplier, ReportingService<Inge
             protected void doRun() {
                 final Thread originalThread = Thread.currentThread();
                 final AtomicInteger counter = new AtomicInteger(numberOfActionRequests);
+                final Map<String, List<PendingDocument>> documentsByPipeline = new LinkedHashMap<>();
                 int i = 0;
                 for (DocWriteRequest<?> actionRequest : actionRequests) {
                     IndexRequest indexRequest = TransportBulkAction.getIndexWriteRequest(actionRequest);
@@ -581,81 +584,193 @@ public class IngestService implements ClusterStateApplier, ReportingService<Inge
                         continue;
                     }
 
-                    executePipelines(i, pipelines.iterator(), hasFinalPipeline, indexRequest, onDropped, onFailure, counter,
-                                     onCompletion, originalThread);
+                    PendingDocument document = new PendingDocument(i, indexRequest, pipelines.iterator(), hasFinalPipeline);
+                    if (isBatched(document.pipelineId)) {
+                        documentsByPipeline.computeIfAbsent(document.pipelineId, k -> new ArrayList<>()).add(document);
+                    } else {
+                        executePipelines(document.pipelineId, List.of(document), onDropped, onFailure, counter, onCompletion,
+                            originalThread);
+                    }
 
                     i++;
                 }
+
+                documentsByPipeline.forEach((pipelineId, documents) ->
+                    executePipelines(pipelineId, documents, onDropped, onFailure, counter, onCompletion, originalThread));
             }
         });
     }
 
+    /**
+     * Executes a pipeline on documents of a bulk request. Pipelines with {@link BatchProcessor}s get all documents that go
+     * through them at once, and documents that move on to another batching pipeline afterwards (a final pipeline or the default
+     * pipeline of a new target index) are batched again once all of them are done. Every other pipeline runs document by
+     * document, and each document moves on to its next pipeline as soon as it is done.
+     */
     private void executePipelines(
-        final int slot,
-        final Iterator<String> it,
-        final boolean hasFinalPipeline,
-        final IndexRequest indexRequest,
+        final String pipelineId,
+        final List<PendingDocument> documents,
         final IntConsumer onDropped,
         final BiConsumer<Integer, Exception> onFailure,
         final AtomicInteger counter,
         final BiConsumer<Thread, Exception> onCompletion,
         final Thread originalThread
     ) {
-        assert it.hasNext();
-        final String pipelineId = it.next();
-        try {
-            PipelineHolder holder = pipelines.get(pipelineId);
-            if (holder == null) {
-                throw new IllegalArgumentException("pipeline with id [" + pipelineId + "] does not exist");
+        PipelineHolder holder = pipelines.get(pipelineId);
+        if (holder == null) {
+            for (PendingDocument document : documents) {
+                fail(document, pipelineId, new IllegalArgumentException("pipeline with id [" + pipelineId + "] does not exist"),
+                    onFailure, counter, onCompletion, originalThread);
             }
-            Pipeline pipeline = holder.pipeline;
-            String originalIndex = indexRequest.indices()[0];
-            innerExecute(slot, indexRequest, pipeline, onDropped, e -> {
-                if (e != null) {
-                    logger.debug(() -> new ParameterizedMessage("failed to execute pipeline [{}] for document [{}/{}]",
-                        pipelineId, indexRequest.index(), indexRequest.id()), e);
-                    onFailure.accept(slot, e);
+            return;
+        }
+        Pipeline pipeline = holder.pipeline;
+        if (pipeline.hasBatchedProcessors() == false) {
+            for (PendingDocument document : documents) {
+                try {
+                    innerExecute(document.slot, document.indexRequest, pipeline, onDropped, e -> {
+                        PendingDocument nextDocument = onPipelineDone(pipelineId, document, e, onFailure, counter, onCompletion,
+                            originalThread);
+                        if (nextDocument != null) {
+                            executePipelines(nextDocument.pipelineId, List.of(nextDocument), onDropped, onFailure, counter,
+                                onCompletion, originalThread);
+                        }
+                    });
+                } catch (Exception e) {
+                    fail(document, pipelineId, e, onFailure, counter, onCompletion, originalThread);
                 }
+            }
+            return;
+        }
 
-                Iterator<String> newIt = it;
-                boolean newHasFinalPipeline = hasFinalPipeline;
-                String newIndex = indexRequest.indices()[0];
-
-                if (Objects.equals(originalIndex, newIndex) == false) {
-                    if (hasFinalPipeline && it.hasNext() == false) {
-                        totalMetrics.ingestFailed();
-                        onFailure.accept(slot, new IllegalStateException("final pipeline [" + pipelineId +
-                            "] can't change the target index"));
-                    } else {
-                        indexRequest.isPipelineResolved(false);
-                        resolvePipelines(null, indexRequest, state.metadata());
-                        if (IngestService.NOOP_PIPELINE_NAME.equals(indexRequest.getFinalPipeline()) == false) {
-                            newIt = Collections.singleton(indexRequest.getFinalPipeline()).iterator();
-                            newHasFinalPipeline = true;
-                        } else {
-                            newIt = Collections.emptyIterator();
-                        }
+        final AtomicReferenceArray<PendingDocument> nextDocuments = new AtomicReferenceArray<>(documents.size());
+        final AtomicInteger pending = new AtomicInteger(documents.size());
+        final Runnable onDocumentDone = () -> {
+            if (pending.decrementAndGet() == 0) {
+                Map<String, List<PendingDocument>> documentsByPipeline = new LinkedHashMap<>();
+                for (int i = 0; i < documents.size(); i++) {
+                    PendingDocument nextDocument = nextDocuments.get(i);
+                    if (nextDocument != null) {
+                        documentsByPipeline.computeIfAbsent(nextDocument.pipelineId, k -> new ArrayList<>()).add(nextDocument);
                     }
                 }
-
-                if (newIt.hasNext()) {
-                    executePipelines(slot, newIt, newHasFinalPipeline, indexRequest, onDropped, onFailure, counter, onCompletion,
-                        originalThread);
+                documentsByPipeline.forEach((nextPipelineId, nextPipelineDocuments) -> executePipelines(nextPipelineId,
+                    nextPipelineDocuments, onDropped, onFailure, counter, onCompletion, originalThread));
+            }
+        };
+        innerExecute(pipeline, documents, onDropped, (index, e) -> {
+            PendingDocument nextDocument = onPipelineDone(pipelineId, documents.get(index), e, onFailure, counter, onCompletion,
+                originalThread);
+            if (nextDocument != null) {
+                if (isBatched(nextDocument.pipelineId)) {
+                    nextDocuments.set(index, nextDocument);
                 } else {
-                    if (counter.decrementAndGet() == 0) {
-                        onCompletion.accept(originalThread, null);
-                    }
-                    assert counter.get() >= 0;
+                    // nothing to wait for if the next pipeline doesn't batch
+                    executePipelines(nextDocument.pipelineId, List.of(nextDocument), onDropped, onFailure, counter, onCompletion,
+                        originalThread);
                 }
-            });
-        } catch (Exception e) {
+            }
+            onDocumentDone.run();
+        }, (index, e) -> {
+            fail(documents.get(index), pipelineId, e, onFailure, counter, onCompletion, originalThread);
+            onDocumentDone.run();
+        });
+    }
+
+    private boolean isBatched(String pipelineId) {
+        PipelineHolder holder = pipelines.get(pipelineId);
+        return holder != null && holder.pipeline.hasBatchedProcessors();
+    }
+
+    /**
+     * Records the outcome of a pipeline for a document and returns the document on its way to its next pipeline, or completes
+     * the document and returns {@code null} if there is no next pipeline.
+     */
+    private PendingDocument onPipelineDone(
+        String pipelineId,
+        PendingDocument document,
+        Exception e,
+        BiConsumer<Integer, Exception> onFailure,
+        AtomicInteger counter,
+        BiConsumer<Thread, Exception> onCompletion,
+        Thread originalThread
+    ) {
+        IndexRequest indexRequest = document.indexRequest;
+        if (e != null) {
             logger.debug(() -> new ParameterizedMessage("failed to execute pipeline [{}] for document [{}/{}]",
                 pipelineId, indexRequest.index(), indexRequest.id()), e);
-            onFailure.accept(slot, e);
-            if (counter.decrementAndGet() == 0) {
-                onCompletion.accept(originalThread, null);
+            onFailure.accept(document.slot, e);
+        }
+
+        Iterator<String> newIt = document.remainingPipelines;
+        boolean newHasFinalPipeline = document.hasFinalPipeline;
+        String newIndex = indexRequest.indices()[0];
+
+        if (Objects.equals(document.originalIndex, newIndex) == false) {
+            if (document.hasFinalPipeline && document.remainingPipelines.hasNext() == false) {
+                totalMetrics.ingestFailed();
+                onFailure.accept(document.slot, new IllegalStateException("final pipeline [" + pipelineId +
+                    "] can't change the target index"));
+            } else {
+                indexRequest.isPipelineResolved(false);
+                resolvePipelines(null, indexRequest, state.metadata());
+                if (IngestService.NOOP_PIPELINE_NAME.equals(indexRequest.getFinalPipeline()) == false) {
+                    newIt = Collections.singleton(indexRequest.getFinalPipeline()).iterator();
+                    newHasFinalPipeline = true;
+                } else {
+                    newIt = Collections.emptyIterator();
+                }
             }
-            assert counter.get() >= 0;
+        }
+
+        if (newIt.hasNext()) {
+            return new PendingDocument(document.slot, indexRequest, newIt, newHasFinalPipeline);
+        }
+        completeDocument(counter, onCompletion, originalThread);
+        return null;
+    }
+
+    private void fail(
+        PendingDocument document,
+        String pipelineId,
+        Exception e,
+        BiConsumer<Integer, Exception> onFailure,
+        AtomicInteger counter,
+        BiConsumer<Thread, Exception> onCompletion,
+        Thread originalThread
+    ) {
+        logger.debug(() -> new ParameterizedMessage("failed to execute pipeline [{}] for document [{}/{}]",
+            pipelineId, document.indexRequest.index(), document.indexRequest.id()), e);
+        onFailure.accept(document.slot, e);
+        completeDocument(counter, onCompletion, originalThread);
+    }
+
+    private static void completeDocument(AtomicInteger counter, BiConsumer<Thread, Exception> onCompletion, Thread originalThread) {
+        if (counter.decrementAndGet() == 0) {
+            onCompletion.accept(originalThread, null);
+        }
+        assert counter.get() >= 0;
+    }
+
+    /**
+     * A document of a bulk request on its way through its pipelines.
+     */
+    private static final class PendingDocument {
+        final int slot;
+        final IndexRequest indexRequest;
+        final String pipelineId;
+        final Iterator<String> remainingPipelines;
+        final boolean hasFinalPipeline;
+        final String originalIndex;
+
+        PendingDocument(int slot, IndexRequest indexRequest, Iterator<String> pipelines, boolean hasFinalPipeline) {
+            assert pipelines.hasNext();
+            this.slot = slot;
+            this.indexRequest = indexRequest;
+            this.pipelineId = pipelines.next();
+            this.remainingPipelines = pipelines;
+            this.hasFinalPipeline = hasFinalPipeline;
+            this.originalIndex = indexRequest.indices()[0];
         }
     }
 
@@ -738,35 +853,118 @@ public class IngestService implements ClusterStateApplier, ReportingService<Inge
                 itemDroppedHandler.accept(slot);
                 handler.accept(null);
             } else {
-                Map<IngestDocument.Metadata, Object> metadataMap = ingestDocument.extractMetadata();
-
-                String newIndex = (String) metadataMap.get(IngestDocument.Metadata.INDEX);
-                //it's fine to set all metadata fields all the time, as ingest document holds their starting values
-                //before ingestion, which might also get modified during ingestion.
-                indexRequest.index(newIndex);
-                indexRequest.id((String) metadataMap.get(IngestDocument.Metadata.ID));
-                indexRequest.routing((String) metadataMap.get(IngestDocument.Metadata.ROUTING));
-                indexRequest.version(((Number) metadataMap.get(IngestDocument.Metadata.VERSION)).longValue());
-                if (metadataMap.get(IngestDocument.Metadata.VERSION_TYPE) != null) {
-                    indexRequest.versionType(VersionType.fromString((String) metadataMap.get(IngestDocument.Metadata.VERSION_TYPE)));
-                }
-                if (metadataMap.get(IngestDocument.Metadata.IF_SEQ_NO) != null) {
-                    indexRequest.setIfSeqNo(((Number) metadataMap.get(IngestDocument.Metadata.IF_SEQ_NO)).longValue());
+                updateIndexRequest(indexRequest, ingestDocument);
+                handler.accept(null);
+            }
+        });
+    }
+
+    /**
+     * Executes the pipeline on a batch of documents. The handler gets the position of each document in the batch once the
+     * pipeline is done with it, {@code onError} gets the documents that couldn't be read or written back instead. The ingest
+     * documents are only built here, right before the batch goes through the pipeline.
+     */
+    private void innerExecute(Pipeline pipeline, List<PendingDocument> documents, IntConsumer itemDroppedHandler,
+                              BiConsumer<Integer, Exception> handler, BiConsumer<Integer, Exception> onError) {
+        if (pipeline.getProcessors().isEmpty()) {
+            for (int i = 0; i < documents.size(); i++) {
+                handler.accept(i, null);
+            }
+            return;
+        }
+
+        long startTimeInNanos = System.nanoTime();
+        List<IngestDocument> ingestDocuments = new ArrayList<>(documents.size());
+        List<BiConsumer<IngestDocument, Exception>> handlers = new ArrayList<>(documents.size());
+        List<Integer> positions = new ArrayList<>(documents.size());
+        AtomicReferenceArray<Boolean> completed = new AtomicReferenceArray<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            final int position = i;
+            final PendingDocument document = documents.get(i);
+            final IndexRequest indexRequest = document.indexRequest;
+            final IngestDocument ingestDocument;
+            try {
+                String index = indexRequest.index();
+                String id = indexRequest.id();
+                String routing = indexRequest.routing();
+                Long version = indexRequest.version();
+                VersionType versionType = indexRequest.versionType();
+                Map<String, Object> sourceAsMap = indexRequest.sourceAsMap();
+                ingestDocument = new IngestDocument(index, id, routing, version, versionType, sourceAsMap);
+            } catch (Exception e) {
+                onError.accept(position, e);
+                continue;
+            }
+            // the pipeline specific stat holder may not exist and that is fine:
+            // (e.g. the pipeline may have been removed while we're ingesting a document
+            totalMetrics.preIngest();
+            ingestDocuments.add(ingestDocument);
+            positions.add(position);
+            handlers.add((result, e) -> {
+                if (completed.compareAndSet(position, null, true) == false) {
+                    return;
                 }
-                if (metadataMap.get(IngestDocument.Metadata.IF_PRIMARY_TERM) != null) {
-                    indexRequest.setIfPrimaryTerm(((Number) metadataMap.get(IngestDocument.Metadata.IF_PRIMARY_TERM)).longValue());
+                long ingestTimeInNanos = System.nanoTime() - startTimeInNanos;
+                totalMetrics.postIngest(ingestTimeInNanos);
+                if (e != null) {
+                    totalMetrics.ingestFailed();
+                    handler.accept(position, e);
+                } else if (result == null) {
+                    itemDroppedHandler.accept(document.slot);
+                    handler.accept(position, null);
+                } else {
+                    try {
+                        updateIndexRequest(indexRequest, ingestDocument);
+                    } catch (Exception ex) {
+                        onError.accept(position, ex);
+                        return;
+                    }
+                    handler.accept(position, null);
                 }
-                indexRequest.source(ingestDocument.getSourceAndMetadata(), indexRequest.getContentType());
-                if (metadataMap.get(IngestDocument.Metadata.DYNAMIC_TEMPLATES) != null) {
-                    Map<String, String> mergedDynamicTemplates = new HashMap<>(indexRequest.getDynamicTemplates());
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> map = (Map<String, String>) metadataMap.get(IngestDocument.Metadata.DYNAMIC_TEMPLATES);
-                    mergedDynamicTemplates.putAll(map);
-                    indexRequest.setDynamicTemplates(mergedDynamicTemplates);
+            });
+        }
+        try {
+            IngestDocument.executePipeline(pipeline, ingestDocuments, handlers);
+        } catch (Exception e) {
+            // a processor threw instead of handing the exception to its handler, which leaves the documents that were
+            // still on their way through the pipeline without a result
+            for (int position : positions) {
+                if (completed.compareAndSet(position, null, true)) {
+                    totalMetrics.postIngest(System.nanoTime() - startTimeInNanos);
+                    totalMetrics.ingestFailed();
+                    onError.accept(position, e);
                 }
-                handler.accept(null);
             }
-        });
+        }
+    }
+
+    private static void updateIndexRequest(IndexRequest indexRequest, IngestDocument ingestDocument) {
+        Map<IngestDocument.Metadata, Object> metadataMap = ingestDocument.extractMetadata();
+
+        String newIndex = (String) metadataMap.get(IngestDocument.Metadata.INDEX);
+        //it's fine to set all metadata fields all the time, as ingest document holds their starting values
+        //before ingestion, which might also get modified during ingestion.
+        indexRequest.index(newIndex);
+        indexRequest.id((String) metadataMap.get(IngestDocument.Metadata.ID));
+        indexRequest.routing((String) metadataMap.get(IngestDocument.Metadata.ROUTING));
+        indexRequest.version(((Number) metadataMap.get(IngestDocument.Metadata.VERSION)).longValue());
+        if (metadataMap.get(IngestDocument.Metadata.VERSION_TYPE) != null) {
+            indexRequest.versionType(VersionType.fromString((String) metadataMap.get(IngestDocument.Metadata.VERSION_TYPE)));
+        }
+        if (metadataMap.get(IngestDocument.Metadata.IF_SEQ_NO) != null) {
+            indexRequest.setIfSeqNo(((Number) metadataMap.get(IngestDocument.Metadata.IF_SEQ_NO)).longValue());
+        }
+        if (metadataMap.get(IngestDocument.Metadata.IF_PRIMARY_TERM) != null) {
+            indexRequest.setIfPrimaryTerm(((Number) metadataMap.get(IngestDocument.Metadata.IF_PRIMARY_TERM)).longValue());
+        }
+        indexRequest.source(ingestDocument.getSourceAndMetadata(), indexRequest.getContentType());
+        if (metadataMap.get(IngestDocument.Metadata.DYNAMIC_TEMPLATES) != null) {
+            Map<String, String> mergedDynamicTemplates = new HashMap<>(indexRequest.getDynamicTemplates());
+            @SuppressWarnings("unchecked")
+            Map<String, String> map = (Map<String, String>) metadataMap.get(IngestDocument.Metadata.DYNAMIC_TEMPLATES);
+            mergedDynamicTemplates.putAll(map);
+            indexRequest.setDynamicTemplates(mergedDynamicTemplates);
+        }
     }
 
     @Override
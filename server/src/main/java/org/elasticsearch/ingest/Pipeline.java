@@ -11,6 +11,7 @@ package org.elasticsearch.ingest;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.core.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -101,6 +102,34 @@ public final class Pipeline {
         });
     }
 
+    /**
+     * Modifies the data of a batch of documents to be indexed based on the processor this pipeline holds,
+     * see {@link BatchProcessor#executeBatch(List, List)}.
+     */
+    public void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers) {
+        final long startTimeInNanos = relativeTimeProvider.getAsLong();
+        List<BiConsumer<IngestDocument, Exception>> pipelineHandlers = new ArrayList<>(handlers.size());
+        for (BiConsumer<IngestDocument, Exception> handler : handlers) {
+            metrics.preIngest();
+            pipelineHandlers.add((result, e) -> {
+                long ingestTimeInNanos = relativeTimeProvider.getAsLong() - startTimeInNanos;
+                metrics.postIngest(ingestTimeInNanos);
+                if (e != null) {
+                    metrics.ingestFailed();
+                }
+                handler.accept(result, e);
+            });
+        }
+        compoundProcessor.executeBatch(ingestDocuments, pipelineHandlers);
+    }
+
+    /**
+     * Whether any processor of this pipeline wants to see a batch of documents at once, see {@link BatchProcessor}.
+     */
+    boolean hasBatchedProcessors() {
+        return compoundProcessor.hasBatchedProcessors();
+    }
+
     /**
      * The unique id of this pipeline
      */
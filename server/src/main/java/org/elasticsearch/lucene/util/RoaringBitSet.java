@@ -0,0 +1,396 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.lucene.util;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.SparseFixedBitSet;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An immutable {@link BitSet} that compresses its bits in blocks of 65536 documents, like roaring bitmaps. Blocks that have few documents
+ * set store these documents in a sorted array, blocks that have few documents unset store the documents that are unset, and other blocks
+ * store a bitmap. Empty blocks take no memory.
+ * <p>
+ * This is much smaller than a {@link FixedBitSet} for filters that match few or most of the documents, and than a
+ * {@link SparseFixedBitSet} for filters whose documents are spread evenly across the segment, such as the parent filters of nested
+ * documents, while {@link #nextSetBit} and {@link #prevSetBit} still only need a binary search or a scan of a bitmap within a block.
+ */
+public final class RoaringBitSet extends BitSet {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(RoaringBitSet.class);
+
+    private static final int BLOCK_SHIFT = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    // arrays are only used when they take at most half the memory of the bitmap of a block, since searching them is slower
+    private static final int MAX_ARRAY_LENGTH = BLOCK_SIZE / Character.SIZE / 2;
+
+    private final int length;
+    private final Container[] containers;
+    private final int cardinality;
+    private final long ramBytesUsed;
+
+    private RoaringBitSet(int length, Container[] containers, int cardinality) {
+        this.length = length;
+        this.containers = containers;
+        this.cardinality = cardinality;
+        long ramBytesUsed = BASE_RAM_BYTES_USED + RamUsageEstimator.shallowSizeOf(containers);
+        for (Container container : containers) {
+            if (container != null) {
+                ramBytesUsed += container.ramBytesUsed();
+            }
+        }
+        this.ramBytesUsed = ramBytesUsed;
+    }
+
+    /**
+     * Build a {@link RoaringBitSet} from the content of the provided {@link DocIdSetIterator}. The iterator must be unpositioned and
+     * only return documents that are less than {@code maxDoc}.
+     */
+    public static RoaringBitSet of(DocIdSetIterator it, int maxDoc) throws IOException {
+        final Container[] containers = new Container[(maxDoc + BLOCK_MASK) >>> BLOCK_SHIFT];
+        final long[] bits = new long[BLOCK_SIZE / Long.SIZE];
+        int block = -1;
+        int blockCardinality = 0;
+        int cardinality = 0;
+        for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+            assert doc < maxDoc : "doc=" + doc + ", maxDoc=" + maxDoc;
+            final int docBlock = doc >>> BLOCK_SHIFT;
+            if (docBlock != block) {
+                if (block != -1) {
+                    containers[block] = container(bits, blockCardinality, blockSize(block, maxDoc));
+                    Arrays.fill(bits, 0L);
+                }
+                block = docBlock;
+                blockCardinality = 0;
+            }
+            bits[(doc & BLOCK_MASK) >>> 6] |= 1L << doc;
+            blockCardinality++;
+            cardinality++;
+        }
+        if (block != -1) {
+            containers[block] = container(bits, blockCardinality, blockSize(block, maxDoc));
+        }
+        return new RoaringBitSet(maxDoc, containers, cardinality);
+    }
+
+    private static int blockSize(int block, int maxDoc) {
+        return Math.min(BLOCK_SIZE, maxDoc - (block << BLOCK_SHIFT));
+    }
+
+    private static Container container(long[] bits, int cardinality, int size) {
+        final int unset = size - cardinality;
+        if (Math.min(cardinality, unset) > MAX_ARRAY_LENGTH) {
+            return new BitmapContainer(Arrays.copyOf(bits, (size + Long.SIZE - 1) >>> 6));
+        }
+        final boolean inverted = unset < cardinality;
+        final char[] docs = new char[inverted ? unset : cardinality];
+        int i = 0;
+        for (int word = 0; word < (size + Long.SIZE - 1) >>> 6; word++) {
+            long bitsToAdd = inverted ? ~bits[word] : bits[word];
+            while (bitsToAdd != 0) {
+                final int doc = (word << 6) | Long.numberOfTrailingZeros(bitsToAdd);
+                if (doc >= size) {
+                    break;
+                }
+                docs[i++] = (char) doc;
+                bitsToAdd &= bitsToAdd - 1;
+            }
+        }
+        assert i == docs.length;
+        return inverted ? new InvertedArrayContainer(docs, size) : new ArrayContainer(docs);
+    }
+
+    @Override
+    public boolean get(int index) {
+        assert index >= 0 && index < length : "index=" + index + ", numBits=" + length;
+        final Container container = containers[index >>> BLOCK_SHIFT];
+        return container != null && container.get(index & BLOCK_MASK);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    public int approximateCardinality() {
+        return cardinality;
+    }
+
+    @Override
+    public int nextSetBit(int index) {
+        assert index >= 0 && index < length : "index=" + index + ", numBits=" + length;
+        int block = index >>> BLOCK_SHIFT;
+        final Container container = containers[block];
+        if (container != null) {
+            final int next = container.nextSetBit(index & BLOCK_MASK);
+            if (next != -1) {
+                return (block << BLOCK_SHIFT) | next;
+            }
+        }
+        for (block++; block < containers.length; block++) {
+            if (containers[block] != null) {
+                return (block << BLOCK_SHIFT) | containers[block].nextSetBit(0);
+            }
+        }
+        return DocIdSetIterator.NO_MORE_DOCS;
+    }
+
+    @Override
+    public int prevSetBit(int index) {
+        assert index >= 0 && index < length : "index=" + index + ", numBits=" + length;
+        int block = index >>> BLOCK_SHIFT;
+        final Container container = containers[block];
+        if (container != null) {
+            final int prev = container.prevSetBit(index & BLOCK_MASK);
+            if (prev != -1) {
+                return (block << BLOCK_SHIFT) | prev;
+            }
+        }
+        // only the last block may be partial, so previous blocks are full
+        for (block--; block >= 0; block--) {
+            if (containers[block] != null) {
+                return (block << BLOCK_SHIFT) | containers[block].prevSetBit(BLOCK_MASK);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed;
+    }
+
+    @Override
+    public void set(int i) {
+        throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public boolean getAndSet(int i) {
+        throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public void clear(int i) {
+        throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public void clear(int startIndex, int endIndex) {
+        throw new UnsupportedOperationException("not implemented");
+    }
+
+    /**
+     * The bits of a block, which are addressed by the low 16 bits of the documents.
+     */
+    private abstract static class Container {
+
+        abstract boolean get(int index);
+
+        /**
+         * @return the first document that is set at or after the given index, or -1 if there is none
+         */
+        abstract int nextSetBit(int index);
+
+        /**
+         * @return the last document that is set at or before the given index, or -1 if there is none
+         */
+        abstract int prevSetBit(int index);
+
+        abstract long ramBytesUsed();
+    }
+
+    /**
+     * A block that stores the documents that are set.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(ArrayContainer.class);
+
+        private static final int WINDOW_SHIFT = 8;
+        private static final int MIN_INDEXED_LENGTH = 64;
+
+        private final char[] docs;
+        // the offset of the first document of each window of 256 documents, which narrows down binary searches of large arrays
+        private final char[] offsets;
+
+        ArrayContainer(char[] docs) {
+            this.docs = docs;
+            if (docs.length >= MIN_INDEXED_LENGTH) {
+                offsets = new char[(BLOCK_SIZE >>> WINDOW_SHIFT) + 1];
+                int i = 0;
+                for (int window = 0; window < offsets.length; window++) {
+                    while (i < docs.length && docs[i] >>> WINDOW_SHIFT < window) {
+                        i++;
+                    }
+                    offsets[window] = (char) i;
+                }
+            } else {
+                offsets = null;
+            }
+        }
+
+        private int search(int index) {
+            if (offsets == null) {
+                return Arrays.binarySearch(docs, (char) index);
+            }
+            final int window = index >>> WINDOW_SHIFT;
+            return Arrays.binarySearch(docs, offsets[window], offsets[window + 1], (char) index);
+        }
+
+        @Override
+        boolean get(int index) {
+            return search(index) >= 0;
+        }
+
+        @Override
+        int nextSetBit(int index) {
+            int i = search(index);
+            if (i < 0) {
+                i = -1 - i;
+            }
+            return i < docs.length ? docs[i] : -1;
+        }
+
+        @Override
+        int prevSetBit(int index) {
+            final int i = search(index);
+            if (i >= 0) {
+                return index;
+            }
+            final int prev = -2 - i;
+            return prev >= 0 ? docs[prev] : -1;
+        }
+
+        @Override
+        long ramBytesUsed() {
+            return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(docs) + (offsets == null ? 0 : RamUsageEstimator.sizeOf(offsets));
+        }
+    }
+
+    /**
+     * A block that stores the documents that are not set.
+     */
+    private static final class InvertedArrayContainer extends Container {
+
+        private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(InvertedArrayContainer.class);
+
+        private final char[] unsetDocs;
+        private final int size;
+
+        InvertedArrayContainer(char[] unsetDocs, int size) {
+            this.unsetDocs = unsetDocs;
+            this.size = size;
+        }
+
+        @Override
+        boolean get(int index) {
+            return Arrays.binarySearch(unsetDocs, (char) index) < 0;
+        }
+
+        @Override
+        int nextSetBit(int index) {
+            int i = Arrays.binarySearch(unsetDocs, (char) index);
+            if (i < 0) {
+                return index;
+            }
+            int next = index;
+            while (i < unsetDocs.length && unsetDocs[i] == next) {
+                next++;
+                i++;
+            }
+            return next < size ? next : -1;
+        }
+
+        @Override
+        int prevSetBit(int index) {
+            int i = Arrays.binarySearch(unsetDocs, (char) index);
+            if (i < 0) {
+                return index;
+            }
+            int prev = index;
+            while (i >= 0 && unsetDocs[i] == prev) {
+                prev--;
+                i--;
+            }
+            return prev;
+        }
+
+        @Override
+        long ramBytesUsed() {
+            return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(unsetDocs);
+        }
+    }
+
+    /**
+     * A block that stores a bitmap of its documents.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BitmapContainer.class);
+
+        private final long[] words;
+
+        BitmapContainer(long[] words) {
+            this.words = words;
+        }
+
+        @Override
+        boolean get(int index) {
+            return (words[index >>> 6] & (1L << index)) != 0;
+        }
+
+        @Override
+        int nextSetBit(int index) {
+            int i = index >>> 6;
+            final long word = words[i] >>> index;
+            if (word != 0) {
+                return index + Long.numberOfTrailingZeros(word);
+            }
+            for (i++; i < words.length; i++) {
+                if (words[i] != 0) {
+                    return (i << 6) + Long.numberOfTrailingZeros(words[i]);
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int prevSetBit(int index) {
+            int i = index >>> 6;
+            final long word = words[i] << (63 - (index & 63));
+            if (word != 0) {
+                return index - Long.numberOfLeadingZeros(word);
+            }
+            for (i--; i >= 0; i--) {
+                if (words[i] != 0) {
+                    return (i << 6) + 63 - Long.numberOfLeadingZeros(words[i]);
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        long ramBytesUsed() {
+            return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(words);
+        }
+    }
+}
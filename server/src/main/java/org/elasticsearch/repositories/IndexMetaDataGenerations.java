@@ -15,8 +15,10 @@ import org.elasticsearch.snapshots.SnapshotId;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -93,6 +95,19 @@ public final class IndexMetaDataGenerations {
         return lookup.getOrDefault(snapshotId, Collections.emptyMap()).get(indexId);
     }
 
+    /**
+     * Returns the {@link IndexMetadata} identifiers of the indices in the given snapshot keyed by index id as returned by
+     * {@link IndexId#getId}.
+     */
+    Map<String, String> indexMetaLookupById(SnapshotId snapshotId) {
+        final Map<IndexId, String> forSnapshot = lookup.getOrDefault(snapshotId, Collections.emptyMap());
+        final Map<String, String> byId = new HashMap<>(forSnapshot.size());
+        for (Map.Entry<IndexId, String> entry : forSnapshot.entrySet()) {
+            byId.put(entry.getKey().getId(), entry.getValue());
+        }
+        return byId;
+    }
+
     /**
      * Create a new instance with the given snapshot and index metadata uuids and identifiers added.
      *
@@ -134,9 +149,12 @@ public final class IndexMetaDataGenerations {
     public IndexMetaDataGenerations withRemovedSnapshots(Collection<SnapshotId> snapshotIds) {
         final Map<SnapshotId, Map<IndexId, String>> updatedIndexMetaLookup = new HashMap<>(lookup);
         updatedIndexMetaLookup.keySet().removeAll(snapshotIds);
+        final Set<String> remainingIdentifiers = new HashSet<>();
+        for (Map<IndexId, String> identifiers : updatedIndexMetaLookup.values()) {
+            remainingIdentifiers.addAll(identifiers.values());
+        }
         final Map<String, String> updatedIndexMetaIdentifiers = new HashMap<>(identifiers);
-        updatedIndexMetaIdentifiers.keySet()
-            .removeIf(k -> updatedIndexMetaLookup.values().stream().noneMatch(identifiers -> identifiers.containsValue(k)));
+        updatedIndexMetaIdentifiers.keySet().retainAll(remainingIdentifiers);
         return new IndexMetaDataGenerations(updatedIndexMetaLookup, updatedIndexMetaIdentifiers);
     }
 
@@ -16,6 +16,7 @@ import org.elasticsearch.cluster.metadata.Metadata;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.util.CollectionUtils;
 import org.elasticsearch.common.xcontent.XContentParserUtils;
+import org.elasticsearch.core.CheckedFunction;
 import org.elasticsearch.core.Nullable;
 import org.elasticsearch.snapshots.SnapshotId;
 import org.elasticsearch.snapshots.SnapshotInfo;
@@ -30,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -76,7 +78,8 @@ public final class RepositoryData {
         Collections.emptyMap(),
         ShardGenerations.EMPTY,
         IndexMetaDataGenerations.EMPTY,
-        MISSING_UUID
+        MISSING_UUID,
+        List.of()
     );
 
     /**
@@ -124,6 +127,13 @@ public final class RepositoryData {
      */
     private final ShardGenerations shardGenerations;
 
+    /**
+     * The segments that held the entries of some of the snapshots in the repository generation this instance was read from or derived
+     * from, in the order in which they were written. Snapshots that are not part of any segment are stored in the root blob. Empty if the
+     * repository data is stored in a single blob.
+     */
+    private final List<RepositoryDataSegment> segments;
+
     public RepositoryData(
         String uuid,
         long genId,
@@ -143,7 +153,8 @@ public final class RepositoryData {
             Collections.unmodifiableMap(indexSnapshots),
             shardGenerations,
             indexMetaDataGenerations,
-            clusterUUID
+            clusterUUID,
+            List.of()
         );
     }
 
@@ -156,7 +167,8 @@ public final class RepositoryData {
         Map<IndexId, List<SnapshotId>> indexSnapshots,
         ShardGenerations shardGenerations,
         IndexMetaDataGenerations indexMetaDataGenerations,
-        String clusterUUID
+        String clusterUUID,
+        List<RepositoryDataSegment> segments
     ) {
         this.uuid = Objects.requireNonNull(uuid);
         this.genId = genId;
@@ -167,6 +179,7 @@ public final class RepositoryData {
         this.shardGenerations = shardGenerations;
         this.indexMetaDataGenerations = indexMetaDataGenerations;
         this.clusterUUID = Objects.requireNonNull(clusterUUID);
+        this.segments = List.copyOf(segments);
         assert uuid.equals(MISSING_UUID) == clusterUUID.equals(MISSING_UUID)
             : "Either repository- and cluster UUID must both be missing"
                 + " or neither of them must be missing but saw ["
@@ -193,7 +206,8 @@ public final class RepositoryData {
             indexSnapshots,
             shardGenerations,
             indexMetaDataGenerations,
-            clusterUUID
+            clusterUUID,
+            segments
         );
     }
 
@@ -212,7 +226,8 @@ public final class RepositoryData {
             indexSnapshots,
             ShardGenerations.EMPTY,
             indexMetaDataGenerations,
-            clusterUUID
+            clusterUUID,
+            segments
         );
     }
 
@@ -236,7 +251,8 @@ public final class RepositoryData {
             indexSnapshots,
             shardGenerations,
             indexMetaDataGenerations,
-            clusterUUID
+            clusterUUID,
+            segments
         );
     }
 
@@ -244,6 +260,82 @@ public final class RepositoryData {
         return shardGenerations;
     }
 
+    /**
+     * @return the segments that hold the entries of the snapshots that are not stored in the root blob, see {@link RepositoryDataSegment}
+     */
+    public List<RepositoryDataSegment> segments() {
+        return segments;
+    }
+
+    /**
+     * Creates a copy of this instance that is stored with the given segments, see {@link #segmentsForWrite}. Passing an empty list stores
+     * all snapshots in the root blob.
+     */
+    public RepositoryData withSegments(List<RepositoryDataSegment> segments) {
+        if (segments.equals(this.segments)) {
+            return this;
+        }
+        return new RepositoryData(
+            uuid,
+            genId,
+            snapshotIds,
+            snapshotsDetails,
+            indices,
+            indexSnapshots,
+            shardGenerations,
+            indexMetaDataGenerations,
+            clusterUUID,
+            segments
+        );
+    }
+
+    /**
+     * Computes the segments to store this instance with. Segments whose snapshots are unchanged are reused as they are, while segments
+     * that lost some of their snapshots are rewritten and merged with a neighbouring segment if both together hold no more than
+     * {@code segmentSize} snapshots. Once at least {@code segmentSize} snapshots are not part of any segment they are sealed into a new
+     * segment. Segments only ever contain snapshots that were added to the repository after those of the preceding segments, so that
+     * concatenating the per-index snapshot lists of all segments and of the root blob restores the order of {@link #getSnapshots}.
+     *
+     * @param segmentSize number of snapshots to seal into a segment
+     * @return segments to pass to {@link #withSegments} before writing this instance
+     */
+    public List<RepositoryDataSegment> segmentsForWrite(int segmentSize) {
+        assert segmentSize > 0 : "invalid segment size [" + segmentSize + "]";
+        final Set<RepositoryDataSegment> existing = Collections.newSetFromMap(new IdentityHashMap<>());
+        existing.addAll(segments);
+        final List<RepositoryDataSegment> result = new ArrayList<>();
+        final Set<String> inSegments = new HashSet<>();
+        for (RepositoryDataSegment segment : segments) {
+            RepositoryDataSegment current = segment;
+            if (segment.isCurrent(this) == false) {
+                final Set<String> remaining = new HashSet<>(segment.snapshotIds().keySet());
+                remaining.retainAll(snapshotIds.keySet());
+                if (remaining.isEmpty()) {
+                    continue;
+                }
+                current = RepositoryDataSegment.build(this, remaining);
+            }
+            if (result.isEmpty() == false) {
+                final RepositoryDataSegment previous = result.get(result.size() - 1);
+                final boolean rewritten = existing.contains(previous) == false || existing.contains(current) == false;
+                if (rewritten && previous.snapshotIds().size() + current.snapshotIds().size() <= segmentSize) {
+                    final Set<String> merged = new HashSet<>(previous.snapshotIds().keySet());
+                    merged.addAll(current.snapshotIds().keySet());
+                    current = RepositoryDataSegment.build(this, merged);
+                    result.remove(result.size() - 1);
+                }
+            }
+            result.add(current);
+            inSegments.addAll(current.snapshotIds().keySet());
+        }
+        if (snapshotIds.size() - inSegments.size() >= segmentSize) {
+            final Set<String> tail = new HashSet<>(snapshotIds.keySet());
+            tail.removeAll(inSegments);
+            result.add(RepositoryDataSegment.build(this, tail));
+        }
+        return result;
+    }
+
     /**
      * @return The UUID of this repository, or {@link RepositoryData#MISSING_UUID} if this repository has no UUID because it still
      * supports access from versions earlier than {@link SnapshotsService#UUIDS_IN_REPO_DATA_VERSION}.
@@ -274,6 +366,13 @@ public final class RepositoryData {
         return snapshotIds.values();
     }
 
+    /**
+     * @return whether the repository contains the given snapshot
+     */
+    public boolean hasSnapshot(SnapshotId snapshotId) {
+        return snapshotIds.containsKey(snapshotId.getUUID());
+    }
+
     /**
      * @return whether some of the {@link SnapshotDetails} of the given snapshot are missing, due to BwC, so that they must be loaded from
      * the {@link SnapshotInfo} blob instead.
@@ -326,17 +425,16 @@ public final class RepositoryData {
      * @return List of indices that are changed but not removed
      */
     public List<IndexId> indicesToUpdateAfterRemovingSnapshot(Collection<SnapshotId> snapshotIds) {
+        final Set<SnapshotId> toRemove = Set.copyOf(snapshotIds);
         return indexSnapshots.entrySet().stream().filter(entry -> {
-            final Collection<SnapshotId> existingIds = entry.getValue();
-            if (snapshotIds.containsAll(existingIds)) {
-                return existingIds.size() > snapshotIds.size();
-            }
-            for (SnapshotId snapshotId : snapshotIds) {
-                if (entry.getValue().contains(snapshotId)) {
-                    return true;
+            final List<SnapshotId> existingIds = entry.getValue();
+            int removed = 0;
+            for (SnapshotId snapshotId : existingIds) {
+                if (toRemove.contains(snapshotId)) {
+                    removed++;
                 }
             }
-            return false;
+            return removed > 0 && removed < existingIds.size();
         }).map(Map.Entry::getKey).collect(Collectors.toList());
     }
 
@@ -350,15 +448,16 @@ public final class RepositoryData {
      */
     public Map<IndexId, Collection<String>> indexMetaDataToRemoveAfterRemovingSnapshots(Collection<SnapshotId> snapshotIds) {
         Collection<IndexId> indicesForSnapshot = indicesToUpdateAfterRemovingSnapshot(snapshotIds);
+        final Set<SnapshotId> removedSnapshots = Set.copyOf(snapshotIds);
         final Set<String> allRemainingIdentifiers = indexMetaDataGenerations.lookup.entrySet()
             .stream()
-            .filter(e -> snapshotIds.contains(e.getKey()) == false)
+            .filter(e -> removedSnapshots.contains(e.getKey()) == false)
             .flatMap(e -> e.getValue().values().stream())
             .map(indexMetaDataGenerations::getIndexMetaBlobId)
             .collect(Collectors.toSet());
         final Map<IndexId, Collection<String>> toRemove = new HashMap<>();
         for (IndexId indexId : indicesForSnapshot) {
-            for (SnapshotId snapshotId : snapshotIds) {
+            for (SnapshotId snapshotId : removedSnapshots) {
                 final String identifier = indexMetaDataGenerations.indexMetaBlobId(snapshotId, indexId);
                 if (allRemainingIdentifiers.contains(identifier) == false) {
                     toRemove.computeIfAbsent(indexId, k -> new HashSet<>()).add(identifier);
@@ -431,7 +530,7 @@ public final class RepositoryData {
             ShardGenerations.builder().putAll(this.shardGenerations).putAll(shardGenerations).build(),
             newIndexMetaGenerations,
             clusterUUID
-        );
+        ).withSegments(segments);
     }
 
     /**
@@ -453,7 +552,8 @@ public final class RepositoryData {
             indexSnapshots,
             shardGenerations,
             indexMetaDataGenerations,
-            clusterUUID
+            clusterUUID,
+            segments
         );
     }
 
@@ -471,7 +571,8 @@ public final class RepositoryData {
             indexSnapshots,
             shardGenerations,
             indexMetaDataGenerations,
-            MISSING_UUID
+            MISSING_UUID,
+            segments
         );
     }
 
@@ -486,7 +587,8 @@ public final class RepositoryData {
             indexSnapshots,
             shardGenerations,
             indexMetaDataGenerations,
-            clusterUUID
+            clusterUUID,
+            segments
         );
     }
 
@@ -499,9 +601,10 @@ public final class RepositoryData {
      *                                changed shard indexed by its shardId
      */
     public RepositoryData removeSnapshots(final Collection<SnapshotId> snapshots, final ShardGenerations updatedShardGenerations) {
+        final Set<SnapshotId> toRemove = Set.copyOf(snapshots);
         Map<String, SnapshotId> newSnapshotIds = snapshotIds.values()
             .stream()
-            .filter(Predicate.not(snapshots::contains))
+            .filter(Predicate.not(toRemove::contains))
             .collect(Collectors.toMap(SnapshotId::getUUID, Function.identity()));
         if (newSnapshotIds.size() != snapshotIds.size() - snapshots.size()) {
             final Collection<SnapshotId> notFound = new HashSet<>(snapshots);
@@ -517,7 +620,7 @@ public final class RepositoryData {
             List<SnapshotId> snapshotIds = this.indexSnapshots.get(indexId);
             assert snapshotIds != null;
             List<SnapshotId> remaining = new ArrayList<>(snapshotIds);
-            if (remaining.removeAll(snapshots)) {
+            if (remaining.removeIf(toRemove::contains)) {
                 remaining = Collections.unmodifiableList(remaining);
             } else {
                 remaining = snapshotIds;
@@ -538,9 +641,9 @@ public final class RepositoryData {
                 .putAll(updatedShardGenerations)
                 .retainIndicesAndPruneDeletes(indexSnapshots.keySet())
                 .build(),
-            indexMetaDataGenerations.withRemovedSnapshots(snapshots),
+            indexMetaDataGenerations.withRemovedSnapshots(toRemove),
             clusterUUID
-        );
+        ).withSegments(segments);
     }
 
     /**
@@ -639,6 +742,7 @@ public final class RepositoryData {
     private static final String MIN_VERSION = "min_version";
     private static final String START_TIME_MILLIS = "start_time_millis";
     private static final String END_TIME_MILLIS = "end_time_millis";
+    private static final String SEGMENTS = "segments";
 
     /**
      * Writes the snapshots metadata and the related indices metadata to x-content.
@@ -662,12 +766,19 @@ public final class RepositoryData {
         assert Boolean.compare(shouldWriteUUIDS, shouldWriteIndexGens) <= 0;
         assert Boolean.compare(shouldWriteIndexGens, shouldWriteShardGens) <= 0;
 
+        final boolean shouldWriteSegments = segments.isEmpty() == false;
+        assert shouldWriteSegments == false || SnapshotsService.useSegmentedRepositoryData(repoMetaVersion)
+            : "can't write segments at version [" + repoMetaVersion + "]";
+        assert segments.stream().allMatch(segment -> segment.isCurrent(this)) : "stale segments in " + segments;
+
         builder.startObject();
 
         if (shouldWriteShardGens) {
             // Add min version field to make it impossible for older ES versions to deserialize this object
             final Version minVersion;
-            if (shouldWriteUUIDS) {
+            if (shouldWriteSegments) {
+                minVersion = SnapshotsService.SEGMENTED_REPO_DATA_VERSION;
+            } else if (shouldWriteUUIDS) {
                 minVersion = SnapshotsService.UUIDS_IN_REPO_DATA_VERSION;
             } else if (shouldWriteIndexGens) {
                 minVersion = SnapshotsService.INDEX_GEN_IN_REPO_DATA_VERSION;
@@ -693,40 +804,30 @@ public final class RepositoryData {
             assert clusterUUID.equals(MISSING_UUID) : "lost clusterUUID " + clusterUUID;
         }
 
+        // write the segments list, the snapshots in these segments are not written to the root blob
+        final Set<String> segmentedSnapshots = new HashSet<>();
+        if (shouldWriteSegments) {
+            builder.startArray(SEGMENTS);
+            for (RepositoryDataSegment segment : segments) {
+                builder.value(segment.uuid());
+                segmentedSnapshots.addAll(segment.snapshotIds().keySet());
+            }
+            builder.endArray();
+        }
+
         // write the snapshots list
 
         builder.startArray(SNAPSHOTS);
         for (final SnapshotId snapshot : getSnapshotIds()) {
-            builder.startObject();
-            builder.field(NAME, snapshot.getName());
-            final String snapshotUUID = snapshot.getUUID();
-            builder.field(UUID, snapshotUUID);
-            final SnapshotDetails snapshotDetails = snapshotsDetails.getOrDefault(snapshotUUID, SnapshotDetails.EMPTY);
-            final SnapshotState state = snapshotDetails.getSnapshotState();
-            if (state != null) {
-                builder.field(STATE, state.value());
+            if (segmentedSnapshots.contains(snapshot.getUUID())) {
+                continue;
             }
-            if (shouldWriteIndexGens) {
-                builder.startObject(INDEX_METADATA_LOOKUP);
-                for (Map.Entry<IndexId, String> entry : indexMetaDataGenerations.lookup.getOrDefault(snapshot, Collections.emptyMap())
-                    .entrySet()) {
-                    builder.field(entry.getKey().getId(), entry.getValue());
-                }
-                builder.endObject();
-            }
-            final Version version = snapshotDetails.getVersion();
-            if (version != null) {
-                builder.field(VERSION, version.toString());
-            }
-
-            if (snapshotDetails.getStartTimeMillis() != -1) {
-                builder.field(START_TIME_MILLIS, snapshotDetails.getStartTimeMillis());
-            }
-            if (snapshotDetails.getEndTimeMillis() != -1) {
-                builder.field(END_TIME_MILLIS, snapshotDetails.getEndTimeMillis());
-            }
-
-            builder.endObject();
+            snapshotToXContent(
+                builder,
+                snapshot,
+                snapshotsDetails.getOrDefault(snapshot.getUUID(), SnapshotDetails.EMPTY),
+                shouldWriteIndexGens ? indexMetaDataGenerations.indexMetaLookupById(snapshot) : null
+            );
         }
         builder.endArray();
 
@@ -739,7 +840,9 @@ public final class RepositoryData {
             List<SnapshotId> snapshotIds = indexSnapshots.get(indexId);
             assert snapshotIds != null;
             for (final SnapshotId snapshotId : snapshotIds) {
-                builder.value(snapshotId.getUUID());
+                if (segmentedSnapshots.contains(snapshotId.getUUID()) == false) {
+                    builder.value(snapshotId.getUUID());
+                }
             }
             builder.endArray();
             if (shouldWriteShardGens) {
@@ -758,6 +861,42 @@ public final class RepositoryData {
         return builder;
     }
 
+    /**
+     * Writes the entry of a single snapshot to the snapshots list of either the root blob or a {@link RepositoryDataSegment}.
+     *
+     * @param indexMetaLookup map of index id (as returned by {@link IndexId#getId}) to index metadata identifier or {@code null} if index
+     *                        metadata generations are not written
+     */
+    static void snapshotToXContent(
+        XContentBuilder builder,
+        SnapshotId snapshot,
+        SnapshotDetails snapshotDetails,
+        @Nullable Map<String, String> indexMetaLookup
+    ) throws IOException {
+        builder.startObject();
+        builder.field(NAME, snapshot.getName());
+        builder.field(UUID, snapshot.getUUID());
+        final SnapshotState state = snapshotDetails.getSnapshotState();
+        if (state != null) {
+            builder.field(STATE, state.value());
+        }
+        if (indexMetaLookup != null) {
+            builder.field(INDEX_METADATA_LOOKUP, indexMetaLookup);
+        }
+        final Version version = snapshotDetails.getVersion();
+        if (version != null) {
+            builder.field(VERSION, version.toString());
+        }
+
+        if (snapshotDetails.getStartTimeMillis() != -1) {
+            builder.field(START_TIME_MILLIS, snapshotDetails.getStartTimeMillis());
+        }
+        if (snapshotDetails.getEndTimeMillis() != -1) {
+            builder.field(END_TIME_MILLIS, snapshotDetails.getEndTimeMillis());
+        }
+        builder.endObject();
+    }
+
     public IndexMetaDataGenerations indexMetaDataGenerations() {
         return indexMetaDataGenerations;
     }
@@ -770,6 +909,25 @@ public final class RepositoryData {
      *                           from cached bytes that we trust to not contain broken generations.
      */
     public static RepositoryData snapshotsFromXContent(XContentParser parser, long genId, boolean fixBrokenShardGens) throws IOException {
+        return snapshotsFromXContent(parser, genId, fixBrokenShardGens, segmentUUID -> {
+            throw new IllegalStateException("repository data references segment [" + segmentUUID + "] but segments can't be loaded");
+        });
+    }
+
+    /**
+     * Reads an instance of {@link RepositoryData} from x-content, loading the snapshots and indices metadata as well as the
+     * {@link RepositoryDataSegment}s it references.
+     *
+     * @param fixBrokenShardGens set to {@code true} to filter out broken shard generations read from the {@code parser} via
+     *                           {@link ShardGenerations#fixShardGeneration}
+     * @param segmentLoader      loads a segment by its uuid
+     */
+    public static RepositoryData snapshotsFromXContent(
+        XContentParser parser,
+        long genId,
+        boolean fixBrokenShardGens,
+        CheckedFunction<String, RepositoryDataSegment, IOException> segmentLoader
+    ) throws IOException {
         XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.nextToken(), parser);
 
         final Map<String, SnapshotId> snapshots = new HashMap<>();
@@ -778,12 +936,19 @@ public final class RepositoryData {
         final Map<String, IndexId> indexLookup = new HashMap<>();
         final ShardGenerations.Builder shardGenerations = ShardGenerations.builder();
         final Map<SnapshotId, Map<String, String>> indexMetaLookup = new HashMap<>();
+        final List<RepositoryDataSegment> segments = new ArrayList<>();
         Map<String, String> indexMetaIdentifiers = null;
         String uuid = MISSING_UUID;
         String clusterUUID = MISSING_UUID;
         while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
             final String field = parser.currentName();
             switch (field) {
+                case SEGMENTS:
+                    XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_ARRAY, parser.nextToken(), parser);
+                    while (parser.nextToken() != XContentParser.Token.END_ARRAY) {
+                        segments.add(segmentLoader.apply(parser.text()));
+                    }
+                    break;
                 case SNAPSHOTS:
                     parseSnapshots(parser, snapshots, snapshotsDetails, indexMetaLookup);
                     break;
@@ -822,6 +987,10 @@ public final class RepositoryData {
         // ensure we drained the stream completely
         XContentParserUtils.ensureExpectedToken(null, parser.nextToken(), parser);
 
+        if (segments.isEmpty() == false) {
+            mergeSegments(segments, snapshots, snapshotsDetails, indexSnapshots, indexLookup, indexMetaLookup);
+        }
+
         return new RepositoryData(
             uuid,
             genId,
@@ -831,7 +1000,53 @@ public final class RepositoryData {
             shardGenerations.build(),
             buildIndexMetaGenerations(indexMetaLookup, indexLookup, indexMetaIdentifiers),
             clusterUUID
-        );
+        ).withSegments(segments);
+    }
+
+    /**
+     * Adds the snapshots of the given segments to the snapshots parsed from the root blob. The per-index snapshot lists of the segments
+     * precede those of the root blob and each other in the order of the segments.
+     */
+    private static void mergeSegments(
+        List<RepositoryDataSegment> segments,
+        Map<String, SnapshotId> snapshots,
+        Map<String, SnapshotDetails> snapshotsDetails,
+        Map<IndexId, List<SnapshotId>> indexSnapshots,
+        Map<String, IndexId> indexLookup,
+        Map<SnapshotId, Map<String, String>> indexMetaLookup
+    ) {
+        final Map<IndexId, List<SnapshotId>> segmentedIndexSnapshots = new HashMap<>();
+        for (RepositoryDataSegment segment : segments) {
+            for (SnapshotId snapshotId : segment.snapshotIds().values()) {
+                if (snapshots.putIfAbsent(snapshotId.getUUID(), snapshotId) != null) {
+                    throw new ElasticsearchParseException(
+                        "Detected a corrupted repository, snapshot " + snapshotId + " is contained in more than one segment"
+                    );
+                }
+            }
+            snapshotsDetails.putAll(segment.snapshotsDetails());
+            indexMetaLookup.putAll(segment.indexMetaLookup());
+            for (Map.Entry<String, List<SnapshotId>> entry : segment.indexSnapshots().entrySet()) {
+                final IndexId indexId = indexLookup.get(entry.getKey());
+                if (indexId == null) {
+                    throw new ElasticsearchParseException(
+                        "Detected a corrupted repository, segment ["
+                            + segment.uuid()
+                            + "] references an unknown index ["
+                            + entry.getKey()
+                            + "]"
+                    );
+                }
+                segmentedIndexSnapshots.computeIfAbsent(indexId, k -> new ArrayList<>()).addAll(entry.getValue());
+            }
+        }
+        for (Map.Entry<IndexId, List<SnapshotId>> entry : indexSnapshots.entrySet()) {
+            final List<SnapshotId> snapshotIds = segmentedIndexSnapshots.get(entry.getKey());
+            if (snapshotIds != null) {
+                snapshotIds.addAll(entry.getValue());
+                entry.setValue(Collections.unmodifiableList(snapshotIds));
+            }
+        }
     }
 
     /**
@@ -875,7 +1090,7 @@ public final class RepositoryData {
      * @param indexMetaLookup  map of {@link SnapshotId} to map of index id (as returned by {@link IndexId#getId}) that defines the index
      *                         metadata generations for the snapshot
      */
-    private static void parseSnapshots(
+    static void parseSnapshots(
         XContentParser parser,
         Map<String, SnapshotId> snapshots,
         Map<String, SnapshotDetails> snapshotsDetails,
@@ -0,0 +1,237 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.repositories;
+
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.xcontent.XContentParserUtils;
+import org.elasticsearch.repositories.RepositoryData.SnapshotDetails;
+import org.elasticsearch.snapshots.SnapshotId;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable group of snapshots whose entries in {@link RepositoryData} are stored in a dedicated blob instead of the root
+ * {@code index-N} blob. A segment holds the details and index metadata lookup of each of its snapshots as well as, for every index, the
+ * snapshots of the segment that contain it, in the order in which they were added to the repository.
+ * <p>
+ * Since a segment never changes once it has been written, writing a new repository generation only has to write the segments that did
+ * not exist in the previous generation, and loading a new generation only has to read the segments that were not loaded before.
+ */
+public final class RepositoryDataSegment implements ToXContentFragment {
+
+    private static final String UUID = "uuid";
+    private static final String SNAPSHOTS = "snapshots";
+    private static final String INDICES = "indices";
+
+    private final String uuid;
+
+    /**
+     * The ids of the snapshots in this segment by their uuid.
+     */
+    private final Map<String, SnapshotId> snapshotIds;
+
+    /**
+     * The details of the snapshots in this segment by their uuid.
+     */
+    private final Map<String, SnapshotDetails> snapshotsDetails;
+
+    /**
+     * Map of snapshot to a map of index id (as returned by {@link IndexId#getId}) to index metadata identifier.
+     */
+    private final Map<SnapshotId, Map<String, String>> indexMetaLookup;
+
+    /**
+     * Map of index id (as returned by {@link IndexId#getId}) to the snapshots of this segment that contain the index.
+     */
+    private final Map<String, List<SnapshotId>> indexSnapshots;
+
+    RepositoryDataSegment(
+        String uuid,
+        Map<String, SnapshotId> snapshotIds,
+        Map<String, SnapshotDetails> snapshotsDetails,
+        Map<SnapshotId, Map<String, String>> indexMetaLookup,
+        Map<String, List<SnapshotId>> indexSnapshots
+    ) {
+        assert snapshotIds.isEmpty() == false : "empty segment [" + uuid + "]";
+        this.uuid = uuid;
+        this.snapshotIds = Collections.unmodifiableMap(snapshotIds);
+        this.snapshotsDetails = Collections.unmodifiableMap(snapshotsDetails);
+        this.indexMetaLookup = Collections.unmodifiableMap(indexMetaLookup);
+        this.indexSnapshots = Collections.unmodifiableMap(indexSnapshots);
+    }
+
+    /**
+     * Builds a new segment with a random uuid that holds the given snapshots of the given repository data.
+     */
+    static RepositoryDataSegment build(RepositoryData repositoryData, Set<String> snapshotUUIDs) {
+        final Map<String, SnapshotId> snapshotIds = new HashMap<>(snapshotUUIDs.size());
+        final Map<String, SnapshotDetails> snapshotsDetails = new HashMap<>(snapshotUUIDs.size());
+        final Map<SnapshotId, Map<String, String>> indexMetaLookup = new HashMap<>(snapshotUUIDs.size());
+        for (SnapshotId snapshotId : repositoryData.getSnapshotIds()) {
+            if (snapshotUUIDs.contains(snapshotId.getUUID()) == false) {
+                continue;
+            }
+            snapshotIds.put(snapshotId.getUUID(), snapshotId);
+            final SnapshotDetails details = repositoryData.getSnapshotDetails(snapshotId);
+            if (details != null) {
+                snapshotsDetails.put(snapshotId.getUUID(), details);
+            }
+            final Map<String, String> lookup = repositoryData.indexMetaDataGenerations().indexMetaLookupById(snapshotId);
+            if (lookup.isEmpty() == false) {
+                indexMetaLookup.put(snapshotId, lookup);
+            }
+        }
+        assert snapshotIds.size() == snapshotUUIDs.size() : "missing snapshots " + snapshotUUIDs + " in " + snapshotIds;
+        final Map<String, List<SnapshotId>> indexSnapshots = new HashMap<>();
+        for (IndexId indexId : repositoryData.getIndices().values()) {
+            final List<SnapshotId> inSegment = new ArrayList<>();
+            for (SnapshotId snapshotId : repositoryData.getSnapshots(indexId)) {
+                if (snapshotUUIDs.contains(snapshotId.getUUID())) {
+                    inSegment.add(snapshotId);
+                }
+            }
+            if (inSegment.isEmpty() == false) {
+                indexSnapshots.put(indexId.getId(), Collections.unmodifiableList(inSegment));
+            }
+        }
+        return new RepositoryDataSegment(UUIDs.randomBase64UUID(), snapshotIds, snapshotsDetails, indexMetaLookup, indexSnapshots);
+    }
+
+    public String uuid() {
+        return uuid;
+    }
+
+    Map<String, SnapshotId> snapshotIds() {
+        return snapshotIds;
+    }
+
+    Map<String, SnapshotDetails> snapshotsDetails() {
+        return snapshotsDetails;
+    }
+
+    Map<SnapshotId, Map<String, String>> indexMetaLookup() {
+        return indexMetaLookup;
+    }
+
+    Map<String, List<SnapshotId>> indexSnapshots() {
+        return indexSnapshots;
+    }
+
+    /**
+     * Checks whether this segment still describes the given snapshots of the given repository data, i.e. whether none of them was removed
+     * and their details did not change.
+     */
+    boolean isCurrent(RepositoryData repositoryData) {
+        for (SnapshotId snapshotId : snapshotIds.values()) {
+            if (repositoryData.hasSnapshot(snapshotId) == false) {
+                return false;
+            }
+            if (Objects.equals(snapshotsDetails.get(snapshotId.getUUID()), repositoryData.getSnapshotDetails(snapshotId)) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field(UUID, uuid);
+        builder.startArray(SNAPSHOTS);
+        for (SnapshotId snapshotId : snapshotIds.values()) {
+            RepositoryData.snapshotToXContent(
+                builder,
+                snapshotId,
+                snapshotsDetails.getOrDefault(snapshotId.getUUID(), SnapshotDetails.EMPTY),
+                indexMetaLookup.getOrDefault(snapshotId, Collections.emptyMap())
+            );
+        }
+        builder.endArray();
+        builder.startObject(INDICES);
+        for (Map.Entry<String, List<SnapshotId>> entry : indexSnapshots.entrySet()) {
+            builder.startArray(entry.getKey());
+            for (SnapshotId snapshotId : entry.getValue()) {
+                builder.value(snapshotId.getUUID());
+            }
+            builder.endArray();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    public static RepositoryDataSegment fromXContent(XContentParser parser) throws IOException {
+        XContentParser.Token token = parser.currentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser);
+        String uuid = null;
+        final Map<String, SnapshotId> snapshotIds = new HashMap<>();
+        final Map<String, SnapshotDetails> snapshotsDetails = new HashMap<>();
+        final Map<SnapshotId, Map<String, String>> indexMetaLookup = new HashMap<>();
+        final Map<String, List<SnapshotId>> indexSnapshots = new HashMap<>();
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            final String field = parser.currentName();
+            switch (field) {
+                case UUID:
+                    XContentParserUtils.ensureExpectedToken(XContentParser.Token.VALUE_STRING, parser.nextToken(), parser);
+                    uuid = parser.text();
+                    break;
+                case SNAPSHOTS:
+                    RepositoryData.parseSnapshots(parser, snapshotIds, snapshotsDetails, indexMetaLookup);
+                    break;
+                case INDICES:
+                    XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.nextToken(), parser);
+                    while (parser.nextToken() != XContentParser.Token.END_OBJECT) {
+                        final String indexId = parser.currentName();
+                        XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_ARRAY, parser.nextToken(), parser);
+                        final List<SnapshotId> snapshots = new ArrayList<>();
+                        while (parser.nextToken() != XContentParser.Token.END_ARRAY) {
+                            final SnapshotId snapshotId = snapshotIds.get(parser.text());
+                            if (snapshotId == null) {
+                                throw new ElasticsearchParseException(
+                                    "Detected a corrupted repository, index ["
+                                        + indexId
+                                        + "] references an unknown snapshot uuid ["
+                                        + parser.text()
+                                        + "] in repository data segment ["
+                                        + uuid
+                                        + "]"
+                                );
+                            }
+                            snapshots.add(snapshotId);
+                        }
+                        indexSnapshots.put(indexId, Collections.unmodifiableList(snapshots));
+                    }
+                    break;
+                default:
+                    XContentParserUtils.throwUnknownField(field, parser.getTokenLocation());
+            }
+        }
+        if (uuid == null || snapshotIds.isEmpty()) {
+            throw new ElasticsearchParseException("Detected a corrupted repository, incomplete repository data segment [" + uuid + "]");
+        }
+        return new RepositoryDataSegment(uuid, snapshotIds, snapshotsDetails, indexMetaLookup, indexSnapshots);
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryDataSegment{uuid=" + uuid + ", snapshots=" + snapshotIds.values() + "}";
+    }
+}
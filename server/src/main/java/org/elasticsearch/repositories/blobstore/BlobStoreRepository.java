@@ -58,6 +58,7 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.compress.NotXContentException;
 import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.store.InputStreamIndexInput;
 import org.elasticsearch.common.metrics.CounterMetric;
@@ -96,6 +97,7 @@ import org.elasticsearch.repositories.Repository;
 import org.elasticsearch.repositories.RepositoryCleanupResult;
 import org.elasticsearch.repositories.RepositoryData;
 import org.elasticsearch.repositories.RepositoryData.SnapshotDetails;
+import org.elasticsearch.repositories.RepositoryDataSegment;
 import org.elasticsearch.repositories.RepositoryException;
 import org.elasticsearch.repositories.RepositoryOperation;
 import org.elasticsearch.repositories.RepositoryShardId;
@@ -119,6 +121,7 @@ import org.elasticsearch.xcontent.XContentFactory;
 import org.elasticsearch.xcontent.XContentParser;
 import org.elasticsearch.xcontent.XContentType;
 
+import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -128,6 +131,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -143,6 +147,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
@@ -180,6 +185,10 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
     public static final String SNAPSHOT_NAME_FORMAT = SNAPSHOT_PREFIX + "%s.dat";
 
+    public static final String REPOSITORY_DATA_SEGMENT_PREFIX = "segment-";
+
+    public static final String REPOSITORY_DATA_SEGMENT_NAME_FORMAT = REPOSITORY_DATA_SEGMENT_PREFIX + "%s.dat";
+
     private static final String SNAPSHOT_INDEX_PREFIX = "index-";
 
     private static final String SNAPSHOT_INDEX_NAME_FORMAT = SNAPSHOT_INDEX_PREFIX + "%s";
@@ -252,10 +261,51 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
      */
     public static final Setting<Boolean> USE_FOR_PEER_RECOVERY_SETTING = Setting.boolSetting("use_for_peer_recovery", false);
 
+    /**
+     * Setting that enables splitting newly snapshotted files into content-defined chunks which are stored under the digest of their
+     * contents, so that a chunk shared by several files of a shard, or by several versions of a file, is only uploaded once. Files that
+     * were already written to the repository are not affected, and turning the setting off again leaves existing chunks readable.
+     */
+    public static final Setting<Boolean> CONTENT_DEFINED_CHUNKING_SETTING = Setting.boolSetting(
+        "content_defined_chunking",
+        false,
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * The targeted average size of a chunk when {@link #CONTENT_DEFINED_CHUNKING_SETTING} is enabled, must be a power of two. Chunks are
+     * at most eight times this size, or the repository's {@link #chunkSize()} if that is smaller. A chunk is buffered in memory while it
+     * is read from the store until its digest tells whether it needs uploading, which bounds this setting.
+     */
+    public static final Setting<ByteSizeValue> CONTENT_DEFINED_CHUNK_SIZE_SETTING = Setting.byteSizeSetting(
+        "content_defined_chunk_size",
+        new ByteSizeValue(1, ByteSizeUnit.MB),
+        new ByteSizeValue(4, ByteSizeUnit.KB),
+        new ByteSizeValue(8, ByteSizeUnit.MB),
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * Setting that defines how many snapshots are grouped into each {@link RepositoryDataSegment}. Snapshots whose entries are stored in
+     * segments are not rewritten with every new repository generation, which keeps the size of the root {@code index-N} blob bounded for
+     * repositories with many snapshots. Defaults to {@code 0} which stores all snapshots in the root blob, as required to read the
+     * repository with versions older than {@link SnapshotsService#SEGMENTED_REPO_DATA_VERSION}.
+     */
+    public static final Setting<Integer> REPOSITORY_DATA_SEGMENT_SIZE_SETTING = Setting.intSetting(
+        "repository_data_segment_size",
+        0,
+        0,
+        Setting.Property.NodeScope
+    );
+
     protected final boolean supportURLRepo;
 
     private final boolean compress;
 
+    private final int repositoryDataSegmentSize;
+
+    private final boolean contentDefinedChunking;
+
     private final boolean cacheRepositoryData;
 
     private volatile RateLimiter snapshotRateLimiter;
@@ -278,6 +328,12 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         (repoName, parser) -> IndexMetadata.fromXContent(parser)
     );
 
+    public static final ChecksumBlobStoreFormat<RepositoryDataSegment> REPOSITORY_DATA_SEGMENT_FORMAT = new ChecksumBlobStoreFormat<>(
+        "repository-data-segment",
+        REPOSITORY_DATA_SEGMENT_NAME_FORMAT,
+        (repoName, parser) -> RepositoryDataSegment.fromXContent(parser)
+    );
+
     private static final String SNAPSHOT_CODEC = "snapshot";
 
     public static final ChecksumBlobStoreFormat<SnapshotInfo> SNAPSHOT_FORMAT = new ChecksumBlobStoreFormat<>(
@@ -392,6 +448,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         this.bigArrays = bigArrays;
         this.recoverySettings = recoverySettings;
         this.compress = COMPRESS_SETTING.get(metadata.settings());
+        this.contentDefinedChunking = CONTENT_DEFINED_CHUNKING_SETTING.get(metadata.settings());
+        this.repositoryDataSegmentSize = REPOSITORY_DATA_SEGMENT_SIZE_SETTING.get(metadata.settings());
         this.supportURLRepo = SUPPORT_URL_REPO.get(metadata.settings());
         snapshotRateLimiter = getRateLimiter(metadata.settings(), MAX_SNAPSHOT_BYTES_PER_SEC);
         restoreRateLimiter = getRateLimiter(metadata.settings(), MAX_RESTORE_BYTES_PER_SEC);
@@ -411,6 +469,10 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         if (chunkSize != null && chunkSize.getBytes() <= 0) {
             throw new IllegalArgumentException("the chunk size cannot be negative: [" + chunkSize + "]");
         }
+        if (contentDefinedChunking) {
+            // validates the chunk sizes
+            contentDefinedChunker();
+        }
     }
 
     @Override
@@ -780,6 +842,16 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         return null;
     }
 
+    private ContentDefinedChunker contentDefinedChunker() {
+        final int averageChunkSize = Math.toIntExact(CONTENT_DEFINED_CHUNK_SIZE_SETTING.get(metadata.settings()).getBytes());
+        long maxChunkSize = 8L * averageChunkSize;
+        final ByteSizeValue chunkSize = chunkSize();
+        if (chunkSize != null && chunkSize.getBytes() < maxChunkSize) {
+            maxChunkSize = chunkSize.getBytes();
+        }
+        return new ContentDefinedChunker(averageChunkSize, Math.toIntExact(maxChunkSize));
+    }
+
     @Override
     public RepositoryMetadata getMetadata() {
         return metadata;
@@ -1245,6 +1317,10 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
     // Finds all blobs directly under the repository root path that are not referenced by the current RepositoryData
     private static List<String> staleRootBlobs(RepositoryData repositoryData, Set<String> rootBlobNames) {
         final Set<String> allSnapshotIds = repositoryData.getSnapshotIds().stream().map(SnapshotId::getUUID).collect(Collectors.toSet());
+        final Set<String> allSegmentIds = repositoryData.segments()
+            .stream()
+            .map(RepositoryDataSegment::uuid)
+            .collect(Collectors.toSet());
         return rootBlobNames.stream().filter(blob -> {
             if (FsBlobContainer.isTempBlobName(blob)) {
                 return true;
@@ -1257,6 +1333,10 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                 } else if (blob.startsWith(METADATA_PREFIX)) {
                     foundUUID = blob.substring(METADATA_PREFIX.length(), blob.length() - ".dat".length());
                     assert GLOBAL_METADATA_FORMAT.blobName(foundUUID).equals(blob);
+                } else if (blob.startsWith(REPOSITORY_DATA_SEGMENT_PREFIX)) {
+                    final String segmentUUID = blob.substring(REPOSITORY_DATA_SEGMENT_PREFIX.length(), blob.length() - ".dat".length());
+                    assert REPOSITORY_DATA_SEGMENT_FORMAT.blobName(segmentUUID).equals(blob);
+                    return allSegmentIds.contains(segmentUUID) == false;
                 } else {
                     return false;
                 }
@@ -2087,6 +2167,11 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         }
         try {
             final String snapshotsIndexBlobName = INDEX_FILE_PREFIX + Long.toString(indexGen);
+            // segments never change once written so we only read those that the latest known repository data does not contain yet
+            final Map<String, RepositoryDataSegment> knownSegments = latestKnownRepositoryData.get()
+                .segments()
+                .stream()
+                .collect(Collectors.toMap(RepositoryDataSegment::uuid, Function.identity()));
 
             // EMPTY is safe here because RepositoryData#fromXContent calls namedObject
             try (
@@ -2094,7 +2179,13 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                 XContentParser parser = XContentType.JSON.xContent()
                     .createParser(NamedXContentRegistry.EMPTY, LoggingDeprecationHandler.INSTANCE, blob)
             ) {
-                return RepositoryData.snapshotsFromXContent(parser, indexGen, true);
+                return RepositoryData.snapshotsFromXContent(parser, indexGen, true, segmentUUID -> {
+                    final RepositoryDataSegment known = knownSegments.get(segmentUUID);
+                    if (known != null) {
+                        return known;
+                    }
+                    return REPOSITORY_DATA_SEGMENT_FORMAT.read(metadata.name(), blobContainer(), segmentUUID, namedXContentRegistry);
+                });
             }
         } catch (IOException ioe) {
             if (bestEffortConsistency) {
@@ -2281,7 +2372,6 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         })), listener::onFailure);
         filterRepositoryDataStep.whenComplete(filteredRepositoryData -> {
             final long newGen = setPendingStep.result();
-            final RepositoryData newRepositoryData = updateRepositoryData(filteredRepositoryData, version, newGen);
             if (latestKnownRepoGen.get() >= newGen) {
                 throw new IllegalArgumentException(
                     "Tried writing generation ["
@@ -2295,6 +2385,11 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             if (ensureSafeGenerationExists(expectedGen, listener::onFailure) == false) {
                 return;
             }
+            // only upload new segments once the write is known to go ahead so that a failed write does not leave them behind
+            final RepositoryData newRepositoryData = writeRepositoryDataSegments(
+                updateRepositoryData(filteredRepositoryData, version, newGen),
+                version
+            );
             final String indexBlob = INDEX_FILE_PREFIX + Long.toString(newGen);
             logger.debug("Repository [{}] writing new index generational blob [{}]", metadata.name(), indexBlob);
             writeAtomic(blobContainer(), indexBlob, out -> {
@@ -2375,6 +2470,29 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         }, listener::onFailure);
     }
 
+    /**
+     * Writes the {@link RepositoryDataSegment}s that the given repository data is to be stored with and did not exist yet. Without a
+     * configured {@link #REPOSITORY_DATA_SEGMENT_SIZE_SETTING}, or if the repository must remain readable by older versions, all snapshots
+     * are stored in the root blob again.
+     *
+     * @return repository data with the segments it will be stored with
+     */
+    private RepositoryData writeRepositoryDataSegments(RepositoryData repositoryData, Version repositoryMetaVersion) throws IOException {
+        if (repositoryDataSegmentSize == 0 || SnapshotsService.useSegmentedRepositoryData(repositoryMetaVersion) == false) {
+            return repositoryData.withSegments(List.of());
+        }
+        final List<RepositoryDataSegment> segments = repositoryData.segmentsForWrite(repositoryDataSegmentSize);
+        final Set<RepositoryDataSegment> existingSegments = Collections.newSetFromMap(new IdentityHashMap<>());
+        existingSegments.addAll(repositoryData.segments());
+        for (RepositoryDataSegment segment : segments) {
+            if (existingSegments.contains(segment) == false) {
+                logger.debug("Repository [{}] writing new repository data segment [{}]", metadata.name(), segment.uuid());
+                REPOSITORY_DATA_SEGMENT_FORMAT.write(segment, blobContainer(), segment.uuid(), compress);
+            }
+        }
+        return repositoryData.withSegments(segments);
+    }
+
     private RepositoryData updateRepositoryData(RepositoryData repositoryData, Version repositoryMetaversion, long newGen) {
         if (SnapshotsService.includesUUIDs(repositoryMetaversion)) {
             final String clusterUUID = clusterService.state().metadata().clusterUUID();
@@ -2656,6 +2774,15 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             long indexIncrementalSize = 0;
             long indexTotalFileSize = 0;
             final BlockingQueue<BlobStoreIndexShardSnapshot.FileInfo> filesToSnapshot = new LinkedBlockingQueue<>();
+            // older nodes cannot read the chunks of a file from the shard level metadata, so such files are then snapshotted as a whole
+            final boolean chunkFiles = contentDefinedChunking
+                && SnapshotsService.useContentDefinedChunks(context.getRepositoryMetaVersion());
+            final ContentDefinedChunker chunker = chunkFiles ? contentDefinedChunker() : null;
+            // chunks uploaded by this snapshot, each is uploaded by whichever file that contains it reads it first
+            final Set<String> uploadedChunks = ConcurrentCollections.newConcurrentSet();
+            final Predicate<String> claimChunk = chunk -> snapshots.hasChunk(chunk) == false && uploadedChunks.add(chunk);
+            // files that are split into chunks only get their final file info once they have been read, keyed by blob name
+            final Map<String, BlobStoreIndexShardSnapshot.FileInfo> chunkedFiles = ConcurrentCollections.newConcurrentMap();
             // If we did not find a set of files that is equal to the current commit we determine the files to upload by comparing files
             // in the commit with files already in the repository
             if (filesFromSegmentInfos == null) {
@@ -2701,6 +2828,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
                     if (existingFileInfo == null) {
                         indexIncrementalFileCount++;
+                        // with content-defined chunking, which chunks are in the repository already is only known once the file is read
                         indexIncrementalSize += md.length();
                         // create a new FileInfo
                         BlobStoreIndexShardSnapshot.FileInfo snapshotFileInfo = new BlobStoreIndexShardSnapshot.FileInfo(
@@ -2737,42 +2865,55 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             final boolean writeShardGens = SnapshotsService.useShardGenerations(context.getRepositoryMetaVersion());
             final boolean writeFileInfoWriterUUID = SnapshotsService.includeFileInfoWriterUUID(context.getRepositoryMetaVersion());
             // build a new BlobStoreIndexShardSnapshot, that includes this one and all the saved ones
-            List<SnapshotFiles> newSnapshotsList = new ArrayList<>();
-            newSnapshotsList.add(new SnapshotFiles(snapshotId.getName(), indexCommitPointFiles, context.stateIdentifier()));
-            for (SnapshotFiles point : snapshots) {
-                newSnapshotsList.add(point);
-            }
-            final BlobStoreIndexShardSnapshots updatedBlobStoreIndexShardSnapshots = new BlobStoreIndexShardSnapshots(newSnapshotsList);
+            final Supplier<BlobStoreIndexShardSnapshots> updatedBlobStoreIndexShardSnapshots = () -> {
+                List<SnapshotFiles> newSnapshotsList = new ArrayList<>();
+                newSnapshotsList.add(
+                    new SnapshotFiles(snapshotId.getName(), withChunks(indexCommitPointFiles, chunkedFiles), context.stateIdentifier())
+                );
+                for (SnapshotFiles point : snapshots) {
+                    newSnapshotsList.add(point);
+                }
+                return new BlobStoreIndexShardSnapshots(newSnapshotsList);
+            };
             final Runnable afterWriteSnapBlob;
             if (writeShardGens) {
-                // When using shard generations we can safely write the index-${uuid} blob before writing out any of the actual data
-                // for this shard since the uuid named blob will simply not be referenced in case of error and thus we will never
-                // reference a generation that has not had all its files fully upload.
                 indexGeneration = ShardGeneration.newGeneration();
-                try {
-                    final Map<String, String> serializationParams = Collections.singletonMap(
-                        BlobStoreIndexShardSnapshot.FileInfo.SERIALIZE_WRITER_UUID,
-                        Boolean.toString(writeFileInfoWriterUUID)
-                    );
-                    INDEX_SHARD_SNAPSHOTS_FORMAT.write(
-                        updatedBlobStoreIndexShardSnapshots,
-                        shardContainer,
-                        indexGeneration.toBlobNamePart(),
-                        compress,
-                        serializationParams
-                    );
-                } catch (IOException e) {
-                    throw new IndexShardSnapshotFailedException(
-                        shardId,
-                        "Failed to write shard level snapshot metadata for ["
-                            + snapshotId
-                            + "] to ["
-                            + INDEX_SHARD_SNAPSHOTS_FORMAT.blobName(indexGeneration.toBlobNamePart())
-                            + "]",
-                        e
-                    );
+                final Runnable writeShardGeneration = () -> {
+                    try {
+                        final Map<String, String> serializationParams = Collections.singletonMap(
+                            BlobStoreIndexShardSnapshot.FileInfo.SERIALIZE_WRITER_UUID,
+                            Boolean.toString(writeFileInfoWriterUUID)
+                        );
+                        INDEX_SHARD_SNAPSHOTS_FORMAT.write(
+                            updatedBlobStoreIndexShardSnapshots.get(),
+                            shardContainer,
+                            indexGeneration.toBlobNamePart(),
+                            compress,
+                            serializationParams
+                        );
+                    } catch (IOException e) {
+                        throw new IndexShardSnapshotFailedException(
+                            shardId,
+                            "Failed to write shard level snapshot metadata for ["
+                                + snapshotId
+                                + "] to ["
+                                + INDEX_SHARD_SNAPSHOTS_FORMAT.blobName(indexGeneration.toBlobNamePart())
+                                + "]",
+                            e
+                        );
+                    }
+                };
+                if (chunker == null) {
+                    // When using shard generations we can safely write the index-${uuid} blob before writing out any of the actual data
+                    // for this shard since the uuid named blob will simply not be referenced in case of error and thus we will never
+                    // reference a generation that has not had all its files fully upload.
+                    writeShardGeneration.run();
+                    afterWriteSnapBlob = () -> {};
+                } else {
+                    // The chunks of the new files are only known once the files have been read, so the index-${uuid} blob is written
+                    // after the data instead. It is not referenced before the shard snapshot completes either way.
+                    afterWriteSnapBlob = writeShardGeneration;
                 }
-                afterWriteSnapBlob = () -> {};
             } else {
                 // When not using shard generations we can only write the index-${N} blob after all other work for this shard has
                 // completed.
@@ -2797,7 +2938,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                             BlobStoreIndexShardSnapshot.FileInfo.SERIALIZE_WRITER_UUID,
                             Boolean.toString(writeFileInfoWriterUUID)
                         );
-                        writeShardIndexBlobAtomic(shardContainer, newGen, updatedBlobStoreIndexShardSnapshots, serializationParams);
+                        writeShardIndexBlobAtomic(shardContainer, newGen, updatedBlobStoreIndexShardSnapshots.get(), serializationParams);
                     } catch (IOException e) {
                         throw new IndexShardSnapshotFailedException(
                             shardId,
@@ -2833,7 +2974,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                 final BlobStoreIndexShardSnapshot blobStoreIndexShardSnapshot = new BlobStoreIndexShardSnapshot(
                     snapshotId.getName(),
                     lastSnapshotStatus.getIndexVersion(),
-                    indexCommitPointFiles,
+                    withChunks(indexCommitPointFiles, chunkedFiles),
                     lastSnapshotStatus.getStartTime(),
                     threadPool.absoluteTimeInMillis() - lastSnapshotStatus.getStartTime(),
                     lastSnapshotStatus.getIncrementalFileCount(),
@@ -2873,7 +3014,18 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             final int workers = Math.min(threadPool.info(ThreadPool.Names.SNAPSHOT).getMax(), indexIncrementalFileCount);
             final ActionListener<Void> filesListener = fileQueueListener(filesToSnapshot, workers, allFilesUploadedListener);
             for (int i = 0; i < workers; ++i) {
-                executeOneFileSnapshot(store, snapshotId, context.indexId(), snapshotStatus, filesToSnapshot, executor, filesListener);
+                executeOneFileSnapshot(
+                    store,
+                    snapshotId,
+                    context.indexId(),
+                    snapshotStatus,
+                    filesToSnapshot,
+                    chunker,
+                    claimChunk,
+                    chunkedFiles,
+                    executor,
+                    filesListener
+                );
             }
         } catch (Exception e) {
             context.onFailure(e);
@@ -2886,6 +3038,9 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         IndexId indexId,
         IndexShardSnapshotStatus snapshotStatus,
         BlockingQueue<BlobStoreIndexShardSnapshot.FileInfo> filesToSnapshot,
+        @Nullable ContentDefinedChunker chunker,
+        Predicate<String> claimChunk,
+        Map<String, BlobStoreIndexShardSnapshot.FileInfo> chunkedFiles,
         Executor executor,
         ActionListener<Void> listener
     ) throws InterruptedException {
@@ -2896,8 +3051,26 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         } else {
             executor.execute(ActionRunnable.wrap(listener, l -> {
                 try (Releasable ignored = incrementStoreRef(store, snapshotStatus, shardId)) {
-                    snapshotFile(snapshotFileInfo, indexId, shardId, snapshotId, snapshotStatus, store);
-                    executeOneFileSnapshot(store, snapshotId, indexId, snapshotStatus, filesToSnapshot, executor, l);
+                    if (chunker != null && snapshotFileInfo.length() > 0) {
+                        chunkedFiles.put(
+                            snapshotFileInfo.name(),
+                            snapshotChunkedFile(snapshotFileInfo, indexId, shardId, snapshotId, snapshotStatus, store, chunker, claimChunk)
+                        );
+                    } else {
+                        snapshotFile(snapshotFileInfo, indexId, shardId, snapshotId, snapshotStatus, store);
+                    }
+                    executeOneFileSnapshot(
+                        store,
+                        snapshotId,
+                        indexId,
+                        snapshotStatus,
+                        filesToSnapshot,
+                        chunker,
+                        claimChunk,
+                        chunkedFiles,
+                        executor,
+                        l
+                    );
                 }
             }));
         }
@@ -2915,6 +3088,19 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         return store::decRef;
     }
 
+    /**
+     * Replaces the file infos of the files that were split into chunks while they were snapshotted.
+     */
+    private static List<BlobStoreIndexShardSnapshot.FileInfo> withChunks(
+        List<BlobStoreIndexShardSnapshot.FileInfo> files,
+        Map<String, BlobStoreIndexShardSnapshot.FileInfo> chunkedFiles
+    ) {
+        if (chunkedFiles.isEmpty()) {
+            return files;
+        }
+        return files.stream().map(file -> chunkedFiles.getOrDefault(file.name(), file)).collect(Collectors.toList());
+    }
+
     private static boolean assertFileContentsMatchHash(
         IndexShardSnapshotStatus snapshotStatus,
         BlobStoreIndexShardSnapshot.FileInfo fileInfo,
@@ -3040,6 +3226,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                             final BytesRef hash = fileInfo.metadata().hash();
                             indexOutput.writeBytes(hash.bytes, hash.offset, hash.length);
                             recoveryState.getIndex().addRecoveredBytesToFile(fileInfo.physicalName(), hash.length);
+                        } else if (useRangeReads(fileInfo)) {
+                            restoreFileInRanges(fileInfo, store, indexOutput);
                         } else {
                             try (InputStream stream = maybeRateLimitRestores(new SlicedInputStream(fileInfo.numberOfParts()) {
                                 @Override
@@ -3075,6 +3263,47 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                     }
                 }
 
+                private boolean useRangeReads(BlobStoreIndexShardSnapshot.FileInfo fileInfo) {
+                    return recoverySettings.getMaxConcurrentSnapshotRangeReads() > 0
+                        && fileInfo.length() > recoverySettings.getSnapshotRangeReadSize().getBytes();
+                }
+
+                /**
+                 * Restores a file by reading its ranges concurrently, see {@link PrefetchingFileReader}. The ranges are appended in order
+                 * so that the checksum is verified the same way as for a sequential read.
+                 */
+                private void restoreFileInRanges(BlobStoreIndexShardSnapshot.FileInfo fileInfo, Store store, IndexOutput indexOutput)
+                    throws IOException {
+                    final int rangeSize = Math.toIntExact(recoverySettings.getSnapshotRangeReadSize().getBytes());
+                    try (
+                        PrefetchingFileReader reader = new PrefetchingFileReader(
+                            fileInfo,
+                            rangeSize,
+                            (blobName, position, length) -> {
+                                final byte[] bytes = new byte[length];
+                                try (InputStream stream = maybeRateLimitRestores(container.readBlob(blobName, position, length))) {
+                                    final int read = Streams.readFully(stream, bytes);
+                                    if (read != length) {
+                                        throw new EOFException(
+                                            "read [" + read + "] bytes of [" + length + "] at [" + position + "] from [" + blobName + "]"
+                                        );
+                                    }
+                                }
+                                return bytes;
+                            },
+                            threadPool.generic(),
+                            recoverySettings
+                        )
+                    ) {
+                        byte[] range;
+                        while ((range = reader.next()) != null) {
+                            ensureNotClosing(store);
+                            indexOutput.writeBytes(range, 0, range.length);
+                            recoveryState.getIndex().addRecoveredBytesToFile(fileInfo.physicalName(), range.length);
+                        }
+                    }
+                }
+
                 void ensureNotClosing(final Store store) throws AlreadyClosedException {
                     assert store.refCount() > 0;
                     if (store.isClosing()) {
@@ -3314,7 +3543,9 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                         && survivingSnapshotUUIDs.contains(
                             blob.substring(SNAPSHOT_PREFIX.length(), blob.length() - ".dat".length())
                         ) == false)
-                    || (blob.startsWith(UPLOADED_DATA_BLOB_PREFIX) && updatedSnapshots.findNameFile(canonicalName(blob)) == null)
+                    || (blob.startsWith(UPLOADED_DATA_BLOB_PREFIX)
+                        && updatedSnapshots.findNameFile(canonicalName(blob)) == null
+                        && updatedSnapshots.hasChunk(blob) == false)
                     || FsBlobContainer.isTempBlobName(blob)
             )
             .collect(Collectors.toList());
@@ -3426,29 +3657,13 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             for (int i = 0; i < fileInfo.numberOfParts(); i++) {
                 final long partBytes = fileInfo.partBytes(i);
 
-                // Make reads abortable by mutating the snapshotStatus object
-                final InputStream inputStream = new FilterInputStream(
-                    maybeRateLimitSnapshots(new InputStreamIndexInput(indexInput, partBytes))
-                ) {
-                    @Override
-                    public int read() throws IOException {
-                        checkAborted();
-                        return super.read();
-                    }
-
-                    @Override
-                    public int read(byte[] b, int off, int len) throws IOException {
-                        checkAborted();
-                        return super.read(b, off, len);
-                    }
-
-                    private void checkAborted() {
-                        if (snapshotStatus.isAborted()) {
-                            logger.debug("[{}] [{}] Aborted on the file [{}], exiting", shardId, snapshotId, fileInfo.physicalName());
-                            throw new AbortedSnapshotException();
-                        }
-                    }
-                };
+                final InputStream inputStream = abortable(
+                    maybeRateLimitSnapshots(new InputStreamIndexInput(indexInput, partBytes)),
+                    fileInfo,
+                    shardId,
+                    snapshotId,
+                    snapshotStatus
+                );
                 final String partName = fileInfo.partName(i);
                 logger.trace(() -> new ParameterizedMessage("[{}] Writing [{}] to [{}]", metadata.name(), partName, shardContainer.path()));
                 shardContainer.writeBlob(partName, inputStream, partBytes, false);
@@ -3462,6 +3677,103 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         }
     }
 
+    /**
+     * Snapshot individual file by splitting it into content-defined chunks while it is read, only uploading the chunks that are not
+     * in the shard's container yet. Each chunk is buffered until its digest, and therefore its blob name, is known.
+     *
+     * @param fileInfo   file to be snapshotted
+     * @param claimChunk returns whether a chunk needs to be uploaded, at most once per chunk
+     * @return the file info of the snapshotted file, listing its chunks
+     */
+    private BlobStoreIndexShardSnapshot.FileInfo snapshotChunkedFile(
+        BlobStoreIndexShardSnapshot.FileInfo fileInfo,
+        IndexId indexId,
+        ShardId shardId,
+        SnapshotId snapshotId,
+        IndexShardSnapshotStatus snapshotStatus,
+        Store store,
+        ContentDefinedChunker chunker,
+        Predicate<String> claimChunk
+    ) throws IOException {
+        final BlobContainer shardContainer = shardContainer(indexId, shardId);
+        final String file = fileInfo.physicalName();
+        final List<BlobStoreIndexShardSnapshot.FileInfo.Chunk> chunks = new ArrayList<>();
+        final AtomicLong uploadedBytes = new AtomicLong();
+        try (IndexInput indexInput = store.openVerifyingInput(file, IOContext.READONCE, fileInfo.metadata())) {
+            final InputStream inputStream = abortable(
+                new InputStreamIndexInput(indexInput, fileInfo.length()),
+                fileInfo,
+                shardId,
+                snapshotId,
+                snapshotStatus
+            );
+            final BytesStreamOutput buffer = new BytesStreamOutput();
+            chunker.chunk(inputStream, new ContentDefinedChunker.ChunkConsumer() {
+                @Override
+                public void onBytes(byte[] bytes, int offset, int length) {
+                    buffer.writeBytes(bytes, offset, length);
+                }
+
+                @Override
+                public void onChunk(BlobStoreIndexShardSnapshot.FileInfo.Chunk chunk) throws IOException {
+                    chunks.add(chunk);
+                    if (claimChunk.test(chunk.name())) {
+                        final String chunkName = chunk.name();
+                        logger.trace(
+                            () -> new ParameterizedMessage("[{}] Writing [{}] to [{}]", metadata.name(), chunkName, shardContainer.path())
+                        );
+                        final InputStream chunkStream = maybeRateLimitSnapshots(buffer.bytes().streamInput());
+                        shardContainer.writeBlob(chunkName, chunkStream, chunk.length(), false);
+                        uploadedBytes.addAndGet(chunk.length());
+                    } else {
+                        // the chunk is in the repository already or uploaded by another file
+                        snapshotStatus.addSkippedBytes(chunk.length());
+                    }
+                    buffer.reset();
+                }
+            });
+            Store.verify(indexInput);
+            snapshotStatus.addProcessedFile(uploadedBytes.get());
+        } catch (Exception t) {
+            failStoreIfCorrupted(store, t);
+            snapshotStatus.addProcessedFile(0);
+            throw t;
+        }
+        return BlobStoreIndexShardSnapshot.FileInfo.chunked(fileInfo.name(), fileInfo.metadata(), chunks);
+    }
+
+    /**
+     * Make reads abortable by mutating the snapshotStatus object
+     */
+    private static InputStream abortable(
+        InputStream inputStream,
+        BlobStoreIndexShardSnapshot.FileInfo fileInfo,
+        ShardId shardId,
+        SnapshotId snapshotId,
+        IndexShardSnapshotStatus snapshotStatus
+    ) {
+        return new FilterInputStream(inputStream) {
+            @Override
+            public int read() throws IOException {
+                checkAborted();
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                checkAborted();
+                return super.read(b, off, len);
+            }
+
+            private void checkAborted() {
+                if (snapshotStatus.isAborted()) {
+                    logger.debug("[{}] [{}] Aborted on the file [{}], exiting", shardId, snapshotId, fileInfo.physicalName());
+                    throw new AbortedSnapshotException();
+                }
+            }
+        };
+    }
+
     private static void failStoreIfCorrupted(Store store, Exception e) {
         if (Lucene.isCorruptionException(e)) {
             try {
@@ -0,0 +1,168 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.repositories.blobstore;
+
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo.Chunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a stream of bytes into variable sized chunks whose boundaries are determined by the content of the stream rather than by fixed
+ * offsets, so that an insertion or removal of bytes only affects the chunks around the modified region. Each chunk is named after the
+ * SHA-256 digest of its contents which allows identical chunks to be stored only once in a shard's blob container.
+ * <p>
+ * Boundaries are found with a gear rolling hash and normalized chunking as described in "FastCDC: a Fast and Efficient Content-Defined
+ * Chunking Approach for Data Deduplication" (Xia et al.): a chunk is never shorter than the minimum size and never longer than the maximum
+ * size, a stricter cut condition applies below the average size and a looser one above it. The gear table and the cut conditions are part
+ * of the repository format and must never change.
+ */
+final class ContentDefinedChunker {
+
+    /**
+     * Prefix of the blob names of content-addressed chunks. Starts with {@link BlobStoreRepository#UPLOADED_DATA_BLOB_PREFIX} so that
+     * unreferenced chunks are cleaned up like any other data blob.
+     */
+    static final String CHUNK_BLOB_PREFIX = BlobStoreRepository.UPLOADED_DATA_BLOB_PREFIX + "chunk-";
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // splitmix64 over a fixed seed so the table is stable across JVMs and versions
+        long state = 0x5DEECE66DL;
+        for (int i = 0; i < GEAR.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final int minChunkSize;
+    private final int averageChunkSize;
+    private final int maxChunkSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    /**
+     * @param averageChunkSize the targeted average chunk size, must be a power of two of at least 256 bytes
+     * @param maxChunkSize     the maximum chunk size, must be at least twice the average chunk size
+     */
+    ContentDefinedChunker(int averageChunkSize, int maxChunkSize) {
+        if (averageChunkSize < 256 || Integer.bitCount(averageChunkSize) != 1) {
+            throw new IllegalArgumentException(
+                "average chunk size must be a power of two of at least 256 but was [" + averageChunkSize + "]"
+            );
+        }
+        if (maxChunkSize < 2 * averageChunkSize) {
+            throw new IllegalArgumentException(
+                "maximum chunk size [" + maxChunkSize + "] must be at least twice the average chunk size [" + averageChunkSize + "]"
+            );
+        }
+        this.minChunkSize = averageChunkSize / 4;
+        this.averageChunkSize = averageChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        final int bits = Integer.numberOfTrailingZeros(averageChunkSize);
+        // the gear hash shifts left so the highest bits depend on the most bytes, the masks therefore select the top bits
+        this.strictMask = -1L << (64 - (bits + 2));
+        this.looseMask = -1L << (64 - (bits - 2));
+    }
+
+    /**
+     * Receives the chunks of a stream, in order, together with their bytes.
+     */
+    interface ChunkConsumer {
+
+        /**
+         * Called with the next bytes of the current chunk, possibly several times per chunk.
+         */
+        void onBytes(byte[] bytes, int offset, int length) throws IOException;
+
+        /**
+         * Called once all the bytes of a chunk were passed to {@link #onBytes}.
+         */
+        void onChunk(Chunk chunk) throws IOException;
+    }
+
+    /**
+     * Reads the given stream to its end and returns the chunks it consists of, in order.
+     *
+     * @param input stream to chunk
+     * @return list of chunks, empty if the stream is empty
+     */
+    List<Chunk> chunk(InputStream input) throws IOException {
+        final List<Chunk> chunks = new ArrayList<>();
+        chunk(input, new ChunkConsumer() {
+            @Override
+            public void onBytes(byte[] bytes, int offset, int length) {}
+
+            @Override
+            public void onChunk(Chunk chunk) {
+                chunks.add(chunk);
+            }
+        });
+        return chunks;
+    }
+
+    /**
+     * Reads the given stream to its end and passes its bytes and the chunks they make up to the given consumer, so that the chunks can
+     * be processed while the stream is read rather than after a separate pass over it.
+     *
+     * @param input    stream to chunk
+     * @param consumer receives the bytes and then the name of each chunk
+     */
+    void chunk(InputStream input, ChunkConsumer consumer) throws IOException {
+        final MessageDigest digest = MessageDigests.sha256();
+        final byte[] buffer = new byte[64 * 1024];
+        long hash = 0L;
+        int chunkLength = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+                chunkLength++;
+                if (isBoundary(hash, chunkLength)) {
+                    digest.update(buffer, start, i + 1 - start);
+                    consumer.onBytes(buffer, start, i + 1 - start);
+                    consumer.onChunk(newChunk(digest, chunkLength));
+                    start = i + 1;
+                    hash = 0L;
+                    chunkLength = 0;
+                }
+            }
+            if (start < read) {
+                digest.update(buffer, start, read - start);
+                consumer.onBytes(buffer, start, read - start);
+            }
+        }
+        if (chunkLength > 0) {
+            consumer.onChunk(newChunk(digest, chunkLength));
+        }
+    }
+
+    private boolean isBoundary(long hash, int chunkLength) {
+        if (chunkLength < minChunkSize) {
+            return false;
+        }
+        if (chunkLength >= maxChunkSize) {
+            return true;
+        }
+        return (hash & (chunkLength < averageChunkSize ? strictMask : looseMask)) == 0L;
+    }
+
+    private static Chunk newChunk(MessageDigest digest, int length) {
+        // digest() resets the digest for the next chunk
+        return new Chunk(CHUNK_BLOB_PREFIX + MessageDigests.toHexString(digest.digest()), length);
+    }
+}
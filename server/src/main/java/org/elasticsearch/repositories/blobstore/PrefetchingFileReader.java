@@ -0,0 +1,171 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.repositories.blobstore;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRunnable;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo;
+import org.elasticsearch.indices.recovery.RecoverySettings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the contents of a snapshotted file as a sequence of byte ranges, in order. While the caller consumes one range the following ranges
+ * are read concurrently on the given executor, as long as the node-wide budget of
+ * {@link RecoverySettings#INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS} allows. If no concurrent read can be started the next range
+ * is read on the calling thread so that a restore always makes progress, regardless of the budget.
+ * <p>
+ * Ranges are returned strictly in file order so that they can be appended to a checksum-verifying output; at most as many ranges as there
+ * are concurrent reads in flight are buffered on heap at any time.
+ */
+final class PrefetchingFileReader implements Closeable {
+
+    /**
+     * Reads a range of a blob fully.
+     */
+    @FunctionalInterface
+    interface RangeReader {
+        byte[] read(String blobName, long position, int length) throws IOException;
+    }
+
+    private final List<Range> ranges;
+    private final RangeReader reader;
+    private final Executor executor;
+    private final RecoverySettings recoverySettings;
+    private final Deque<PlainActionFuture<byte[]>> inFlight = new ArrayDeque<>();
+
+    private int nextToFetch;
+    private volatile boolean closed;
+
+    PrefetchingFileReader(FileInfo fileInfo, int rangeSize, RangeReader reader, Executor executor, RecoverySettings recoverySettings) {
+        if (rangeSize <= 0) {
+            throw new IllegalArgumentException("range size must be positive but was [" + rangeSize + "]");
+        }
+        this.ranges = splitIntoRanges(fileInfo, rangeSize);
+        this.reader = reader;
+        this.executor = executor;
+        this.recoverySettings = recoverySettings;
+    }
+
+    /**
+     * Returns the next range of the file, blocking until it has been read.
+     *
+     * @return the bytes of the next range or {@code null} once the whole file has been returned
+     */
+    @Nullable
+    byte[] next() throws IOException {
+        assert closed == false : "reader is closed";
+        while (nextToFetch < ranges.size() && recoverySettings.tryAcquireSnapshotRangeRead()) {
+            final Range range = ranges.get(nextToFetch++);
+            final PlainActionFuture<byte[]> future = PlainActionFuture.newFuture();
+            inFlight.add(future);
+            boolean submitted = false;
+            try {
+                executor.execute(
+                    ActionRunnable.supply(ActionListener.runAfter(future, recoverySettings::releaseSnapshotRangeRead), () -> {
+                        if (closed) {
+                            throw new IllegalStateException("reader closed before reading range " + range);
+                        }
+                        return range.read(reader);
+                    })
+                );
+                submitted = true;
+            } finally {
+                if (submitted == false) {
+                    inFlight.removeLast();
+                    nextToFetch--;
+                    recoverySettings.releaseSnapshotRangeRead();
+                }
+            }
+        }
+        final PlainActionFuture<byte[]> prefetched = inFlight.poll();
+        if (prefetched != null) {
+            return await(prefetched);
+        }
+        if (nextToFetch < ranges.size()) {
+            return ranges.get(nextToFetch++).read(reader);
+        }
+        return null;
+    }
+
+    private static byte[] await(PlainActionFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a snapshot range read");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw ExceptionsHelper.convertToRuntime((Exception) cause);
+        }
+    }
+
+    /**
+     * Stops starting new reads. Reads that are already in flight complete in the background and release their budget when done, their
+     * results are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        inFlight.clear();
+    }
+
+    // visible for testing
+    int numberOfRanges() {
+        return ranges.size();
+    }
+
+    private static List<Range> splitIntoRanges(FileInfo fileInfo, int rangeSize) {
+        final List<Range> ranges = new ArrayList<>();
+        for (int part = 0; part < fileInfo.numberOfParts(); part++) {
+            final String partName = fileInfo.partName(part);
+            final long partBytes = fileInfo.partBytes(part);
+            for (long position = 0; position < partBytes; position += rangeSize) {
+                ranges.add(new Range(partName, position, Math.toIntExact(Math.min(rangeSize, partBytes - position))));
+            }
+        }
+        return ranges;
+    }
+
+    private static final class Range {
+        private final String blobName;
+        private final long position;
+        private final int length;
+
+        Range(String blobName, long position, int length) {
+            this.blobName = blobName;
+            this.position = position;
+            this.length = length;
+        }
+
+        byte[] read(RangeReader reader) throws IOException {
+            final byte[] bytes = reader.read(blobName, position, length);
+            assert bytes.length == length : "read [" + bytes.length + "] bytes from " + this;
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + blobName + "][" + position + "-" + (position + length) + "]";
+        }
+    }
+}
@@ -196,6 +196,34 @@ public abstract class ScoreScript extends DocBasedScript {
         boolean needs_score();
 
         ScoreScript newInstance(DocReader reader) throws IOException;
+
+        /**
+         * Return a script that scores blocks of documents of the segment of the given reader at once, or {@code null} if the script can
+         * only score documents one at a time with the instances returned by {@link #newInstance}.
+         */
+        default BatchScoreScript newBatchInstance(DocReader reader) throws IOException {
+            return null;
+        }
+    }
+
+    /**
+     * A script that scores blocks of documents at once, which amortizes the cost of evaluating each operation of the script over all
+     * documents of the block. It is an alternative to {@link ScoreScript} for the scripts that support it, and must return the same
+     * scores.
+     */
+    public interface BatchScoreScript {
+
+        /**
+         * Scores the given documents.
+         *
+         * @param docs           the ids of the documents, relative to the segment, in increasing order
+         * @param subQueryScores the scores of the documents by the sub-query, which are only set if the script needs {@code _score}
+         * @param count          the number of documents to score
+         * @param scores         receives the scores of the documents
+         * @return {@code false} if the script could not score all documents, for instance because one of them misses a value that the
+         *         script needs, in which case the documents must be scored one at a time by a {@link ScoreScript}, which reports the error
+         */
+        boolean execute(int[] docs, float[] subQueryScores, int count, double[] scores) throws IOException;
     }
 
     /** A factory to construct stateful {@link ScoreScript} factories for a specific index. */
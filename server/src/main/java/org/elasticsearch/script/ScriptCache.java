@@ -94,6 +94,10 @@ public class ScriptCache {
                     logger.trace("context [{}]: compiling script, type: [{}], lang: [{}], options: [{}]", context.name, type,
                         lang, options);
                 }
+                Object loadedScript = scriptEngine.load(id, idOrCode, context, options);
+                if (loadedScript != null) {
+                    return loadedScript;
+                }
                 // Check whether too many compilations have happened
                 checkCompilationLimit();
                 Object compiledScript = scriptEngine.compile(id, idOrCode, context, options);
@@ -75,6 +75,7 @@ import org.elasticsearch.repositories.IndexId;
 import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.repositories.Repository;
 import org.elasticsearch.repositories.RepositoryData;
+import org.elasticsearch.repositories.RepositoryDataSegment;
 import org.elasticsearch.repositories.RepositoryException;
 import org.elasticsearch.repositories.RepositoryMissingException;
 import org.elasticsearch.repositories.RepositoryShardId;
@@ -127,6 +128,10 @@ public class SnapshotsService extends AbstractLifecycleComponent implements Clus
 
     public static final Version UUIDS_IN_REPO_DATA_VERSION = Version.V_7_12_0;
 
+    public static final Version SEGMENTED_REPO_DATA_VERSION = Version.V_8_0_0;
+
+    public static final Version CHUNKED_FILES_IN_SHARD_DATA_VERSION = Version.V_8_0_0;
+
     // TODO: Update to 7.16 after backporting
     public static final Version FILE_INFO_WRITER_UUIDS_IN_SHARD_DATA_VERSION = Version.CURRENT;
 
@@ -2323,6 +2328,26 @@ public class SnapshotsService extends AbstractLifecycleComponent implements Clus
         return repositoryMetaVersion.onOrAfter(UUIDS_IN_REPO_DATA_VERSION);
     }
 
+    /**
+     * Checks whether the metadata version supports storing the entries of some snapshots in {@link RepositoryDataSegment}s.
+     *
+     * @param repositoryMetaVersion version to check
+     * @return true if version supports repository data segments
+     */
+    public static boolean useSegmentedRepositoryData(Version repositoryMetaVersion) {
+        return repositoryMetaVersion.onOrAfter(SEGMENTED_REPO_DATA_VERSION);
+    }
+
+    /**
+     * Checks whether the metadata version supports splitting files into content-defined chunks in the shard level metadata.
+     *
+     * @param repositoryMetaVersion version to check
+     * @return true if version supports chunked files
+     */
+    public static boolean useContentDefinedChunks(Version repositoryMetaVersion) {
+        return repositoryMetaVersion.onOrAfter(CHUNKED_FILES_IN_SHARD_DATA_VERSION);
+    }
+
     public static boolean includeFileInfoWriterUUID(Version repositoryMetaVersion) {
         return repositoryMetaVersion.onOrAfter(FILE_INFO_WRITER_UUIDS_IN_SHARD_DATA_VERSION);
     }
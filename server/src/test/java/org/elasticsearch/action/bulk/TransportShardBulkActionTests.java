@@ -27,6 +27,7 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
@@ -40,6 +41,7 @@ import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.Mapping;
 import org.elasticsearch.index.mapper.MetadataFieldMapper;
 import org.elasticsearch.index.mapper.RootObjectMapper;
+import org.elasticsearch.index.mapper.SourceToParse;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardTestCase;
 import org.elasticsearch.index.shard.ShardId;
@@ -48,6 +50,8 @@ import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.threadpool.TestThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.threadpool.ThreadPool.Names;
+import org.elasticsearch.xcontent.XContentType;
+import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -166,6 +170,35 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         closeShards(shard);
     }
 
+    public void testReplicaParsesPreParsedSource() throws Exception {
+        IndexShard shard = newStartedShard(true);
+        updateMappings(shard, indexMetadata());
+
+        IndexRequest writeRequest = new IndexRequest("index").id("id").source("{\"foo\":\"bar\"}", XContentType.JSON);
+        assertTrue(writeRequest.parseSource());
+        BytesReference parsedSource = writeRequest.parsedSource();
+        BulkItemRequest[] items = new BulkItemRequest[] { new BulkItemRequest(0, writeRequest) };
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        BulkPrimaryExecutionContext context = new BulkPrimaryExecutionContext(bulkShardRequest, shard);
+        TransportShardBulkAction.executeBulkItemRequest(context, null, threadPool::absoluteTimeInMillis,
+            new NoopMappingUpdatePerformer(), listener -> {}, ASSERTING_DONE_LISTENER);
+        assertFalse(context.hasMoreOperationsToExecute());
+        assertFalse(bulkShardRequest.items()[0].getPrimaryResponse().isFailed());
+        assertDocCount(shard, 1);
+
+        // the request sent to the replicas keeps the tokens of the source, so that they don't tokenize it either
+        assertThat(writeRequest.parsedSource(), equalTo(parsedSource));
+        IndexShard replica = spy(newStartedShard(false));
+        updateMappings(replica, indexMetadata());
+        TransportShardBulkAction.performOnReplica(bulkShardRequest, replica);
+        ArgumentCaptor<SourceToParse> sourceToParse = ArgumentCaptor.forClass(SourceToParse.class);
+        verify(replica).applyIndexOperationOnReplica(anyLong(), anyLong(), anyLong(), anyLong(), anyBoolean(), sourceToParse.capture());
+        assertThat(sourceToParse.getValue().parsedSource(), equalTo(parsedSource));
+        assertDocCount(replica, 1);
+        closeShards(shard, replica);
+    }
+
     public void testSkipBulkIndexRequestIfAborted() throws Exception {
         IndexShard shard = newStartedShard(true);
 
@@ -16,6 +16,7 @@ import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.xcontent.XContentType;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.seqno.SequenceNumbers;
@@ -252,4 +253,65 @@ public class IndexRequestTests extends ESTestCase {
         assertThat(validate.getMessage(),
             containsString("pipeline cannot be an empty string"));
     }
+
+    public void testParseSource() throws IOException {
+        String json = "{\"a\":{\"b\":[1,-2,3.5,true,null,\"x\"],\"c\":{}},\"d\":\"\u00e9\",\"e\":[[],[{}]],\"f\":12345678901}";
+        IndexRequest request = new IndexRequest("index").source(json, XContentType.JSON);
+        assertNull(request.parsedSource());
+        assertTrue(request.parseSource());
+        assertNotNull(request.parsedSource());
+        assertEquals(new BytesArray(json), request.source());
+        assertEquals(
+            XContentHelper.convertToMap(request.source(), true, XContentType.JSON).v2(),
+            XContentHelper.convertToMap(request.parsedSource(), true, XContentType.SMILE).v2()
+        );
+
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            request.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                IndexRequest serialized = new IndexRequest(in);
+                assertEquals(request.source(), serialized.source());
+                assertEquals(request.parsedSource(), serialized.parsedSource());
+            }
+        }
+
+        request.source("{}", XContentType.JSON);
+        assertNull(request.parsedSource());
+    }
+
+    public void testParsedSourceIsOnlySentToNodesThatReadIt() throws IOException {
+        IndexRequest request = new IndexRequest("index").source("{\"a\":1}", XContentType.JSON);
+        assertTrue(request.parseSource());
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            Version version = VersionUtils.randomVersionBetween(random(), Version.V_7_0_0,
+                VersionUtils.getPreviousVersion(Version.V_8_0_0));
+            out.setVersion(version);
+            request.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setVersion(version);
+                IndexRequest serialized = new IndexRequest(in);
+                assertEquals(request.source(), serialized.source());
+                assertNull(serialized.parsedSource());
+            }
+        }
+    }
+
+    public void testParseSourceLeavesSourceAsIs() {
+        for (String json : new String[] {
+            "{\"a\":1.10}",
+            "{\"a\":1e3}",
+            "{\"a\":-0}",
+            "{\"a\":1",
+            "{\"a\":1}{}",
+            "{\"a\":1}]",
+            "[1]",
+            "\"a\"" }) {
+            IndexRequest request = new IndexRequest("index").source(json, XContentType.JSON);
+            assertFalse(json, request.parseSource());
+            assertNull(json, request.parsedSource());
+        }
+        IndexRequest request = new IndexRequest("index").source(Map.of("a", 1), randomFrom(XContentType.SMILE, XContentType.CBOR));
+        assertFalse(request.parseSource());
+        assertNull(request.parsedSource());
+    }
 }
@@ -20,6 +20,7 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.LogByteSizeMergePolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.join.BitSetProducer;
 import org.apache.lucene.store.ByteBuffersDirectory;
@@ -31,6 +32,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.lucene.util.RoaringBitSet;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.IndexSettingsModule;
 
@@ -39,6 +41,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 
 public class BitSetFilterCacheTests extends ESTestCase {
 
@@ -168,6 +171,58 @@ public class BitSetFilterCacheTests extends ESTestCase {
         assertEquals(0, stats.get());
     }
 
+    public void testCompressBitsetFilters() throws IOException {
+        IndexWriter writer = new IndexWriter(
+                new ByteBuffersDirectory(),
+                new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(new LogByteSizeMergePolicy())
+        );
+        final int numDocs = randomIntBetween(1, 1000);
+        for (int i = 0; i < numDocs; i++) {
+            Document document = new Document();
+            document.add(new StringField("field", randomBoolean() ? "value" : "other", Field.Store.NO));
+            writer.addDocument(document);
+        }
+        writer.commit();
+        final IndexReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("test", "_na_", 0));
+
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings(
+            "test",
+            Settings.builder().put(BitsetFilterCache.INDEX_COMPRESS_BITSET_FILTERS_SETTING.getKey(), true).build()
+        );
+        final AtomicLong stats = new AtomicLong();
+        final BitsetFilterCache cache = new BitsetFilterCache(indexSettings, new BitsetFilterCache.Listener() {
+            @Override
+            public void onCache(ShardId shardId, Accountable accountable) {
+                stats.addAndGet(accountable.ramBytesUsed());
+            }
+
+            @Override
+            public void onRemoval(ShardId shardId, Accountable accountable) {
+                stats.addAndGet(-accountable.ramBytesUsed());
+            }
+        });
+        final Query query = new TermQuery(new Term("field", "value"));
+        final BitSetProducer filter = cache.getBitSetProducer(query);
+        long ramBytesUsed = 0;
+        for (LeafReaderContext ctx : reader.leaves()) {
+            final BitSet bitSet = filter.getBitSet(ctx);
+            final BitSet expected = BitsetFilterCache.bitsetFromQuery(query, ctx);
+            if (expected == null) {
+                assertNull(bitSet);
+                continue;
+            }
+            assertThat(bitSet, instanceOf(RoaringBitSet.class));
+            assertEquals(expected.cardinality(), bitSet.cardinality());
+            for (int doc = 0; doc < ctx.reader().maxDoc(); doc++) {
+                assertEquals(expected.get(doc), bitSet.get(doc));
+            }
+            ramBytesUsed += bitSet.ramBytesUsed();
+        }
+        assertEquals(ramBytesUsed, stats.get());
+        IOUtils.close(reader, writer);
+        assertEquals(0, stats.get());
+    }
+
     public void testSetNullListener() {
         try {
             new BitsetFilterCache(INDEX_SETTINGS, null);
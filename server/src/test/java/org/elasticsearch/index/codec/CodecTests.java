@@ -10,6 +10,7 @@ package org.elasticsearch.index.codec;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.lucene90.Lucene90Codec;
+import org.apache.lucene.codecs.lucene90.Lucene90DocValuesFormat;
 import org.apache.lucene.codecs.lucene90.Lucene90StoredFieldsFormat;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
@@ -18,13 +19,16 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.IndexAnalyzers;
+import org.elasticsearch.index.codec.tsdb.ES80TSDBDocValuesFormat;
 import org.elasticsearch.index.mapper.MapperRegistry;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.similarity.SimilarityService;
+import org.elasticsearch.indices.IndicesModule;
 import org.elasticsearch.plugins.MapperPlugin;
 import org.elasticsearch.script.ScriptCompiler;
 import org.elasticsearch.test.ESTestCase;
@@ -54,6 +58,25 @@ public class CodecTests extends ESTestCase {
         assertStoredFieldsCompressionEquals(Lucene90Codec.Mode.BEST_COMPRESSION, codec);
     }
 
+    public void testTimeSeriesDocValuesFormat() throws Exception {
+        assumeTrue("requires the time series mode", IndexSettings.isTimeSeriesModeEnabled());
+        MapperService mapperService = createMapperService(
+            Settings.builder().put(IndexSettings.MODE.getKey(), "time_series").build(),
+            new IndicesModule(Collections.emptyList()).getMapperRegistry()
+        );
+        mapperService.merge("_doc", new CompressedXContent("{\"_doc\":{\"properties\":{"
+            + "\"@timestamp\":{\"type\":\"date\"},"
+            + "\"host\":{\"type\":\"keyword\",\"time_series_dimension\":true},"
+            + "\"cpu\":{\"type\":\"double\"}}}}"), MapperService.MergeReason.MAPPING_UPDATE);
+        PerFieldMappingPostingFormatCodec codec = (PerFieldMappingPostingFormatCodec) new CodecService(mapperService).codec("default");
+        assertThat(codec.getDocValuesFormatForField("@timestamp"), instanceOf(ES80TSDBDocValuesFormat.class));
+        assertThat(codec.getDocValuesFormatForField("cpu"), instanceOf(ES80TSDBDocValuesFormat.class));
+        assertThat(codec.getDocValuesFormatForField("host"), instanceOf(Lucene90DocValuesFormat.class));
+
+        codec = (PerFieldMappingPostingFormatCodec) createCodecService().codec("default");
+        assertThat(codec.getDocValuesFormatForField("cpu"), instanceOf(Lucene90DocValuesFormat.class));
+    }
+
     // write some docs with it, inspect .si to see this was the used compression
     private void assertStoredFieldsCompressionEquals(Lucene90Codec.Mode expected, Codec actual) throws Exception {
         Directory dir = newDirectory();
@@ -73,17 +96,21 @@ public class CodecTests extends ESTestCase {
     }
 
     private CodecService createCodecService() throws IOException {
+        MapperRegistry mapperRegistry = new MapperRegistry(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+            MapperPlugin.NOOP_FIELD_FILTER);
+        return new CodecService(createMapperService(Settings.EMPTY, mapperRegistry));
+    }
+
+    private MapperService createMapperService(Settings indexSettings, MapperRegistry mapperRegistry) throws IOException {
         Settings nodeSettings = Settings.builder()
                 .put(Environment.PATH_HOME_SETTING.getKey(), createTempDir())
                 .build();
-        IndexSettings settings = IndexSettingsModule.newIndexSettings("_na", nodeSettings);
+        IndexSettings settings = IndexSettingsModule.newIndexSettings("_na",
+            Settings.builder().put(nodeSettings).put(indexSettings).build());
         SimilarityService similarityService = new SimilarityService(settings, null, Collections.emptyMap());
         IndexAnalyzers indexAnalyzers = createTestAnalysis(settings, nodeSettings).indexAnalyzers;
-        MapperRegistry mapperRegistry = new MapperRegistry(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
-            MapperPlugin.NOOP_FIELD_FILTER);
-        MapperService service = new MapperService(settings, indexAnalyzers, xContentRegistry(), similarityService, mapperRegistry,
+        return new MapperService(settings, indexAnalyzers, xContentRegistry(), similarityService, mapperRegistry,
                 () -> null, () -> false, ScriptCompiler.NONE);
-        return new CodecService(service);
     }
 
 }
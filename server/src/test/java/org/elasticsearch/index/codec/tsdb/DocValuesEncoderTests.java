@@ -0,0 +1,106 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.codec.tsdb;
+
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.lessThan;
+
+public class DocValuesEncoderTests extends ESTestCase {
+
+    public void testEncodeConstant() throws IOException {
+        long value = randomLong();
+        long[] values = new long[DocValuesEncoder.BLOCK_SIZE];
+        Arrays.fill(values, value);
+        assertThat(assertRoundTrip(values, DocValuesEncoder.CONSTANT), lessThan(16));
+    }
+
+    public void testEncodeRegularTimestamps() throws IOException {
+        long start = randomLongBetween(0, 1L << 42);
+        long interval = randomLongBetween(1, 60_000);
+        long[] values = new long[DocValuesEncoder.BLOCK_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = start + i * interval;
+        }
+        assertThat(assertRoundTrip(values, DocValuesEncoder.DELTA_OF_DELTA), lessThan(24));
+    }
+
+    public void testEncodeJitteryTimestamps() throws IOException {
+        long start = randomLongBetween(0, 1L << 42);
+        long[] values = new long[DocValuesEncoder.BLOCK_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = start + i * 10_000 + randomIntBetween(-3, 3);
+        }
+        // a few bits per value instead of the ~20 bits the offsets would take
+        assertThat(assertRoundTrip(values, DocValuesEncoder.DELTA_OF_DELTA), lessThan(DocValuesEncoder.BLOCK_SIZE * 4 / 8 + 32));
+    }
+
+    public void testEncodeSlowlyChangingDoubles() throws IOException {
+        double value = randomDoubleBetween(-1000, 1000, true);
+        long[] values = new long[DocValuesEncoder.BLOCK_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            if (randomBoolean()) {
+                value += randomFrom(-0.5, 0.5);
+            }
+            values[i] = NumericUtils.doubleToSortableLong(value);
+        }
+        assertRoundTrip(values, -1);
+    }
+
+    public void testEncodeRepeatedDoubles() throws IOException {
+        long[] samples = new long[] {
+            NumericUtils.doubleToSortableLong(0.25),
+            NumericUtils.doubleToSortableLong(0.5),
+            NumericUtils.doubleToSortableLong(0.75) };
+        long[] values = new long[DocValuesEncoder.BLOCK_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples[randomIntBetween(0, samples.length - 1)];
+        }
+        // only a couple of high bits of the doubles differ
+        assertRoundTrip(values, DocValuesEncoder.XOR);
+    }
+
+    public void testEncodeRandom() throws IOException {
+        for (int iter = 0; iter < 100; iter++) {
+            long[] values = new long[randomIntBetween(1, DocValuesEncoder.BLOCK_SIZE)];
+            int bits = randomIntBetween(1, 64);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = randomBoolean()
+                    ? randomFrom(Long.MIN_VALUE, Long.MAX_VALUE, 0L, -1L)
+                    : bits == 64 ? randomLong() : randomLong() >> (64 - bits);
+            }
+            assertRoundTrip(values, -1);
+        }
+    }
+
+    /**
+     * Encodes and decodes the values, checking the encoding if it isn't {@code -1}, and returns the encoded size.
+     */
+    private static int assertRoundTrip(long[] values, int expectedEncoding) throws IOException {
+        DocValuesEncoder encoder = new DocValuesEncoder();
+        ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+        encoder.encode(values, values.length, out);
+        ByteBuffersDataInput in = out.toDataInput();
+        if (expectedEncoding != -1) {
+            assertEquals(expectedEncoding, in.readByte());
+            in.seek(0);
+        }
+        long[] decoded = new long[DocValuesEncoder.BLOCK_SIZE];
+        encoder.decode(in, decoded, values.length);
+        assertArrayEquals(values, Arrays.copyOf(decoded, values.length));
+        assertEquals("the whole block should be read", out.size(), in.position());
+        return Math.toIntExact(out.size());
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.codec.tsdb;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.BaseDocValuesFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs Lucene's doc values format tests against {@link ES80TSDBDocValuesFormat}. The format only supports numeric and sorted
+ * numeric doc values, so the tests of the other doc values types are overridden to check that they are rejected instead.
+ */
+public class ES80TSDBDocValuesFormatTests extends BaseDocValuesFormatTestCase {
+
+    private final Codec codec = TestUtil.alwaysDocValuesFormat(new ES80TSDBDocValuesFormat());
+
+    @Override
+    protected Codec getCodec() {
+        return codec;
+    }
+
+    @Override
+    protected void addRandomFields(Document doc) {
+        if (usually()) {
+            doc.add(new NumericDocValuesField("ndv", random().nextInt(1 << 12)));
+        }
+        if (rarely()) {
+            doc.add(new SortedNumericDocValuesField("sndv", random().nextLong()));
+        }
+    }
+
+    public void testNumeric() throws IOException {
+        LongSupplier timestamps = counter(TestUtil.nextLong(random(), 0, 1L << 42), 1000);
+        assertNumeric(TestUtil.nextInt(random(), 1, 5000), 1.0, timestamps);
+    }
+
+    public void testSparseNumeric() throws IOException {
+        LongSupplier counter = counter(TestUtil.nextLong(random(), 0, 1000), 10);
+        assertNumeric(TestUtil.nextInt(random(), 1, 5000), randomDensity(), counter);
+    }
+
+    public void testSortedNumeric() throws IOException {
+        assertSortedNumeric(
+            TestUtil.nextInt(random(), 1, 5000),
+            random().nextBoolean() ? 1.0 : randomDensity(),
+            TestUtil.nextInt(random(), 1, 4)
+        );
+    }
+
+    private void assertNumeric(int numDocs, double density, LongSupplier values) throws IOException {
+        Long[] expected = new Long[numDocs];
+        try (Directory dir = newDirectory()) {
+            try (IndexWriter writer = new IndexWriter(dir, indexWriterConfig())) {
+                for (int i = 0; i < numDocs; i++) {
+                    Document doc = new Document();
+                    if (random().nextDouble() < density) {
+                        expected[i] = values.getAsLong();
+                        doc.add(new NumericDocValuesField("field", expected[i]));
+                    }
+                    writer.addDocument(doc);
+                }
+                if (random().nextBoolean()) {
+                    writer.forceMerge(1);
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                int base = 0;
+                for (var context : reader.leaves()) {
+                    LeafReader leaf = context.reader();
+                    NumericDocValues docValues = leaf.getNumericDocValues("field");
+                    if (docValues == null) {
+                        for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+                            assertNull(expected[base + doc]);
+                        }
+                    } else if (random().nextBoolean()) {
+                        int expectedDoc = 0;
+                        for (int doc = docValues.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docValues.nextDoc()) {
+                            for (; expectedDoc < doc; expectedDoc++) {
+                                assertNull(expected[base + expectedDoc]);
+                            }
+                            assertEquals(expected[base + doc].longValue(), docValues.longValue());
+                            expectedDoc = doc + 1;
+                        }
+                        for (; expectedDoc < leaf.maxDoc(); expectedDoc++) {
+                            assertNull(expected[base + expectedDoc]);
+                        }
+                    } else {
+                        for (int doc = 0; doc < leaf.maxDoc(); doc += TestUtil.nextInt(random(), 1, 300)) {
+                            if (docValues.advanceExact(doc)) {
+                                assertEquals(expected[base + doc].longValue(), docValues.longValue());
+                            } else {
+                                assertNull(expected[base + doc]);
+                            }
+                        }
+                    }
+                    base += leaf.maxDoc();
+                }
+            }
+        }
+    }
+
+    private void assertSortedNumeric(int numDocs, double density, int maxValuesPerDoc) throws IOException {
+        List<long[]> expected = new ArrayList<>(numDocs);
+        LongSupplier values = counter(TestUtil.nextLong(random(), -1000, 1000), 100);
+        try (Directory dir = newDirectory()) {
+            try (IndexWriter writer = new IndexWriter(dir, indexWriterConfig())) {
+                for (int i = 0; i < numDocs; i++) {
+                    Document doc = new Document();
+                    long[] docValues = new long[random().nextDouble() < density ? TestUtil.nextInt(random(), 1, maxValuesPerDoc) : 0];
+                    for (int v = 0; v < docValues.length; v++) {
+                        docValues[v] = values.getAsLong();
+                        doc.add(new SortedNumericDocValuesField("field", docValues[v]));
+                    }
+                    Arrays.sort(docValues);
+                    expected.add(docValues);
+                    writer.addDocument(doc);
+                }
+                if (random().nextBoolean()) {
+                    writer.forceMerge(1);
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                int base = 0;
+                for (var context : reader.leaves()) {
+                    LeafReader leaf = context.reader();
+                    SortedNumericDocValues docValues = leaf.getSortedNumericDocValues("field");
+                    for (int doc = 0; doc < leaf.maxDoc(); doc += TestUtil.nextInt(random(), 1, 30)) {
+                        long[] expectedValues = expected.get(base + doc);
+                        if (docValues != null && docValues.advanceExact(doc)) {
+                            long[] actual = new long[docValues.docValueCount()];
+                            for (int v = 0; v < actual.length; v++) {
+                                actual[v] = docValues.nextValue();
+                            }
+                            assertArrayEquals(expectedValues, actual);
+                        } else {
+                            assertEquals(0, expectedValues.length);
+                        }
+                    }
+                    base += leaf.maxDoc();
+                }
+            }
+        }
+    }
+
+    /**
+     * A counter that's incremented by up to {@code maxIncrement} and is sometimes reset.
+     */
+    private static LongSupplier counter(long start, long maxIncrement) {
+        long[] value = new long[] { start };
+        return () -> {
+            if (random().nextInt(1000) == 0) {
+                value[0] = 0;
+            } else {
+                value[0] += TestUtil.nextLong(random(), 0, maxIncrement);
+            }
+            return value[0];
+        };
+    }
+
+    @Override
+    public void testTwoBinaryValues() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testVariouslyCompressibleBinaryValues() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testTwoFieldsMixed() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testThreeFieldsMixed() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testThreeFieldsMixed2() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testBytes() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testBytesTwoDocumentsMerged() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testBytesMergeAwayAllValues() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testSortedBytes() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedBytesTwoDocuments() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedBytesThreeDocuments() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedBytesTwoDocumentsMerged() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedMergeAwayAllValues() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testBytesWithNewline() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testMissingSortedBytes() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedTermsEnum() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testEmptySortedBytes() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testEmptyBytes() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testVeryLargeButLegalBytes() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testVeryLargeButLegalSortedBytes() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testCodecUsesOwnBytes() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testCodecUsesOwnSortedBytes() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testRandomSortedBytes() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testBinaryFixedLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testSparseBinaryFixedLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testBinaryVariableLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testSparseBinaryVariableLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testSortedFixedLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSparseSortedFixedLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedVariableLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSparseSortedVariableLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedSetOneValue() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoDocumentsMerged() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoValues() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoValuesUnordered() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetThreeValuesTwoDocs() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoDocumentsLastMissing() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoDocumentsLastMissingMerge() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoDocumentsFirstMissing() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTwoDocumentsFirstMissingMerge() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetMergeAwayAllValues() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetTermsEnum() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetFixedLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetVariableLengthVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetFixedLengthSingleValuedVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetVariableLengthSingleValuedVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetFixedLengthFewUniqueSetsVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetVariableLengthFewUniqueSetsVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetVariableLengthManyValuesPerDocVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedSetFixedLengthManyValuesPerDocVsStoredFields() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testTwoBytesOneMissing() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testTwoBytesOneMissingWithMerging() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testThreeBytesOneMissingWithMerging() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testThreads() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testEmptyBinaryValueOnPageSizes() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testSortedEnumAdvanceIndependently() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedSetEnumAdvanceIndependently() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testSortedMergeAwayAllValuesLargeSegment() throws IOException {
+        assertUnsupported(DocValuesType.SORTED);
+    }
+
+    @Override
+    public void testSortedSetMergeAwayAllValuesLargeSegment() throws IOException {
+        assertUnsupported(DocValuesType.SORTED_SET);
+    }
+
+    @Override
+    public void testBinaryMergeAwayAllValuesLargeSegment() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    @Override
+    public void testRandomAdvanceBinary() throws IOException {
+        assertUnsupported(DocValuesType.BINARY);
+    }
+
+    /**
+     * Checks that writing doc values of the given type fails since the format doesn't support them.
+     */
+    private void assertUnsupported(DocValuesType type) throws IOException {
+        Document doc = new Document();
+        BytesRef value = new BytesRef("value");
+        switch (type) {
+            case BINARY:
+                doc.add(new BinaryDocValuesField("field", value));
+                break;
+            case SORTED:
+                doc.add(new SortedDocValuesField("field", value));
+                break;
+            case SORTED_SET:
+                doc.add(new SortedSetDocValuesField("field", value));
+                break;
+            default:
+                throw new IllegalArgumentException("unexpected doc values type [" + type + "]");
+        }
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setCodec(codec))) {
+            writer.addDocument(doc);
+            UnsupportedOperationException e = expectThrows(UnsupportedOperationException.class, writer::commit);
+            String typeName = type.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+            assertEquals("field [field] has " + typeName + " doc values which aren't supported by [ES80TSDB]", e.getMessage());
+        }
+    }
+
+    private static double randomDensity() {
+        return 0.01 + random().nextDouble() * 0.98;
+    }
+
+    private IndexWriterConfig indexWriterConfig() {
+        // merging adjacent segments only keeps the documents in the order they were added in
+        return new IndexWriterConfig().setCodec(codec)
+            .setMergePolicy(new LogDocMergePolicy())
+            .setMaxBufferedDocs(TestUtil.nextInt(random(), 100, 2000));
+    }
+}
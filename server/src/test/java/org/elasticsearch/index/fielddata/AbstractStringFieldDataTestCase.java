@@ -10,6 +10,7 @@ package org.elasticsearch.index.fielddata;
 
 import com.carrotsearch.randomizedtesting.generators.RandomPicks;
 
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
@@ -17,6 +18,8 @@ import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -33,17 +36,20 @@ import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.join.QueryBitSetProducer;
 import org.apache.lucene.search.join.ScoreMode;
 import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.TestUtil;
 import org.apache.lucene.util.UnicodeUtil;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.index.fielddata.IndexFieldData.XFieldComparatorSource.Nested;
 import org.elasticsearch.index.fielddata.fieldcomparator.BytesRefFieldComparatorSource;
 import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.search.MultiValueMode;
 
 import java.io.IOException;
@@ -51,6 +57,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -634,4 +641,77 @@ public abstract class AbstractStringFieldDataTestCase extends AbstractFieldDataI
         indexService.clearCaches(false, true);
         assertThat(indicesFieldDataCache.getCache().weight(), equalTo(0L));
     }
+
+    public void testGlobalOrdinalsAreReusedAfterDeletes() throws Exception {
+        fillExtendedMvSet();
+        refreshReader();
+        IndexOrdinalsFieldData ifd = getForField("string", "value", hasDocValues());
+        GlobalOrdinalsIndexFieldData previous = loadCachedGlobalOrdinals(ifd);
+        assertFalse(previous.isReused());
+
+        // deletes keep the segments, and so their terms
+        writer.deleteDocuments(new Term("_id", "2"));
+        refreshReader();
+        assertThat(topLevelReader.leaves().size(), equalTo(3));
+        GlobalOrdinalsIndexFieldData globalOrdinals = loadCachedGlobalOrdinals(ifd);
+        assertNotSame(previous, globalOrdinals);
+        assertTrue(globalOrdinals.isReused());
+        assertThat(globalOrdinals.getOrdinalMap(), sameInstance(previous.getOrdinalMap()));
+
+        // a new segment needs its terms to be merged with the terms of the other segments
+        Document d = new Document();
+        addField(d, "_id", "9");
+        addField(d, "value", "00");
+        addField(d, "value", "06");
+        addField(d, "value", "065");
+        addField(d, "value", "11");
+        writer.addDocument(d);
+        writer.commit();
+        refreshReader();
+        assertThat(topLevelReader.leaves().size(), equalTo(4));
+        globalOrdinals = loadCachedGlobalOrdinals(ifd);
+        assertFalse(globalOrdinals.isReused());
+        assertThat(globalOrdinals.getOrdinalMap(), not(sameInstance(previous.getOrdinalMap())));
+
+        // nothing is reused once the fielddata cache is cleared
+        indexService.clearCaches(false, true);
+        writer.deleteDocuments(new Term("_id", "9"));
+        refreshReader();
+        assertFalse(loadCachedGlobalOrdinals(ifd).isReused());
+    }
+
+    public void testRetainedGlobalOrdinalsAreReleasedWithTheShard() throws Exception {
+        CircuitBreaker breaker = getInstanceFromNode(CircuitBreakerService.class).getBreaker(CircuitBreaker.FIELDDATA);
+        long initialBytes = breaker.getUsed();
+        fillExtendedMvSet();
+        refreshReader();
+        IndexOrdinalsFieldData ifd = getForField("string", "value", hasDocValues());
+        GlobalOrdinalsIndexFieldData globalOrdinals = loadCachedGlobalOrdinals(ifd);
+        long usedBytes = breaker.getUsed();
+        assertThat(usedBytes - initialBytes, greaterThanOrEqualTo(globalOrdinals.ramBytesUsed()));
+
+        // the ordinal map outlives the reader so that the next global ordinals can be built from it, and stays accounted for
+        topLevelReader.close();
+        assertThat(breaker.getUsed(), equalTo(usedBytes));
+
+        // closing the shard closes its segments, which releases everything
+        writer.close();
+        writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+        topLevelReader = null;
+        assertThat(indicesFieldDataCache.getCache().weight(), equalTo(0L));
+        assertThat(breaker.getUsed(), equalTo(initialBytes));
+    }
+
+    private GlobalOrdinalsIndexFieldData loadCachedGlobalOrdinals(IndexOrdinalsFieldData ifd) {
+        ifd.loadGlobal(topLevelReader);
+        GlobalOrdinalsIndexFieldData cachedInstance = null;
+        for (Accountable ramUsage : indicesFieldDataCache.getCache().values()) {
+            if (ramUsage instanceof GlobalOrdinalsIndexFieldData) {
+                assertNull(cachedInstance);
+                cachedInstance = (GlobalOrdinalsIndexFieldData) ramUsage;
+            }
+        }
+        assertNotNull(cachedInstance);
+        return cachedInstance;
+    }
 }
@@ -14,9 +14,12 @@ import org.apache.lucene.document.LatLonPoint;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.core.CheckedConsumer;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentFactory;
 import org.elasticsearch.xcontent.XContentParser;
@@ -54,6 +57,161 @@ public class DocumentParserTests extends MapperServiceTestCase {
         return List.of(new DocumentParserTestsPlugin());
     }
 
+    @Override
+    protected Settings getIndexSettings() {
+        // exercise both the generic code path and the one that resolves mapped fields with the parse plan
+        return Settings.builder()
+            .put(super.getIndexSettings())
+            .put(MapperService.INDEX_MAPPING_PARSE_PLAN_ENABLED_SETTING.getKey(), randomBoolean())
+            .build();
+    }
+
+    public void testParsePlanMatchesGenericParsing() throws Exception {
+        XContentBuilder mapping = mapping(b -> {
+            b.startObject("message").field("type", "text").field("copy_to", "all").endObject();
+            b.startObject("all").field("type", "keyword").endObject();
+            b.startObject("tags").field("type", "keyword").endObject();
+            b.startObject("location").field("type", "geo_point").endObject();
+            b.startObject("alias").field("type", "alias").field("path", "tags").endObject();
+            b.startObject("host");
+            {
+                b.startObject("properties");
+                b.startObject("name").field("type", "keyword").endObject();
+                b.startObject("ip").field("type", "ip").endObject();
+                b.startObject("os").startObject("properties").startObject("family").field("type", "keyword").endObject().endObject();
+                b.endObject();
+                b.endObject();
+            }
+            b.endObject();
+            b.startObject("items").field("type", "nested");
+            {
+                b.startObject("properties").startObject("sku").field("type", "keyword").endObject().endObject();
+            }
+            b.endObject();
+            b.startObject("blob").field("type", "object").field("enabled", false).endObject();
+            b.startObject("strict").field("type", "object").field("dynamic", "strict");
+            {
+                b.startObject("properties").startObject("value").field("type", "long").endObject().endObject();
+            }
+            b.endObject();
+        });
+        Settings.Builder settings = Settings.builder().put(SETTINGS);
+        DocumentMapper planned = createMapperService(
+            settings.put(MapperService.INDEX_MAPPING_PARSE_PLAN_ENABLED_SETTING.getKey(), true).build(),
+            mapping
+        ).documentMapper();
+        DocumentMapper generic = createMapperService(
+            settings.put(MapperService.INDEX_MAPPING_PARSE_PLAN_ENABLED_SETTING.getKey(), false).build(),
+            mapping
+        ).documentMapper();
+
+        // each group holds alternative values of the same fields, as a field may only appear once per object
+        List<List<CheckedConsumer<XContentBuilder, IOException>>> groups = List.of(
+            List.of(b -> b.field("message", "quick brown fox")),
+            List.of(
+                b -> b.array("tags", "a", "b"),
+                b -> b.nullField("tags"),
+                b -> b.startArray("tags").value("a").nullValue().startArray().value("b").endArray().endArray()
+            ),
+            List.of(b -> b.startObject("location").field("lat", 1.0).field("lon", 2.0).endObject(), b -> b.array("location", 2.0, 1.0)),
+            List.of(
+                b -> b.startObject("host").field("name", "h1").field("ip", "10.0.0.1").field("unmapped", "u").endObject(),
+                b -> b.startArray("host")
+                    .startObject().field("name", "h2").endObject()
+                    .startObject().field("ip", "::1").endObject()
+                    .endArray()
+            ),
+            List.of(b -> b.field("host.name", "h3").field("host.os.family", "linux")),
+            List.of(b -> b.startObject("host.os").field("family", "windows").endObject()),
+            List.of(
+                b -> b.startArray("items")
+                    .startObject().field("sku", "s1").endObject()
+                    .startObject().field("sku", "s2").endObject()
+                    .endArray(),
+                b -> b.startObject("items").field("sku", "s3").endObject()
+            ),
+            List.of(b -> b.startObject("blob").field("anything", 1).endObject()),
+            List.of(b -> b.field("blob.anything", 1)),
+            List.of(b -> b.startObject("strict").field("value", 42).endObject()),
+            List.of(b -> b.field("strict.value", 43)),
+            List.of(b -> b.field("unmapped", "value"), b -> b.startObject("unmapped").field("field", 1).endObject()),
+            List.of(b -> b.field("other.dotted", 1))
+        );
+        for (int i = 0; i < 20; i++) {
+            List<CheckedConsumer<XContentBuilder, IOException>> docFields = new ArrayList<>();
+            for (List<CheckedConsumer<XContentBuilder, IOException>> group : groups) {
+                if (randomBoolean()) {
+                    docFields.add(randomFrom(group));
+                }
+            }
+            Collections.shuffle(docFields, random());
+            SourceToParse source = source(b -> {
+                for (CheckedConsumer<XContentBuilder, IOException> field : docFields) {
+                    field.accept(b);
+                }
+            });
+            ParsedDocument expected = generic.parse(source);
+            ParsedDocument actual = planned.parse(source);
+            assertEquals(expected.docs().size(), actual.docs().size());
+            for (int d = 0; d < expected.docs().size(); d++) {
+                assertEquals(expected.docs().get(d).getFields().toString(), actual.docs().get(d).getFields().toString());
+            }
+            if (expected.dynamicMappingsUpdate() == null) {
+                assertNull(actual.dynamicMappingsUpdate());
+            } else {
+                assertEquals(Strings.toString(expected.dynamicMappingsUpdate()), Strings.toString(actual.dynamicMappingsUpdate()));
+            }
+        }
+
+        for (CheckedConsumer<XContentBuilder, IOException> invalid : List.<CheckedConsumer<XContentBuilder, IOException>>of(
+            b -> b.startObject("strict").field("other", 1).endObject(),
+            b -> b.field("alias", "value"),
+            b -> b.field("_id", "value"),
+            b -> b.startObject("host").field("name", "a").endObject().field("host.name", "b").field("items.sku", "c")
+        )) {
+            SourceToParse source = source(invalid);
+            Exception expected = expectThrows(MapperParsingException.class, () -> generic.parse(source));
+            Exception actual = expectThrows(MapperParsingException.class, () -> planned.parse(source));
+            assertEquals(expected.getMessage(), actual.getMessage());
+            if (expected.getCause() != null) {
+                assertEquals(expected.getCause().getMessage(), actual.getCause().getMessage());
+            }
+        }
+    }
+
+    public void testParsePreParsedSource() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(mapping(b -> {
+            b.startObject("keyword").field("type", "keyword").endObject();
+            b.startObject("long").field("type", "long").endObject();
+            b.startObject("double").field("type", "double").endObject();
+            b.startObject("date").field("type", "date").endObject();
+            b.startObject("bool").field("type", "boolean").endObject();
+            b.startObject("obj").startObject("properties").startObject("text").field("type", "text").endObject().endObject().endObject();
+        }));
+        for (int i = 0; i < 20; i++) {
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+            builder.field("keyword", randomFrom(randomAlphaOfLength(5), randomInt(), randomBoolean()));
+            builder.field("long", randomLong());
+            builder.field("double", randomFrom(randomDouble(), randomInt()));
+            builder.field("date", randomFrom(randomNonNegativeLong(), "2021-01-01T00:00:00Z"));
+            builder.array("bool", randomBoolean(), "true");
+            builder.startObject("obj").field("text", randomUnicodeOfLength(10)).field("dynamic", randomInt()).endObject();
+            builder.startArray("unmapped").value(randomAlphaOfLength(3)).nullValue().value("1.5").endArray();
+            builder.endObject();
+            IndexRequest request = new IndexRequest("test").id("1").source(builder);
+            assertTrue(request.parseSource());
+
+            ParsedDocument expected = mapper.parse(new SourceToParse("test", "1", request.source(), XContentType.JSON));
+            ParsedDocument actual = mapper.parse(
+                new SourceToParse("test", "1", request.source(), XContentType.JSON, null, Map.of(), request.parsedSource())
+            );
+            assertEquals(expected.rootDoc().getFields().toString(), actual.rootDoc().getFields().toString());
+            assertEquals(Strings.toString(expected.dynamicMappingsUpdate()), Strings.toString(actual.dynamicMappingsUpdate()));
+            assertEquals(request.source(), actual.source());
+            assertEquals(XContentType.JSON, actual.getXContentType());
+        }
+    }
+
     public void testParseWithRuntimeField() throws Exception {
         DocumentMapper mapper = createDocumentMapper(runtimeFieldMapping(b -> b.field("type", "keyword")));
         ParsedDocument doc = mapper.parse(source(b -> b.field("field", "value")));
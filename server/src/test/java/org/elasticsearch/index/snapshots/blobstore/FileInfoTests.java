@@ -11,6 +11,7 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo;
 import org.elasticsearch.index.store.StoreFileMetadata;
@@ -23,7 +24,9 @@ import org.elasticsearch.xcontent.XContentType;
 import org.elasticsearch.xcontent.json.JsonXContent;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import static org.elasticsearch.index.store.StoreFileMetadata.UNAVAILABLE_WRITER_UUID;
 import static org.hamcrest.Matchers.containsString;
@@ -198,4 +201,50 @@ public class FileInfoTests extends ESTestCase {
             assertEquals(numBytes, metadata.length());
         }
     }
+
+    public void testChunkedFileInfo() throws IOException {
+        final int numberOfChunks = randomIntBetween(1, 10);
+        final List<FileInfo.Chunk> chunks = new ArrayList<>();
+        long length = 0L;
+        for (int i = 0; i < numberOfChunks; i++) {
+            final FileInfo.Chunk chunk = new FileInfo.Chunk("__chunk-" + randomAlphaOfLength(10), randomLongBetween(1L, 1024L));
+            chunks.add(chunk);
+            length += chunk.length();
+        }
+        final long fileLength = length;
+        final StoreFileMetadata metadata = new StoreFileMetadata("foo", fileLength, "666", MIN_SUPPORTED_LUCENE_VERSION.toString());
+        final FileInfo info = FileInfo.chunked("_foo", metadata, chunks);
+        assertThat(info.numberOfParts(), equalTo(numberOfChunks));
+        assertNull(info.partSize());
+        for (int i = 0; i < numberOfChunks; i++) {
+            assertThat(info.partName(i), equalTo(chunks.get(i).name()));
+            assertThat(info.partBytes(i), equalTo(chunks.get(i).length()));
+        }
+
+        final XContentBuilder builder = XContentFactory.contentBuilder(XContentType.JSON);
+        FileInfo.toXContent(info, builder, ToXContent.EMPTY_PARAMS);
+        final FileInfo parsedInfo;
+        try (XContentParser parser = createParser(JsonXContent.jsonXContent, BytesReference.bytes(builder))) {
+            parser.nextToken();
+            parsedInfo = FileInfo.fromXContent(parser);
+        }
+        assertThat(parsedInfo.chunks(), equalTo(chunks));
+        assertTrue(parsedInfo.isSame(info));
+
+        final BytesStreamOutput out = new BytesStreamOutput();
+        info.writeTo(out);
+        final FileInfo readInfo = new FileInfo(out.bytes().streamInput());
+        assertThat(readInfo.chunks(), equalTo(chunks));
+        assertTrue(readInfo.isSame(info));
+
+        expectThrows(
+            IllegalArgumentException.class,
+            () -> FileInfo.chunked(
+                "_foo",
+                new StoreFileMetadata("foo", fileLength + 1, "666", MIN_SUPPORTED_LUCENE_VERSION.toString()),
+                chunks
+            )
+        );
+        expectThrows(IllegalArgumentException.class, () -> FileInfo.chunked("_foo", metadata, List.of()));
+    }
 }
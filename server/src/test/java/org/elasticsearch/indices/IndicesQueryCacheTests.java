@@ -28,6 +28,7 @@ import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.index.cache.query.QueryCacheStats;
 import org.elasticsearch.index.shard.ShardId;
@@ -110,6 +111,7 @@ public class IndicesQueryCacheTests extends ESTestCase {
         Settings settings = Settings.builder()
                 .put(IndicesQueryCache.INDICES_CACHE_QUERY_COUNT_SETTING.getKey(), 10)
                 .put(IndicesQueryCache.INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING.getKey(), true)
+                .put(IndicesQueryCache.INDICES_QUERIES_CACHE_STRIPES_SETTING.getKey(), 1)
                 .build();
         IndicesQueryCache cache = new IndicesQueryCache(settings);
         s.setQueryCache(cache);
@@ -191,6 +193,7 @@ public class IndicesQueryCacheTests extends ESTestCase {
         Settings settings = Settings.builder()
                 .put(IndicesQueryCache.INDICES_CACHE_QUERY_COUNT_SETTING.getKey(), 10)
                 .put(IndicesQueryCache.INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING.getKey(), true)
+                .put(IndicesQueryCache.INDICES_QUERIES_CACHE_STRIPES_SETTING.getKey(), 1)
                 .build();
         IndicesQueryCache cache = new IndicesQueryCache(settings);
         s1.setQueryCache(cache);
@@ -291,6 +294,90 @@ public class IndicesQueryCacheTests extends ESTestCase {
         cache.close(); // this triggers some assertions
     }
 
+    public void testStripes() throws IOException {
+        Settings settings = Settings.builder()
+                .put(IndicesQueryCache.INDICES_CACHE_QUERY_COUNT_SETTING.getKey(), 20)
+                .put(IndicesQueryCache.INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING.getKey(), true)
+                .put(IndicesQueryCache.INDICES_QUERIES_CACHE_STRIPES_SETTING.getKey(), 2)
+                .build();
+        IndicesQueryCache cache = new IndicesQueryCache(settings);
+
+        // find two shards that are cached in different stripes
+        ShardId shard1 = new ShardId("index", "_na_", 0);
+        int id = 1;
+        while (cache.stripe(new ShardId("index", "_na_", id)) == cache.stripe(shard1)) {
+            id++;
+        }
+        ShardId shard2 = new ShardId("index", "_na_", id);
+
+        Directory dir1 = newDirectory();
+        IndexWriter w1 = new IndexWriter(dir1, newIndexWriterConfig());
+        w1.addDocument(new Document());
+        DirectoryReader r1 = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(w1), shard1);
+        w1.close();
+        IndexSearcher s1 = new IndexSearcher(r1);
+        s1.setQueryCachingPolicy(alwaysCachePolicy());
+        s1.setQueryCache(cache);
+
+        Directory dir2 = newDirectory();
+        IndexWriter w2 = new IndexWriter(dir2, newIndexWriterConfig());
+        w2.addDocument(new Document());
+        DirectoryReader r2 = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(w2), shard2);
+        w2.close();
+        IndexSearcher s2 = new IndexSearcher(r2);
+        s2.setQueryCachingPolicy(alwaysCachePolicy());
+        s2.setQueryCache(cache);
+
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(1, s1.count(new DummyQuery(i)));
+        }
+        // the second shard fills its own stripe, which holds half of the entries of the cache
+        for (int i = 0; i < 20; ++i) {
+            assertEquals(1, s2.count(new DummyQuery(i)));
+        }
+
+        QueryCacheStats stats1 = cache.getStats(shard1);
+        assertEquals(5L, stats1.getCacheSize()); // not evicted
+        assertEquals(5L, stats1.getCacheCount());
+        assertEquals(5L, stats1.getMissCount());
+
+        QueryCacheStats stats2 = cache.getStats(shard2);
+        assertEquals(10L, stats2.getCacheSize());
+        assertEquals(20L, stats2.getCacheCount());
+        assertEquals(20L, stats2.getMissCount());
+
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(1, s1.count(new DummyQuery(i)));
+        }
+        stats1 = cache.getStats(shard1);
+        assertEquals(5L, stats1.getHitCount());
+
+        cache.clearIndex("index");
+        assertEquals(0L, cache.getStats(shard1).getCacheSize());
+        assertEquals(0L, cache.getStats(shard2).getCacheSize());
+
+        IOUtils.close(r1, dir1, r2, dir2);
+        cache.onClose(shard1);
+        cache.onClose(shard2);
+        cache.close(); // this triggers some assertions
+    }
+
+    public void testDefaultStripes() {
+        // small nodes keep a single LRU cache
+        assertEquals(1, defaultStripes(randomIntBetween(1, Math.min(7, Runtime.getRuntime().availableProcessors()))));
+        if (Runtime.getRuntime().availableProcessors() >= 8) {
+            assertEquals(2, defaultStripes(8));
+        }
+        if (Runtime.getRuntime().availableProcessors() >= 32) {
+            assertEquals(8, defaultStripes(randomIntBetween(32, Runtime.getRuntime().availableProcessors())));
+        }
+    }
+
+    private static int defaultStripes(int processors) {
+        Settings settings = Settings.builder().put(EsExecutors.NODE_PROCESSORS_SETTING.getKey(), processors).build();
+        return IndicesQueryCache.INDICES_QUERIES_CACHE_STRIPES_SETTING.get(settings);
+    }
+
     // Make sure the cache behaves correctly when a segment that is associated
     // with an empty cache gets closed. In that particular case, the eviction
     // callback is called with a number of evicted entries equal to 0
@@ -319,6 +406,7 @@ public class IndicesQueryCacheTests extends ESTestCase {
         Settings settings = Settings.builder()
                 .put(IndicesQueryCache.INDICES_CACHE_QUERY_COUNT_SETTING.getKey(), 10)
                 .put(IndicesQueryCache.INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING.getKey(), true)
+                .put(IndicesQueryCache.INDICES_QUERIES_CACHE_STRIPES_SETTING.getKey(), 1)
                 .build();
         IndicesQueryCache cache = new IndicesQueryCache(settings);
         s1.setQueryCache(cache);
@@ -401,6 +489,7 @@ public class IndicesQueryCacheTests extends ESTestCase {
         Settings settings = Settings.builder()
                 .put(IndicesQueryCache.INDICES_CACHE_QUERY_COUNT_SETTING.getKey(), 10)
                 .put(IndicesQueryCache.INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING.getKey(), true)
+                .put(IndicesQueryCache.INDICES_QUERIES_CACHE_STRIPES_SETTING.getKey(), 1)
                 .build();
         IndicesQueryCache cache = new IndicesQueryCache(settings);
         s.setQueryCache(cache);
@@ -10,6 +10,8 @@ package org.elasticsearch.indices.recovery;
 
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.test.ESTestCase;
 
@@ -69,4 +71,40 @@ public class RecoverySettingsDynamicUpdateTests extends ESTestCase {
         ).build());
         assertEquals(new TimeValue(duration, timeUnit), recoverySettings.internalActionLongTimeout());
     }
+
+    public void testSnapshotRangeReadBudget() {
+        final int maxConcurrentReads = between(0, 10);
+        clusterSettings.applySettings(Settings.builder().put(
+                RecoverySettings.INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS.getKey(), maxConcurrentReads
+        ).build());
+        assertEquals(maxConcurrentReads, recoverySettings.getMaxConcurrentSnapshotRangeReads());
+        for (int i = 0; i < maxConcurrentReads; i++) {
+            assertTrue(recoverySettings.tryAcquireSnapshotRangeRead());
+        }
+        assertFalse(recoverySettings.tryAcquireSnapshotRangeRead());
+        assertEquals(maxConcurrentReads, recoverySettings.getOngoingSnapshotRangeReads());
+
+        if (maxConcurrentReads > 0) {
+            recoverySettings.releaseSnapshotRangeRead();
+            assertTrue(recoverySettings.tryAcquireSnapshotRangeRead());
+        }
+
+        // lowering the limit does not affect ongoing reads but prevents new ones until enough of them complete
+        clusterSettings.applySettings(Settings.builder().put(
+                RecoverySettings.INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS.getKey(), 0
+        ).build());
+        assertFalse(recoverySettings.tryAcquireSnapshotRangeRead());
+        for (int i = 0; i < maxConcurrentReads; i++) {
+            recoverySettings.releaseSnapshotRangeRead();
+        }
+        assertEquals(0, recoverySettings.getOngoingSnapshotRangeReads());
+    }
+
+    public void testSnapshotRangeReadSize() {
+        final ByteSizeValue rangeReadSize = new ByteSizeValue(between(1, 128), ByteSizeUnit.MB);
+        clusterSettings.applySettings(Settings.builder().put(
+                RecoverySettings.INDICES_RECOVERY_SNAPSHOT_RANGE_READ_SIZE.getKey(), rangeReadSize
+        ).build());
+        assertEquals(rangeReadSize, recoverySettings.getSnapshotRangeReadSize());
+    }
 }
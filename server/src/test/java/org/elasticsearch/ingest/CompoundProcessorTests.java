@@ -12,6 +12,7 @@ import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.test.ESTestCase;
 import org.junit.Before;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -354,6 +355,143 @@ public class CompoundProcessorTests extends ESTestCase {
         assertThat(ingestProcessorException.getHeader("pipeline_origin"), equalTo(List.of("2", "1")));
     }
 
+    public void testManySynchronousProcessors() {
+        int numProcessors = 10_000;
+        TestProcessor[] processors = new TestProcessor[numProcessors];
+        for (int i = 0; i < numProcessors; i++) {
+            processors[i] = new TestProcessor(ingestDocument -> {});
+        }
+        CompoundProcessor compoundProcessor = new CompoundProcessor(processors);
+        IngestDocument[] holder = new IngestDocument[1];
+        // synchronous processors run in a loop, so this doesn't nest a callback per processor
+        compoundProcessor.execute(ingestDocument, (result, e) -> holder[0] = result);
+        assertThat(holder[0], sameInstance(ingestDocument));
+        for (TestProcessor processor : processors) {
+            assertThat(processor.getInvokedCounter(), equalTo(1));
+        }
+    }
+
+    public void testSynchronousAndAsyncProcessors() {
+        List<String> invoked = new ArrayList<>();
+        Processor async = new AbstractProcessor(null, null) {
+            @Override
+            public IngestDocument execute(IngestDocument ingestDocument) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void execute(IngestDocument ingestDocument, BiConsumer<IngestDocument, Exception> handler) {
+                invoked.add("async");
+                handler.accept(ingestDocument, null);
+            }
+
+            @Override
+            public String getType() {
+                return "async";
+            }
+        };
+        TestProcessor first = new TestProcessor(ingestDocument -> invoked.add("first"));
+        TestProcessor failing = new TestProcessor(ingestDocument -> {
+            invoked.add("failing");
+            throw new RuntimeException("error");
+        });
+        TestProcessor last = new TestProcessor(ingestDocument -> invoked.add("last"));
+        assertThat(CompoundProcessor.isSynchronous(first), is(true));
+        assertThat(CompoundProcessor.isSynchronous(async), is(false));
+
+        CompoundProcessor compoundProcessor = new CompoundProcessor(true, List.of(first, async, failing, async, last), List.of());
+        IngestDocument[] holder = new IngestDocument[1];
+        compoundProcessor.execute(ingestDocument, (result, e) -> holder[0] = result);
+        assertThat(holder[0], sameInstance(ingestDocument));
+        assertThat(invoked, equalTo(List.of("first", "async", "failing", "async", "last")));
+        assertStats(2, compoundProcessor, 0, 1, 1, 0);
+        assertStats(4, compoundProcessor, 0, 1, 0, 0);
+    }
+
+    public void testBatchedProcessors() {
+        List<Integer> batchSizes = new ArrayList<>();
+        class Batch extends AbstractProcessor implements BatchProcessor {
+            Batch() {
+                super(null, null);
+            }
+
+            @Override
+            public IngestDocument execute(IngestDocument ingestDocument) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers) {
+                batchSizes.add(ingestDocuments.size());
+                for (int i = 0; i < ingestDocuments.size(); i++) {
+                    IngestDocument ingestDocument = ingestDocuments.get(i);
+                    if (ingestDocument.hasField("drop")) {
+                        handlers.get(i).accept(null, null);
+                    } else if (ingestDocument.hasField("fail_batch")) {
+                        handlers.get(i).accept(null, new RuntimeException("error"));
+                    } else {
+                        ingestDocument.setFieldValue("batched", true);
+                        handlers.get(i).accept(ingestDocument, null);
+                    }
+                }
+            }
+
+            @Override
+            public String getType() {
+                return "batch";
+            }
+        }
+        Processor batch = new Batch();
+        TestProcessor first = new TestProcessor(ingestDocument -> {
+            if (ingestDocument.hasField("fail_first")) {
+                throw new RuntimeException("error");
+            }
+        });
+        TestProcessor last = new TestProcessor(ingestDocument -> ingestDocument.setFieldValue("last", true));
+        TestProcessor onFailure = new TestProcessor(ingestDocument -> ingestDocument.setFieldValue("on_failure", true));
+        assertThat(CompoundProcessor.isBatched(batch), is(true));
+        assertThat(CompoundProcessor.isBatched(first), is(false));
+        assertThat(CompoundProcessor.isBatched(new CompoundProcessor(first, batch)), is(true));
+        assertThat(CompoundProcessor.isBatched(new CompoundProcessor(first, last)), is(false));
+
+        CompoundProcessor compoundProcessor = new CompoundProcessor(false, List.of(first, batch, last), List.of(onFailure), () -> 0L);
+        List<String> fields = List.of("none", "fail_first", "drop", "fail_batch", "none");
+        List<IngestDocument> ingestDocuments = new ArrayList<>();
+        List<BiConsumer<IngestDocument, Exception>> handlers = new ArrayList<>();
+        IngestDocument[] results = new IngestDocument[fields.size()];
+        int[] invocations = new int[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            final int slot = i;
+            Map<String, Object> source = new HashMap<>();
+            source.put(fields.get(i), true);
+            ingestDocuments.add(new IngestDocument(source, new HashMap<>()));
+            handlers.add((result, e) -> {
+                assertThat(e, nullValue());
+                results[slot] = result;
+                invocations[slot]++;
+            });
+        }
+        compoundProcessor.executeBatch(ingestDocuments, handlers);
+
+        assertThat(batchSizes, equalTo(List.of(4)));
+        for (int i = 0; i < fields.size(); i++) {
+            assertThat(invocations[i], equalTo(1));
+        }
+        for (int i : new int[] { 0, 4 }) {
+            assertThat(results[i].getFieldValue("batched", Boolean.class), is(true));
+            assertThat(results[i].getFieldValue("last", Boolean.class), is(true));
+            assertThat(results[i].hasField("on_failure"), is(false));
+        }
+        for (int i : new int[] { 1, 3 }) {
+            assertThat(results[i].getFieldValue("on_failure", Boolean.class), is(true));
+            assertThat(results[i].hasField("last"), is(false));
+        }
+        assertThat(results[2], nullValue());
+        assertStats(0, compoundProcessor, 0, 5, 1, 0);
+        assertStats(1, compoundProcessor, 0, 4, 1, 0);
+        assertStats(2, compoundProcessor, 0, 2, 0, 0);
+    }
+
     private void assertStats(CompoundProcessor compoundProcessor, long count,  long failed, long time) {
         assertStats(0, compoundProcessor, 0L, count, failed, time);
     }
@@ -1269,6 +1269,140 @@ public class IngestServiceTests extends ESTestCase {
         }
     }
 
+    public void testBulkRequestExecutionWithoutBatchProcessorsRunsDocumentByDocument() throws Exception {
+        List<String> executions = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Processor.Factory> map = new HashMap<>(2);
+        map.put("record", (factories, tag, description, config) -> new AbstractProcessor(tag, description) {
+            @Override
+            public IngestDocument execute(IngestDocument ingestDocument) {
+                executions.add(getTag() + ":" + ingestDocument.getFieldValue("slot", Integer.class));
+                return ingestDocument;
+            }
+
+            @Override
+            public String getType() {
+                return "record";
+            }
+        });
+        IngestService ingestService = createWithProcessors(map);
+        ClusterState clusterState = ClusterState.builder(new ClusterName("_name")).build();
+        ClusterState previousClusterState = clusterState;
+        clusterState = IngestService.innerPut(new PutPipelineRequest("_id",
+            new BytesArray("{\"processors\": [{\"record\": {\"tag\": \"default\"}}]}"), XContentType.JSON), clusterState);
+        clusterState = IngestService.innerPut(new PutPipelineRequest("_final",
+            new BytesArray("{\"processors\": [{\"record\": {\"tag\": \"final\"}}]}"), XContentType.JSON), clusterState);
+        ingestService.applyClusterState(new ClusterChangedEvent("", clusterState, previousClusterState));
+
+        BulkRequest bulkRequest = new BulkRequest();
+        int numRequest = scaledRandomIntBetween(8, 64);
+        List<String> expectedExecutions = new ArrayList<>();
+        for (int i = 0; i < numRequest; i++) {
+            boolean hasFinalPipeline = randomBoolean();
+            IndexRequest indexRequest = new IndexRequest("_index").id("_id").setPipeline("_id")
+                .setFinalPipeline(hasFinalPipeline ? "_final" : "_none");
+            indexRequest.source(XContentType.JSON, "slot", i);
+            bulkRequest.add(indexRequest);
+            // each document goes through its final pipeline before the next document is even read
+            expectedExecutions.add("default:" + i);
+            if (hasFinalPipeline) {
+                expectedExecutions.add("final:" + i);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        BiConsumer<Integer, Exception> requestItemErrorHandler = mock(BiConsumer.class);
+        @SuppressWarnings("unchecked")
+        final BiConsumer<Thread, Exception> completionHandler = mock(BiConsumer.class);
+        ingestService.executeBulkRequest(bulkRequest.numberOfActions(), bulkRequest.requests(), requestItemErrorHandler,
+            completionHandler, indexReq -> {}, Names.WRITE);
+
+        verify(requestItemErrorHandler, never()).accept(any(), any());
+        verify(completionHandler, times(1)).accept(Thread.currentThread(), null);
+        assertThat(executions, equalTo(expectedExecutions));
+    }
+
+    public void testBulkRequestExecutionWithBatchProcessors() throws Exception {
+        List<String> batches = Collections.synchronizedList(new ArrayList<>());
+        class Batch extends AbstractProcessor implements BatchProcessor {
+            Batch(String tag) {
+                super(tag, null);
+            }
+
+            @Override
+            public IngestDocument execute(IngestDocument ingestDocument) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers) {
+                batches.add(getTag() + ":" + ingestDocuments.size());
+                for (int i = 0; i < ingestDocuments.size(); i++) {
+                    ingestDocuments.get(i).setFieldValue(getTag(), true);
+                    handlers.get(i).accept(ingestDocuments.get(i), null);
+                }
+            }
+
+            @Override
+            public String getType() {
+                return "batch";
+            }
+        }
+        Map<String, Processor.Factory> map = new HashMap<>(2);
+        map.put("batch", (factories, tag, description, config) -> new Batch(tag));
+        IngestService ingestService = createWithProcessors(map);
+        ClusterState clusterState = ClusterState.builder(new ClusterName("_name")).build();
+        ClusterState previousClusterState = clusterState;
+        clusterState = IngestService.innerPut(new PutPipelineRequest("_id",
+            new BytesArray("{\"processors\": [{\"batch\": {\"tag\": \"default\"}}]}"), XContentType.JSON), clusterState);
+        clusterState = IngestService.innerPut(new PutPipelineRequest("_final",
+            new BytesArray("{\"processors\": [{\"batch\": {\"tag\": \"final\"}}]}"), XContentType.JSON), clusterState);
+        ingestService.applyClusterState(new ClusterChangedEvent("", clusterState, previousClusterState));
+
+        BulkRequest bulkRequest = new BulkRequest();
+        int numRequest = scaledRandomIntBetween(8, 64);
+        int numWithFinalPipeline = 0;
+        for (int i = 0; i < numRequest; i++) {
+            if (randomBoolean()) {
+                bulkRequest.add(new DeleteRequest("_index", "_id"));
+                continue;
+            }
+            boolean hasFinalPipeline = randomBoolean();
+            if (hasFinalPipeline) {
+                numWithFinalPipeline++;
+            }
+            IndexRequest indexRequest = new IndexRequest("_index").id("_id").setPipeline("_id")
+                .setFinalPipeline(hasFinalPipeline ? "_final" : "_none");
+            indexRequest.source(XContentType.JSON, "field1", "value1", "has_final_pipeline", hasFinalPipeline);
+            bulkRequest.add(indexRequest);
+        }
+        int numIndexRequests = (int) bulkRequest.requests().stream().filter(r -> r instanceof IndexRequest).count();
+
+        @SuppressWarnings("unchecked")
+        BiConsumer<Integer, Exception> requestItemErrorHandler = mock(BiConsumer.class);
+        @SuppressWarnings("unchecked")
+        final BiConsumer<Thread, Exception> completionHandler = mock(BiConsumer.class);
+        ingestService.executeBulkRequest(bulkRequest.numberOfActions(), bulkRequest.requests(), requestItemErrorHandler,
+            completionHandler, indexReq -> {}, Names.WRITE);
+
+        verify(requestItemErrorHandler, never()).accept(any(), any());
+        verify(completionHandler, times(1)).accept(Thread.currentThread(), null);
+        List<String> expectedBatches = new ArrayList<>();
+        if (numIndexRequests > 0) {
+            expectedBatches.add("default:" + numIndexRequests);
+        }
+        if (numWithFinalPipeline > 0) {
+            expectedBatches.add("final:" + numWithFinalPipeline);
+        }
+        assertThat(batches, equalTo(expectedBatches));
+        for (DocWriteRequest<?> docWriteRequest : bulkRequest.requests()) {
+            if (docWriteRequest instanceof IndexRequest) {
+                Map<String, Object> source = ((IndexRequest) docWriteRequest).sourceAsMap();
+                assertThat(source.get("default"), equalTo(true));
+                assertThat(source.containsKey("final"), equalTo(source.get("has_final_pipeline")));
+            }
+        }
+    }
+
     public void testStats() throws Exception {
         final Processor processor = mock(Processor.class);
         final Processor processorFailure = mock(Processor.class);
@@ -0,0 +1,118 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.lucene.util;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.SparseFixedBitSet;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.lessThan;
+
+public class RoaringBitSetTests extends ESTestCase {
+
+    public void testEmpty() throws IOException {
+        testCase(randomIntBetween(1, 200_000), 0f);
+    }
+
+    public void testFull() throws IOException {
+        testCase(randomIntBetween(1, 200_000), 1f);
+    }
+
+    public void testSparse() throws IOException {
+        for (float density : new float[] { 0.0001f, 0.01f, 0.05f }) {
+            testCase(randomIntBetween(1, 200_000), density);
+        }
+    }
+
+    public void testDense() throws IOException {
+        for (float density : new float[] { 0.3f, 0.5f, 0.95f, 0.9999f }) {
+            testCase(randomIntBetween(1, 200_000), density);
+        }
+    }
+
+    public void testRandom() throws IOException {
+        int iterations = atLeast(10);
+        for (int i = 0; i < iterations; i++) {
+            testCase(randomIntBetween(1, 200_000), randomFloat());
+        }
+    }
+
+    public void testParentFilter() throws IOException {
+        // the last document of each block of nested documents is set, parents have dozens of nested documents
+        final int maxDoc = randomIntBetween(100_000, 300_000);
+        final FixedBitSet expected = new FixedBitSet(maxDoc);
+        final SparseFixedBitSet sparse = new SparseFixedBitSet(maxDoc);
+        for (int doc = randomIntBetween(20, 200); doc < maxDoc; doc += randomIntBetween(20, 200)) {
+            expected.set(doc);
+            sparse.set(doc);
+        }
+        final RoaringBitSet actual = RoaringBitSet.of(new BitSetIterator(expected, expected.cardinality()), maxDoc);
+        assertSameBits(expected, actual);
+        assertThat(actual.ramBytesUsed(), lessThan(expected.ramBytesUsed()));
+        assertThat(actual.ramBytesUsed(), lessThan(sparse.ramBytesUsed()));
+    }
+
+    public void testUnsupportedOperations() throws IOException {
+        final RoaringBitSet bitSet = RoaringBitSet.of(DocIdSetIterator.all(10), 10);
+        expectThrows(UnsupportedOperationException.class, () -> bitSet.set(0));
+        expectThrows(UnsupportedOperationException.class, () -> bitSet.clear(0));
+        expectThrows(UnsupportedOperationException.class, () -> bitSet.clear(0, 5));
+        expectThrows(UnsupportedOperationException.class, () -> bitSet.getAndSet(0));
+    }
+
+    private void testCase(int maxDoc, float density) throws IOException {
+        final FixedBitSet expected = new FixedBitSet(maxDoc);
+        if (density == 1f) {
+            expected.set(0, maxDoc);
+        } else if (density > 0f) {
+            for (int doc = 0; doc < maxDoc; doc++) {
+                if (random().nextFloat() < density) {
+                    expected.set(doc);
+                }
+            }
+        }
+        assertSameBits(expected, RoaringBitSet.of(new BitSetIterator(expected, expected.cardinality()), maxDoc));
+    }
+
+    private void assertSameBits(FixedBitSet expected, RoaringBitSet actual) {
+        final int maxDoc = expected.length();
+        assertEquals(maxDoc, actual.length());
+        assertEquals(expected.cardinality(), actual.cardinality());
+        for (int doc = 0; doc < maxDoc; doc++) {
+            assertEquals(expected.get(doc), actual.get(doc));
+        }
+        for (int i = 0; i < 1000; i++) {
+            final int doc = randomIntBetween(0, maxDoc - 1);
+            assertEquals(expected.nextSetBit(doc), actual.nextSetBit(doc));
+            assertEquals(expected.prevSetBit(doc), actual.prevSetBit(doc));
+        }
+        int doc = -1;
+        while (doc < maxDoc - 1) {
+            final int next = actual.nextSetBit(doc + 1);
+            assertEquals(expected.nextSetBit(doc + 1), next);
+            if (next == DocIdSetIterator.NO_MORE_DOCS) {
+                break;
+            }
+            doc = next;
+        }
+        doc = maxDoc;
+        while (doc > 0) {
+            final int prev = actual.prevSetBit(doc - 1);
+            assertEquals(expected.prevSetBit(doc - 1), prev);
+            if (prev == -1) {
+                break;
+            }
+            doc = prev;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.snapshots.SnapshotId;
 import org.elasticsearch.snapshots.SnapshotState;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xcontent.ToXContent;
 import org.elasticsearch.xcontent.XContent;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentParser;
@@ -39,6 +40,8 @@ import static org.elasticsearch.repositories.RepositoryData.MISSING_UUID;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 /**
  * Tests for the {@link RepositoryData} class.
@@ -78,6 +81,88 @@ public class RepositoryDataTests extends ESTestCase {
         }
     }
 
+    public void testSegmentedXContent() throws IOException {
+        final int segmentSize = randomIntBetween(1, 10);
+        RepositoryData repositoryData = generateRandomRepoData().withClusterUuid(UUIDs.randomBase64UUID(random()));
+        final Map<String, BytesReference> segmentBlobs = new HashMap<>();
+        final int rounds = randomIntBetween(1, 5);
+        for (int round = 0; round < rounds; round++) {
+            if (round > 0) {
+                if (randomBoolean() && repositoryData.getSnapshotIds().size() > 1) {
+                    final List<SnapshotId> toRemove = randomSubsetOf(
+                        randomIntBetween(1, repositoryData.getSnapshotIds().size() - 1),
+                        repositoryData.getSnapshotIds()
+                    );
+                    repositoryData = repositoryData.removeSnapshots(toRemove, ShardGenerations.EMPTY);
+                } else {
+                    repositoryData = addRandomSnapshot(repositoryData, List.copyOf(repositoryData.getIndices().values()));
+                }
+            }
+            final List<RepositoryDataSegment> previousSegments = repositoryData.segments();
+            final List<RepositoryDataSegment> segments = repositoryData.segmentsForWrite(segmentSize);
+            for (RepositoryDataSegment segment : segments) {
+                assertTrue(segment.isCurrent(repositoryData));
+                assertThat(segment.snapshotIds().size(), lessThanOrEqualTo(Math.max(segmentSize, repositoryData.getSnapshotIds().size())));
+                if (previousSegments.contains(segment) == false) {
+                    final XContentBuilder builder = JsonXContent.contentBuilder();
+                    builder.startObject();
+                    segment.toXContent(builder, ToXContent.EMPTY_PARAMS);
+                    builder.endObject();
+                    segmentBlobs.put(segment.uuid(), BytesReference.bytes(builder));
+                }
+            }
+            final int inSegments = segments.stream().mapToInt(segment -> segment.snapshotIds().size()).sum();
+            assertThat(repositoryData.getSnapshotIds().size() - inSegments, lessThan(segmentSize));
+            repositoryData = repositoryData.withSegments(segments);
+
+            final XContentBuilder builder = JsonXContent.contentBuilder();
+            repositoryData.snapshotsToXContent(builder, Version.CURRENT);
+            try (XContentParser parser = createParser(JsonXContent.jsonXContent, BytesReference.bytes(builder))) {
+                final RepositoryData fromXContent = RepositoryData.snapshotsFromXContent(parser, round, false, segmentUUID -> {
+                    try (XContentParser segmentParser = createParser(JsonXContent.jsonXContent, segmentBlobs.get(segmentUUID))) {
+                        return RepositoryDataSegment.fromXContent(segmentParser);
+                    }
+                });
+                assertEquals(repositoryData, fromXContent);
+                assertEquals(
+                    segments.stream().map(RepositoryDataSegment::uuid).collect(Collectors.toList()),
+                    fromXContent.segments().stream().map(RepositoryDataSegment::uuid).collect(Collectors.toList())
+                );
+                repositoryData = fromXContent;
+            }
+        }
+    }
+
+    public void testSegmentsAreReusedUntilTheirSnapshotsAreRemoved() {
+        RepositoryData repositoryData = RepositoryData.EMPTY;
+        final List<IndexId> indices = List.of(new IndexId(randomAlphaOfLength(8), UUIDs.randomBase64UUID()));
+        final int segmentSize = randomIntBetween(1, 5);
+        for (int i = 0; i < segmentSize; i++) {
+            repositoryData = addRandomSnapshot(repositoryData, indices);
+        }
+        final List<RepositoryDataSegment> sealed = repositoryData.segmentsForWrite(segmentSize);
+        assertThat(sealed.size(), equalTo(1));
+        repositoryData = repositoryData.withSegments(sealed);
+
+        repositoryData = addRandomSnapshot(repositoryData, indices);
+        final List<RepositoryDataSegment> afterAdd = repositoryData.segmentsForWrite(segmentSize);
+        if (segmentSize == 1) {
+            assertThat(afterAdd.size(), equalTo(2));
+        } else {
+            assertThat(afterAdd, equalTo(sealed));
+        }
+        repositoryData = repositoryData.withSegments(afterAdd);
+
+        final SnapshotId removed = randomFrom(sealed.get(0).snapshotIds().values());
+        repositoryData = repositoryData.removeSnapshots(List.of(removed), ShardGenerations.EMPTY);
+        final List<RepositoryDataSegment> afterRemove = repositoryData.segmentsForWrite(segmentSize);
+        assertFalse(afterRemove.contains(sealed.get(0)));
+        for (RepositoryDataSegment segment : afterRemove) {
+            assertFalse(segment.snapshotIds().containsKey(removed.getUUID()));
+            assertTrue(segment.isCurrent(repositoryData));
+        }
+    }
+
     public void testAddSnapshots() {
         RepositoryData repositoryData = generateRandomRepoData();
         // test that adding the same snapshot id to the repository data throws an exception
@@ -461,6 +546,28 @@ public class RepositoryDataTests extends ESTestCase {
         return repositoryData;
     }
 
+    private static RepositoryData addRandomSnapshot(RepositoryData repositoryData, List<IndexId> indices) {
+        final List<IndexId> someIndices = randomSubsetOf(randomIntBetween(1, indices.size()), indices);
+        final ShardGenerations.Builder builder = ShardGenerations.builder();
+        for (IndexId someIndex : someIndices) {
+            builder.put(someIndex, 0, ShardGeneration.newGeneration(random()));
+        }
+        final Map<IndexId, String> indexLookup = someIndices.stream()
+            .collect(Collectors.toMap(Function.identity(), ind -> randomAlphaOfLength(256)));
+        return repositoryData.addSnapshot(
+            new SnapshotId(randomAlphaOfLength(8), UUIDs.randomBase64UUID()),
+            new RepositoryData.SnapshotDetails(
+                randomFrom(SnapshotState.values()),
+                Version.CURRENT,
+                randomNonNegativeLong(),
+                randomNonNegativeLong()
+            ),
+            builder.build(),
+            indexLookup,
+            indexLookup.values().stream().collect(Collectors.toMap(Function.identity(), ignored -> UUIDs.randomBase64UUID(random())))
+        );
+    }
+
     private static Map<IndexId, List<SnapshotId>> randomIndices(final Map<String, SnapshotId> snapshotIdsMap) {
         final List<SnapshotId> snapshotIds = new ArrayList<>(snapshotIdsMap.values());
         final int totalSnapshots = snapshotIds.size();
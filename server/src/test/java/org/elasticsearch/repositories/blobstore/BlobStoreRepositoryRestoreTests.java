@@ -8,6 +8,12 @@
 
 package org.elasticsearch.repositories.blobstore;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.TestUtil;
 import org.elasticsearch.Version;
@@ -19,13 +25,17 @@ import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.ShardRoutingHelper;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.blobstore.BlobContainer;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.MockBigArrays;
 import org.elasticsearch.core.Tuple;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.env.TestEnvironment;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.InternalEngineFactory;
 import org.elasticsearch.index.seqno.RetentionLeaseSyncer;
 import org.elasticsearch.index.shard.IndexShard;
@@ -33,6 +43,8 @@ import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.IndexShardTestCase;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.snapshots.IndexShardSnapshotFailedException;
+import org.elasticsearch.index.snapshots.IndexShardSnapshotStatus;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetadata;
 import org.elasticsearch.indices.recovery.RecoverySettings;
@@ -42,10 +54,15 @@ import org.elasticsearch.repositories.Repository;
 import org.elasticsearch.repositories.RepositoryData;
 import org.elasticsearch.repositories.ShardGeneration;
 import org.elasticsearch.repositories.ShardGenerations;
+import org.elasticsearch.repositories.ShardSnapshotResult;
+import org.elasticsearch.repositories.SnapshotShardContext;
 import org.elasticsearch.repositories.fs.FsRepository;
 import org.elasticsearch.snapshots.Snapshot;
 import org.elasticsearch.snapshots.SnapshotId;
 import org.elasticsearch.snapshots.SnapshotInfo;
+import org.elasticsearch.snapshots.SnapshotsService;
+import org.elasticsearch.test.DummyShardLock;
+import org.elasticsearch.test.IndexSettingsModule;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -53,9 +70,15 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 
 /**
  * This class tests the behavior of {@link BlobStoreRepository} when it
@@ -146,6 +169,198 @@ public class BlobStoreRepositoryRestoreTests extends IndexShardTestCase {
         }
     }
 
+    public void testRestoreSnapshotWithContentDefinedChunks() throws IOException {
+        final IndexId indexId = new IndexId(randomAlphaOfLength(10), UUIDs.randomBase64UUID());
+        final ShardId shardId = new ShardId(indexId.getName(), indexId.getId(), 0);
+
+        IndexShard shard = newShard(shardId, true);
+        try {
+            // index documents in the shards
+            final int numDocs = scaledRandomIntBetween(1, 500);
+            recoverShardFromStore(shard);
+            for (int i = 0; i < numDocs; i++) {
+                indexDoc(shard, "_doc", Integer.toString(i));
+                if (rarely()) {
+                    flushShard(shard, false);
+                }
+            }
+            assertDocCount(shard, numDocs);
+
+            // snapshot the shard into a repository that stores files in small content-defined chunks
+            final BlobStoreRepository repository = (BlobStoreRepository) createRepository(
+                Settings.builder()
+                    .put(BlobStoreRepository.CONTENT_DEFINED_CHUNKING_SETTING.getKey(), true)
+                    .put(BlobStoreRepository.CONTENT_DEFINED_CHUNK_SIZE_SETTING.getKey(), "4kb")
+                    .build()
+            );
+            final Snapshot snapshot = new Snapshot(repository.getMetadata().name(), new SnapshotId(randomAlphaOfLength(10), "_uuid"));
+            snapshotShard(shard, snapshot, repository);
+
+            final BlobStoreIndexShardSnapshot shardSnapshot = repository.loadShardSnapshot(
+                repository.shardContainer(indexId, shardId.id()),
+                snapshot.getSnapshotId()
+            );
+            for (BlobStoreIndexShardSnapshot.FileInfo fileInfo : shardSnapshot.indexFiles()) {
+                if (fileInfo.name().startsWith(BlobStoreRepository.UPLOADED_DATA_BLOB_PREFIX) && fileInfo.length() > 0) {
+                    assertNotNull("file [" + fileInfo.physicalName() + "] should be chunked", fileInfo.chunks());
+                    for (BlobStoreIndexShardSnapshot.FileInfo.Chunk chunk : fileInfo.chunks()) {
+                        assertThat(chunk.length(), lessThanOrEqualTo(32L * 1024L));
+                    }
+                }
+            }
+
+            // capture current store files
+            final Store.MetadataSnapshot storeFiles = shard.snapshotStoreMetadata();
+            assertFalse(storeFiles.asMap().isEmpty());
+
+            // close the shard and delete all its files
+            closeShards(shard);
+            for (String file : storeFiles.asMap().keySet()) {
+                Files.delete(shard.shardPath().resolveIndex().resolve(file));
+            }
+
+            // build a new shard using the same store directory as the closed shard
+            ShardRouting shardRouting = ShardRoutingHelper.initWithSameId(
+                shard.routingEntry(),
+                RecoverySource.ExistingStoreRecoverySource.INSTANCE
+            );
+            shard = newShard(
+                shardRouting,
+                shard.shardPath(),
+                shard.indexSettings().getIndexMetadata(),
+                null,
+                null,
+                new InternalEngineFactory(),
+                () -> {},
+                RetentionLeaseSyncer.EMPTY,
+                EMPTY_EVENT_LISTENER
+            );
+
+            // restore the shard and check that the chunks were reassembled into identical files
+            recoverShardFromSnapshot(shard, snapshot, repository);
+            TestUtil.checkIndex(shard.store().directory());
+            final Store.MetadataSnapshot restoredFiles = shard.store().getMetadata(null);
+            for (StoreFileMetadata storeFile : storeFiles) {
+                final StoreFileMetadata restoredFile = restoredFiles.get(storeFile.name());
+                assertNotNull("File [" + storeFile.name() + "] was not restored", restoredFile);
+                assertTrue("File [" + storeFile.name() + "] differs after restore", storeFile.isSame(restoredFile));
+            }
+        } finally {
+            if (shard != null && shard.state() != IndexShardState.CLOSED) {
+                try {
+                    shard.close("test", false);
+                } finally {
+                    IOUtils.close(shard.store());
+                }
+            }
+        }
+    }
+
+    public void testContentDefinedChunksAreOnlyUploadedOnce() throws IOException {
+        final IndexId indexId = new IndexId(randomAlphaOfLength(10), UUIDs.randomBase64UUID());
+        final ShardId shardId = new ShardId(indexId.getName(), indexId.getId(), 0);
+        final BlobStoreRepository repository = (BlobStoreRepository) createRepository(
+            Settings.builder()
+                .put(BlobStoreRepository.CONTENT_DEFINED_CHUNKING_SETTING.getKey(), true)
+                .put(BlobStoreRepository.CONTENT_DEFINED_CHUNK_SIZE_SETTING.getKey(), "4kb")
+                .build()
+        );
+        final BlobContainer shardContainer = repository.shardContainer(indexId, shardId.id());
+
+        try (Directory source = newDirectory()) {
+            // a segment that is large enough to consist of many chunks
+            try (IndexWriter writer = new IndexWriter(source, newIndexWriterConfig().setUseCompoundFile(false))) {
+                for (int i = 0; i < 100; i++) {
+                    final Document document = new Document();
+                    document.add(new StoredField("field", randomAlphaOfLength(2048)));
+                    writer.addDocument(document);
+                }
+            }
+
+            final Store store = new Store(
+                shardId,
+                IndexSettingsModule.newIndexSettings(shardId.getIndex(), Settings.EMPTY),
+                newDirectory(),
+                new DummyShardLock(shardId)
+            );
+            try (
+                IndexWriter writer = new IndexWriter(
+                    store.directory(),
+                    newIndexWriterConfig().setUseCompoundFile(false).setMergePolicy(NoMergePolicy.INSTANCE)
+                )
+            ) {
+                writer.addIndexes(source);
+                writer.commit();
+                final IndexShardSnapshotStatus firstStatus = IndexShardSnapshotStatus.newInitializing(null);
+                final ShardGeneration firstGeneration = snapshotShard(store, indexId, repository, "first", firstStatus);
+                final Set<String> firstChunks = chunkBlobs(shardContainer);
+                assertThat(firstChunks, not(empty()));
+                assertThat(firstStatus.asCopy().getProcessedSize(), greaterThan(0L));
+
+                // Lucene copies added segments byte for byte, so the files of the new segment are new to the repository but consist of
+                // the chunks of the files of the previous segment
+                writer.deleteAll();
+                writer.addIndexes(source);
+                writer.commit();
+                final IndexShardSnapshotStatus secondStatus = IndexShardSnapshotStatus.newInitializing(firstGeneration);
+                snapshotShard(store, indexId, repository, "second", secondStatus);
+                assertThat(chunkBlobs(shardContainer), equalTo(firstChunks));
+                assertThat(secondStatus.asCopy().getProcessedSize(), equalTo(0L));
+
+                final BlobStoreIndexShardSnapshot first = repository.loadShardSnapshot(shardContainer, new SnapshotId("first", "first"));
+                final BlobStoreIndexShardSnapshot second = repository.loadShardSnapshot(shardContainer, new SnapshotId("second", "second"));
+                assertThat(chunks(second), equalTo(chunks(first)));
+                assertTrue(Collections.disjoint(physicalNames(first), physicalNames(second)));
+            } finally {
+                store.close();
+            }
+        }
+    }
+
+    public void testNoContentDefinedChunksForOlderRepositoryMetaVersion() throws IOException {
+        final IndexId indexId = new IndexId(randomAlphaOfLength(10), UUIDs.randomBase64UUID());
+        final ShardId shardId = new ShardId(indexId.getName(), indexId.getId(), 0);
+        final BlobStoreRepository repository = (BlobStoreRepository) createRepository(
+            Settings.builder()
+                .put(BlobStoreRepository.CONTENT_DEFINED_CHUNKING_SETTING.getKey(), true)
+                .put(BlobStoreRepository.CONTENT_DEFINED_CHUNK_SIZE_SETTING.getKey(), "4kb")
+                .build()
+        );
+        final BlobContainer shardContainer = repository.shardContainer(indexId, shardId.id());
+
+        final Store store = new Store(
+            shardId,
+            IndexSettingsModule.newIndexSettings(shardId.getIndex(), Settings.EMPTY),
+            newDirectory(),
+            new DummyShardLock(shardId)
+        );
+        try (IndexWriter writer = new IndexWriter(store.directory(), newIndexWriterConfig())) {
+            for (int i = 0; i < 100; i++) {
+                final Document document = new Document();
+                document.add(new StoredField("field", randomAlphaOfLength(2048)));
+                writer.addDocument(document);
+            }
+            writer.commit();
+            // nodes that predate chunked files must still be able to read the shard level metadata of the repository
+            snapshotShard(
+                store,
+                indexId,
+                repository,
+                "snapshot",
+                IndexShardSnapshotStatus.newInitializing(null),
+                randomFrom(SnapshotsService.OLD_SNAPSHOT_FORMAT, Version.V_7_16_0)
+            );
+            assertThat(chunkBlobs(shardContainer), empty());
+            final BlobStoreIndexShardSnapshot shardSnapshot = repository.loadShardSnapshot(
+                shardContainer,
+                new SnapshotId("snapshot", "snapshot")
+            );
+            assertThat(chunks(shardSnapshot), empty());
+        } finally {
+            store.close();
+        }
+    }
+
     public void testSnapshotWithConflictingName() throws Exception {
         final IndexId indexId = new IndexId(randomAlphaOfLength(10), UUIDs.randomBase64UUID());
         final ShardId shardId = new ShardId(indexId.getName(), indexId.getId(), 0);
@@ -214,18 +429,85 @@ public class BlobStoreRepositoryRestoreTests extends IndexShardTestCase {
         }
     }
 
+    private static ShardGeneration snapshotShard(
+        Store store,
+        IndexId indexId,
+        Repository repository,
+        String snapshotName,
+        IndexShardSnapshotStatus snapshotStatus
+    ) throws IOException {
+        return snapshotShard(store, indexId, repository, snapshotName, snapshotStatus, Version.CURRENT);
+    }
+
+    private static ShardGeneration snapshotShard(
+        Store store,
+        IndexId indexId,
+        Repository repository,
+        String snapshotName,
+        IndexShardSnapshotStatus snapshotStatus,
+        Version repositoryMetaVersion
+    ) throws IOException {
+        final PlainActionFuture<ShardSnapshotResult> future = PlainActionFuture.newFuture();
+        final List<IndexCommit> commits = DirectoryReader.listCommits(store.directory());
+        repository.snapshotShard(
+            new SnapshotShardContext(
+                store,
+                null,
+                new SnapshotId(snapshotName, snapshotName),
+                indexId,
+                new Engine.IndexCommitRef(commits.get(commits.size() - 1), () -> {}),
+                null,
+                snapshotStatus,
+                repositoryMetaVersion,
+                Collections.emptyMap(),
+                future
+            )
+        );
+        return future.actionGet().getGeneration();
+    }
+
+    private static Set<String> chunkBlobs(BlobContainer shardContainer) throws IOException {
+        return shardContainer.listBlobsByPrefix(ContentDefinedChunker.CHUNK_BLOB_PREFIX).keySet();
+    }
+
+    private static Set<String> physicalNames(BlobStoreIndexShardSnapshot shardSnapshot) {
+        return shardSnapshot.indexFiles()
+            .stream()
+            .map(BlobStoreIndexShardSnapshot.FileInfo::physicalName)
+            .collect(Collectors.toSet());
+    }
+
+    private static Set<String> chunks(BlobStoreIndexShardSnapshot shardSnapshot) {
+        return shardSnapshot.indexFiles()
+            .stream()
+            .filter(fileInfo -> fileInfo.chunks() != null)
+            .flatMap(fileInfo -> fileInfo.chunks().stream())
+            .map(BlobStoreIndexShardSnapshot.FileInfo.Chunk::name)
+            .collect(Collectors.toSet());
+    }
+
     /** Create a {@link Repository} with a random name **/
     private Repository createRepository() {
-        Settings settings = Settings.builder().put("location", randomAlphaOfLength(10)).build();
+        return createRepository(Settings.EMPTY);
+    }
+
+    /** Create a {@link Repository} with a random name and the given additional settings **/
+    private Repository createRepository(Settings additionalSettings) {
+        Settings settings = Settings.builder().put("location", randomAlphaOfLength(10)).put(additionalSettings).build();
         RepositoryMetadata repositoryMetadata = new RepositoryMetadata(randomAlphaOfLength(10), FsRepository.TYPE, settings);
         final ClusterService clusterService = BlobStoreTestUtil.mockClusterService(repositoryMetadata);
+        // restore larger files in concurrently read ranges or sequentially
+        final Settings recoverySettings = Settings.builder()
+            .put(RecoverySettings.INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS.getKey(), between(0, 4))
+            .put(RecoverySettings.INDICES_RECOVERY_SNAPSHOT_RANGE_READ_SIZE.getKey(), new ByteSizeValue(between(1, 16), ByteSizeUnit.KB))
+            .build();
         final FsRepository repository = new FsRepository(
             repositoryMetadata,
             createEnvironment(),
             xContentRegistry(),
             clusterService,
             MockBigArrays.NON_RECYCLING_INSTANCE,
-            new RecoverySettings(Settings.EMPTY, new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS))
+            new RecoverySettings(recoverySettings, new ClusterSettings(recoverySettings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS))
         ) {
             @Override
             protected void assertSnapshotOrGenericThread() {
@@ -17,11 +17,14 @@ import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Numbers;
 import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.blobstore.BlobContainer;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
 import org.elasticsearch.indices.recovery.RecoverySettings;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.plugins.RepositoryPlugin;
@@ -29,6 +32,7 @@ import org.elasticsearch.repositories.IndexId;
 import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.repositories.Repository;
 import org.elasticsearch.repositories.RepositoryData;
+import org.elasticsearch.repositories.RepositoryDataSegment;
 import org.elasticsearch.repositories.RepositoryException;
 import org.elasticsearch.repositories.ShardGeneration;
 import org.elasticsearch.repositories.ShardGenerations;
@@ -40,12 +44,14 @@ import org.elasticsearch.test.ESSingleNodeTestCase;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.xcontent.NamedXContentRegistry;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -54,9 +60,12 @@ import static org.elasticsearch.repositories.RepositoryDataTests.generateRandomR
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 
 /**
@@ -203,6 +212,59 @@ public class BlobStoreRepositoryTests extends ESSingleNodeTestCase {
         assertThat(repository.readSnapshotIndexLatestBlob(), equalTo(expectedGeneration + 2L));
     }
 
+    public void testSegmentedRepositoryData() throws Exception {
+        final int segmentSize = randomIntBetween(1, 5);
+        final BlobStoreRepository repository = setupRepo(
+            Settings.builder().put(BlobStoreRepository.REPOSITORY_DATA_SEGMENT_SIZE_SETTING.getKey(), segmentSize).build()
+        );
+
+        RepositoryData repositoryData = generateRandomRepoData();
+        writeIndexGen(repository, repositoryData, RepositoryData.EMPTY_REPO_GEN);
+        for (int i = 0; i < 5; i++) {
+            final RepositoryData written = ESBlobStoreRepositoryIntegTestCase.getRepositoryData(repository);
+            assertEquals(repositoryData, written);
+            final Set<String> segmentBlobs = repository.blobContainer()
+                .listBlobsByPrefix(BlobStoreRepository.REPOSITORY_DATA_SEGMENT_PREFIX)
+                .keySet();
+            for (RepositoryDataSegment segment : written.segments()) {
+                assertThat(segmentBlobs, hasItem(BlobStoreRepository.REPOSITORY_DATA_SEGMENT_FORMAT.blobName(segment.uuid())));
+            }
+            if (written.getSnapshotIds().size() >= segmentSize) {
+                assertThat(written.segments(), not(empty()));
+            }
+            if (randomBoolean() && written.getSnapshotIds().isEmpty() == false) {
+                repositoryData = written.removeSnapshots(
+                    randomSubsetOf(randomIntBetween(1, written.getSnapshotIds().size()), written.getSnapshotIds()),
+                    ShardGenerations.EMPTY
+                );
+            } else {
+                repositoryData = addRandomSnapshotsToRepoData(written, true);
+            }
+            writeIndexGen(repository, repositoryData, repositoryData.getGenId());
+        }
+        assertEquals(repositoryData, ESBlobStoreRepositoryIntegTestCase.getRepositoryData(repository));
+    }
+
+    public void testFailedWriteDoesNotLeaveRepositoryDataSegments() throws Exception {
+        final BlobStoreRepository repository = setupRepo(
+            Settings.builder().put(BlobStoreRepository.REPOSITORY_DATA_SEGMENT_SIZE_SETTING.getKey(), 1).build()
+        );
+
+        final RepositoryData repositoryData = generateRandomRepoData();
+        writeIndexGen(repository, repositoryData, RepositoryData.EMPTY_REPO_GEN);
+        final RepositoryData written = ESBlobStoreRepositoryIntegTestCase.getRepositoryData(repository);
+        final BlobContainer container = repository.blobContainer();
+        final Set<String> segmentBlobs = container.listBlobsByPrefix(BlobStoreRepository.REPOSITORY_DATA_SEGMENT_PREFIX).keySet();
+
+        // the generation the next write is based on is gone, so that write must fail before it uploads any new segment
+        container.deleteBlobsIgnoringIfNotExists(List.of(BlobStoreRepository.INDEX_FILE_PREFIX + written.getGenId()).iterator());
+        expectThrows(
+            RepositoryException.class,
+            () -> writeIndexGen(repository, addRandomSnapshotsToRepoData(written, true), written.getGenId())
+        );
+        assertEquals(segmentBlobs, container.listBlobsByPrefix(BlobStoreRepository.REPOSITORY_DATA_SEGMENT_PREFIX).keySet());
+    }
+
     public void testCorruptIndexLatestFile() throws Exception {
         final BlobStoreRepository repository = setupRepo();
 
@@ -263,6 +325,76 @@ public class BlobStoreRepositoryTests extends ESSingleNodeTestCase {
         );
     }
 
+    public void testDeleteSnapshotsWithContentDefinedChunks() throws Exception {
+        final BlobStoreRepository repository = setupRepo(
+            Settings.builder()
+                .put(BlobStoreRepository.CONTENT_DEFINED_CHUNKING_SETTING.getKey(), true)
+                .put(BlobStoreRepository.CONTENT_DEFINED_CHUNK_SIZE_SETTING.getKey(), "4kb")
+                .build()
+        );
+        final String repositoryName = repository.getMetadata().name();
+        final String indexName = "test-idx";
+        createIndex(indexName, Settings.builder().put(IndexMetadata.SETTING_NUMBER_OF_SHARDS, 1).build());
+        ensureGreen();
+        final int numDocs = randomIntBetween(50, 100);
+        for (int i = 0; i < numDocs; i++) {
+            client().prepareIndex(indexName).setId(Integer.toString(i)).setSource("text", randomAlphaOfLength(1024)).get();
+        }
+        client().admin().indices().prepareFlush(indexName).get();
+
+        // the first two snapshots share all their chunks
+        final SnapshotId first = createSnapshot(repositoryName, "test-snap-1", indexName);
+        final SnapshotId second = createSnapshot(repositoryName, "test-snap-2", indexName);
+
+        // replace all documents so that the third snapshot shares none of the files of the first two
+        for (int i = 0; i < numDocs; i++) {
+            client().prepareIndex(indexName).setId(Integer.toString(i)).setSource("text", randomAlphaOfLength(1024)).get();
+        }
+        client().admin().indices().prepareForceMerge(indexName).setMaxNumSegments(1).get();
+        final SnapshotId third = createSnapshot(repositoryName, "test-snap-3", indexName);
+
+        final IndexId indexId = ESBlobStoreRepositoryIntegTestCase.getRepositoryData(repository).resolveIndexId(indexName);
+        final BlobContainer shardContainer = repository.shardContainer(indexId, 0);
+        final Set<String> firstChunks = chunks(repository.loadShardSnapshot(shardContainer, first));
+        final Set<String> thirdChunks = chunks(repository.loadShardSnapshot(shardContainer, third));
+        assertThat(firstChunks, not(empty()));
+        assertFalse(thirdChunks.containsAll(firstChunks));
+        assertThat(chunks(repository.loadShardSnapshot(shardContainer, second)), equalTo(firstChunks));
+        assertThat(chunkBlobs(shardContainer), equalTo(Sets.union(firstChunks, thirdChunks)));
+
+        // the second snapshot still references the chunks of the first one
+        assertAcked(client().admin().cluster().prepareDeleteSnapshot(repositoryName, first.getName()).get());
+        assertThat(chunkBlobs(shardContainer), equalTo(Sets.union(firstChunks, thirdChunks)));
+
+        // no snapshot references the chunks that are only in the first two snapshots any more
+        assertAcked(client().admin().cluster().prepareDeleteSnapshot(repositoryName, second.getName()).get());
+        assertThat(chunkBlobs(shardContainer), equalTo(thirdChunks));
+    }
+
+    private SnapshotId createSnapshot(String repositoryName, String snapshotName, String indexName) {
+        final CreateSnapshotResponse response = client().admin()
+            .cluster()
+            .prepareCreateSnapshot(repositoryName, snapshotName)
+            .setWaitForCompletion(true)
+            .setIndices(indexName)
+            .get();
+        assertThat(response.getSnapshotInfo().state(), equalTo(SnapshotState.SUCCESS));
+        return response.getSnapshotInfo().snapshotId();
+    }
+
+    private static Set<String> chunkBlobs(BlobContainer shardContainer) throws IOException {
+        return shardContainer.listBlobsByPrefix(ContentDefinedChunker.CHUNK_BLOB_PREFIX).keySet();
+    }
+
+    private static Set<String> chunks(BlobStoreIndexShardSnapshot shardSnapshot) {
+        return shardSnapshot.indexFiles()
+            .stream()
+            .filter(fileInfo -> fileInfo.chunks() != null)
+            .flatMap(fileInfo -> fileInfo.chunks().stream())
+            .map(BlobStoreIndexShardSnapshot.FileInfo.Chunk::name)
+            .collect(Collectors.toSet());
+    }
+
     public void testRepositoryDataDetails() throws Exception {
         final BlobStoreRepository repository = setupRepo();
         final String repositoryName = repository.getMetadata().name();
@@ -334,11 +466,15 @@ public class BlobStoreRepositoryTests extends ESSingleNodeTestCase {
     }
 
     private BlobStoreRepository setupRepo() {
+        return setupRepo(Settings.EMPTY);
+    }
+
+    private BlobStoreRepository setupRepo(Settings additionalSettings) {
         final Client client = client();
         final Path location = ESIntegTestCase.randomRepoPath(node().settings());
         final String repositoryName = "test-repo";
 
-        Settings.Builder repoSettings = Settings.builder().put(node().settings()).put("location", location);
+        Settings.Builder repoSettings = Settings.builder().put(node().settings()).put("location", location).put(additionalSettings);
         boolean compress = randomBoolean();
         if (compress == false) {
             repoSettings.put(BlobStoreRepository.COMPRESS_SETTING.getKey(), false);
@@ -0,0 +1,87 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.repositories.blobstore;
+
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo.Chunk;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+
+public class ContentDefinedChunkerTests extends ESTestCase {
+
+    private static final int AVERAGE_CHUNK_SIZE = 1024;
+    private static final int MAX_CHUNK_SIZE = 8 * AVERAGE_CHUNK_SIZE;
+
+    public void testChunkSizesAreBounded() throws IOException {
+        final byte[] bytes = randomByteArrayOfLength(randomIntBetween(0, 256 * 1024));
+        final List<Chunk> chunks = chunk(bytes);
+        assertThat(chunks.stream().mapToLong(Chunk::length).sum(), equalTo((long) bytes.length));
+        for (int i = 0; i < chunks.size(); i++) {
+            final Chunk chunk = chunks.get(i);
+            assertThat(chunk.name(), startsWith(ContentDefinedChunker.CHUNK_BLOB_PREFIX));
+            assertThat(chunk.length(), lessThanOrEqualTo((long) MAX_CHUNK_SIZE));
+            if (i < chunks.size() - 1) {
+                assertThat(chunk.length(), greaterThanOrEqualTo((long) AVERAGE_CHUNK_SIZE / 4));
+            }
+        }
+    }
+
+    public void testEmptyInput() throws IOException {
+        assertThat(chunk(new byte[0]), empty());
+    }
+
+    public void testIdenticalContentYieldsIdenticalChunks() throws IOException {
+        final byte[] bytes = randomByteArrayOfLength(randomIntBetween(1, 64 * 1024));
+        assertThat(chunk(bytes), equalTo(chunk(bytes.clone())));
+    }
+
+    public void testUniformContentIsCutAtMaxChunkSize() throws IOException {
+        final byte[] bytes = new byte[4 * MAX_CHUNK_SIZE];
+        final List<Chunk> chunks = chunk(bytes);
+        assertThat(chunks.size(), equalTo(4));
+        assertThat(chunks.stream().map(Chunk::name).distinct().count(), equalTo(1L));
+    }
+
+    public void testBoundariesSurviveInsertion() throws IOException {
+        final byte[] original = randomByteArrayOfLength(512 * 1024);
+        final byte[] inserted = randomByteArrayOfLength(randomIntBetween(1, 100));
+        final int offset = randomIntBetween(0, original.length);
+        final byte[] modified = new byte[original.length + inserted.length];
+        System.arraycopy(original, 0, modified, 0, offset);
+        System.arraycopy(inserted, 0, modified, offset, inserted.length);
+        System.arraycopy(original, offset, modified, offset + inserted.length, original.length - offset);
+
+        final List<Chunk> originalChunks = chunk(original);
+        final Set<String> originalNames = originalChunks.stream().map(Chunk::name).collect(Collectors.toSet());
+        final Set<String> modifiedNames = new HashSet<>(chunk(modified).stream().map(Chunk::name).collect(Collectors.toList()));
+        modifiedNames.retainAll(originalNames);
+        // only the chunks following the insertion point until the boundaries resynchronize may change, the vast majority is shared
+        assertThat(modifiedNames.size(), greaterThanOrEqualTo(originalNames.size() * 9 / 10));
+    }
+
+    public void testInvalidSizes() {
+        expectThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(1000, 8000));
+        expectThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(128, 1024));
+        expectThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(1024, 1024));
+    }
+
+    private static List<Chunk> chunk(byte[] bytes) throws IOException {
+        return new ContentDefinedChunker(AVERAGE_CHUNK_SIZE, MAX_CHUNK_SIZE).chunk(new ByteArrayInputStream(bytes));
+    }
+}
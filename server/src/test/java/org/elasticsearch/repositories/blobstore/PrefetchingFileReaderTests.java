@@ -0,0 +1,183 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.repositories.blobstore;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo;
+import org.elasticsearch.index.store.StoreFileMetadata;
+import org.elasticsearch.indices.recovery.RecoverySettings;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PrefetchingFileReaderTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getTestName());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        ThreadPool.terminate(threadPool, 10L, TimeUnit.SECONDS);
+        super.tearDown();
+    }
+
+    public void testReadsRangesInOrder() throws Exception {
+        final int maxConcurrentReads = between(0, 8);
+        final RecoverySettings recoverySettings = recoverySettings(maxConcurrentReads);
+        final byte[] contents = randomByteArrayOfLength(between(1, 64 * 1024));
+        final FileInfo fileInfo = fileInfo(contents.length, between(1, contents.length + 10));
+        final Map<String, byte[]> blobs = parts(fileInfo, contents);
+        final int rangeSize = between(1, contents.length + 10);
+
+        final AtomicInteger concurrentReads = new AtomicInteger();
+        final AtomicInteger maxObservedConcurrentReads = new AtomicInteger();
+        final Set<String> readThreads = ConcurrentHashMap.newKeySet();
+        final PrefetchingFileReader.RangeReader rangeReader = (blobName, position, length) -> {
+            final int concurrent = concurrentReads.incrementAndGet();
+            maxObservedConcurrentReads.accumulateAndGet(concurrent, Math::max);
+            readThreads.add(Thread.currentThread().getName());
+            try {
+                if (rarely()) {
+                    Thread.yield();
+                }
+                final int offset = Math.toIntExact(position);
+                return Arrays.copyOfRange(blobs.get(blobName), offset, offset + length);
+            } finally {
+                concurrentReads.decrementAndGet();
+            }
+        };
+
+        final ByteArrayOutputStream restored = new ByteArrayOutputStream();
+        try (
+            PrefetchingFileReader reader = new PrefetchingFileReader(
+                fileInfo,
+                rangeSize,
+                rangeReader,
+                threadPool.generic(),
+                recoverySettings
+            )
+        ) {
+            byte[] range;
+            while ((range = reader.next()) != null) {
+                assertThat(range.length, lessThanOrEqualTo(rangeSize));
+                restored.write(range);
+            }
+            assertThat(reader.next(), nullValue());
+        }
+        assertArrayEquals(contents, restored.toByteArray());
+        // the calling thread reads at most one range at a time in addition to the concurrent reads
+        assertThat(maxObservedConcurrentReads.get(), lessThanOrEqualTo(maxConcurrentReads + 1));
+        if (maxConcurrentReads == 0) {
+            assertThat(readThreads, equalTo(Set.of(Thread.currentThread().getName())));
+        }
+        assertBusy(() -> assertThat(recoverySettings.tryAcquireSnapshotRangeRead(), equalTo(maxConcurrentReads > 0)));
+    }
+
+    public void testPropagatesReadFailures() throws Exception {
+        final RecoverySettings recoverySettings = recoverySettings(between(0, 4));
+        final FileInfo fileInfo = fileInfo(between(2, 1024), Long.MAX_VALUE);
+        final int rangeSize = between(1, Math.toIntExact(fileInfo.length()) - 1);
+        final int numberOfRanges = Math.toIntExact((fileInfo.length() + rangeSize - 1) / rangeSize);
+        final long failingPosition = (long) between(0, numberOfRanges - 1) * rangeSize;
+        final boolean ioFailure = randomBoolean();
+        final PrefetchingFileReader.RangeReader rangeReader = (blobName, position, length) -> {
+            if (position == failingPosition) {
+                if (ioFailure) {
+                    throw new IOException("simulated");
+                }
+                throw new IllegalStateException("simulated");
+            }
+            return new byte[length];
+        };
+
+        try (
+            PrefetchingFileReader reader = new PrefetchingFileReader(
+                fileInfo,
+                rangeSize,
+                rangeReader,
+                randomFrom(threadPool.generic(), EsExecutors.DIRECT_EXECUTOR_SERVICE),
+                recoverySettings
+            )
+        ) {
+            assertThat(reader.numberOfRanges(), equalTo(numberOfRanges));
+            final Exception e = expectThrows(Exception.class, () -> {
+                while (reader.next() != null) {
+                    // keep reading until the failing range
+                }
+            });
+            assertThat(e.getClass(), equalTo(ioFailure ? IOException.class : IllegalStateException.class));
+            assertThat(e.getMessage(), equalTo("simulated"));
+        }
+        // reads that were in flight when the reader failed eventually release their budget
+        assertBusy(() -> {
+            int acquired = 0;
+            while (recoverySettings.tryAcquireSnapshotRangeRead()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                recoverySettings.releaseSnapshotRangeRead();
+            }
+            assertThat(acquired, equalTo(recoverySettings.getMaxConcurrentSnapshotRangeReads()));
+        });
+    }
+
+    private static RecoverySettings recoverySettings(int maxConcurrentReads) {
+        final Settings settings = Settings.builder()
+            .put(RecoverySettings.INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_RANGE_READS.getKey(), maxConcurrentReads)
+            .build();
+        return new RecoverySettings(settings, new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+    }
+
+    private static FileInfo fileInfo(long length, long partSize) {
+        final StoreFileMetadata metadata = new StoreFileMetadata(
+            "_0.cfs",
+            length,
+            "_checksum",
+            Version.LATEST.toString(),
+            new BytesRef(),
+            StoreFileMetadata.UNAVAILABLE_WRITER_UUID
+        );
+        return new FileInfo("__" + randomAlphaOfLength(10), metadata, new ByteSizeValue(partSize));
+    }
+
+    private static Map<String, byte[]> parts(FileInfo fileInfo, byte[] contents) {
+        final Map<String, byte[]> parts = new HashMap<>();
+        int offset = 0;
+        for (int part = 0; part < fileInfo.numberOfParts(); part++) {
+            final int partBytes = Math.toIntExact(fileInfo.partBytes(part));
+            parts.put(fileInfo.partName(part), Arrays.copyOfRange(contents, offset, offset + partBytes));
+            offset += partBytes;
+        }
+        assertThat(offset, equalTo(contents.length));
+        return parts;
+    }
+}
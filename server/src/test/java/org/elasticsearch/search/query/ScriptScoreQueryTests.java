@@ -18,6 +18,7 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.Version;
@@ -33,6 +34,7 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.function.Function;
 
 import static org.hamcrest.CoreMatchers.containsString;
@@ -131,6 +133,37 @@ public class ScriptScoreQueryTests extends ESTestCase {
         assertTrue(e.getMessage().contains("Must be a non-negative score!"));
     }
 
+    public void testBatchScores() throws IOException {
+        Script script = new Script("script that scores batches");
+        ScoreScript.LeafFactory perDoc = newFactory(script, false, explanation -> 2.0);
+        for (boolean batched : new boolean[] { true, false }) {
+            ScoreScript.LeafFactory factory = new ScoreScript.LeafFactory() {
+                @Override
+                public boolean needs_score() {
+                    return false;
+                }
+
+                @Override
+                public ScoreScript newInstance(DocReader reader) throws IOException {
+                    return perDoc.newInstance(reader);
+                }
+
+                @Override
+                public ScoreScript.BatchScoreScript newBatchInstance(DocReader reader) {
+                    return (docs, subQueryScores, count, scores) -> {
+                        Arrays.fill(scores, 0, count, 3.0);
+                        // documents that can't be scored in batches are scored one at a time
+                        return batched;
+                    };
+                }
+            };
+            ScriptScoreQuery query = new ScriptScoreQuery(Queries.newMatchAllQuery(), script, factory, lookup, null, "index", 0,
+                Version.CURRENT);
+            TopDocs topDocs = searcher.search(query, 1);
+            assertThat(topDocs.scoreDocs[0].score, equalTo(batched ? 3.0f : 2.0f));
+        }
+    }
+
     private ScoreScript.LeafFactory newFactory(Script script, boolean needsScore,
                                                Function<ScoreScript.ExplanationHolder, Double> function) {
         SearchLookup lookup = mock(SearchLookup.class);
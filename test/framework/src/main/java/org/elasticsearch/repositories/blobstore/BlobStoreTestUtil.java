@@ -112,7 +112,9 @@ public final class BlobStoreTestUtil {
                 try (InputStream blob = blobContainer.readBlob(BlobStoreRepository.INDEX_FILE_PREFIX + latestGen);
                      XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
                          LoggingDeprecationHandler.INSTANCE, blob)) {
-                    repositoryData = RepositoryData.snapshotsFromXContent(parser, latestGen, false);
+                    repositoryData = RepositoryData.snapshotsFromXContent(parser, latestGen, false,
+                        segmentUUID -> BlobStoreRepository.REPOSITORY_DATA_SEGMENT_FORMAT.read(
+                            repository.getMetadata().name(), blobContainer, segmentUUID, NamedXContentRegistry.EMPTY));
                 }
                 assertIndexUUIDs(repository, repositoryData);
                 assertSnapshotUUIDs(repository, repositoryData, new ActionListener<>() {
@@ -17,6 +17,7 @@ import org.elasticsearch.env.Environment;
 import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.mapper.Mapper;
 import org.elasticsearch.plugins.ActionPlugin;
+import org.elasticsearch.plugins.ExtensiblePlugin;
 import org.elasticsearch.plugins.MapperPlugin;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.plugins.SearchPlugin;
@@ -42,6 +43,8 @@ import org.elasticsearch.xpack.analytics.rate.InternalRate;
 import org.elasticsearch.xpack.analytics.rate.RateAggregationBuilder;
 import org.elasticsearch.xpack.analytics.stringstats.InternalStringStats;
 import org.elasticsearch.xpack.analytics.stringstats.StringStatsAggregationBuilder;
+import org.elasticsearch.xpack.analytics.timeseries.InternalTimeSeries;
+import org.elasticsearch.xpack.analytics.timeseries.TimeSeriesAggregationBuilder;
 import org.elasticsearch.xpack.analytics.topmetrics.InternalTopMetrics;
 import org.elasticsearch.xpack.analytics.topmetrics.TopMetricsAggregationBuilder;
 import org.elasticsearch.xpack.analytics.topmetrics.TopMetricsAggregatorFactory;
@@ -65,7 +68,7 @@ import java.util.function.Supplier;
 
 import static java.util.Collections.singletonList;
 
-public class AnalyticsPlugin extends Plugin implements SearchPlugin, ActionPlugin, MapperPlugin {
+public class AnalyticsPlugin extends Plugin implements SearchPlugin, ActionPlugin, MapperPlugin, ExtensiblePlugin {
     private final AnalyticsUsage usage = new AnalyticsUsage();
 
     public AnalyticsPlugin() {}
@@ -129,7 +132,12 @@ public class AnalyticsPlugin extends Plugin implements SearchPlugin, ActionPlugi
                 MultiTermsAggregationBuilder.NAME,
                 MultiTermsAggregationBuilder::new,
                 usage.track(AnalyticsStatsAction.Item.MULTI_TERMS, MultiTermsAggregationBuilder.PARSER)
-            ).addResultReader(InternalMultiTerms::new).setAggregatorRegistrar(MultiTermsAggregationBuilder::registerAggregators)
+            ).addResultReader(InternalMultiTerms::new).setAggregatorRegistrar(MultiTermsAggregationBuilder::registerAggregators),
+            new AggregationSpec(
+                TimeSeriesAggregationBuilder.NAME,
+                TimeSeriesAggregationBuilder::new,
+                usage.track(AnalyticsStatsAction.Item.TIME_SERIES, TimeSeriesAggregationBuilder.PARSER)
+            ).addResultReader(InternalTimeSeries::new).setAggregatorRegistrar(TimeSeriesAggregationBuilder::registerAggregators)
         );
     }
 
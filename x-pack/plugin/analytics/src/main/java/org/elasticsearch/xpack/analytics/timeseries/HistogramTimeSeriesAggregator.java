@@ -0,0 +1,89 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.index.fielddata.HistogramValue;
+import org.elasticsearch.index.fielddata.HistogramValues;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.xpack.analytics.aggregations.support.HistogramValuesSource;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Samples pre-aggregated histograms, such as the cumulative histograms of a monitoring system. The sample of a document
+ * is the sum of the values of its histogram, or the number of values with the {@code value_count} mode.
+ */
+public class HistogramTimeSeriesAggregator extends TimeSeriesAggregator {
+    public HistogramTimeSeriesAggregator(
+        String name,
+        ValuesSourceConfig valuesSourceConfig,
+        Rounding rounding,
+        TimeSeriesMetric metric,
+        Rounding.DateTimeUnit rateUnit,
+        RateMode rateMode,
+        String timestampField,
+        AggregationContext context,
+        Aggregator parent,
+        Map<String, Object> metadata
+    ) throws IOException {
+        super(
+            name,
+            valuesSourceConfig,
+            rounding,
+            metric,
+            rateUnit,
+            rateMode == null ? RateMode.SUM : rateMode,
+            timestampField,
+            context,
+            parent,
+            metadata
+        );
+    }
+
+    @Override
+    protected NumericDoubleValues getValues(LeafReaderContext ctx) throws IOException {
+        final HistogramValues values = ((HistogramValuesSource.Histogram) valuesSource).getHistogramValues(ctx);
+        return new NumericDoubleValues() {
+            private double value;
+
+            @Override
+            public boolean advanceExact(int doc) throws IOException {
+                if (values.advanceExact(doc) == false) {
+                    return false;
+                }
+                final HistogramValue histogram = values.histogram();
+                double sum = 0;
+                while (histogram.next()) {
+                    switch (rateMode) {
+                        case SUM:
+                            sum += histogram.value() * histogram.count();
+                            break;
+                        case VALUE_COUNT:
+                            sum += histogram.count();
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unsupported rate mode " + rateMode);
+                    }
+                }
+                value = sum;
+                return true;
+            }
+
+            @Override
+            public double doubleValue() {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The time buckets of each series. The points of a series are kept as partial states so that the series that have
+ * documents on several shards can be merged, which is exact as long as the samples of a series in a time bucket don't
+ * interleave across shards, for instance when the shards hold consecutive time ranges.
+ */
+public class InternalTimeSeries extends InternalAggregation {
+
+    private final DocValueFormat format;
+    private final TimeSeriesMetric metric;
+    /**
+     * The size of the time buckets in rate units.
+     */
+    private final double rateDivisor;
+    private final List<Series> series;
+
+    public InternalTimeSeries(
+        String name,
+        DocValueFormat format,
+        TimeSeriesMetric metric,
+        double rateDivisor,
+        List<Series> series,
+        Map<String, Object> metadata
+    ) {
+        super(name, metadata);
+        this.format = format;
+        this.metric = metric;
+        this.rateDivisor = rateDivisor;
+        this.series = series;
+    }
+
+    /**
+     * Read from a stream.
+     */
+    public InternalTimeSeries(StreamInput in) throws IOException {
+        super(in);
+        format = in.readNamedWriteable(DocValueFormat.class);
+        metric = in.readEnum(TimeSeriesMetric.class);
+        rateDivisor = in.readDouble();
+        series = in.readList(Series::new);
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        out.writeNamedWriteable(format);
+        out.writeEnum(metric);
+        out.writeDouble(rateDivisor);
+        out.writeList(series);
+    }
+
+    @Override
+    public String getWriteableName() {
+        return TimeSeriesAggregationBuilder.NAME;
+    }
+
+    public List<Series> getSeries() {
+        return series;
+    }
+
+    /**
+     * The value of a time bucket of a series, which is the rate of the counter or its last value depending on the metric.
+     * The increase of the counter since the last sample of the previous bucket counts toward the rate of the bucket, so
+     * that the rates of the buckets add up to the increase of the counter over the whole series.
+     */
+    public double value(Series series, int index) {
+        Point point = series.points.get(index);
+        switch (metric) {
+            case RATE:
+                double increase = point.increase;
+                if (index > 0) {
+                    increase += Point.increase(series.points.get(index - 1).lastValue, point.firstValue);
+                }
+                return increase / rateDivisor;
+            case LAST_VALUE:
+                return point.lastValue;
+            default:
+                throw new IllegalArgumentException("Unsupported metric " + metric);
+        }
+    }
+
+    @Override
+    public InternalAggregation reduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
+        Map<Map<String, Object>, TreeMap<Long, Point>> pointsBySeries = new HashMap<>();
+        for (InternalAggregation aggregation : aggregations) {
+            for (Series s : ((InternalTimeSeries) aggregation).series) {
+                TreeMap<Long, Point> points = pointsBySeries.computeIfAbsent(s.key, k -> new TreeMap<>());
+                for (Point point : s.points) {
+                    points.merge(point.key, point, Point::merge);
+                }
+            }
+        }
+        List<Series> reduced = new ArrayList<>(pointsBySeries.size());
+        for (Map.Entry<Map<String, Object>, TreeMap<Long, Point>> entry : pointsBySeries.entrySet()) {
+            reduced.add(new Series(entry.getKey(), new ArrayList<>(entry.getValue().values())));
+        }
+        reduced.sort(Comparator.comparing(s -> s.key, InternalTimeSeries::compareKeys));
+        return new InternalTimeSeries(name, format, metric, rateDivisor, reduced, getMetadata());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareKeys(Map<String, Object> a, Map<String, Object> b) {
+        Iterator<Object> bValues = b.values().iterator();
+        for (Object aValue : a.values()) {
+            if (bValues.hasNext() == false) {
+                return 1;
+            }
+            Object bValue = bValues.next();
+            int cmp;
+            if (aValue == null || bValue == null) {
+                cmp = aValue == null ? (bValue == null ? 0 : -1) : 1;
+            } else if (aValue instanceof Comparable && aValue.getClass() == bValue.getClass()) {
+                cmp = ((Comparable) aValue).compareTo(bValue);
+            } else {
+                cmp = aValue.toString().compareTo(bValue.toString());
+            }
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return bValues.hasNext() ? -1 : 0;
+    }
+
+    @Override
+    protected boolean mustReduceOnSingleInternalAgg() {
+        return false;
+    }
+
+    @Override
+    public Object getProperty(List<String> path) {
+        if (path.isEmpty()) {
+            return this;
+        }
+        throw new IllegalArgumentException("path not supported for [" + getName() + "]: " + path);
+    }
+
+    @Override
+    public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+        builder.startArray(CommonFields.BUCKETS.getPreferredName());
+        for (Series s : series) {
+            builder.startObject();
+            builder.field(CommonFields.KEY.getPreferredName(), s.key);
+            builder.startArray(CommonFields.VALUES.getPreferredName());
+            for (int i = 0; i < s.points.size(); i++) {
+                Point point = s.points.get(i);
+                builder.startObject();
+                builder.field(CommonFields.KEY.getPreferredName(), point.key);
+                if (format != DocValueFormat.RAW) {
+                    builder.field(CommonFields.KEY_AS_STRING.getPreferredName(), format.format(point.key).toString());
+                }
+                builder.field(CommonFields.VALUE.getPreferredName(), value(s, i));
+                builder.endObject();
+            }
+            builder.endArray();
+            builder.endObject();
+        }
+        builder.endArray();
+        return builder;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), format, metric, rateDivisor, series);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        if (super.equals(obj) == false) return false;
+        InternalTimeSeries other = (InternalTimeSeries) obj;
+        return Objects.equals(format, other.format)
+            && metric == other.metric
+            && rateDivisor == other.rateDivisor
+            && Objects.equals(series, other.series);
+    }
+
+    /**
+     * A series, identified by the values of its dimensions, and its time buckets in time order.
+     */
+    public static class Series implements Writeable {
+        private final Map<String, Object> key;
+        private final List<Point> points;
+
+        public Series(Map<String, Object> key, List<Point> points) {
+            this.key = key;
+            this.points = points;
+        }
+
+        Series(StreamInput in) throws IOException {
+            key = in.readOrderedMap(StreamInput::readString, StreamInput::readGenericValue);
+            points = in.readList(Point::new);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeMap(key, StreamOutput::writeString, StreamOutput::writeGenericValue);
+            out.writeList(points);
+        }
+
+        public Map<String, Object> getKey() {
+            return key;
+        }
+
+        public List<Point> getPoints() {
+            return points;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Series other = (Series) o;
+            return key.equals(other.key) && points.equals(other.points);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, points);
+        }
+    }
+
+    /**
+     * The partial state of a time bucket of a series: its first and last samples and the increase of the counter
+     * between its samples, which accounts for counter resets.
+     */
+    public static class Point implements Writeable {
+        private final long key;
+        private final long firstTimestamp;
+        private final double firstValue;
+        private final long lastTimestamp;
+        private final double lastValue;
+        private final double increase;
+
+        public Point(long key, long firstTimestamp, double firstValue, long lastTimestamp, double lastValue, double increase) {
+            this.key = key;
+            this.firstTimestamp = firstTimestamp;
+            this.firstValue = firstValue;
+            this.lastTimestamp = lastTimestamp;
+            this.lastValue = lastValue;
+            this.increase = increase;
+        }
+
+        Point(StreamInput in) throws IOException {
+            key = in.readLong();
+            firstTimestamp = in.readLong();
+            firstValue = in.readDouble();
+            lastTimestamp = in.readLong();
+            lastValue = in.readDouble();
+            increase = in.readDouble();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeLong(key);
+            out.writeLong(firstTimestamp);
+            out.writeDouble(firstValue);
+            out.writeLong(lastTimestamp);
+            out.writeDouble(lastValue);
+            out.writeDouble(increase);
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public double getLastValue() {
+            return lastValue;
+        }
+
+        public double getIncrease() {
+            return increase;
+        }
+
+        /**
+         * Merges the states of the same time bucket of a series coming from two shards.
+         */
+        static Point merge(Point a, Point b) {
+            if (b.firstTimestamp < a.firstTimestamp) {
+                return merge(b, a);
+            }
+            double increase = a.increase + b.increase;
+            if (b.firstTimestamp >= a.lastTimestamp) {
+                increase += increase(a.lastValue, b.firstValue);
+            }
+            Point last = b.lastTimestamp >= a.lastTimestamp ? b : a;
+            return new Point(a.key, a.firstTimestamp, a.firstValue, last.lastTimestamp, last.lastValue, increase);
+        }
+
+        /**
+         * The increase of a counter between two consecutive samples. A counter that went down was reset in between.
+         */
+        static double increase(double previous, double current) {
+            return current >= previous ? current - previous : current;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Point other = (Point) o;
+            return key == other.key
+                && firstTimestamp == other.firstTimestamp
+                && Double.compare(firstValue, other.firstValue) == 0
+                && lastTimestamp == other.lastTimestamp
+                && Double.compare(lastValue, other.lastValue) == 0
+                && Double.compare(increase, other.increase) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, firstTimestamp, firstValue, lastTimestamp, lastValue, increase);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class NumericTimeSeriesAggregator extends TimeSeriesAggregator {
+    public NumericTimeSeriesAggregator(
+        String name,
+        ValuesSourceConfig valuesSourceConfig,
+        Rounding rounding,
+        TimeSeriesMetric metric,
+        Rounding.DateTimeUnit rateUnit,
+        RateMode rateMode,
+        String timestampField,
+        AggregationContext context,
+        Aggregator parent,
+        Map<String, Object> metadata
+    ) throws IOException {
+        super(name, valuesSourceConfig, rounding, metric, rateUnit, rateMode, timestampField, context, parent, metadata);
+        if (rateMode != null) {
+            throw new IllegalArgumentException(
+                "The mode parameter of the ["
+                    + TimeSeriesAggregationBuilder.NAME
+                    + "] aggregation is only supported with pre-aggregated fields"
+            );
+        }
+    }
+
+    @Override
+    protected NumericDoubleValues getValues(LeafReaderContext ctx) throws IOException {
+        // a sample is expected to have a single value, take the highest one otherwise
+        return MultiValueMode.MAX.select(((ValuesSource.Numeric) valuesSource).doubleValues(ctx));
+    }
+}
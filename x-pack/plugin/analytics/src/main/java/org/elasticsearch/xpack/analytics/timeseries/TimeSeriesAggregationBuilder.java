@@ -0,0 +1,261 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.elasticsearch.cluster.metadata.DataStream;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.CoreValuesSourceType;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.aggregations.support.ValuesSourceRegistry;
+import org.elasticsearch.search.aggregations.support.ValuesSourceType;
+import org.elasticsearch.xcontent.ObjectParser;
+import org.elasticsearch.xcontent.ParseField;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Computes a metric per time series and per time bucket. The series are the distinct values of the fields the index
+ * is sorted on before the timestamp, so the documents of a shard can be walked one series at a time, in time order,
+ * keeping only the state of the current series in memory.
+ */
+public class TimeSeriesAggregationBuilder extends ValuesSourceAggregationBuilder.LeafOnly<ValuesSource, TimeSeriesAggregationBuilder> {
+    public static final String NAME = "time_series";
+    public static final ParseField FIXED_INTERVAL_FIELD = new ParseField("fixed_interval");
+    public static final ParseField METRIC_FIELD = new ParseField("metric");
+    public static final ParseField UNIT_FIELD = new ParseField("unit");
+    public static final ParseField MODE_FIELD = new ParseField("mode");
+    public static final ParseField TIMESTAMP_FIELD = new ParseField("timestamp_field");
+    public static final ValuesSourceRegistry.RegistryKey<TimeSeriesAggregatorSupplier> REGISTRY_KEY =
+        new ValuesSourceRegistry.RegistryKey<>(NAME, TimeSeriesAggregatorSupplier.class);
+    public static final ObjectParser<TimeSeriesAggregationBuilder, String> PARSER = ObjectParser.fromBuilder(
+        NAME,
+        TimeSeriesAggregationBuilder::new
+    );
+
+    static {
+        ValuesSourceAggregationBuilder.declareFields(PARSER, false, false, false);
+        PARSER.declareField(
+            TimeSeriesAggregationBuilder::fixedInterval,
+            p -> new DateHistogramInterval(p.text()),
+            FIXED_INTERVAL_FIELD,
+            ObjectParser.ValueType.STRING
+        );
+        PARSER.declareString(TimeSeriesAggregationBuilder::metric, METRIC_FIELD);
+        PARSER.declareString(TimeSeriesAggregationBuilder::rateUnit, UNIT_FIELD);
+        PARSER.declareString(TimeSeriesAggregationBuilder::rateMode, MODE_FIELD);
+        PARSER.declareString(TimeSeriesAggregationBuilder::timestampField, TIMESTAMP_FIELD);
+    }
+
+    private DateHistogramInterval fixedInterval;
+    private TimeSeriesMetric metric = TimeSeriesMetric.RATE;
+    private Rounding.DateTimeUnit rateUnit = Rounding.DateTimeUnit.SECOND_OF_MINUTE;
+    // the value of the pre-aggregated fields that is used as the sample, null for the default
+    private RateMode rateMode;
+    private String timestampField = DataStream.TimestampField.FIXED_TIMESTAMP_FIELD;
+
+    public static void registerAggregators(ValuesSourceRegistry.Builder builder) {
+        TimeSeriesAggregatorFactory.registerAggregators(builder);
+    }
+
+    public TimeSeriesAggregationBuilder(String name) {
+        super(name);
+    }
+
+    protected TimeSeriesAggregationBuilder(
+        TimeSeriesAggregationBuilder clone,
+        AggregatorFactories.Builder factoriesBuilder,
+        Map<String, Object> metadata
+    ) {
+        super(clone, factoriesBuilder, metadata);
+        this.fixedInterval = clone.fixedInterval;
+        this.metric = clone.metric;
+        this.rateUnit = clone.rateUnit;
+        this.rateMode = clone.rateMode;
+        this.timestampField = clone.timestampField;
+    }
+
+    /**
+     * Read from a stream.
+     */
+    public TimeSeriesAggregationBuilder(StreamInput in) throws IOException {
+        super(in);
+        fixedInterval = new DateHistogramInterval(in);
+        metric = in.readEnum(TimeSeriesMetric.class);
+        rateUnit = Rounding.DateTimeUnit.resolve(in.readByte());
+        rateMode = in.readOptionalEnum(RateMode.class);
+        timestampField = in.readString();
+    }
+
+    @Override
+    protected void innerWriteTo(StreamOutput out) throws IOException {
+        fixedInterval.writeTo(out);
+        out.writeEnum(metric);
+        out.writeByte(rateUnit.getId());
+        out.writeOptionalEnum(rateMode);
+        out.writeString(timestampField);
+    }
+
+    @Override
+    protected AggregationBuilder shallowCopy(AggregatorFactories.Builder factoriesBuilder, Map<String, Object> metadata) {
+        return new TimeSeriesAggregationBuilder(this, factoriesBuilder, metadata);
+    }
+
+    @Override
+    protected ValuesSourceType defaultValueSourceType() {
+        return CoreValuesSourceType.NUMERIC;
+    }
+
+    @Override
+    protected ValuesSourceRegistry.RegistryKey<?> getRegistryKey() {
+        return REGISTRY_KEY;
+    }
+
+    @Override
+    protected TimeSeriesAggregatorFactory innerBuild(
+        AggregationContext context,
+        ValuesSourceConfig config,
+        AggregatorFactory parent,
+        AggregatorFactories.Builder subFactoriesBuilder
+    ) throws IOException {
+        if (parent != null) {
+            throw new IllegalArgumentException("[" + NAME + "] aggregation [" + name + "] must be a top level aggregation");
+        }
+        if (fixedInterval == null) {
+            throw new IllegalArgumentException("[" + FIXED_INTERVAL_FIELD.getPreferredName() + "] is required for [" + name + "]");
+        }
+        TimeValue interval = TimeValue.parseTimeValue(fixedInterval.toString(), FIXED_INTERVAL_FIELD.getPreferredName());
+        Rounding rounding = Rounding.builder(interval).build();
+        TimeSeriesAggregatorSupplier aggregatorSupplier = context.getValuesSourceRegistry().getAggregator(REGISTRY_KEY, config);
+        return new TimeSeriesAggregatorFactory(
+            name,
+            config,
+            rounding,
+            metric,
+            rateUnit,
+            rateMode,
+            timestampField,
+            context,
+            parent,
+            subFactoriesBuilder,
+            metadata,
+            aggregatorSupplier
+        );
+    }
+
+    @Override
+    public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+        if (fixedInterval != null) {
+            builder.field(FIXED_INTERVAL_FIELD.getPreferredName(), fixedInterval.toString());
+        }
+        builder.field(METRIC_FIELD.getPreferredName(), metric.value());
+        builder.field(UNIT_FIELD.getPreferredName(), rateUnit.shortName());
+        if (rateMode != null) {
+            builder.field(MODE_FIELD.getPreferredName(), rateMode.value());
+        }
+        builder.field(TIMESTAMP_FIELD.getPreferredName(), timestampField);
+        return builder;
+    }
+
+    @Override
+    public String getType() {
+        return NAME;
+    }
+
+    public TimeSeriesAggregationBuilder fixedInterval(DateHistogramInterval fixedInterval) {
+        this.fixedInterval = Objects.requireNonNull(fixedInterval, "[fixed_interval] must not be null");
+        return this;
+    }
+
+    public DateHistogramInterval fixedInterval() {
+        return fixedInterval;
+    }
+
+    public TimeSeriesAggregationBuilder metric(String metric) {
+        return metric(TimeSeriesMetric.resolve(metric));
+    }
+
+    public TimeSeriesAggregationBuilder metric(TimeSeriesMetric metric) {
+        this.metric = Objects.requireNonNull(metric, "[metric] must not be null");
+        return this;
+    }
+
+    public TimeSeriesMetric metric() {
+        return metric;
+    }
+
+    public TimeSeriesAggregationBuilder rateUnit(String rateUnit) {
+        Rounding.DateTimeUnit parsedUnit = DateHistogramAggregationBuilder.DATE_FIELD_UNITS.get(rateUnit);
+        if (parsedUnit == null) {
+            throw new IllegalArgumentException("Unsupported unit " + rateUnit);
+        }
+        return rateUnit(parsedUnit);
+    }
+
+    public TimeSeriesAggregationBuilder rateUnit(Rounding.DateTimeUnit rateUnit) {
+        this.rateUnit = Objects.requireNonNull(rateUnit, "[unit] must not be null");
+        return this;
+    }
+
+    public Rounding.DateTimeUnit rateUnit() {
+        return rateUnit;
+    }
+
+    public TimeSeriesAggregationBuilder rateMode(String rateMode) {
+        return rateMode(RateMode.resolve(rateMode));
+    }
+
+    public TimeSeriesAggregationBuilder rateMode(RateMode rateMode) {
+        this.rateMode = rateMode;
+        return this;
+    }
+
+    public RateMode rateMode() {
+        return rateMode;
+    }
+
+    public TimeSeriesAggregationBuilder timestampField(String timestampField) {
+        this.timestampField = Objects.requireNonNull(timestampField, "[timestamp_field] must not be null");
+        return this;
+    }
+
+    public String timestampField() {
+        return timestampField;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (super.equals(o) == false) return false;
+        TimeSeriesAggregationBuilder that = (TimeSeriesAggregationBuilder) o;
+        return Objects.equals(fixedInterval, that.fixedInterval)
+            && metric == that.metric
+            && rateUnit == that.rateUnit
+            && rateMode == that.rateMode
+            && Objects.equals(timestampField, that.timestampField);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), fixedInterval, metric, rateUnit, rateMode, timestampField);
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexSorter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.DocIdSetBuilder;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.index.fielddata.FormattedDocValues;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.metrics.MetricsAggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the matching documents of each segment, then walks them one series at a time in time order by merging the
+ * segments in the order of the index sort. Only the time buckets of the series being walked are built at any time.
+ * The values of the documents are provided by the subclasses.
+ */
+public abstract class TimeSeriesAggregator extends MetricsAggregator {
+
+    // the estimated size of a point of a series
+    private static final long POINT_BYTES = 64;
+
+    protected final ValuesSource valuesSource;
+    // the value of the pre-aggregated fields that is used as the sample, null for the default
+    protected final RateMode rateMode;
+    private final Rounding.Prepared rounding;
+    private final TimeSeriesMetric metric;
+    private final double rateDivisor;
+    private final String timestampField;
+    private final DocValueFormat timestampFormat;
+    private final DateFieldMapper.Resolution timestampResolution;
+
+    // the sort of the index up to the timestamp, which is the last sort field
+    private final SortField[] sortFields;
+    private final MappedFieldType[] dimensionFieldTypes;
+    private final IndexFieldData<?>[] dimensionFieldData;
+    private final DocIdSetBuilder[] matchingDocs;
+
+    public TimeSeriesAggregator(
+        String name,
+        ValuesSourceConfig valuesSourceConfig,
+        Rounding rounding,
+        TimeSeriesMetric metric,
+        Rounding.DateTimeUnit rateUnit,
+        RateMode rateMode,
+        String timestampField,
+        AggregationContext context,
+        Aggregator parent,
+        Map<String, Object> metadata
+    ) throws IOException {
+        super(name, context, parent, metadata);
+        this.valuesSource = valuesSourceConfig.hasValues() ? valuesSourceConfig.getValuesSource() : null;
+        this.rounding = rounding.prepareForUnknown();
+        this.metric = metric;
+        this.rateMode = rateMode;
+        this.rateDivisor = metric == TimeSeriesMetric.RATE ? this.rounding.roundingSize(rateUnit) : 1.0;
+        this.timestampField = timestampField;
+
+        MappedFieldType timestampFieldType = context.getFieldType(timestampField);
+        if (timestampFieldType instanceof DateFieldMapper.DateFieldType) {
+            this.timestampFormat = timestampFieldType.docValueFormat(null, null);
+            this.timestampResolution = ((DateFieldMapper.DateFieldType) timestampFieldType).resolution();
+        } else if (valuesSource == null) {
+            this.timestampFormat = DocValueFormat.RAW;
+            this.timestampResolution = DateFieldMapper.Resolution.MILLISECONDS;
+        } else {
+            throw new IllegalArgumentException(
+                "[" + TimeSeriesAggregationBuilder.NAME + "] aggregation [" + name + "] requires [" + timestampField + "] to be a date"
+            );
+        }
+
+        List<LeafReaderContext> leaves = searcher().getIndexReader().leaves();
+        this.sortFields = valuesSource == null ? new SortField[0] : seriesSort(leaves);
+        this.dimensionFieldTypes = new MappedFieldType[Math.max(0, sortFields.length - 1)];
+        this.dimensionFieldData = new IndexFieldData<?>[dimensionFieldTypes.length];
+        for (int i = 0; i < dimensionFieldTypes.length; i++) {
+            dimensionFieldTypes[i] = context.getFieldType(sortFields[i].getField());
+            if (dimensionFieldTypes[i] == null) {
+                throw notSorted();
+            }
+            dimensionFieldData[i] = context.buildFieldContext(dimensionFieldTypes[i]).indexFieldData();
+        }
+        this.matchingDocs = new DocIdSetBuilder[leaves.size()];
+    }
+
+    /**
+     * The values of the documents of a segment.
+     */
+    protected abstract NumericDoubleValues getValues(LeafReaderContext ctx) throws IOException;
+
+    /**
+     * The sort fields of the index that identify a series, followed by the timestamp.
+     */
+    private SortField[] seriesSort(List<LeafReaderContext> leaves) throws IOException {
+        Sort indexSort = null;
+        for (LeafReaderContext leaf : leaves) {
+            Sort leafSort = leaf.reader().getMetaData().getSort();
+            if (leafSort == null || (indexSort != null && indexSort.equals(leafSort) == false)) {
+                throw notSorted();
+            }
+            indexSort = leafSort;
+        }
+        if (indexSort == null) {
+            // no segment, no series
+            return new SortField[0];
+        }
+        SortField[] sort = indexSort.getSort();
+        for (int i = 0; i < sort.length; i++) {
+            if (sort[i].getIndexSorter() == null) {
+                throw notSorted();
+            }
+            if (timestampField.equals(sort[i].getField())) {
+                if (sort[i].getReverse()) {
+                    throw notSorted();
+                }
+                SortField[] sortFields = Arrays.copyOf(sort, i + 1);
+                for (LeafReaderContext leaf : leaves) {
+                    for (SortField sortField : sortFields) {
+                        if (isSingleValued(leaf.reader(), sortField.getField()) == false) {
+                            throw new IllegalArgumentException(
+                                "["
+                                    + TimeSeriesAggregationBuilder.NAME
+                                    + "] aggregation ["
+                                    + name
+                                    + "] doesn't support multi-valued field ["
+                                    + sortField.getField()
+                                    + "]"
+                            );
+                        }
+                    }
+                }
+                return sortFields;
+            }
+        }
+        throw notSorted();
+    }
+
+    private IllegalArgumentException notSorted() {
+        return new IllegalArgumentException(
+            "["
+                + TimeSeriesAggregationBuilder.NAME
+                + "] aggregation ["
+                + name
+                + "] requires the index to be sorted on the dimensions of the series and then on ["
+                + timestampField
+                + "] in ascending order"
+        );
+    }
+
+    private static boolean isSingleValued(LeafReader reader, String field) throws IOException {
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null) {
+            return true;
+        }
+        switch (fieldInfo.getDocValuesType()) {
+            case NUMERIC:
+            case SORTED:
+                return true;
+            case SORTED_NUMERIC:
+                return DocValues.unwrapSingleton(reader.getSortedNumericDocValues(field)) != null;
+            case SORTED_SET:
+                return DocValues.unwrapSingleton(reader.getSortedSetDocValues(field)) != null;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, LeafBucketCollector sub) throws IOException {
+        if (valuesSource == null) {
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+        int maxDoc = ctx.reader().maxDoc();
+        // the builder switches to a bit set if the segment has many matching documents
+        addRequestCircuitBreakerBytes(maxDoc / Byte.SIZE);
+        DocIdSetBuilder docs = new DocIdSetBuilder(maxDoc);
+        matchingDocs[ctx.ord] = docs;
+        return new LeafBucketCollectorBase(sub, null) {
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0 : "must be a top level aggregation";
+                docs.grow(1).add(doc);
+            }
+        };
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrd) throws IOException {
+        assert owningBucketOrd == 0 : "must be a top level aggregation";
+        if (valuesSource == null || sortFields.length == 0) {
+            return buildEmptyAggregation();
+        }
+        List<LeafReaderContext> leaves = searcher().getIndexReader().leaves();
+        List<LeafReader> readers = leaves.stream().map(LeafReaderContext::reader).collect(Collectors.toList());
+        IndexSorter.ComparableProvider[][] comparables = new IndexSorter.ComparableProvider[sortFields.length][];
+        int[] reverseMuls = new int[sortFields.length];
+        for (int i = 0; i < sortFields.length; i++) {
+            comparables[i] = sortFields[i].getIndexSorter().getComparableProviders(readers);
+            reverseMuls[i] = sortFields[i].getReverse() ? -1 : 1;
+        }
+
+        PriorityQueue<SortedLeafIterator> queue = new PriorityQueue<>(leaves.size()) {
+            @Override
+            protected boolean lessThan(SortedLeafIterator a, SortedLeafIterator b) {
+                for (int i = 0; i < reverseMuls.length; i++) {
+                    int cmp = reverseMuls[i] * Long.compare(a.sortValues[i], b.sortValues[i]);
+                    if (cmp != 0) {
+                        return cmp < 0;
+                    }
+                }
+                return a.leafOrd < b.leafOrd;
+            }
+        };
+        for (LeafReaderContext leaf : leaves) {
+            if (matchingDocs[leaf.ord] == null) {
+                continue;
+            }
+            DocIdSet docs = matchingDocs[leaf.ord].build();
+            matchingDocs[leaf.ord] = null;
+            DocIdSetIterator iterator = docs.iterator();
+            if (iterator != null) {
+                SortedLeafIterator leafIterator = new SortedLeafIterator(leaf, iterator, comparables);
+                if (leafIterator.next()) {
+                    queue.add(leafIterator);
+                }
+            }
+        }
+
+        List<InternalTimeSeries.Series> series = new ArrayList<>();
+        long[] seriesSortValues = new long[dimensionFieldTypes.length];
+        SeriesBuilder current = null;
+        while (queue.size() > 0) {
+            SortedLeafIterator top = queue.top();
+            if (current == null || top.isSameSeries(seriesSortValues) == false) {
+                if (current != null) {
+                    series.add(current.build());
+                }
+                current = new SeriesBuilder(top.seriesKey());
+                System.arraycopy(top.sortValues, 0, seriesSortValues, 0, seriesSortValues.length);
+            }
+            if (top.values.advanceExact(top.docID)) {
+                current.collect(top.timestamp, top.values.doubleValue());
+            }
+            if (top.next()) {
+                queue.updateTop();
+            } else {
+                queue.pop();
+            }
+        }
+        if (current != null) {
+            series.add(current.build());
+        }
+        return new InternalTimeSeries(name, timestampFormat, metric, rateDivisor, series, metadata());
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new InternalTimeSeries(name, timestampFormat, metric, rateDivisor, List.of(), metadata());
+    }
+
+    /**
+     * Iterates over the matching documents of a segment, in the order of the index sort.
+     */
+    private class SortedLeafIterator {
+        private final int leafOrd;
+        private final DocIdSetIterator docs;
+        private final SortedNumericDocValues timestamps;
+        private final NumericDoubleValues values;
+        private final FormattedDocValues[] dimensions;
+        private final IndexSorter.ComparableProvider[] comparables;
+        // the values of the current document in the index sort, compared across segments
+        private final long[] sortValues;
+
+        private int docID = -1;
+        private long timestamp;
+
+        SortedLeafIterator(LeafReaderContext context, DocIdSetIterator docs, IndexSorter.ComparableProvider[][] comparables)
+            throws IOException {
+            this.leafOrd = context.ord;
+            this.docs = docs;
+            this.timestamps = DocValues.getSortedNumeric(context.reader(), timestampField);
+            this.values = getValues(context);
+            this.dimensions = new FormattedDocValues[dimensionFieldTypes.length];
+            for (int i = 0; i < dimensions.length; i++) {
+                DocValueFormat format = dimensionFieldTypes[i].docValueFormat(null, null);
+                this.dimensions[i] = dimensionFieldData[i].load(context).getFormattedValues(format);
+            }
+            this.comparables = new IndexSorter.ComparableProvider[comparables.length];
+            for (int i = 0; i < comparables.length; i++) {
+                this.comparables[i] = comparables[i][leafOrd];
+            }
+            this.sortValues = new long[comparables.length];
+        }
+
+        /**
+         * Moves to the next matching document that has a timestamp.
+         */
+        boolean next() throws IOException {
+            for (docID = docs.nextDoc(); docID != DocIdSetIterator.NO_MORE_DOCS; docID = docs.nextDoc()) {
+                if (timestamps.advanceExact(docID)) {
+                    timestamp = timestampResolution.roundDownToMillis(timestamps.nextValue());
+                    for (int i = 0; i < comparables.length; i++) {
+                        sortValues[i] = comparables[i].getAsComparableLong(docID);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isSameSeries(long[] seriesSortValues) {
+            for (int i = 0; i < seriesSortValues.length; i++) {
+                if (sortValues[i] != seriesSortValues[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Map<String, Object> seriesKey() throws IOException {
+            Map<String, Object> key = new LinkedHashMap<>();
+            for (int i = 0; i < dimensions.length; i++) {
+                key.put(dimensionFieldTypes[i].name(), dimensions[i].advanceExact(docID) ? dimensions[i].nextValue() : null);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Builds the time buckets of a series from its samples in time order.
+     */
+    private class SeriesBuilder {
+        private final Map<String, Object> key;
+        private final List<InternalTimeSeries.Point> points = new ArrayList<>();
+
+        private boolean hasPoint = false;
+        private long bucket;
+        private long firstTimestamp;
+        private double firstValue;
+        private long lastTimestamp;
+        private double lastValue;
+        private double increase;
+
+        SeriesBuilder(Map<String, Object> key) {
+            this.key = key;
+        }
+
+        void collect(long timestamp, double value) {
+            long rounded = rounding.round(timestamp);
+            if (hasPoint == false || rounded != bucket) {
+                if (hasPoint) {
+                    addPoint();
+                }
+                hasPoint = true;
+                bucket = rounded;
+                firstTimestamp = timestamp;
+                firstValue = value;
+                increase = 0;
+            } else {
+                increase += InternalTimeSeries.Point.increase(lastValue, value);
+            }
+            lastTimestamp = timestamp;
+            lastValue = value;
+        }
+
+        private void addPoint() {
+            addRequestCircuitBreakerBytes(POINT_BYTES);
+            points.add(new InternalTimeSeries.Point(bucket, firstTimestamp, firstValue, lastTimestamp, lastValue, increase));
+        }
+
+        InternalTimeSeries.Series build() {
+            if (hasPoint) {
+                addPoint();
+            }
+            return new InternalTimeSeries.Series(key, points);
+        }
+    }
+}
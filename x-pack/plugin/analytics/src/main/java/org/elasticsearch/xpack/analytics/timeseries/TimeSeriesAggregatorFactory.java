@@ -0,0 +1,90 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.CardinalityUpperBound;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.CoreValuesSourceType;
+import org.elasticsearch.search.aggregations.support.ValuesSourceAggregatorFactory;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.aggregations.support.ValuesSourceRegistry;
+import org.elasticsearch.xpack.analytics.aggregations.support.AnalyticsValuesSourceType;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+class TimeSeriesAggregatorFactory extends ValuesSourceAggregatorFactory {
+
+    private final TimeSeriesAggregatorSupplier aggregatorSupplier;
+    private final Rounding rounding;
+    private final TimeSeriesMetric metric;
+    private final Rounding.DateTimeUnit rateUnit;
+    private final RateMode rateMode;
+    private final String timestampField;
+
+    TimeSeriesAggregatorFactory(
+        String name,
+        ValuesSourceConfig config,
+        Rounding rounding,
+        TimeSeriesMetric metric,
+        Rounding.DateTimeUnit rateUnit,
+        RateMode rateMode,
+        String timestampField,
+        AggregationContext context,
+        AggregatorFactory parent,
+        AggregatorFactories.Builder subFactoriesBuilder,
+        Map<String, Object> metadata,
+        TimeSeriesAggregatorSupplier aggregatorSupplier
+    ) throws IOException {
+        super(name, config, context, parent, subFactoriesBuilder, metadata);
+        this.aggregatorSupplier = aggregatorSupplier;
+        this.rounding = rounding;
+        this.metric = metric;
+        this.rateUnit = rateUnit;
+        this.rateMode = rateMode;
+        this.timestampField = timestampField;
+    }
+
+    static void registerAggregators(ValuesSourceRegistry.Builder builder) {
+        builder.register(
+            TimeSeriesAggregationBuilder.REGISTRY_KEY,
+            Collections.singletonList(CoreValuesSourceType.NUMERIC),
+            NumericTimeSeriesAggregator::new,
+            true
+        );
+        builder.register(
+            TimeSeriesAggregationBuilder.REGISTRY_KEY,
+            Collections.singletonList(AnalyticsValuesSourceType.HISTOGRAM),
+            HistogramTimeSeriesAggregator::new,
+            true
+        );
+    }
+
+    @Override
+    protected Aggregator createUnmapped(Aggregator parent, Map<String, Object> metadata) throws IOException {
+        return new TimeSeriesAggregator(name, config, rounding, metric, rateUnit, rateMode, timestampField, context, parent, metadata) {
+            @Override
+            protected NumericDoubleValues getValues(LeafReaderContext ctx) {
+                throw new UnsupportedOperationException("unmapped field has no values");
+            }
+        };
+    }
+
+    @Override
+    protected Aggregator doCreateInternal(Aggregator parent, CardinalityUpperBound cardinality, Map<String, Object> metadata)
+        throws IOException {
+        return aggregatorSupplier.build(name, config, rounding, metric, rateUnit, rateMode, timestampField, context, parent, metadata);
+    }
+}
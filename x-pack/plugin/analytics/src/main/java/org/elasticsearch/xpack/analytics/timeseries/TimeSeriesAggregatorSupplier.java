@@ -0,0 +1,31 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+
+import java.io.IOException;
+import java.util.Map;
+
+public interface TimeSeriesAggregatorSupplier {
+    Aggregator build(
+        String name,
+        ValuesSourceConfig valuesSourceConfig,
+        Rounding rounding,
+        TimeSeriesMetric metric,
+        Rounding.DateTimeUnit rateUnit,
+        RateMode rateMode,
+        String timestampField,
+        AggregationContext context,
+        Aggregator parent,
+        Map<String, Object> metadata
+    ) throws IOException;
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import java.util.Locale;
+
+/**
+ * The value computed for each time bucket of a series - rate or last_value
+ */
+public enum TimeSeriesMetric {
+    /**
+     * The increase of a counter over the time bucket, per rate unit, accounting for counter resets.
+     */
+    RATE,
+    /**
+     * The value of the last sample of the time bucket.
+     */
+    LAST_VALUE;
+
+    public static TimeSeriesMetric resolve(String name) {
+        return TimeSeriesMetric.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    public String value() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
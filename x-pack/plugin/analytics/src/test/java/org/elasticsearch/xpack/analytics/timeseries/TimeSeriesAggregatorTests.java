@@ -0,0 +1,283 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.analytics.timeseries;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.SortedSetSortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.core.CheckedConsumer;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.xpack.analytics.AnalyticsPlugin;
+import org.elasticsearch.xpack.analytics.mapper.HistogramFieldMapper;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.elasticsearch.xpack.analytics.AnalyticsTestsUtils.histogramFieldDocValues;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class TimeSeriesAggregatorTests extends AggregatorTestCase {
+
+    private static final String DIMENSION_FIELD = "dim";
+    private static final String TIMESTAMP_FIELD = "@timestamp";
+    private static final String VALUE_FIELD = "val";
+    private static final long START = DateFieldMapper.DEFAULT_DATE_TIME_FORMATTER.parseMillis("2021-01-01T00:00:00Z");
+
+    private static final Sort SERIES_SORT = new Sort(
+        new SortedSetSortField(DIMENSION_FIELD, false),
+        new SortedNumericSortField(TIMESTAMP_FIELD, SortField.Type.LONG)
+    );
+
+    @Override
+    protected List<SearchPlugin> getSearchPlugins() {
+        return Collections.singletonList(new AnalyticsPlugin());
+    }
+
+    public void testRateWithCounterReset() throws IOException {
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field(VALUE_FIELD)
+            .fixedInterval(new DateHistogramInterval("30s"))
+            .rateUnit("second");
+        testCase(builder, SERIES_SORT, this::indexCounters, ts -> {
+            assertThat(ts.getSeries(), hasSize(2));
+
+            InternalTimeSeries.Series a = ts.getSeries().get(0);
+            assertThat(a.getKey(), equalTo(Map.of(DIMENSION_FIELD, "a")));
+            assertThat(a.getPoints(), hasSize(3));
+            assertThat(a.getPoints().get(0).getKey(), equalTo(START));
+            assertThat(ts.value(a, 0), closeTo(20.0 / 30, 0.000001));
+            // the counter was reset to 5, which counts as an increase of 5
+            assertThat(ts.value(a, 1), closeTo(25.0 / 30, 0.000001));
+            assertThat(ts.value(a, 2), closeTo(10.0 / 30, 0.000001));
+
+            InternalTimeSeries.Series b = ts.getSeries().get(1);
+            assertThat(b.getKey(), equalTo(Map.of(DIMENSION_FIELD, "b")));
+            assertThat(b.getPoints(), hasSize(2));
+            assertThat(ts.value(b, 0), closeTo(0.0, 0.000001));
+            assertThat(ts.value(b, 1), closeTo(10.0 / 30, 0.000001));
+        });
+    }
+
+    public void testLastValue() throws IOException {
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field(VALUE_FIELD)
+            .fixedInterval(new DateHistogramInterval("30s"))
+            .metric("last_value");
+        testCase(builder, SERIES_SORT, this::indexCounters, ts -> {
+            assertThat(ts.getSeries(), hasSize(2));
+            InternalTimeSeries.Series a = ts.getSeries().get(0);
+            assertThat(a.getPoints(), hasSize(3));
+            assertThat(ts.value(a, 0), equalTo(30.0));
+            assertThat(ts.value(a, 1), equalTo(25.0));
+            assertThat(ts.value(a, 2), equalTo(35.0));
+            assertThat(a.getPoints().get(2).getKey(), equalTo(START + 60_000));
+            InternalTimeSeries.Series b = ts.getSeries().get(1);
+            assertThat(b.getPoints(), hasSize(2));
+            assertThat(ts.value(b, 0), equalTo(100.0));
+            assertThat(ts.value(b, 1), equalTo(110.0));
+        });
+    }
+
+    public void testHistogramRate() throws IOException {
+        boolean valueCount = randomBoolean();
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field(VALUE_FIELD)
+            .fixedInterval(new DateHistogramInterval("30s"))
+            .rateUnit("second");
+        if (valueCount) {
+            builder.rateMode("value_count");
+        } else if (randomBoolean()) {
+            builder.rateMode("sum");
+        }
+        MappedFieldType histogramType = new HistogramFieldMapper.HistogramFieldType(VALUE_FIELD, Collections.emptyMap(), null);
+        testCase(builder, SERIES_SORT, iw -> {
+            int[][] counts = new int[][] { { 1, 1 }, { 2, 3 }, { 4, 4 }, { 1, 1 } };
+            for (int i = 0; i < counts.length; i++) {
+                iw.addDocument(histogramDoc(START + i * 10_000, new double[] { 1, 2 }, counts[i]));
+                if (randomBoolean()) {
+                    iw.commit();
+                }
+            }
+        }, ts -> {
+            assertThat(ts.getSeries(), hasSize(1));
+            InternalTimeSeries.Series a = ts.getSeries().get(0);
+            assertThat(a.getPoints(), hasSize(2));
+            if (valueCount) {
+                // the number of values went from 2 to 8, then the histogram was reset to 2 values
+                assertThat(ts.value(a, 0), closeTo(6.0 / 30, 0.000001));
+                assertThat(ts.value(a, 1), closeTo(2.0 / 30, 0.000001));
+            } else {
+                // the sum of the values went from 3 to 12, then the histogram was reset to a sum of 3
+                assertThat(ts.value(a, 0), closeTo(9.0 / 30, 0.000001));
+                assertThat(ts.value(a, 1), closeTo(3.0 / 30, 0.000001));
+            }
+        }, histogramType);
+    }
+
+    public void testModeOnNumericField() {
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field(VALUE_FIELD)
+            .fixedInterval(new DateHistogramInterval("30s"))
+            .rateMode(randomFrom(RateMode.values()));
+        IllegalArgumentException e = expectThrows(
+            IllegalArgumentException.class,
+            () -> testCase(builder, SERIES_SORT, this::indexCounters, ts -> fail("Shouldn't be here"))
+        );
+        assertEquals("The mode parameter of the [time_series] aggregation is only supported with pre-aggregated fields", e.getMessage());
+    }
+
+    public void testUnmappedField() throws IOException {
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field("unmapped")
+            .fixedInterval(new DateHistogramInterval("30s"));
+        testCase(builder, SERIES_SORT, this::indexCounters, ts -> assertThat(ts.getSeries(), hasSize(0)));
+    }
+
+    public void testUnsortedIndex() {
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field(VALUE_FIELD)
+            .fixedInterval(new DateHistogramInterval("30s"));
+        Sort sort = randomBoolean() ? null : new Sort(new SortedNumericSortField(TIMESTAMP_FIELD, SortField.Type.LONG, true));
+        IllegalArgumentException e = expectThrows(
+            IllegalArgumentException.class,
+            () -> testCase(builder, sort, this::indexCounters, ts -> fail("Shouldn't be here"))
+        );
+        assertEquals(
+            "[time_series] aggregation [ts] requires the index to be sorted on the dimensions of the series "
+                + "and then on [@timestamp] in ascending order",
+            e.getMessage()
+        );
+    }
+
+    public void testNotTopLevel() {
+        TermsAggregationBuilder builder = new TermsAggregationBuilder("terms").field(DIMENSION_FIELD)
+            .subAggregation(new TimeSeriesAggregationBuilder("ts").field(VALUE_FIELD).fixedInterval(new DateHistogramInterval("30s")));
+        IllegalArgumentException e = expectThrows(
+            IllegalArgumentException.class,
+            () -> withSortedIndex(SERIES_SORT, this::indexCounters, searcher -> {
+                searchAndReduce(
+                    searcher,
+                    new MatchAllDocsQuery(),
+                    builder,
+                    fieldTypes(new NumberFieldMapper.NumberFieldType(VALUE_FIELD, NumberFieldMapper.NumberType.LONG))
+                );
+            })
+        );
+        assertEquals("[time_series] aggregation [ts] must be a top level aggregation", e.getMessage());
+    }
+
+    /**
+     * Indexes the samples of two counters, committing at random so that the series span segments.
+     */
+    private void indexCounters(RandomIndexWriter iw) throws IOException {
+        long[] a = new long[] { 10, 20, 30, 5, 15, 25, 35 };
+        for (int i = 0; i < a.length; i++) {
+            iw.addDocument(doc("a", START + i * 10_000, a[i]));
+            if (randomBoolean()) {
+                iw.commit();
+            }
+        }
+        iw.addDocument(doc("b", START, 100));
+        if (randomBoolean()) {
+            iw.commit();
+        }
+        iw.addDocument(doc("b", START + 30_000, 110));
+    }
+
+    private static List<IndexableField> histogramDoc(long timestamp, double[] values, int[] counts) throws IOException {
+        List<IndexableField> fields = new ArrayList<>();
+        fields.add(new SortedSetDocValuesField(DIMENSION_FIELD, new BytesRef("a")));
+        fields.add(new SortedNumericDocValuesField(TIMESTAMP_FIELD, timestamp));
+        fields.add(new LongPoint(TIMESTAMP_FIELD, timestamp));
+        fields.add(histogramFieldDocValues(VALUE_FIELD, values, counts));
+        return fields;
+    }
+
+    private static List<IndexableField> doc(String dimension, long timestamp, long value) {
+        List<IndexableField> fields = new ArrayList<>();
+        fields.add(new SortedSetDocValuesField(DIMENSION_FIELD, new BytesRef(dimension)));
+        fields.add(new SortedNumericDocValuesField(TIMESTAMP_FIELD, timestamp));
+        fields.add(new LongPoint(TIMESTAMP_FIELD, timestamp));
+        fields.add(new SortedNumericDocValuesField(VALUE_FIELD, value));
+        return fields;
+    }
+
+    private void testCase(
+        TimeSeriesAggregationBuilder builder,
+        Sort indexSort,
+        CheckedConsumer<RandomIndexWriter, IOException> buildIndex,
+        Consumer<InternalTimeSeries> verify
+    ) throws IOException {
+        MappedFieldType valueType = new NumberFieldMapper.NumberFieldType(VALUE_FIELD, NumberFieldMapper.NumberType.LONG);
+        testCase(builder, indexSort, buildIndex, verify, valueType);
+    }
+
+    private void testCase(
+        TimeSeriesAggregationBuilder builder,
+        Sort indexSort,
+        CheckedConsumer<RandomIndexWriter, IOException> buildIndex,
+        Consumer<InternalTimeSeries> verify,
+        MappedFieldType valueType
+    ) throws IOException {
+        withSortedIndex(indexSort, buildIndex, searcher -> {
+            InternalTimeSeries ts = searchAndReduce(searcher, new MatchAllDocsQuery(), builder, fieldTypes(valueType));
+            verify.accept(ts);
+        });
+    }
+
+    private void withSortedIndex(
+        Sort indexSort,
+        CheckedConsumer<RandomIndexWriter, IOException> buildIndex,
+        CheckedConsumer<IndexSearcher, IOException> consume
+    ) throws IOException {
+        try (Directory directory = newDirectory()) {
+            IndexWriterConfig config = newIndexWriterConfig(random(), new MockAnalyzer(random()));
+            if (indexSort != null) {
+                config.setIndexSort(indexSort);
+                config.setCodec(TestUtil.getDefaultCodec());
+            }
+            config.setMergePolicy(NoMergePolicy.INSTANCE);
+            try (RandomIndexWriter iw = new RandomIndexWriter(random(), directory, config)) {
+                buildIndex.accept(iw);
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                consume.accept(newIndexSearcher(reader));
+            }
+        }
+    }
+
+    private static MappedFieldType[] fieldTypes(MappedFieldType valueType) {
+        return new MappedFieldType[] {
+            new KeywordFieldMapper.KeywordFieldType(DIMENSION_FIELD),
+            new DateFieldMapper.DateFieldType(TIMESTAMP_FIELD),
+            valueType };
+    }
+}
@@ -6,12 +6,15 @@
  */
 package org.elasticsearch.xpack.enrich;
 
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.cluster.routing.Preference;
 import org.elasticsearch.index.query.ConstantScoreQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.ingest.AbstractProcessor;
+import org.elasticsearch.ingest.BatchProcessor;
 import org.elasticsearch.ingest.IngestDocument;
 import org.elasticsearch.script.TemplateScript;
 import org.elasticsearch.search.SearchHit;
@@ -23,10 +26,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 
-public abstract class AbstractEnrichProcessor extends AbstractProcessor {
+public abstract class AbstractEnrichProcessor extends AbstractProcessor implements BatchProcessor {
 
     private final String policyName;
     private final BiConsumer<SearchRequest, BiConsumer<SearchResponse, Exception>> searchRunner;
+    private final BiConsumer<MultiSearchRequest, BiConsumer<MultiSearchResponse, Exception>> multiSearchRunner;
+    private final EnrichLookupTables lookupTables;
     private final TemplateScript.Factory field;
     private final TemplateScript.Factory targetField;
     private final boolean ignoreMissing;
@@ -38,6 +43,8 @@ public abstract class AbstractEnrichProcessor extends AbstractProcessor {
         String tag,
         String description,
         BiConsumer<SearchRequest, BiConsumer<SearchResponse, Exception>> searchRunner,
+        BiConsumer<MultiSearchRequest, BiConsumer<MultiSearchResponse, Exception>> multiSearchRunner,
+        EnrichLookupTables lookupTables,
         String policyName,
         TemplateScript.Factory field,
         TemplateScript.Factory targetField,
@@ -49,6 +56,8 @@ public abstract class AbstractEnrichProcessor extends AbstractProcessor {
         super(tag, description);
         this.policyName = policyName;
         this.searchRunner = searchRunner;
+        this.multiSearchRunner = multiSearchRunner;
+        this.lookupTables = lookupTables;
         this.field = field;
         this.targetField = targetField;
         this.ignoreMissing = ignoreMissing;
@@ -63,59 +72,152 @@ public abstract class AbstractEnrichProcessor extends AbstractProcessor {
     public void execute(IngestDocument ingestDocument, BiConsumer<IngestDocument, Exception> handler) {
         try {
             // If a document does not have the enrich key, return the unchanged document
-            String field = ingestDocument.renderTemplate(this.field);
-            final Object value = ingestDocument.getFieldValue(field, Object.class, ignoreMissing);
+            Object value = getEnrichKey(ingestDocument);
             if (value == null) {
                 handler.accept(ingestDocument, null);
                 return;
             }
+            List<Map<String, Object>> enrichDocuments = lookupLocally(value);
+            if (enrichDocuments != null) {
+                enrich(ingestDocument, enrichDocuments);
+                handler.accept(ingestDocument, null);
+                return;
+            }
 
-            QueryBuilder queryBuilder = getQueryBuilder(value);
-            ConstantScoreQueryBuilder constantScore = new ConstantScoreQueryBuilder(queryBuilder);
-            SearchSourceBuilder searchBuilder = new SearchSourceBuilder();
-            searchBuilder.from(0);
-            searchBuilder.size(maxMatches);
-            searchBuilder.trackScores(false);
-            searchBuilder.fetchSource(true);
-            searchBuilder.query(constantScore);
-            SearchRequest req = new SearchRequest();
-            req.indices(EnrichPolicy.getBaseName(getPolicyName()));
-            req.preference(Preference.LOCAL.type());
-            req.source(searchBuilder);
-
-            searchRunner.accept(req, (searchResponse, e) -> {
+            searchRunner.accept(buildSearchRequest(value), (searchResponse, e) -> {
                 if (e != null) {
                     handler.accept(null, e);
                     return;
                 }
+                enrich(ingestDocument, getEnrichDocuments(searchResponse));
+                handler.accept(ingestDocument, null);
+            });
+        } catch (Exception e) {
+            handler.accept(null, e);
+        }
+    }
 
-                // If the index is empty, return the unchanged document
-                // If the enrich key does not exist in the index, throw an error
-                // If no documents match the key, return the unchanged document
-                SearchHit[] searchHits = searchResponse.getHits().getHits();
-                if (searchHits.length < 1) {
+    /**
+     * Looks up the enrich keys of all documents of the batch with a single multi search request.
+     */
+    @Override
+    public void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers) {
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        List<IngestDocument> lookupDocuments = new ArrayList<>(ingestDocuments.size());
+        List<BiConsumer<IngestDocument, Exception>> lookupHandlers = new ArrayList<>(ingestDocuments.size());
+        for (int i = 0; i < ingestDocuments.size(); i++) {
+            IngestDocument ingestDocument = ingestDocuments.get(i);
+            BiConsumer<IngestDocument, Exception> handler = handlers.get(i);
+            final SearchRequest req;
+            try {
+                Object value = getEnrichKey(ingestDocument);
+                if (value == null) {
                     handler.accept(ingestDocument, null);
-                    return;
+                    continue;
+                }
+                List<Map<String, Object>> enrichDocuments = lookupLocally(value);
+                if (enrichDocuments != null) {
+                    enrich(ingestDocument, enrichDocuments);
+                    handler.accept(ingestDocument, null);
+                    continue;
                 }
+                req = buildSearchRequest(value);
+            } catch (Exception e) {
+                handler.accept(null, e);
+                continue;
+            }
+            multiSearchRequest.add(req);
+            lookupDocuments.add(ingestDocument);
+            lookupHandlers.add(handler);
+        }
+        if (lookupDocuments.isEmpty()) {
+            return;
+        }
 
-                String targetField = ingestDocument.renderTemplate(this.targetField);
-                if (overrideEnabled || ingestDocument.hasField(targetField) == false) {
-                    if (maxMatches == 1) {
-                        Map<String, Object> firstDocument = searchHits[0].getSourceAsMap();
-                        ingestDocument.setFieldValue(targetField, firstDocument);
-                    } else {
-                        List<Map<String, Object>> enrichDocuments = new ArrayList<>(searchHits.length);
-                        for (SearchHit searchHit : searchHits) {
-                            Map<String, Object> enrichDocument = searchHit.getSourceAsMap();
-                            enrichDocuments.add(enrichDocument);
-                        }
-                        ingestDocument.setFieldValue(targetField, enrichDocuments);
-                    }
+        multiSearchRunner.accept(multiSearchRequest, (response, e) -> {
+            for (int i = 0; i < lookupDocuments.size(); i++) {
+                IngestDocument ingestDocument = lookupDocuments.get(i);
+                BiConsumer<IngestDocument, Exception> handler = lookupHandlers.get(i);
+                if (e != null) {
+                    handler.accept(null, e);
+                    continue;
+                }
+                MultiSearchResponse.Item item = response.getResponses()[i];
+                if (item.isFailure()) {
+                    handler.accept(null, item.getFailure());
+                    continue;
+                }
+                try {
+                    enrich(ingestDocument, getEnrichDocuments(item.getResponse()));
+                } catch (Exception ex) {
+                    handler.accept(null, ex);
+                    continue;
                 }
                 handler.accept(ingestDocument, null);
-            });
-        } catch (Exception e) {
-            handler.accept(null, e);
+            }
+        });
+    }
+
+    /**
+     * Returns the enrich key of a document, or {@code null} if the document has none.
+     */
+    private Object getEnrichKey(IngestDocument ingestDocument) {
+        String field = ingestDocument.renderTemplate(this.field);
+        return ingestDocument.getFieldValue(field, Object.class, ignoreMissing);
+    }
+
+    /**
+     * Looks up the enrich documents in the lookup table of the current enrich index, or returns {@code null} if there is
+     * no such table or it can't answer the lookup.
+     */
+    private List<Map<String, Object>> lookupLocally(Object value) {
+        EnrichLookupTable table = lookupTables == null ? null : lookupTables.get(policyName);
+        return table == null ? null : table.lookup(value, maxMatches);
+    }
+
+    /**
+     * Builds the search request that looks up an enrich key.
+     */
+    private SearchRequest buildSearchRequest(Object value) {
+        QueryBuilder queryBuilder = getQueryBuilder(value);
+        ConstantScoreQueryBuilder constantScore = new ConstantScoreQueryBuilder(queryBuilder);
+        SearchSourceBuilder searchBuilder = new SearchSourceBuilder();
+        searchBuilder.from(0);
+        searchBuilder.size(maxMatches);
+        searchBuilder.trackScores(false);
+        searchBuilder.fetchSource(true);
+        searchBuilder.query(constantScore);
+        SearchRequest req = new SearchRequest();
+        req.indices(EnrichPolicy.getBaseName(getPolicyName()));
+        req.preference(Preference.LOCAL.type());
+        req.source(searchBuilder);
+        return req;
+    }
+
+    private static List<Map<String, Object>> getEnrichDocuments(SearchResponse searchResponse) {
+        SearchHit[] searchHits = searchResponse.getHits().getHits();
+        List<Map<String, Object>> enrichDocuments = new ArrayList<>(searchHits.length);
+        for (SearchHit searchHit : searchHits) {
+            enrichDocuments.add(searchHit.getSourceAsMap());
+        }
+        return enrichDocuments;
+    }
+
+    private void enrich(IngestDocument ingestDocument, List<Map<String, Object>> enrichDocuments) {
+        // If the index is empty, return the unchanged document
+        // If the enrich key does not exist in the index, throw an error
+        // If no documents match the key, return the unchanged document
+        if (enrichDocuments.isEmpty()) {
+            return;
+        }
+
+        String targetField = ingestDocument.renderTemplate(this.targetField);
+        if (overrideEnabled || ingestDocument.hasField(targetField) == false) {
+            if (maxMatches == 1) {
+                ingestDocument.setFieldValue(targetField, enrichDocuments.get(0));
+            } else {
+                ingestDocument.setFieldValue(targetField, enrichDocuments);
+            }
         }
     }
 
@@ -0,0 +1,590 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.enrich;
+
+import com.carrotsearch.hppc.IntArrayList;
+import org.apache.lucene.document.InetAddressPoint;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lucene.BytesRefs;
+import org.elasticsearch.common.network.InetAddresses;
+import org.elasticsearch.core.Tuple;
+import org.elasticsearch.index.mapper.RangeType;
+import org.elasticsearch.search.lookup.SourceLookup;
+import org.elasticsearch.xpack.core.enrich.EnrichPolicy;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory copy of an enrich index that answers the lookups of enrich processors directly on the ingest thread,
+ * instead of sending a search request to the enrich index for every document.
+ *
+ * The sources of the enrich documents are kept as raw bytes in index order and parsed on every lookup, so that each
+ * ingest document gets its own copy, just like it would out of a search response. The match field is indexed with
+ * primitive structures: an open addressing hash over the keyword terms for {@code match} policies and an interval
+ * tree over the encoded bounds for {@code range} policies. Lookups return the first {@code max_matches} matching
+ * documents in index order, which is the order a constant score search on the single shard enrich index returns.
+ */
+public abstract class EnrichLookupTable implements Accountable {
+
+    private final int numDocs;
+    private final byte[] sourceBytes;
+    private final int[] sourceOffsets;
+
+    private EnrichLookupTable(Builder builder) {
+        this.numDocs = builder.numDocs;
+        this.sourceBytes = ArrayUtil.copyOfSubArray(builder.sourceBytes, 0, builder.sourceOffsets[builder.numDocs]);
+        this.sourceOffsets = ArrayUtil.copyOfSubArray(builder.sourceOffsets, 0, builder.numDocs + 1);
+    }
+
+    /**
+     * Returns the sources of the enrich documents that match the provided value, at most {@code maxMatches} of them,
+     * or {@code null} if this table can't answer the lookup and the enrich index needs to be searched instead.
+     */
+    public final List<Map<String, Object>> lookup(Object value, int maxMatches) {
+        int[] docs;
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            if (values.isEmpty()) {
+                return null;
+            }
+            docs = new int[0];
+            for (Object v : values) {
+                int[] valueDocs = findDocs(v);
+                if (valueDocs == null) {
+                    return null;
+                }
+                docs = union(docs, valueDocs);
+            }
+        } else {
+            docs = findDocs(value);
+            if (docs == null) {
+                return null;
+            }
+        }
+        int count = Math.min(docs.length, maxMatches);
+        List<Map<String, Object>> sources = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int doc = docs[i];
+            sources.add(
+                SourceLookup.sourceAsMap(new BytesArray(sourceBytes, sourceOffsets[doc], sourceOffsets[doc + 1] - sourceOffsets[doc]))
+            );
+        }
+        return sources;
+    }
+
+    /**
+     * The number of enrich documents in this table.
+     */
+    public int numDocs() {
+        return numDocs;
+    }
+
+    /**
+     * Returns the sorted ordinals of the documents that match a single value, or {@code null} if the value isn't supported.
+     */
+    abstract int[] findDocs(Object value);
+
+    @Override
+    public long ramBytesUsed() {
+        return RamUsageEstimator.sizeOf(sourceBytes) + RamUsageEstimator.sizeOf(sourceOffsets);
+    }
+
+    /**
+     * Creates a builder for a table of an enrich index of the given policy type.
+     *
+     * @param policyType the type of the enrich policy
+     * @param matchField the match field of the enrich policy
+     * @param fieldType  the mapped type of the match field in the enrich index
+     * @return the builder, or {@code null} if no lookup table can be built for this kind of enrich index
+     */
+    public static Builder builder(String policyType, String matchField, String fieldType) {
+        switch (policyType) {
+            case EnrichPolicy.MATCH_TYPE:
+                return new MatchTable.Builder(matchField);
+            case EnrichPolicy.RANGE_TYPE:
+                if (fieldType == null) {
+                    return null;
+                }
+                for (RangeType rangeType : RangeType.values()) {
+                    // date ranges depend on the format of the field, so these are still looked up with a search
+                    if (rangeType != RangeType.DATE && rangeType.typeName().equals(fieldType)) {
+                        return new RangeTable.Builder(matchField, rangeType);
+                    }
+                }
+                return null;
+            default:
+                // geo_match lookups relate shapes, so these are still looked up with a search
+                return null;
+        }
+    }
+
+    /**
+     * Collects the enrich documents in index order and builds the table.
+     */
+    public abstract static class Builder implements Accountable {
+
+        private final String matchField;
+        private int numDocs;
+        private byte[] sourceBytes = BytesRef.EMPTY_BYTES;
+        private int[] sourceOffsets = new int[1];
+
+        private Builder(String matchField) {
+            this.matchField = matchField;
+        }
+
+        /**
+         * Adds the next enrich document.
+         *
+         * @throws IllegalArgumentException if the match field holds a value that this table can't represent exactly
+         */
+        public final void add(BytesReference source) {
+            Map<String, Object> sourceAsMap = SourceLookup.sourceAsMap(source);
+            List<Object> values = new ArrayList<>();
+            extractValues(values, sourceAsMap, matchField.split("\\."), 0);
+            for (Object value : values) {
+                addValue(numDocs, value);
+            }
+            int length = source.length();
+            int offset = sourceOffsets[numDocs];
+            sourceBytes = ArrayUtil.grow(sourceBytes, offset + length);
+            BytesRef bytes = source.toBytesRef();
+            System.arraycopy(bytes.bytes, bytes.offset, sourceBytes, offset, length);
+            sourceOffsets = ArrayUtil.grow(sourceOffsets, numDocs + 2);
+            sourceOffsets[++numDocs] = offset + length;
+        }
+
+        abstract void addValue(int doc, Object value);
+
+        public abstract EnrichLookupTable build();
+
+        @Override
+        public long ramBytesUsed() {
+            return RamUsageEstimator.sizeOf(sourceBytes) + RamUsageEstimator.sizeOf(sourceOffsets);
+        }
+
+        /**
+         * Like {@link org.elasticsearch.common.xcontent.support.XContentMapValues#extractRawValues(String, Map)}, but keeps
+         * objects at the end of the path, since these are how ranges are written.
+         */
+        @SuppressWarnings("unchecked")
+        private static void extractValues(List<Object> values, Object part, String[] path, int index) {
+            if (part == null) {
+                return;
+            }
+            if (part instanceof List) {
+                for (Object value : (List<Object>) part) {
+                    extractValues(values, value, path, index);
+                }
+            } else if (index == path.length) {
+                values.add(part);
+            } else if (part instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) part;
+                // the match field may be written with dots in field names at any level
+                String key = path[index];
+                for (int next = index + 1; next <= path.length; next++) {
+                    extractValues(values, map.get(key), path, next);
+                    if (next < path.length) {
+                        key += "." + path[next];
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            int doc;
+            if (j == b.length || (i < a.length && a[i] <= b[j])) {
+                doc = a[i++];
+            } else {
+                doc = b[j++];
+            }
+            if (k == 0 || result[k - 1] != doc) {
+                result[k++] = doc;
+            }
+        }
+        return ArrayUtil.copyOfSubArray(result, 0, k);
+    }
+
+    /**
+     * A table for {@code match} policies. The enrich index maps the match field as a {@code keyword} field, so documents
+     * are keyed by the string representation of their values, which is also how a term query converts its value.
+     */
+    static final class MatchTable extends EnrichLookupTable {
+
+        private final byte[] keyBytes;
+        private final int[] keyOffsets;
+        // open addressing hash table of key ordinals plus one, zero marks an empty slot
+        private final int[] slots;
+        private final int[] postingsOffsets;
+        private final int[] postings;
+
+        private MatchTable(Builder builder) {
+            super(builder);
+            int numKeys = builder.keys.size();
+            int keyLength = 0;
+            for (BytesRef key : builder.keyList) {
+                keyLength += key.length;
+            }
+            keyBytes = new byte[keyLength];
+            keyOffsets = new int[numKeys + 1];
+            slots = new int[Math.max(2, Integer.highestOneBit(Math.max(1, numKeys * 2 - 1)) << 1)];
+            for (int ord = 0; ord < numKeys; ord++) {
+                BytesRef key = builder.keyList.get(ord);
+                System.arraycopy(key.bytes, key.offset, keyBytes, keyOffsets[ord], key.length);
+                keyOffsets[ord + 1] = keyOffsets[ord] + key.length;
+                int slot = hash(key) & (slots.length - 1);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = ord + 1;
+            }
+
+            // lay out the documents of every key next to each other, in index order
+            postingsOffsets = new int[numKeys + 1];
+            for (int i = 0; i < builder.numPostings; i++) {
+                postingsOffsets[builder.postingKeys[i] + 1]++;
+            }
+            for (int ord = 0; ord < numKeys; ord++) {
+                postingsOffsets[ord + 1] += postingsOffsets[ord];
+            }
+            int[] upto = ArrayUtil.copyOfSubArray(postingsOffsets, 0, numKeys);
+            int[] docs = new int[builder.numPostings];
+            for (int i = 0; i < builder.numPostings; i++) {
+                int ord = builder.postingKeys[i];
+                int doc = builder.postingDocs[i];
+                // a document may hold the same key more than once
+                if (upto[ord] == postingsOffsets[ord] || docs[upto[ord] - 1] != doc) {
+                    docs[upto[ord]++] = doc;
+                }
+            }
+            // compact the postings, some may have shrunk because of duplicates
+            int numPostings = 0;
+            for (int ord = 0; ord < numKeys; ord++) {
+                int start = postingsOffsets[ord];
+                int length = upto[ord] - start;
+                System.arraycopy(docs, start, docs, numPostings, length);
+                postingsOffsets[ord] = numPostings;
+                numPostings += length;
+            }
+            postingsOffsets[numKeys] = numPostings;
+            postings = ArrayUtil.copyOfSubArray(docs, 0, numPostings);
+        }
+
+        @Override
+        int[] findDocs(Object value) {
+            if (value instanceof String == false && value instanceof Number == false && value instanceof Boolean == false) {
+                return null;
+            }
+            BytesRef key = BytesRefs.toBytesRef(value);
+            int slot = hash(key) & (slots.length - 1);
+            int ord;
+            while ((ord = slots[slot] - 1) >= 0) {
+                if (Arrays.equals(keyBytes, keyOffsets[ord], keyOffsets[ord + 1], key.bytes, key.offset, key.offset + key.length)) {
+                    return ArrayUtil.copyOfSubArray(postings, postingsOffsets[ord], postingsOffsets[ord + 1]);
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            return new int[0];
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return super.ramBytesUsed() + RamUsageEstimator.sizeOf(keyBytes) + RamUsageEstimator.sizeOf(keyOffsets)
+                + RamUsageEstimator.sizeOf(slots) + RamUsageEstimator.sizeOf(postingsOffsets) + RamUsageEstimator.sizeOf(postings);
+        }
+
+        private static int hash(BytesRef key) {
+            return StringHelper.murmurhash3_x86_32(key, 0);
+        }
+
+        static final class Builder extends EnrichLookupTable.Builder {
+
+            private final Map<BytesRef, Integer> keys = new HashMap<>();
+            private final List<BytesRef> keyList = new ArrayList<>();
+            private long keyBytes;
+            private int numPostings;
+            private int[] postingKeys = new int[16];
+            private int[] postingDocs = new int[16];
+
+            private Builder(String matchField) {
+                super(matchField);
+            }
+
+            @Override
+            void addValue(int doc, Object value) {
+                if (value instanceof String == false && value instanceof Boolean == false
+                    && value instanceof Integer == false && value instanceof Long == false
+                    && value instanceof BigInteger == false) {
+                    // floating point numbers are indexed with their original text, which the parsed source doesn't preserve
+                    throw new IllegalArgumentException("cannot build a lookup table for match value [" + value + "]");
+                }
+                BytesRef key = new BytesRef(value.toString());
+                Integer ord = keys.get(key);
+                if (ord == null) {
+                    ord = keyList.size();
+                    keys.put(key, ord);
+                    keyList.add(key);
+                    keyBytes += key.length;
+                }
+                postingKeys = ArrayUtil.grow(postingKeys, numPostings + 1);
+                postingDocs = ArrayUtil.grow(postingDocs, numPostings + 1);
+                postingKeys[numPostings] = ord;
+                postingDocs[numPostings] = doc;
+                numPostings++;
+            }
+
+            @Override
+            public EnrichLookupTable build() {
+                return new MatchTable(this);
+            }
+
+            @Override
+            public long ramBytesUsed() {
+                // estimate the hash map by its entries, the frozen table is a lot smaller
+                return super.ramBytesUsed() + keyBytes + keyList.size() * 96L + RamUsageEstimator.sizeOf(postingKeys)
+                    + RamUsageEstimator.sizeOf(postingDocs);
+            }
+        }
+    }
+
+    /**
+     * A table for {@code range} policies over numeric and ip ranges. Bounds are encoded into sortable bytes of a fixed
+     * width, the same way Lucene encodes the points of range fields, and kept in an augmented interval tree that is laid
+     * out implicitly over the ranges sorted by their lower bound.
+     */
+    static final class RangeTable extends EnrichLookupTable {
+
+        private final RangeType rangeType;
+        private final int width;
+        private final int size;
+        private final byte[] from;
+        private final byte[] to;
+        // the largest upper bound in the subtree rooted at each range
+        private final byte[] maxTo;
+        private final int[] docs;
+
+        private RangeTable(Builder builder) {
+            super(builder);
+            this.rangeType = builder.rangeType;
+            this.width = builder.width;
+            this.size = builder.size;
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int cmp = Arrays.compareUnsigned(builder.from, a * width, (a + 1) * width, builder.from, b * width, (b + 1) * width);
+                return cmp != 0 ? cmp : Integer.compare(builder.docs[a], builder.docs[b]);
+            });
+            from = new byte[size * width];
+            to = new byte[size * width];
+            maxTo = new byte[size * width];
+            docs = new int[size];
+            for (int i = 0; i < size; i++) {
+                int range = order[i];
+                System.arraycopy(builder.from, range * width, from, i * width, width);
+                System.arraycopy(builder.to, range * width, to, i * width, width);
+                docs[i] = builder.docs[range];
+            }
+            buildMaxTo(0, size);
+        }
+
+        /**
+         * Computes the largest upper bound of the subtree of the ranges {@code [lo, hi)} and returns the index of its root,
+         * or {@code -1} if the subtree is empty.
+         */
+        private int buildMaxTo(int lo, int hi) {
+            if (lo >= hi) {
+                return -1;
+            }
+            int mid = (lo + hi) >>> 1;
+            System.arraycopy(to, mid * width, maxTo, mid * width, width);
+            for (int child : new int[] { buildMaxTo(lo, mid), buildMaxTo(mid + 1, hi) }) {
+                if (child >= 0 && compare(maxTo, child, maxTo, mid) > 0) {
+                    System.arraycopy(maxTo, child * width, maxTo, mid * width, width);
+                }
+            }
+            return mid;
+        }
+
+        @Override
+        int[] findDocs(Object value) {
+            byte[] point;
+            try {
+                // parse like a term query on the range field does
+                point = encode(rangeType, rangeType.parseValue(value, false, null));
+            } catch (RuntimeException e) {
+                return null;
+            }
+            IntArrayList matches = new IntArrayList();
+            collect(0, size, point, matches);
+            int[] docs = matches.toArray();
+            Arrays.sort(docs);
+            int unique = 0;
+            for (int i = 0; i < docs.length; i++) {
+                if (unique == 0 || docs[unique - 1] != docs[i]) {
+                    docs[unique++] = docs[i];
+                }
+            }
+            return ArrayUtil.copyOfSubArray(docs, 0, unique);
+        }
+
+        private void collect(int lo, int hi, byte[] point, IntArrayList matches) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (Arrays.compareUnsigned(maxTo, mid * width, (mid + 1) * width, point, 0, width) < 0) {
+                // no range in this subtree reaches up to the point
+                return;
+            }
+            collect(lo, mid, point, matches);
+            if (Arrays.compareUnsigned(from, mid * width, (mid + 1) * width, point, 0, width) <= 0) {
+                if (Arrays.compareUnsigned(to, mid * width, (mid + 1) * width, point, 0, width) >= 0) {
+                    matches.add(docs[mid]);
+                }
+                collect(mid + 1, hi, point, matches);
+            }
+        }
+
+        private int compare(byte[] a, int i, byte[] b, int j) {
+            return Arrays.compareUnsigned(a, i * width, (i + 1) * width, b, j * width, (j + 1) * width);
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return super.ramBytesUsed() + RamUsageEstimator.sizeOf(from) + RamUsageEstimator.sizeOf(to)
+                + RamUsageEstimator.sizeOf(maxTo) + RamUsageEstimator.sizeOf(docs);
+        }
+
+        static byte[] encode(RangeType rangeType, Object value) {
+            switch (rangeType) {
+                case IP:
+                    return InetAddressPoint.encode((InetAddress) value);
+                case FLOAT:
+                case DOUBLE:
+                    byte[] bytes = new byte[Long.BYTES];
+                    NumericUtils.longToSortableBytes(NumericUtils.doubleToSortableLong(((Number) value).doubleValue()), bytes, 0);
+                    return bytes;
+                case INTEGER:
+                case LONG:
+                    bytes = new byte[Long.BYTES];
+                    NumericUtils.longToSortableBytes(((Number) value).longValue(), bytes, 0);
+                    return bytes;
+                default:
+                    throw new IllegalArgumentException("unsupported range type [" + rangeType.typeName() + "]");
+            }
+        }
+
+        static final class Builder extends EnrichLookupTable.Builder {
+
+            private final RangeType rangeType;
+            private final int width;
+            private int size;
+            private byte[] from = BytesRef.EMPTY_BYTES;
+            private byte[] to = BytesRef.EMPTY_BYTES;
+            private int[] docs = new int[16];
+
+            private Builder(String matchField, RangeType rangeType) {
+                super(matchField);
+                this.rangeType = rangeType;
+                this.width = rangeType == RangeType.IP ? InetAddressPoint.BYTES : Long.BYTES;
+            }
+
+            @Override
+            void addValue(int doc, Object value) {
+                Object lower = rangeType.minValue();
+                Object upper = rangeType.maxValue();
+                if (value instanceof Map) {
+                    // parse like the range field mapper does, with its default of coercing values
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        Object bound = entry.getValue();
+                        switch (entry.getKey().toString()) {
+                            case "gt":
+                                lower = bound == null ? lower : rangeType.nextUp(rangeType.parseValue(bound, true, null));
+                                break;
+                            case "gte":
+                                lower = bound == null ? lower : rangeType.parseValue(bound, true, null);
+                                break;
+                            case "lt":
+                                upper = bound == null ? upper : rangeType.nextDown(rangeType.parseValue(bound, true, null));
+                                break;
+                            case "lte":
+                                upper = bound == null ? upper : rangeType.parseValue(bound, true, null);
+                                break;
+                            default:
+                                throw new IllegalArgumentException("unknown range parameter [" + entry.getKey() + "]");
+                        }
+                    }
+                } else if (rangeType == RangeType.IP && value instanceof String) {
+                    Tuple<InetAddress, InetAddress> cidr = parseCidr((String) value);
+                    lower = cidr.v1();
+                    upper = cidr.v2();
+                } else {
+                    throw new IllegalArgumentException("cannot build a lookup table for range value [" + value + "]");
+                }
+                byte[] lowerBytes = encode(rangeType, lower);
+                byte[] upperBytes = encode(rangeType, upper);
+                if (Arrays.compareUnsigned(lowerBytes, upperBytes) > 0) {
+                    // an empty range never matches anything
+                    return;
+                }
+                from = ArrayUtil.grow(from, (size + 1) * width);
+                to = ArrayUtil.grow(to, (size + 1) * width);
+                docs = ArrayUtil.grow(docs, size + 1);
+                System.arraycopy(lowerBytes, 0, from, size * width, width);
+                System.arraycopy(upperBytes, 0, to, size * width, width);
+                docs[size++] = doc;
+            }
+
+            private static Tuple<InetAddress, InetAddress> parseCidr(String value) {
+                Tuple<InetAddress, Integer> cidr = InetAddresses.parseCidr(value);
+                byte[] lower = cidr.v1().getAddress();
+                byte[] upper = lower.clone();
+                for (int i = cidr.v2(); i < 8 * lower.length; i++) {
+                    int m = 1 << 7 - (i & 7);
+                    lower[i >> 3] &= ~m;
+                    upper[i >> 3] |= m;
+                }
+                try {
+                    return new Tuple<>(InetAddress.getByAddress(lower), InetAddress.getByAddress(upper));
+                } catch (UnknownHostException bogus) {
+                    throw new AssertionError(bogus);
+                }
+            }
+
+            @Override
+            public EnrichLookupTable build() {
+                return new RangeTable(this);
+            }
+
+            @Override
+            public long ramBytesUsed() {
+                return super.ramBytesUsed() + RamUsageEstimator.sizeOf(from) + RamUsageEstimator.sizeOf(to) + RamUsageEstimator.sizeOf(
+                    docs
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.enrich;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.OriginSettingClient;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexAbstraction;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.gateway.GatewayService;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.xpack.core.enrich.EnrichPolicy;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.elasticsearch.xpack.core.ClientHelper.ENRICH_ORIGIN;
+
+/**
+ * Holds the {@link EnrichLookupTable}s of the current enrich indices of an ingest node, so that enrich processors can
+ * look up documents without searching the enrich index.
+ *
+ * A table is loaded once an enrich policy execution moves the alias of the policy to a new enrich index, and dropped
+ * once the alias moves away from that index again. Until the table of the current enrich index is loaded, lookups go
+ * through the search path as before, so lookups never see the documents of an older enrich index. All tables share a
+ * memory budget: an enrich index that doesn't fit in the remaining budget, or whose match values can't be represented
+ * exactly by a table, is not loaded and keeps being searched.
+ */
+public final class EnrichLookupTables implements ClusterStateListener {
+
+    private static final Logger logger = LogManager.getLogger(EnrichLookupTables.class);
+
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    private final Client client;
+    private final long maxMemoryInBytes;
+    private final int fetchSize;
+
+    // enrich index name to the alias of its policy, for the enrich indices the policy aliases currently point to
+    private Map<String, String> currentIndices = Map.of();
+    private final Map<String, EnrichLookupTable> tables = new HashMap<>();
+    private final Set<String> loading = new HashSet<>();
+    private final Set<String> skipped = new HashSet<>();
+    private long memoryUsed;
+
+    private volatile Map<String, EnrichLookupTable> tablesByAlias = Map.of();
+
+    EnrichLookupTables(Client client, Settings settings) {
+        this.client = new OriginSettingClient(client, ENRICH_ORIGIN);
+        this.maxMemoryInBytes = EnrichPlugin.LOOKUP_TABLES_MAX_MEMORY.get(settings).getBytes();
+        this.fetchSize = EnrichPlugin.ENRICH_FETCH_SIZE_SETTING.get(settings);
+    }
+
+    /**
+     * Returns the lookup table of the current enrich index of the given policy, or {@code null} if it isn't loaded.
+     */
+    public EnrichLookupTable get(String policyName) {
+        return tablesByAlias.get(EnrichPolicy.getBaseName(policyName));
+    }
+
+    /**
+     * The number of bytes used by all loaded tables.
+     */
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.state().blocks().hasGlobalBlock(GatewayService.STATE_NOT_RECOVERED_BLOCK)) {
+            return;
+        }
+        if (event.metadataChanged() == false) {
+            return;
+        }
+        Metadata metadata = event.state().metadata();
+        Map<String, String> indices = new HashMap<>();
+        EnrichMetadata enrichMetadata = metadata.custom(EnrichMetadata.TYPE);
+        if (enrichMetadata != null) {
+            for (String policyName : enrichMetadata.getPolicies().keySet()) {
+                String alias = EnrichPolicy.getBaseName(policyName);
+                IndexAbstraction indexAbstraction = metadata.getIndicesLookup().get(alias);
+                if (indexAbstraction != null && indexAbstraction.getIndices().size() == 1) {
+                    indices.put(indexAbstraction.getIndices().get(0).getIndex().getName(), alias);
+                }
+            }
+        }
+
+        Map<String, EnrichLookupTable.Builder> toLoad = new HashMap<>();
+        synchronized (this) {
+            currentIndices = Map.copyOf(indices);
+            tables.keySet().removeIf(index -> {
+                if (currentIndices.containsKey(index)) {
+                    return false;
+                }
+                memoryUsed -= tables.get(index).ramBytesUsed();
+                logger.debug("dropped enrich lookup table of [{}]", index);
+                return true;
+            });
+            skipped.retainAll(currentIndices.keySet());
+            for (String index : currentIndices.keySet()) {
+                if (tables.containsKey(index) || loading.contains(index) || skipped.contains(index)) {
+                    continue;
+                }
+                EnrichLookupTable.Builder builder = createBuilder(metadata.index(index));
+                if (builder == null) {
+                    skipped.add(index);
+                } else {
+                    loading.add(index);
+                    toLoad.put(index, builder);
+                }
+            }
+            publish();
+        }
+        toLoad.forEach(this::load);
+    }
+
+    private static EnrichLookupTable.Builder createBuilder(IndexMetadata indexMetadata) {
+        MappingMetadata mapping = indexMetadata == null ? null : indexMetadata.mapping();
+        if (mapping == null) {
+            return null;
+        }
+        Map<String, Object> mappingAsMap = mapping.sourceAsMap();
+        String policyType = (String) XContentMapValues.extractValue(
+            "_meta." + EnrichPolicyRunner.ENRICH_POLICY_TYPE_FIELD_NAME,
+            mappingAsMap
+        );
+        String matchField = (String) XContentMapValues.extractValue("_meta." + EnrichPolicyRunner.ENRICH_MATCH_FIELD_NAME, mappingAsMap);
+        if (policyType == null || matchField == null) {
+            return null;
+        }
+        String fieldPath = "properties." + matchField.replace(".", ".properties.") + ".type";
+        return EnrichLookupTable.builder(policyType, matchField, (String) XContentMapValues.extractValue(fieldPath, mappingAsMap));
+    }
+
+    private void load(String index, EnrichLookupTable.Builder builder) {
+        SearchSourceBuilder source = new SearchSourceBuilder().size(fetchSize).sort(FieldSortBuilder.DOC_FIELD_NAME).fetchSource(true);
+        SearchRequest searchRequest = new SearchRequest(index).source(source).scroll(SCROLL_KEEP_ALIVE);
+        client.search(searchRequest, new ActionListener<>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                boolean done = true;
+                try {
+                    SearchHit[] hits = response.getHits().getHits();
+                    for (SearchHit hit : hits) {
+                        builder.add(hit.getSourceRef());
+                    }
+                    if (builder.ramBytesUsed() > remainingMemory()) {
+                        skip(
+                            index,
+                            "it exceeds the remaining memory of [" + EnrichPlugin.LOOKUP_TABLES_MAX_MEMORY.getKey() + "]",
+                            null
+                        );
+                    } else if (hits.length == 0) {
+                        finish(index, builder.build());
+                    } else {
+                        done = false;
+                        client.searchScroll(new SearchScrollRequest(response.getScrollId()).scroll(SCROLL_KEEP_ALIVE), this);
+                    }
+                } catch (IllegalArgumentException e) {
+                    skip(index, "its match values can't be represented", e);
+                } catch (Exception e) {
+                    onFailure(e);
+                } finally {
+                    if (done && response.getScrollId() != null) {
+                        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                        clearScrollRequest.addScrollId(response.getScrollId());
+                        client.clearScroll(clearScrollRequest, ActionListener.wrap(r -> {}, e -> {}));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // we'll try again on the next change of the metadata, lookups search the enrich index in the meantime
+                logger.warn(new ParameterizedMessage("failed to load the enrich lookup table of [{}]", index), e);
+                synchronized (EnrichLookupTables.this) {
+                    loading.remove(index);
+                }
+            }
+        });
+    }
+
+    private synchronized long remainingMemory() {
+        return maxMemoryInBytes - memoryUsed;
+    }
+
+    private synchronized void skip(String index, String reason, Exception e) {
+        logger.info(new ParameterizedMessage("not keeping an enrich lookup table of [{}] because {}", index, reason), e);
+        loading.remove(index);
+        skipped.add(index);
+    }
+
+    private synchronized void finish(String index, EnrichLookupTable table) {
+        loading.remove(index);
+        if (currentIndices.containsKey(index) == false) {
+            // the policy has been executed again or deleted in the meantime
+            return;
+        }
+        if (table.ramBytesUsed() > maxMemoryInBytes - memoryUsed) {
+            skip(index, "it exceeds the remaining memory of [" + EnrichPlugin.LOOKUP_TABLES_MAX_MEMORY.getKey() + "]", null);
+            return;
+        }
+        tables.put(index, table);
+        memoryUsed += table.ramBytesUsed();
+        publish();
+        logger.debug(
+            "loaded enrich lookup table of [{}] with [{}] documents using [{}]",
+            index,
+            table.numDocs(),
+            new ByteSizeValue(table.ramBytesUsed())
+        );
+    }
+
+    private void publish() {
+        assert Thread.holdsLock(this);
+        Map<String, EnrichLookupTable> byAlias = new HashMap<>();
+        tables.forEach((index, table) -> byAlias.put(currentIndices.get(index), table));
+        tablesByAlias = Map.copyOf(byAlias);
+    }
+}
@@ -6,12 +6,14 @@
  */
 package org.elasticsearch.xpack.enrich;
 
+import org.apache.lucene.util.SetOnce;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.NamedDiff;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
@@ -20,6 +22,7 @@ import org.elasticsearch.common.settings.IndexScopedSettings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.env.NodeEnvironment;
@@ -64,6 +67,7 @@ import org.elasticsearch.xpack.enrich.rest.RestExecuteEnrichPolicyAction;
 import org.elasticsearch.xpack.enrich.rest.RestGetEnrichPolicyAction;
 import org.elasticsearch.xpack.enrich.rest.RestPutEnrichPolicyAction;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -129,8 +133,16 @@ public class EnrichPlugin extends Plugin implements SystemIndexPlugin, IngestPlu
 
     public static final Setting<Long> CACHE_SIZE = Setting.longSetting("enrich.cache_size", 1000, 0, Setting.Property.NodeScope);
 
+    public static final Setting<ByteSizeValue> LOOKUP_TABLES_MAX_MEMORY = Setting.memorySizeSetting(
+        "enrich.lookup_tables.max_memory",
+        "0b",
+        Setting.Property.NodeScope
+    );
+
     private final Settings settings;
     private final EnrichCache enrichCache;
+    private final SetOnce<EnrichCoordinatorProxyAction.Coordinator> coordinator = new SetOnce<>();
+    private final SetOnce<EnrichLookupTables> lookupTables = new SetOnce<>();
 
     public EnrichPlugin(final Settings settings) {
         this.settings = settings;
@@ -139,7 +151,13 @@ public class EnrichPlugin extends Plugin implements SystemIndexPlugin, IngestPlu
 
     @Override
     public Map<String, Processor.Factory> getProcessors(Processor.Parameters parameters) {
-        EnrichProcessorFactory factory = new EnrichProcessorFactory(parameters.client, parameters.scriptService, enrichCache);
+        EnrichProcessorFactory factory = new EnrichProcessorFactory(
+            parameters.client,
+            parameters.scriptService,
+            enrichCache,
+            coordinator::get,
+            lookupTables::get
+        );
         parameters.ingestService.addIngestClusterStateListener(factory);
         return Map.of(EnrichProcessorFactory.TYPE, factory);
     }
@@ -217,13 +235,16 @@ public class EnrichPlugin extends Plugin implements SystemIndexPlugin, IngestPlu
             enrichPolicyLocks
         );
         enrichPolicyMaintenanceService.initialize();
-        return List.of(
-            enrichPolicyLocks,
-            new EnrichCoordinatorProxyAction.Coordinator(client, settings),
-            enrichPolicyMaintenanceService,
-            enrichPolicyExecutor,
-            enrichCache
+        coordinator.set(new EnrichCoordinatorProxyAction.Coordinator(client, settings));
+        List<Object> components = new ArrayList<>(
+            List.of(enrichPolicyLocks, coordinator.get(), enrichPolicyMaintenanceService, enrichPolicyExecutor, enrichCache)
         );
+        if (DiscoveryNode.isIngestNode(settings) && LOOKUP_TABLES_MAX_MEMORY.get(settings).getBytes() > 0) {
+            lookupTables.set(new EnrichLookupTables(client, settings));
+            clusterService.addListener(lookupTables.get());
+            components.add(lookupTables.get());
+        }
+        return components;
     }
 
     @Override
@@ -255,7 +276,8 @@ public class EnrichPlugin extends Plugin implements SystemIndexPlugin, IngestPlu
             COORDINATOR_PROXY_MAX_LOOKUPS_PER_REQUEST,
             COORDINATOR_PROXY_QUEUE_CAPACITY,
             ENRICH_MAX_FORCE_MERGE_ATTEMPTS,
-            CACHE_SIZE
+            CACHE_SIZE,
+            LOOKUP_TABLES_MAX_MEMORY
         );
     }
 
@@ -6,8 +6,12 @@
  */
 package org.elasticsearch.xpack.enrich;
 
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.ContextPreservingActionListener;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.OriginSettingClient;
 import org.elasticsearch.cluster.ClusterState;
@@ -16,6 +20,7 @@ import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.Metadata;
 import org.elasticsearch.common.geo.Orientation;
 import org.elasticsearch.common.geo.ShapeRelation;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.ingest.ConfigurationUtils;
 import org.elasticsearch.ingest.Processor;
@@ -24,10 +29,14 @@ import org.elasticsearch.script.TemplateScript;
 import org.elasticsearch.xpack.core.enrich.EnrichPolicy;
 import org.elasticsearch.xpack.enrich.action.EnrichCoordinatorProxyAction;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.elasticsearch.xpack.core.ClientHelper.ENRICH_ORIGIN;
 
@@ -37,13 +46,23 @@ final class EnrichProcessorFactory implements Processor.Factory, Consumer<Cluste
     private final Client client;
     private final ScriptService scriptService;
     private final EnrichCache enrichCache;
+    private final Supplier<EnrichCoordinatorProxyAction.Coordinator> coordinator;
+    private final Supplier<EnrichLookupTables> lookupTables;
 
     volatile Metadata metadata;
 
-    EnrichProcessorFactory(Client client, ScriptService scriptService, EnrichCache enrichCache) {
+    EnrichProcessorFactory(
+        Client client,
+        ScriptService scriptService,
+        EnrichCache enrichCache,
+        Supplier<EnrichCoordinatorProxyAction.Coordinator> coordinator,
+        Supplier<EnrichLookupTables> lookupTables
+    ) {
         this.client = client;
         this.scriptService = scriptService;
         this.enrichCache = Objects.requireNonNull(enrichCache);
+        this.coordinator = coordinator;
+        this.lookupTables = lookupTables;
     }
 
     @Override
@@ -78,6 +97,13 @@ final class EnrichProcessorFactory implements Processor.Factory, Consumer<Cluste
             throw ConfigurationUtils.newConfigurationException(TYPE, tag, "max_matches", "should be between 1 and 128");
         }
         BiConsumer<SearchRequest, BiConsumer<SearchResponse, Exception>> searchRunner = createSearchRunner(client, enrichCache);
+        BiConsumer<MultiSearchRequest, BiConsumer<MultiSearchResponse, Exception>> multiSearchRunner = createMultiSearchRunner(
+            client,
+            enrichCache,
+            coordinator
+        );
+        // only set on ingest nodes that keep lookup tables
+        EnrichLookupTables lookupTables = this.lookupTables.get();
         switch (policyType) {
             case EnrichPolicy.MATCH_TYPE:
             case EnrichPolicy.RANGE_TYPE:
@@ -85,6 +111,8 @@ final class EnrichProcessorFactory implements Processor.Factory, Consumer<Cluste
                     tag,
                     description,
                     searchRunner,
+                    multiSearchRunner,
+                    lookupTables,
                     policyName,
                     field,
                     targetField,
@@ -102,6 +130,8 @@ final class EnrichProcessorFactory implements Processor.Factory, Consumer<Cluste
                     tag,
                     description,
                     searchRunner,
+                    multiSearchRunner,
+                    lookupTables,
                     policyName,
                     field,
                     targetField,
@@ -134,4 +164,47 @@ final class EnrichProcessorFactory implements Processor.Factory, Consumer<Cluste
             handler
         );
     }
+
+    /**
+     * Resolves the lookups of a batch of documents from the cache and hands all misses to the coordinator at once, so
+     * that they are sent out together instead of one search request per document.
+     */
+    private static BiConsumer<MultiSearchRequest, BiConsumer<MultiSearchResponse, Exception>> createMultiSearchRunner(
+        Client client,
+        EnrichCache enrichCache,
+        Supplier<EnrichCoordinatorProxyAction.Coordinator> coordinator
+    ) {
+        return (multiSearchRequest, handler) -> {
+            List<SearchRequest> requests = multiSearchRequest.requests();
+            MultiSearchResponse.Item[] items = new MultiSearchResponse.Item[requests.size()];
+            AtomicInteger pending = new AtomicInteger(requests.size());
+            List<SearchRequest> misses = new ArrayList<>();
+            List<ActionListener<SearchResponse>> missListeners = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                final int slot = i;
+                enrichCache.resolveOrDispatchSearch(requests.get(i), (searchRequest, listener) -> {
+                    misses.add(searchRequest);
+                    missListeners.add(listener);
+                }, (response, e) -> {
+                    items[slot] = new MultiSearchResponse.Item(response, e);
+                    if (pending.decrementAndGet() == 0) {
+                        handler.accept(new MultiSearchResponse(items, 1L), null);
+                    }
+                });
+            }
+            if (misses.isEmpty()) {
+                return;
+            }
+
+            ThreadContext threadContext = client.threadPool().getThreadContext();
+            Supplier<ThreadContext.StoredContext> storedContext = threadContext.newRestorableContext(false);
+            List<ActionListener<SearchResponse>> listeners = new ArrayList<>(missListeners.size());
+            for (ActionListener<SearchResponse> listener : missListeners) {
+                listeners.add(new ContextPreservingActionListener<>(storedContext, listener));
+            }
+            try (ThreadContext.StoredContext ignore = threadContext.stashWithOrigin(ENRICH_ORIGIN)) {
+                coordinator.get().schedule(misses, listeners);
+            }
+        };
+    }
 }
@@ -114,10 +114,24 @@ public class EnrichCoordinatorProxyAction extends ActionType<SearchResponse> {
         }
 
         void schedule(SearchRequest searchRequest, ActionListener<SearchResponse> listener) {
+            schedule(List.of(searchRequest), List.of(listener));
+        }
+
+        /**
+         * Queues the lookups of a batch of documents before coordinating them, so that they are sent out together in as
+         * few multi search requests as possible.
+         */
+        public void schedule(List<SearchRequest> searchRequests, List<ActionListener<SearchResponse>> listeners) {
+            assert searchRequests.size() == listeners.size();
             // Use offer(...) instead of put(...). We are on a write thread and blocking here can be dangerous,
             // especially since the logic to kick off draining the queue is located right after this section. If we
             // cannot insert a request to the queue, we should reject the document with a 429 error code.
-            boolean accepted = queue.offer(new Slot(searchRequest, listener));
+            List<ActionListener<SearchResponse>> rejected = new ArrayList<>();
+            for (int i = 0; i < searchRequests.size(); i++) {
+                if (queue.offer(new Slot(searchRequests.get(i), listeners.get(i))) == false) {
+                    rejected.add(listeners.get(i));
+                }
+            }
             int queueSize = queue.size();
 
             // Coordinate lookups no matter what, even if queues were full. Search threads should be draining the queue,
@@ -126,7 +140,7 @@ public class EnrichCoordinatorProxyAction extends ActionType<SearchResponse> {
             // coordinate the next set of lookups.
             coordinateLookups();
 
-            if (accepted == false) {
+            for (ActionListener<SearchResponse> listener : rejected) {
                 listener.onFailure(
                     new EsRejectedExecutionException(
                         "Could not perform enrichment, enrich coordination queue at capacity [" + queueSize + "/" + queueCapacity + "]"
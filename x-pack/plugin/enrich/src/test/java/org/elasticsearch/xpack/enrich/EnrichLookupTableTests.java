@@ -0,0 +1,164 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.enrich;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentType;
+import org.elasticsearch.xcontent.json.JsonXContent;
+import org.elasticsearch.xpack.core.enrich.EnrichPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class EnrichLookupTableTests extends ESTestCase {
+
+    public void testMatch() throws IOException {
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.MATCH_TYPE, "key.id", "keyword");
+        builder.add(source(Map.of("key", Map.of("id", "a"), "value", 0)));
+        builder.add(source(Map.of("key.id", List.of("b", "a", "a"), "value", 1)));
+        builder.add(source(Map.of("key", List.of(Map.of("id", 5), Map.of("id", true)), "value", 2)));
+        builder.add(source(Map.of("value", 3)));
+        builder.add(source(Map.of("key", Map.of("id", "b"), "value", 4)));
+        EnrichLookupTable table = builder.build();
+
+        assertThat(table.numDocs(), equalTo(5));
+        assertThat(table.ramBytesUsed(), greaterThan(0L));
+        assertThat(values(table.lookup("a", 128)), equalTo(List.of(0, 1)));
+        assertThat(values(table.lookup("a", 1)), equalTo(List.of(0)));
+        assertThat(values(table.lookup("b", 128)), equalTo(List.of(1, 4)));
+        // values are compared by their string representation, like a term query on a keyword field does
+        assertThat(values(table.lookup(5L, 128)), equalTo(List.of(2)));
+        assertThat(values(table.lookup("5", 128)), equalTo(List.of(2)));
+        assertThat(values(table.lookup(true, 128)), equalTo(List.of(2)));
+        assertThat(values(table.lookup(List.of("b", "true"), 128)), equalTo(List.of(1, 2, 4)));
+        assertThat(values(table.lookup(List.of("b", "a"), 2)), equalTo(List.of(0, 1)));
+        assertThat(table.lookup("c", 128), empty());
+        assertThat(table.lookup("A", 128), empty());
+        // values that a table can't answer for are looked up with a search
+        assertThat(table.lookup(Map.of("id", "a"), 128), nullValue());
+        assertThat(table.lookup(List.of(), 128), nullValue());
+    }
+
+    public void testMatchLookupsReturnCopies() throws IOException {
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.MATCH_TYPE, "key", "keyword");
+        builder.add(source(Map.of("key", "a", "value", 0)));
+        EnrichLookupTable table = builder.build();
+
+        List<Map<String, Object>> first = table.lookup("a", 1);
+        first.get(0).put("value", 1);
+        assertThat(values(table.lookup("a", 1)), equalTo(List.of(0)));
+    }
+
+    public void testFloatingPointMatchValuesAreRejected() throws IOException {
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.MATCH_TYPE, "key", "keyword");
+        BytesReference source = source(Map.of("key", 1.5));
+        expectThrows(IllegalArgumentException.class, () -> builder.add(source));
+    }
+
+    public void testUnsupportedPolicies() {
+        assertThat(EnrichLookupTable.builder(EnrichPolicy.GEO_MATCH_TYPE, "key", "geo_shape"), nullValue());
+        assertThat(EnrichLookupTable.builder(EnrichPolicy.RANGE_TYPE, "key", "date_range"), nullValue());
+        assertThat(EnrichLookupTable.builder(EnrichPolicy.RANGE_TYPE, "key", null), nullValue());
+    }
+
+    public void testLongRange() throws IOException {
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.RANGE_TYPE, "range", "long_range");
+        builder.add(source(Map.of("range", Map.of("gte", 10, "lt", 20), "value", 0)));
+        builder.add(source(Map.of("range", Map.of("gt", 15, "lte", "25"), "value", 1)));
+        builder.add(source(Map.of("range", List.of(Map.of("lte", 0), Map.of("gte", 30)), "value", 2)));
+        builder.add(source(Map.of("range", Map.of("gt", 5, "lt", 6), "value", 3)));
+        EnrichLookupTable table = builder.build();
+
+        assertThat(values(table.lookup(9, 128)), equalTo(List.of()));
+        assertThat(values(table.lookup(10, 128)), equalTo(List.of(0)));
+        assertThat(values(table.lookup("15", 128)), equalTo(List.of(0)));
+        assertThat(values(table.lookup(16, 128)), equalTo(List.of(0, 1)));
+        assertThat(values(table.lookup(16, 1)), equalTo(List.of(0)));
+        assertThat(values(table.lookup(20, 128)), equalTo(List.of(1)));
+        assertThat(values(table.lookup(25, 128)), equalTo(List.of(1)));
+        assertThat(values(table.lookup(Long.MIN_VALUE, 128)), equalTo(List.of(2)));
+        assertThat(values(table.lookup(30, 128)), equalTo(List.of(2)));
+        assertThat(values(table.lookup(List.of(0, 12), 128)), equalTo(List.of(0, 2)));
+        // values that don't parse are looked up with a search, which fails the same way a term query does
+        assertThat(table.lookup("foo", 128), nullValue());
+    }
+
+    public void testDoubleRange() throws IOException {
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.RANGE_TYPE, "range", "double_range");
+        builder.add(source(Map.of("range", Map.of("gte", -1.5, "lt", 0.5), "value", 0)));
+        builder.add(source(Map.of("range", Map.of("gt", 0.5), "value", 1)));
+        EnrichLookupTable table = builder.build();
+
+        assertThat(values(table.lookup(-1.5, 128)), equalTo(List.of(0)));
+        assertThat(values(table.lookup(0, 128)), equalTo(List.of(0)));
+        assertThat(values(table.lookup(0.5, 128)), equalTo(List.of()));
+        assertThat(values(table.lookup(0.50001, 128)), equalTo(List.of(1)));
+        assertThat(values(table.lookup(Double.MAX_VALUE, 128)), equalTo(List.of(1)));
+    }
+
+    public void testIpRange() throws IOException {
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.RANGE_TYPE, "range", "ip_range");
+        builder.add(source(Map.of("range", "10.0.0.0/8", "value", 0)));
+        builder.add(source(Map.of("range", Map.of("gte", "10.1.0.0", "lte", "10.1.255.255"), "value", 1)));
+        builder.add(source(Map.of("range", "2001:db8::/32", "value", 2)));
+        EnrichLookupTable table = builder.build();
+
+        assertThat(values(table.lookup("10.0.0.1", 128)), equalTo(List.of(0)));
+        assertThat(values(table.lookup("10.1.2.3", 128)), equalTo(List.of(0, 1)));
+        assertThat(values(table.lookup("11.0.0.0", 128)), equalTo(List.of()));
+        assertThat(values(table.lookup("2001:db8::1", 128)), equalTo(List.of(2)));
+        assertThat(table.lookup("not an ip", 128), nullValue());
+    }
+
+    public void testRandomRanges() throws IOException {
+        int numDocs = randomIntBetween(1, 200);
+        long[][] ranges = new long[numDocs][];
+        EnrichLookupTable.Builder builder = EnrichLookupTable.builder(EnrichPolicy.RANGE_TYPE, "range", "integer_range");
+        for (int i = 0; i < numDocs; i++) {
+            long from = randomIntBetween(-100, 100);
+            long to = from + randomIntBetween(0, 50);
+            ranges[i] = new long[] { from, to };
+            builder.add(source(Map.of("range", Map.of("gte", from, "lte", to), "value", i)));
+        }
+        EnrichLookupTable table = builder.build();
+
+        for (int iter = 0; iter < 100; iter++) {
+            int point = randomIntBetween(-120, 170);
+            int maxMatches = randomIntBetween(1, 128);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < numDocs && expected.size() < maxMatches; i++) {
+                if (ranges[i][0] <= point && point <= ranges[i][1]) {
+                    expected.add(i);
+                }
+            }
+            assertThat(values(table.lookup(point, maxMatches)), equalTo(expected));
+        }
+    }
+
+    private static BytesReference source(Map<String, Object> source) throws IOException {
+        XContentBuilder builder = randomBoolean() ? JsonXContent.contentBuilder() : XContentBuilder.builder(XContentType.SMILE.xContent());
+        return BytesReference.bytes(builder.map(new HashMap<>(source)));
+    }
+
+    private static List<Integer> values(List<Map<String, Object>> sources) {
+        List<Integer> values = new ArrayList<>();
+        for (Map<String, Object> source : sources) {
+            values.add((Integer) source.get("value"));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.enrich;
+
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.ingest.PutPipelineRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.reindex.ReindexPlugin;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.xcontent.XContentType;
+import org.elasticsearch.xpack.core.XPackSettings;
+import org.elasticsearch.xpack.core.enrich.EnrichPolicy;
+import org.elasticsearch.xpack.core.enrich.action.EnrichStatsAction;
+import org.elasticsearch.xpack.core.enrich.action.ExecuteEnrichPolicyAction;
+import org.elasticsearch.xpack.core.enrich.action.PutEnrichPolicyAction;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class EnrichLookupTablesTests extends ESSingleNodeTestCase {
+
+    private static final String POLICY_NAME = "my-policy";
+
+    @Override
+    protected Collection<Class<? extends Plugin>> getPlugins() {
+        return List.of(LocalStateEnrich.class, ReindexPlugin.class);
+    }
+
+    @Override
+    protected Settings nodeSettings() {
+        return Settings.builder()
+            .put(XPackSettings.SECURITY_ENABLED.getKey(), false)
+            .put(EnrichPlugin.LOOKUP_TABLES_MAX_MEMORY.getKey(), "10mb")
+            .build();
+    }
+
+    public void testLookupsDoNotSearch() throws Exception {
+        int numKeys = randomIntBetween(1, 32);
+        for (int i = 0; i < numKeys; i++) {
+            client().index(new IndexRequest("users").source(Map.of("email", "user" + i, "city", "city" + i))).actionGet();
+        }
+        client().admin().indices().refresh(new RefreshRequest("users")).actionGet();
+        EnrichPolicy policy = new EnrichPolicy(EnrichPolicy.MATCH_TYPE, null, List.of("users"), "email", List.of("city"));
+        client().execute(PutEnrichPolicyAction.INSTANCE, new PutEnrichPolicyAction.Request(POLICY_NAME, policy)).actionGet();
+        client().execute(ExecuteEnrichPolicyAction.INSTANCE, new ExecuteEnrichPolicyAction.Request(POLICY_NAME)).actionGet();
+
+        EnrichLookupTables lookupTables = getInstanceFromNode(EnrichLookupTables.class);
+        assertBusy(() -> assertThat(lookupTables.get(POLICY_NAME), notNullValue()));
+        EnrichLookupTable table = lookupTables.get(POLICY_NAME);
+        assertThat(table.numDocs(), equalTo(numKeys));
+        assertThat(lookupTables.getMemoryUsed(), equalTo(table.ramBytesUsed()));
+
+        String pipelineBody = "{\"processors\": [{\"enrich\": {\"policy_name\": \""
+            + POLICY_NAME
+            + "\", \"field\": \"email\", \"target_field\": \"user\"}}]}";
+        client().admin()
+            .cluster()
+            .putPipeline(new PutPipelineRequest("my-pipeline", new BytesArray(pipelineBody), XContentType.JSON))
+            .actionGet();
+        BulkRequest bulkRequest = new BulkRequest("my-index");
+        for (int i = 0; i <= numKeys; i++) {
+            bulkRequest.add(new IndexRequest().id(Integer.toString(i)).setPipeline("my-pipeline").source(Map.of("email", "user" + i)));
+        }
+        BulkResponse bulkResponse = client().bulk(bulkRequest).actionGet();
+        assertThat("Expected no failure, but " + bulkResponse.buildFailureMessage(), bulkResponse.hasFailures(), is(false));
+        for (int i = 0; i < numKeys; i++) {
+            Map<String, Object> source = client().get(new GetRequest("my-index", Integer.toString(i))).actionGet().getSourceAsMap();
+            assertThat(source.get("user"), equalTo(Map.of("email", "user" + i, "city", "city" + i)));
+        }
+        Map<String, Object> source = client().get(new GetRequest("my-index", Integer.toString(numKeys))).actionGet().getSourceAsMap();
+        assertThat(source.get("user"), nullValue());
+
+        EnrichStatsAction.Response statsResponse = client().execute(EnrichStatsAction.INSTANCE, new EnrichStatsAction.Request())
+            .actionGet();
+        assertThat(statsResponse.getCoordinatorStats().get(0).getExecutedSearchesTotal(), equalTo(0L));
+
+        // executing the policy again replaces the table once the new enrich index is loaded
+        client().execute(ExecuteEnrichPolicyAction.INSTANCE, new ExecuteEnrichPolicyAction.Request(POLICY_NAME)).actionGet();
+        assertBusy(() -> {
+            assertThat(lookupTables.get(POLICY_NAME), notNullValue());
+            assertThat(lookupTables.get(POLICY_NAME), not(sameInstance(table)));
+        });
+        assertThat(lookupTables.getMemoryUsed(), equalTo(lookupTables.get(POLICY_NAME).ramBytesUsed()));
+        assertThat(lookupTables.getMemoryUsed(), greaterThan(0L));
+    }
+}
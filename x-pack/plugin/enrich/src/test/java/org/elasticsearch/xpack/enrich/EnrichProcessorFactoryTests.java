@@ -65,7 +65,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
         List<String> enrichValues = List.of("globalRank", "tldRank", "tld");
         EnrichPolicy policy = new EnrichPolicy(EnrichPolicy.MATCH_TYPE, null, List.of("source_index"), "my_key", enrichValues);
         try (Client client = new NoOpClient(this.getClass().getSimpleName() + "TestClient")) {
-            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache);
+            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache, null, () -> null);
             factory.metadata = createMetadata("majestic", policy);
 
             Map<String, Object> config = new HashMap<>();
@@ -116,7 +116,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
 
     public void testPolicyDoesNotExist() {
         List<String> enrichValues = List.of("globalRank", "tldRank", "tld");
-        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache);
+        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache, null, () -> null);
         factory.metadata = Metadata.builder().build();
 
         Map<String, Object> config = new HashMap<>();
@@ -145,7 +145,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
 
     public void testPolicyNameMissing() {
         List<String> enrichValues = List.of("globalRank", "tldRank", "tld");
-        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache);
+        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache, null, () -> null);
 
         Map<String, Object> config = new HashMap<>();
         config.put("enrich_key", "host");
@@ -174,7 +174,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
         List<String> enrichValues = List.of("globalRank", "tldRank", "tld");
         EnrichPolicy policy = new EnrichPolicy("unsupported", null, List.of("source_index"), "my_key", enrichValues);
         try (Client client = new NoOpClient(this.getClass().getSimpleName() + "TestClient")) {
-            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache);
+            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache, null, () -> null);
             factory.metadata = createMetadata("majestic", policy);
 
             Map<String, Object> config = new HashMap<>();
@@ -195,7 +195,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
         List<String> enrichValues = List.of("globalRank", "tldRank", "tld");
         EnrichPolicy policy = new EnrichPolicy(EnrichPolicy.MATCH_TYPE, null, List.of("source_index"), "host", enrichValues);
         try (Client client = new NoOpClient(this.getClass().getSimpleName() + "TestClient")) {
-            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache);
+            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache, null, () -> null);
             factory.metadata = createMetadata("majestic", policy);
 
             Map<String, Object> config = new HashMap<>();
@@ -214,7 +214,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
     public void testNoTargetField() throws Exception {
         List<String> enrichValues = List.of("globalRank", "tldRank", "tld");
         EnrichPolicy policy = new EnrichPolicy(EnrichPolicy.MATCH_TYPE, null, List.of("source_index"), "host", enrichValues);
-        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache);
+        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache, null, () -> null);
         factory.metadata = createMetadata("majestic", policy);
 
         Map<String, Object> config1 = new HashMap<>();
@@ -228,7 +228,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
     public void testIllegalMaxMatches() throws Exception {
         List<String> enrichValues = List.of("globalRank", "tldRank", "tld");
         EnrichPolicy policy = new EnrichPolicy(EnrichPolicy.MATCH_TYPE, null, List.of("source_index"), "my_key", enrichValues);
-        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache);
+        EnrichProcessorFactory factory = new EnrichProcessorFactory(null, scriptService, enrichCache, null, () -> null);
         factory.metadata = createMetadata("majestic", policy);
 
         Map<String, Object> config = new HashMap<>();
@@ -278,7 +278,7 @@ public class EnrichProcessorFactoryTests extends ESTestCase {
                 listener.onResponse((Response) emptyResponse);
             }
         }) {
-            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache);
+            EnrichProcessorFactory factory = new EnrichProcessorFactory(client, scriptService, enrichCache, null, () -> null);
             factory.accept(ClusterState.builder(new ClusterName("_name")).metadata(createMetadata("majestic", policy)).build());
 
             Map<String, Object> config = new HashMap<>();
@@ -97,6 +97,8 @@ public class GeoMatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("location"),
             str("entry"),
@@ -8,6 +8,8 @@ package org.elasticsearch.xpack.enrich;
 
 import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.util.SetOnce;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchResponseSections;
@@ -33,6 +35,7 @@ import org.elasticsearch.xcontent.XContentType;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -44,6 +47,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class MatchProcessorTests extends ESTestCase {
 
@@ -54,6 +58,8 @@ public class MatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("domain"),
             str("entry"),
@@ -109,6 +115,8 @@ public class MatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("domain"),
             str("entry"),
@@ -156,6 +164,8 @@ public class MatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("domain"),
             str("entry"),
@@ -207,6 +217,8 @@ public class MatchProcessorTests extends ESTestCase {
                 "_tag",
                 null,
                 mockedSearchFunction(),
+                null,
+                null,
                 "_name",
                 str("domain"),
                 str("entry"),
@@ -228,6 +240,8 @@ public class MatchProcessorTests extends ESTestCase {
                 "_tag",
                 null,
                 mockedSearchFunction(),
+                null,
+                null,
                 "_name",
                 str("domain"),
                 str("entry"),
@@ -255,6 +269,8 @@ public class MatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("domain"),
             str("entry"),
@@ -282,6 +298,8 @@ public class MatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("domain"),
             str("entry"),
@@ -312,6 +330,8 @@ public class MatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("domain"),
             str("entry"),
@@ -351,6 +371,8 @@ public class MatchProcessorTests extends ESTestCase {
             "_tag",
             null,
             mockSearch,
+            null,
+            null,
             "_name",
             str("domain"),
             str("entry"),
@@ -391,6 +413,69 @@ public class MatchProcessorTests extends ESTestCase {
         assertThat(entry.get("tld"), equalTo("co"));
     }
 
+    public void testBatch() {
+        List<MultiSearchRequest> requests = new ArrayList<>();
+        BiConsumer<MultiSearchRequest, BiConsumer<MultiSearchResponse, Exception>> multiSearch = (request, handler) -> {
+            requests.add(request);
+            MultiSearchResponse.Item[] items = new MultiSearchResponse.Item[request.requests().size()];
+            for (int i = 0; i < items.length; i++) {
+                TermQueryBuilder termQuery = (TermQueryBuilder) ((ConstantScoreQueryBuilder) request.requests().get(i).source().query())
+                    .innerQuery();
+                if (termQuery.value().equals("elastic.co")) {
+                    items[i] = new MultiSearchResponse.Item(mockResponse(Map.of("elastic.co", Map.of("tld", "co"))), null);
+                } else if (termQuery.value().equals("fail.co")) {
+                    items[i] = new MultiSearchResponse.Item(null, new IllegalStateException("lookup failed"));
+                } else {
+                    items[i] = new MultiSearchResponse.Item(mockResponse(Collections.emptyMap()), null);
+                }
+            }
+            handler.accept(new MultiSearchResponse(items, 1L), null);
+        };
+        MatchProcessor processor = new MatchProcessor(
+            "_tag",
+            null,
+            mockedSearchFunction(),
+            multiSearch,
+            null,
+            "_name",
+            str("domain"),
+            str("entry"),
+            true,
+            true,
+            "domain",
+            1
+        );
+        List<IngestDocument> ingestDocuments = new ArrayList<>();
+        for (String domain : new String[] { "elastic.co", "fail.co", null, "unknown.co" }) {
+            Map<String, Object> source = new HashMap<>();
+            if (domain != null) {
+                source.put("domain", domain);
+            }
+            ingestDocuments.add(new IngestDocument("_index", "_id", "_routing", 1L, VersionType.INTERNAL, source));
+        }
+        IngestDocument[] results = new IngestDocument[ingestDocuments.size()];
+        Exception[] failures = new Exception[ingestDocuments.size()];
+        List<BiConsumer<IngestDocument, Exception>> handlers = new ArrayList<>();
+        for (int i = 0; i < ingestDocuments.size(); i++) {
+            final int slot = i;
+            handlers.add((result, e) -> {
+                results[slot] = result;
+                failures[slot] = e;
+            });
+        }
+        processor.executeBatch(ingestDocuments, handlers);
+
+        // the document without an enrich key isn't looked up, all others are looked up with a single request
+        assertThat(requests.size(), equalTo(1));
+        assertThat(requests.get(0).requests().size(), equalTo(3));
+        assertThat(results[0].getFieldValue("entry", Map.class), equalTo(Map.of("tld", "co")));
+        assertThat(results[1], nullValue());
+        assertThat(failures[1].getMessage(), equalTo("lookup failed"));
+        assertThat(results[2], sameInstance(ingestDocuments.get(2)));
+        assertThat(results[2].hasField("entry"), equalTo(false));
+        assertThat(results[3].hasField("entry"), equalTo(false));
+    }
+
     private static final class MockSearchFunction implements BiConsumer<SearchRequest, BiConsumer<SearchResponse, Exception>> {
         private final SearchResponse mockResponse;
         private final SetOnce<SearchRequest> capturedRequest;
@@ -20,6 +20,7 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.ShardSearchFailure;
 import org.elasticsearch.action.support.single.shard.SingleShardRequest;
 import org.elasticsearch.client.ElasticsearchClient;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.core.Tuple;
 import org.elasticsearch.index.query.MatchQueryBuilder;
 import org.elasticsearch.search.SearchHit;
@@ -113,6 +114,45 @@ public class CoordinatorTests extends ESTestCase {
         }
     }
 
+    public void testScheduleBatch() {
+        MockLookupFunction lookupFunction = new MockLookupFunction();
+        Coordinator coordinator = new Coordinator(lookupFunction, 5, 1, 4);
+
+        List<SearchRequest> searchRequests = new ArrayList<>();
+        List<ActionListener<SearchResponse>> searchActionListeners = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            SearchRequest searchRequest = new SearchRequest("my-index");
+            searchRequest.source().query(new MatchQueryBuilder("my_field", String.valueOf(i)));
+            searchRequests.add(searchRequest);
+            @SuppressWarnings("unchecked")
+            ActionListener<SearchResponse> actionListener = Mockito.mock(ActionListener.class);
+            searchActionListeners.add(actionListener);
+        }
+        coordinator.schedule(searchRequests, searchActionListeners);
+
+        // All lookups that fit in the queue have been sent off in a single multi search:
+        assertThat(coordinator.queue.size(), equalTo(0));
+        assertThat(coordinator.getRemoteRequestsCurrent(), equalTo(1));
+        assertThat(lookupFunction.capturedRequests.size(), equalTo(1));
+        assertThat(lookupFunction.capturedRequests.get(0).requests().size(), equalTo(4));
+
+        // The remaining lookups have been rejected:
+        for (int i = 4; i < 6; i++) {
+            Mockito.verify(searchActionListeners.get(i)).onFailure(Mockito.any(EsRejectedExecutionException.class));
+        }
+
+        SearchResponse emptyResponse = emptySearchResponse();
+        MultiSearchResponse.Item[] responseItems = new MultiSearchResponse.Item[4];
+        for (int i = 0; i < 4; i++) {
+            responseItems[i] = new MultiSearchResponse.Item(emptyResponse, null);
+        }
+        lookupFunction.capturedConsumers.get(0).accept(new MultiSearchResponse(responseItems, 1L), null);
+        assertThat(coordinator.getRemoteRequestsCurrent(), equalTo(0));
+        for (int i = 0; i < 4; i++) {
+            Mockito.verify(searchActionListeners.get(i)).onResponse(Mockito.eq(emptyResponse));
+        }
+    }
+
     public void testCoordinateLookupsMultiSearchError() {
         MockLookupFunction lookupFunction = new MockLookupFunction();
         Coordinator coordinator = new Coordinator(lookupFunction, 5, 1, 100);
@@ -64,6 +64,25 @@ public class BasicQueryClient implements QueryClient {
         search(search, searchLogListener(listener, log));
     }
 
+    @Override
+    public void multiQuery(List<QueryRequest> requests, ActionListener<List<SearchResponse>> listener) {
+        MultiSearchRequest multiSearch = new MultiSearchRequest();
+        for (QueryRequest request : requests) {
+            SearchSourceBuilder searchSource = request.searchSource();
+            // set query timeout
+            searchSource.timeout(cfg.requestTimeout());
+            multiSearch.add(prepareRequest(searchSource, false, indices));
+        }
+        // the log listener of the multi-search already fails on the first failed query
+        search(multiSearch, ActionListener.wrap(r -> {
+            List<SearchResponse> responses = new ArrayList<>(requests.size());
+            for (MultiSearchResponse.Item item : r.getResponses()) {
+                responses.add(item.getResponse());
+            }
+            listener.onResponse(responses);
+        }, listener::onFailure));
+    }
+
     protected void search(SearchRequest search, ActionListener<SearchResponse> listener) {
         if (cfg.isCancelled()) {
             listener.onFailure(new TaskCancelledException("cancelled"));
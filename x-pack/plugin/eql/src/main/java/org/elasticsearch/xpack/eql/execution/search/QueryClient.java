@@ -11,6 +11,7 @@ import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.search.SearchHit;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -20,6 +21,25 @@ public interface QueryClient {
 
     void query(QueryRequest request, ActionListener<SearchResponse> listener);
 
+    /**
+     * Runs independent queries, returning their responses in the same order as the requests.
+     * The queries run one after the other unless the client can send them at once.
+     */
+    default void multiQuery(List<QueryRequest> requests, ActionListener<List<SearchResponse>> listener) {
+        multiQuery(requests, new ArrayList<>(requests.size()), listener);
+    }
+
+    private void multiQuery(List<QueryRequest> requests, List<SearchResponse> responses, ActionListener<List<SearchResponse>> listener) {
+        if (responses.size() == requests.size()) {
+            listener.onResponse(responses);
+            return;
+        }
+        query(requests.get(responses.size()), ActionListener.wrap(r -> {
+            responses.add(r);
+            multiQuery(requests, responses, listener);
+        }, listener::onFailure));
+    }
+
     default void close(ActionListener<Boolean> closed) {}
 
     void fetchHits(Iterable<List<HitReference>> refs, ActionListener<List<List<SearchHit>>> listener);
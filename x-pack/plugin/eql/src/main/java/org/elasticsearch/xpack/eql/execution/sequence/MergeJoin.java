@@ -0,0 +1,165 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.eql.execution.sequence;
+
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.core.Tuple;
+import org.elasticsearch.xpack.eql.execution.search.HitReference;
+import org.elasticsearch.xpack.eql.execution.search.Ordinal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming join of the secondary stages of a window, when their queries run in parallel instead of one after the other.
+ *
+ * Each stage returns its hits sorted by ordinal, one page at a time. A hit can only be handed to the matcher once all
+ * the hits of the previous stages that precede it have been matched, otherwise the sequence it belongs to might not
+ * have reached the previous stage yet. Thus the hits of each stage are buffered and released up to a watermark: the
+ * lowest ordinal fetched so far by any previous stage that still has pages left.
+ * Feeding the matcher this way produces the same sequences as matching every stage of the window in full, in order.
+ *
+ * A stage only asks for its next page once its buffer has been consumed, which keeps at most one page per stage in
+ * memory. The buffered hits are accounted against the circuit breaker.
+ */
+class MergeJoin {
+
+    private static final String CB_BUFFERED_LABEL = "sequence_buffered";
+
+    private static final long TUPLE_SIZE = RamUsageEstimator.shallowSizeOfInstance(Tuple.class)
+        + RamUsageEstimator.shallowSizeOfInstance(KeyAndOrdinal.class);
+
+    private final int firstStage;
+    private final List<List<Tuple<KeyAndOrdinal, HitReference>>> buffers;
+    private final long[] bufferBytes;
+    // the ordinal of the last hit fetched for each stage
+    private final Ordinal[] tails;
+    private final boolean[] exhausted;
+    private final CircuitBreaker circuitBreaker;
+
+    MergeJoin(int firstStage, int lastStage, CircuitBreaker circuitBreaker) {
+        int stages = lastStage - firstStage + 1;
+        this.firstStage = firstStage;
+        this.buffers = new ArrayList<>(stages);
+        for (int i = 0; i < stages; i++) {
+            buffers.add(new ArrayList<>());
+        }
+        this.bufferBytes = new long[stages];
+        this.tails = new Ordinal[stages];
+        this.exhausted = new boolean[stages];
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    int firstStage() {
+        return firstStage;
+    }
+
+    int lastStage() {
+        return firstStage + buffers.size() - 1;
+    }
+
+    /**
+     * Whether the next page of the given stage needs to be queried.
+     */
+    boolean needsHits(int stage) {
+        int index = stage - firstStage;
+        return exhausted[index] == false && buffers.get(index).isEmpty();
+    }
+
+    /**
+     * Adds a page of hits (sorted by ordinal) of the given stage.
+     */
+    void add(int stage, Iterable<Tuple<KeyAndOrdinal, HitReference>> hits, boolean lastPage) {
+        int index = stage - firstStage;
+        List<Tuple<KeyAndOrdinal, HitReference>> buffer = buffers.get(index);
+        long bytes = 0;
+        for (Tuple<KeyAndOrdinal, HitReference> hit : hits) {
+            KeyAndOrdinal ko = hit.v1();
+            bytes += TUPLE_SIZE + ko.key.ramBytesUsed() + ko.ordinal.ramBytesUsed() + hit.v2().ramBytesUsed();
+            buffer.add(hit);
+        }
+        circuitBreaker.addEstimateBytesAndMaybeBreak(bytes, CB_BUFFERED_LABEL);
+        bufferBytes[index] += bytes;
+        if (buffer.isEmpty() == false) {
+            tails[index] = buffer.get(buffer.size() - 1).v1().ordinal;
+        }
+        exhausted[index] = lastPage;
+    }
+
+    /**
+     * Marks the given stage as done, dropping any buffered hits. Used when no sequence can reach the stage anymore.
+     */
+    void skip(int stage) {
+        int index = stage - firstStage;
+        exhausted[index] = true;
+        buffers.get(index).clear();
+        release(index);
+    }
+
+    /**
+     * Hands the hits that can be matched to the matcher, stage by stage.
+     * Returns false if the matcher needs to stop (since the limit has been reached).
+     */
+    boolean match(SequenceMatcher matcher) {
+        // null means there's no upper limit
+        Ordinal watermark = null;
+        for (int index = 0; index < buffers.size(); index++) {
+            List<Tuple<KeyAndOrdinal, HitReference>> buffer = buffers.get(index);
+            int matchable = buffer.size();
+            if (watermark != null) {
+                matchable = 0;
+                while (matchable < buffer.size() && buffer.get(matchable).v1().ordinal.after(watermark) == false) {
+                    matchable++;
+                }
+            }
+            if (matchable > 0) {
+                List<Tuple<KeyAndOrdinal, HitReference>> hits = buffer.subList(0, matchable);
+                if (matcher.match(firstStage + index, hits) == false) {
+                    return false;
+                }
+                hits.clear();
+                if (buffer.isEmpty()) {
+                    release(index);
+                }
+            }
+            if (exhausted[index] == false && (watermark == null || tails[index].before(watermark))) {
+                watermark = tails[index];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether all stages have been fetched and matched in full.
+     */
+    boolean isDone() {
+        for (int index = 0; index < buffers.size(); index++) {
+            if (exhausted[index] == false || buffers.get(index).isEmpty() == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the memory of all buffered hits.
+     */
+    void close() {
+        for (int index = 0; index < buffers.size(); index++) {
+            buffers.get(index).clear();
+            release(index);
+        }
+    }
+
+    private void release(int index) {
+        // partially consumed buffers keep their bytes until they are emptied
+        circuitBreaker.addWithoutBreaking(-bufferBytes[index]);
+        bufferBytes[index] = 0;
+    }
+}
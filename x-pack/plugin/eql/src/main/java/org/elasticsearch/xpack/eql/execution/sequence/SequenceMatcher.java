@@ -256,6 +256,10 @@ public class SequenceMatcher {
         return false;
     }
 
+    CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
     Set<SequenceKey> keys(int stage) {
         return stageToKeys.keys(stage);
     }
@@ -20,15 +20,18 @@ import org.elasticsearch.xpack.eql.execution.assembler.Executable;
 import org.elasticsearch.xpack.eql.execution.search.HitReference;
 import org.elasticsearch.xpack.eql.execution.search.Ordinal;
 import org.elasticsearch.xpack.eql.execution.search.QueryClient;
+import org.elasticsearch.xpack.eql.execution.search.QueryRequest;
 import org.elasticsearch.xpack.eql.session.EmptyPayload;
 import org.elasticsearch.xpack.eql.session.Payload;
 import org.elasticsearch.xpack.eql.session.Payload.Type;
 import org.elasticsearch.xpack.eql.util.ReversedIterator;
 import org.elasticsearch.xpack.ql.util.ActionListeners;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -301,6 +304,10 @@ public class TumblingWindow implements Executable {
                     next = () -> advance(1, listener);
                 }
                 // ASC to continue
+                // the queries of the remaining stages only depend on the window, so run them together
+                else if (nextStage + 1 < maxStages) {
+                    next = () -> secondaryCriteria(info, new MergeJoin(nextStage, maxStages - 1, matcher.circuitBreaker()), listener);
+                }
                 else {
                     next = () -> secondaryCriterion(info, nextStage, listener);
                 }
@@ -445,6 +452,84 @@ public class TumblingWindow implements Executable {
         }, listener::onFailure));
     }
 
+    /**
+     * Parallel version of {@link #secondaryCriterion(WindowInfo, int, ActionListener)}: queries the next page of every stage
+     * of the window at once and joins the results on their ordinal.
+     */
+    private void secondaryCriteria(WindowInfo window, MergeJoin join, ActionListener<Payload> listener) {
+        List<Criterion<BoxedQueryRequest>> stages = new ArrayList<>();
+        List<QueryRequest> requests = new ArrayList<>();
+
+        for (int stage = join.firstStage(); stage <= join.lastStage(); stage++) {
+            if (join.needsHits(stage) == false) {
+                continue;
+            }
+            // a stage only matches sequences that are on the previous stages of this window
+            // if there are none, there's no need to look for more results
+            Set<SequenceKey> keys = new LinkedHashSet<>();
+            for (int previous = window.baseStage; previous < stage; previous++) {
+                keys.addAll(matcher.keys(previous));
+            }
+            if (keys.isEmpty()) {
+                join.skip(stage);
+                continue;
+            }
+
+            Criterion<BoxedQueryRequest> criterion = criteria.get(stage);
+            BoxedQueryRequest request = criterion.queryRequest();
+            boxQuery(window, criterion);
+            // the sequences can still move to other stages while the queries run, so filter on all of their keys
+            if (hasKeys) {
+                request.keys(keys.stream().map(SequenceKey::asList).collect(toList()));
+            }
+            // the window is fully consumed
+            if (request.after().before(window.end) == false) {
+                join.skip(stage);
+                continue;
+            }
+
+            log.trace("Querying (parallel) stage [{}] {}", criterion.stage(), request);
+            stages.add(criterion);
+            requests.add(request);
+        }
+
+        if (requests.isEmpty()) {
+            assert join.isDone() : "stages without pending hits or queries";
+            join.close();
+            tumbleWindow(window.baseStage, listener);
+            return;
+        }
+
+        client.multiQuery(requests, wrap(responses -> {
+            for (int i = 0; i < responses.size(); i++) {
+                Criterion<BoxedQueryRequest> criterion = stages.get(i);
+                BoxedQueryRequest request = criterion.queryRequest();
+                // filter hits that are escaping the window (same timestamp but different tiebreaker)
+                List<SearchHit> hits = trim(searchHits(responses.get(i)), criterion, window.end);
+
+                log.trace("Found [{}] hits for stage [{}]", hits.size(), criterion.stage());
+
+                if (hits.isEmpty() == false) {
+                    request.nextAfter(tailOrdinal(hits, criterion));
+                }
+                boolean lastPage = hits.size() < windowSize || request.after().before(window.end) == false;
+                join.add(criterion.stage(), wrapValues(criterion, hits), lastPage);
+            }
+
+            // if the limit has been reached, return what's available
+            if (join.match(matcher) == false) {
+                join.close();
+                payload(listener);
+                return;
+            }
+
+            secondaryCriteria(window, join, listener);
+        }, e -> {
+            join.close();
+            listener.onFailure(e);
+        }));
+    }
+
     /**
      * Trim hits outside the (upper) limit.
      */
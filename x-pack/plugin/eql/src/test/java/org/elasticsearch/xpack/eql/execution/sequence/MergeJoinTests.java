@@ -0,0 +1,122 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.eql.execution.sequence;
+
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.core.Tuple;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xpack.eql.execution.search.HitReference;
+import org.elasticsearch.xpack.eql.execution.search.Ordinal;
+import org.elasticsearch.xpack.eql.execution.search.Timestamp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.greaterThan;
+
+public class MergeJoinTests extends ESTestCase {
+
+    private static final SequenceKey KEY = new SequenceKey("key");
+
+    public void testHitsAreMatchedOnceThePreviousStagesCaughtUp() {
+        SequenceMatcher matcher = new SequenceMatcher(3, false, TimeValue.MINUS_ONE, null, new NoopCircuitBreaker("eql_test"));
+        matcher.match(0, hits(1, 4));
+
+        TrackingCircuitBreaker breaker = new TrackingCircuitBreaker(Long.MAX_VALUE);
+        MergeJoin join = new MergeJoin(1, 2, breaker);
+        assertTrue(join.needsHits(1));
+        assertTrue(join.needsHits(2));
+
+        // the hit of the last stage at 6 follows the hit of the first stage at 5, which isn't fetched yet
+        join.add(1, hits(2), false);
+        join.add(2, hits(3, 6), true);
+        assertThat(breaker.used, greaterThan(0L));
+        assertTrue(join.match(matcher));
+        assertEquals(0, matcher.completed().size());
+        assertTrue(join.needsHits(1));
+        assertFalse(join.needsHits(2));
+        assertFalse(join.isDone());
+
+        join.add(1, hits(5), true);
+        assertTrue(join.match(matcher));
+        assertTrue(join.isDone());
+        assertEquals(0L, breaker.used);
+
+        List<Sequence> completed = matcher.completed();
+        assertEquals(2, completed.size());
+        assertEquals(List.of("1", "2", "3"), ids(completed.get(0)));
+        assertEquals(List.of("4", "5", "6"), ids(completed.get(1)));
+    }
+
+    public void testSkipDropsBufferedHits() {
+        TrackingCircuitBreaker breaker = new TrackingCircuitBreaker(Long.MAX_VALUE);
+        MergeJoin join = new MergeJoin(1, 2, breaker);
+        join.add(1, hits(2), false);
+        join.add(2, hits(3, 6), false);
+
+        join.skip(2);
+        assertFalse(join.needsHits(2));
+        join.add(1, hits(), true);
+        join.close();
+        assertTrue(join.isDone());
+        assertEquals(0L, breaker.used);
+    }
+
+    public void testBufferedHitsAreAccounted() {
+        TrackingCircuitBreaker breaker = new TrackingCircuitBreaker(1);
+        MergeJoin join = new MergeJoin(1, 2, breaker);
+        CircuitBreakingException e = expectThrows(CircuitBreakingException.class, () -> join.add(1, hits(2), false));
+        assertEquals("sequence_buffered", e.getMessage());
+
+        join.close();
+        assertEquals(0L, breaker.used);
+    }
+
+    private static List<Tuple<KeyAndOrdinal, HitReference>> hits(int... timestamps) {
+        List<Tuple<KeyAndOrdinal, HitReference>> hits = new ArrayList<>(timestamps.length);
+        for (int timestamp : timestamps) {
+            Ordinal ordinal = new Ordinal(Timestamp.of(String.valueOf(timestamp)), null, timestamp);
+            hits.add(new Tuple<>(new KeyAndOrdinal(KEY, ordinal), new HitReference("index", String.valueOf(timestamp))));
+        }
+        return hits;
+    }
+
+    private static List<String> ids(Sequence sequence) {
+        List<String> ids = new ArrayList<>();
+        for (HitReference hit : sequence.hits()) {
+            ids.add(hit.id());
+        }
+        return ids;
+    }
+
+    private static class TrackingCircuitBreaker extends NoopCircuitBreaker {
+
+        private final long limitInBytes;
+        private long used = 0;
+
+        private TrackingCircuitBreaker(long limitInBytes) {
+            super("eql_test");
+            this.limitInBytes = limitInBytes;
+        }
+
+        @Override
+        public void addEstimateBytesAndMaybeBreak(long bytes, String label) throws CircuitBreakingException {
+            if (used + bytes > limitInBytes) {
+                throw new CircuitBreakingException(label, getDurability());
+            }
+            used += bytes;
+        }
+
+        @Override
+        public void addWithoutBreaking(long bytes) {
+            used += bytes;
+        }
+    }
+}
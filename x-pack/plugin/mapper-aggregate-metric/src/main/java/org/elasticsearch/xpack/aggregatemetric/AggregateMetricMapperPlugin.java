@@ -49,7 +49,8 @@ public class AggregateMetricMapperPlugin extends Plugin implements MapperPlugin,
             AggregateMetricsAggregatorsRegistrar::registerAvgAggregator,
             AggregateMetricsAggregatorsRegistrar::registerMinAggregator,
             AggregateMetricsAggregatorsRegistrar::registerMaxAggregator,
-            AggregateMetricsAggregatorsRegistrar::registerValueCountAggregator
+            AggregateMetricsAggregatorsRegistrar::registerValueCountAggregator,
+            AggregateMetricsAggregatorsRegistrar::registerTimeSeriesAggregator
         );
     }
 }
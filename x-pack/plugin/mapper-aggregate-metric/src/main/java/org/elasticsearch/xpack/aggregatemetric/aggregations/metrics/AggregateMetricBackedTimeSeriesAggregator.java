@@ -0,0 +1,74 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.aggregatemetric.aggregations.metrics;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.xpack.aggregatemetric.aggregations.support.AggregateMetricsValuesSource;
+import org.elasticsearch.xpack.aggregatemetric.mapper.AggregateDoubleMetricFieldMapper.Metric;
+import org.elasticsearch.xpack.analytics.rate.RateMode;
+import org.elasticsearch.xpack.analytics.timeseries.TimeSeriesAggregator;
+import org.elasticsearch.xpack.analytics.timeseries.TimeSeriesMetric;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Samples the {@code sum} metric of pre-aggregated documents, or their {@code value_count} metric with the
+ * {@code value_count} mode, so that the rate of a counter can be computed from its pre-aggregated documents.
+ */
+class AggregateMetricBackedTimeSeriesAggregator extends TimeSeriesAggregator {
+
+    AggregateMetricBackedTimeSeriesAggregator(
+        String name,
+        ValuesSourceConfig config,
+        Rounding rounding,
+        TimeSeriesMetric metric,
+        Rounding.DateTimeUnit rateUnit,
+        RateMode rateMode,
+        String timestampField,
+        AggregationContext context,
+        Aggregator parent,
+        Map<String, Object> metadata
+    ) throws IOException {
+        super(
+            name,
+            config,
+            rounding,
+            metric,
+            rateUnit,
+            rateMode == null ? RateMode.SUM : rateMode,
+            timestampField,
+            context,
+            parent,
+            metadata
+        );
+    }
+
+    @Override
+    protected NumericDoubleValues getValues(LeafReaderContext ctx) throws IOException {
+        final Metric sample;
+        switch (rateMode) {
+            case SUM:
+                sample = Metric.sum;
+                break;
+            case VALUE_COUNT:
+                sample = Metric.value_count;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported rate mode " + rateMode);
+        }
+        return MultiValueMode.MAX.select(
+            ((AggregateMetricsValuesSource.AggregateDoubleMetric) valuesSource).getAggregateMetricValues(ctx, sample)
+        );
+    }
+}
@@ -13,6 +13,7 @@ import org.elasticsearch.search.aggregations.metrics.SumAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.ValueCountAggregationBuilder;
 import org.elasticsearch.search.aggregations.support.ValuesSourceRegistry;
 import org.elasticsearch.xpack.aggregatemetric.aggregations.support.AggregateMetricsValuesSourceType;
+import org.elasticsearch.xpack.analytics.timeseries.TimeSeriesAggregationBuilder;
 
 /**
  * Utility class providing static methods to register aggregators for the aggregate_metric values source
@@ -63,4 +64,13 @@ public class AggregateMetricsAggregatorsRegistrar {
             true
         );
     }
+
+    public static void registerTimeSeriesAggregator(ValuesSourceRegistry.Builder builder) {
+        builder.register(
+            TimeSeriesAggregationBuilder.REGISTRY_KEY,
+            AggregateMetricsValuesSourceType.AGGREGATE_METRIC,
+            AggregateMetricBackedTimeSeriesAggregator::new,
+            true
+        );
+    }
 }
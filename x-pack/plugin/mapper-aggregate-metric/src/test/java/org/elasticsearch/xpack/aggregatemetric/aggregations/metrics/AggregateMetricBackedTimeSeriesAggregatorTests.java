@@ -0,0 +1,152 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.aggregatemetric.aggregations.metrics;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.SortedSetSortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.xpack.aggregatemetric.AggregateMetricMapperPlugin;
+import org.elasticsearch.xpack.aggregatemetric.mapper.AggregateDoubleMetricFieldMapper.AggregateDoubleMetricFieldType;
+import org.elasticsearch.xpack.aggregatemetric.mapper.AggregateDoubleMetricFieldMapper.Metric;
+import org.elasticsearch.xpack.analytics.AnalyticsPlugin;
+import org.elasticsearch.xpack.analytics.timeseries.InternalTimeSeries;
+import org.elasticsearch.xpack.analytics.timeseries.TimeSeriesAggregationBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.elasticsearch.xpack.aggregatemetric.mapper.AggregateDoubleMetricFieldMapper.subfieldName;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class AggregateMetricBackedTimeSeriesAggregatorTests extends AggregatorTestCase {
+
+    private static final String FIELD_NAME = "aggregate_metric_field";
+    private static final String DIMENSION_FIELD = "dim";
+    private static final String TIMESTAMP_FIELD = "@timestamp";
+
+    public void testRateOfSum() throws IOException {
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field(FIELD_NAME)
+            .fixedInterval(new DateHistogramInterval("30s"));
+        if (randomBoolean()) {
+            builder.rateMode("sum");
+        }
+        InternalTimeSeries ts = rate(builder);
+        assertThat(ts.getSeries(), hasSize(1));
+        InternalTimeSeries.Series series = ts.getSeries().get(0);
+        assertThat(series.getPoints(), hasSize(2));
+        assertThat(ts.value(series, 0), closeTo(50.0 / 30, 0.000001));
+        // the counter was reset to 5
+        assertThat(ts.value(series, 1), closeTo(5.0 / 30, 0.000001));
+    }
+
+    public void testRateOfValueCount() throws IOException {
+        TimeSeriesAggregationBuilder builder = new TimeSeriesAggregationBuilder("ts").field(FIELD_NAME)
+            .fixedInterval(new DateHistogramInterval("30s"))
+            .rateMode("value_count");
+        InternalTimeSeries ts = rate(builder);
+        assertThat(ts.getSeries(), hasSize(1));
+        InternalTimeSeries.Series series = ts.getSeries().get(0);
+        assertThat(series.getPoints(), hasSize(2));
+        assertThat(ts.value(series, 0), closeTo(2.0 / 30, 0.000001));
+        assertThat(ts.value(series, 1), closeTo(1.0 / 30, 0.000001));
+    }
+
+    /**
+     * Indexes the pre-aggregated samples of a counter in an index sorted by series and time and computes their rate.
+     */
+    private InternalTimeSeries rate(TimeSeriesAggregationBuilder builder) throws IOException {
+        double[] sums = new double[] { 10, 30, 60, 5 };
+        long[] valueCounts = new long[] { 1, 2, 3, 1 };
+        long start = DateFieldMapper.DEFAULT_DATE_TIME_FORMATTER.parseMillis("2021-01-01T00:00:00Z");
+        try (Directory directory = newDirectory()) {
+            IndexWriterConfig config = newIndexWriterConfig(random(), new MockAnalyzer(random()));
+            config.setIndexSort(
+                new Sort(
+                    new SortedSetSortField(DIMENSION_FIELD, false),
+                    new SortedNumericSortField(TIMESTAMP_FIELD, SortField.Type.LONG)
+                )
+            );
+            config.setCodec(TestUtil.getDefaultCodec());
+            config.setMergePolicy(NoMergePolicy.INSTANCE);
+            try (RandomIndexWriter iw = new RandomIndexWriter(random(), directory, config)) {
+                for (int i = 0; i < sums.length; i++) {
+                    long timestamp = start + i * 10_000;
+                    iw.addDocument(
+                        List.of(
+                            new SortedSetDocValuesField(DIMENSION_FIELD, new BytesRef("a")),
+                            new SortedNumericDocValuesField(TIMESTAMP_FIELD, timestamp),
+                            new LongPoint(TIMESTAMP_FIELD, timestamp),
+                            new NumericDocValuesField(subfieldName(FIELD_NAME, Metric.sum), NumericUtils.doubleToSortableLong(sums[i])),
+                            new NumericDocValuesField(subfieldName(FIELD_NAME, Metric.value_count), valueCounts[i])
+                        )
+                    );
+                    if (randomBoolean()) {
+                        iw.commit();
+                    }
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                return searchAndReduce(
+                    newIndexSearcher(reader),
+                    new MatchAllDocsQuery(),
+                    builder,
+                    new KeywordFieldMapper.KeywordFieldType(DIMENSION_FIELD),
+                    new DateFieldMapper.DateFieldType(TIMESTAMP_FIELD),
+                    createDefaultFieldType(FIELD_NAME)
+                );
+            }
+        }
+    }
+
+    /**
+     * Create a default aggregate_metric_double field type containing sum and a value_count metrics.
+     *
+     * @param fieldName the name of the field
+     * @return the created field type
+     */
+    private AggregateDoubleMetricFieldType createDefaultFieldType(String fieldName) {
+        AggregateDoubleMetricFieldType fieldType = new AggregateDoubleMetricFieldType(fieldName);
+
+        for (Metric m : List.of(Metric.value_count, Metric.sum)) {
+            String subfieldName = subfieldName(fieldName, m);
+            NumberFieldMapper.NumberFieldType subfield = new NumberFieldMapper.NumberFieldType(
+                subfieldName,
+                NumberFieldMapper.NumberType.DOUBLE
+            );
+            fieldType.addMetricField(m, subfield);
+        }
+        fieldType.setDefaultMetric(Metric.sum);
+        return fieldType;
+    }
+
+    @Override
+    protected List<SearchPlugin> getSearchPlugins() {
+        return List.of(new AnalyticsPlugin(), new AggregateMetricMapperPlugin());
+    }
+}
@@ -21,6 +21,7 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
 import org.elasticsearch.ingest.AbstractProcessor;
+import org.elasticsearch.ingest.BatchProcessor;
 import org.elasticsearch.ingest.ConfigurationUtils;
 import org.elasticsearch.ingest.IngestDocument;
 import org.elasticsearch.ingest.IngestMetadata;
@@ -54,6 +55,7 @@ import org.elasticsearch.xpack.core.ml.utils.ExceptionsHelper;
 import org.elasticsearch.xpack.ml.inference.loadingservice.LocalModel;
 import org.elasticsearch.xpack.ml.notifications.InferenceAuditor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -69,7 +71,7 @@ import static org.elasticsearch.xpack.core.ClientHelper.ML_ORIGIN;
 import static org.elasticsearch.xpack.core.ClientHelper.executeAsyncWithOrigin;
 import static org.elasticsearch.xpack.core.ml.inference.results.InferenceResults.MODEL_ID_RESULTS_FIELD;
 
-public class InferenceProcessor extends AbstractProcessor {
+public class InferenceProcessor extends AbstractProcessor implements BatchProcessor {
 
     // How many total inference processors are allowed to be used in the cluster.
     public static final Setting<Integer> MAX_INFERENCE_PROCESSORS = Setting.intSetting("xpack.ml.max_inference_processors",
@@ -128,6 +130,54 @@ public class InferenceProcessor extends AbstractProcessor {
             ));
     }
 
+    /**
+     * Infers all documents of a batch with a single request. The model returns one result per object, in request order.
+     */
+    @Override
+    public void executeBatch(List<IngestDocument> ingestDocuments, List<BiConsumer<IngestDocument, Exception>> handlers) {
+        List<Map<String, Object>> objectsToInfer = new ArrayList<>(ingestDocuments.size());
+        for (IngestDocument ingestDocument : ingestDocuments) {
+            objectsToInfer.add(buildFields(ingestDocument));
+        }
+        executeAsyncWithOrigin(client,
+            ML_ORIGIN,
+            InternalInferModelAction.INSTANCE,
+            new InternalInferModelAction.Request(modelId, objectsToInfer, inferenceConfig, previouslyLicensed),
+            ActionListener.wrap(
+                r -> handleBatchResponse(r, ingestDocuments, handlers),
+                e -> {
+                    for (int i = 0; i < ingestDocuments.size(); i++) {
+                        handlers.get(i).accept(ingestDocuments.get(i), e);
+                    }
+                }
+            ));
+    }
+
+    void handleBatchResponse(InternalInferModelAction.Response response,
+                             List<IngestDocument> ingestDocuments,
+                             List<BiConsumer<IngestDocument, Exception>> handlers) {
+        if (previouslyLicensed == false) {
+            previouslyLicensed = true;
+        }
+        if (response.isLicensed() == false) {
+            auditWarningAboutLicenseIfNecessary();
+        }
+        List<InferenceResults> inferenceResults = response.getInferenceResults();
+        for (int i = 0; i < ingestDocuments.size(); i++) {
+            IngestDocument ingestDocument = ingestDocuments.get(i);
+            try {
+                if (i >= inferenceResults.size()) {
+                    throw new ElasticsearchStatusException("Unexpected empty inference response", RestStatus.INTERNAL_SERVER_ERROR);
+                }
+                writeResult(response, inferenceResults.get(i), ingestDocument);
+            } catch (ElasticsearchException ex) {
+                handlers.get(i).accept(ingestDocument, ex);
+                continue;
+            }
+            handlers.get(i).accept(ingestDocument, null);
+        }
+    }
+
     void handleResponse(InternalInferModelAction.Response response,
                         IngestDocument ingestDocument,
                         BiConsumer<IngestDocument, Exception> handler) {
@@ -146,13 +196,17 @@ public class InferenceProcessor extends AbstractProcessor {
     }
 
     InternalInferModelAction.Request buildRequest(IngestDocument ingestDocument) {
+        return new InternalInferModelAction.Request(modelId, buildFields(ingestDocument), inferenceConfig, previouslyLicensed);
+    }
+
+    private Map<String, Object> buildFields(IngestDocument ingestDocument) {
         Map<String, Object> fields = new HashMap<>(ingestDocument.getSourceAndMetadata());
         // Add ingestMetadata as previous processors might have added metadata from which we are predicting (see: foreach processor)
         if (ingestDocument.getIngestMetadata().isEmpty() == false) {
             fields.put(INGEST_KEY, ingestDocument.getIngestMetadata());
         }
         LocalModel.mapFieldsIfNecessary(fields, fieldMap);
-        return new InternalInferModelAction.Request(modelId, fields, inferenceConfig, previouslyLicensed);
+        return fields;
     }
 
     void auditWarningAboutLicenseIfNecessary() {
@@ -169,12 +223,11 @@ public class InferenceProcessor extends AbstractProcessor {
             throw new ElasticsearchStatusException("Unexpected empty inference response", RestStatus.INTERNAL_SERVER_ERROR);
         }
         assert response.getInferenceResults().size() == 1;
-        InferenceResults.writeResult(
-            response.getInferenceResults().get(0),
-            ingestDocument,
-            targetField,
-            response.getModelId() != null ? response.getModelId() : modelId
-        );
+        writeResult(response, response.getInferenceResults().get(0), ingestDocument);
+    }
+
+    private void writeResult(InternalInferModelAction.Response response, InferenceResults result, IngestDocument ingestDocument) {
+        InferenceResults.writeResult(result, ingestDocument, targetField, response.getModelId() != null ? response.getModelId() : modelId);
     }
 
     @Override
@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
@@ -231,6 +232,42 @@ public class InferenceProcessorTests extends ESTestCase {
         assertThat(document.getFieldValue("ml.my_processor.model_id", String.class), equalTo("regression_model"));
     }
 
+    public void testHandleBatchResponse() {
+        RegressionConfig regressionConfig = new RegressionConfig("foo");
+        InferenceProcessor inferenceProcessor = new InferenceProcessor(client,
+            auditor,
+            "my_processor",
+                null, "ml.my_processor",
+            "regression_model",
+            new RegressionConfigUpdate("foo", null),
+            Collections.emptyMap());
+
+        List<IngestDocument> documents = new ArrayList<>();
+        List<Exception> failures = new ArrayList<>();
+        List<BiConsumer<IngestDocument, Exception>> handlers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            documents.add(new IngestDocument(new HashMap<>(), new HashMap<>()));
+            handlers.add((doc, ex) -> failures.add(ex));
+        }
+
+        // the response has one result too few, so the last document can't be enriched
+        InternalInferModelAction.Response response = new InternalInferModelAction.Response(
+            List.of(new RegressionInferenceResults(0.7, regressionConfig), new RegressionInferenceResults(0.3, regressionConfig)),
+            null,
+            true);
+        inferenceProcessor.handleBatchResponse(response, documents, handlers);
+
+        assertThat(documents.get(0).getFieldValue("ml.my_processor.foo", Double.class), equalTo(0.7));
+        assertThat(documents.get(1).getFieldValue("ml.my_processor.foo", Double.class), equalTo(0.3));
+        assertThat(documents.get(1).getFieldValue("ml.my_processor.model_id", String.class), equalTo("regression_model"));
+        assertThat(documents.get(2).hasField("ml.my_processor"), is(false));
+        assertThat(failures.size(), equalTo(3));
+        assertThat(failures.get(0), nullValue());
+        assertThat(failures.get(1), nullValue());
+        assertThat(failures.get(2).getMessage(), equalTo("Unexpected empty inference response"));
+        assertThat(inferenceProcessor.buildRequest(documents.get(0)).isPreviouslyLicensed(), is(true));
+    }
+
     public void testMutateDocumentRegressionWithTopFeatures() {
         RegressionConfig regressionConfig = new RegressionConfig("foo", 2);
         RegressionConfigUpdate regressionConfigUpdate = new RegressionConfigUpdate("foo", 2);
@@ -9,8 +9,13 @@ package org.elasticsearch.xpack.rollup.v2;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexSorter;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.DocIdSetIterator;
@@ -18,12 +23,16 @@ import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorable;
 import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefIterator;
+import org.apache.lucene.util.PriorityQueue;
 import org.elasticsearch.action.bulk.BackoffPolicy;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkProcessor;
@@ -77,6 +86,9 @@ import java.util.stream.Collectors;
 /**
  * An indexer for rollup that sorts the buckets from the provided source shard on disk and send them
  * to the target rollup index.
+ *
+ * If the index is sorted on the fields to group on, followed by the timestamp, the documents of a bucket are next to each
+ * other in every segment and the buckets are built in a single pass over the segments, merged in the order of the index sort.
  */
 class RollupShardIndexer {
     private static final Logger logger = LogManager.getLogger(RollupShardIndexer.class);
@@ -92,6 +104,7 @@ class RollupShardIndexer {
     private final MappedFieldType timestampField;
     private final DocValueFormat timestampFormat;
     private final Rounding.Prepared rounding;
+    private final Sort indexSort;
 
     private final List<FieldValueFetcher> groupFieldFetchers;
     private final List<FieldValueFetcher> metricsFieldFetchers;
@@ -154,6 +167,7 @@ class RollupShardIndexer {
             verifyTimestampField(timestampField);
             this.timestampFormat = timestampField.docValueFormat(null, null);
             this.rounding = createRounding(config.getGroupConfig().getDateHistogram()).prepareForUnknown();
+            this.indexSort = indexService.getIndexSortSupplier().get();
             this.groupFieldFetchers = new ArrayList<>();
 
             if (config.getGroupConfig().getTerms() != null) {
@@ -197,11 +211,15 @@ class RollupShardIndexer {
     }
 
     public long execute() throws IOException {
-        Long bucket = Long.MIN_VALUE;
         try (searcher; bulkProcessor) {
-            do {
-                bucket = computeBucket(bucket);
-            } while (bucket != null);
+            if (canRollupInIndexOrder()) {
+                rollupInIndexOrder();
+            } else {
+                Long bucket = Long.MIN_VALUE;
+                do {
+                    bucket = computeBucket(bucket);
+                } while (bucket != null);
+            }
         }
         // TODO: check that numIndexed == numSent, otherwise throw an exception
         logger.info("Successfully sent [" + numIndexed.get() + "], indexed [" + numIndexed.get() + "]");
@@ -336,6 +354,118 @@ class RollupShardIndexer {
         return nextRoundingLastValue;
     }
 
+    /**
+     * Whether the index is sorted on the terms to group on, in any order, followed by the timestamp. Multi-valued fields
+     * can't be rolled up in index order: their documents belong to several buckets, but are sorted on a single value.
+     */
+    private boolean canRollupInIndexOrder() throws IOException {
+        if (indexSort == null || config.getGroupConfig().getHistogram() != null) {
+            return false;
+        }
+        SortField[] sortFields = indexSort.getSort();
+        int numGroupFields = groupFieldFetchers.size();
+        if (sortFields.length <= numGroupFields) {
+            return false;
+        }
+        Set<String> groupFields = groupFieldFetchers.stream().map(fetcher -> fetcher.name).collect(Collectors.toSet());
+        for (int i = 0; i < numGroupFields; i++) {
+            if (groupFields.remove(sortFields[i].getField()) == false) {
+                return false;
+            }
+        }
+        if (timestampField.name().equals(sortFields[numGroupFields].getField()) == false) {
+            return false;
+        }
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            for (int i = 0; i <= numGroupFields; i++) {
+                if (isSingleValued(leaf.reader(), sortFields[i].getField()) == false) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSingleValued(LeafReader reader, String field) throws IOException {
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null) {
+            return true;
+        }
+        switch (fieldInfo.getDocValuesType()) {
+            case NUMERIC:
+            case SORTED:
+                return true;
+            case SORTED_NUMERIC:
+                return DocValues.unwrapSingleton(reader.getSortedNumericDocValues(field)) != null;
+            case SORTED_SET:
+                return DocValues.unwrapSingleton(reader.getSortedSetDocValues(field)) != null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Builds the buckets in a single pass over the documents, merging the segments in the order of the index sort.
+     * The documents of a bucket come one after the other, so only the bucket being built is kept in memory.
+     */
+    private void rollupInIndexOrder() throws IOException {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        List<LeafReader> readers = leaves.stream().map(LeafReaderContext::reader).collect(Collectors.toList());
+        SortField[] sortFields = indexSort.getSort();
+        // the terms to group on and the timestamp
+        IndexSorter.ComparableProvider[][] comparables = new IndexSorter.ComparableProvider[groupFieldFetchers.size() + 1][];
+        int[] reverseMuls = new int[comparables.length];
+        for (int i = 0; i < comparables.length; i++) {
+            comparables[i] = sortFields[i].getIndexSorter().getComparableProviders(readers);
+            reverseMuls[i] = sortFields[i].getReverse() ? -1 : 1;
+        }
+
+        PriorityQueue<SortedLeafIterator> queue = new PriorityQueue<>(leaves.size()) {
+            @Override
+            protected boolean lessThan(SortedLeafIterator a, SortedLeafIterator b) {
+                for (int i = 0; i < reverseMuls.length; i++) {
+                    int cmp = reverseMuls[i] * Long.compare(a.sortValues[i], b.sortValues[i]);
+                    if (cmp != 0) {
+                        return cmp < 0;
+                    }
+                }
+                return a.leafOrd < b.leafOrd;
+            }
+        };
+        for (LeafReaderContext leaf : leaves) {
+            SortedLeafIterator iterator = new SortedLeafIterator(leaf, comparables);
+            if (iterator.next()) {
+                queue.add(iterator);
+            }
+        }
+
+        List<FieldMetricsProducer> fieldsMetrics = FieldMetricsProducer.buildMetrics(config.getMetricsConfig());
+        BucketKey lastKey = null;
+        int docCount = 0;
+        while (queue.size() > 0) {
+            SortedLeafIterator top = queue.top();
+            BucketKey key = top.bucketKey();
+            if (lastKey != null && lastKey.equals(key) == false) {
+                indexBucket(lastKey, fieldsMetrics, docCount);
+                docCount = 0;
+                for (FieldMetricsProducer producer : fieldsMetrics) {
+                    producer.reset();
+                }
+            }
+            top.collectMetrics(fieldsMetrics);
+            ++docCount;
+            lastKey = key;
+            if (top.next()) {
+                queue.updateTop();
+            } else {
+                queue.pop();
+            }
+        }
+        if (lastKey != null) {
+            indexBucket(lastKey, fieldsMetrics, docCount);
+        }
+    }
+
     private Long findNextRounding(long lastRounding) throws IOException {
         Long nextRounding = null;
         for (LeafReaderContext leafReaderContext : searcher.getIndexReader().leaves()) {
@@ -500,6 +630,81 @@ class RollupShardIndexer {
         }
     }
 
+    /**
+     * Iterates over the live documents of a segment that have a timestamp, in the order of the index sort.
+     */
+    private class SortedLeafIterator {
+        private final int leafOrd;
+        private final int maxDoc;
+        private final Bits liveDocs;
+        private final SortedNumericDocValues timestamps;
+        private final List<FormattedDocValues> groupFieldLeaves = new ArrayList<>();
+        private final List<FormattedDocValues> metricsFieldLeaves = new ArrayList<>();
+        private final IndexSorter.ComparableProvider[] comparables;
+        // the values of the current document in the index sort, compared across segments
+        private final long[] sortValues;
+
+        private int docID = -1;
+        private long timestamp;
+
+        private SortedLeafIterator(LeafReaderContext context, IndexSorter.ComparableProvider[][] comparables) throws IOException {
+            this.leafOrd = context.ord;
+            this.maxDoc = context.reader().maxDoc();
+            this.liveDocs = context.reader().getLiveDocs();
+            this.timestamps = DocValues.getSortedNumeric(context.reader(), timestampField.name());
+            for (FieldValueFetcher fetcher : groupFieldFetchers) {
+                groupFieldLeaves.add(fetcher.getLeaf(context));
+            }
+            for (FieldValueFetcher fetcher : metricsFieldFetchers) {
+                metricsFieldLeaves.add(fetcher.getLeaf(context));
+            }
+            this.comparables = new IndexSorter.ComparableProvider[comparables.length];
+            for (int i = 0; i < comparables.length; i++) {
+                this.comparables[i] = comparables[i][leafOrd];
+            }
+            this.sortValues = new long[comparables.length];
+        }
+
+        boolean next() throws IOException {
+            while (++docID < maxDoc) {
+                if ((liveDocs == null || liveDocs.get(docID)) && timestamps.advanceExact(docID)) {
+                    timestamp = timestamps.nextValue();
+                    for (int i = 0; i < comparables.length; i++) {
+                        sortValues[i] = comparables[i].getAsComparableLong(docID);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        BucketKey bucketKey() throws IOException {
+            List<Object> groupFields = new ArrayList<>(groupFieldLeaves.size());
+            for (FormattedDocValues leafField : groupFieldLeaves) {
+                groupFields.add(leafField.advanceExact(docID) ? leafField.nextValue() : null);
+            }
+            return new BucketKey(rounding.round(timestamp), groupFields);
+        }
+
+        void collectMetrics(List<FieldMetricsProducer> fieldsMetrics) throws IOException {
+            for (int i = 0; i < metricsFieldLeaves.size(); i++) {
+                FormattedDocValues leafField = metricsFieldLeaves.get(i);
+                if (leafField.advanceExact(docID)) {
+                    for (int j = 0; j < leafField.docValueCount(); j++) {
+                        Object obj = leafField.nextValue();
+                        if (obj instanceof Number == false) {
+                            throw new IllegalArgumentException("Expected [Number], got [" + obj.getClass() + "]");
+                        }
+                        double value = ((Number) obj).doubleValue();
+                        for (FieldMetricsProducer.Metric metric : fieldsMetrics.get(i).metrics) {
+                            metric.collect(value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     private class NextRoundingVisitor implements PointValues.IntersectVisitor {
         final Rounding.Prepared rounding;
         final long lastRounding;
@@ -239,6 +239,44 @@ public class RollupActionSingleNodeTests extends ESSingleNodeTestCase {
         assertRollupIndex(config, index, rollupIndex);
     }
 
+    public void testTermsGroupingInIndexOrder() throws IOException {
+        String sortedIndex = randomAlphaOfLength(7).toLowerCase(Locale.ROOT);
+        client().admin()
+            .indices()
+            .prepareCreate(sortedIndex)
+            .setSettings(
+                Settings.builder()
+                    .put("index.number_of_shards", 1)
+                    .putList("index.sort.field", "categorical_1", "date_1")
+                    .putList("index.sort.order", "asc", randomFrom("asc", "desc"))
+                    .build()
+            )
+            .setMapping("date_1", "type=date", "numeric_1", "type=double", "categorical_1", "type=keyword")
+            .get();
+        RollupActionDateHistogramGroupConfig dateHistogramGroupConfig = randomRollupActionDateHistogramGroupConfig("date_1");
+        SourceSupplier sourceSupplier = () -> XContentFactory.jsonBuilder()
+            .startObject()
+            .field("date_1", randomDateForInterval(dateHistogramGroupConfig.getInterval()))
+            .field("categorical_1", randomAlphaOfLength(1))
+            .field("numeric_1", randomDouble())
+            .endObject();
+        RollupActionConfig config = new RollupActionConfig(
+            new RollupActionGroupConfig(dateHistogramGroupConfig, null, new TermsGroupConfig("categorical_1")),
+            Collections.singletonList(new MetricConfig("numeric_1", List.of("max", "min", "avg")))
+        );
+        // several segments, merged in the order of the index sort
+        for (int i = 0; i < 3; i++) {
+            BulkRequestBuilder bulkRequestBuilder = client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+            for (int j = 0; j < docCount; j++) {
+                bulkRequestBuilder.add(new IndexRequest(sortedIndex).source(sourceSupplier.get()));
+            }
+            assertFalse(bulkRequestBuilder.get().hasFailures());
+        }
+        assertHitCount(client().prepareSearch(sortedIndex).setSize(0).get(), 3L * docCount);
+        rollup(sortedIndex, rollupIndex, config);
+        assertRollupIndex(config, sortedIndex, rollupIndex);
+    }
+
     public void testHistogramGrouping() throws IOException {
         long interval = randomLongBetween(1, 1000);
         RollupActionDateHistogramGroupConfig dateHistogramGroupConfig = randomRollupActionDateHistogramGroupConfig("date_1");
@@ -0,0 +1,217 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.searchablesnapshots.action.cache;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.xcontent.ConstructingObjectParser;
+import org.elasticsearch.xcontent.ParseField;
+import org.elasticsearch.xcontent.ToXContentObject;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+import static org.elasticsearch.xcontent.ConstructingObjectParser.constructorArg;
+
+/**
+ * The regions of the shared cache that hold data of a shard of a searchable snapshot. The shard is identified by the snapshot and the
+ * index in the snapshot rather than by the mounted index, so that the regions can be replayed regardless of the name the index is mounted
+ * with.
+ */
+public class ShardFrozenCacheRegions implements Writeable, ToXContentObject {
+
+    private static final ParseField SNAPSHOT_UUID_FIELD = new ParseField("snapshot_uuid");
+    private static final ParseField SNAPSHOT_INDEX_FIELD = new ParseField("snapshot_index");
+    private static final ParseField SHARD_FIELD = new ParseField("shard");
+    private static final ParseField REGIONS_FIELD = new ParseField("regions");
+
+    @SuppressWarnings("unchecked")
+    public static final ConstructingObjectParser<ShardFrozenCacheRegions, Void> PARSER = new ConstructingObjectParser<>(
+        "shard_frozen_cache_regions",
+        true,
+        a -> new ShardFrozenCacheRegions((String) a[0], (String) a[1], (int) a[2], (List<Region>) a[3])
+    );
+
+    static {
+        PARSER.declareString(constructorArg(), SNAPSHOT_UUID_FIELD);
+        PARSER.declareString(constructorArg(), SNAPSHOT_INDEX_FIELD);
+        PARSER.declareInt(constructorArg(), SHARD_FIELD);
+        PARSER.declareObjectArray(constructorArg(), Region.PARSER, REGIONS_FIELD);
+    }
+
+    private final String snapshotUUID;
+    private final String snapshotIndexName;
+    private final int shard;
+    private final List<Region> regions;
+
+    public ShardFrozenCacheRegions(String snapshotUUID, String snapshotIndexName, int shard, List<Region> regions) {
+        this.snapshotUUID = Objects.requireNonNull(snapshotUUID);
+        this.snapshotIndexName = Objects.requireNonNull(snapshotIndexName);
+        this.shard = shard;
+        this.regions = List.copyOf(regions);
+    }
+
+    public ShardFrozenCacheRegions(StreamInput in) throws IOException {
+        this.snapshotUUID = in.readString();
+        this.snapshotIndexName = in.readString();
+        this.shard = in.readVInt();
+        this.regions = in.readList(Region::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(snapshotUUID);
+        out.writeString(snapshotIndexName);
+        out.writeVInt(shard);
+        out.writeList(regions);
+    }
+
+    public static ShardFrozenCacheRegions fromXContent(XContentParser parser) throws IOException {
+        return PARSER.parse(parser, null);
+    }
+
+    public String getSnapshotUUID() {
+        return snapshotUUID;
+    }
+
+    public String getSnapshotIndexName() {
+        return snapshotIndexName;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public List<Region> getRegions() {
+        return regions;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        {
+            builder.field(SNAPSHOT_UUID_FIELD.getPreferredName(), snapshotUUID);
+            builder.field(SNAPSHOT_INDEX_FIELD.getPreferredName(), snapshotIndexName);
+            builder.field(SHARD_FIELD.getPreferredName(), shard);
+            builder.startArray(REGIONS_FIELD.getPreferredName());
+            for (Region region : regions) {
+                region.toXContent(builder, params);
+            }
+            builder.endArray();
+        }
+        return builder.endObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ShardFrozenCacheRegions that = (ShardFrozenCacheRegions) o;
+        return shard == that.shard
+            && snapshotUUID.equals(that.snapshotUUID)
+            && snapshotIndexName.equals(that.snapshotIndexName)
+            && regions.equals(that.regions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(snapshotUUID, snapshotIndexName, shard, regions);
+    }
+
+    /**
+     * A region of a file of the shard along with its access frequency in the shared cache.
+     */
+    public static class Region implements Writeable, ToXContentObject {
+
+        private static final ParseField FILE_FIELD = new ParseField("file");
+        private static final ParseField REGION_FIELD = new ParseField("region");
+        private static final ParseField FREQUENCY_FIELD = new ParseField("frequency");
+
+        static final ConstructingObjectParser<Region, Void> PARSER = new ConstructingObjectParser<>(
+            "frozen_cache_region",
+            true,
+            a -> new Region((String) a[0], (int) a[1], (int) a[2])
+        );
+
+        static {
+            PARSER.declareString(constructorArg(), FILE_FIELD);
+            PARSER.declareInt(constructorArg(), REGION_FIELD);
+            PARSER.declareInt(constructorArg(), FREQUENCY_FIELD);
+        }
+
+        private final String file;
+        private final int region;
+        private final int frequency;
+
+        public Region(String file, int region, int frequency) {
+            this.file = Objects.requireNonNull(file);
+            this.region = region;
+            this.frequency = frequency;
+        }
+
+        public Region(StreamInput in) throws IOException {
+            this.file = in.readString();
+            this.region = in.readVInt();
+            this.frequency = in.readVInt();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(file);
+            out.writeVInt(region);
+            out.writeVInt(frequency);
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public int getRegion() {
+            return region;
+        }
+
+        public int getFrequency() {
+            return frequency;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            {
+                builder.field(FILE_FIELD.getPreferredName(), file);
+                builder.field(REGION_FIELD.getPreferredName(), region);
+                builder.field(FREQUENCY_FIELD.getPreferredName(), frequency);
+            }
+            return builder.endObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Region that = (Region) o;
+            return region == that.region && frequency == that.frequency && file.equals(that.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, region, frequency);
+        }
+    }
+}
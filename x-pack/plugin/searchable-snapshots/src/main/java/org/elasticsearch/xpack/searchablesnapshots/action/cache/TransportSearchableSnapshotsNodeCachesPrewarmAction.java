@@ -0,0 +1,314 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.searchablesnapshots.action.cache;
+
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.license.XPackLicenseState;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.xcontent.ConstructingObjectParser;
+import org.elasticsearch.xcontent.ParseField;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.ToXContentObject;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xpack.searchablesnapshots.SearchableSnapshots;
+import org.elasticsearch.xpack.searchablesnapshots.cache.shared.FrozenCachePrewarmer;
+import org.elasticsearch.xpack.searchablesnapshots.store.SearchableSnapshotDirectory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.elasticsearch.snapshots.SearchableSnapshotsSettings.isPartialSearchableSnapshotIndex;
+import static org.elasticsearch.xcontent.ConstructingObjectParser.constructorArg;
+
+/**
+ * Replays regions of the shared cache that were captured with {@link TransportSearchableSnapshotsNodeCachesRegionsAction}. Each node
+ * schedules the regions of the shards it holds to be fetched by its {@link FrozenCachePrewarmer} and responds without waiting for them to
+ * be fetched.
+ */
+public class TransportSearchableSnapshotsNodeCachesPrewarmAction extends TransportNodesAction<
+    TransportSearchableSnapshotsNodeCachesPrewarmAction.NodesRequest,
+    TransportSearchableSnapshotsNodeCachesPrewarmAction.NodesCachesPrewarmResponse,
+    TransportSearchableSnapshotsNodeCachesPrewarmAction.NodeRequest,
+    TransportSearchableSnapshotsNodeCachesPrewarmAction.NodeCachesPrewarmResponse> {
+
+    public static final String ACTION_NAME = "cluster:admin/xpack/searchable_snapshots/cache/prewarm";
+
+    public static final ActionType<NodesCachesPrewarmResponse> TYPE = new ActionType<>(ACTION_NAME, NodesCachesPrewarmResponse::new);
+
+    private final IndicesService indicesService;
+    private final FrozenCachePrewarmer prewarmer;
+    private final XPackLicenseState licenseState;
+
+    @Inject
+    public TransportSearchableSnapshotsNodeCachesPrewarmAction(
+        ThreadPool threadPool,
+        ClusterService clusterService,
+        TransportService transportService,
+        ActionFilters actionFilters,
+        IndicesService indicesService,
+        FrozenCachePrewarmer prewarmer,
+        XPackLicenseState licenseState
+    ) {
+        super(
+            ACTION_NAME,
+            threadPool,
+            clusterService,
+            transportService,
+            actionFilters,
+            NodesRequest::new,
+            NodeRequest::new,
+            ThreadPool.Names.MANAGEMENT,
+            ThreadPool.Names.SAME,
+            NodeCachesPrewarmResponse.class
+        );
+        this.indicesService = indicesService;
+        this.prewarmer = prewarmer;
+        this.licenseState = licenseState;
+    }
+
+    @Override
+    protected NodesCachesPrewarmResponse newResponse(
+        NodesRequest request,
+        List<NodeCachesPrewarmResponse> responses,
+        List<FailedNodeException> failures
+    ) {
+        return new NodesCachesPrewarmResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(NodesRequest request) {
+        return new NodeRequest(request.shards);
+    }
+
+    @Override
+    protected NodeCachesPrewarmResponse newNodeResponse(StreamInput in, DiscoveryNode node) throws IOException {
+        return new NodeCachesPrewarmResponse(in);
+    }
+
+    @Override
+    protected void resolveRequest(NodesRequest request, ClusterState clusterState) {
+        final ImmutableOpenMap<String, DiscoveryNode> dataNodes = clusterState.getNodes().getDataNodes();
+
+        final DiscoveryNode[] resolvedNodes;
+        if (request.nodesIds() == null || request.nodesIds().length == 0) {
+            resolvedNodes = dataNodes.values().toArray(DiscoveryNode[]::new);
+        } else {
+            resolvedNodes = Arrays.stream(request.nodesIds())
+                .filter(dataNodes::containsKey)
+                .map(dataNodes::get)
+                .collect(Collectors.toList())
+                .toArray(DiscoveryNode[]::new);
+        }
+        request.setConcreteNodes(resolvedNodes);
+    }
+
+    @Override
+    protected NodeCachesPrewarmResponse nodeOperation(NodeRequest request, Task task) {
+        SearchableSnapshots.ensureValidLicense(licenseState);
+        int shards = 0;
+        int regions = 0;
+        for (IndexService indexService : indicesService) {
+            if (isPartialSearchableSnapshotIndex(indexService.getIndexSettings().getSettings()) == false) {
+                continue;
+            }
+            for (IndexShard indexShard : indexService) {
+                final SearchableSnapshotDirectory directory = SearchableSnapshotDirectory.unwrapDirectory(indexShard.store().directory());
+                if (directory == null) {
+                    continue;
+                }
+                for (ShardFrozenCacheRegions shard : request.shards) {
+                    if (shard.getShard() == directory.getShardId().id()
+                        && shard.getSnapshotIndexName().equals(directory.getIndexId().getName())
+                        && shard.getSnapshotUUID().equals(directory.getSnapshotId().getUUID())) {
+                        shards += 1;
+                        for (ShardFrozenCacheRegions.Region region : shard.getRegions()) {
+                            prewarmer.schedule(
+                                "region [" + region.getRegion() + "] of file [" + region.getFile() + "] of " + directory.getShardId(),
+                                region.getFrequency(),
+                                () -> directory.prefetchFrozenCacheRegion(region.getFile(), region.getRegion())
+                            );
+                            regions += 1;
+                        }
+                    }
+                }
+            }
+        }
+        return new NodeCachesPrewarmResponse(clusterService.localNode(), shards, regions);
+    }
+
+    public static final class NodeRequest extends TransportRequest {
+
+        private final List<ShardFrozenCacheRegions> shards;
+
+        public NodeRequest(List<ShardFrozenCacheRegions> shards) {
+            this.shards = shards;
+        }
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+            this.shards = in.readList(ShardFrozenCacheRegions::new);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeList(shards);
+        }
+    }
+
+    public static final class NodesRequest extends BaseNodesRequest<NodesRequest> {
+
+        private static final ParseField SHARDS_FIELD = new ParseField("shards");
+
+        @SuppressWarnings("unchecked")
+        private static final ConstructingObjectParser<List<ShardFrozenCacheRegions>, Void> SHARDS_PARSER = new ConstructingObjectParser<>(
+            "searchable_snapshots_cache_prewarm",
+            true,
+            a -> (List<ShardFrozenCacheRegions>) a[0]
+        );
+
+        static {
+            SHARDS_PARSER.declareObjectArray(constructorArg(), ShardFrozenCacheRegions.PARSER, SHARDS_FIELD);
+        }
+
+        private final List<ShardFrozenCacheRegions> shards;
+
+        public NodesRequest(String[] nodes, List<ShardFrozenCacheRegions> shards) {
+            super(nodes);
+            this.shards = List.copyOf(shards);
+        }
+
+        public NodesRequest(StreamInput in) throws IOException {
+            super(in);
+            this.shards = in.readList(ShardFrozenCacheRegions::new);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeList(shards);
+        }
+
+        public List<ShardFrozenCacheRegions> getShards() {
+            return shards;
+        }
+
+        /**
+         * Parses the shards to prewarm from a request body of the form {@code {"shards": [...]}}, as found in the response of
+         * {@link TransportSearchableSnapshotsNodeCachesRegionsAction} for each node.
+         */
+        public static List<ShardFrozenCacheRegions> parseShards(XContentParser parser) {
+            return SHARDS_PARSER.apply(parser, null);
+        }
+    }
+
+    public static class NodeCachesPrewarmResponse extends BaseNodeResponse implements ToXContentFragment {
+
+        private final int shards;
+        private final int regions;
+
+        public NodeCachesPrewarmResponse(DiscoveryNode node, int shards, int regions) {
+            super(node);
+            this.shards = shards;
+            this.regions = regions;
+        }
+
+        public NodeCachesPrewarmResponse(StreamInput in) throws IOException {
+            super(in);
+            this.shards = in.readVInt();
+            this.regions = in.readVInt();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeVInt(shards);
+            out.writeVInt(regions);
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public int getRegions() {
+            return regions;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject(getNode().getId());
+            {
+                builder.field("shards", shards);
+                builder.field("regions", regions);
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    public static class NodesCachesPrewarmResponse extends BaseNodesResponse<NodeCachesPrewarmResponse> implements ToXContentObject {
+
+        public NodesCachesPrewarmResponse(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        public NodesCachesPrewarmResponse(
+            ClusterName clusterName,
+            List<NodeCachesPrewarmResponse> nodes,
+            List<FailedNodeException> failures
+        ) {
+            super(clusterName, nodes, failures);
+        }
+
+        @Override
+        protected List<NodeCachesPrewarmResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(NodeCachesPrewarmResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeCachesPrewarmResponse> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            {
+                builder.startObject("nodes");
+                for (NodeCachesPrewarmResponse node : getNodes()) {
+                    node.toXContent(builder, params);
+                }
+                builder.endObject();
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.searchablesnapshots.action.cache;
+
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.core.Tuple;
+import org.elasticsearch.license.XPackLicenseState;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.ToXContentObject;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xpack.searchablesnapshots.SearchableSnapshots;
+import org.elasticsearch.xpack.searchablesnapshots.cache.common.CacheKey;
+import org.elasticsearch.xpack.searchablesnapshots.cache.shared.FrozenCacheService;
+import org.elasticsearch.xpack.searchablesnapshots.cache.shared.FrozenCacheService.CachedRegion;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Captures the regions of the shared cache that hold data on each node, per shard, so that they can be replayed with
+ * {@link TransportSearchableSnapshotsNodeCachesPrewarmAction} after the shards were relocated or the nodes restarted.
+ */
+public class TransportSearchableSnapshotsNodeCachesRegionsAction extends TransportNodesAction<
+    TransportSearchableSnapshotsNodeCachesRegionsAction.NodesRequest,
+    TransportSearchableSnapshotsNodeCachesRegionsAction.NodesCachesRegionsResponse,
+    TransportSearchableSnapshotsNodeCachesRegionsAction.NodeRequest,
+    TransportSearchableSnapshotsNodeCachesRegionsAction.NodeCachesRegionsResponse> {
+
+    public static final String ACTION_NAME = "cluster:admin/xpack/searchable_snapshots/cache/regions";
+
+    public static final ActionType<NodesCachesRegionsResponse> TYPE = new ActionType<>(ACTION_NAME, NodesCachesRegionsResponse::new);
+
+    private final Supplier<FrozenCacheService> frozenCacheService;
+    private final XPackLicenseState licenseState;
+
+    @Inject
+    public TransportSearchableSnapshotsNodeCachesRegionsAction(
+        ThreadPool threadPool,
+        ClusterService clusterService,
+        TransportService transportService,
+        ActionFilters actionFilters,
+        SearchableSnapshots.FrozenCacheServiceSupplier frozenCacheService,
+        XPackLicenseState licenseState
+    ) {
+        super(
+            ACTION_NAME,
+            threadPool,
+            clusterService,
+            transportService,
+            actionFilters,
+            NodesRequest::new,
+            NodeRequest::new,
+            ThreadPool.Names.MANAGEMENT,
+            ThreadPool.Names.SAME,
+            NodeCachesRegionsResponse.class
+        );
+        this.frozenCacheService = frozenCacheService;
+        this.licenseState = licenseState;
+    }
+
+    @Override
+    protected NodesCachesRegionsResponse newResponse(
+        NodesRequest request,
+        List<NodeCachesRegionsResponse> responses,
+        List<FailedNodeException> failures
+    ) {
+        return new NodesCachesRegionsResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(NodesRequest request) {
+        return new NodeRequest();
+    }
+
+    @Override
+    protected NodeCachesRegionsResponse newNodeResponse(StreamInput in, DiscoveryNode node) throws IOException {
+        return new NodeCachesRegionsResponse(in);
+    }
+
+    @Override
+    protected void resolveRequest(NodesRequest request, ClusterState clusterState) {
+        final ImmutableOpenMap<String, DiscoveryNode> dataNodes = clusterState.getNodes().getDataNodes();
+
+        final DiscoveryNode[] resolvedNodes;
+        if (request.nodesIds() == null || request.nodesIds().length == 0) {
+            resolvedNodes = dataNodes.values().toArray(DiscoveryNode[]::new);
+        } else {
+            resolvedNodes = Arrays.stream(request.nodesIds())
+                .filter(dataNodes::containsKey)
+                .map(dataNodes::get)
+                .collect(Collectors.toList())
+                .toArray(DiscoveryNode[]::new);
+        }
+        request.setConcreteNodes(resolvedNodes);
+    }
+
+    @Override
+    protected NodeCachesRegionsResponse nodeOperation(NodeRequest request, Task task) {
+        SearchableSnapshots.ensureValidLicense(licenseState);
+        final FrozenCacheService frozenCacheService = this.frozenCacheService.get();
+        if (frozenCacheService == null) {
+            return new NodeCachesRegionsResponse(clusterService.localNode(), List.of());
+        }
+        return new NodeCachesRegionsResponse(clusterService.localNode(), groupByShard(frozenCacheService.getCachedRegions(key -> true)));
+    }
+
+    /**
+     * Groups the given regions by shard, most frequently accessed regions first.
+     */
+    static List<ShardFrozenCacheRegions> groupByShard(List<CachedRegion> cachedRegions) {
+        final Map<Tuple<String, String>, Map<Integer, List<ShardFrozenCacheRegions.Region>>> regionsByShard = new HashMap<>();
+        for (CachedRegion cachedRegion : cachedRegions) {
+            final CacheKey cacheKey = cachedRegion.getCacheKey();
+            regionsByShard.computeIfAbsent(Tuple.tuple(cacheKey.getSnapshotUUID(), cacheKey.getSnapshotIndexName()), k -> new HashMap<>())
+                .computeIfAbsent(cacheKey.getShardId().id(), k -> new ArrayList<>())
+                .add(new ShardFrozenCacheRegions.Region(cacheKey.getFileName(), cachedRegion.getRegion(), cachedRegion.getFrequency()));
+        }
+        final Comparator<ShardFrozenCacheRegions.Region> mostFrequentFirst = Comparator.comparingInt(
+            ShardFrozenCacheRegions.Region::getFrequency
+        )
+            .reversed()
+            .thenComparing(ShardFrozenCacheRegions.Region::getFile)
+            .thenComparingInt(ShardFrozenCacheRegions.Region::getRegion);
+        final List<ShardFrozenCacheRegions> shards = new ArrayList<>();
+        regionsByShard.forEach((snapshotIndex, regionsByShardId) -> regionsByShardId.forEach((shardId, regions) -> {
+            regions.sort(mostFrequentFirst);
+            shards.add(new ShardFrozenCacheRegions(snapshotIndex.v1(), snapshotIndex.v2(), shardId, regions));
+        }));
+        shards.sort(
+            Comparator.comparing(ShardFrozenCacheRegions::getSnapshotUUID)
+                .thenComparing(ShardFrozenCacheRegions::getSnapshotIndexName)
+                .thenComparingInt(ShardFrozenCacheRegions::getShard)
+        );
+        return shards;
+    }
+
+    public static final class NodeRequest extends TransportRequest {
+
+        public NodeRequest() {}
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+        }
+    }
+
+    public static final class NodesRequest extends BaseNodesRequest<NodesRequest> {
+
+        public NodesRequest(String[] nodes) {
+            super(nodes);
+        }
+
+        public NodesRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+        }
+    }
+
+    public static class NodeCachesRegionsResponse extends BaseNodeResponse implements ToXContentFragment {
+
+        private final List<ShardFrozenCacheRegions> shards;
+
+        public NodeCachesRegionsResponse(DiscoveryNode node, List<ShardFrozenCacheRegions> shards) {
+            super(node);
+            this.shards = List.copyOf(shards);
+        }
+
+        public NodeCachesRegionsResponse(StreamInput in) throws IOException {
+            super(in);
+            this.shards = in.readList(ShardFrozenCacheRegions::new);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeList(shards);
+        }
+
+        public List<ShardFrozenCacheRegions> getShards() {
+            return shards;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject(getNode().getId());
+            {
+                builder.startArray("shards");
+                for (ShardFrozenCacheRegions shard : shards) {
+                    shard.toXContent(builder, params);
+                }
+                builder.endArray();
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    public static class NodesCachesRegionsResponse extends BaseNodesResponse<NodeCachesRegionsResponse> implements ToXContentObject {
+
+        public NodesCachesRegionsResponse(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        public NodesCachesRegionsResponse(
+            ClusterName clusterName,
+            List<NodeCachesRegionsResponse> nodes,
+            List<FailedNodeException> failures
+        ) {
+            super(clusterName, nodes, failures);
+        }
+
+        @Override
+        protected List<NodeCachesRegionsResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(NodeCachesRegionsResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeCachesRegionsResponse> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            {
+                builder.startObject("nodes");
+                for (NodeCachesRegionsResponse node : getNodes()) {
+                    node.toXContent(builder, params);
+                }
+                builder.endObject();
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.searchablesnapshots.cache.shared;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.lucene.store.RateLimiter.SimpleRateLimiter;
+import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.core.Nullable;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays regions of the shared cache that were captured on another node with {@link FrozenCacheService#getCachedRegions}, for instance
+ * before a shard was relocated or a node was restarted. Regions are fetched in order of decreasing access frequency by a bounded number of
+ * workers, and the rate at which bytes are fetched from the blob store is throttled so that replaying a large capture does not compete too
+ * much with searches.
+ */
+public class FrozenCachePrewarmer {
+
+    private static final Logger logger = LogManager.getLogger(FrozenCachePrewarmer.class);
+
+    private static final String SETTINGS_PREFIX = "xpack.searchable.snapshot.shared_cache.prewarm.";
+
+    public static final Setting<ByteSizeValue> PREWARM_MAX_BYTES_PER_SEC_SETTING = Setting.byteSizeSetting(
+        SETTINGS_PREFIX + "max_bytes_per_sec",
+        ByteSizeValue.ofMb(40L),
+        Setting.Property.NodeScope,
+        Setting.Property.Dynamic
+    );
+
+    public static final Setting<Integer> PREWARM_MAX_CONCURRENT_REGIONS_SETTING = Setting.intSetting(
+        SETTINGS_PREFIX + "max_concurrent_regions",
+        2,
+        1,
+        Setting.Property.NodeScope,
+        Setting.Property.Dynamic
+    );
+
+    private final Executor executor;
+    private final PriorityQueue<PrewarmTask> queue = new PriorityQueue<>();
+    private final LongAdder prewarmedRegions = new LongAdder();
+    private final LongAdder prewarmedBytes = new LongAdder();
+
+    private long nextSequenceNumber; // guarded by this
+    private int activeWorkers; // guarded by this
+
+    private volatile int maxConcurrentRegions;
+    @Nullable // if not throttled
+    private volatile SimpleRateLimiter rateLimiter;
+
+    public FrozenCachePrewarmer(Settings settings, ClusterSettings clusterSettings, Executor executor) {
+        this.executor = executor;
+        this.maxConcurrentRegions = PREWARM_MAX_CONCURRENT_REGIONS_SETTING.get(settings);
+        setMaxBytesPerSec(PREWARM_MAX_BYTES_PER_SEC_SETTING.get(settings));
+        clusterSettings.addSettingsUpdateConsumer(PREWARM_MAX_BYTES_PER_SEC_SETTING, this::setMaxBytesPerSec);
+        clusterSettings.addSettingsUpdateConsumer(PREWARM_MAX_CONCURRENT_REGIONS_SETTING, this::setMaxConcurrentRegions);
+    }
+
+    private void setMaxBytesPerSec(ByteSizeValue maxBytesPerSec) {
+        if (maxBytesPerSec.getBytes() <= 0L) {
+            rateLimiter = null;
+        } else if (rateLimiter != null) {
+            rateLimiter.setMBPerSec(maxBytesPerSec.getMbFrac());
+        } else {
+            rateLimiter = new SimpleRateLimiter(maxBytesPerSec.getMbFrac());
+        }
+    }
+
+    private void setMaxConcurrentRegions(int maxConcurrentRegions) {
+        this.maxConcurrentRegions = maxConcurrentRegions;
+        maybeStartWorkers();
+    }
+
+    /**
+     * Schedules a region to be fetched into the shared cache.
+     *
+     * @param description describes the region for logging purpose
+     * @param frequency   the access frequency of the region when it was captured, regions with higher frequencies are fetched first
+     * @param fetcher     fetches the region and returns the number of bytes that were read from the blob store
+     */
+    public void schedule(String description, int frequency, CheckedSupplier<Long, Exception> fetcher) {
+        synchronized (this) {
+            queue.add(new PrewarmTask(description, frequency, nextSequenceNumber++, fetcher));
+        }
+        maybeStartWorkers();
+    }
+
+    private void maybeStartWorkers() {
+        final int workersToStart;
+        synchronized (this) {
+            // active workers keep polling the queue until it is empty, so only start the ones that are missing
+            workersToStart = Math.min(maxConcurrentRegions, queue.size()) - activeWorkers;
+            if (workersToStart <= 0) {
+                return;
+            }
+            activeWorkers += workersToStart;
+        }
+        for (int i = 0; i < workersToStart; i++) {
+            try {
+                executor.execute(this::runWorker);
+            } catch (Exception e) {
+                logger.debug("failed to start shared cache prewarming worker", e);
+                synchronized (this) {
+                    activeWorkers -= 1;
+                }
+            }
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            final PrewarmTask task;
+            synchronized (this) {
+                task = activeWorkers <= maxConcurrentRegions ? queue.poll() : null;
+                if (task == null) {
+                    activeWorkers -= 1;
+                    return;
+                }
+            }
+            task.run();
+        }
+    }
+
+    /**
+     * @return the number of regions that are waiting to be fetched
+     */
+    public synchronized int getPendingRegions() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of regions that were fetched since the node started
+     */
+    public long getPrewarmedRegions() {
+        return prewarmedRegions.sum();
+    }
+
+    /**
+     * @return the number of bytes that were read from the blob store to fetch regions since the node started
+     */
+    public long getPrewarmedBytes() {
+        return prewarmedBytes.sum();
+    }
+
+    private final class PrewarmTask implements Comparable<PrewarmTask> {
+
+        private final String description;
+        private final int frequency;
+        private final long sequenceNumber;
+        private final CheckedSupplier<Long, Exception> fetcher;
+
+        PrewarmTask(String description, int frequency, long sequenceNumber, CheckedSupplier<Long, Exception> fetcher) {
+            this.description = description;
+            this.frequency = frequency;
+            this.sequenceNumber = sequenceNumber;
+            this.fetcher = fetcher;
+        }
+
+        void run() {
+            try {
+                final long fetchedBytes = fetcher.get();
+                prewarmedRegions.increment();
+                if (fetchedBytes > 0L) {
+                    prewarmedBytes.add(fetchedBytes);
+                    final SimpleRateLimiter rateLimiter = FrozenCachePrewarmer.this.rateLimiter;
+                    if (rateLimiter != null) {
+                        rateLimiter.pause(fetchedBytes);
+                    }
+                }
+                logger.trace("prewarmed {} by fetching [{}] bytes", description, fetchedBytes);
+            } catch (Exception e) {
+                logger.debug(() -> new ParameterizedMessage("failed to prewarm {}", description), e);
+            }
+        }
+
+        @Override
+        public int compareTo(PrewarmTask other) {
+            final int byFrequency = Integer.compare(other.frequency, frequency);
+            return byFrequency != 0 ? byFrequency : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
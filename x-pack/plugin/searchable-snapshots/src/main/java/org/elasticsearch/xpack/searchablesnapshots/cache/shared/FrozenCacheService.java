@@ -9,6 +9,7 @@ package org.elasticsearch.xpack.searchablesnapshots.cache.shared;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.elasticsearch.Assertions;
 import org.elasticsearch.action.ActionListener;
@@ -26,9 +27,11 @@ import org.elasticsearch.common.util.concurrent.AbstractAsyncTask;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.KeyedLock;
 import org.elasticsearch.core.AbstractRefCounted;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.Releasable;
 import org.elasticsearch.core.Releasables;
 import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.shard.ShardId;
@@ -41,13 +44,17 @@ import org.elasticsearch.xpack.searchablesnapshots.cache.common.SparseFileTracke
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
@@ -224,6 +231,20 @@ public class FrozenCacheService implements Releasable {
         Setting.Property.NodeScope
     );
 
+    public static final Setting<Boolean> SNAPSHOT_CACHE_PERSISTENT_ENABLED_SETTING = Setting.boolSetting(
+        SHARED_CACHE_SETTINGS_PREFIX + "persistent.enabled",
+        true,
+        Setting.Property.NodeScope
+    );
+
+    public static final TimeValue MIN_SNAPSHOT_CACHE_PERSISTENT_SYNC_INTERVAL = TimeValue.timeValueSeconds(1L);
+    public static final Setting<TimeValue> SNAPSHOT_CACHE_PERSISTENT_SYNC_INTERVAL_SETTING = Setting.timeSetting(
+        SHARED_CACHE_SETTINGS_PREFIX + "persistent.sync_interval",
+        TimeValue.timeValueMinutes(5L),                         // default
+        MIN_SNAPSHOT_CACHE_PERSISTENT_SYNC_INTERVAL,            // min
+        Setting.Property.NodeScope
+    );
+
     private static final Logger logger = LogManager.getLogger(FrozenCacheService.class);
 
     private final ConcurrentHashMap<RegionKey, Entry<CacheFileRegion>> keyMapping;
@@ -248,6 +269,13 @@ public class FrozenCacheService implements Releasable {
 
     private final CacheDecayTask decayTask;
 
+    @Nullable // if the state of the cache is not persisted
+    private final Path stateDirectory;
+    @Nullable // if the state of the cache is not persisted
+    private final CacheSyncTask syncTask;
+    private final Object persistedStateMutex = new Object();
+    private final BitSet persistedRegions; // regions referenced by the persisted state, guarded by persistedStateMutex
+
     private final LongAdder writeCount = new LongAdder();
     private final LongAdder writeBytes = new LongAdder();
 
@@ -277,21 +305,40 @@ public class FrozenCacheService implements Releasable {
         } else {
             regionOwners = null;
         }
-        for (int i = 0; i < numRegions; i++) {
-            freeRegions.add(i);
-        }
         this.regionSize = regionSize;
         assert regionSize > 0L;
         this.maxFreq = SNAPSHOT_CACHE_MAX_FREQ_SETTING.get(settings);
         this.minTimeDelta = SNAPSHOT_CACHE_MIN_TIME_DELTA_SETTING.get(settings).millis();
         freqs = new Entry[maxFreq];
+        final boolean persistent = SNAPSHOT_CACHE_PERSISTENT_ENABLED_SETTING.get(settings) && numRegions > 0;
         try {
-            sharedBytes = new SharedBytes(numRegions, regionSize, environment, writeBytes::add, readBytes::add);
+            sharedBytes = new SharedBytes(numRegions, regionSize, environment, writeBytes::add, readBytes::add, persistent);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
+        if (persistent) {
+            stateDirectory = environment.nodeDataPaths()[0];
+            persistedRegions = loadPersistedState();
+        } else {
+            stateDirectory = null;
+            persistedRegions = new BitSet();
+            for (Path path : environment.nodeDataPaths()) {
+                IOUtils.deleteFilesIgnoringExceptions(path.resolve(FrozenCacheState.STATE_FILE_NAME));
+            }
+        }
+        for (int i = 0; i < numRegions; i++) {
+            if (persistedRegions.get(i) == false) {
+                freeRegions.add(i);
+            }
+        }
         decayTask = new CacheDecayTask(threadPool, SNAPSHOT_CACHE_DECAY_INTERVAL_SETTING.get(settings));
         decayTask.rescheduleIfNecessary();
+        if (persistent) {
+            syncTask = new CacheSyncTask(threadPool, SNAPSHOT_CACHE_PERSISTENT_SYNC_INTERVAL_SETTING.get(settings));
+            syncTask.rescheduleIfNecessary();
+        } else {
+            syncTask = null;
+        }
         this.rangeSize = SHARED_CACHE_RANGE_SIZE_SETTING.get(settings);
         this.recoveryRangeSize = FROZEN_CACHE_RECOVERY_RANGE_SIZE_SETTING.get(settings);
     }
@@ -302,6 +349,139 @@ public class FrozenCacheService implements Releasable {
             .getBytes();
     }
 
+    /**
+     * Loads the persisted state of the cache, if the shared cache file was reused and the state is consistent with it.
+     *
+     * @return the regions of the shared cache file that were loaded from the persisted state
+     */
+    private BitSet loadPersistedState() {
+        assert stateDirectory != null;
+        final BitSet loadedRegions = new BitSet(numRegions);
+        List<FrozenCacheState.PersistedRegion> regions = null;
+        if (sharedBytes.isReused()) {
+            try {
+                regions = FrozenCacheState.read(stateDirectory, regionSize, numRegions);
+            } catch (IOException e) {
+                logger.warn("failed to load the state of the shared snapshot cache file, starting with an empty cache", e);
+            }
+        }
+        if (regions == null) {
+            try {
+                FrozenCacheState.delete(stateDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return loadedRegions;
+        }
+        final long now = currentTimeSupplier.getAsLong();
+        synchronized (this) {
+            for (FrozenCacheState.PersistedRegion region : regions) {
+                final RegionKey regionKey = new RegionKey(region.cacheKey, region.region);
+                final Entry<CacheFileRegion> entry = new Entry<>(new CacheFileRegion(regionKey, region.length, region.ranges), now);
+                entry.freq = Math.min(region.frequency, maxFreq - 1);
+                entry.chunk.sharedBytesPos = region.sharedBytesPos;
+                assert regionOwners[region.sharedBytesPos].compareAndSet(null, entry.chunk);
+                keyMapping.put(regionKey, entry);
+                pushEntryToBack(entry);
+                loadedRegions.set(region.sharedBytesPos);
+            }
+        }
+        // the state file is kept as long as none of the loaded regions is reused, see #invalidatePersistedState
+        logger.info("loaded [{}] regions from the state of the shared snapshot cache file", regions.size());
+        return loadedRegions;
+    }
+
+    /**
+     * Persists the state of the cache, i.e. the file region held by each region of the shared cache file along with its completed ranges,
+     * so that the content of the shared cache file can be reused after a restart.
+     * <p>
+     * The shared cache file is flushed to disk before the state is written, so the completed ranges of the persisted state are durable.
+     * Regions that are evicted afterwards invalidate the persisted state before being reused, so the persisted state never references a
+     * region of the shared cache file that holds data of another file.
+     */
+    void persistState() throws IOException {
+        assert stateDirectory != null;
+        final List<Entry<CacheFileRegion>> entries = new ArrayList<>();
+        final List<Integer> frequencies = new ArrayList<>();
+        synchronized (this) {
+            keyMapping.forEach((key, entry) -> {
+                entries.add(entry);
+                frequencies.add(entry.freq);
+            });
+        }
+        final List<CacheFileRegion> chunks = new ArrayList<>(entries.size());
+        final List<FrozenCacheState.PersistedRegion> regions = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final CacheFileRegion chunk = entries.get(i).chunk;
+            final int sharedBytesPos = chunk.sharedBytesPos;
+            if (sharedBytesPos == -1 || chunk.isEvicted()) {
+                continue;
+            }
+            final SortedSet<ByteRange> ranges = chunk.tracker.getCompletedRanges();
+            if (ranges.isEmpty() == false) {
+                chunks.add(chunk);
+                regions.add(
+                    new FrozenCacheState.PersistedRegion(
+                        sharedBytesPos,
+                        chunk.regionKey.file,
+                        chunk.regionKey.region,
+                        chunk.tracker.getLength(),
+                        frequencies.get(i),
+                        FrozenCacheState.mergeAdjacentRanges(ranges)
+                    )
+                );
+            }
+        }
+        sharedBytes.fsync();
+        synchronized (persistedStateMutex) {
+            // regions evicted since their ranges were collected may already be reused, so they must not be persisted
+            final List<FrozenCacheState.PersistedRegion> regionsToPersist = new ArrayList<>(regions.size());
+            final BitSet regionsToPersistBits = new BitSet(numRegions);
+            for (int i = 0; i < regions.size(); i++) {
+                if (chunks.get(i).isEvicted() == false) {
+                    regionsToPersist.add(regions.get(i));
+                    regionsToPersistBits.set(regions.get(i).sharedBytesPos);
+                }
+            }
+            // while the state is written, regions of both the previous and the new state may be referenced on disk
+            persistedRegions.or(regionsToPersistBits);
+            FrozenCacheState.write(stateDirectory, regionSize, numRegions, regionsToPersist);
+            persistedRegions.clear();
+            persistedRegions.or(regionsToPersistBits);
+            logger.debug("persisted [{}] regions of the shared snapshot cache file", regionsToPersist.size());
+        }
+    }
+
+    /**
+     * Ensures that the persisted state of the cache does not reference the given region of the shared cache file before it is reused.
+     *
+     * @return whether the region can be reused
+     */
+    private boolean invalidatePersistedState(int sharedBytesPos) {
+        if (stateDirectory == null) {
+            return true;
+        }
+        synchronized (persistedStateMutex) {
+            if (persistedRegions.get(sharedBytesPos) == false) {
+                return true;
+            }
+            try {
+                FrozenCacheState.delete(stateDirectory);
+                persistedRegions.clear();
+                return true;
+            } catch (IOException e) {
+                logger.warn(
+                    () -> new ParameterizedMessage(
+                        "failed to delete the state of the shared snapshot cache file, region [{}] will not be reused",
+                        sharedBytesPos
+                    ),
+                    e
+                );
+                return false;
+            }
+        }
+    }
+
     public int getRangeSize() {
         return toIntBytes(rangeSize.getBytes());
     }
@@ -371,10 +551,26 @@ public class FrozenCacheService implements Releasable {
         try (Releasable ignore = keyedLock.acquire(cacheKey)) {
             final RegionKey regionKey = new RegionKey(cacheKey, region);
             final long now = currentTimeSupplier.getAsLong();
-            final Entry<CacheFileRegion> entry = keyMapping.computeIfAbsent(
+            Entry<CacheFileRegion> entry = keyMapping.computeIfAbsent(
                 regionKey,
                 key -> new Entry<>(new CacheFileRegion(regionKey, regionSize), now)
             );
+            if (entry.chunk.tracker.getLength() != regionSize) {
+                // only a region loaded from a persisted state that does not match the file can have another length, it is fetched again
+                logger.debug(
+                    "dropping persisted region {} of [{}] bytes, expected [{}] bytes",
+                    regionKey,
+                    entry.chunk.tracker.getLength(),
+                    regionSize
+                );
+                synchronized (this) {
+                    if (entry.chunk.forceEvict()) {
+                        unlink(entry);
+                        keyMapping.remove(regionKey, entry);
+                    }
+                }
+                entry = keyMapping.computeIfAbsent(regionKey, key -> new Entry<>(new CacheFileRegion(regionKey, regionSize), now));
+            }
             if (entry.chunk.sharedBytesPos == -1) {
                 // new item
                 assert entry.freq == 0;
@@ -407,6 +603,7 @@ public class FrozenCacheService implements Releasable {
                     }
                 }
             } else {
+                assert entry.chunk.tracker.getLength() == regionSize : entry.chunk.tracker.getLength() + " vs " + regionSize;
                 // check if we need to promote item
                 synchronized (this) {
                     if (now - entry.lastAccessed >= minTimeDelta && entry.freq + 1 < maxFreq) {
@@ -421,9 +618,47 @@ public class FrozenCacheService implements Releasable {
         }
     }
 
+    /**
+     * Returns the range of a file of the given length that is held by the given region of the cache.
+     */
+    public ByteRange getRegionRange(long fileLength, int region) {
+        if (fileLength <= 0L || region < 0 || region > getEndingRegion(fileLength)) {
+            throw new IllegalArgumentException("region [" + region + "] is out of bounds for a file of length [" + fileLength + "]");
+        }
+        final long regionStart = getRegionStart(region);
+        return ByteRange.of(regionStart, regionStart + getRegionSize(fileLength, region));
+    }
+
+    /**
+     * Returns a point-in-time view of the regions of the files matching the given predicate that hold cached data, along with their
+     * current access frequency. Used to capture the contents of the cache so that they can be replayed on another node.
+     */
+    public List<CachedRegion> getCachedRegions(Predicate<CacheKey> cacheKeyPredicate) {
+        final List<Entry<CacheFileRegion>> matchingEntries = new ArrayList<>();
+        final List<Integer> frequencies = new ArrayList<>();
+        synchronized (this) {
+            keyMapping.forEach((key, entry) -> {
+                if (cacheKeyPredicate.test(key.file)) {
+                    matchingEntries.add(entry);
+                    frequencies.add(entry.freq);
+                }
+            });
+        }
+        final List<CachedRegion> cachedRegions = new ArrayList<>(matchingEntries.size());
+        for (int i = 0; i < matchingEntries.size(); i++) {
+            final CacheFileRegion chunk = matchingEntries.get(i).chunk;
+            if (chunk.isEvicted() == false && chunk.tracker.getCompletedRanges().isEmpty() == false) {
+                cachedRegions.add(new CachedRegion(chunk.regionKey.file, chunk.regionKey.region, frequencies.get(i)));
+            }
+        }
+        return cachedRegions;
+    }
+
     public void onClose(CacheFileRegion chunk) {
         assert regionOwners[chunk.sharedBytesPos].compareAndSet(chunk, null);
-        freeRegions.add(chunk.sharedBytesPos);
+        if (invalidatePersistedState(chunk.sharedBytesPos)) {
+            freeRegions.add(chunk.sharedBytesPos);
+        }
     }
 
     // used by tests
@@ -595,6 +830,14 @@ public class FrozenCacheService implements Releasable {
 
     @Override
     public void close() {
+        if (syncTask != null) {
+            syncTask.close();
+            try {
+                persistState();
+            } catch (Exception e) {
+                logger.warn("failed to persist the state of the shared snapshot cache file", e);
+            }
+        }
         sharedBytes.decRef();
         decayTask.close();
     }
@@ -626,6 +869,37 @@ public class FrozenCacheService implements Releasable {
         }
     }
 
+    class CacheSyncTask extends AbstractAsyncTask {
+
+        CacheSyncTask(ThreadPool threadPool, TimeValue interval) {
+            super(logger, Objects.requireNonNull(threadPool), Objects.requireNonNull(interval), true);
+        }
+
+        @Override
+        protected boolean mustReschedule() {
+            return true;
+        }
+
+        @Override
+        public void runInternal() {
+            try {
+                persistState();
+            } catch (Exception e) {
+                logger.warn("failed to persist the state of the shared snapshot cache file", e);
+            }
+        }
+
+        @Override
+        protected String getThreadPool() {
+            return ThreadPool.Names.GENERIC;
+        }
+
+        @Override
+        public String toString() {
+            return "frozen_cache_sync_task";
+        }
+    }
+
     private static class RegionKey {
         RegionKey(CacheKey file, int region) {
             this.file = file;
@@ -654,6 +928,39 @@ public class FrozenCacheService implements Releasable {
         }
     }
 
+    /**
+     * A region of a file that holds cached data.
+     */
+    public static final class CachedRegion {
+
+        private final CacheKey cacheKey;
+        private final int region;
+        private final int frequency;
+
+        public CachedRegion(CacheKey cacheKey, int region, int frequency) {
+            this.cacheKey = cacheKey;
+            this.region = region;
+            this.frequency = frequency;
+        }
+
+        public CacheKey getCacheKey() {
+            return cacheKey;
+        }
+
+        public int getRegion() {
+            return region;
+        }
+
+        public int getFrequency() {
+            return frequency;
+        }
+
+        @Override
+        public String toString() {
+            return "CachedRegion{cacheKey=" + cacheKey + ", region=" + region + ", frequency=" + frequency + '}';
+        }
+    }
+
     static class Entry<T> {
         final T chunk;
         Entry<T> prev;
@@ -673,9 +980,13 @@ public class FrozenCacheService implements Releasable {
         volatile int sharedBytesPos = -1;
 
         CacheFileRegion(RegionKey regionKey, long regionSize) {
+            this(regionKey, regionSize, Collections.emptySortedSet());
+        }
+
+        CacheFileRegion(RegionKey regionKey, long regionSize, SortedSet<ByteRange> ranges) {
             this.regionKey = regionKey;
             assert regionSize > 0L;
-            tracker = new SparseFileTracker("file", regionSize);
+            tracker = new SparseFileTracker("file", regionSize, ranges);
         }
 
         public long physicalStartOffset() {
@@ -0,0 +1,278 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.searchablesnapshots.cache.shared;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.xpack.searchablesnapshots.cache.common.ByteRange;
+import org.elasticsearch.xpack.searchablesnapshots.cache.common.CacheKey;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Reads and writes the state of the shared cache file, i.e. which file region each region of the shared cache file holds and which ranges
+ * of it are available, so that the content of the shared cache file can be reused after a node restart.
+ * <p>
+ * The state file is only meaningful for the shared cache file it was written for: it is checksummed, records the geometry of the shared
+ * cache file and is validated entry by entry when read, and any inconsistency causes the whole state to be discarded.
+ */
+final class FrozenCacheState {
+
+    static final String STATE_FILE_NAME = "shared_snapshot_cache.state";
+    private static final String TEMP_STATE_FILE_NAME = STATE_FILE_NAME + ".tmp";
+
+    private static final String CODEC = "shared_snapshot_cache_state";
+    private static final int VERSION_START = 0;
+    private static final int CURRENT_VERSION = VERSION_START;
+
+    private FrozenCacheState() {}
+
+    /**
+     * Writes the given regions to the state file in the given directory, atomically replacing any existing state file.
+     */
+    static void write(Path directory, long regionSize, int numRegions, List<PersistedRegion> regions) throws IOException {
+        try (Directory dir = new NIOFSDirectory(directory)) {
+            IOUtils.deleteFilesIgnoringExceptions(directory.resolve(TEMP_STATE_FILE_NAME));
+            try (IndexOutput output = dir.createOutput(TEMP_STATE_FILE_NAME, IOContext.DEFAULT)) {
+                CodecUtil.writeHeader(output, CODEC, CURRENT_VERSION);
+                output.writeVLong(regionSize);
+                output.writeVInt(numRegions);
+                output.writeVInt(regions.size());
+                for (PersistedRegion region : regions) {
+                    output.writeVInt(region.sharedBytesPos);
+                    output.writeString(region.cacheKey.getSnapshotUUID());
+                    output.writeString(region.cacheKey.getSnapshotIndexName());
+                    output.writeString(region.cacheKey.getShardId().getIndexName());
+                    output.writeString(region.cacheKey.getShardId().getIndex().getUUID());
+                    output.writeVInt(region.cacheKey.getShardId().id());
+                    output.writeString(region.cacheKey.getFileName());
+                    output.writeVInt(region.region);
+                    output.writeVLong(region.length);
+                    output.writeVInt(region.frequency);
+                    output.writeVInt(region.ranges.size());
+                    for (ByteRange range : region.ranges) {
+                        output.writeVLong(range.start());
+                        output.writeVLong(range.end());
+                    }
+                }
+                CodecUtil.writeFooter(output);
+            }
+            dir.sync(Collections.singleton(TEMP_STATE_FILE_NAME));
+            dir.rename(TEMP_STATE_FILE_NAME, STATE_FILE_NAME);
+            dir.syncMetaData();
+        }
+    }
+
+    /**
+     * Reads the regions from the state file in the given directory.
+     *
+     * @return the persisted regions, or {@code null} if there is no state file
+     * @throws CorruptIndexException if the state file is corrupted or does not match the geometry of the shared cache file
+     */
+    static List<PersistedRegion> read(Path directory, long regionSize, int numRegions) throws IOException {
+        if (Files.exists(directory.resolve(STATE_FILE_NAME)) == false) {
+            return null;
+        }
+        try (Directory dir = new NIOFSDirectory(directory)) {
+            // verify the checksum before parsing anything so that corrupted lengths cannot cause large allocations
+            try (IndexInput input = dir.openInput(STATE_FILE_NAME, IOContext.READONCE)) {
+                CodecUtil.checksumEntireFile(input);
+            }
+            return read(dir, regionSize, numRegions);
+        }
+    }
+
+    private static List<PersistedRegion> read(Directory dir, long regionSize, int numRegions) throws IOException {
+        try (ChecksumIndexInput input = dir.openChecksumInput(STATE_FILE_NAME, IOContext.READONCE)) {
+            CodecUtil.checkHeader(input, CODEC, VERSION_START, CURRENT_VERSION);
+            final long persistedRegionSize = input.readVLong();
+            final int persistedNumRegions = input.readVInt();
+            if (persistedRegionSize != regionSize || persistedNumRegions != numRegions) {
+                throw new CorruptIndexException(
+                    "state was written for ["
+                        + persistedNumRegions
+                        + "] regions of ["
+                        + persistedRegionSize
+                        + "] bytes but the shared cache file has ["
+                        + numRegions
+                        + "] regions of ["
+                        + regionSize
+                        + "] bytes",
+                    input
+                );
+            }
+            final int count = input.readVInt();
+            final List<PersistedRegion> regions = new ArrayList<>(count);
+            final BitSet sharedBytesPositions = new BitSet(numRegions);
+            final Set<FileRegion> fileRegions = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                final int sharedBytesPos = input.readVInt();
+                final CacheKey cacheKey = new CacheKey(
+                    input.readString(),
+                    input.readString(),
+                    new ShardId(input.readString(), input.readString(), input.readVInt()),
+                    input.readString()
+                );
+                final int region = input.readVInt();
+                final long length = input.readVLong();
+                final int frequency = input.readVInt();
+                final int numRanges = input.readVInt();
+                final SortedSet<ByteRange> ranges = new TreeSet<>();
+                long previousEnd = -1L;
+                for (int j = 0; j < numRanges; j++) {
+                    final long start = input.readVLong();
+                    final long end = input.readVLong();
+                    // ranges are sorted, non-empty and neither overlapping nor adjacent, as expected by SparseFileTracker
+                    if (start <= previousEnd || end <= start || end > length) {
+                        throw new CorruptIndexException("invalid range [" + start + "-" + end + "] for " + cacheKey, input);
+                    }
+                    ranges.add(ByteRange.of(start, end));
+                    previousEnd = end;
+                }
+                if (sharedBytesPos < 0 || sharedBytesPos >= numRegions || sharedBytesPositions.get(sharedBytesPos)) {
+                    throw new CorruptIndexException("invalid or duplicate shared cache region [" + sharedBytesPos + "]", input);
+                }
+                if (region < 0 || length <= 0L || length > regionSize || fileRegions.add(new FileRegion(cacheKey, region)) == false) {
+                    throw new CorruptIndexException("invalid or duplicate region [" + region + "] of " + cacheKey, input);
+                }
+                sharedBytesPositions.set(sharedBytesPos);
+                regions.add(new PersistedRegion(sharedBytesPos, cacheKey, region, length, frequency, ranges));
+            }
+            CodecUtil.checkFooter(input);
+            // regions hold regionSize bytes of their file, only the last region of a file may be shorter
+            final Map<CacheKey, Integer> lastRegions = new HashMap<>();
+            for (PersistedRegion region : regions) {
+                lastRegions.merge(region.cacheKey, region.region, Math::max);
+            }
+            for (PersistedRegion region : regions) {
+                if (region.length != regionSize && region.region != lastRegions.get(region.cacheKey)) {
+                    throw new CorruptIndexException(
+                        "region [" + region.region + "] of " + region.cacheKey + " is not the last but has [" + region.length + "] bytes",
+                        input
+                    );
+                }
+            }
+            return regions;
+        }
+    }
+
+    /**
+     * Merges the adjacent ranges of the given sorted set of non-overlapping ranges.
+     */
+    static SortedSet<ByteRange> mergeAdjacentRanges(SortedSet<ByteRange> ranges) {
+        final SortedSet<ByteRange> merged = new TreeSet<>();
+        ByteRange previous = null;
+        for (ByteRange range : ranges) {
+            if (previous != null && previous.end() == range.start()) {
+                previous = ByteRange.of(previous.start(), range.end());
+            } else {
+                if (previous != null) {
+                    merged.add(previous);
+                }
+                previous = range;
+            }
+        }
+        if (previous != null) {
+            merged.add(previous);
+        }
+        return merged;
+    }
+
+    /**
+     * Deletes the state file in the given directory, if any, and makes the deletion durable.
+     */
+    static void delete(Path directory) throws IOException {
+        if (Files.deleteIfExists(directory.resolve(STATE_FILE_NAME))) {
+            IOUtils.fsync(directory, true);
+        }
+    }
+
+    private static final class FileRegion {
+        private final CacheKey cacheKey;
+        private final int region;
+
+        FileRegion(CacheKey cacheKey, int region) {
+            this.cacheKey = cacheKey;
+            this.region = region;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final FileRegion that = (FileRegion) o;
+            return region == that.region && cacheKey.equals(that.cacheKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cacheKey, region);
+        }
+    }
+
+    /**
+     * A region of the shared cache file along with the file region it holds.
+     */
+    static final class PersistedRegion {
+
+        final int sharedBytesPos;
+        final CacheKey cacheKey;
+        final int region;
+        final long length;
+        final int frequency;
+        final SortedSet<ByteRange> ranges;
+
+        PersistedRegion(int sharedBytesPos, CacheKey cacheKey, int region, long length, int frequency, SortedSet<ByteRange> ranges) {
+            this.sharedBytesPos = sharedBytesPos;
+            this.cacheKey = cacheKey;
+            this.region = region;
+            this.length = length;
+            this.frequency = frequency;
+            this.ranges = ranges;
+        }
+
+        @Override
+        public String toString() {
+            return "PersistedRegion{"
+                + "sharedBytesPos="
+                + sharedBytesPos
+                + ", cacheKey="
+                + cacheKey
+                + ", region="
+                + region
+                + ", length="
+                + length
+                + ", frequency="
+                + frequency
+                + ", ranges="
+                + ranges
+                + '}';
+        }
+    }
+}
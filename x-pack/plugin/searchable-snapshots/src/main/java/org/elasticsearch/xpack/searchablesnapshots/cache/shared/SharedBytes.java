@@ -48,18 +48,35 @@ public class SharedBytes extends AbstractRefCounted {
     // operations in #IO are not contention-free there (https://bugs.java.com/bugdatabase/view_bug.do?bug_id=6265734)
     private final FileChannel fileChannel;
     private final Path path;
+    private final boolean persistent;
+    private final boolean reused;
 
     private final IntConsumer writeBytes;
     private final IntConsumer readBytes;
 
-    SharedBytes(int numRegions, long regionSize, NodeEnvironment environment, IntConsumer writeBytes, IntConsumer readBytes)
-        throws IOException {
+    /**
+     * @param persistent whether the shared cache file is kept when this instance is closed, so that its content can be reused by the next
+     *                   instance if the state of the cache was persisted too
+     */
+    SharedBytes(
+        int numRegions,
+        long regionSize,
+        NodeEnvironment environment,
+        IntConsumer writeBytes,
+        IntConsumer readBytes,
+        boolean persistent
+    ) throws IOException {
         this.numRegions = numRegions;
         this.regionSize = regionSize;
+        this.persistent = persistent;
         final long fileSize = numRegions * regionSize;
         Path cacheFile = null;
+        boolean reused = false;
         if (fileSize > 0) {
             cacheFile = findCacheSnapshotCacheFilePath(environment, fileSize);
+            // the content of an existing cache file can only be reused if its geometry did not change, which is also checked against the
+            // persisted state, so we only need to know that the file existed with the exact same size before it is preallocated
+            reused = Files.exists(cacheFile) && Files.size(cacheFile) == fileSize;
             Preallocate.preallocate(cacheFile, fileSize);
             // TODO: maybe make this faster by allocating a larger direct buffer if this is too slow for very large files
             // We fill either the full file or the bytes between its current size and the desired size once with zeros to fully allocate
@@ -89,6 +106,7 @@ public class SharedBytes extends AbstractRefCounted {
             }
         }
         this.path = cacheFile;
+        this.reused = reused;
         this.writeBytes = writeBytes;
         this.readBytes = readBytes;
     }
@@ -116,10 +134,27 @@ public class SharedBytes extends AbstractRefCounted {
         }
     }
 
+    /**
+     * @return whether the shared cache file already existed with the expected size when this instance was created, in which case its
+     *         content may be reused
+     */
+    boolean isReused() {
+        return reused;
+    }
+
+    /**
+     * Flushes the content of the shared cache file to disk.
+     */
+    void fsync() throws IOException {
+        if (fileChannel != null) {
+            fileChannel.force(false);
+        }
+    }
+
     @Override
     protected void closeInternal() {
         try {
-            IOUtils.close(fileChannel, path == null ? null : () -> Files.deleteIfExists(path));
+            IOUtils.close(fileChannel, path == null || persistent ? null : () -> Files.deleteIfExists(path));
         } catch (IOException e) {
             logger.warn("Failed to clean up shared bytes file", e);
         }
@@ -0,0 +1,56 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.searchablesnapshots.rest;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestToXContentListener;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xpack.searchablesnapshots.action.cache.ShardFrozenCacheRegions;
+import org.elasticsearch.xpack.searchablesnapshots.action.cache.TransportSearchableSnapshotsNodeCachesPrewarmAction;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * Prewarms the shared cache of searchable snapshots with regions that were previously captured.
+ */
+public class RestSearchableSnapshotsNodeCachesPrewarmAction extends BaseRestHandler {
+
+    @Override
+    public List<RestHandler.Route> routes() {
+        return List.of(
+            new RestHandler.Route(POST, "/_searchable_snapshots/cache/prewarm"),
+            new RestHandler.Route(POST, "/_searchable_snapshots/{nodeId}/cache/prewarm")
+        );
+    }
+
+    @Override
+    public String getName() {
+        return "searchable_snapshots_cache_prewarm_action";
+    }
+
+    @Override
+    public BaseRestHandler.RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
+        final String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        final List<ShardFrozenCacheRegions> shards;
+        try (XContentParser parser = request.contentParser()) {
+            shards = TransportSearchableSnapshotsNodeCachesPrewarmAction.NodesRequest.parseShards(parser);
+        }
+        return channel -> client.execute(
+            TransportSearchableSnapshotsNodeCachesPrewarmAction.TYPE,
+            new TransportSearchableSnapshotsNodeCachesPrewarmAction.NodesRequest(nodesIds, shards),
+            new RestToXContentListener<>(channel)
+        );
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.searchablesnapshots.rest;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestToXContentListener;
+import org.elasticsearch.xpack.searchablesnapshots.action.cache.TransportSearchableSnapshotsNodeCachesRegionsAction;
+
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * Node level regions of the shared cache that hold data of searchable snapshots shards.
+ */
+public class RestSearchableSnapshotsNodeCachesRegionsAction extends BaseRestHandler {
+
+    @Override
+    public List<RestHandler.Route> routes() {
+        return List.of(
+            new RestHandler.Route(GET, "/_searchable_snapshots/cache/regions"),
+            new RestHandler.Route(GET, "/_searchable_snapshots/{nodeId}/cache/regions")
+        );
+    }
+
+    @Override
+    public String getName() {
+        return "searchable_snapshots_cache_regions_action";
+    }
+
+    @Override
+    public BaseRestHandler.RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) {
+        final String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        return channel -> client.execute(
+            TransportSearchableSnapshotsNodeCachesRegionsAction.TYPE,
+            new TransportSearchableSnapshotsNodeCachesRegionsAction.NodesRequest(nodesIds),
+            new RestToXContentListener<>(channel)
+        );
+    }
+}
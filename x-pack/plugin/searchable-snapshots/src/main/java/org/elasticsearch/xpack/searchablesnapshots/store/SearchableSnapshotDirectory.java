@@ -654,7 +654,7 @@ public class SearchableSnapshotDirectory extends BaseDirectory {
             )
         );
         final LazyInitializable<BlobStoreIndexShardSnapshot, RuntimeException> lazySnapshot = new LazyInitializable<>(
-            () -> blobStoreRepository.loadShardSnapshot(lazyBlobContainer.getOrCompute(), snapshotId)
+            () -> ensureFixedSizeParts(blobStoreRepository.loadShardSnapshot(lazyBlobContainer.getOrCompute(), snapshotId))
         );
 
         final Path cacheDir = CacheService.getShardCachePath(shardPath).resolve(snapshotId.getUUID());
@@ -721,6 +721,27 @@ public class SearchableSnapshotDirectory extends BaseDirectory {
         return frozenCacheService.getFrozenCacheFile(createCacheKey(fileName), length);
     }
 
+    /**
+     * Fetches the given region of the given file into the shared cache unless it is cached already. Used to replay the cached regions of
+     * this shard that were captured on another node.
+     *
+     * @return the number of bytes that were fetched from the blob store
+     */
+    public long prefetchFrozenCacheRegion(String name, int region) throws Exception {
+        ensureOpen();
+        if (partial == false || loaded == false) {
+            return 0L;
+        }
+        final BlobStoreIndexShardSnapshot.FileInfo fileInfo = fileInfo(name);
+        try (IndexInput input = openInput(name, IOContext.READ)) {
+            if (input instanceof FrozenIndexInput == false) {
+                // the file is not read through the shared cache, e.g. because its contents are stored in the shard snapshot metadata
+                return 0L;
+            }
+            return ((FrozenIndexInput) input).prefetchRange(frozenCacheService.getRegionRange(fileInfo.length(), region));
+        }
+    }
+
     private static Repository repositoryByUuid(Map<String, Repository> repositories, String repositoryUuid, String originalName) {
         for (Repository repository : repositories.values()) {
             if (repository.getMetadata().uuid().equals(repositoryUuid)) {
@@ -730,6 +751,25 @@ public class SearchableSnapshotDirectory extends BaseDirectory {
         throw new RepositoryMissingException("uuid [" + repositoryUuid + "], original name [" + originalName + "]");
     }
 
+    /**
+     * Searchable snapshots locate the part of a file to read from its position assuming that all parts but the last have the same size,
+     * which does not hold for files stored in content-defined chunks.
+     */
+    private static BlobStoreIndexShardSnapshot ensureFixedSizeParts(BlobStoreIndexShardSnapshot snapshot) {
+        for (BlobStoreIndexShardSnapshot.FileInfo fileInfo : snapshot.indexFiles()) {
+            if (fileInfo.chunks() != null) {
+                throw new IllegalArgumentException(
+                    "snapshot ["
+                        + snapshot.snapshot()
+                        + "] contains file ["
+                        + fileInfo.physicalName()
+                        + "] stored in content-defined chunks which cannot be used by searchable snapshots"
+                );
+            }
+        }
+        return snapshot;
+    }
+
     /**
      * A {@link FilterBlobContainer} that uses {@link BlobStoreRepository#maybeRateLimitRestores(InputStream)} to limit the rate at which
      * blobs are read from the repository.
@@ -29,6 +29,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 
@@ -176,6 +177,32 @@ public class FrozenIndexInput extends MetadataCachingIndexInput {
         }
     }
 
+    /**
+     * Fetches the given range of the file into the shared cache unless it is already present and waits for it to be available, without
+     * reading it.
+     *
+     * @return the number of bytes that were fetched from the blob store
+     */
+    public long prefetchRange(ByteRange range) throws Exception {
+        assert range.length() > 0L && range.end() <= length() : range + " vs " + this;
+        final LongAdder fetchedBytes = new LongAdder();
+        final StepListener<Integer> populateCacheFuture = frozenCacheFile.populateAndRead(
+            range,
+            range,
+            (channel, pos, relativePos, len) -> toIntBytes(len),
+            (channel, channelPos, relativePos, len, progressUpdater) -> {
+                final long startTimeNanos = stats.currentTimeNanos();
+                try (InputStream input = openInputStreamFromBlobStore(range.start() + relativePos, len)) {
+                    writeCacheFile(channel, input, channelPos, relativePos, len, progressUpdater, startTimeNanos);
+                }
+                fetchedBytes.add(len);
+            },
+            directory.cacheFetchAsyncExecutor()
+        );
+        populateCacheFuture.asFuture().get();
+        return fetchedBytes.sum();
+    }
+
     private static int positionalWrite(SharedBytes.IO fc, long start, ByteBuffer byteBuffer) throws IOException {
         assert assertCurrentThreadMayWriteCacheFile();
         byteBuffer.flip();
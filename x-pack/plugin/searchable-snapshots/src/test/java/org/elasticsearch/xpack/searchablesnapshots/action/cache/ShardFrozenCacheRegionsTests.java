@@ -0,0 +1,114 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.searchablesnapshots.action.cache;
+
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.AbstractSerializingTestCase;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xpack.searchablesnapshots.cache.common.CacheKey;
+import org.elasticsearch.xpack.searchablesnapshots.cache.shared.FrozenCacheService.CachedRegion;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ShardFrozenCacheRegionsTests extends AbstractSerializingTestCase<ShardFrozenCacheRegions> {
+
+    @Override
+    protected ShardFrozenCacheRegions createTestInstance() {
+        final List<ShardFrozenCacheRegions.Region> regions = new ArrayList<>();
+        final int numRegions = randomIntBetween(0, 10);
+        for (int i = 0; i < numRegions; i++) {
+            regions.add(randomRegion());
+        }
+        return new ShardFrozenCacheRegions(randomAlphaOfLength(10), randomAlphaOfLength(10), randomIntBetween(0, 10), regions);
+    }
+
+    @Override
+    protected ShardFrozenCacheRegions mutateInstance(ShardFrozenCacheRegions instance) {
+        switch (randomIntBetween(0, 3)) {
+            case 0:
+                return new ShardFrozenCacheRegions(
+                    randomValueOtherThan(instance.getSnapshotUUID(), () -> randomAlphaOfLength(10)),
+                    instance.getSnapshotIndexName(),
+                    instance.getShard(),
+                    instance.getRegions()
+                );
+            case 1:
+                return new ShardFrozenCacheRegions(
+                    instance.getSnapshotUUID(),
+                    randomValueOtherThan(instance.getSnapshotIndexName(), () -> randomAlphaOfLength(10)),
+                    instance.getShard(),
+                    instance.getRegions()
+                );
+            case 2:
+                return new ShardFrozenCacheRegions(
+                    instance.getSnapshotUUID(),
+                    instance.getSnapshotIndexName(),
+                    instance.getShard() + 1,
+                    instance.getRegions()
+                );
+            default:
+                final List<ShardFrozenCacheRegions.Region> regions = new ArrayList<>(instance.getRegions());
+                regions.add(randomRegion());
+                return new ShardFrozenCacheRegions(
+                    instance.getSnapshotUUID(),
+                    instance.getSnapshotIndexName(),
+                    instance.getShard(),
+                    regions
+                );
+        }
+    }
+
+    @Override
+    protected Writeable.Reader<ShardFrozenCacheRegions> instanceReader() {
+        return ShardFrozenCacheRegions::new;
+    }
+
+    @Override
+    protected ShardFrozenCacheRegions doParseInstance(XContentParser parser) throws IOException {
+        return ShardFrozenCacheRegions.fromXContent(parser);
+    }
+
+    public void testGroupByShard() {
+        final String snapshotUUID = randomAlphaOfLength(10);
+        final ShardId shardId0 = new ShardId("mounted", "_na_", 0);
+        final ShardId shardId1 = new ShardId("mounted", "_na_", 1);
+        final List<CachedRegion> cachedRegions = List.of(
+            new CachedRegion(new CacheKey(snapshotUUID, "index", shardId1, "_0.cfs"), 0, 1),
+            new CachedRegion(new CacheKey(snapshotUUID, "index", shardId0, "_0.cfs"), 3, 1),
+            new CachedRegion(new CacheKey(snapshotUUID, "index", shardId0, "_0.cfs"), 1, 2),
+            new CachedRegion(new CacheKey(snapshotUUID, "index", shardId0, "_1.cfs"), 0, 5)
+        );
+        assertThat(
+            TransportSearchableSnapshotsNodeCachesRegionsAction.groupByShard(cachedRegions),
+            equalTo(
+                List.of(
+                    new ShardFrozenCacheRegions(
+                        snapshotUUID,
+                        "index",
+                        0,
+                        List.of(
+                            new ShardFrozenCacheRegions.Region("_1.cfs", 0, 5),
+                            new ShardFrozenCacheRegions.Region("_0.cfs", 1, 2),
+                            new ShardFrozenCacheRegions.Region("_0.cfs", 3, 1)
+                        )
+                    ),
+                    new ShardFrozenCacheRegions(snapshotUUID, "index", 1, List.of(new ShardFrozenCacheRegions.Region("_0.cfs", 0, 1)))
+                )
+            )
+        );
+    }
+
+    private static ShardFrozenCacheRegions.Region randomRegion() {
+        return new ShardFrozenCacheRegions.Region(randomAlphaOfLength(5), randomIntBetween(0, 100), randomIntBetween(0, 10));
+    }
+}
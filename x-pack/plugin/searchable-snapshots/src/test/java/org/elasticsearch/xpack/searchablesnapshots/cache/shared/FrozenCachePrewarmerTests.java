@@ -0,0 +1,98 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.searchablesnapshots.cache.shared;
+
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.set.Sets;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class FrozenCachePrewarmerTests extends ESTestCase {
+
+    public void testMostFrequentRegionsArePrewarmedFirst() {
+        final List<Runnable> workers = new ArrayList<>();
+        final FrozenCachePrewarmer prewarmer = createPrewarmer(workers::add, 1);
+
+        final int numRegions = randomIntBetween(1, 50);
+        final List<Integer> frequencies = new ArrayList<>();
+        final List<Integer> prewarmed = new ArrayList<>();
+        for (int i = 0; i < numRegions; i++) {
+            final int frequency = randomIntBetween(0, 10);
+            frequencies.add(frequency);
+            final int region = i;
+            prewarmer.schedule("region " + region, frequency, () -> {
+                prewarmed.add(region);
+                if (randomBoolean()) {
+                    throw new IOException("simulated");
+                }
+                return randomLongBetween(0L, 1024L);
+            });
+        }
+        assertThat(prewarmer.getPendingRegions(), equalTo(numRegions));
+        assertThat(workers.size(), equalTo(1));
+        workers.remove(0).run();
+
+        // regions are prewarmed by decreasing frequency then in the order they were scheduled, regardless of failures
+        final List<Integer> expected = IntStream.range(0, numRegions)
+            .boxed()
+            .sorted(Comparator.comparing((Integer region) -> frequencies.get(region)).reversed().thenComparing(region -> region))
+            .collect(Collectors.toList());
+        assertThat(prewarmed, equalTo(expected));
+        assertThat(prewarmer.getPendingRegions(), equalTo(0));
+    }
+
+    public void testMaxConcurrentRegions() {
+        final List<Runnable> workers = new ArrayList<>();
+        final int maxConcurrentRegions = randomIntBetween(1, 5);
+        final FrozenCachePrewarmer prewarmer = createPrewarmer(workers::add, maxConcurrentRegions);
+
+        final int numRegions = randomIntBetween(1, 20);
+        for (int i = 0; i < numRegions; i++) {
+            prewarmer.schedule("region " + i, randomIntBetween(0, 10), () -> 1L);
+        }
+        // each worker fetches regions until there is none left
+        assertThat(workers.size(), equalTo(Math.min(maxConcurrentRegions, numRegions)));
+        while (workers.isEmpty() == false) {
+            workers.remove(0).run();
+        }
+        assertThat(prewarmer.getPendingRegions(), equalTo(0));
+        assertThat(prewarmer.getPrewarmedRegions(), equalTo((long) numRegions));
+        assertThat(prewarmer.getPrewarmedBytes(), equalTo((long) numRegions));
+
+        // workers are started again for regions scheduled later
+        prewarmer.schedule("region", randomIntBetween(0, 10), () -> 1L);
+        assertThat(workers.size(), equalTo(1));
+        workers.remove(0).run();
+        assertThat(prewarmer.getPrewarmedRegions(), equalTo(numRegions + 1L));
+    }
+
+    private static FrozenCachePrewarmer createPrewarmer(Executor executor, int maxConcurrentRegions) {
+        final Settings settings = Settings.builder()
+            .put(FrozenCachePrewarmer.PREWARM_MAX_BYTES_PER_SEC_SETTING.getKey(), "0")
+            .put(FrozenCachePrewarmer.PREWARM_MAX_CONCURRENT_REGIONS_SETTING.getKey(), maxConcurrentRegions)
+            .build();
+        final ClusterSettings clusterSettings = new ClusterSettings(
+            settings,
+            Sets.newHashSet(
+                FrozenCachePrewarmer.PREWARM_MAX_BYTES_PER_SEC_SETTING,
+                FrozenCachePrewarmer.PREWARM_MAX_CONCURRENT_REGIONS_SETTING
+            )
+        );
+        return new FrozenCachePrewarmer(settings, clusterSettings, executor);
+    }
+}
@@ -27,12 +27,17 @@ import org.elasticsearch.xpack.searchablesnapshots.cache.common.CacheKey;
 import org.elasticsearch.xpack.searchablesnapshots.cache.shared.FrozenCacheService.CacheFileRegion;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import static org.elasticsearch.node.Node.NODE_NAME_SETTING;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
@@ -207,6 +212,262 @@ public class FrozenCacheServiceTests extends ESTestCase {
         }
     }
 
+    public void testGetCachedRegions() throws IOException {
+        Settings settings = Settings.builder()
+            .put(NODE_NAME_SETTING.getKey(), "node")
+            .put(FrozenCacheService.SNAPSHOT_CACHE_SIZE_SETTING.getKey(), new ByteSizeValue(size(500)).getStringRep())
+            .put(FrozenCacheService.SNAPSHOT_CACHE_REGION_SIZE_SETTING.getKey(), new ByteSizeValue(size(100)).getStringRep())
+            .put("path.home", createTempDir())
+            .build();
+        final DeterministicTaskQueue taskQueue = new DeterministicTaskQueue();
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            final CacheKey cacheKey1 = generateCacheKey();
+            final CacheKey cacheKey2 = generateCacheKey();
+            final CacheFileRegion region0 = cacheService.get(cacheKey1, size(250), 0);
+            final CacheFileRegion region1 = cacheService.get(cacheKey1, size(250), 1);
+            final CacheFileRegion region2 = cacheService.get(cacheKey2, size(250), 2);
+
+            // regions without any data are not reported
+            assertThat(cacheService.getCachedRegions(key -> true).isEmpty(), is(true));
+
+            for (CacheFileRegion region : List.of(region0, region1, region2)) {
+                region.populateAndRead(
+                    ByteRange.of(0L, 1L),
+                    ByteRange.of(0L, 1L),
+                    (channel, channelPos, relativePos, length) -> 1,
+                    (channel, channelPos, relativePos, length, progressUpdater) -> progressUpdater.accept(length),
+                    taskQueue.getThreadPool().executor(ThreadPool.Names.GENERIC)
+                );
+            }
+            taskQueue.runAllRunnableTasks();
+
+            assertThat(
+                cacheService.getCachedRegions(key -> true)
+                    .stream()
+                    .map(r -> r.getCacheKey() + "/" + r.getRegion())
+                    .collect(Collectors.toSet()),
+                equalTo(Set.of(cacheKey1 + "/0", cacheKey1 + "/1", cacheKey2 + "/2"))
+            );
+            assertThat(
+                cacheService.getCachedRegions(cacheKey2::equals).stream().map(r -> r.getRegion()).collect(Collectors.toList()),
+                equalTo(List.of(2))
+            );
+
+            // evicted regions are not reported
+            assertTrue(region1.tryEvict());
+            assertThat(
+                cacheService.getCachedRegions(cacheKey1::equals).stream().map(r -> r.getRegion()).collect(Collectors.toList()),
+                equalTo(List.of(0))
+            );
+        }
+    }
+
+    public void testGetRegionRange() throws IOException {
+        Settings settings = Settings.builder()
+            .put(NODE_NAME_SETTING.getKey(), "node")
+            .put(FrozenCacheService.SNAPSHOT_CACHE_SIZE_SETTING.getKey(), new ByteSizeValue(size(500)).getStringRep())
+            .put(FrozenCacheService.SNAPSHOT_CACHE_REGION_SIZE_SETTING.getKey(), new ByteSizeValue(size(100)).getStringRep())
+            .put("path.home", createTempDir())
+            .build();
+        final DeterministicTaskQueue taskQueue = new DeterministicTaskQueue();
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            assertThat(cacheService.getRegionRange(size(250), 0), equalTo(ByteRange.of(0L, size(100))));
+            assertThat(cacheService.getRegionRange(size(250), 1), equalTo(ByteRange.of(size(100), size(200))));
+            assertThat(cacheService.getRegionRange(size(250), 2), equalTo(ByteRange.of(size(200), size(250))));
+            expectThrows(IllegalArgumentException.class, () -> cacheService.getRegionRange(size(250), 3));
+            expectThrows(IllegalArgumentException.class, () -> cacheService.getRegionRange(size(250), -1));
+        }
+    }
+
+    public void testPersistentState() throws IOException {
+        final Settings settings = Settings.builder()
+            .put(NODE_NAME_SETTING.getKey(), "node")
+            .put(FrozenCacheService.SNAPSHOT_CACHE_SIZE_SETTING.getKey(), new ByteSizeValue(size(500)).getStringRep())
+            .put(FrozenCacheService.SNAPSHOT_CACHE_REGION_SIZE_SETTING.getKey(), new ByteSizeValue(size(100)).getStringRep())
+            .put("path.home", createTempDir())
+            .build();
+        final DeterministicTaskQueue taskQueue = new DeterministicTaskQueue();
+        final CacheKey cacheKey = generateCacheKey();
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            final CacheFileRegion region0 = cacheService.get(cacheKey, size(250), 0);
+            final CacheFileRegion region2 = cacheService.get(cacheKey, size(250), 2);
+            cacheService.get(cacheKey, size(250), 1); // no data, not persisted
+            populate(region0, ByteRange.of(0L, size(10)), taskQueue);
+            populate(region0, ByteRange.of(size(20), size(30)), taskQueue);
+            populate(region2, ByteRange.of(0L, size(50)), taskQueue);
+        }
+        // the state is persisted when the service is closed and the shared cache file is reused on restart
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            assertEquals(3, cacheService.freeRegionCount());
+            assertThat(
+                cacheService.getCachedRegions(key -> true).stream().map(r -> r.getRegion()).collect(Collectors.toSet()),
+                equalTo(Set.of(0, 2))
+            );
+            final CacheFileRegion region0 = cacheService.get(cacheKey, size(250), 0);
+            assertThat(
+                region0.tracker.getCompletedRanges(),
+                equalTo(new TreeSet<>(List.of(ByteRange.of(0L, size(10)), ByteRange.of(size(20), size(30)))))
+            );
+            final CacheFileRegion region2 = cacheService.get(cacheKey, size(250), 2);
+            assertThat(region2.tracker.getCompletedRanges(), equalTo(new TreeSet<>(List.of(ByteRange.of(0L, size(50))))));
+            assertEquals(3, cacheService.freeRegionCount());
+
+            // evicting a persisted region invalidates the persisted state before the region can be reused
+            cacheService.persistState();
+            assertTrue(Files.exists(environment.nodeDataPaths()[0].resolve(FrozenCacheState.STATE_FILE_NAME)));
+            assertTrue(region0.tryEvict());
+            assertFalse(Files.exists(environment.nodeDataPaths()[0].resolve(FrozenCacheState.STATE_FILE_NAME)));
+            assertEquals(4, cacheService.freeRegionCount());
+        }
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            assertEquals(4, cacheService.freeRegionCount());
+            assertThat(
+                cacheService.getCachedRegions(key -> true).stream().map(r -> r.getRegion()).collect(Collectors.toList()),
+                equalTo(List.of(2))
+            );
+        }
+    }
+
+    public void testPersistentStateIsDiscardedIfInconsistent() throws IOException {
+        final Path home = createTempDir();
+        final Settings settings = Settings.builder()
+            .put(NODE_NAME_SETTING.getKey(), "node")
+            .put(FrozenCacheService.SNAPSHOT_CACHE_SIZE_SETTING.getKey(), new ByteSizeValue(size(500)).getStringRep())
+            .put(FrozenCacheService.SNAPSHOT_CACHE_REGION_SIZE_SETTING.getKey(), new ByteSizeValue(size(100)).getStringRep())
+            .put("path.home", home)
+            .build();
+        final DeterministicTaskQueue taskQueue = new DeterministicTaskQueue();
+        final CacheKey cacheKey = generateCacheKey();
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            populate(cacheService.get(cacheKey, size(250), 0), ByteRange.of(0L, size(10)), taskQueue);
+        }
+
+        final Settings restartSettings;
+        switch (randomIntBetween(0, 4)) {
+            case 0:
+                // same shared cache file size but different regions
+                restartSettings = Settings.builder()
+                    .put(settings)
+                    .put(FrozenCacheService.SNAPSHOT_CACHE_REGION_SIZE_SETTING.getKey(), new ByteSizeValue(size(50)).getStringRep())
+                    .build();
+                break;
+            case 1:
+                // different shared cache file size
+                restartSettings = Settings.builder()
+                    .put(settings)
+                    .put(FrozenCacheService.SNAPSHOT_CACHE_SIZE_SETTING.getKey(), new ByteSizeValue(size(600)).getStringRep())
+                    .build();
+                break;
+            case 2:
+                // corrupted state file
+                restartSettings = settings;
+                try (NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings))) {
+                    final Path stateFile = environment.nodeDataPaths()[0].resolve(FrozenCacheState.STATE_FILE_NAME);
+                    final byte[] bytes = Files.readAllBytes(stateFile);
+                    final int position = randomIntBetween(0, bytes.length - 1);
+                    bytes[position] = (byte) (bytes[position] ^ (1 << randomIntBetween(0, 7)));
+                    Files.write(stateFile, bytes);
+                }
+                break;
+            case 3:
+                // region that is shorter than the regions of the shared cache file but is not the last region of its file
+                restartSettings = settings;
+                try (NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings))) {
+                    final SortedSet<ByteRange> ranges = new TreeSet<>(List.of(ByteRange.of(0L, size(10))));
+                    FrozenCacheState.write(
+                        environment.nodeDataPaths()[0],
+                        size(100),
+                        5,
+                        List.of(
+                            new FrozenCacheState.PersistedRegion(0, cacheKey, 0, size(50), 1, ranges),
+                            new FrozenCacheState.PersistedRegion(1, cacheKey, 1, size(100), 1, ranges)
+                        )
+                    );
+                }
+                break;
+            default:
+                // persistence disabled
+                restartSettings = Settings.builder()
+                    .put(settings)
+                    .put(FrozenCacheService.SNAPSHOT_CACHE_PERSISTENT_ENABLED_SETTING.getKey(), false)
+                    .build();
+                break;
+        }
+        try (
+            NodeEnvironment environment = new NodeEnvironment(restartSettings, TestEnvironment.newEnvironment(restartSettings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, restartSettings, taskQueue.getThreadPool())
+        ) {
+            assertThat(cacheService.getCachedRegions(key -> true).isEmpty(), is(true));
+            assertFalse(Files.exists(environment.nodeDataPaths()[0].resolve(FrozenCacheState.STATE_FILE_NAME)));
+        }
+    }
+
+    public void testPersistedRegionOfAnotherLengthIsFetchedAgain() throws IOException {
+        final Settings settings = Settings.builder()
+            .put(NODE_NAME_SETTING.getKey(), "node")
+            .put(FrozenCacheService.SNAPSHOT_CACHE_SIZE_SETTING.getKey(), new ByteSizeValue(size(500)).getStringRep())
+            .put(FrozenCacheService.SNAPSHOT_CACHE_REGION_SIZE_SETTING.getKey(), new ByteSizeValue(size(100)).getStringRep())
+            .put("path.home", createTempDir())
+            .build();
+        final DeterministicTaskQueue taskQueue = new DeterministicTaskQueue();
+        final CacheKey cacheKey = generateCacheKey();
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            populate(cacheService.get(cacheKey, size(250), 2), ByteRange.of(0L, size(10)), taskQueue);
+        }
+        // the state holds the last region of a file of 250 bytes, which cannot be reused for a file of another length
+        try (
+            NodeEnvironment environment = new NodeEnvironment(settings, TestEnvironment.newEnvironment(settings));
+            FrozenCacheService cacheService = new FrozenCacheService(environment, settings, taskQueue.getThreadPool())
+        ) {
+            assertThat(cacheService.getCachedRegions(key -> true).size(), equalTo(1));
+            final CacheFileRegion region = cacheService.get(cacheKey, size(300), 2);
+            assertEquals(size(100), region.tracker.getLength());
+            assertThat(region.tracker.getCompletedRanges(), empty());
+            assertEquals(4, cacheService.freeRegionCount());
+        }
+    }
+
+    public void testMergeAdjacentRanges() {
+        assertThat(
+            FrozenCacheState.mergeAdjacentRanges(
+                new TreeSet<>(List.of(ByteRange.of(0L, 10L), ByteRange.of(10L, 20L), ByteRange.of(30L, 40L), ByteRange.of(40L, 50L)))
+            ),
+            equalTo(new TreeSet<>(List.of(ByteRange.of(0L, 20L), ByteRange.of(30L, 50L))))
+        );
+    }
+
+    private static void populate(CacheFileRegion region, ByteRange range, DeterministicTaskQueue taskQueue) {
+        region.populateAndRead(
+            range,
+            range,
+            (channel, channelPos, relativePos, length) -> Math.toIntExact(length),
+            (channel, channelPos, relativePos, length, progressUpdater) -> progressUpdater.accept(length),
+            taskQueue.getThreadPool().executor(ThreadPool.Names.GENERIC)
+        );
+        taskQueue.runAllRunnableTasks();
+    }
+
     public void testCacheSizeRejectedOnNonFrozenNodes() {
         String cacheSize = randomBoolean() ? new ByteSizeValue(size(500)).getStringRep() : new RatioValue(between(1, 100)).toString();
         final Settings settings = Settings.builder()
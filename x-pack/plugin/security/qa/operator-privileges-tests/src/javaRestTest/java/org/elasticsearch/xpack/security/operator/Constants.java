@@ -170,6 +170,8 @@ public class Constants {
         "cluster:admin/xpack/rollup/start",
         "cluster:admin/xpack/rollup/stop",
         "cluster:admin/xpack/searchable_snapshots/cache/clear",
+        "cluster:admin/xpack/searchable_snapshots/cache/prewarm",
+        "cluster:admin/xpack/searchable_snapshots/cache/regions",
         "cluster:admin/xpack/searchable_snapshots/cache/stats",
         "cluster:admin/xpack/security/api_key/create",
         "cluster:admin/xpack/security/api_key/get",
@@ -9,6 +9,9 @@ package org.elasticsearch.xpack.sql.execution;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.xpack.ql.expression.function.FunctionRegistry;
 import org.elasticsearch.xpack.ql.index.IndexResolver;
@@ -48,6 +51,15 @@ public class PlanExecutor {
 
     private final Metrics metrics;
 
+    private volatile int maxBuckets = MultiBucketConsumerService.DEFAULT_MAX_BUCKETS;
+
+    public PlanExecutor(Client client, IndexResolver indexResolver, NamedWriteableRegistry writeableRegistry, Settings settings,
+                        ClusterSettings clusterSettings) {
+        this(client, indexResolver, writeableRegistry);
+        this.maxBuckets = MultiBucketConsumerService.MAX_BUCKET_SETTING.get(settings);
+        clusterSettings.addSettingsUpdateConsumer(MultiBucketConsumerService.MAX_BUCKET_SETTING, this::setMaxBuckets);
+    }
+
     public PlanExecutor(Client client, IndexResolver indexResolver, NamedWriteableRegistry writeableRegistry) {
         this.client = client;
         this.writableRegistry = writeableRegistry;
@@ -74,7 +86,8 @@ public class PlanExecutor {
         newSession(cfg).sqlExecutable(sql, params, wrap(exec -> {
             if (exec instanceof EsQueryExec) {
                 EsQueryExec e = (EsQueryExec) exec;
-                listener.onResponse(SourceGenerator.sourceBuilder(e.queryContainer(), cfg.filter(), cfg.pageSize()));
+                listener.onResponse(SourceGenerator.sourceBuilder(e.queryContainer(), cfg.filter(), cfg.pageSize(),
+                    e.queryContainer().isTopNGroupBy(maxBuckets)));
             }
             // try to provide a better resolution of what failed
             else {
@@ -129,4 +142,16 @@ public class PlanExecutor {
     public Metrics metrics() {
         return this.metrics;
     }
+
+    private void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * The {@code search.max_buckets} of the cluster, which decides whether queries can pick their top groups with a terms agg,
+     * see {@link org.elasticsearch.xpack.sql.querydsl.container.QueryContainer#isTopNGroupBy(int)}.
+     */
+    public int maxBuckets() {
+        return maxBuckets;
+    }
 }
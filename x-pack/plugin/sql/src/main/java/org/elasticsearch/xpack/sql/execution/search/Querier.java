@@ -110,24 +110,8 @@ public class Querier {
     }
 
     public void query(List<Attribute> output, QueryContainer query, String index, ActionListener<Page> listener) {
-        // prepare the request
-        SearchSourceBuilder sourceBuilder = SourceGenerator.sourceBuilder(query, filter, size);
-        // set query timeout
-        if (timeout.getSeconds() > 0) {
-            sourceBuilder.timeout(timeout);
-        }
-
-        // set runtime mappings
-        if (this.cfg.runtimeMappings() != null) {
-            sourceBuilder.runtimeMappings(this.cfg.runtimeMappings());
-        }
-
-        if (log.isTraceEnabled()) {
-            log.trace("About to execute query {} on {}", StringUtils.toString(sourceBuilder), index);
-        }
-
-        SearchRequest search = prepareRequest(client, sourceBuilder, timeout, query.shouldIncludeFrozen(),
-                Strings.commaDelimitedListToStringArray(index));
+        boolean topN = query.isTopNGroupBy(planExecutor.maxBuckets());
+        SearchRequest search = prepareRequest(query, index, topN);
 
         @SuppressWarnings("rawtypes")
         List<Tuple<Integer, Comparator>> sortingColumns = query.sortingColumns();
@@ -137,6 +121,8 @@ public class Querier {
         if (query.isAggsOnly()) {
             if (query.aggs().useImplicitGroupBy()) {
                 l = new ImplicitGroupActionListener(listener, client, cfg, output, query, search);
+            } else if (topN) {
+                l = new TopNGroupActionListener(listener, client, cfg, output, query, search, prepareRequest(query, index, false));
             } else {
                 l = new CompositeActionListener(listener, client, cfg, output, query, search);
             }
@@ -152,6 +138,27 @@ public class Querier {
         client.search(search, l);
     }
 
+    private SearchRequest prepareRequest(QueryContainer query, String index, boolean topN) {
+        // prepare the request
+        SearchSourceBuilder sourceBuilder = SourceGenerator.sourceBuilder(query, filter, size, topN);
+        // set query timeout
+        if (timeout.getSeconds() > 0) {
+            sourceBuilder.timeout(timeout);
+        }
+
+        // set runtime mappings
+        if (this.cfg.runtimeMappings() != null) {
+            sourceBuilder.runtimeMappings(this.cfg.runtimeMappings());
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace("About to execute query {} on {}", StringUtils.toString(sourceBuilder), index);
+        }
+
+        return prepareRequest(client, sourceBuilder, timeout, query.shouldIncludeFrozen(),
+                Strings.commaDelimitedListToStringArray(index));
+    }
+
     public static SearchRequest prepareRequest(Client client, SearchSourceBuilder source, TimeValue timeout, boolean includeFrozen,
             String... indices) {
         source.timeout(timeout);
@@ -392,6 +399,41 @@ public class Querier {
         }
     }
 
+    /**
+     * Dedicated listener for queries that only return the groups with the most documents (see {@link QueryContainer#isTopNGroupBy()}).
+     * The top groups are picked by a terms agg. If the doc count errors of the terms agg don't guarantee that these are the
+     * right groups with the right counts, the query falls back to going through all the groups of a composite agg.
+     */
+    static class TopNGroupActionListener extends BaseAggActionListener {
+
+        private final List<Attribute> output;
+        private final SearchRequest compositeRequest;
+
+        TopNGroupActionListener(ActionListener<Page> listener, Client client, SqlConfiguration cfg, List<Attribute> output,
+                QueryContainer query, SearchRequest request, SearchRequest compositeRequest) {
+            super(listener, client, cfg, output, query, request);
+            this.output = output;
+            this.compositeRequest = compositeRequest;
+        }
+
+        @Override
+        protected void handleResponse(SearchResponse response, ActionListener<Page> listener) {
+            if (log.isTraceEnabled()) {
+                logSearchResponse(response, log);
+            }
+
+            if (TopNAggRowSet.isExact(response.getAggregations().get(Aggs.ROOT_GROUP_NAME), query.limit()) == false) {
+                log.trace("Top groups of the terms agg are not exact, falling back to the composite agg");
+                client.search(compositeRequest, new CompositeActionListener(delegate, client, cfg, output, query, compositeRequest));
+                return;
+            }
+
+            String groupKey = query.aggs().groups().get(0).id();
+            listener.onResponse(Page.last(new TopNAggRowSet(schema, initBucketExtractors(response), mask, response, groupKey,
+                    query.limit())));
+        }
+    }
+
     abstract static class BaseAggActionListener extends BaseActionListener {
         final QueryContainer query;
         final SearchRequest request;
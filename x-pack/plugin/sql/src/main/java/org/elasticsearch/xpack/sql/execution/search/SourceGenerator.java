@@ -34,6 +34,14 @@ public abstract class SourceGenerator {
     private SourceGenerator() {}
 
     public static SearchSourceBuilder sourceBuilder(QueryContainer container, QueryBuilder filter, Integer size) {
+        return sourceBuilder(container, filter, size, container.isTopNGroupBy());
+    }
+
+    /**
+     * Creates the search source of the query, picking the top groups with a terms agg if {@code topN} is set
+     * (see {@link QueryContainer#isTopNGroupBy()}) or going through all of them with a composite agg otherwise.
+     */
+    public static SearchSourceBuilder sourceBuilder(QueryContainer container, QueryBuilder filter, Integer size, boolean topN) {
         QueryBuilder finalQuery = null;
         // add the source
         if (container.query() != null) {
@@ -60,7 +68,12 @@ public abstract class SourceGenerator {
         sortBuilder.build(source);
 
         // add the aggs (if present)
-        AggregationBuilder aggBuilder = container.aggs().asAggBuilder();
+        AggregationBuilder aggBuilder = null;
+        if (topN) {
+            container.aggs().asTopNAggBuilders(container.limit()).forEach(source::aggregation);
+        } else {
+            aggBuilder = container.aggs().asAggBuilder();
+        }
 
         if (aggBuilder != null) {
             source.aggregation(aggBuilder);
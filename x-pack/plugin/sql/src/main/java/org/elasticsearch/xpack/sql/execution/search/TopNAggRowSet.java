@@ -0,0 +1,180 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.sql.execution.search;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregation;
+import org.elasticsearch.search.aggregations.bucket.terms.LongTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xpack.ql.execution.search.extractor.BucketExtractor;
+import org.elasticsearch.xpack.ql.type.Schema;
+import org.elasticsearch.xpack.sql.querydsl.agg.Aggs;
+import org.elasticsearch.xpack.sql.session.RowSet;
+import org.elasticsearch.xpack.sql.session.SchemaRowSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonMap;
+
+/**
+ * {@link RowSet} over the terms and missing aggs of a top groups query (see {@link Aggs#asTopNAggBuilders(int)}).
+ * The buckets are exposed as composite buckets, so that the same extractors apply to both aggs.
+ * The null group comes first, followed by the groups in descending count order - which is the order a composite
+ * agg would have returned groups with the same count in.
+ */
+class TopNAggRowSet extends ResultRowSet<BucketExtractor> implements SchemaRowSet {
+
+    private final Schema schema;
+    private final List<Bucket> buckets;
+    private int row = 0;
+
+    TopNAggRowSet(Schema schema, List<BucketExtractor> exts, BitSet mask, SearchResponse response, String groupKey, int limit) {
+        super(exts, mask);
+        this.schema = schema;
+
+        Aggregations aggs = response.getAggregations();
+        SingleBucketAggregation missing = aggs.get(Aggs.MISSING_GROUP_NAME);
+        Terms terms = aggs.get(Aggs.ROOT_GROUP_NAME);
+
+        buckets = new ArrayList<>(limit + 1);
+        if (missing.getDocCount() > 0) {
+            buckets.add(new GroupBucket(singletonMap(groupKey, null), missing.getDocCount(), missing.getAggregations()));
+        }
+        List<? extends Terms.Bucket> termBuckets = terms.getBuckets();
+        for (int i = 0; i < Math.min(limit, termBuckets.size()); i++) {
+            Terms.Bucket bucket = termBuckets.get(i);
+            Object key = compositeKey(terms, bucket);
+            buckets.add(new GroupBucket(singletonMap(groupKey, key), bucket.getDocCount(), bucket.getAggregations()));
+        }
+    }
+
+    /**
+     * Whether the first {@code limit} groups of the terms agg are exactly the groups with the most documents, with exact counts.
+     * A group that was left out by a shard might have up to the doc count error of the agg on top of the count it was
+     * reduced with, which is at most the count of the last returned group if it was left out by the coordinating node.
+     */
+    static boolean isExact(Terms terms, int limit) {
+        Long error = terms.getDocCountError();
+        if (error == null || error < 0) {
+            return false;
+        }
+        if (error == 0) {
+            return true;
+        }
+        List<? extends Terms.Bucket> buckets = terms.getBuckets();
+        // the shards didn't return all their terms, yet there are less than the limit
+        if (buckets.size() <= limit) {
+            return false;
+        }
+        for (int i = 0; i < limit; i++) {
+            if (buckets.get(i).getDocCountError() != 0) {
+                return false;
+            }
+        }
+        long lowestCount = buckets.get(limit - 1).getDocCount();
+        for (int i = limit; i < buckets.size(); i++) {
+            Terms.Bucket bucket = buckets.get(i);
+            if (bucket.getDocCount() + bucket.getDocCountError() >= lowestCount) {
+                return false;
+            }
+        }
+        return buckets.get(buckets.size() - 1).getDocCount() + error < lowestCount;
+    }
+
+    /**
+     * Terms return the boolean keys as longs while the composite agg returns them as booleans.
+     */
+    private static Object compositeKey(Terms terms, Terms.Bucket bucket) {
+        Object key = bucket.getKey();
+        if (terms instanceof LongTerms) {
+            String keyAsString = bucket.getKeyAsString();
+            if ("true".equals(keyAsString) || "false".equals(keyAsString)) {
+                return Boolean.valueOf(keyAsString);
+            }
+        }
+        return key;
+    }
+
+    @Override
+    protected Object extractValue(BucketExtractor e) {
+        return e.extract(buckets.get(row));
+    }
+
+    @Override
+    protected boolean doHasCurrent() {
+        return row < buckets.size();
+    }
+
+    @Override
+    protected boolean doNext() {
+        if (row < buckets.size() - 1) {
+            row++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void doReset() {
+        row = 0;
+    }
+
+    @Override
+    public int size() {
+        return buckets.size();
+    }
+
+    @Override
+    public Schema schema() {
+        return schema;
+    }
+
+    private static class GroupBucket implements Bucket {
+
+        private final Map<String, Object> key;
+        private final long docCount;
+        private final Aggregations aggregations;
+
+        GroupBucket(Map<String, Object> key, long docCount, Aggregations aggregations) {
+            this.key = key;
+            this.docCount = docCount;
+            this.aggregations = aggregations;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public String getKeyAsString() {
+            return key.toString();
+        }
+
+        @Override
+        public long getDocCount() {
+            return docCount;
+        }
+
+        @Override
+        public Aggregations getAggregations() {
+            return aggregations;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.sql.plugin;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.core.Tuple;
+import org.elasticsearch.xcontent.MediaType;
+import org.elasticsearch.xpack.sql.SqlIllegalArgumentException;
+import org.elasticsearch.xpack.sql.action.SqlQueryResponse;
+import org.elasticsearch.xpack.sql.proto.ColumnInfo;
+import org.elasticsearch.xpack.sql.session.Cursor;
+import org.elasticsearch.xpack.sql.session.Cursors;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Columnar binary output of SQL responses, in the Arrow IPC streaming format (see {@link ArrowStreamWriter}).
+ * Every page is a stream of its own, made of the schema and a record batch with the rows of the page.
+ *
+ * Like for the text format, the columns are only known on the first page, so they get wrapped in the cursor
+ * (see {@link ArrowFormatterCursor}) to describe the next pages.
+ */
+enum ArrowFormat implements MediaType {
+
+    STREAM;
+
+    private static final String FORMAT_ARROW = "arrow";
+    private static final String CONTENT_TYPE_ARROW = "application/vnd.apache.arrow.stream";
+
+    BytesReference format(SqlQueryResponse response) throws IOException {
+        List<String> names = null;
+        List<String> types = null;
+        Cursor cursor = null;
+        ZoneId zoneId = null;
+
+        // check if the cursor is already wrapped first
+        if (response.hasCursor()) {
+            Tuple<Cursor, ZoneId> tuple = Cursors.decodeFromStringWithZone(response.cursor());
+            cursor = tuple.v1();
+            zoneId = tuple.v2();
+            if (cursor instanceof ArrowFormatterCursor) {
+                names = ((ArrowFormatterCursor) cursor).names();
+                types = ((ArrowFormatterCursor) cursor).types();
+            }
+        }
+
+        // if there are columns available, it means it's the first request
+        if (response.columns() != null) {
+            names = new ArrayList<>(response.columns().size());
+            types = new ArrayList<>(response.columns().size());
+            for (ColumnInfo column : response.columns()) {
+                names.add(column.name());
+                types.add(column.esType());
+            }
+            // if there's a cursor, wrap the columns in it
+            if (cursor != null) {
+                response.cursor(Cursors.encodeToString(new ArrowFormatterCursor(cursor, names, types), zoneId));
+            }
+        } else if (names == null) {
+            if (response.hasId()) {
+                // an async request has no results yet
+                return BytesArray.EMPTY;
+            }
+            // if this code is reached, it means it's a next page without cursor wrapping
+            throw new SqlIllegalArgumentException("Cannot find the columns of the arrow stream - this is likely a bug");
+        }
+
+        return ArrowStreamWriter.write(names, types, response.rows());
+    }
+
+    String contentType() {
+        return CONTENT_TYPE_ARROW;
+    }
+
+    @Override
+    public String queryParameter() {
+        return FORMAT_ARROW;
+    }
+
+    @Override
+    public Set<HeaderValue> headerValues() {
+        return Set.of(new HeaderValue(CONTENT_TYPE_ARROW, Map.of()));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.sql.plugin;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.xpack.sql.session.Cursor;
+import org.elasticsearch.xpack.sql.session.SqlConfiguration;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+import static org.elasticsearch.action.ActionListener.wrap;
+
+/**
+ * The cursor that wraps the columns of the result table, needed to write the schema of the next pages in the arrow format.
+ */
+public class ArrowFormatterCursor implements Cursor {
+    public static final String NAME = "a";
+
+    private final Cursor delegate;
+    private final List<String> names;
+    private final List<String> types;
+
+    ArrowFormatterCursor(Cursor delegate, List<String> names, List<String> types) {
+        this.delegate = delegate;
+        this.names = names;
+        this.types = types;
+    }
+
+    public ArrowFormatterCursor(StreamInput in) throws IOException {
+        delegate = in.readNamedWriteable(Cursor.class);
+        names = in.readStringList();
+        types = in.readStringList();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeNamedWriteable(delegate);
+        out.writeStringCollection(names);
+        out.writeStringCollection(types);
+    }
+
+    List<String> names() {
+        return names;
+    }
+
+    List<String> types() {
+        return types;
+    }
+
+    @Override
+    public void nextPage(SqlConfiguration cfg, Client client, NamedWriteableRegistry registry, ActionListener<Page> listener) {
+        // keep wrapping the columns
+        delegate.nextPage(cfg, client, registry,
+                wrap(p -> {
+                    Cursor next = p.next();
+                    listener.onResponse(next == Cursor.EMPTY ? p : new Page(p.rowSet(), new ArrowFormatterCursor(next, names, types)));
+                }, listener::onFailure));
+    }
+
+    @Override
+    public void clear(SqlConfiguration cfg, Client client, ActionListener<Boolean> listener) {
+        delegate.clear(cfg, client, listener);
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ArrowFormatterCursor that = (ArrowFormatterCursor) o;
+        return Objects.equals(delegate, that.delegate) && Objects.equals(names, that.names) && Objects.equals(types, that.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(delegate, names, types);
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.sql.plugin;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.xpack.sql.SqlIllegalArgumentException;
+import org.elasticsearch.xpack.sql.util.DateUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Writes SQL results in the <a href="https://arrow.apache.org/docs/format/Columnar.html">Arrow IPC streaming format</a>:
+ * a schema message followed by one record batch with the rows of the page, each column laid out in its own
+ * validity and value buffers, and the end of stream marker.
+ */
+final class ArrowStreamWriter {
+
+    /**
+     * The Arrow types the SQL types are mapped to.
+     */
+    enum ColumnType {
+        NULL(1),
+        BOOL(6),
+        INT8(2),
+        INT16(2),
+        INT32(2),
+        INT64(2),
+        UINT64(2),
+        FLOAT(3),
+        DOUBLE(3),
+        DATE(8),
+        // nanoseconds of the day
+        TIME(9),
+        // milliseconds since the epoch, the resolution of datetime fields
+        TIMESTAMP_MILLIS(10),
+        // nanoseconds since the epoch, the resolution of date_nanos fields
+        TIMESTAMP_NANOS(10),
+        UTF8(5);
+
+        // the id of the type in the Type union of the Arrow schema
+        private final byte typeId;
+
+        ColumnType(int typeId) {
+            this.typeId = (byte) typeId;
+        }
+
+        static ColumnType of(String sqlType) {
+            switch (sqlType.toLowerCase(Locale.ROOT)) {
+                case "null":
+                    return NULL;
+                case "boolean":
+                    return BOOL;
+                case "byte":
+                    return INT8;
+                case "short":
+                    return INT16;
+                case "integer":
+                    return INT32;
+                case "long":
+                    return INT64;
+                case "unsigned_long":
+                    return UINT64;
+                case "float":
+                case "half_float":
+                    return FLOAT;
+                case "double":
+                case "scaled_float":
+                    return DOUBLE;
+                case "date":
+                    return DATE;
+                case "time":
+                    return TIME;
+                case "datetime":
+                    return TIMESTAMP_MILLIS;
+                case "date_nanos":
+                    return TIMESTAMP_NANOS;
+                default:
+                    // keywords, texts, ips, versions, intervals, geo shapes and so on
+                    return UTF8;
+            }
+        }
+    }
+
+    // the continuation marker that precedes every message
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    // MetadataVersion.V5
+    private static final short METADATA_VERSION = 4;
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_RECORD_BATCH = 3;
+    private static final String TIMEZONE = "UTC";
+
+    private ArrowStreamWriter() {}
+
+    static BytesReference write(List<String> names, List<String> types, List<List<Object>> rows) throws IOException {
+        List<ColumnType> columnTypes = new ArrayList<>(types.size());
+        for (String type : types) {
+            columnTypes.add(ColumnType.of(type));
+        }
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        writeMessage(out, schema(names, columnTypes), new byte[0][]);
+        if (rows.isEmpty() == false) {
+            List<byte[]> buffers = new ArrayList<>();
+            long[] nullCounts = new long[columnTypes.size()];
+            for (int column = 0; column < columnTypes.size(); column++) {
+                nullCounts[column] = writeColumn(columnTypes.get(column), rows, column, buffers);
+            }
+            byte[][] body = buffers.toArray(new byte[0][]);
+            writeMessage(out, recordBatch(rows.size(), columnTypes, nullCounts, body), body);
+        }
+        // end of stream
+        writeIntLE(out, CONTINUATION);
+        writeIntLE(out, 0);
+        return out.bytes();
+    }
+
+    private static byte[] schema(List<String> names, List<ColumnType> types) {
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        int[] fields = new int[types.size()];
+        for (int i = 0; i < fields.length; i++) {
+            ColumnType type = types.get(i);
+            int name = builder.createString(names.get(i));
+            int typeTable = typeTable(builder, type);
+            int children = builder.createOffsetVector(new int[0]);
+
+            builder.startTable(7);
+            builder.addOffset(0, name);
+            builder.addBoolean(1, true);
+            builder.addByte(2, type.typeId);
+            builder.addOffset(3, typeTable);
+            builder.addOffset(5, children);
+            fields[i] = builder.endTable();
+        }
+        int fieldsVector = builder.createOffsetVector(fields);
+
+        builder.startTable(4);
+        // little endian
+        builder.addShort(0, (short) 0);
+        builder.addOffset(1, fieldsVector);
+        int schema = builder.endTable();
+
+        return builder.finish(message(builder, HEADER_SCHEMA, schema, 0));
+    }
+
+    private static int typeTable(FlatBufferBuilder builder, ColumnType type) {
+        int timezone = type == ColumnType.TIMESTAMP_MILLIS || type == ColumnType.TIMESTAMP_NANOS ? builder.createString(TIMEZONE) : 0;
+        switch (type) {
+            case INT8:
+            case INT16:
+            case INT32:
+            case INT64:
+            case UINT64:
+                builder.startTable(2);
+                builder.addInt(0, bitWidth(type));
+                builder.addBoolean(1, type != ColumnType.UINT64);
+                break;
+            case FLOAT:
+            case DOUBLE:
+                builder.startTable(1);
+                // Precision.SINGLE or Precision.DOUBLE
+                builder.addShort(0, (short) (type == ColumnType.FLOAT ? 1 : 2));
+                break;
+            case DATE:
+                builder.startTable(1);
+                // DateUnit.DAY
+                builder.addShort(0, (short) 0);
+                break;
+            case TIME:
+                builder.startTable(2);
+                // TimeUnit.NANOSECOND, which takes 64 bits
+                builder.addShort(0, (short) 3);
+                builder.addInt(1, 64);
+                break;
+            case TIMESTAMP_MILLIS:
+            case TIMESTAMP_NANOS:
+                builder.startTable(2);
+                // TimeUnit.MILLISECOND or TimeUnit.NANOSECOND
+                builder.addShort(0, (short) (type == ColumnType.TIMESTAMP_NANOS ? 3 : 1));
+                builder.addOffset(1, timezone);
+                break;
+            default:
+                // Null, Bool and Utf8 have no properties
+                builder.startTable(0);
+        }
+        return builder.endTable();
+    }
+
+    private static int bitWidth(ColumnType type) {
+        switch (type) {
+            case INT8:
+                return 8;
+            case INT16:
+                return 16;
+            case INT32:
+                return 32;
+            default:
+                return 64;
+        }
+    }
+
+    private static byte[] recordBatch(int rows, List<ColumnType> types, long[] nullCounts, byte[][] body) {
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+
+        // FieldNode structs: the length and null count of each column
+        builder.startVector(2 * Long.BYTES, types.size(), Long.BYTES);
+        for (int i = types.size() - 1; i >= 0; i--) {
+            builder.addLong(nullCounts[i]);
+            builder.addLong(rows);
+        }
+        int nodes = builder.endVector();
+
+        // Buffer structs: the offset and length of each buffer in the body
+        long[] offsets = new long[body.length];
+        long bodyLength = 0;
+        for (int i = 0; i < body.length; i++) {
+            offsets[i] = bodyLength;
+            bodyLength += padded(body[i].length);
+        }
+        builder.startVector(2 * Long.BYTES, body.length, Long.BYTES);
+        for (int i = body.length - 1; i >= 0; i--) {
+            builder.addLong(body[i].length);
+            builder.addLong(offsets[i]);
+        }
+        int buffers = builder.endVector();
+
+        builder.startTable(4);
+        builder.addLong(0, rows);
+        builder.addOffset(1, nodes);
+        builder.addOffset(2, buffers);
+        int recordBatch = builder.endTable();
+
+        return builder.finish(message(builder, HEADER_RECORD_BATCH, recordBatch, bodyLength));
+    }
+
+    private static int message(FlatBufferBuilder builder, byte headerType, int header, long bodyLength) {
+        builder.startTable(5);
+        builder.addLong(3, bodyLength);
+        builder.addOffset(2, header);
+        builder.addShort(0, METADATA_VERSION);
+        builder.addByte(1, headerType);
+        return builder.endTable();
+    }
+
+    /**
+     * Writes an encapsulated message: the continuation marker, the size of the metadata, the metadata and the body,
+     * all padded to 8 bytes.
+     */
+    private static void writeMessage(BytesStreamOutput out, byte[] metadata, byte[][] body) throws IOException {
+        int metadataLength = padded(metadata.length + 2 * Integer.BYTES) - 2 * Integer.BYTES;
+        writeIntLE(out, CONTINUATION);
+        writeIntLE(out, metadataLength);
+        out.writeBytes(metadata);
+        writePadding(out, metadataLength - metadata.length);
+        for (byte[] buffer : body) {
+            out.writeBytes(buffer);
+            writePadding(out, padded(buffer.length) - buffer.length);
+        }
+    }
+
+    /**
+     * Adds the buffers of the given column and returns its number of nulls.
+     */
+    private static long writeColumn(ColumnType type, List<List<Object>> rows, int column, List<byte[]> buffers) {
+        int size = rows.size();
+        if (type == ColumnType.NULL) {
+            return size;
+        }
+
+        byte[] validity = new byte[(size + 7) / 8];
+        long nulls = 0;
+        for (int i = 0; i < size; i++) {
+            if (rows.get(i).get(column) != null) {
+                validity[i >>> 3] |= 1 << (i & 7);
+            } else {
+                nulls++;
+            }
+        }
+        buffers.add(validity);
+
+        switch (type) {
+            case BOOL: {
+                byte[] values = new byte[(size + 7) / 8];
+                for (int i = 0; i < size; i++) {
+                    Object value = rows.get(i).get(column);
+                    if (value != null && asType(value, Boolean.class)) {
+                        values[i >>> 3] |= 1 << (i & 7);
+                    }
+                }
+                buffers.add(values);
+                break;
+            }
+            case UTF8: {
+                ByteBuffer offsets = littleEndian(Integer.BYTES * (size + 1));
+                BytesStreamOutput data = new BytesStreamOutput();
+                offsets.putInt(0);
+                for (int i = 0; i < size; i++) {
+                    Object value = rows.get(i).get(column);
+                    if (value != null) {
+                        String string = value instanceof ZonedDateTime ? DateUtils.toString((ZonedDateTime) value) : value.toString();
+                        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                        data.writeBytes(bytes, 0, bytes.length);
+                    }
+                    offsets.putInt(Math.toIntExact(data.size()));
+                }
+                buffers.add(offsets.array());
+                buffers.add(BytesReference.toBytes(data.bytes()));
+                break;
+            }
+            default: {
+                int width = type == ColumnType.DATE ? Integer.BYTES : bitWidth(type) / 8;
+                ByteBuffer values = littleEndian(width * size);
+                for (int i = 0; i < size; i++) {
+                    Object value = rows.get(i).get(column);
+                    // nulls keep an undefined value, here zero
+                    values.position(i * width);
+                    if (value != null) {
+                        putValue(type, value, values);
+                    }
+                }
+                buffers.add(values.array());
+            }
+        }
+        return nulls;
+    }
+
+    private static void putValue(ColumnType type, Object value, ByteBuffer values) {
+        switch (type) {
+            case INT8:
+                values.put(asType(value, Number.class).byteValue());
+                break;
+            case INT16:
+                values.putShort(asType(value, Number.class).shortValue());
+                break;
+            case INT32:
+                values.putInt(asType(value, Number.class).intValue());
+                break;
+            case INT64:
+            case UINT64:
+                // unsigned longs keep their bits
+                values.putLong(asType(value, Number.class).longValue());
+                break;
+            case FLOAT:
+                values.putFloat(asType(value, Number.class).floatValue());
+                break;
+            case DOUBLE:
+                values.putDouble(asType(value, Number.class).doubleValue());
+                break;
+            case DATE:
+                values.putInt(Math.toIntExact(asType(value, ZonedDateTime.class).toLocalDate().toEpochDay()));
+                break;
+            case TIME:
+                values.putLong(asType(value, OffsetTime.class).toLocalTime().toNanoOfDay());
+                break;
+            case TIMESTAMP_MILLIS:
+                values.putLong(asType(value, ZonedDateTime.class).toInstant().toEpochMilli());
+                break;
+            case TIMESTAMP_NANOS:
+                values.putLong(epochNanos(asType(value, ZonedDateTime.class).toInstant()));
+                break;
+            default:
+                throw new SqlIllegalArgumentException("Unexpected column type [{}]", type);
+        }
+    }
+
+    private static long epochNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    private static <T> T asType(Object value, Class<T> type) {
+        if (type.isInstance(value) == false) {
+            throw new SqlIllegalArgumentException("Cannot write [{}] of type [{}] as [{}]", Objects.toString(value),
+                value.getClass().getSimpleName(), type.getSimpleName());
+        }
+        return type.cast(value);
+    }
+
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int padded(int length) {
+        return (length + 7) & ~7;
+    }
+
+    private static void writePadding(BytesStreamOutput out, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            out.writeByte((byte) 0);
+        }
+    }
+
+    private static void writeIntLE(BytesStreamOutput out, int value) {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            out.writeByte((byte) (value >>> (8 * i)));
+        }
+    }
+}
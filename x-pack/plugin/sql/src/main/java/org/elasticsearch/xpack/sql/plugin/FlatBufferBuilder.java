@@ -0,0 +1,206 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.sql.plugin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal builder of flatbuffers, the encoding of the metadata of Arrow messages.
+ *
+ * Like the reference implementation, the buffer is written back to front: strings, vectors and tables are created
+ * before the tables that point to them and are identified by their offset from the end of the buffer.
+ * Only the little subset needed by {@link ArrowStreamWriter} is supported.
+ */
+final class FlatBufferBuilder {
+
+    private byte[] buffer = new byte[256];
+    // the start of the written data, which grows towards the beginning of the buffer
+    private int space = buffer.length;
+    private int minAlign = 1;
+
+    private int[] vtable;
+    private int objectStart;
+    private int vectorElements;
+
+    /**
+     * The offset of the last written object, from the end of the buffer.
+     */
+    int offset() {
+        return buffer.length - space;
+    }
+
+    int createString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        prep(Integer.BYTES, bytes.length + 1);
+        putByte((byte) 0);
+        ensureSpace(bytes.length);
+        space -= bytes.length;
+        System.arraycopy(bytes, 0, buffer, space, bytes.length);
+        putInt(bytes.length);
+        return offset();
+    }
+
+    int createOffsetVector(int[] offsets) {
+        startVector(Integer.BYTES, offsets.length, Integer.BYTES);
+        for (int i = offsets.length - 1; i >= 0; i--) {
+            addOffset(offsets[i]);
+        }
+        return endVector();
+    }
+
+    /**
+     * Starts a vector, whose elements then need to be added in reverse order.
+     */
+    void startVector(int elementSize, int elements, int alignment) {
+        vectorElements = elements;
+        prep(Integer.BYTES, elementSize * elements);
+        prep(alignment, elementSize * elements);
+    }
+
+    int endVector() {
+        putInt(vectorElements);
+        return offset();
+    }
+
+    void startTable(int fields) {
+        vtable = new int[fields];
+        objectStart = offset();
+    }
+
+    void addBoolean(int field, boolean value) {
+        prep(1, 0);
+        putByte((byte) (value ? 1 : 0));
+        vtable[field] = offset();
+    }
+
+    void addByte(int field, byte value) {
+        prep(1, 0);
+        putByte(value);
+        vtable[field] = offset();
+    }
+
+    void addShort(int field, short value) {
+        prep(Short.BYTES, 0);
+        putShort(value);
+        vtable[field] = offset();
+    }
+
+    void addInt(int field, int value) {
+        prep(Integer.BYTES, 0);
+        putInt(value);
+        vtable[field] = offset();
+    }
+
+    void addLong(int field, long value) {
+        prep(Long.BYTES, 0);
+        putLong(value);
+        vtable[field] = offset();
+    }
+
+    void addOffset(int field, int offset) {
+        addOffset(offset);
+        vtable[field] = offset();
+    }
+
+    /**
+     * Adds a long to the current vector (of structs).
+     */
+    void addLong(long value) {
+        prep(Long.BYTES, 0);
+        putLong(value);
+    }
+
+    private void addOffset(int offset) {
+        prep(Integer.BYTES, 0);
+        // offsets are relative to the position they're written at
+        putInt(offset() - offset + Integer.BYTES);
+    }
+
+    int endTable() {
+        // placeholder for the offset of the vtable
+        prep(Integer.BYTES, 0);
+        putInt(0);
+        int objectOffset = offset();
+
+        int fields = vtable.length;
+        while (fields > 0 && vtable[fields - 1] == 0) {
+            fields--;
+        }
+        for (int i = fields - 1; i >= 0; i--) {
+            putShort((short) (vtable[i] != 0 ? objectOffset - vtable[i] : 0));
+        }
+        putShort((short) (objectOffset - objectStart));
+        putShort((short) ((fields + 2) * Short.BYTES));
+
+        // the vtable sits right before the table
+        int table = buffer.length - objectOffset;
+        int vtableOffset = offset() - objectOffset;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            buffer[table + i] = (byte) (vtableOffset >>> (8 * i));
+        }
+        vtable = null;
+        return objectOffset;
+    }
+
+    /**
+     * Finishes the buffer with the given root table and returns its bytes.
+     */
+    byte[] finish(int root) {
+        prep(minAlign, Integer.BYTES);
+        addOffset(root);
+        return Arrays.copyOfRange(buffer, space, buffer.length);
+    }
+
+    /**
+     * Pads the buffer so that it's aligned to {@code size} once {@code additionalBytes} are written.
+     */
+    private void prep(int size, int additionalBytes) {
+        minAlign = Math.max(minAlign, size);
+        int padding = -(offset() + additionalBytes) & (size - 1);
+        ensureSpace(padding);
+        for (int i = 0; i < padding; i++) {
+            buffer[--space] = 0;
+        }
+    }
+
+    private void ensureSpace(int bytes) {
+        while (space < bytes) {
+            int length = buffer.length;
+            byte[] grown = new byte[length * 2];
+            System.arraycopy(buffer, 0, grown, length, length);
+            buffer = grown;
+            space += length;
+        }
+    }
+
+    private void putByte(byte value) {
+        ensureSpace(1);
+        buffer[--space] = value;
+    }
+
+    private void putShort(short value) {
+        putLittleEndian(value, Short.BYTES);
+    }
+
+    private void putInt(int value) {
+        putLittleEndian(value, Integer.BYTES);
+    }
+
+    private void putLong(long value) {
+        putLittleEndian(value, Long.BYTES);
+    }
+
+    private void putLittleEndian(long value, int bytes) {
+        ensureSpace(bytes);
+        space -= bytes;
+        for (int i = 0; i < bytes; i++) {
+            buffer[space + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -22,10 +22,11 @@ import static org.elasticsearch.xpack.sql.proto.Protocol.URL_PARAM_FORMAT;
 public class SqlMediaTypeParser {
     public static final MediaTypeRegistry<? extends MediaType> MEDIA_TYPE_REGISTRY = new MediaTypeRegistry<>()
         .register(XContentType.values())
-        .register(TextFormat.values());
+        .register(TextFormat.values())
+        .register(ArrowFormat.values());
 
     /*
-     * Since we support {@link TextFormat} <strong>and</strong>
+     * Since we support {@link TextFormat}, {@link ArrowFormat} <strong>and</strong>
      * {@link XContent} outputs we can't use {@link RestToXContentListener}
      * like everything else. We want to stick as closely as possible to
      * Elasticsearch's defaults though, while still layering in ways to
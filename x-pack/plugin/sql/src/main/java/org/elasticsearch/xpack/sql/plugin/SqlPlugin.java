@@ -91,15 +91,18 @@ public class SqlPlugin extends Plugin implements ActionPlugin {
                                                IndexNameExpressionResolver expressionResolver,
                                                Supplier<RepositoriesService> repositoriesServiceSupplier) {
 
-        return createComponents(client, clusterService.getClusterName().value(), namedWriteableRegistry);
+        return createComponents(client, clusterService.getSettings(), clusterService.getClusterSettings(),
+            clusterService.getClusterName().value(), namedWriteableRegistry);
     }
 
     /**
      * Create components used by the sql plugin.
      */
-    Collection<Object> createComponents(Client client, String clusterName, NamedWriteableRegistry namedWriteableRegistry) {
+    Collection<Object> createComponents(Client client, Settings settings, ClusterSettings clusterSettings, String clusterName,
+                                        NamedWriteableRegistry namedWriteableRegistry) {
         IndexResolver indexResolver = new IndexResolver(client, clusterName, SqlDataTypeRegistry.INSTANCE);
-        return Arrays.asList(sqlLicenseChecker, indexResolver, new PlanExecutor(client, indexResolver, namedWriteableRegistry));
+        return Arrays.asList(sqlLicenseChecker, indexResolver,
+            new PlanExecutor(client, indexResolver, namedWriteableRegistry, settings, clusterSettings));
     }
 
     @Override
@@ -71,12 +71,17 @@ class SqlResponseListener extends RestResponseListener<SqlQueryResponse> {
             XContentBuilder builder = channel.newBuilder(request.getXContentType(), type, true);
             response.toXContent(builder, request);
             restResponse = new BytesRestResponse(RestStatus.OK, builder);
-        } else { // TextFormat
-            TextFormat type = (TextFormat) mediaType;
-            final String data = type.format(request, response);
-
-            restResponse = new BytesRestResponse(RestStatus.OK, type.contentType(request),
-                data.getBytes(StandardCharsets.UTF_8));
+        } else {
+            if (mediaType instanceof ArrowFormat) {
+                ArrowFormat type = (ArrowFormat) mediaType;
+                restResponse = new BytesRestResponse(RestStatus.OK, type.contentType(), type.format(response));
+            } else { // TextFormat
+                TextFormat type = (TextFormat) mediaType;
+                final String data = type.format(request, response);
+
+                restResponse = new BytesRestResponse(RestStatus.OK, type.contentType(request),
+                    data.getBytes(StandardCharsets.UTF_8));
+            }
 
             if (response.hasCursor()) {
                 restResponse.addHeader(HEADER_NAME_CURSOR, response.cursor());
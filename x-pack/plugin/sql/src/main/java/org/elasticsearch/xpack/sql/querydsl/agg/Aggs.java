@@ -7,9 +7,12 @@
 package org.elasticsearch.xpack.sql.querydsl.agg;
 
 import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.BucketOrder;
 import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
 import org.elasticsearch.search.aggregations.bucket.filter.FiltersAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.missing.MissingAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.xpack.ql.querydsl.container.Sort.Direction;
 import org.elasticsearch.xpack.ql.querydsl.container.Sort.Missing;
 import org.elasticsearch.xpack.ql.util.StringUtils;
@@ -20,6 +23,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
 import static org.elasticsearch.xpack.ql.util.CollectionUtils.combine;
@@ -36,10 +40,14 @@ import static org.elasticsearch.xpack.ql.util.CollectionUtils.combine;
  *
  * In case no group is specified (which maps to the default group in SQL), due to ES nature a 'dummy' filter agg
  * is used.
+ *
+ * Queries that only return the largest groups of a single field (GROUP BY x ORDER BY COUNT(*) DESC LIMIT n) can also map
+ * to a terms agg, which picks the top groups on the shards, alongside a missing agg for the null group.
  */
 public class Aggs {
 
     public static final String ROOT_GROUP_NAME = "groupby";
+    public static final String MISSING_GROUP_NAME = "groupby_missing";
 
     public static final GroupByKey IMPLICIT_GROUP_KEY = new GroupByKey(ROOT_GROUP_NAME, AggSource.of(StringUtils.EMPTY), null, null) {
 
@@ -103,10 +111,45 @@ public class Aggs {
         return rootGroup;
     }
 
+    /**
+     * The number of buckets that the aggs of {@link #asTopNAggBuilders(int)} return at most for the given limit, which
+     * counts against the {@code search.max_buckets} of the cluster: twice the limit for the terms agg and one for the missing agg.
+     */
+    public static long topNBucketCount(int limit) {
+        return 2L * limit + 1;
+    }
+
+    /**
+     * Returns the terms and missing aggs that select the given number of groups with the most documents.
+     * Twice as many terms as needed are asked for: the counts of the groups past the limit bound the counts of
+     * the groups that didn't make it into the response, which tells whether the top groups are exact.
+     */
+    public List<AggregationBuilder> asTopNAggBuilders(int limit) {
+        GroupByKey group = groups.get(0);
+        String field = group.source().fieldName();
+
+        AggregationBuilder terms = new TermsAggregationBuilder(ROOT_GROUP_NAME)
+            .field(field)
+            .size(limit * 2)
+            .order(asList(BucketOrder.count(false), BucketOrder.key(true)))
+            .showTermDocCountError(true);
+        AggregationBuilder missing = new MissingAggregationBuilder(MISSING_GROUP_NAME).field(field);
+
+        for (LeafAgg agg : simpleAggs) {
+            terms.subAggregation(agg.toBuilder());
+            missing.subAggregation(agg.toBuilder());
+        }
+        return asList(terms, missing);
+    }
+
     public boolean useImplicitGroupBy() {
         return groups.isEmpty();
     }
 
+    public boolean hasPipelineAggs() {
+        return pipelineAggs.isEmpty() == false;
+    }
+
     public Aggs addGroups(Collection<GroupByKey> groups) {
         return new Aggs(combine(this.groups, groups), simpleAggs, pipelineAggs);
     }
@@ -40,6 +40,10 @@ public abstract class GroupByKey extends Agg {
         return source().script();
     }
 
+    public Direction direction() {
+        return direction;
+    }
+
     public final CompositeValuesSourceBuilder<?> asValueSource() {
         CompositeValuesSourceBuilder<?> builder = createSourceBuilder();
         ScriptTemplate script = source().script();
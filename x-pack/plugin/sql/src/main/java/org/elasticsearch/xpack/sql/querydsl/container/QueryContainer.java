@@ -9,6 +9,7 @@ package org.elasticsearch.xpack.sql.querydsl.container;
 import org.elasticsearch.core.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.core.Tuple;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService;
 import org.elasticsearch.xcontent.ToXContent;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.json.JsonXContent;
@@ -18,6 +19,8 @@ import org.elasticsearch.xpack.ql.expression.AttributeMap;
 import org.elasticsearch.xpack.ql.expression.Expression;
 import org.elasticsearch.xpack.ql.expression.Expressions;
 import org.elasticsearch.xpack.ql.expression.FieldAttribute;
+import org.elasticsearch.xpack.ql.expression.function.aggregate.AggregateFunction;
+import org.elasticsearch.xpack.ql.expression.function.aggregate.Count;
 import org.elasticsearch.xpack.ql.expression.function.scalar.ScalarFunction;
 import org.elasticsearch.xpack.ql.expression.gen.pipeline.ConstantInput;
 import org.elasticsearch.xpack.ql.expression.gen.pipeline.Pipe;
@@ -33,6 +36,7 @@ import org.elasticsearch.xpack.sql.expression.function.Score;
 import org.elasticsearch.xpack.sql.expression.gen.pipeline.ScorePipe;
 import org.elasticsearch.xpack.sql.querydsl.agg.Aggs;
 import org.elasticsearch.xpack.sql.querydsl.agg.GroupByKey;
+import org.elasticsearch.xpack.sql.querydsl.agg.GroupByValue;
 import org.elasticsearch.xpack.sql.querydsl.agg.LeafAgg;
 import org.elasticsearch.xpack.sql.type.SqlDataTypes;
 
@@ -248,6 +252,43 @@ public class QueryContainer {
         return aggsOnly.booleanValue();
     }
 
+    /**
+     * Whether the query only returns the groups of a single field with the most documents, that is
+     * GROUP BY field ORDER BY COUNT(*) DESC LIMIT n. Such queries can have the top groups picked by a terms agg
+     * instead of going through all the groups of a composite agg and sorting them locally, as long as the buckets of the terms
+     * agg stay within the default {@code search.max_buckets}.
+     */
+    public boolean isTopNGroupBy() {
+        return isTopNGroupBy(MultiBucketConsumerService.DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * Same as {@link #isTopNGroupBy()}, for a cluster that allows up to {@code maxBuckets} buckets in a search response.
+     */
+    public boolean isTopNGroupBy(int maxBuckets) {
+        if (isAggsOnly() == false || limit <= 0 || Aggs.topNBucketCount(limit) > maxBuckets) {
+            return false;
+        }
+        // HAVING and PIVOT need the composite agg
+        if (aggs.groups().size() != 1 || aggs.hasPipelineAggs() || fields.stream().anyMatch(t -> t.v1() instanceof PivotColumnRef)) {
+            return false;
+        }
+        GroupByKey group = aggs.groups().get(0);
+        if (group instanceof GroupByValue == false || group.script() != null || group.direction() != Sort.Direction.ASC) {
+            return false;
+        }
+        if (sort.size() != 1) {
+            return false;
+        }
+        Sort s = sort.values().iterator().next();
+        if (s instanceof AggregateSort == false || s.direction() != Sort.Direction.DESC) {
+            return false;
+        }
+        AggregateFunction agg = ((AggregateSort) s).agg();
+        // COUNT(*), the document count of the group
+        return agg instanceof Count && ((Count) agg).distinct() == false && ((Count) agg).field().foldable();
+    }
+
     public boolean hasColumns() {
         return fields.size() > 0;
     }
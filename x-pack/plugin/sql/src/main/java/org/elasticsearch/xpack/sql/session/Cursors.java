@@ -21,6 +21,7 @@ import org.elasticsearch.xpack.sql.execution.search.extractor.SqlBucketExtractor
 import org.elasticsearch.xpack.sql.execution.search.extractor.SqlHitExtractors;
 import org.elasticsearch.xpack.sql.expression.function.scalar.Processors;
 import org.elasticsearch.xpack.sql.expression.literal.Literals;
+import org.elasticsearch.xpack.sql.plugin.ArrowFormatterCursor;
 import org.elasticsearch.xpack.sql.plugin.TextFormatterCursor;
 
 import java.io.IOException;
@@ -50,6 +51,7 @@ public final class Cursors {
         entries.add(new NamedWriteableRegistry.Entry(Cursor.class, CompositeAggCursor.NAME, CompositeAggCursor::new));
         entries.add(new NamedWriteableRegistry.Entry(Cursor.class, PivotCursor.NAME, PivotCursor::new));
         entries.add(new NamedWriteableRegistry.Entry(Cursor.class, TextFormatterCursor.NAME, TextFormatterCursor::new));
+        entries.add(new NamedWriteableRegistry.Entry(Cursor.class, ArrowFormatterCursor.NAME, ArrowFormatterCursor::new));
         entries.add(new NamedWriteableRegistry.Entry(Cursor.class, ListCursor.NAME, ListCursor::new));
 
         // plus all their dependencies
@@ -0,0 +1,59 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.sql.execution.search;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.emptyMap;
+
+public class TopNAggRowSetTests extends ESTestCase {
+
+    public void testExactWithoutDocCountError() {
+        assertTrue(TopNAggRowSet.isExact(terms(0, new long[] { 10, 5, 5 }, new long[] { 0, 0, 0 }), 2));
+        assertTrue(TopNAggRowSet.isExact(terms(0, new long[] { 10 }, new long[] { 0 }), 2));
+    }
+
+    public void testNotExactWithUnknownDocCountError() {
+        assertFalse(TopNAggRowSet.isExact(terms(-1, new long[] { 10, 5, 1 }, new long[] { 0, 0, 0 }), 2));
+    }
+
+    public void testExactIfLeftOutGroupsCannotCatchUp() {
+        // a group left out by a shard has at most 3 more documents than the 1 it was reduced with
+        assertTrue(TopNAggRowSet.isExact(terms(3, new long[] { 10, 5, 1 }, new long[] { 0, 0, 0 }), 2));
+        assertFalse(TopNAggRowSet.isExact(terms(4, new long[] { 10, 5, 1 }, new long[] { 0, 0, 0 }), 2));
+    }
+
+    public void testNotExactIfReturnedGroupsCanCatchUp() {
+        // the count of the top groups might be off
+        assertFalse(TopNAggRowSet.isExact(terms(1, new long[] { 10, 5, 1 }, new long[] { 1, 0, 0 }), 2));
+        // the count of the group past the limit might reach the count of the last top group
+        assertFalse(TopNAggRowSet.isExact(terms(1, new long[] { 10, 5, 3, 1 }, new long[] { 0, 0, 2, 0 }), 2));
+    }
+
+    public void testNotExactWithDocCountErrorAndTooFewGroups() {
+        assertFalse(TopNAggRowSet.isExact(terms(1, new long[] { 10, 5 }, new long[] { 0, 0 }), 2));
+    }
+
+    private static StringTerms terms(long docCountError, long[] docCounts, long[] docCountErrors) {
+        List<StringTerms.Bucket> buckets = new ArrayList<>(docCounts.length);
+        for (int i = 0; i < docCounts.length; i++) {
+            buckets.add(new StringTerms.Bucket(new BytesRef("term" + i), docCounts[i], InternalAggregations.EMPTY, true,
+                docCountErrors[i], DocValueFormat.RAW));
+        }
+        BucketOrder order = BucketOrder.count(false);
+        return new StringTerms("groupby", order, order, docCounts.length, 1, emptyMap(), DocValueFormat.RAW, docCounts.length, true, 0,
+            buckets, docCountError);
+    }
+}
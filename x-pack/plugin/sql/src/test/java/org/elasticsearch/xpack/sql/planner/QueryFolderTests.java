@@ -7,6 +7,7 @@
 package org.elasticsearch.xpack.sql.planner;
 
 import org.elasticsearch.core.Tuple;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService;
 import org.elasticsearch.search.aggregations.bucket.composite.MissingOrder;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.xpack.ql.expression.Expressions;
@@ -42,6 +43,7 @@ import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 
 public class QueryFolderTests extends ESTestCase {
@@ -608,6 +610,53 @@ public class QueryFolderTests extends ESTestCase {
         }
     }
 
+    public void testFoldGroupByOrderByCountDescWithLimitToTopN() {
+        PhysicalPlan p = plan("SELECT keyword, COUNT(*) c FROM test GROUP BY keyword ORDER BY c DESC LIMIT 10");
+        assertEquals(EsQueryExec.class, p.getClass());
+        EsQueryExec ee = (EsQueryExec) p;
+        assertTrue(ee.queryContainer().isTopNGroupBy());
+
+        String query = ee.queryContainer().toString().replaceAll("\\s+", "");
+        assertThat(query, containsString("\"groupby\":{\"terms\":{\"field\":\"keyword\",\"size\":20,"));
+        assertThat(query, containsString("\"show_term_doc_count_error\":true,\"order\":[{\"_count\":\"desc\"},{\"_key\":\"asc\"}]"));
+        assertThat(query, containsString("\"groupby_missing\":{\"missing\":{\"field\":\"keyword\"}"));
+        assertThat(query, not(containsString("composite")));
+    }
+
+    public void testFoldGroupByOrderByCountDescToTopNOnlyWithinMaxBuckets() {
+        int limit = randomIntBetween(1, 1000);
+        PhysicalPlan p = plan("SELECT keyword, COUNT(*) c FROM test GROUP BY keyword ORDER BY c DESC LIMIT " + limit);
+        assertEquals(EsQueryExec.class, p.getClass());
+        QueryContainer container = ((EsQueryExec) p).queryContainer();
+        // the terms agg asks for twice the limit and the missing agg adds one more bucket
+        assertTrue(container.isTopNGroupBy(2 * limit + 1));
+        assertFalse(container.isTopNGroupBy(2 * limit));
+
+        int maxLimit = (MultiBucketConsumerService.DEFAULT_MAX_BUCKETS - 1) / 2;
+        p = plan("SELECT keyword, COUNT(*) c FROM test GROUP BY keyword ORDER BY c DESC LIMIT " + maxLimit);
+        assertTrue(((EsQueryExec) p).queryContainer().isTopNGroupBy());
+        p = plan("SELECT keyword, COUNT(*) c FROM test GROUP BY keyword ORDER BY c DESC LIMIT " + (maxLimit + 1));
+        assertFalse(((EsQueryExec) p).queryContainer().isTopNGroupBy());
+    }
+
+    public void testFoldGroupByOrderByCountWithoutTopN() {
+        for (String sql : Arrays.asList(
+            "SELECT keyword, COUNT(*) c FROM test GROUP BY keyword ORDER BY c DESC",
+            "SELECT keyword, COUNT(*) c FROM test GROUP BY keyword ORDER BY c ASC LIMIT 10",
+            "SELECT keyword, COUNT(*) c FROM test GROUP BY keyword ORDER BY c DESC, keyword DESC LIMIT 10",
+            "SELECT keyword, COUNT(*) c FROM test GROUP BY keyword HAVING c > 1 ORDER BY c DESC LIMIT 10",
+            "SELECT keyword, COUNT(int) c FROM test GROUP BY keyword ORDER BY c DESC LIMIT 10",
+            "SELECT keyword, int, COUNT(*) c FROM test GROUP BY keyword, int ORDER BY c DESC LIMIT 10",
+            "SELECT int + 1 AS i, COUNT(*) c FROM test GROUP BY i ORDER BY c DESC LIMIT 10"
+        )) {
+            PhysicalPlan p = plan(sql);
+            assertEquals(EsQueryExec.class, p.getClass());
+            EsQueryExec ee = (EsQueryExec) p;
+            assertFalse(sql, ee.queryContainer().isTopNGroupBy());
+            assertThat(sql, ee.queryContainer().toString(), containsString("composite"));
+        }
+    }
+
     private static String randomOrderByAndLimit(int noOfSelectArgs) {
         return SqlTestUtils.randomOrderByAndLimit(noOfSelectArgs, random());
     }
@@ -0,0 +1,307 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.sql.plugin;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xpack.sql.SqlIllegalArgumentException;
+import org.elasticsearch.xpack.sql.action.SqlQueryResponse;
+import org.elasticsearch.xpack.sql.proto.ColumnInfo;
+import org.elasticsearch.xpack.sql.proto.Mode;
+import org.elasticsearch.xpack.sql.session.Cursors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.elasticsearch.xpack.sql.proto.SqlVersion.DATE_NANOS_SUPPORT_VERSION;
+
+public class ArrowFormatTests extends ESTestCase {
+
+    public void testSchema() throws IOException {
+        List<Message> messages = read(ArrowStreamWriter.write(asList("name", "count", "ts"), asList("keyword", "long", "datetime"),
+            emptyList()));
+        // schema and no record batch for an empty page
+        assertEquals(1, messages.size());
+        Message schema = messages.get(0);
+        assertEquals(4, schema.table.readShort(0));
+        assertEquals(1, schema.table.readByte(1));
+
+        Table header = schema.table.readTable(2);
+        List<Table> fields = header.readTables(1);
+        assertEquals(3, fields.size());
+        assertEquals("name", fields.get(0).readString(0));
+        assertEquals(5, fields.get(0).readByte(2));
+        assertEquals("count", fields.get(1).readString(0));
+        assertEquals(2, fields.get(1).readByte(2));
+        assertEquals(64, fields.get(1).readTable(3).readInt(0));
+        assertEquals(1, fields.get(1).readTable(3).readByte(1));
+        assertEquals("ts", fields.get(2).readString(0));
+        assertEquals(10, fields.get(2).readByte(2));
+        // milliseconds
+        assertEquals(1, fields.get(2).readTable(3).readShort(0));
+        assertEquals("UTC", fields.get(2).readTable(3).readString(1));
+        for (Table field : fields) {
+            assertEquals(1, field.readByte(1));
+            assertEquals(0, field.readTables(5).size());
+        }
+    }
+
+    public void testRecordBatch() throws IOException {
+        ZonedDateTime datetime = ZonedDateTime.of(2021, 10, 5, 12, 30, 0, 0, ZoneOffset.UTC);
+        List<List<Object>> rows = asList(
+            asList("foo", 1L, true, 1.5d, datetime, OffsetTime.of(10, 0, 0, 0, ZoneOffset.UTC), null),
+            asList(null, null, null, null, null, null, null),
+            asList("barbaz", -3L, false, -2.25d, datetime.plusDays(1), OffsetTime.of(0, 0, 1, 0, ZoneOffset.UTC), null)
+        );
+        List<Message> messages = read(ArrowStreamWriter.write(asList("s", "l", "b", "d", "dt", "t", "n"),
+            asList("text", "long", "boolean", "double", "datetime", "time", "null"), rows));
+        assertEquals(2, messages.size());
+
+        Message batch = messages.get(1);
+        assertEquals(3, batch.table.readByte(1));
+        Table header = batch.table.readTable(2);
+        assertEquals(3L, header.readLong(0));
+
+        long[] nodes = header.readStructs(1);
+        assertEquals(14, nodes.length);
+        for (int i = 0; i < nodes.length; i += 2) {
+            assertEquals(3L, nodes[i]);
+            assertEquals(i / 2 == 6 ? 3L : 1L, nodes[i + 1]);
+        }
+
+        long[] buffers = header.readStructs(2);
+        // validity and data for every column but the strings, which have offsets too, and the nulls, which have no buffers
+        assertEquals(2 * 13, buffers.length);
+
+        ByteBuffer body = ByteBuffer.wrap(batch.body).order(ByteOrder.LITTLE_ENDIAN);
+        // strings
+        assertEquals(0b101, body.get((int) buffers[0]));
+        int offsets = (int) buffers[2];
+        assertEquals(0, body.getInt(offsets));
+        assertEquals(3, body.getInt(offsets + 4));
+        assertEquals(3, body.getInt(offsets + 8));
+        assertEquals(9, body.getInt(offsets + 12));
+        assertEquals("foobarbaz", new String(batch.body, (int) buffers[4], (int) buffers[5], StandardCharsets.UTF_8));
+        // longs
+        assertEquals(0b101, body.get((int) buffers[6]));
+        assertEquals(1L, body.getLong((int) buffers[8]));
+        assertEquals(-3L, body.getLong((int) buffers[8] + 16));
+        // booleans
+        assertEquals(0b101, body.get((int) buffers[10]));
+        assertEquals(0b001, body.get((int) buffers[12]));
+        // doubles
+        assertEquals(1.5d, body.getDouble((int) buffers[16]), 0d);
+        assertEquals(-2.25d, body.getDouble((int) buffers[16] + 16), 0d);
+        // timestamps
+        assertEquals(datetime.toInstant().toEpochMilli(), body.getLong((int) buffers[20]));
+        assertEquals(datetime.plusDays(1).toInstant().toEpochMilli(), body.getLong((int) buffers[20] + 16));
+        // times
+        assertEquals(10 * 3600 * 1_000_000_000L, body.getLong((int) buffers[24]));
+        assertEquals(1_000_000_000L, body.getLong((int) buffers[24] + 16));
+
+        // all buffers are aligned
+        for (int i = 0; i < buffers.length; i += 2) {
+            assertEquals(0, buffers[i] % 8);
+        }
+    }
+
+    public void testNanoseconds() throws IOException {
+        ZonedDateTime datetime = ZonedDateTime.of(2021, 10, 5, 12, 30, 0, 123_456_789, ZoneOffset.UTC);
+        OffsetTime time = OffsetTime.of(23, 59, 59, 999_999_999, ZoneOffset.UTC);
+        List<Message> messages = read(ArrowStreamWriter.write(asList("dt", "t"), asList("date_nanos", "time"),
+            asList(asList(datetime, time))));
+        List<Table> fields = messages.get(0).table.readTable(2).readTables(1);
+        // TimeUnit.NANOSECOND, the time in 64 bits
+        assertEquals(3, fields.get(0).readTable(3).readShort(0));
+        assertEquals(3, fields.get(1).readTable(3).readShort(0));
+        assertEquals(64, fields.get(1).readTable(3).readInt(1));
+
+        Message batch = messages.get(1);
+        long[] buffers = batch.table.readTable(2).readStructs(2);
+        ByteBuffer body = ByteBuffer.wrap(batch.body).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(datetime.toEpochSecond() * 1_000_000_000L + 123_456_789, body.getLong((int) buffers[2]));
+        assertEquals(time.toLocalTime().toNanoOfDay(), body.getLong((int) buffers[6]));
+    }
+
+    public void testDatetimesAreMilliseconds() throws IOException {
+        // the unit depends on the column type only, so datetimes past the range of nanoseconds (years 1677 to 2262) fit too
+        ZonedDateTime datetime = ZonedDateTime.of(randomFrom(1500, 2000, 2300), 1, 1, 0, 0, 0, 123_456_789, ZoneOffset.UTC);
+        List<Message> messages = read(ArrowStreamWriter.write(asList("dt"), asList("datetime"),
+            asList(asList((Object) datetime), asList((Object) datetime.withYear(2021)))));
+        // TimeUnit.MILLISECOND
+        assertEquals(1, messages.get(0).table.readTable(2).readTables(1).get(0).readTable(3).readShort(0));
+        Message batch = messages.get(1);
+        long[] buffers = batch.table.readTable(2).readStructs(2);
+        ByteBuffer body = ByteBuffer.wrap(batch.body).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(datetime.toInstant().toEpochMilli(), body.getLong((int) buffers[2]));
+        assertEquals(datetime.withYear(2021).toInstant().toEpochMilli(), body.getLong((int) buffers[2] + 8));
+    }
+
+    public void testMismatchedValue() {
+        SqlIllegalArgumentException e = expectThrows(SqlIllegalArgumentException.class,
+            () -> ArrowStreamWriter.write(asList("l"), asList("long"), asList(asList((Object) "foo"))));
+        assertEquals("Cannot write [foo] of type [String] as [Number]", e.getMessage());
+    }
+
+    public void testColumnsAreWrappedInCursor() throws IOException {
+        List<ColumnInfo> columns = asList(new ColumnInfo("index", "name", "keyword"), new ColumnInfo("index", "count", "integer"));
+        String cursor = Cursors.encodeToString(CursorTests.randomNonEmptyCursor(), randomZone());
+        SqlQueryResponse response = new SqlQueryResponse(cursor, Mode.PLAIN, DATE_NANOS_SUPPORT_VERSION, false, columns,
+            asList(asList("foo", 1)));
+        List<Message> messages = read(ArrowFormat.STREAM.format(response));
+        assertEquals(2, messages.size());
+
+        ArrowFormatterCursor wrapped = (ArrowFormatterCursor) CursorTests.decodeFromString(response.cursor());
+        assertEquals(asList("name", "count"), wrapped.names());
+        assertEquals(asList("keyword", "integer"), wrapped.types());
+
+        // the next page has no columns
+        SqlQueryResponse next = new SqlQueryResponse(response.cursor(), Mode.PLAIN, DATE_NANOS_SUPPORT_VERSION, false, null,
+            asList(asList("bar", 2)));
+        messages = read(ArrowFormat.STREAM.format(next));
+        assertEquals(2, messages.size());
+        List<Table> fields = messages.get(0).table.readTable(2).readTables(1);
+        assertEquals("name", fields.get(0).readString(0));
+        assertEquals("count", fields.get(1).readString(0));
+    }
+
+    public void testNextPageWithoutColumns() {
+        SqlQueryResponse response = new SqlQueryResponse("", Mode.PLAIN, DATE_NANOS_SUPPORT_VERSION, false, null, emptyList());
+        expectThrows(SqlIllegalArgumentException.class, () -> ArrowFormat.STREAM.format(response));
+    }
+
+    private static class Message {
+        private final Table table;
+        private final byte[] body;
+
+        Message(Table table, byte[] body) {
+            this.table = table;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Reads the messages of the stream, checking its framing.
+     */
+    private static List<Message> read(BytesReference bytes) {
+        ByteBuffer stream = ByteBuffer.wrap(BytesReference.toBytes(bytes)).order(ByteOrder.LITTLE_ENDIAN);
+        List<Message> messages = new ArrayList<>();
+        while (true) {
+            assertEquals(0, stream.position() % 8);
+            assertEquals(0xFFFFFFFF, stream.getInt());
+            int length = stream.getInt();
+            if (length == 0) {
+                assertFalse(stream.hasRemaining());
+                return messages;
+            }
+            assertEquals(0, length % 8);
+            byte[] metadata = new byte[length];
+            stream.get(metadata);
+            ByteBuffer buffer = ByteBuffer.wrap(metadata).order(ByteOrder.LITTLE_ENDIAN);
+            Table table = new Table(buffer, buffer.getInt(0));
+            long bodyLength = table.readLong(3);
+            assertEquals(0, bodyLength % 8);
+            byte[] body = new byte[(int) bodyLength];
+            stream.get(body);
+            messages.add(new Message(table, body));
+        }
+    }
+
+    /**
+     * A flatbuffer table, whose fields are found through its vtable.
+     */
+    private static class Table {
+        private final ByteBuffer buffer;
+        private final int position;
+
+        Table(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private int field(int field) {
+            int vtable = position - buffer.getInt(position);
+            int vtableLength = buffer.getShort(vtable);
+            int entry = Short.BYTES * (2 + field);
+            if (entry >= vtableLength) {
+                return 0;
+            }
+            short offset = buffer.getShort(vtable + entry);
+            return offset == 0 ? 0 : position + offset;
+        }
+
+        byte readByte(int field) {
+            int at = field(field);
+            return at == 0 ? 0 : buffer.get(at);
+        }
+
+        short readShort(int field) {
+            int at = field(field);
+            return at == 0 ? 0 : buffer.getShort(at);
+        }
+
+        int readInt(int field) {
+            int at = field(field);
+            return at == 0 ? 0 : buffer.getInt(at);
+        }
+
+        long readLong(int field) {
+            int at = field(field);
+            return at == 0 ? 0 : buffer.getLong(at);
+        }
+
+        private int indirect(int field) {
+            int at = field(field);
+            assertNotEquals(0, at);
+            return at + buffer.getInt(at);
+        }
+
+        Table readTable(int field) {
+            return new Table(buffer, indirect(field));
+        }
+
+        String readString(int field) {
+            int at = indirect(field);
+            int length = buffer.getInt(at);
+            assertEquals(0, buffer.get(at + Integer.BYTES + length));
+            return new String(buffer.array(), at + Integer.BYTES, length, StandardCharsets.UTF_8);
+        }
+
+        List<Table> readTables(int field) {
+            int at = indirect(field);
+            int length = buffer.getInt(at);
+            List<Table> tables = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                int element = at + Integer.BYTES * (i + 1);
+                tables.add(new Table(buffer, element + buffer.getInt(element)));
+            }
+            return tables;
+        }
+
+        long[] readStructs(int field) {
+            int at = indirect(field);
+            int length = buffer.getInt(at);
+            // structs of longs are aligned to 8 bytes
+            assertEquals(0, (at + Integer.BYTES) % 8);
+            long[] longs = new long[length * 2];
+            for (int i = 0; i < longs.length; i++) {
+                longs[i] = buffer.getLong(at + Integer.BYTES + Long.BYTES * i);
+            }
+            return longs;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.sql.plugin;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.TimeStampNanoTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
+/**
+ * Reads the streams of {@link ArrowStreamWriter} back with the Arrow reference implementation. It needs the access to
+ * {@code java.nio} that Arrow's memory management takes, so it runs in its own task without the security manager.
+ */
+public class ArrowRoundTripTests extends ESTestCase {
+
+    public void testRoundTrip() throws IOException {
+        ZonedDateTime datetime = ZonedDateTime.of(2021, 10, 5, 12, 30, 0, 123_456_789, ZoneOffset.UTC);
+        OffsetTime time = OffsetTime.of(23, 59, 59, 999_999_999, ZoneOffset.UTC);
+        List<List<Object>> rows = asList(
+            asList("foo", 1L, 2, true, 1.5d, datetime, datetime, datetime, time),
+            asList(null, null, null, null, null, null, null, null, null),
+            asList("barbaz", -3L, -4, false, -2.25d, datetime.plusDays(1), datetime.plusDays(1), datetime.plusDays(1), time.minusHours(1))
+        );
+        BytesReference stream = ArrowStreamWriter.write(
+            asList("s", "l", "i", "b", "d", "dt", "dn", "day", "t"),
+            asList("keyword", "long", "integer", "boolean", "double", "datetime", "date_nanos", "date", "time"),
+            rows
+        );
+
+        try (
+            BufferAllocator allocator = new RootAllocator();
+            ArrowStreamReader reader = new ArrowStreamReader(stream.streamInput(), allocator)
+        ) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            List<Field> fields = root.getSchema().getFields();
+            assertEquals(9, fields.size());
+            assertEquals(ArrowType.Utf8.INSTANCE, fields.get(0).getType());
+            assertEquals(new ArrowType.Int(64, true), fields.get(1).getType());
+            assertEquals(new ArrowType.Int(32, true), fields.get(2).getType());
+            assertEquals(ArrowType.Bool.INSTANCE, fields.get(3).getType());
+            assertEquals(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE), fields.get(4).getType());
+            assertEquals(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC"), fields.get(5).getType());
+            assertEquals(new ArrowType.Timestamp(TimeUnit.NANOSECOND, "UTC"), fields.get(6).getType());
+            assertEquals(new ArrowType.Date(DateUnit.DAY), fields.get(7).getType());
+            assertEquals(new ArrowType.Time(TimeUnit.NANOSECOND, 64), fields.get(8).getType());
+            for (Field field : fields) {
+                assertTrue(field.isNullable());
+            }
+
+            assertTrue(reader.loadNextBatch());
+            assertEquals(3, root.getRowCount());
+
+            VarCharVector strings = (VarCharVector) root.getVector("s");
+            assertEquals("foo", strings.getObject(0).toString());
+            assertTrue(strings.isNull(1));
+            assertEquals("barbaz", strings.getObject(2).toString());
+
+            BigIntVector longs = (BigIntVector) root.getVector("l");
+            assertEquals(Long.valueOf(1L), longs.getObject(0));
+            assertTrue(longs.isNull(1));
+            assertEquals(Long.valueOf(-3L), longs.getObject(2));
+
+            IntVector ints = (IntVector) root.getVector("i");
+            assertEquals(Integer.valueOf(2), ints.getObject(0));
+            assertTrue(ints.isNull(1));
+            assertEquals(Integer.valueOf(-4), ints.getObject(2));
+
+            BitVector booleans = (BitVector) root.getVector("b");
+            assertEquals(Boolean.TRUE, booleans.getObject(0));
+            assertTrue(booleans.isNull(1));
+            assertEquals(Boolean.FALSE, booleans.getObject(2));
+
+            Float8Vector doubles = (Float8Vector) root.getVector("d");
+            assertEquals(1.5d, doubles.get(0), 0d);
+            assertTrue(doubles.isNull(1));
+            assertEquals(-2.25d, doubles.get(2), 0d);
+
+            TimeStampMilliTZVector datetimes = (TimeStampMilliTZVector) root.getVector("dt");
+            assertEquals(datetime.toInstant().toEpochMilli(), datetimes.get(0));
+            assertTrue(datetimes.isNull(1));
+            assertEquals(datetime.plusDays(1).toInstant().toEpochMilli(), datetimes.get(2));
+
+            TimeStampNanoTZVector nanos = (TimeStampNanoTZVector) root.getVector("dn");
+            assertEquals(datetime.toEpochSecond() * 1_000_000_000L + 123_456_789, nanos.get(0));
+            assertTrue(nanos.isNull(1));
+            assertEquals(datetime.plusDays(1).toEpochSecond() * 1_000_000_000L + 123_456_789, nanos.get(2));
+
+            DateDayVector days = (DateDayVector) root.getVector("day");
+            assertEquals(datetime.toLocalDate().toEpochDay(), days.get(0));
+            assertTrue(days.isNull(1));
+            assertEquals(datetime.plusDays(1).toLocalDate().toEpochDay(), days.get(2));
+
+            TimeNanoVector times = (TimeNanoVector) root.getVector("t");
+            assertEquals(time.toLocalTime().toNanoOfDay(), times.get(0));
+            assertTrue(times.isNull(1));
+            assertEquals(time.minusHours(1).toLocalTime().toNanoOfDay(), times.get(2));
+
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+
+    public void testEmptyPage() throws IOException {
+        BytesReference stream = ArrowStreamWriter.write(asList("dt"), asList("datetime"), emptyList());
+        try (
+            BufferAllocator allocator = new RootAllocator();
+            ArrowStreamReader reader = new ArrowStreamReader(stream.streamInput(), allocator)
+        ) {
+            List<Field> fields = reader.getVectorSchemaRoot().getSchema().getFields();
+            assertEquals(1, fields.size());
+            assertEquals("dt", fields.get(0).getName());
+            assertEquals(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC"), fields.get(0).getType());
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+}
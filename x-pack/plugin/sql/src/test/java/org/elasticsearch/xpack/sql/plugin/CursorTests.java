@@ -99,6 +99,20 @@ public class CursorTests extends ESTestCase {
                     } else {
                         return ScrollCursorTests.randomScrollCursor();
                     }
+                },
+                () -> {
+                    SqlQueryResponse response = createRandomSqlResponse();
+                    if (response.columns() != null) {
+                        List<String> names = new ArrayList<>();
+                        List<String> types = new ArrayList<>();
+                        for (ColumnInfo column : response.columns()) {
+                            names.add(column.name());
+                            types.add(column.esType());
+                        }
+                        return new ArrowFormatterCursor(ScrollCursorTests.randomScrollCursor(), names, types);
+                    } else {
+                        return ScrollCursorTests.randomScrollCursor();
+                    }
                 }
         );
         return cursorSupplier.get();
@@ -48,6 +48,16 @@ public class SqlMediaTypeParserTests extends ESTestCase {
         assertThat(text, is(TSV));
     }
 
+    public void testArrowDetection() {
+        MediaType arrow = getResponseMediaType(reqWithAccept("application/vnd.apache.arrow.stream"),
+            createTestInstance(false, Mode.PLAIN, false));
+        assertThat(arrow, is(ArrowFormat.STREAM));
+
+        arrow = getResponseMediaType(new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY).withParams(Map.of("format", "arrow"))
+            .build(), createTestInstance(false, Mode.PLAIN, false));
+        assertThat(arrow, is(ArrowFormat.STREAM));
+    }
+
     public void testMediaTypeDetectionWithParameters() {
         assertThat(getResponseMediaType(reqWithAccept("text/plain; charset=utf-8"),
             createTestInstance(false, Mode.PLAIN, false)), is(PLAIN_TEXT));
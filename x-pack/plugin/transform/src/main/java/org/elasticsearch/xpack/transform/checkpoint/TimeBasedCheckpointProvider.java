@@ -77,6 +77,9 @@ class TimeBasedCheckpointProvider extends DefaultCheckpointProvider {
             .allowPartialSearchResults(false)
             .indicesOptions(IndicesOptions.LENIENT_EXPAND_OPEN)
             .source(sourceBuilder);
+        // always run the can match pre-filter phase, which skips the shards whose min and max of the sync field are out of the range
+        // (most of them for time based indices). This is shard level pruning only, the search itself is unchanged.
+        searchRequest.setPreFilterShardSize(1);
 
         logger.trace("query for changes based on time: {}", sourceBuilder);
 
@@ -1119,6 +1119,10 @@ public abstract class TransformIndexer extends AsyncTwoPhaseIndexer<TransformInd
         request.allowPartialSearchResults(false) // shard failures should fail the request
             .indicesOptions(IndicesOptions.LENIENT_EXPAND_OPEN); // TODO: make configurable
 
+        // always run the can match pre-filter phase: the query is limited to the sync window, so the shards whose min and max of the
+        // sync field are out of it are skipped. The changes are still collected by a composite aggregation over the remaining shards.
+        request.setPreFilterShardSize(1);
+
         changeCollector.buildChangesQuery(sourceBuilder, position != null ? position.getBucketsPosition() : null, pageSize);
 
         QueryBuilder queryBuilder = getConfig().getSource().getQueryConfig().getQuery();
@@ -1154,6 +1158,9 @@ public abstract class TransformIndexer extends AsyncTwoPhaseIndexer<TransformInd
                 QueryBuilder filter = changeCollector.buildFilterQuery(lastCheckpoint, nextCheckpoint);
                 if (filter != null) {
                     filteredQuery.filter(filter);
+                    // the changes might be limited to a time range, e.g. for date histograms, let the can match pre-filter phase
+                    // skip the shards that are out of it. The changed buckets are recomputed in full, not updated incrementally.
+                    request.setPreFilterShardSize(1);
                 }
                 request.indices(changeCollector.getIndicesToQuery(lastCheckpoint, nextCheckpoint).toArray(new String[0]));
             } else {
@@ -173,6 +173,7 @@ public class TimeBasedCheckpointProviderTests extends ESTestCase {
         ArgumentCaptor<SearchRequest> searchRequestArgumentCaptor = ArgumentCaptor.forClass(SearchRequest.class);
         verify(client).execute(eq(SearchAction.INSTANCE), searchRequestArgumentCaptor.capture(), any());
         SearchRequest searchRequest = searchRequestArgumentCaptor.getValue();
+        assertThat(searchRequest.getPreFilterShardSize(), is(equalTo(1)));
         BoolQueryBuilder boolQuery = (BoolQueryBuilder) searchRequest.source().query();
         RangeQueryBuilder rangeQuery = (RangeQueryBuilder) boolQuery.filter().get(1);
         assertThat(rangeQuery.from(), is(equalTo(expectedRangeQueryBounds.v1())));
@@ -25,6 +25,7 @@ import org.elasticsearch.index.reindex.BulkByScrollTask;
 import org.elasticsearch.index.reindex.DeleteByQueryRequest;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
 import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.elasticsearch.search.profile.SearchProfileResults;
 import org.elasticsearch.search.suggest.Suggest;
@@ -43,6 +44,10 @@ import org.elasticsearch.xpack.core.transform.transforms.TransformIndexerPositio
 import org.elasticsearch.xpack.core.transform.transforms.TransformIndexerStats;
 import org.elasticsearch.xpack.core.transform.transforms.TransformState;
 import org.elasticsearch.xpack.core.transform.transforms.TransformTaskState;
+import org.elasticsearch.xpack.core.transform.transforms.pivot.DateHistogramGroupSource;
+import org.elasticsearch.xpack.core.transform.transforms.pivot.PivotConfig;
+import org.elasticsearch.xpack.core.transform.transforms.pivot.SingleGroupSource;
+import org.elasticsearch.xpack.core.transform.transforms.pivot.TermsGroupSource;
 import org.elasticsearch.xpack.transform.TransformServices;
 import org.elasticsearch.xpack.transform.checkpoint.CheckpointProvider;
 import org.elasticsearch.xpack.transform.checkpoint.MockTimebasedCheckpointProvider;
@@ -55,18 +60,25 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static org.elasticsearch.xpack.core.transform.transforms.DestConfigTests.randomDestConfig;
 import static org.elasticsearch.xpack.core.transform.transforms.SourceConfigTests.randomSourceConfig;
+import static org.elasticsearch.xpack.core.transform.transforms.pivot.AggregationConfigTests.randomAggregationConfig;
+import static org.elasticsearch.xpack.core.transform.transforms.pivot.GroupConfigTests.randomGroupConfig;
 import static org.elasticsearch.xpack.core.transform.transforms.pivot.PivotConfigTests.randomPivotConfig;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.oneOf;
 import static org.mockito.Mockito.mock;
 
@@ -109,6 +121,9 @@ public class TransformIndexerTests extends ESTestCase {
 
         private AtomicBoolean saveStateInProgress = new AtomicBoolean(false);
 
+        // search requests built by the indexer, if recorded
+        private List<SearchRequest> searchRequests;
+
         // how many loops to execute until reporting done
         private int numberOfLoops;
 
@@ -156,6 +171,14 @@ public class TransformIndexerTests extends ESTestCase {
             return doSaveStateLatch = new CountDownLatch(count);
         }
 
+        public List<SearchRequest> recordSearchRequests() {
+            return searchRequests = new CopyOnWriteArrayList<>();
+        }
+
+        public void setNumberOfLoops(int numberOfLoops) {
+            this.numberOfLoops = numberOfLoops;
+        }
+
         @Override
         void doGetInitialProgress(SearchRequest request, ActionListener<SearchResponse> responseListener) {
             responseListener.onResponse(ONE_HIT_SEARCH_RESPONSE);
@@ -210,6 +233,9 @@ public class TransformIndexerTests extends ESTestCase {
                     throw new IllegalStateException(e);
                 }
             }
+            if (searchRequests != null) {
+                searchRequests.add(buildSearchRequest().v2());
+            }
             threadPool.executor(ThreadPool.Names.GENERIC).execute(() -> nextPhase.onResponse(ONE_HIT_SEARCH_RESPONSE));
         }
 
@@ -248,9 +274,10 @@ public class TransformIndexerTests extends ESTestCase {
             --numberOfLoops;
             // pretend that we processed 10k documents for each call
             getStats().incrementNumDocuments(10_000);
+            // like the real indexer, reset the position at the end of a checkpoint so that the next one starts from scratch
             return new IterationResult<>(
                 Stream.of(new IndexRequest()),
-                new TransformIndexerPosition(null, null),
+                numberOfLoops == 0 ? null : new TransformIndexerPosition(null, null),
                 numberOfLoops == 0
             );
         }
@@ -374,6 +401,72 @@ public class TransformIndexerTests extends ESTestCase {
         }
     }
 
+    public void testChangeDetectionSearchesRunCanMatch() throws Exception {
+        // terms need a search for the changed buckets first, which is limited to the sync window
+        assertChangeDetectionSearchesRunCanMatch(() -> new TermsGroupSource("host", null, false));
+        // date histograms on the sync field directly narrow the search that updates the destination index to the changed time range
+        assertChangeDetectionSearchesRunCanMatch(
+            () -> new DateHistogramGroupSource(
+                "timestamp",
+                null,
+                false,
+                new DateHistogramGroupSource.FixedInterval(new DateHistogramInterval("1h")),
+                null
+            )
+        );
+    }
+
+    private void assertChangeDetectionSearchesRunCanMatch(Supplier<SingleGroupSource> groupSource) throws Exception {
+        TransformConfig config = new TransformConfig(
+            randomAlphaOfLength(10),
+            randomSourceConfig(),
+            randomDestConfig(),
+            null,
+            new TimeSyncConfig("timestamp", TimeValue.timeValueSeconds(1)),
+            null,
+            new PivotConfig(randomGroupConfig(groupSource), randomAggregationConfig(), null),
+            null,
+            randomBoolean() ? null : randomAlphaOfLengthBetween(1, 1000),
+            null,
+            null,
+            null,
+            null
+        );
+        AtomicReference<IndexerState> state = new AtomicReference<>(IndexerState.STARTED);
+        TransformContext context = new TransformContext(TransformTaskState.STARTED, "", 0, mock(TransformContext.Listener.class));
+        final MockedTransformIndexer indexer = createMockIndexer(
+            1,
+            config,
+            state,
+            null,
+            threadPool,
+            auditor,
+            new TransformIndexerStats(),
+            context
+        );
+
+        // the 1st checkpoint searches all the source data
+        List<SearchRequest> searchRequests = indexer.recordSearchRequests();
+        indexer.start();
+        assertTrue(indexer.maybeTriggerAsyncJob(System.currentTimeMillis()));
+        assertBusy(() -> assertEquals(1L, indexer.getLastCheckpoint().getCheckpoint()), 5, TimeUnit.SECONDS);
+        assertThat(searchRequests, not(empty()));
+        for (SearchRequest searchRequest : searchRequests) {
+            assertNull(searchRequest.getPreFilterShardSize());
+        }
+
+        // the next ones only search the changes
+        searchRequests = indexer.recordSearchRequests();
+        indexer.setNumberOfLoops(1);
+        // the trigger is ignored until the indexer thread of the 1st checkpoint has shut down
+        assertBusy(() -> assertTrue(indexer.maybeTriggerAsyncJob(System.currentTimeMillis())), 5, TimeUnit.SECONDS);
+        assertBusy(() -> assertEquals(2L, indexer.getLastCheckpoint().getCheckpoint()), 5, TimeUnit.SECONDS);
+        assertThat(searchRequests, not(empty()));
+        for (SearchRequest searchRequest : searchRequests) {
+            assertEquals(Integer.valueOf(1), searchRequest.getPreFilterShardSize());
+        }
+    }
+
     /**
      * This test ensures correct handling of async behavior during indexer shutdown
      *